@@ -89,4 +89,35 @@ public class CustomLogger {
     {
         return Thread.currentThread().getStackTrace()[CALLING_METHOD_NAME_DEPTH].getMethodName();
     }
+
+    /**
+     * Lazy alternative to {@link #getMethodName()} for use as a log argument, for example
+     * {@code logger.LogDebug("Entered in method %s", logger.getLazyMethodName())}. The stack is only walked when the
+     * message is actually formatted, that is when its log level is enabled, instead of on every call.
+     *
+     * @return an object whose {@code toString()} is the name of the method that called the enclosing Log method.
+     */
+    public Object getLazyMethodName()
+    {
+        return LAZY_METHOD_NAME;
+    }
+
+    private static final Object LAZY_METHOD_NAME = new Object()
+    {
+        @Override
+        public String toString()
+        {
+            // The method that called into this class is the frame right below the Log method formatting this argument
+            StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
+            for (int i = 0; i < stackTrace.length - 1; i++)
+            {
+                if (CustomLogger.class.getName().equals(stackTrace[i].getClassName()))
+                {
+                    return stackTrace[i + 1].getMethodName();
+                }
+            }
+
+            return "unknown";
+        }
+    };
 }
@@ -6,6 +6,7 @@ package com.microsoft.azure.sdk.iot.device;
 import com.microsoft.azure.sdk.iot.deps.serializer.ParserUtility;
 import com.microsoft.azure.sdk.iot.device.DeviceTwin.*;
 import com.microsoft.azure.sdk.iot.device.fileupload.FileUpload;
+import com.microsoft.azure.sdk.iot.device.fileupload.FileUploadOptions;
 import com.microsoft.azure.sdk.iot.device.transport.amqps.IoTHubConnectionType;
 import com.microsoft.azure.sdk.iot.provisioning.security.SecurityProvider;
 
@@ -151,7 +152,7 @@ public final class DeviceClient extends InternalClient implements Closeable
         this.transportClient.registerDeviceClient(this);
 
         this.logger = new CustomLogger(this.getClass());
-        logger.LogInfo("DeviceClient object is created successfully, method name is %s ", logger.getMethodName());
+        logger.LogInfo("DeviceClient object is created successfully, method name is %s ", logger.getLazyMethodName());
     }
 
     /**
@@ -307,7 +308,9 @@ public final class DeviceClient extends InternalClient implements Closeable
             }
             else
             {
-                // Codes_SRS_DEVICECLIENT_12_019: [If the client has been initialized to use TransportClient and the TransportClient is already opened the function shall do nothing.]
+                // Codes_SRS_DEVICECLIENT_12_019: [If the client has been initialized to use TransportClient and the TransportClient is already opened the function shall not open a connection of its own.]
+                // Codes_SRS_DEVICECLIENT_12_031: [If the client has been initialized to use TransportClient and the TransportClient is already opened the function shall ask the TransportClient to connect this client, which does nothing if it is connected already.]
+                this.transportClient.openDeviceClient(this);
                 logger.LogInfo("Connection already opened by TransportClient.");
             }
         }
@@ -317,7 +320,7 @@ public final class DeviceClient extends InternalClient implements Closeable
             super.open();
         }
 
-        logger.LogInfo("Connection opened with success, method name is %s ", logger.getMethodName());
+        logger.LogInfo("Connection opened with success, method name is %s ", logger.getLazyMethodName());
     }
 
     /**
@@ -351,7 +354,7 @@ public final class DeviceClient extends InternalClient implements Closeable
             super.close();
         }
 
-        logger.LogInfo("Connection closed with success, method name is %s ", logger.getMethodName());
+        logger.LogInfo("Connection closed with success, method name is %s ", logger.getLazyMethodName());
     }
 
     /**
@@ -387,7 +390,7 @@ public final class DeviceClient extends InternalClient implements Closeable
             this.closeFileUpload();
         }
 
-        logger.LogInfo("Connection closed with success, method name is %s ", logger.getMethodName());
+        logger.LogInfo("Connection closed with success, method name is %s ", logger.getLazyMethodName());
     }
 
     /**
@@ -434,6 +437,59 @@ public final class DeviceClient extends InternalClient implements Closeable
         this.fileUpload.uploadToBlobAsync(destinationBlobName, inputStream, streamLength, callback, callbackContext);
     }
 
+    /**
+     * Asynchronously upload a stream to the IoT Hub as a sequence of blocks. The blocks are uploaded in parallel and
+     * retried one by one, which is faster and more robust than a single request for large files over slow links.
+     *
+     * NOTE: IotHub does not currently support CA signed devices using file upload. Please use SAS based authentication or
+     * self signed certificates.
+     *
+     * @param destinationBlobName is a string with the name of the file in the storage.
+     * @param inputStream is a InputStream with the stream to upload in the blob.
+     * @param streamLength is a long with the number of bytes in the stream to upload, or
+     *                     {@link FileUploadOptions#UNKNOWN_STREAM_LENGTH} to upload until the end of the stream.
+     * @param options the block size, number of concurrent block uploads, retries and resumption of the upload.
+     *                Cannot be {@code null}.
+     * @param callback the callback to be invoked when a file is uploaded.
+     * @param callbackContext a context to be passed to the callback. Can be {@code null}.
+     *
+     * @throws IllegalArgumentException if the provided blob name, or the file path is {@code null},
+     *          empty or not valid, if the options or the callback are {@code null}, or if the stream length is not valid.
+     * @throws IOException if the client cannot create a instance of the FileUpload or the transport.
+     */
+    public void uploadToBlobAsync(String destinationBlobName, InputStream inputStream, long streamLength, FileUploadOptions options,
+                                  IotHubEventCallback callback, Object callbackContext) throws IllegalArgumentException, IOException
+    {
+        if (callback == null)
+        {
+            throw new IllegalArgumentException("Callback is null");
+        }
+
+        if (inputStream == null)
+        {
+            throw new IllegalArgumentException("The input stream cannot be null.");
+        }
+
+        if (options == null)
+        {
+            throw new IllegalArgumentException("The file upload options cannot be null.");
+        }
+
+        if (streamLength < 0 && streamLength != FileUploadOptions.UNKNOWN_STREAM_LENGTH)
+        {
+            throw new IllegalArgumentException("Invalid stream size.");
+        }
+
+        ParserUtility.validateBlobName(destinationBlobName);
+
+        if (this.fileUpload == null)
+        {
+            this.fileUpload = new FileUpload(this.config);
+        }
+
+        this.fileUpload.uploadToBlobAsync(destinationBlobName, inputStream, streamLength, options, callback, callbackContext);
+    }
+
     /**
      * Retrieves the twin's latest desired properties
      * @throws IOException if the iothub cannot be reached
@@ -500,6 +556,28 @@ public final class DeviceClient extends InternalClient implements Closeable
         this.deviceIO.registerConnectionStateCallback(callback, callbackContext);
     }
 
+    /**
+     * Getter for the occupancy of the MQTT in-flight window of this client.
+     *
+     * @return the number of MQTT publishes awaiting a PUBACK, or 0 if the client is not open or is not using MQTT or MQTT_WS.
+     */
+    public int getMqttInFlightMessageCount()
+    {
+        // Codes_SRS_DEVICECLIENT_12_040: [If the deviceIO is null, the function shall return 0, otherwise it shall return the in-flight message count of the deviceIO.]
+        return (this.deviceIO == null) ? 0 : this.deviceIO.getMqttInFlightMessageCount();
+    }
+
+    /**
+     * Getter for the number of MQTT publishes of this client waiting for a slot of the in-flight window.
+     *
+     * @return the number of queued publishes, or 0 if the client is not open or is not using MQTT or MQTT_WS.
+     */
+    public int getMqttQueuedPublishCount()
+    {
+        // Codes_SRS_DEVICECLIENT_12_041: [If the deviceIO is null, the function shall return 0, otherwise it shall return the queued publish count of the deviceIO.]
+        return (this.deviceIO == null) ? 0 : this.deviceIO.getMqttQueuedPublishCount();
+    }
+
     /**
      * Subscribes to device methods
      *
@@ -518,6 +596,57 @@ public final class DeviceClient extends InternalClient implements Closeable
         this.subscribeToMethodsInternal(deviceMethodCallback, deviceMethodCallbackContext, deviceMethodStatusCallback, deviceMethodStatusCallbackContext);
     }
 
+    /**
+     * Subscribes to device methods, handled by an asynchronous callback. The callback returns immediately and
+     * answers each invocation through its {@link DeviceMethodResponder}, possibly from another thread, so that a
+     * long running method does not hold back the others. Responses are matched to invocations by request id.
+     *
+     * @param deviceMethodAsyncCallback Callback on which device methods shall be invoked. Cannot be {@code null}.
+     * @param deviceMethodCallbackContext Context for device method callback. Can be {@code null}.
+     * @param deviceMethodStatusCallback Callback for providing IotHub status for device methods. Cannot be {@code null}.
+     * @param deviceMethodStatusCallbackContext Context for device method status callback. Can be {@code null}.
+     *
+     * @throws IOException if called when client is not opened.
+     * @throws IllegalArgumentException if either callback are null.
+     */
+    public void subscribeToDeviceMethodAsync(DeviceMethodAsyncCallback deviceMethodAsyncCallback, Object deviceMethodCallbackContext,
+                                             IotHubEventCallback deviceMethodStatusCallback, Object deviceMethodStatusCallbackContext)
+            throws IOException, IllegalArgumentException
+    {
+        this.subscribeToMethodsAsyncInternal(deviceMethodAsyncCallback, deviceMethodCallbackContext, deviceMethodStatusCallback, deviceMethodStatusCallbackContext);
+    }
+
+    /**
+     * Limits how many invocations of a device method handled by an asynchronous callback may run at the same time.
+     * Invocations beyond the limit wait until a running one responds.
+     *
+     * @param methodName the name of the method to limit. Cannot be {@code null} or empty.
+     * @param maxConcurrentInvocations the maximum number of concurrent invocations. Must be greater than 0.
+     *
+     * @throws IllegalStateException if called before subscribing to device methods.
+     * @throws IllegalArgumentException if the method name is null or empty, or the limit is less than 1.
+     */
+    public void setDeviceMethodConcurrencyLimit(String methodName, int maxConcurrentInvocations)
+            throws IllegalStateException, IllegalArgumentException
+    {
+        this.setMethodConcurrencyLimitInternal(methodName, maxConcurrentInvocations);
+    }
+
+    /**
+     * Sets how long an asynchronous device method callback may take to answer an invocation. An invocation that is
+     * not answered in time is answered with status 504 and frees its slot. The default is 300 seconds.
+     *
+     * @param responseTimeoutMillis the time allowed to respond, in milliseconds. Must be greater than 0.
+     *
+     * @throws IllegalStateException if called before subscribing to device methods.
+     * @throws IllegalArgumentException if the timeout is less than 1.
+     */
+    public void setDeviceMethodResponseTimeout(long responseTimeoutMillis)
+            throws IllegalStateException, IllegalArgumentException
+    {
+        this.setMethodResponseTimeoutInternal(responseTimeoutMillis);
+    }
+
     /**
      * Sets a runtime option identified by parameter {@code optionName}
      * to {@code value}.
@@ -538,6 +667,38 @@ public final class DeviceClient extends InternalClient implements Closeable
      *         option will restart the transport with the updated expiry time, and
      *         will use that expiry time length for all subsequently generated sas tokens.
      *         The value is expected to be of type {@code long}.
+     *      - <b>SetEventDrivenSend</b> - this option is applicable for HTTP/
+     *         AMQP/MQTT and only while the client is closed. When {@code true},
+     *         queued messages are sent as soon as they are added by a dedicated
+     *         sender thread that sleeps while there is nothing to send, instead
+     *         of being polled every send interval. The value is expected to be
+     *         of type {@code boolean}.
+     *      - <b>SetOfflineMessageStore</b> - this option is applicable for HTTP/
+     *         AMQP/MQTT and only while the client is closed. Outgoing telemetry is
+     *         written to the configured directory and kept there until the IoT Hub
+     *         acknowledges it, so that it is sent after connection losses and process
+     *         restarts. Messages still on disk when the client is closed are sent
+     *         after the next open, without invoking their callbacks, and a message may
+     *         be sent twice after a crash. The value is expected to be of type
+     *         {@code OfflineMessageStoreSettings}.
+     *      - <b>SetEventDrivenReceive</b> - this option is applicable for
+     *         AMQP/MQTT and only while the client is closed. When {@code true},
+     *         received messages are dispatched to the message callbacks as soon
+     *         as they arrive by a dedicated receiver thread, instead of being
+     *         polled every receive interval. The value is expected to be of type
+     *         {@code boolean}.
+     *      - <b>SetReceiveBatchSize</b> - this option is applicable for HTTP/
+     *         AMQP/MQTT and only while the client is closed. This option specifies
+     *         the maximum number of received messages dispatched per pass of the
+     *         receiver; over HTTP it is also the maximum number of messages fetched
+     *         per receive interval. The value is expected to be of type {@code int}.
+     *      - <b>SetMessageCallbackConcurrency</b> - this option is applicable for
+     *         HTTP/AMQP/MQTT and only while the client is closed. This option specifies
+     *         the maximum number of message callbacks that may run at the same time.
+     *         Callbacks for the same input, method or twin still run one at a time,
+     *         in the order the messages were received, and each message is still
+     *         completed, abandoned or rejected with the result of its own callback.
+     *         The value is expected to be of type {@code int}.
      *
      * @param optionName the option name to modify
      * @param value an object of the appropriate type for the option's value
@@ -635,6 +796,46 @@ public final class DeviceClient extends InternalClient implements Closeable
                     return;
                 }
             }
+            case SET_EVENT_DRIVEN_SEND:
+            {
+                if (this.ioTHubConnectionType == IoTHubConnectionType.USE_TRANSPORTCLIENT)
+                {
+                    throw new IllegalStateException("Event driven send is not supported for single client if using TransportClient.");
+                }
+                break;
+            }
+            case SET_EVENT_DRIVEN_RECEIVE:
+            {
+                if (this.ioTHubConnectionType == IoTHubConnectionType.USE_TRANSPORTCLIENT)
+                {
+                    throw new IllegalStateException("Event driven receive is not supported for single client if using TransportClient.");
+                }
+                break;
+            }
+            case SET_RECEIVE_BATCH_SIZE:
+            {
+                if (this.ioTHubConnectionType == IoTHubConnectionType.USE_TRANSPORTCLIENT)
+                {
+                    throw new IllegalStateException("The receive batch size is not supported for single client if using TransportClient.");
+                }
+                break;
+            }
+            case SET_MESSAGE_CALLBACK_CONCURRENCY:
+            {
+                if (this.ioTHubConnectionType == IoTHubConnectionType.USE_TRANSPORTCLIENT)
+                {
+                    throw new IllegalStateException("Message callback concurrency is not supported for single client if using TransportClient.");
+                }
+                break;
+            }
+            case SET_OFFLINE_MESSAGE_STORE:
+            {
+                if (this.ioTHubConnectionType == IoTHubConnectionType.USE_TRANSPORTCLIENT)
+                {
+                    throw new IllegalStateException("The offline message store is not supported for single client if using TransportClient.");
+                }
+                break;
+            }
             default:
             {
                 throw new IllegalArgumentException("optionName is unknown = " + optionName);
@@ -647,7 +848,7 @@ public final class DeviceClient extends InternalClient implements Closeable
     @Override
     void setOption_SetSASTokenExpiryTime(Object value) throws IllegalArgumentException
     {
-        logger.LogInfo("Setting SASTokenExpiryTime as %s seconds, method name is %s ", value, logger.getMethodName());
+        logger.LogInfo("Setting SASTokenExpiryTime as %s seconds, method name is %s ", value, logger.getLazyMethodName());
 
         if (this.getConfig().getAuthenticationType() != DeviceClientConfig.AuthType.SAS_TOKEN)
         {
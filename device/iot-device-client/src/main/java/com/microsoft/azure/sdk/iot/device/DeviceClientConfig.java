@@ -6,6 +6,7 @@ package com.microsoft.azure.sdk.iot.device;
 import com.microsoft.azure.sdk.iot.device.DeviceTwin.Pair;
 import com.microsoft.azure.sdk.iot.device.auth.*;
 import com.microsoft.azure.sdk.iot.device.transport.ExponentialBackoffWithJitter;
+import com.microsoft.azure.sdk.iot.device.transport.OfflineMessageStoreSettings;
 import com.microsoft.azure.sdk.iot.device.transport.RetryPolicy;
 import com.microsoft.azure.sdk.iot.provisioning.security.SecurityProvider;
 import com.microsoft.azure.sdk.iot.provisioning.security.SecurityProviderSymmetricKey;
@@ -29,8 +30,26 @@ public final class DeviceClientConfig
 
     private static final long DEFAULT_OPERATION_TIMEOUT = 4 * 60 * 1000; //4 minutes
 
+    private static final int DEFAULT_MQTT_MAX_IN_FLIGHT_COUNT = 10;
+
+    private static final int DEFAULT_RECEIVE_BATCH_SIZE = 10;
+
+    private static final int DEFAULT_MESSAGE_CALLBACK_CONCURRENCY = 1;
+
     private boolean useWebsocket;
 
+    private boolean eventDrivenSend;
+
+    private boolean eventDrivenReceive;
+
+    private int receiveBatchSize = DEFAULT_RECEIVE_BATCH_SIZE;
+
+    private int messageCallbackConcurrency = DEFAULT_MESSAGE_CALLBACK_CONCURRENCY;
+
+    private int mqttMaxInFlightCount = DEFAULT_MQTT_MAX_IN_FLIGHT_COUNT;
+
+    private OfflineMessageStoreSettings offlineMessageStoreSettings;
+
     private IotHubAuthenticationProvider authenticationProvider;
 
     /**
@@ -112,7 +131,7 @@ public final class DeviceClientConfig
 
         this.logger = new CustomLogger(this.getClass());
         logger.LogInfo("DeviceClientConfig object is created successfully with IotHubName=%s, deviceID=%s , method name is %s ",
-                iotHubConnectionString.getHostName(), iotHubConnectionString.getDeviceId(), logger.getMethodName());
+                iotHubConnectionString.getHostName(), iotHubConnectionString.getDeviceId(), logger.getLazyMethodName());
     }
 
     public DeviceClientConfig(IotHubAuthenticationProvider authenticationProvider) throws IllegalArgumentException
@@ -130,7 +149,7 @@ public final class DeviceClientConfig
 
         this.logger = new CustomLogger(this.getClass());
         logger.LogInfo("DeviceClientConfig object is created successfully with IotHubName=%s, deviceID=%s , method name is %s ",
-                this.authenticationProvider.getHostname(), authenticationProvider.getDeviceId(), logger.getMethodName());
+                this.authenticationProvider.getHostname(), authenticationProvider.getDeviceId(), logger.getLazyMethodName());
     }
 
     /**
@@ -171,7 +190,7 @@ public final class DeviceClientConfig
 
         this.logger = new CustomLogger(this.getClass());
         logger.LogInfo("DeviceClientConfig object is created successfully, method name is %s ",
-                logger.getMethodName());
+                logger.getLazyMethodName());
     }
 
     /**
@@ -237,7 +256,7 @@ public final class DeviceClientConfig
 
         this.logger = new CustomLogger(this.getClass());
         logger.LogInfo("DeviceClientConfig object is created successfully with IotHubName=%s, deviceID=%s , method name is %s ",
-                connectionString.getHostName(), connectionString.getDeviceId(), logger.getMethodName());
+                connectionString.getHostName(), connectionString.getDeviceId(), logger.getLazyMethodName());
     }
 
     public IotHubClientProtocol getProtocol()
@@ -324,6 +343,142 @@ public final class DeviceClientConfig
         this.useWebsocket = useWebsocket;
     }
 
+    /**
+     * Getter for EventDrivenSend
+     * @return true if queued messages are sent as soon as they are added instead of on a fixed send period
+     */
+    public boolean isEventDrivenSend()
+    {
+        return this.eventDrivenSend;
+    }
+
+    /**
+     * Setter for EventDrivenSend. When set, a dedicated sender thread sleeps until a message is queued, then drains
+     * the whole queue. Otherwise the queue is polled every send period.
+     * @param eventDrivenSend true if to be set, false otherwise
+     */
+    public void setEventDrivenSend(boolean eventDrivenSend)
+    {
+        this.eventDrivenSend = eventDrivenSend;
+    }
+
+    /**
+     * Getter for EventDrivenReceive
+     * @return true if received messages are dispatched as soon as they arrive instead of on a fixed receive period
+     */
+    public boolean isEventDrivenReceive()
+    {
+        return this.eventDrivenReceive;
+    }
+
+    /**
+     * Setter for EventDrivenReceive. When set, a dedicated receiver thread sleeps until the AMQP or MQTT connection
+     * delivers a message, then dispatches everything received so far. Otherwise the received messages are polled
+     * every receive period. HTTPS always polls.
+     * @param eventDrivenReceive true if to be set, false otherwise
+     */
+    public void setEventDrivenReceive(boolean eventDrivenReceive)
+    {
+        this.eventDrivenReceive = eventDrivenReceive;
+    }
+
+    /**
+     * Getter for the receive batch size
+     * @return the maximum number of received messages dispatched by one pass of the receive task
+     */
+    public int getReceiveBatchSize()
+    {
+        return this.receiveBatchSize;
+    }
+
+    /**
+     * Setter for the receive batch size. Over HTTPS this is also the maximum number of messages fetched from the
+     * IoT Hub by one pass of the receive task.
+     * @param receiveBatchSize the maximum number of received messages dispatched per pass. Must be greater than 0
+     * @throws IllegalArgumentException if the provided size is less than 1
+     */
+    public void setReceiveBatchSize(int receiveBatchSize) throws IllegalArgumentException
+    {
+        if (receiveBatchSize < 1)
+        {
+            throw new IllegalArgumentException("The receive batch size must be at least 1");
+        }
+
+        this.receiveBatchSize = receiveBatchSize;
+    }
+
+    /**
+     * Getter for the message callback concurrency
+     * @return the maximum number of message callbacks that may run at the same time
+     */
+    public int getMessageCallbackConcurrency()
+    {
+        return this.messageCallbackConcurrency;
+    }
+
+    /**
+     * Setter for the message callback concurrency. With 1, callbacks run one at a time on the receive thread.
+     * With more, they run on a pool of that many threads; callbacks for the same input name, method name or twin of a
+     * device still run one at a time and in the order the messages were received. Takes effect the next time the
+     * transport is opened.
+     * @param messageCallbackConcurrency the maximum number of concurrent callbacks. Must be greater than 0
+     * @throws IllegalArgumentException if the provided concurrency is less than 1
+     */
+    public void setMessageCallbackConcurrency(int messageCallbackConcurrency) throws IllegalArgumentException
+    {
+        if (messageCallbackConcurrency < 1)
+        {
+            throw new IllegalArgumentException("The message callback concurrency must be at least 1");
+        }
+
+        this.messageCallbackConcurrency = messageCallbackConcurrency;
+    }
+
+    /**
+     * Getter for the MQTT in-flight window
+     * @return the maximum number of MQTT publishes that may be awaiting a PUBACK at the same time
+     */
+    public int getMqttMaxInFlightCount()
+    {
+        return this.mqttMaxInFlightCount;
+    }
+
+    /**
+     * Setter for the MQTT in-flight window. Publishes beyond the window are queued by the client and go out as
+     * PUBACKs free up slots. Takes effect the next time the MQTT connection is opened.
+     * @param mqttMaxInFlightCount the maximum number of unacknowledged publishes. Must be greater than 0
+     * @throws IllegalArgumentException if the provided count is less than 1
+     */
+    public void setMqttMaxInFlightCount(int mqttMaxInFlightCount) throws IllegalArgumentException
+    {
+        if (mqttMaxInFlightCount < 1)
+        {
+            throw new IllegalArgumentException("The MQTT in-flight window must be at least 1");
+        }
+
+        this.mqttMaxInFlightCount = mqttMaxInFlightCount;
+    }
+
+    /**
+     * Getter for the offline message store settings
+     * @return the settings of the disk backed queue for outgoing telemetry, or null if telemetry is queued in memory
+     */
+    public OfflineMessageStoreSettings getOfflineMessageStoreSettings()
+    {
+        return this.offlineMessageStoreSettings;
+    }
+
+    /**
+     * Setter for the offline message store settings. When set, outgoing telemetry is written to disk before being
+     * sent and stays there until the IoT Hub acknowledges it, so that it survives connection losses and restarts.
+     * Takes effect the next time the transport is opened.
+     * @param offlineMessageStoreSettings the settings of the store, or null to queue telemetry in memory
+     */
+    public void setOfflineMessageStoreSettings(OfflineMessageStoreSettings offlineMessageStoreSettings)
+    {
+        this.offlineMessageStoreSettings = offlineMessageStoreSettings;
+    }
+
     /**
      * Setter for the message callback. Can be {@code null}.
      * @param callback the message callback. Can be {@code null}.
@@ -4,6 +4,8 @@
 package com.microsoft.azure.sdk.iot.device;
 
 import com.microsoft.azure.sdk.iot.device.exceptions.DeviceClientException;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubEventDrivenReceiveTask;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubEventDrivenSendTask;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubReceiveTask;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubSendTask;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubTransport;
@@ -81,6 +83,8 @@ public final class DeviceIO
     private IotHubTransport transport;
     private DeviceClientConfig config;
     private IotHubSendTask sendTask = null;
+    private IotHubEventDrivenSendTask eventDrivenSendTask = null;
+    private IotHubEventDrivenReceiveTask eventDrivenReceiveTask = null;
     private IotHubReceiveTask receiveTask = null;
     private IotHubClientProtocol protocol = null;
 
@@ -136,7 +140,7 @@ public final class DeviceIO
         this.state = IotHubClientState.CLOSED;
 
         this.logger = new CustomLogger(this.getClass());
-        logger.LogInfo("DeviceIO object is created successfully, method name is %s ", logger.getMethodName());
+        logger.LogInfo("DeviceIO object is created successfully, method name is %s ", logger.getLazyMethodName());
     }
 
     /**
@@ -170,38 +174,106 @@ public final class DeviceIO
     }
 
     /**
-     * Adds a device client config to the saved list. Each device client config will be used in multiplexing
+     * Adds a device client config to the saved list. Each device client config will be used in multiplexing.
+     * If this device IO is already open, the device is also opened on the live connection.
      * @param config the config tied to the device client to multiplex with
+     * @throws IOException if the device cannot be opened on the live connection
      */
-    void addClient(DeviceClientConfig config)
+    void addClient(DeviceClientConfig config) throws IOException
     {
         if (config == null)
         {
             throw new IllegalArgumentException("Config cannot be null");
         }
 
+        if (this.state == IotHubClientState.OPEN)
+        {
+            /* Codes_SRS_DEVICE_IO_12_010: [If the device IO is open, the function shall add the config to the open transport, and throw IOException if that fails.] */
+            try
+            {
+                this.transport.addDeviceClientConfig(config);
+            }
+            catch (DeviceClientException e)
+            {
+                throw new IOException("Could not add the device to the open connection", e);
+            }
+        }
+
         // add client to transport
         deviceClientConfigs.add(config);
     }
 
+    /**
+     * Removes a device client config from the saved list. If this device IO is open, the device is also removed
+     * from the live connection; the other devices stay connected.
+     * @param config the config tied to the device client to remove
+     */
+    void removeClient(DeviceClientConfig config)
+    {
+        if (config == null)
+        {
+            throw new IllegalArgumentException("Config cannot be null");
+        }
+
+        if (this.state == IotHubClientState.OPEN)
+        {
+            /* Codes_SRS_DEVICE_IO_12_011: [If the device IO is open, the function shall remove the config from the open transport.] */
+            this.transport.removeDeviceClientConfig(config);
+        }
+
+        /* Codes_SRS_DEVICE_IO_12_012: [The function shall remove the config from the saved list.] */
+        deviceClientConfigs.remove(config);
+    }
+
+    /**
+     * Getter for the number of device clients multiplexed on this device IO.
+     * @return the number of saved device client configs
+     */
+    int getClientCount()
+    {
+        /* Codes_SRS_DEVICE_IO_12_013: [The function shall return the number of saved configs.] */
+        return deviceClientConfigs.size();
+    }
+
     /**
      * Handles logic common to all open functions.
      */
     private void commonOpenSetup()
     {
-        this.sendTask = new IotHubSendTask(this.transport);
-        this.receiveTask = new IotHubReceiveTask(this.transport);
-
         this.taskScheduler = Executors.newScheduledThreadPool(2);
-        // the scheduler waits until each execution is finished before
-        // scheduling the next one, so executions of a given task
-        // will never overlap.
-        /* Codes_SRS_DEVICE_IO_21_013: [The open shall schedule send tasks to run every SEND_PERIOD_MILLIS milliseconds.] */
-        this.taskScheduler.scheduleAtFixedRate(this.sendTask, 0,
-                sendPeriodInMilliseconds, TimeUnit.MILLISECONDS);
-        /* Codes_SRS_DEVICE_IO_21_014: [The open shall schedule receive tasks to run every receivePeriodInMilliseconds milliseconds.] */
-        this.taskScheduler.scheduleAtFixedRate(this.receiveTask, 0,
-                receivePeriodInMilliseconds, TimeUnit.MILLISECONDS);
+        if (this.config.isEventDrivenSend())
+        {
+            // the event driven send task keeps one of the scheduler threads for itself until it is stopped
+            this.eventDrivenSendTask = new IotHubEventDrivenSendTask(this.transport);
+            this.taskScheduler.submit(this.eventDrivenSendTask);
+        }
+        else
+        {
+            this.sendTask = new IotHubSendTask(this.transport);
+
+            // the scheduler waits until each execution is finished before
+            // scheduling the next one, so executions of a given task
+            // will never overlap.
+            /* Codes_SRS_DEVICE_IO_21_013: [The open shall schedule send tasks to run every SEND_PERIOD_MILLIS milliseconds.] */
+            this.taskScheduler.scheduleAtFixedRate(this.sendTask, 0,
+                    sendPeriodInMilliseconds, TimeUnit.MILLISECONDS);
+        }
+
+        if (this.config.isEventDrivenReceive() && this.protocol != IotHubClientProtocol.HTTPS)
+        {
+            // only AMQP and MQTT push received messages to the transport, HTTPS has to be polled
+            /* Codes_SRS_DEVICE_IO_12_014: [If event driven receive is set and the protocol is not HTTPS, the open shall submit an event driven receive task instead of scheduling receive tasks.] */
+            this.eventDrivenReceiveTask = new IotHubEventDrivenReceiveTask(this.transport);
+            this.taskScheduler.submit(this.eventDrivenReceiveTask);
+        }
+        else
+        {
+            this.receiveTask = new IotHubReceiveTask(this.transport);
+
+            /* Codes_SRS_DEVICE_IO_21_014: [The open shall schedule receive tasks to run every receivePeriodInMilliseconds milliseconds.] */
+            this.taskScheduler.scheduleAtFixedRate(this.receiveTask, 0,
+                    receivePeriodInMilliseconds, TimeUnit.MILLISECONDS);
+        }
 
         /* Codes_SRS_DEVICE_IO_21_016: [The open shall set the `state` as `CONNECTED`.] */
         this.state = IotHubClientState.OPEN;
@@ -219,6 +291,18 @@ public final class DeviceIO
     {
         /* Codes_SRS_DEVICE_IO_21_017: [The close shall finish all ongoing tasks.] */
         /* Codes_SRS_DEVICE_IO_21_018: [The close shall cancel all recurring tasks.] */
+        if (this.eventDrivenSendTask != null)
+        {
+            this.eventDrivenSendTask.stop();
+            this.eventDrivenSendTask = null;
+        }
+
+        if (this.eventDrivenReceiveTask != null)
+        {
+            this.eventDrivenReceiveTask.stop();
+            this.eventDrivenReceiveTask = null;
+        }
+
         if (taskScheduler != null)
         {
             this.taskScheduler.shutdown();
@@ -291,11 +375,59 @@ public final class DeviceIO
             message.setConnectionDeviceId(deviceId);
         }
 
-        logger.LogInfo("Message with messageid %s along with callback and callbackcontext is added to the queue, method name is %s ", message.getMessageId(), logger.getMethodName());
+        logger.LogInfo("Message with messageid %s along with callback and callbackcontext is added to the queue, method name is %s ", message.getMessageId(), logger.getLazyMethodName());
         /* Codes_SRS_DEVICE_IO_21_022: [The sendEventAsync shall add the message, with its associated callback and callback context, to the transport.] */
         transport.addMessage(message, callback, callbackContext);
     }
 
+    /**
+     * Asynchronously sends a batch of event messages to the IoT Hub. Over HTTPS the messages are sent in as few
+     * batch requests as the service size limit allows.
+     *
+     * @param messages the messages to be sent.
+     * @param callback the callback to be invoked once for each message when its response is received.
+     * Can be {@code null}.
+     * @param callbackContext a context to be passed to the callback. Can be
+     * {@code null} if no callback is provided.
+     * @param deviceId the id of the device sending the messages
+     *
+     * @throws IllegalArgumentException if the list of messages is {@code null}, empty, or contains a {@code null} message.
+     * @throws IllegalStateException if the client has not been opened yet or is already closed.
+     */
+    public synchronized void sendEventBatchAsync(List<Message> messages,
+                                    IotHubEventCallback callback,
+                                    Object callbackContext,
+                                    String deviceId)
+    {
+        if (this.state == IotHubClientState.CLOSED)
+        {
+            throw new IllegalStateException(
+                    "Cannot send event from "
+                            + "an IoT Hub client that is closed.");
+        }
+
+        if (messages == null || messages.isEmpty())
+        {
+            throw new IllegalArgumentException("Cannot send a null or empty batch of messages.");
+        }
+
+        for (Message message : messages)
+        {
+            if (message == null)
+            {
+                throw new IllegalArgumentException("Cannot send message 'null'.");
+            }
+
+            if (deviceId != null)
+            {
+                message.setConnectionDeviceId(deviceId);
+            }
+        }
+
+        logger.LogInfo("Batch of %d messages along with callback and callbackcontext is added to the queue, method name is %s ", messages.size(), logger.getLazyMethodName());
+        transport.addMessages(messages, callback, callbackContext);
+    }
+
     /**
      * Getter for the receive period in milliseconds.
      *
@@ -326,7 +458,7 @@ public final class DeviceIO
         this.receivePeriodInMilliseconds = newIntervalInMilliseconds;
 
         /* Codes_SRS_DEVICE_IO_21_028: [If the task scheduler already exists, the setReceivePeriodInMilliseconds shall change the `scheduleAtFixedRate` for the receiveTask to the new value.] */
-        if(this.taskScheduler != null)
+        if(this.taskScheduler != null && this.eventDrivenReceiveTask == null)
         {
             /* Codes_SRS_DEVICE_IO_21_029: [If the `receiveTask` is null, the setReceivePeriodInMilliseconds shall throw IOException.] */
             if(this.receiveTask == null)
@@ -369,7 +501,7 @@ public final class DeviceIO
         this.sendPeriodInMilliseconds = newIntervalInMilliseconds;
 
         /* Codes_SRS_DEVICE_IO_21_034: [If the task scheduler already exists, the setSendPeriodInMilliseconds shall change the `scheduleAtFixedRate` for the sendTask to the new value.] */
-        if(this.taskScheduler != null)
+        if(this.taskScheduler != null && this.eventDrivenSendTask == null)
         {
             /* Codes_SRS_DEVICE_IO_21_035: [If the `sendTask` is null, the setSendPeriodInMilliseconds shall throw IOException.] */
             if(this.sendTask == null)
@@ -414,6 +546,26 @@ public final class DeviceIO
         return this.transport.isEmpty();
     }
 
+    /**
+     * Getter for the occupancy of the MQTT in-flight window.
+     * @return the number of MQTT publishes awaiting a PUBACK, or 0 if the connection is closed or is not MQTT.
+     */
+    public int getMqttInFlightMessageCount()
+    {
+        /* Codes_SRS_DEVICE_IO_12_030: [The getMqttInFlightMessageCount shall return the in-flight message count of the transport.] */
+        return this.transport.getMqttInFlightMessageCount();
+    }
+
+    /**
+     * Getter for the number of MQTT publishes waiting for a slot of the in-flight window.
+     * @return the number of queued publishes, or 0 if the connection is closed or is not MQTT.
+     */
+    public int getMqttQueuedPublishCount()
+    {
+        /* Codes_SRS_DEVICE_IO_12_031: [The getMqttQueuedPublishCount shall return the queued publish count of the transport.] */
+        return this.transport.getMqttQueuedPublishCount();
+    }
+
     /**
      * Registers a callback with the configured transport to be executed whenever the connection to the device is lost or established.
      *
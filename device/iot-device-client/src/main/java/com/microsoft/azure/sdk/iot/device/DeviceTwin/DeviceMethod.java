@@ -7,14 +7,39 @@ import com.microsoft.azure.sdk.iot.deps.serializer.MethodParser;
 import com.microsoft.azure.sdk.iot.device.*;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubTransportMessage;
 
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
 public final class DeviceMethod
 {
+    // the longest response timeout the IoT Hub accepts for a direct method invocation
+    private static final long DEFAULT_ASYNC_RESPONSE_TIMEOUT_MILLIS = 300 * 1000;
+    private static final int ASYNC_RESPONSE_TIMEOUT_STATUS = 504;
+    private static final long TIMEOUT_THREAD_KEEP_ALIVE_SECONDS = 60;
+
     private DeviceMethodCallback deviceMethodCallback;
+    private DeviceMethodAsyncCallback deviceMethodAsyncCallback;
     private Object deviceMethodCallbackContext;
     private IotHubEventCallback deviceMethodStatusCallback;
     private Object deviceMethodStatusCallbackContext;
     private final ObjectLock DEVICE_METHOD_LOCK = new ObjectLock();
 
+    // Asynchronous invocations in progress, limits and invocations waiting for a free slot, per method name.
+    // Guarded by DEVICE_METHOD_LOCK.
+    private final Map<String, Integer> maxConcurrentInvocations = new HashMap<>();
+    private final Map<String, Integer> activeInvocations = new HashMap<>();
+    private final Map<String, Queue<DeviceMethodResponder>> pendingInvocations = new HashMap<>();
+    private final Set<String> drainingMethods = new HashSet<>();
+    private long asyncResponseTimeoutMillis = DEFAULT_ASYNC_RESPONSE_TIMEOUT_MILLIS;
+    private ScheduledThreadPoolExecutor responseTimeoutScheduler;
+
     private boolean isSubscribed = false;
 
     private DeviceIO deviceIO;
@@ -24,88 +49,75 @@ public final class DeviceMethod
 
     private final class deviceMethodResponseCallback implements MessageCallback
     {
-        DeviceClientConfig nestedConfig = config;
-
         /*
         **Codes_SRS_DEVICEMETHOD_25_007: [**On receiving a message from IOTHub with for method invoke, the callback DeviceMethodResponseMessageCallback is triggered.**]**
          */
         @Override
         public IotHubMessageResult execute(Message message, Object callbackContext)
         {
-            synchronized (DEVICE_METHOD_LOCK)
+            IotHubStatusCode iotHubStatus = IotHubStatusCode.ERROR;
+            IotHubMessageResult result = IotHubMessageResult.ABANDON;
+
+            if (message.getMessageType() != MessageType.DEVICE_METHODS)
             {
-                IotHubStatusCode iotHubStatus = IotHubStatusCode.ERROR;
-                IotHubMessageResult result = IotHubMessageResult.ABANDON;
+                /*
+                **Codes_SRS_DEVICEMETHOD_25_009: [**If the received message is not of type DeviceMethod and DEVICE_OPERATION_METHOD_RECEIVE_REQUEST then user shall be notified on the status callback registered by the user as ERROR before marking the status of the sent message as Abandon **]**
+                 */
+                logger.LogError("Unexpected message type received");
+                deviceMethodStatusCallback.execute(iotHubStatus, deviceMethodStatusCallbackContext);
+                return IotHubMessageResult.ABANDON;
+            }
 
-                if (message.getMessageType() != MessageType.DEVICE_METHODS)
-                {
-                    /*
-                    **Codes_SRS_DEVICEMETHOD_25_009: [**If the received message is not of type DeviceMethod and DEVICE_OPERATION_METHOD_RECEIVE_REQUEST then user shall be notified on the status callback registered by the user as ERROR before marking the status of the sent message as Abandon **]**
-                     */
-                    logger.LogError("Unexpected message type received");
-                    deviceMethodStatusCallback.execute(iotHubStatus, deviceMethodStatusCallbackContext);
-                    return IotHubMessageResult.ABANDON;
-                }
+            IotHubTransportMessage methodMessage = (IotHubTransportMessage) message;
 
-                IotHubTransportMessage methodMessage = (IotHubTransportMessage) message;
+            switch (methodMessage.getDeviceOperationType())
+            {
+                case DEVICE_OPERATION_METHOD_RECEIVE_REQUEST:
 
-                switch (methodMessage.getDeviceOperationType())
-                {
-                    case DEVICE_OPERATION_METHOD_RECEIVE_REQUEST:
+                    // the lock only guards the subscription state; user callbacks run outside of it so that
+                    // several methods can execute at the same time
+                    DeviceMethodCallback methodCallback;
+                    DeviceMethodAsyncCallback methodAsyncCallback;
+                    Object methodCallbackContext;
+                    synchronized (DEVICE_METHOD_LOCK)
+                    {
+                        methodCallback = deviceMethodCallback;
+                        methodAsyncCallback = deviceMethodAsyncCallback;
+                        methodCallbackContext = deviceMethodCallbackContext;
+                        if ((methodCallback != null || methodAsyncCallback != null) && !isSubscribed)
+                        {
+                            isSubscribed = true;
+                        }
+                    }
 
-                        if (deviceMethodCallback != null)
+                    if (methodAsyncCallback != null)
+                    {
+                        /*
+                        **Codes_SRS_DEVICEMETHOD_12_001: [**If an asynchronous device method callback is subscribed, this method shall start or queue the invocation with a responder that carries the request id, and mark the result as complete without waiting for the response.**]**
+                         */
+                        startOrQueueInvocation(new DeviceMethodResponder(DeviceMethod.this, methodMessage.getMethodName(),
+                                methodMessage.getRequestId(), methodMessage.getBytes(), methodCallbackContext));
+                        result = IotHubMessageResult.COMPLETE;
+                    }
+                    else if (methodCallback != null)
+                    {
+                        try
                         {
-                            if (!isSubscribed)
+                            /*
+                            **Codes_SRS_DEVICEMETHOD_25_008: [**If the message is of type DeviceMethod and DEVICE_OPERATION_METHOD_RECEIVE_REQUEST then user registered device method callback gets invoked providing the user with method name and payload along with the user context. **]**
+                             */
+                            DeviceMethodData responseData = methodCallback.call(methodMessage.getMethodName(), methodMessage.getBytes(), methodCallbackContext);
+                            /*
+                            **Codes_SRS_DEVICEMETHOD_25_010: [**User is expected to provide response message and status upon invoking the device method callback.**]**
+                             */
+                            if (responseData != null)
                             {
-                                isSubscribed = true;
+                                sendMethodResponse(methodMessage.getRequestId(), responseData);
+                                result = IotHubMessageResult.COMPLETE;
                             }
-                            try
+                            else
                             {
-                                /*
-                                **Codes_SRS_DEVICEMETHOD_25_008: [**If the message is of type DeviceMethod and DEVICE_OPERATION_METHOD_RECEIVE_REQUEST then user registered device method callback gets invoked providing the user with method name and payload along with the user context. **]**
-                                 */
-                                DeviceMethodData responseData = deviceMethodCallback.call(methodMessage.getMethodName(), methodMessage.getBytes(), deviceMethodCallbackContext);
-                                /*
-                                **Codes_SRS_DEVICEMETHOD_25_010: [**User is expected to provide response message and status upon invoking the device method callback.**]**
-                                 */
-                                if (responseData != null)
-                                {
-                                    /*
-                                    **Codes_SRS_DEVICEMETHOD_25_011: [**If the user callback is successful and user has successfully provided the response message and status, then this method shall build a device method message of type DEVICE_OPERATION_METHOD_SEND_RESPONSE, serilize the user data by invoking MethodParser from serializer and save the user data as payload in the message before sending it to IotHub via sendeventAsync before marking the result as complete**]**
-                                    **Codes_SRS_DEVICEMETHOD_25_015: [**User can provide null response message upon invoking the device method callback which will be serialized as is, before sending it to IotHub.**]**
-                                     */
-                                    MethodParser methodParserObject = new MethodParser(responseData.getResponseMessage());
-                                    IotHubTransportMessage responseMessage = new IotHubTransportMessage(methodParserObject.toJson().getBytes(), MessageType.DEVICE_METHODS);
-                                    /*
-                                    **Codes_SRS_DEVICEMETHOD_25_012: [**The device method message sent to IotHub shall have same the request id as the invoking message.**]**
-                                     */
-                                    responseMessage.setRequestId(methodMessage.getRequestId());
-
-                                    // Codes_SRS_DEVICEMETHOD_34_016: [The device method message sent to IotHub shall have the sending device's id set as the connection device id.]
-                                    responseMessage.setConnectionDeviceId(this.nestedConfig.getDeviceId());
-
-                                    /*
-                                    **Codes_SRS_DEVICEMETHOD_25_013: [**The device method message sent to IotHub shall have the status provided by the user as the message status.**]**
-                                     */
-                                    responseMessage.setStatus(String.valueOf(responseData.getStatus()));
-                                    responseMessage.setDeviceOperationType(DeviceOperations.DEVICE_OPERATION_METHOD_SEND_RESPONSE);
-
-                                    deviceIO.sendEventAsync(responseMessage, new deviceMethodRequestMessageCallback(), null, nestedConfig.getDeviceId());
-                                    result = IotHubMessageResult.COMPLETE;
-                                }
-                                else
-                                {
-                                    logger.LogInfo("User callback did not send any data for response");
-                                    result = IotHubMessageResult.REJECT;
-                                    /*
-                                    **Codes_SRS_DEVICEMETHOD_25_014: [**If the user invoked callback failed for any reason then the user shall be notified on the status callback registered by the user as ERROR before marking the status of the sent message as Rejected.**]**
-                                     */
-                                    deviceMethodStatusCallback.execute(iotHubStatus, deviceMethodStatusCallbackContext);
-                                }
-                            }
-                            catch (Exception e)
-                            {
-                                logger.LogInfo("User callback did not succeed");
+                                logger.LogInfo("User callback did not send any data for response");
                                 result = IotHubMessageResult.REJECT;
                                 /*
                                 **Codes_SRS_DEVICEMETHOD_25_014: [**If the user invoked callback failed for any reason then the user shall be notified on the status callback registered by the user as ERROR before marking the status of the sent message as Rejected.**]**
@@ -113,19 +125,28 @@ public final class DeviceMethod
                                 deviceMethodStatusCallback.execute(iotHubStatus, deviceMethodStatusCallbackContext);
                             }
                         }
-                        else
+                        catch (Exception e)
                         {
-                            logger.LogInfo("Received device method request, but device has not setup device method");
+                            logger.LogInfo("User callback did not succeed");
+                            result = IotHubMessageResult.REJECT;
+                            /*
+                            **Codes_SRS_DEVICEMETHOD_25_014: [**If the user invoked callback failed for any reason then the user shall be notified on the status callback registered by the user as ERROR before marking the status of the sent message as Rejected.**]**
+                             */
+                            deviceMethodStatusCallback.execute(iotHubStatus, deviceMethodStatusCallbackContext);
                         }
-                        break;
-
-                    default:
-                        logger.LogError("Received unknown type message for device methods");
-                        break;
-                }
+                    }
+                    else
+                    {
+                        logger.LogInfo("Received device method request, but device has not setup device method");
+                    }
+                    break;
 
-                return result;
+                default:
+                    logger.LogError("Received unknown type message for device methods");
+                    break;
             }
+
+            return result;
         }
     }
 
@@ -142,6 +163,277 @@ public final class DeviceMethod
         }
     }
 
+    /**
+     * Sends the response of a device method invocation to the IoT Hub.
+     * @param requestId the request id of the invocation being answered
+     * @param responseData the status and payload provided by the user
+     */
+    private void sendMethodResponse(String requestId, DeviceMethodData responseData)
+    {
+        /*
+        **Codes_SRS_DEVICEMETHOD_25_011: [**If the user callback is successful and user has successfully provided the response message and status, then this method shall build a device method message of type DEVICE_OPERATION_METHOD_SEND_RESPONSE, serilize the user data by invoking MethodParser from serializer and save the user data as payload in the message before sending it to IotHub via sendeventAsync before marking the result as complete**]**
+        **Codes_SRS_DEVICEMETHOD_25_015: [**User can provide null response message upon invoking the device method callback which will be serialized as is, before sending it to IotHub.**]**
+         */
+        MethodParser methodParserObject = new MethodParser(responseData.getResponseMessage());
+        IotHubTransportMessage responseMessage = new IotHubTransportMessage(methodParserObject.toJson().getBytes(), MessageType.DEVICE_METHODS);
+        /*
+        **Codes_SRS_DEVICEMETHOD_25_012: [**The device method message sent to IotHub shall have same the request id as the invoking message.**]**
+         */
+        responseMessage.setRequestId(requestId);
+
+        // Codes_SRS_DEVICEMETHOD_34_016: [The device method message sent to IotHub shall have the sending device's id set as the connection device id.]
+        responseMessage.setConnectionDeviceId(this.config.getDeviceId());
+
+        /*
+        **Codes_SRS_DEVICEMETHOD_25_013: [**The device method message sent to IotHub shall have the status provided by the user as the message status.**]**
+         */
+        responseMessage.setStatus(String.valueOf(responseData.getStatus()));
+        responseMessage.setDeviceOperationType(DeviceOperations.DEVICE_OPERATION_METHOD_SEND_RESPONSE);
+
+        this.deviceIO.sendEventAsync(responseMessage, new deviceMethodRequestMessageCallback(), null, this.config.getDeviceId());
+    }
+
+    /**
+     * Queues an asynchronous invocation and starts it right away if its method has a free slot.
+     * @param responder the responder of the invocation
+     */
+    private void startOrQueueInvocation(DeviceMethodResponder responder)
+    {
+        String methodName = responder.getMethodName();
+        synchronized (DEVICE_METHOD_LOCK)
+        {
+            /*
+            **Codes_SRS_DEVICEMETHOD_12_002: [**If the method already runs as many invocations as its concurrency limit, the invocation shall wait until one of them responds.**]**
+             */
+            Queue<DeviceMethodResponder> pending = this.pendingInvocations.get(methodName);
+            if (pending == null)
+            {
+                pending = new ArrayDeque<>();
+                this.pendingInvocations.put(methodName, pending);
+            }
+            pending.add(responder);
+        }
+
+        this.drainPendingInvocations(methodName);
+    }
+
+    /**
+     * Starts the waiting invocations of a method, oldest first, while the method has free slots. Only one thread
+     * drains a method at a time: a slot released meanwhile, for example by a responder that answers before its
+     * callback returns, is picked up by the loop that is already running, so the stack does not grow with the
+     * number of waiting invocations.
+     * @param methodName the name of the method
+     */
+    private void drainPendingInvocations(String methodName)
+    {
+        synchronized (DEVICE_METHOD_LOCK)
+        {
+            if (!this.drainingMethods.add(methodName))
+            {
+                return;
+            }
+        }
+
+        boolean isDrained = false;
+        try
+        {
+            while (true)
+            {
+                DeviceMethodResponder next;
+                synchronized (DEVICE_METHOD_LOCK)
+                {
+                    Queue<DeviceMethodResponder> pending = this.pendingInvocations.get(methodName);
+                    Integer limit = this.maxConcurrentInvocations.get(methodName);
+                    int active = this.getActiveInvocations(methodName);
+                    if (pending == null || (limit != null && active >= limit))
+                    {
+                        this.drainingMethods.remove(methodName);
+                        isDrained = true;
+                        return;
+                    }
+
+                    next = pending.poll();
+                    if (pending.isEmpty())
+                    {
+                        this.pendingInvocations.remove(methodName);
+                    }
+
+                    this.activeInvocations.put(methodName, active + 1);
+                }
+
+                /*
+                **Codes_SRS_DEVICEMETHOD_12_006: [**When an invocation finishes, the oldest invocation waiting for the same method shall be started in its slot.**]**
+                 */
+                this.invokeAsyncCallback(next);
+            }
+        }
+        finally
+        {
+            if (!isDrained)
+            {
+                synchronized (DEVICE_METHOD_LOCK)
+                {
+                    this.drainingMethods.remove(methodName);
+                }
+            }
+        }
+    }
+
+    private void invokeAsyncCallback(DeviceMethodResponder responder)
+    {
+        DeviceMethodAsyncCallback methodAsyncCallback;
+        long responseTimeoutMillis;
+        synchronized (DEVICE_METHOD_LOCK)
+        {
+            methodAsyncCallback = this.deviceMethodAsyncCallback;
+            responseTimeoutMillis = this.asyncResponseTimeoutMillis;
+        }
+
+        try
+        {
+            if (methodAsyncCallback == null)
+            {
+                throw new IllegalStateException("The asynchronous device method callback was replaced");
+            }
+
+            this.scheduleResponseTimeout(responder, responseTimeoutMillis);
+            methodAsyncCallback.call(responder.getMethodName(), responder.getMethodData(), responder.getContext(), responder);
+        }
+        catch (Exception e)
+        {
+            /*
+            **Codes_SRS_DEVICEMETHOD_12_003: [**If the asynchronous callback throws before responding, the user shall be notified on the status callback as ERROR and the invocation shall free its slot.**]**
+             */
+            logger.LogInfo("User callback did not succeed");
+            if (responder.markResponded())
+            {
+                responder.cancelResponseTimeout();
+                this.deviceMethodStatusCallback.execute(IotHubStatusCode.ERROR, this.deviceMethodStatusCallbackContext);
+                this.releaseInvocation(responder.getMethodName());
+            }
+        }
+    }
+
+    private void scheduleResponseTimeout(final DeviceMethodResponder responder, long responseTimeoutMillis)
+    {
+        synchronized (DEVICE_METHOD_LOCK)
+        {
+            if (this.responseTimeoutScheduler == null)
+            {
+                // the timer thread stops while no invocation is running, so the scheduler never needs to be shut down
+                this.responseTimeoutScheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory()
+                {
+                    @Override
+                    public Thread newThread(Runnable runnable)
+                    {
+                        Thread thread = new Thread(runnable, "azure-iot-sdk-DeviceMethodResponseTimeout");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+                this.responseTimeoutScheduler.setKeepAliveTime(TIMEOUT_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+                this.responseTimeoutScheduler.allowCoreThreadTimeOut(true);
+                this.responseTimeoutScheduler.setRemoveOnCancelPolicy(true);
+            }
+
+            responder.setResponseTimeout(this.responseTimeoutScheduler.schedule(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    onAsyncResponseTimeout(responder);
+                }
+            }, responseTimeoutMillis, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    /**
+     * Answers an asynchronous invocation that was not answered in time with an error, and frees its slot.
+     * @param responder the responder of the invocation
+     */
+    private void onAsyncResponseTimeout(DeviceMethodResponder responder)
+    {
+        if (!responder.markResponded())
+        {
+            return;
+        }
+
+        /*
+        **Codes_SRS_DEVICEMETHOD_12_010: [**If the user does not respond to an asynchronous invocation within the response timeout, this method shall send a response with status 504 and free the slot of the invocation.**]**
+         */
+        logger.LogWarn("The invocation %s of method %s was not answered in time, method name is %s ",
+                responder.getRequestId(), responder.getMethodName(), logger.getLazyMethodName());
+        try
+        {
+            this.sendMethodResponse(responder.getRequestId(), new DeviceMethodData(ASYNC_RESPONSE_TIMEOUT_STATUS,
+                    "The device did not respond to the method invocation in time"));
+        }
+        finally
+        {
+            this.releaseInvocation(responder.getMethodName());
+        }
+    }
+
+    /**
+     * Completes an asynchronous invocation. Called once per invocation by its responder.
+     * @param responder the responder of the invocation
+     * @param responseData the response provided by the user, or null if the invocation failed
+     */
+    void onAsyncResponse(DeviceMethodResponder responder, DeviceMethodData responseData)
+    {
+        responder.cancelResponseTimeout();
+        try
+        {
+            if (responseData != null)
+            {
+                /*
+                **Codes_SRS_DEVICEMETHOD_12_004: [**When the user responds to an asynchronous invocation, this method shall send the response with the request id of that invocation.**]**
+                 */
+                this.sendMethodResponse(responder.getRequestId(), responseData);
+            }
+            else
+            {
+                /*
+                **Codes_SRS_DEVICEMETHOD_12_005: [**If the user responds with null, the user shall be notified on the status callback as ERROR and no response shall be sent.**]**
+                 */
+                logger.LogInfo("User callback did not send any data for response");
+                this.deviceMethodStatusCallback.execute(IotHubStatusCode.ERROR, this.deviceMethodStatusCallbackContext);
+            }
+        }
+        finally
+        {
+            this.releaseInvocation(responder.getMethodName());
+        }
+    }
+
+    /**
+     * Frees the slot of a finished invocation and starts the next waiting invocation of the same method, if any.
+     * @param methodName the name of the method whose invocation finished
+     */
+    private void releaseInvocation(String methodName)
+    {
+        synchronized (DEVICE_METHOD_LOCK)
+        {
+            int active = this.getActiveInvocations(methodName) - 1;
+            if (active > 0)
+            {
+                this.activeInvocations.put(methodName, active);
+            }
+            else
+            {
+                this.activeInvocations.remove(methodName);
+            }
+        }
+
+        this.drainPendingInvocations(methodName);
+    }
+
+    private int getActiveInvocations(String methodName)
+    {
+        Integer active = this.activeInvocations.get(methodName);
+        return active == null ? 0 : active;
+    }
+
     /**
      * This constructor creates an instance of device method class which helps facilitate the interation for device methods
      * between the user and IotHub.
@@ -200,9 +492,103 @@ public final class DeviceMethod
             throw new IllegalArgumentException("Callback cannot be null");
         }
 
-        this.deviceMethodCallback = deviceMethodCallback;
-        this.deviceMethodCallbackContext = deviceMethodCallbackContext;
+        synchronized (DEVICE_METHOD_LOCK)
+        {
+            this.deviceMethodCallback = deviceMethodCallback;
+            this.deviceMethodAsyncCallback = null;
+            this.deviceMethodCallbackContext = deviceMethodCallbackContext;
+        }
+
+        this.subscribe();
+    }
+
+    /**
+     * A method which subscribes to receive device method invocations for the user with the IotHub, handled by an
+     * asynchronous callback. The callback is expected to return quickly and to answer each invocation through the
+     * provided {@link DeviceMethodResponder}, possibly from another thread, so that several invocations can run at
+     * the same time.
+     * @param deviceMethodAsyncCallback Callback where upon receiving the request the
+     *                                  invoke a method shall be triggered.
+     * @param deviceMethodCallbackContext Context to be passed on when invoking the
+     *                                    callback.
+     * @throws IllegalArgumentException This exception is thrown when deviceMethodAsyncCallback is provided null.
+     */
+    public void subscribeToDeviceMethodAsync(DeviceMethodAsyncCallback deviceMethodAsyncCallback, Object deviceMethodCallbackContext) throws IllegalArgumentException
+    {
+        if (deviceMethodAsyncCallback == null)
+        {
+            /*
+            **Codes_SRS_DEVICEMETHOD_12_007: [**If deviceMethodAsyncCallback parameter is null then this method shall throw IllegalArgumentException**]**
+             */
+            throw new IllegalArgumentException("Callback cannot be null");
+        }
+
+        synchronized (DEVICE_METHOD_LOCK)
+        {
+            this.deviceMethodAsyncCallback = deviceMethodAsyncCallback;
+            this.deviceMethodCallback = null;
+            this.deviceMethodCallbackContext = deviceMethodCallbackContext;
+        }
+
+        this.subscribe();
+    }
+
+    /**
+     * Limits how many invocations of a method handled by an asynchronous callback may run at the same time.
+     * Invocations beyond the limit wait, in the order they were received, until a running one responds.
+     * @param methodName the name of the method to limit
+     * @param maxConcurrentInvocations the maximum number of concurrent invocations. Must be greater than 0
+     * @throws IllegalArgumentException if the method name is null or empty, or the limit is less than 1
+     */
+    public void setMaxConcurrentInvocations(String methodName, int maxConcurrentInvocations) throws IllegalArgumentException
+    {
+        if (methodName == null || methodName.isEmpty())
+        {
+            /*
+            **Codes_SRS_DEVICEMETHOD_12_008: [**If the method name is null or empty, or the limit is less than 1, this method shall throw IllegalArgumentException**]**
+             */
+            throw new IllegalArgumentException("Method name cannot be null or empty");
+        }
+
+        if (maxConcurrentInvocations < 1)
+        {
+            throw new IllegalArgumentException("The maximum number of concurrent invocations must be at least 1");
+        }
+
+        synchronized (DEVICE_METHOD_LOCK)
+        {
+            /*
+            **Codes_SRS_DEVICEMETHOD_12_009: [**This method shall save the limit for the method name. Running invocations are not affected.**]**
+             */
+            this.maxConcurrentInvocations.put(methodName, maxConcurrentInvocations);
+        }
+    }
+
+    /**
+     * Sets how long an asynchronous callback may take to answer an invocation. An invocation that is not answered
+     * in time is answered with status 504 and frees its slot, and answering it later throws. The time spent waiting
+     * for a free slot does not count. The default is 300 seconds, the longest response timeout the IoT Hub accepts.
+     * @param responseTimeoutMillis the time allowed to respond, in milliseconds. Must be greater than 0
+     * @throws IllegalArgumentException if the timeout is less than 1
+     */
+    public void setAsyncResponseTimeout(long responseTimeoutMillis) throws IllegalArgumentException
+    {
+        if (responseTimeoutMillis < 1)
+        {
+            /*
+            **Codes_SRS_DEVICEMETHOD_12_011: [**If the timeout is less than 1, this method shall throw IllegalArgumentException. Otherwise it applies to the invocations started afterwards.**]**
+             */
+            throw new IllegalArgumentException("The response timeout must be greater than 0");
+        }
+
+        synchronized (DEVICE_METHOD_LOCK)
+        {
+            this.asyncResponseTimeoutMillis = responseTimeoutMillis;
+        }
+    }
 
+    private void subscribe()
+    {
         if (!isSubscribed)
         {
             /*
@@ -0,0 +1,20 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.DeviceTwin;
+
+/**
+ * Handles device method invocations without blocking the thread that receives them. Implementations return
+ * immediately and answer each invocation later through its {@link DeviceMethodResponder}, from any thread.
+ */
+public interface DeviceMethodAsyncCallback
+{
+    /**
+     * Called when the IoT Hub invokes a method on this device.
+     * @param methodName the name of the invoked method
+     * @param methodData the payload of the invocation
+     * @param context the context passed when subscribing
+     * @param responder the object to send the response of this invocation with
+     */
+    void call(String methodName, Object methodData, Object context, DeviceMethodResponder responder);
+}
@@ -0,0 +1,97 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.DeviceTwin;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sends the response of one device method invocation handled by a {@link DeviceMethodAsyncCallback}. The response
+ * carries the request id of that invocation, so invocations may be answered in any order.
+ */
+public final class DeviceMethodResponder
+{
+    private final DeviceMethod deviceMethod;
+    private final String methodName;
+    private final String requestId;
+    private final Object methodData;
+    private final Object context;
+    private final AtomicBoolean isResponded = new AtomicBoolean();
+    private volatile Future<?> responseTimeout;
+
+    DeviceMethodResponder(DeviceMethod deviceMethod, String methodName, String requestId, Object methodData, Object context)
+    {
+        this.deviceMethod = deviceMethod;
+        this.methodName = methodName;
+        this.requestId = requestId;
+        this.methodData = methodData;
+        this.context = context;
+    }
+
+    /**
+     * Sends the response of the invocation to the IoT Hub.
+     * @param responseData the status and payload of the response, or null if the invocation failed, in which case
+     *                     no response is sent and the device method status callback is notified with ERROR
+     * @throws IllegalStateException if the invocation was already answered, or was answered with an error because
+     * it was not answered within the response timeout
+     */
+    public void respond(DeviceMethodData responseData) throws IllegalStateException
+    {
+        if (!this.markResponded())
+        {
+            //Codes_SRS_DEVICEMETHODRESPONDER_12_001: [If the invocation was already answered, the function shall throw an IllegalStateException.]
+            throw new IllegalStateException("The invocation " + this.requestId + " was already answered");
+        }
+
+        //Codes_SRS_DEVICEMETHODRESPONDER_12_002: [The function shall complete the invocation with the provided response.]
+        this.deviceMethod.onAsyncResponse(this, responseData);
+    }
+
+    /**
+     * Getter for the method name
+     * @return the name of the invoked method
+     */
+    public String getMethodName()
+    {
+        return this.methodName;
+    }
+
+    /**
+     * Getter for the request id
+     * @return the request id of the invocation, which the response is correlated with
+     */
+    public String getRequestId()
+    {
+        return this.requestId;
+    }
+
+    Object getMethodData()
+    {
+        return this.methodData;
+    }
+
+    Object getContext()
+    {
+        return this.context;
+    }
+
+    boolean markResponded()
+    {
+        return this.isResponded.compareAndSet(false, true);
+    }
+
+    void setResponseTimeout(Future<?> responseTimeout)
+    {
+        this.responseTimeout = responseTimeout;
+    }
+
+    void cancelResponseTimeout()
+    {
+        Future<?> timeout = this.responseTimeout;
+        if (timeout != null)
+        {
+            timeout.cancel(false);
+        }
+    }
+}
@@ -8,12 +8,14 @@ package com.microsoft.azure.sdk.iot.device;
 import com.microsoft.azure.sdk.iot.device.DeviceTwin.*;
 import com.microsoft.azure.sdk.iot.device.auth.IotHubAuthenticationProvider;
 import com.microsoft.azure.sdk.iot.device.exceptions.TransportException;
+import com.microsoft.azure.sdk.iot.device.transport.OfflineMessageStoreSettings;
 import com.microsoft.azure.sdk.iot.device.transport.RetryPolicy;
 import com.microsoft.azure.sdk.iot.provisioning.security.SecurityProvider;
 
 import java.io.IOError;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -26,6 +28,11 @@ public class InternalClient
     static final String SET_CERTIFICATE_PATH = "SetCertificatePath";
 	static final String SET_CERTIFICATE_AUTHORITY = "SetCertificateAuthority";
     static final String SET_SAS_TOKEN_EXPIRY_TIME = "SetSASTokenExpiryTime";
+    static final String SET_EVENT_DRIVEN_SEND = "SetEventDrivenSend";
+    static final String SET_OFFLINE_MESSAGE_STORE = "SetOfflineMessageStore";
+    static final String SET_EVENT_DRIVEN_RECEIVE = "SetEventDrivenReceive";
+    static final String SET_RECEIVE_BATCH_SIZE = "SetReceiveBatchSize";
+    static final String SET_MESSAGE_CALLBACK_CONCURRENCY = "SetMessageCallbackConcurrency";
 
     DeviceClientConfig config;
     DeviceIO deviceIO;
@@ -169,6 +176,25 @@ public class InternalClient
         deviceIO.sendEventAsync(message, callback, callbackContext, this.config.getDeviceId());
     }
 
+    /**
+     * Asynchronously sends a batch of event messages to the IoT Hub. Over HTTPS, the messages are sent in as few
+     * requests as the service batch size limit allows. Over AMQPS and MQTT, they are sent as one burst.
+     *
+     * @param messages the messages to be sent.
+     * @param callback the callback to be invoked once for each message when its response is received.
+     * Can be {@code null}.
+     * @param callbackContext a context to be passed to the callback. Can be
+     * {@code null} if no callback is provided.
+     *
+     * @throws IllegalArgumentException if the list of messages is {@code null}, empty, or contains a {@code null} message.
+     * @throws IllegalStateException if the client has not been opened yet or is
+     * already closed.
+     */
+    public void sendEventBatchAsync(List<Message> messages, IotHubEventCallback callback, Object callbackContext)
+    {
+        deviceIO.sendEventBatchAsync(messages, callback, callbackContext, this.config.getDeviceId());
+    }
+
     /**
      * Subscribes to desired properties
      *
@@ -357,6 +383,28 @@ public class InternalClient
      *         option will restart the transport with the updated expiry time, and
      *         will use that expiry time length for all subsequently generated sas tokens.
      *         The value is expected to be of type {@code long}.
+     *      - <b>SetOfflineMessageStore</b> - this option is applicable for HTTP/
+     *         AMQP/MQTT and only while the client is closed. Outgoing telemetry is
+     *         written to the configured directory and kept there until the IoT Hub
+     *         acknowledges it, so that it is sent after connection losses and process
+     *         restarts. The value is expected to be of type
+     *         {@code OfflineMessageStoreSettings}.
+     *      - <b>SetEventDrivenReceive</b> - this option is applicable for
+     *         AMQP/MQTT and only while the client is closed. When {@code true},
+     *         received messages are dispatched to the message callbacks as soon
+     *         as they arrive by a dedicated receiver thread, instead of being
+     *         polled every receive interval. The value is expected to be of type
+     *         {@code boolean}.
+     *      - <b>SetReceiveBatchSize</b> - this option is applicable for HTTP/
+     *         AMQP/MQTT and only while the client is closed. This option specifies
+     *         the maximum number of received messages dispatched per pass of the
+     *         receiver. The value is expected to be of type {@code int}.
+     *      - <b>SetMessageCallbackConcurrency</b> - this option is applicable for
+     *         HTTP/AMQP/MQTT and only while the client is closed. This option specifies
+     *         the maximum number of message callbacks that may run at the same time.
+     *         Callbacks for the same input, method or twin still run one at a time,
+     *         in the order the messages were received. The value is expected to be
+     *         of type {@code int}.
      *
      * @param optionName the option name to modify
      * @param value an object of the appropriate type for the option's value
@@ -447,6 +495,56 @@ public class InternalClient
                     setOption_SetSASTokenExpiryTime(value);
                     break;
                 }
+                case SET_EVENT_DRIVEN_SEND:
+                {
+                    if (this.deviceIO.isOpen())
+                    {
+                        throw new IllegalStateException("setOption " + SET_EVENT_DRIVEN_SEND + " only works when the transport is closed");
+                    }
+
+                    setOption_SetEventDrivenSend(value);
+                    break;
+                }
+                case SET_OFFLINE_MESSAGE_STORE:
+                {
+                    if (this.deviceIO.isOpen())
+                    {
+                        throw new IllegalStateException("setOption " + SET_OFFLINE_MESSAGE_STORE + " only works when the transport is closed");
+                    }
+
+                    setOption_SetOfflineMessageStore(value);
+                    break;
+                }
+                case SET_EVENT_DRIVEN_RECEIVE:
+                {
+                    if (this.deviceIO.isOpen())
+                    {
+                        throw new IllegalStateException("setOption " + SET_EVENT_DRIVEN_RECEIVE + " only works when the transport is closed");
+                    }
+
+                    setOption_SetEventDrivenReceive(value);
+                    break;
+                }
+                case SET_RECEIVE_BATCH_SIZE:
+                {
+                    if (this.deviceIO.isOpen())
+                    {
+                        throw new IllegalStateException("setOption " + SET_RECEIVE_BATCH_SIZE + " only works when the transport is closed");
+                    }
+
+                    setOption_SetReceiveBatchSize(value);
+                    break;
+                }
+                case SET_MESSAGE_CALLBACK_CONCURRENCY:
+                {
+                    if (this.deviceIO.isOpen())
+                    {
+                        throw new IllegalStateException("setOption " + SET_MESSAGE_CALLBACK_CONCURRENCY + " only works when the transport is closed");
+                    }
+
+                    setOption_SetMessageCallbackConcurrency(value);
+                    break;
+                }
                 default:
                 {
                     throw new IllegalArgumentException("optionName is unknown = " + optionName);
@@ -622,6 +720,79 @@ public class InternalClient
         this.method.subscribeToDeviceMethod(methodCallback, methodCallbackContext);
     }
 
+    /**
+     * Subscribes to methods, handled by an asynchronous callback that answers each invocation through a
+     * {@link DeviceMethodResponder}.
+     *
+     * @param methodAsyncCallback Callback on which methods shall be invoked. Cannot be {@code null}.
+     * @param methodCallbackContext Context for method callback. Can be {@code null}.
+     * @param methodStatusCallback Callback for providing IotHub status for methods. Cannot be {@code null}.
+     * @param methodStatusCallbackContext Context for method status callback. Can be {@code null}.
+     *
+     * @throws IOException if called when client is not opened.
+     * @throws IllegalArgumentException if either callback are null.
+     */
+    void subscribeToMethodsAsyncInternal(DeviceMethodAsyncCallback methodAsyncCallback, Object methodCallbackContext,
+                                         IotHubEventCallback methodStatusCallback, Object methodStatusCallbackContext)
+            throws IOException
+    {
+        if (!this.deviceIO.isOpen())
+        {
+            throw new IOException("Open the client connection before using it.");
+        }
+
+        if (methodAsyncCallback == null || methodStatusCallback == null)
+        {
+            throw new IllegalArgumentException("Callback cannot be null");
+        }
+
+        if (this.method == null)
+        {
+            this.method = new DeviceMethod(this.deviceIO, this.config, methodStatusCallback, methodStatusCallbackContext);
+        }
+
+        this.method.subscribeToDeviceMethodAsync(methodAsyncCallback, methodCallbackContext);
+    }
+
+    /**
+     * Limits how many invocations of a method may run at the same time when methods are handled by an asynchronous
+     * callback.
+     *
+     * @param methodName the name of the method to limit. Cannot be {@code null} or empty.
+     * @param maxConcurrentInvocations the maximum number of concurrent invocations. Must be greater than 0.
+     *
+     * @throws IllegalStateException if called before subscribing to methods.
+     * @throws IllegalArgumentException if the method name is null or empty, or the limit is less than 1.
+     */
+    void setMethodConcurrencyLimitInternal(String methodName, int maxConcurrentInvocations)
+    {
+        if (this.method == null)
+        {
+            throw new IllegalStateException("Subscribe to methods before limiting their concurrency");
+        }
+
+        this.method.setMaxConcurrentInvocations(methodName, maxConcurrentInvocations);
+    }
+
+    /**
+     * Sets how long an asynchronous method callback may take to answer an invocation before it is answered with
+     * status 504.
+     *
+     * @param responseTimeoutMillis the time allowed to respond, in milliseconds. Must be greater than 0.
+     *
+     * @throws IllegalStateException if called before subscribing to methods.
+     * @throws IllegalArgumentException if the timeout is less than 1.
+     */
+    void setMethodResponseTimeoutInternal(long responseTimeoutMillis)
+    {
+        if (this.method == null)
+        {
+            throw new IllegalStateException("Subscribe to methods before setting their response timeout");
+        }
+
+        this.method.setAsyncResponseTimeout(responseTimeoutMillis);
+    }
+
     /**
      * Getter for the underlying DeviceIO for multiplexing scenarios.
      *
@@ -655,6 +826,66 @@ public class InternalClient
         this.config.getAuthenticationProvider().setIotHubTrustedCert(certificates);
     }
 
+    void setOption_SetEventDrivenSend(Object value)
+    {
+        if (value instanceof Boolean)
+        {
+            this.config.setEventDrivenSend((boolean) value);
+        }
+        else
+        {
+            throw new IllegalArgumentException("value is not boolean = " + value);
+        }
+    }
+
+    void setOption_SetOfflineMessageStore(Object value)
+    {
+        if (value instanceof OfflineMessageStoreSettings)
+        {
+            this.config.setOfflineMessageStoreSettings((OfflineMessageStoreSettings) value);
+        }
+        else
+        {
+            throw new IllegalArgumentException("value is not OfflineMessageStoreSettings = " + value);
+        }
+    }
+
+    void setOption_SetEventDrivenReceive(Object value)
+    {
+        if (value instanceof Boolean)
+        {
+            this.config.setEventDrivenReceive((boolean) value);
+        }
+        else
+        {
+            throw new IllegalArgumentException("value is not boolean = " + value);
+        }
+    }
+
+    void setOption_SetReceiveBatchSize(Object value)
+    {
+        if (value instanceof Integer)
+        {
+            this.config.setReceiveBatchSize((int) value);
+        }
+        else
+        {
+            throw new IllegalArgumentException("value is not int = " + value);
+        }
+    }
+
+    void setOption_SetMessageCallbackConcurrency(Object value)
+    {
+        if (value instanceof Integer)
+        {
+            this.config.setMessageCallbackConcurrency((int) value);
+        }
+        else
+        {
+            throw new IllegalArgumentException("value is not int = " + value);
+        }
+    }
+
     void setOption_SetSendInterval(Object value)
     {
         if (value != null)
@@ -123,7 +123,7 @@ public class IotHubConnectionString
         this.hubName = parseHubName(this.hostName);
 
         this.logger = new CustomLogger(this.getClass());
-        logger.LogInfo("IotHubConnectionString object is created successfully, method name is %s ", logger.getMethodName());
+        logger.LogInfo("IotHubConnectionString object is created successfully, method name is %s ", logger.getLazyMethodName());
     }
 
     /**
@@ -182,7 +182,7 @@ public class IotHubConnectionString
         }
 
         this.logger = new CustomLogger(this.getClass());
-        logger.LogInfo("IotHubConnectionString object is created successfully, method name is %s ", logger.getMethodName());
+        logger.LogInfo("IotHubConnectionString object is created successfully, method name is %s ", logger.getLazyMethodName());
     }
 
     /**
@@ -5,6 +5,7 @@ package com.microsoft.azure.sdk.iot.device;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -225,6 +226,21 @@ public class Message
         return bodyClone;
     }
 
+    /**
+     * Read-only view of the body for the transports, without the copy made by {@link #getBytes()}. Applications
+     * keep using {@link #getBytes()}; the transports reach this view through {@link MessageBodyAccessor}.
+     * @return a read-only buffer spanning the body, or {@code null} if this Message has no body.
+     */
+    ByteBuffer getBodyBuffer()
+    {
+        if (this.body == null)
+        {
+            return null;
+        }
+
+        return ByteBuffer.wrap(this.body).asReadOnlyBuffer();
+    }
+
     /**
      * Gets the values of user-defined properties of this Message.
      * @param name Name of the user-defined property to search for.
@@ -289,7 +305,7 @@ public class Message
             this.properties.remove(messageProperty);
         }
 
-        logger.LogInfo("Setting message property, method name is %s ", logger.getMethodName());
+        logger.LogInfo("Setting message property, method name is %s ", logger.getLazyMethodName());
         this.properties.add(new MessageProperty(name, value));
     }
 
@@ -339,7 +355,7 @@ public class Message
             long currentTime = System.currentTimeMillis();
             if (currentTime > expiryTime)
             {
-                logger.LogWarn("The message with messageid %s expired on %s, method name is %s ", this.getMessageId(), new Date(), logger.getMethodName());
+                logger.LogWarn("The message with messageid %s expired on %s, method name is %s ", this.getMessageId(), new Date(), logger.getLazyMethodName());
                 messageExpired = true;
             }
             else
@@ -406,7 +422,7 @@ public class Message
         // Codes_SRS_MESSAGE_34_047: [The function shall set the message's expiry time.]
         long currentTime = System.currentTimeMillis();
         this.expiryTime = currentTime + timeOut;
-        logger.LogInfo("The message with messageid %s has expiry time as %s milliseconds and the message will expire on %s, method name is %s ", this.getMessageId(), timeOut, new Date(this.expiryTime), logger.getMethodName());
+        logger.LogInfo("The message with messageid %s has expiry time as %s milliseconds and the message will expire on %s, method name is %s ", this.getMessageId(), timeOut, new Date(this.expiryTime), logger.getLazyMethodName());
     }
 
     /**
@@ -423,7 +439,17 @@ public class Message
 
         // Codes_SRS_MESSAGE_34_037: [The function shall set the message's expiry time to be the number of milliseconds since the epoch provided in absoluteTimeout.]
         this.expiryTime = absoluteTimeout;
-        logger.LogInfo("The message with messageid %s has expiry time as %s milliseconds and the message will expire on %s, method name is %s ", this.getMessageId(), absoluteTimeout, new Date(this.expiryTime), logger.getMethodName());
+        logger.LogInfo("The message with messageid %s has expiry time as %s milliseconds and the message will expire on %s, method name is %s ", this.getMessageId(), absoluteTimeout, new Date(this.expiryTime), logger.getLazyMethodName());
+    }
+
+    /**
+     * Getter for the expiryTime property
+     * @return the milliseconds since epoch at which the message expires, or 0 if it does not expire
+     */
+    public long getExpiryTime()
+    {
+        // Codes_SRS_MESSAGE_12_001: [The function shall return the message's absolute expiry time.]
+        return this.expiryTime;
     }
 
     /**
@@ -0,0 +1,36 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Gives the transports access to the body of a {@link Message} without the copy made by {@link Message#getBytes()}.
+ * This class is internal to the SDK and is not meant to be used by applications.
+ */
+public final class MessageBodyAccessor
+{
+    private MessageBodyAccessor()
+    {
+    }
+
+    /**
+     * Getter for a read-only view of the body of the provided message.
+     *
+     * @param message the message to read the body of. Cannot be {@code null}.
+     * @return a read-only buffer spanning the body, or {@code null} if the message has no body.
+     * @throws IllegalArgumentException if the provided message is {@code null}.
+     */
+    public static ByteBuffer getBodyBuffer(Message message) throws IllegalArgumentException
+    {
+        if (message == null)
+        {
+            // Codes_SRS_MESSAGEBODYACCESSOR_12_001: [If the message is null, the function shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("message cannot be null");
+        }
+
+        // Codes_SRS_MESSAGEBODYACCESSOR_12_002: [The function shall return a read-only view of the message body, or null if the message has no body.]
+        return message.getBodyBuffer();
+    }
+}
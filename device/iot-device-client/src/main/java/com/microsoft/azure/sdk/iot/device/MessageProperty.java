@@ -74,25 +74,25 @@ public final class MessageProperty {
     public MessageProperty(String name, String value) {
         this.logger = new CustomLogger(this.getClass());
         if (name == null) {
-            logger.LogError("Property argument 'name' cannot be null, method name is %s ", logger.getMethodName());
+            logger.LogError("Property argument 'name' cannot be null, method name is %s ", logger.getLazyMethodName());
             throw new IllegalArgumentException("Property argument 'name' cannot be null.");
         }
 
         if (value == null) {
-            logger.LogError("Property argument 'value' cannot be null, method name is %s ", logger.getMethodName());
+            logger.LogError("Property argument 'value' cannot be null, method name is %s ", logger.getLazyMethodName());
             throw new IllegalArgumentException("Property argument 'value' cannot be null.");
         }
 
         // Codes_SRS_MESSAGEPROPERTY_11_002: [If the name contains a character that is not in US-ASCII, the function shall throw an IllegalArgumentException.]
         if (!usesValidChars(name)) {
-            logger.LogError("%s is not a valid IoT Hub message property name, method name is %s ", name, logger.getMethodName());
+            logger.LogError("%s is not a valid IoT Hub message property name, method name is %s ", name, logger.getLazyMethodName());
             String errMsg = String.format("%s is not a valid IoT Hub message property name. %n", name);
             throw new IllegalArgumentException(errMsg);
         }
 
         // Codes_SRS_MESSAGEPROPERTY_11_008: [If the name is a reserved property name, the function shall throw an IllegalArgumentException.]
         if (RESERVED_PROPERTY_NAMES.contains(name)) {
-            logger.LogError("%s is a reserved IoT Hub message property name, method name is %s ", name, logger.getMethodName());
+            logger.LogError("%s is a reserved IoT Hub message property name, method name is %s ", name, logger.getLazyMethodName());
             String errMsg = String.format("%s is a reserved IoT Hub message property name.%n", name);
             throw new IllegalArgumentException(errMsg);
         }
@@ -100,7 +100,7 @@ public final class MessageProperty {
         // Codes_SRS_MESSAGEPROPERTY_11_003: [If the value contains a character that is not in US-ASCII, the function shall throw an IllegalArgumentException.]
         if (!usesValidChars(value))
         {
-            logger.LogError("The provided value is not a valid IoT Hub message property value, method name is %s ", logger.getMethodName());
+            logger.LogError("The provided value is not a valid IoT Hub message property value, method name is %s ", logger.getLazyMethodName());
             String errMsg = String.format("%s is not a valid IoT Hub message property value.%n", value);
             throw new IllegalArgumentException(errMsg);
         }
@@ -6,7 +6,9 @@
 package com.microsoft.azure.sdk.iot.device;
 
 
+import com.microsoft.azure.sdk.iot.device.DeviceTwin.DeviceMethodAsyncCallback;
 import com.microsoft.azure.sdk.iot.device.DeviceTwin.DeviceMethodCallback;
+import com.microsoft.azure.sdk.iot.device.DeviceTwin.DeviceMethodResponder;
 import com.microsoft.azure.sdk.iot.device.DeviceTwin.PropertyCallBack;
 import com.microsoft.azure.sdk.iot.device.DeviceTwin.TwinPropertyCallBack;
 import com.microsoft.azure.sdk.iot.device.auth.IotHubAuthenticationProvider;
@@ -426,6 +428,55 @@ public class ModuleClient extends InternalClient
         this.subscribeToMethodsInternal(methodCallback, methodCallbackContext, methodStatusCallback, methodStatusCallbackContext);
     }
 
+    /**
+     * Subscribes to method invocations on this module, handled by an asynchronous callback. The callback returns
+     * immediately and answers each invocation through its {@link DeviceMethodResponder}, possibly from another thread.
+     *
+     * @param methodAsyncCallback Callback on which device methods shall be invoked. Cannot be {@code null}.
+     * @param methodCallbackContext Context for device method callback. Can be {@code null}.
+     * @param methodStatusCallback Callback for providing IotHub status for device methods. Cannot be {@code null}.
+     * @param methodStatusCallbackContext Context for device method status callback. Can be {@code null}.
+     *
+     * @throws IOException if called when client is not opened.
+     * @throws IllegalArgumentException if either callback are null.
+     */
+    public void subscribeToMethodAsync(DeviceMethodAsyncCallback methodAsyncCallback, Object methodCallbackContext,
+                                       IotHubEventCallback methodStatusCallback, Object methodStatusCallbackContext)
+            throws IOException, IllegalArgumentException
+    {
+        this.subscribeToMethodsAsyncInternal(methodAsyncCallback, methodCallbackContext, methodStatusCallback, methodStatusCallbackContext);
+    }
+
+    /**
+     * Limits how many invocations of a method handled by an asynchronous callback may run at the same time.
+     *
+     * @param methodName the name of the method to limit. Cannot be {@code null} or empty.
+     * @param maxConcurrentInvocations the maximum number of concurrent invocations. Must be greater than 0.
+     *
+     * @throws IllegalStateException if called before subscribing to methods.
+     * @throws IllegalArgumentException if the method name is null or empty, or the limit is less than 1.
+     */
+    public void setMethodConcurrencyLimit(String methodName, int maxConcurrentInvocations)
+            throws IllegalStateException, IllegalArgumentException
+    {
+        this.setMethodConcurrencyLimitInternal(methodName, maxConcurrentInvocations);
+    }
+
+    /**
+     * Sets how long an asynchronous method callback may take to answer an invocation. An invocation that is not
+     * answered in time is answered with status 504.
+     *
+     * @param responseTimeoutMillis the time allowed to respond, in milliseconds. Must be greater than 0.
+     *
+     * @throws IllegalStateException if called before subscribing to methods.
+     * @throws IllegalArgumentException if the timeout is less than 1.
+     */
+    public void setMethodResponseTimeout(long responseTimeoutMillis)
+            throws IllegalStateException, IllegalArgumentException
+    {
+        this.setMethodResponseTimeoutInternal(responseTimeoutMillis);
+    }
+
     /**
      * Sets the message callback.
      *
@@ -1,5 +1,6 @@
 package com.microsoft.azure.sdk.iot.device;
 
+import com.microsoft.azure.sdk.iot.device.transport.IotHubConnectionStatus;
 import com.microsoft.azure.sdk.iot.device.transport.RetryPolicy;
 
 import java.io.IOException;
@@ -14,6 +15,19 @@ import java.util.ArrayList;
  * the connection. 
  * </p>
  * The multiplexed connection is supported with AMQPS / AMQPS_WS protocols.
+ * <p>
+ * A single AMQP connection is served by one reactor thread and one send pipeline, which
+ * limits how many devices it can carry. A transport client created with a connection
+ * count greater than one spreads its registered devices across that many connections,
+ * choosing the connection of each device by the hash of its device id, while still
+ * being opened, closed and configured as one object.
+ * </p>
+ * <p>
+ * Device clients can join an open transport client: a device client created after
+ * {@link #open()} is connected by its own {@code open()}, on the already open connection
+ * of its shard. {@link #unregisterDeviceClient(DeviceClient)} takes a device client off
+ * its connection. In both cases the other devices of the connection stay connected.
+ * </p>
  */
 public class TransportClient
 {
@@ -27,9 +41,13 @@ public class TransportClient
     public static long RECEIVE_PERIOD_MILLIS_AMQPS = 10L;
 
     private IotHubClientProtocol iotHubClientProtocol;
-    private DeviceIO deviceIO;
+    private final int connectionCount;
+    private ArrayList<DeviceIO> deviceIOList;
     private TransportClientState transportClientState;
 
+    private IotHubConnectionStatusChangeCallback connectionStatusChangeCallback;
+    private Object connectionStatusChangeCallbackContext;
+
     private ArrayList<DeviceClient> deviceClientList;
 
     private CustomLogger logger;
@@ -42,6 +60,19 @@ public class TransportClient
      * @throws IllegalArgumentException if other protocol given.
      */
     public TransportClient(IotHubClientProtocol protocol)
+    {
+        this(protocol, 1);
+    }
+
+    /**
+     * Constructor that takes a protocol and the number of connections to spread the registered devices across.
+     *
+     * @param protocol the communication protocol used (i.e. AMQPS or AMQPS_WS).
+     * @param connectionCount the number of connections to open, each with its own reactor and send pipeline.
+     *
+     * @throws IllegalArgumentException if other protocol given or if the connection count is less than 1.
+     */
+    public TransportClient(IotHubClientProtocol protocol, int connectionCount)
     {
         // Codes_SRS_TRANSPORTCLIENT_12_001: [If the `protocol` is not valid, the constructor shall throw an IllegalArgumentException.]
         switch (protocol)
@@ -58,11 +89,18 @@ public class TransportClient
                 throw new IllegalStateException(
                         "Invalid client protocol specified.");
         }
+        // Codes_SRS_TRANSPORTCLIENT_12_024: [If the `connectionCount` is less than 1, the constructor shall throw an IllegalArgumentException.]
+        if (connectionCount < 1)
+        {
+            throw new IllegalArgumentException("connectionCount must be at least 1");
+        }
+
         // Codes_SRS_TRANSPORTCLIENT_12_002: [The constructor shall store the provided protocol.]
         this.iotHubClientProtocol = protocol;
+        this.connectionCount = connectionCount;
 
-        // Codes_SRS_TRANSPORTCLIENT_12_003: [The constructor shall set the the deviceIO to null.]
-        this.deviceIO = null;
+        // Codes_SRS_TRANSPORTCLIENT_12_003: [The constructor shall initialize the deviceIO list to empty.]
+        this.deviceIOList = new ArrayList<>();
 
         // Codes_SRS_TRANSPORTCLIENT_12_004: [The constructor shall initialize the device list member.]
         this.deviceClientList = new ArrayList<>();
@@ -71,21 +109,21 @@ public class TransportClient
 
         this.logger = new CustomLogger(this.getClass());
 
-        logger.LogInfo("TransportClient object is created successfully, method name is %s ", logger.getMethodName());
+        logger.LogInfo("TransportClient object is created successfully, method name is %s ", logger.getLazyMethodName());
     }
 
     /**
-     * Creates a deviceIO and sets it to all the device client.
+     * Creates a deviceIO for each connection and sets it to the device clients assigned to that connection.
      * Verifies all device client's SAS tokens and renew them if it is necessary.
-     * Opens the transport client connection.
+     * Opens the transport client connections.
      *
      * @throws IllegalStateException if the connection is already open.
-     * @throws IOException if the connection to an IoT Hub cannot be opened.
+     * @throws IOException if a connection to an IoT Hub cannot be opened.
      */
     public void open() throws IllegalStateException, IOException
     {
         // Codes_SRS_TRANSPORTCLIENT_12_008: [The function shall throw  IllegalStateException if the connection is already open.]
-        if ((this.deviceIO != null) && (this.deviceIO.isOpen()))
+        if (this.isOpen())
         {
             throw new IllegalStateException("The transport client connection is already open.");
         }
@@ -93,27 +131,53 @@ public class TransportClient
         // Codes_SRS_TRANSPORTCLIENT_12_009: [The function shall do nothing if the the registration list is empty.]
         if (this.deviceClientList.size() > 0)
         {
-            // Codes_SRS_TRANSPORTCLIENT_12_011: [The function shall create a new DeviceIO using the first registered device client's configuration.]
-            this.deviceIO = new DeviceIO(deviceClientList.get(0).getConfig(), SEND_PERIOD_MILLIS, RECEIVE_PERIOD_MILLIS_AMQPS);
-            deviceClientList.get(0).setDeviceIO(this.deviceIO);
+            ArrayList<DeviceIO> newDeviceIOList = new ArrayList<>();
+            for (ArrayList<DeviceClient> shard : this.assignShards())
+            {
+                // Codes_SRS_TRANSPORTCLIENT_12_011: [The function shall create a new DeviceIO for each connection that has device clients, using the configuration of its first device client.]
+                DeviceIO shardDeviceIO = new DeviceIO(shard.get(0).getConfig(), SEND_PERIOD_MILLIS, RECEIVE_PERIOD_MILLIS_AMQPS);
+                shard.get(0).setDeviceIO(shardDeviceIO);
+
+                // Codes_SRS_TRANSPORTCLIENT_12_012: [The function shall set the created DeviceIO to all device clients of its connection.]
+                for (int i = 1; i < shard.size(); i++)
+                {
+                    shard.get(i).setDeviceIO(shardDeviceIO);
+                    //propagate this client config to amqp connection
+                    shardDeviceIO.addClient(shard.get(i).getConfig());
+                }
+
+                newDeviceIOList.add(shardDeviceIO);
+            }
 
-            // Codes_SRS_TRANSPORTCLIENT_12_012: [The function shall set the created DeviceIO to all registered device client.]
-            for (int i = 1; i < this.deviceClientList.size(); i++)
+            this.deviceIOList = newDeviceIOList;
+            if (this.connectionStatusChangeCallback != null)
             {
-                deviceClientList.get(i).setDeviceIO(this.deviceIO);
-                //propagate this client config to amqp connection
-                this.deviceIO.addClient(deviceClientList.get(i).getConfig());
+                this.registerAggregatedConnectionStatusChangeCallback();
             }
 
             // Codes_SRS_TRANSPORTCLIENT_12_013: [The function shall open the transport in multiplexing mode.]
-            //this.deviceIO.multiplexOpen(deviceClientList);
-            // if client is added just open to get rid of multiplex open.
-            this.deviceIO.open();
+            // Codes_SRS_TRANSPORTCLIENT_12_025: [If a connection cannot be opened, the function shall close the connections opened so far and rethrow the exception.]
+            for (int i = 0; i < newDeviceIOList.size(); i++)
+            {
+                try
+                {
+                    newDeviceIOList.get(i).open();
+                }
+                catch (IOException e)
+                {
+                    for (int j = 0; j < i; j++)
+                    {
+                        newDeviceIOList.get(j).multiplexClose();
+                    }
+                    this.deviceIOList = new ArrayList<>();
+                    throw e;
+                }
+            }
         }
 
         this.transportClientState = TransportClientState.OPENED;
 
-        logger.LogInfo("TransportClient is opened successfully, method name is %s ", logger.getMethodName());
+        logger.LogInfo("TransportClient is opened successfully, method name is %s ", logger.getLazyMethodName());
     }
 
     /**
@@ -132,18 +196,18 @@ public class TransportClient
             deviceClientList.get(i).closeFileUpload();
         }
 
-        // Codes_SRS_TRANSPORTCLIENT_12_014: [If the deviceIO not null the function shall call multiplexClose on the deviceIO and set the deviceIO to null.]
-        if (this.deviceIO != null)
+        // Codes_SRS_TRANSPORTCLIENT_12_014: [The function shall call multiplexClose on every deviceIO and clear the deviceIO list.]
+        for (DeviceIO shardDeviceIO : this.deviceIOList)
         {
-            this.deviceIO.multiplexClose();
-            this.deviceIO = null;
+            shardDeviceIO.multiplexClose();
         }
+        this.deviceIOList = new ArrayList<>();
 
-        logger.LogInfo("Connection closed with success, method name is %s ", logger.getMethodName());
+        logger.LogInfo("Connection closed with success, method name is %s ", logger.getLazyMethodName());
     }
 
     /***
-     * Sets the given send interval on the underlying device IO
+     * Sets the given send interval on the underlying device IO of every connection
      *
      * @param newIntervalInMilliseconds the new interval in milliseconds
      * @throws IOException if the given number is less or equal to zero.
@@ -156,16 +220,19 @@ public class TransportClient
             throw new IllegalArgumentException("send interval can not be zero or negative");
         }
 
-        if ((this.transportClientState != TransportClientState.OPENED) || (deviceIO == null))
+        if ((this.transportClientState != TransportClientState.OPENED) || this.deviceIOList.isEmpty())
         {
             // Codes_SRS_TRANSPORTCLIENT_12_023: [The function shall throw  IllegalStateException if the connection is already open.]
             throw new IllegalStateException("TransportClient.setSendInterval only works when the transport client is opened");
         }
 
-        // Codes_SRS_TRANSPORTCLIENT_12_018: [The function shall set the new interval on the underlying device IO it the transport client is not open.]
-        this.deviceIO.setSendPeriodInMilliseconds(newIntervalInMilliseconds);
+        // Codes_SRS_TRANSPORTCLIENT_12_018: [The function shall set the new interval on the underlying device IO of every connection it the transport client is not open.]
+        for (DeviceIO shardDeviceIO : this.deviceIOList)
+        {
+            shardDeviceIO.setSendPeriodInMilliseconds(newIntervalInMilliseconds);
+        }
 
-        logger.LogInfo("Send interval updated successfully in the transport client, method name is %s ", logger.getMethodName());
+        logger.LogInfo("Send interval updated successfully in the transport client, method name is %s ", logger.getLazyMethodName());
     }
 
     /**
@@ -190,33 +257,176 @@ public class TransportClient
             deviceClientList.get(i).getConfig().setRetryPolicy(retryPolicy);
         }
 
-        logger.LogInfo("Retry policy updated successfully in the transport client, method name is %s ", logger.getMethodName());
+        logger.LogInfo("Retry policy updated successfully in the transport client, method name is %s ", logger.getLazyMethodName());
+    }
+
+    /**
+     * Registers a callback to be executed when the combined connection status of this transport client changes.
+     * The status reported is the worst one among its connections: {@code DISCONNECTED} if any connection is
+     * disconnected, otherwise {@code DISCONNECTED_RETRYING} if any connection is retrying, otherwise
+     * {@code CONNECTED}. The reason and throwable are the ones of the connection change that caused the
+     * combined status to change.
+     * <p>
+     * The callback takes the place of any connection status callback registered through the multiplexed
+     * device clients themselves.
+     * </p>
+     *
+     * @param callback The callback to be fired when the combined connection status changes. Can be null to
+     *                 unset this listener.
+     * @param callbackContext a context to be passed to the callback. Can be {@code null}.
+     */
+    public void registerConnectionStatusChangeCallback(IotHubConnectionStatusChangeCallback callback, Object callbackContext)
+    {
+        // Codes_SRS_TRANSPORTCLIENT_12_026: [The function shall save the callback and context, and register them with every open connection.]
+        this.connectionStatusChangeCallback = callback;
+        this.connectionStatusChangeCallbackContext = callbackContext;
+
+        if (!this.deviceIOList.isEmpty())
+        {
+            this.registerAggregatedConnectionStatusChangeCallback();
+        }
+    }
+
+    /**
+     * Getter for the number of connections the registered devices are spread across.
+     * @return the connection count given at construction
+     */
+    public int getConnectionCount()
+    {
+        // Codes_SRS_TRANSPORTCLIENT_12_027: [The getter shall return the connection count.]
+        return this.connectionCount;
     }
 
     /**
-     * Registers the given device into the transport client.
+     * Removes the given device client from this transport client. If the transport client is open, the links of
+     * the device are closed on its connection while the other devices of that connection stay connected; if it
+     * was the last device of its connection, that connection is closed. The device client is no longer usable
+     * afterwards.
      *
+     * @param deviceClient the device client to remove.
      * @throws IllegalArgumentException if the deviceClient parameter is null.
-     * @throws IllegalStateException if the connection is open.
+     * @throws IOException if the connection of the device cannot be closed.
      */
-    void registerDeviceClient(DeviceClient deviceClient) throws IllegalArgumentException, IllegalStateException
+    public synchronized void unregisterDeviceClient(DeviceClient deviceClient) throws IOException
     {
-        // Codes_SRS_TRANSPORTCLIENT_12_005: [The function shall throw  IllegalArgumentException if the deviceClient parameter is null.]
+        // Codes_SRS_TRANSPORTCLIENT_12_030: [The function shall throw IllegalArgumentException if the deviceClient parameter is null.]
         if (deviceClient == null)
         {
             throw new IllegalArgumentException("deviceClient parameter cannot be null.");
         }
 
-        // Codes_SRS_TRANSPORTCLIENT_12_006: [The function shall throw  IllegalStateException if the connection is already open.]
-        if ((this.deviceIO != null) && (this.deviceIO.isOpen()))
+        // Codes_SRS_TRANSPORTCLIENT_12_031: [The function shall do nothing if the device client is not registered.]
+        if (!this.deviceClientList.remove(deviceClient))
         {
-            throw new IllegalStateException("deviceClient cannot be registered if the connection is open.");
+            return;
+        }
+
+        deviceClient.closeFileUpload();
+
+        DeviceIO deviceIO = deviceClient.getDeviceIO();
+        if ((deviceIO != null) && deviceIO.isOpen() && this.deviceIOList.contains(deviceIO))
+        {
+            if (deviceIO.getClientCount() > 1)
+            {
+                // Codes_SRS_TRANSPORTCLIENT_12_032: [If the device shares its connection with other devices, the function shall remove it from that connection.]
+                deviceIO.removeClient(deviceClient.getConfig());
+            }
+            else
+            {
+                // Codes_SRS_TRANSPORTCLIENT_12_033: [If the device is the last device of its connection, the function shall close that connection without reporting it to the connection status callback.]
+                deviceIO.registerConnectionStatusChangeCallback(null, null);
+                this.deviceIOList.remove(deviceIO);
+                if (this.connectionStatusChangeCallback != null)
+                {
+                    this.registerAggregatedConnectionStatusChangeCallback();
+                }
+                deviceIO.multiplexClose();
+            }
+        }
+
+        // Codes_SRS_TRANSPORTCLIENT_12_034: [The function shall detach the device IO from the device client.]
+        deviceClient.setDeviceIO(null);
+
+        logger.LogInfo("DeviceClient is removed successfully from the transport client, method name is %s ", logger.getLazyMethodName());
+    }
+
+    /**
+     * Registers the given device into the transport client. If the transport client is already open, the
+     * device is connected later by {@link #openDeviceClient(DeviceClient)}.
+     *
+     * @throws IllegalArgumentException if the deviceClient parameter is null.
+     */
+    synchronized void registerDeviceClient(DeviceClient deviceClient) throws IllegalArgumentException
+    {
+        // Codes_SRS_TRANSPORTCLIENT_12_005: [The function shall throw  IllegalArgumentException if the deviceClient parameter is null.]
+        if (deviceClient == null)
+        {
+            throw new IllegalArgumentException("deviceClient parameter cannot be null.");
         }
 
         // Codes_SRS_TRANSPORTCLIENT_12_007: [The function shall add the given device client to the deviceClientList.]
         this.deviceClientList.add(deviceClient);
 
-        logger.LogInfo("DeviceClient is added successfully to the transport client, method name is %s ", logger.getMethodName());
+        logger.LogInfo("DeviceClient is added successfully to the transport client, method name is %s ", logger.getLazyMethodName());
+    }
+
+    /**
+     * Connects a device client that was registered after this transport client was opened. The device joins the
+     * open connection of its shard, or gets a new connection if its shard has none.
+     *
+     * @param deviceClient the registered device client to connect.
+     * @throws IllegalStateException if the transport client is not open.
+     * @throws IOException if the device cannot be connected.
+     */
+    synchronized void openDeviceClient(DeviceClient deviceClient) throws IOException
+    {
+        // Codes_SRS_TRANSPORTCLIENT_12_035: [The function shall throw IllegalStateException if the transport client is not open.]
+        if (this.transportClientState != TransportClientState.OPENED)
+        {
+            throw new IllegalStateException("TransportClient.openDeviceClient only works when the transport client is opened");
+        }
+
+        // Codes_SRS_TRANSPORTCLIENT_12_036: [The function shall do nothing if the device client is already connected.]
+        if ((deviceClient.getDeviceIO() != null) && deviceClient.getDeviceIO().isOpen())
+        {
+            return;
+        }
+
+        int shardIndex = this.getShardIndex(deviceClient);
+        DeviceIO shardDeviceIO = null;
+        for (DeviceClient registeredClient : this.deviceClientList)
+        {
+            DeviceIO registeredDeviceIO = registeredClient.getDeviceIO();
+            if ((registeredClient != deviceClient) && (registeredDeviceIO != null) && registeredDeviceIO.isOpen()
+                    && (this.getShardIndex(registeredClient) == shardIndex))
+            {
+                shardDeviceIO = registeredDeviceIO;
+                break;
+            }
+        }
+
+        if (shardDeviceIO != null)
+        {
+            // Codes_SRS_TRANSPORTCLIENT_12_037: [If the shard of the device has an open connection, the function shall add the device to that connection.]
+            shardDeviceIO.addClient(deviceClient.getConfig());
+            deviceClient.setDeviceIO(shardDeviceIO);
+        }
+        else
+        {
+            // Codes_SRS_TRANSPORTCLIENT_12_038: [If the shard of the device has no open connection, the function shall open a new connection for the device, with the send interval of the other connections.]
+            long sendPeriodInMilliseconds = this.deviceIOList.isEmpty() ? SEND_PERIOD_MILLIS : this.deviceIOList.get(0).getSendPeriodInMilliseconds();
+            DeviceIO newDeviceIO = new DeviceIO(deviceClient.getConfig(), sendPeriodInMilliseconds, RECEIVE_PERIOD_MILLIS_AMQPS);
+            newDeviceIO.open();
+            deviceClient.setDeviceIO(newDeviceIO);
+            this.deviceIOList.add(newDeviceIO);
+
+            if (this.connectionStatusChangeCallback != null)
+            {
+                this.registerAggregatedConnectionStatusChangeCallback();
+            }
+        }
+
+        logger.LogInfo("DeviceClient is connected successfully through the open transport client, method name is %s ", logger.getLazyMethodName());
     }
 
     /**
@@ -237,4 +447,137 @@ public class TransportClient
         // Codes_SRS_TRANSPORTCLIENT_12_019: [The getter shall return with the value of the transportClientState.]
         return this.transportClientState;
     }
+
+    /**
+     * Returns the index of the connection that carries the given device.
+     * @param deviceId the id of the device
+     * @param connectionCount the number of connections
+     * @return a connection index between 0 and connectionCount - 1
+     */
+    static int getShardIndex(String deviceId, int connectionCount)
+    {
+        // Codes_SRS_TRANSPORTCLIENT_12_028: [The function shall return the non-negative hash of the device id modulo the connection count.]
+        return (deviceId.hashCode() & Integer.MAX_VALUE) % connectionCount;
+    }
+
+    private int getShardIndex(DeviceClient deviceClient)
+    {
+        return (this.connectionCount == 1) ? 0 : getShardIndex(deviceClient.getConfig().getDeviceId(), this.connectionCount);
+    }
+
+    private ArrayList<ArrayList<DeviceClient>> assignShards()
+    {
+        ArrayList<ArrayList<DeviceClient>> shards = new ArrayList<>(this.connectionCount);
+        for (int i = 0; i < this.connectionCount; i++)
+        {
+            shards.add(new ArrayList<DeviceClient>());
+        }
+
+        for (DeviceClient deviceClient : this.deviceClientList)
+        {
+            shards.get(this.getShardIndex(deviceClient)).add(deviceClient);
+        }
+
+        ArrayList<ArrayList<DeviceClient>> nonEmptyShards = new ArrayList<>();
+        for (ArrayList<DeviceClient> shard : shards)
+        {
+            if (!shard.isEmpty())
+            {
+                nonEmptyShards.add(shard);
+            }
+        }
+
+        return nonEmptyShards;
+    }
+
+    private void registerAggregatedConnectionStatusChangeCallback()
+    {
+        if (this.connectionStatusChangeCallback == null)
+        {
+            for (DeviceIO shardDeviceIO : this.deviceIOList)
+            {
+                shardDeviceIO.registerConnectionStatusChangeCallback(null, null);
+            }
+            return;
+        }
+
+        // connections that are already open are assumed connected until they report otherwise
+        IotHubConnectionStatus[] initialStatuses = new IotHubConnectionStatus[this.deviceIOList.size()];
+        for (int i = 0; i < initialStatuses.length; i++)
+        {
+            initialStatuses[i] = this.deviceIOList.get(i).isOpen() ? IotHubConnectionStatus.CONNECTED : IotHubConnectionStatus.DISCONNECTED;
+        }
+
+        ConnectionStatusAggregator aggregator = new ConnectionStatusAggregator(initialStatuses,
+                this.connectionStatusChangeCallback, this.connectionStatusChangeCallbackContext);
+        for (int i = 0; i < this.deviceIOList.size(); i++)
+        {
+            // each connection reports with its own index as context so the aggregator can tell them apart
+            this.deviceIOList.get(i).registerConnectionStatusChangeCallback(aggregator, i);
+        }
+    }
+
+    private boolean isOpen()
+    {
+        for (DeviceIO shardDeviceIO : this.deviceIOList)
+        {
+            if (shardDeviceIO.isOpen())
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Combines the status changes of several connections into one status and reports it when it changes.
+     */
+    static class ConnectionStatusAggregator implements IotHubConnectionStatusChangeCallback
+    {
+        private final IotHubConnectionStatus[] connectionStatuses;
+        private final IotHubConnectionStatusChangeCallback callback;
+        private final Object callbackContext;
+        private IotHubConnectionStatus reportedStatus;
+
+        ConnectionStatusAggregator(IotHubConnectionStatus[] initialStatuses, IotHubConnectionStatusChangeCallback callback, Object callbackContext)
+        {
+            this.connectionStatuses = initialStatuses;
+            this.callback = callback;
+            this.callbackContext = callbackContext;
+            this.reportedStatus = combine(initialStatuses);
+        }
+
+        @Override
+        public synchronized void execute(IotHubConnectionStatus status, IotHubConnectionStatusChangeReason statusChangeReason, Throwable throwable, Object callbackContext)
+        {
+            // Codes_SRS_TRANSPORTCLIENT_12_029: [The aggregator shall record the status of the reporting connection and invoke the user callback only if the combined status changed.]
+            this.connectionStatuses[(Integer) callbackContext] = status;
+
+            IotHubConnectionStatus combinedStatus = combine(this.connectionStatuses);
+            if (combinedStatus != this.reportedStatus)
+            {
+                this.reportedStatus = combinedStatus;
+                this.callback.execute(combinedStatus, statusChangeReason, throwable, this.callbackContext);
+            }
+        }
+
+        private static IotHubConnectionStatus combine(IotHubConnectionStatus[] connectionStatuses)
+        {
+            IotHubConnectionStatus combinedStatus = IotHubConnectionStatus.CONNECTED;
+            for (IotHubConnectionStatus connectionStatus : connectionStatuses)
+            {
+                if (connectionStatus == IotHubConnectionStatus.DISCONNECTED)
+                {
+                    return IotHubConnectionStatus.DISCONNECTED;
+                }
+                else if (connectionStatus == IotHubConnectionStatus.DISCONNECTED_RETRYING)
+                {
+                    combinedStatus = IotHubConnectionStatus.DISCONNECTED_RETRYING;
+                }
+            }
+
+            return combinedStatus;
+        }
+    }
 }
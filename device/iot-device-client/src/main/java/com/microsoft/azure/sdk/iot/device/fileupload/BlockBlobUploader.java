@@ -0,0 +1,458 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.fileupload;
+
+import com.microsoft.azure.sdk.iot.deps.util.Base64;
+import com.microsoft.azure.sdk.iot.device.CustomLogger;
+import com.microsoft.azure.storage.StorageException;
+import com.microsoft.azure.storage.blob.BlockEntry;
+import com.microsoft.azure.storage.blob.BlockListingFilter;
+import com.microsoft.azure.storage.blob.CloudBlockBlob;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Uploads a stream to a block blob as a sequence of blocks, several at a time, and commits them as the blob.
+ *
+ * <p>
+ *     The block ids are made of the position of the block and the MD5 of its content, so the same content at the
+ *     same position always gets the same id. This lets a resumable upload recognize the blocks that a previous
+ *     attempt already left in the storage, and lets a failed block be uploaded again under its original id.
+ * </p>
+ * <p>
+ *     Failed blocks and commits are retried after an exponential backoff with full jitter, so uploads that failed
+ *     together do not retry together. The blocks run on an executor shared by the uploads of the same
+ *     {@link FileUpload}; each upload limits itself to its own number of concurrent blocks.
+ * </p>
+ */
+final class BlockBlobUploader
+{
+    // limit of the storage for the number of blocks in a blob
+    static final int MAX_BLOCKS = 50000;
+
+    private static final String BLOCK_ID_FORMAT = "%05d-%s";
+    private static final String DIGEST_ALGORITHM = "MD5";
+    private static final int HTTP_STATUS_NOT_FOUND = 404;
+    private static final String THREAD_NAME = "azure-iot-sdk-BlockBlobUploader";
+    private static final long INITIAL_RETRY_DELAY_MILLIS = 500;
+    private static final long MAX_RETRY_DELAY_MILLIS = 30 * 1000;
+
+    private final int blockSizeInBytes;
+    private final int concurrentBlockUploads;
+    private final int maxBlockRetries;
+    private final boolean resumable;
+    private final ExecutorService blockUploadExecutor;
+    private final long initialRetryDelayMillis;
+
+    private final CustomLogger logger = new CustomLogger(this.getClass());
+
+    /**
+     * Constructor.
+     *
+     * @param options is the block upload configuration. Cannot be {@code null}.
+     * @param blockUploadExecutor is the executor to upload the blocks on. Cannot be {@code null}.
+     * @throws IllegalArgumentException if the options or the executor are null.
+     */
+    BlockBlobUploader(FileUploadOptions options, ExecutorService blockUploadExecutor) throws IllegalArgumentException
+    {
+        this(options, blockUploadExecutor, INITIAL_RETRY_DELAY_MILLIS);
+    }
+
+    /**
+     * Constructor with the delay before the first retry.
+     *
+     * @param options is the block upload configuration. Cannot be {@code null}.
+     * @param blockUploadExecutor is the executor to upload the blocks on. Cannot be {@code null}.
+     * @param initialRetryDelayMillis is the longest wait before the first retry, doubled on each attempt.
+     * @throws IllegalArgumentException if the options or the executor are null, or the delay is negative.
+     */
+    BlockBlobUploader(FileUploadOptions options, ExecutorService blockUploadExecutor, long initialRetryDelayMillis)
+            throws IllegalArgumentException
+    {
+        /* Codes_SRS_BLOCKBLOBUPLOADER_12_001: [If the `options` is null, the constructor shall throw IllegalArgumentException.] */
+        if (options == null)
+        {
+            throw new IllegalArgumentException("options is null");
+        }
+
+        /* Codes_SRS_BLOCKBLOBUPLOADER_12_014: [If the `blockUploadExecutor` is null, the constructor shall throw IllegalArgumentException.] */
+        if (blockUploadExecutor == null)
+        {
+            throw new IllegalArgumentException("blockUploadExecutor is null");
+        }
+
+        /* Codes_SRS_BLOCKBLOBUPLOADER_12_017: [If the `initialRetryDelayMillis` is negative, the constructor shall throw IllegalArgumentException.] */
+        if (initialRetryDelayMillis < 0)
+        {
+            throw new IllegalArgumentException("initialRetryDelayMillis is negative");
+        }
+
+        this.blockUploadExecutor = blockUploadExecutor;
+        this.initialRetryDelayMillis = initialRetryDelayMillis;
+
+        /* Codes_SRS_BLOCKBLOBUPLOADER_12_002: [The constructor shall copy the block size, concurrency, retries and resumable settings, so later changes to the `options` do not affect this upload.] */
+        this.blockSizeInBytes = options.getBlockSizeInBytes();
+        this.concurrentBlockUploads = options.getConcurrentBlockUploads();
+        this.maxBlockRetries = options.getMaxBlockRetries();
+        this.resumable = options.isResumable();
+    }
+
+    /**
+     * Getter for the size of the blocks.
+     *
+     * @return the number of bytes in each block.
+     */
+    int getBlockSizeInBytes()
+    {
+        return this.blockSizeInBytes;
+    }
+
+    /**
+     * Uploads the stream to the blob and commits it.
+     *
+     * @param blob is the blob to upload to.
+     * @param inputStream is the stream to upload.
+     * @param streamLength is the number of bytes to upload, or {@link FileUploadOptions#UNKNOWN_STREAM_LENGTH} to
+     *                     upload until the end of the stream.
+     * @param progressTracker is the tracker to report the blocks to. Can be {@code null}.
+     * @throws StorageException if a block or the commit failed after all the retries.
+     * @throws IOException if the stream could not be read, it ended before {@code streamLength} bytes, it has more
+     *                     blocks than the storage accepts, or the upload was interrupted.
+     */
+    void upload(CloudBlockBlob blob, InputStream inputStream, long streamLength, FileUploadProgressTracker progressTracker)
+            throws StorageException, IOException
+    {
+        /* Codes_SRS_BLOCKBLOBUPLOADER_12_003: [If the upload is resumable, the upload shall get the ids of the uncommitted blocks of the blob.] */
+        Set<String> stagedBlockIds = this.resumable ? this.getStagedBlockIds(blob) : new HashSet<String>();
+
+        List<BlockEntry> blockList = new ArrayList<>();
+        List<Future<Void>> blockUploads = new LinkedList<>();
+        Semaphore freeSlots = new Semaphore(this.concurrentBlockUploads);
+
+        try
+        {
+            long remaining = streamLength;
+            boolean endOfStream = false;
+            while (!endOfStream && remaining != 0)
+            {
+                // the slot is taken before reading so that at most concurrentBlockUploads blocks are in memory
+                freeSlots.acquire();
+                int blockLength = (remaining < 0) ? this.blockSizeInBytes : (int) Math.min(this.blockSizeInBytes, remaining);
+                byte[] block = new byte[blockLength];
+                int read = readBlock(inputStream, block);
+
+                if (remaining > 0)
+                {
+                    if (read < blockLength)
+                    {
+                        /* Codes_SRS_BLOCKBLOBUPLOADER_12_004: [If the stream ends before `streamLength` bytes, the upload shall throw IOException.] */
+                        throw new IOException("The stream ended before " + streamLength + " bytes");
+                    }
+                    remaining -= read;
+                }
+                else if (read < blockLength)
+                {
+                    /* Codes_SRS_BLOCKBLOBUPLOADER_12_005: [If the `streamLength` is unknown, the upload shall read the stream until its end.] */
+                    endOfStream = true;
+                    if (read == 0)
+                    {
+                        freeSlots.release();
+                        break;
+                    }
+                }
+
+                if (blockList.size() == MAX_BLOCKS)
+                {
+                    /* Codes_SRS_BLOCKBLOBUPLOADER_12_006: [If the stream needs more than MAX_BLOCKS blocks, the upload shall throw IOException.] */
+                    throw new IOException("The stream needs more than " + MAX_BLOCKS + " blocks of " + this.blockSizeInBytes + " bytes");
+                }
+
+                String blockId = createBlockId(blockList.size(), block, read);
+                blockList.add(new BlockEntry(blockId));
+
+                if (stagedBlockIds.contains(blockId))
+                {
+                    /* Codes_SRS_BLOCKBLOBUPLOADER_12_007: [If a block with the same id is already staged in the blob, the upload shall not upload it again.] */
+                    freeSlots.release();
+                    if (progressTracker != null)
+                    {
+                        /* Codes_SRS_BLOCKBLOBUPLOADER_12_013: [If a `progressTracker` is provided, the upload shall report the blocks resumed, started, uploaded and failed to it.] */
+                        progressTracker.onBlockResumed(read);
+                    }
+                    continue;
+                }
+
+                /* Codes_SRS_BLOCKBLOBUPLOADER_12_008: [The upload shall upload up to `concurrentBlockUploads` blocks at the same time.] */
+                if (progressTracker != null)
+                {
+                    progressTracker.onBlockStarted();
+                }
+                blockUploads.add(this.blockUploadExecutor.submit(new BlockUpload(blob, blockId, block, read, freeSlots, progressTracker)));
+                throwIfAnyFailed(blockUploads);
+            }
+
+            for (Future<Void> blockUpload : blockUploads)
+            {
+                waitFor(blockUpload);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("The block upload was interrupted");
+        }
+        finally
+        {
+            // stops the blocks still in flight after a failure, without affecting the other uploads on the executor
+            for (Future<Void> blockUpload : blockUploads)
+            {
+                blockUpload.cancel(true);
+            }
+        }
+
+        /* Codes_SRS_BLOCKBLOBUPLOADER_12_009: [After all blocks are uploaded, the upload shall commit the block list in the stream order.] */
+        this.commit(blob, blockList);
+    }
+
+    private void commit(CloudBlockBlob blob, List<BlockEntry> blockList) throws StorageException
+    {
+        for (int attempt = 0; ; attempt++)
+        {
+            try
+            {
+                blob.commitBlockList(blockList);
+                return;
+            }
+            catch (StorageException e)
+            {
+                /* Codes_SRS_BLOCKBLOBUPLOADER_12_010: [If the commit fails, the upload shall commit the same block list again up to `maxBlockRetries` times, without uploading the blocks again.] */
+                if (attempt >= this.maxBlockRetries)
+                {
+                    throw e;
+                }
+                logger.LogInfo("Commit of the block list failed, retrying, method name is %s. %s", logger.getLazyMethodName(), e);
+
+                try
+                {
+                    this.waitBeforeRetry(attempt);
+                }
+                catch (InterruptedException interrupted)
+                {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private Set<String> getStagedBlockIds(CloudBlockBlob blob)
+    {
+        Set<String> stagedBlockIds = new HashSet<>();
+        try
+        {
+            for (BlockEntry blockEntry : blob.downloadBlockList(BlockListingFilter.UNCOMMITTED, null, null, null))
+            {
+                stagedBlockIds.add(blockEntry.getId());
+            }
+        }
+        catch (StorageException e)
+        {
+            // nothing to resume; the upload still works, it just sends every block
+            if (e.getHttpStatusCode() != HTTP_STATUS_NOT_FOUND)
+            {
+                logger.LogInfo("Could not list the uncommitted blocks, uploading all of them, method name is %s. %s", logger.getLazyMethodName(), e);
+            }
+        }
+
+        return stagedBlockIds;
+    }
+
+    private final class BlockUpload implements Callable<Void>
+    {
+        private final CloudBlockBlob blob;
+        private final String blockId;
+        private final byte[] block;
+        private final int length;
+        private final Semaphore freeSlots;
+        private final FileUploadProgressTracker progressTracker;
+
+        BlockUpload(CloudBlockBlob blob, String blockId, byte[] block, int length, Semaphore freeSlots,
+                    FileUploadProgressTracker progressTracker)
+        {
+            this.blob = blob;
+            this.blockId = blockId;
+            this.block = block;
+            this.length = length;
+            this.freeSlots = freeSlots;
+            this.progressTracker = progressTracker;
+        }
+
+        @Override
+        public Void call() throws StorageException, IOException
+        {
+            Thread.currentThread().setName(THREAD_NAME);
+            long startNanos = System.nanoTime();
+            boolean isReporter = false;
+            try
+            {
+                for (int attempt = 0; ; attempt++)
+                {
+                    try
+                    {
+                        blob.uploadBlock(blockId, new ByteArrayInputStream(block, 0, length), length);
+                        if (progressTracker != null)
+                        {
+                            isReporter = progressTracker.onBlockUploaded(length, System.nanoTime() - startNanos);
+                        }
+                        return null;
+                    }
+                    catch (StorageException | IOException e)
+                    {
+                        /* Codes_SRS_BLOCKBLOBUPLOADER_12_011: [If a block fails to upload, the upload shall upload the same block with the same id again up to `maxBlockRetries` times.] */
+                        if (attempt >= maxBlockRetries)
+                        {
+                            if (progressTracker != null)
+                            {
+                                isReporter = progressTracker.onBlockFailed();
+                            }
+                            throw e;
+                        }
+                        logger.LogInfo("Upload of block %s failed, retrying, method name is %s. %s", blockId, logger.getLazyMethodName(), e);
+                    }
+
+                    try
+                    {
+                        waitBeforeRetry(attempt);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("The upload of block " + blockId + " was interrupted");
+                    }
+                }
+            }
+            finally
+            {
+                freeSlots.release();
+
+                /* Codes_SRS_BLOCKBLOBUPLOADER_12_016: [A block shall report its progress after it handed back its upload slot, so the progress callback does not hold it.] */
+                if (isReporter)
+                {
+                    progressTracker.reportPublishedProgress();
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits a random time between 0 and the exponential backoff of the attempt, capped at MAX_RETRY_DELAY_MILLIS.
+     *
+     * @param attempt is the number of the attempt that failed, starting at 0.
+     * @throws InterruptedException if the upload was interrupted while waiting.
+     */
+    private void waitBeforeRetry(int attempt) throws InterruptedException
+    {
+        /* Codes_SRS_BLOCKBLOBUPLOADER_12_015: [Before retrying a block or the commit, the upload shall wait a random time between 0 and the initial delay doubled on each attempt, capped at MAX_RETRY_DELAY_MILLIS.] */
+        long backoffMillis = Math.min(MAX_RETRY_DELAY_MILLIS, this.initialRetryDelayMillis << Math.min(attempt, 16));
+        Thread.sleep(ThreadLocalRandom.current().nextLong(backoffMillis + 1));
+    }
+
+    private static void throwIfAnyFailed(List<Future<Void>> blockUploads) throws StorageException, IOException, InterruptedException
+    {
+        // finished uploads are dropped, so the list only holds the blocks still in flight
+        Iterator<Future<Void>> iterator = blockUploads.iterator();
+        while (iterator.hasNext())
+        {
+            Future<Void> blockUpload = iterator.next();
+            if (blockUpload.isDone())
+            {
+                /* Codes_SRS_BLOCKBLOBUPLOADER_12_012: [If a block fails after all the retries, the upload shall stop reading the stream and throw the failure.] */
+                waitFor(blockUpload);
+                iterator.remove();
+            }
+        }
+    }
+
+    private static void waitFor(Future<Void> blockUpload) throws StorageException, IOException, InterruptedException
+    {
+        try
+        {
+            blockUpload.get();
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof StorageException)
+            {
+                throw (StorageException) cause;
+            }
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static int readBlock(InputStream inputStream, byte[] block) throws IOException
+    {
+        int total = 0;
+        while (total < block.length)
+        {
+            int read = inputStream.read(block, total, block.length - total);
+            if (read < 0)
+            {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    private static String createBlockId(int blockIndex, byte[] block, int length) throws IOException
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IOException(e);
+        }
+        digest.update(block, 0, length);
+
+        StringBuilder hash = new StringBuilder();
+        for (byte b : digest.digest())
+        {
+            hash.append(String.format("%02x", b));
+        }
+
+        // every id in a blob must have the same length, which the fixed width index and hash guarantee
+        String blockId = String.format(BLOCK_ID_FORMAT, blockIndex, hash.toString());
+        return Base64.encodeBase64StringLocal(blockId.getBytes(StandardCharsets.UTF_8));
+    }
+}
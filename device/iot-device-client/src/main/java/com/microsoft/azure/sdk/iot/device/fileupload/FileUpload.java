@@ -12,6 +12,7 @@ import com.microsoft.azure.sdk.iot.device.transport.https.HttpsTransportManager;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Queue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.ScheduledExecutorService;
@@ -26,6 +27,8 @@ public final class FileUpload
     private HttpsTransportManager httpsTransportManager;
     private static CustomLogger logger;
     private ScheduledExecutorService taskScheduler;
+    // Shared by the block uploads of all the files, created with the first one. Idle threads stop after a minute.
+    private ExecutorService blockUploadExecutor;
     private FileUploadStatusCallBack fileUploadStatusCallBack;
     private static Queue<FileUploadInProgress> fileUploadInProgressesSet;
 
@@ -67,7 +70,7 @@ public final class FileUpload
         fileUploadStatusCallBack = new FileUploadStatusCallBack();
 
         logger = new CustomLogger(this.getClass());
-        logger.LogInfo("FileUpload object is created successfully, method name is %s ", logger.getMethodName());
+        logger.LogInfo("FileUpload object is created successfully, method name is %s ", logger.getLazyMethodName());
     }
 
     /**
@@ -93,6 +96,35 @@ public final class FileUpload
             String blobName, InputStream inputStream, long streamLength,
             IotHubEventCallback statusCallback, Object statusCallbackContext)
             throws IllegalArgumentException, IOException
+    {
+        this.uploadToBlobAsync(blobName, inputStream, streamLength, null, statusCallback, statusCallbackContext);
+    }
+
+    /**
+     * Upload the file to container, which was associated to the iothub, as a sequence of blocks.
+     * This function will start the upload process, and back the execution
+     * to the caller. The upload process will be executed in background.
+     * When it is completed, the background thread will trigger the
+     * callback with the upload status.
+     *
+     * @param blobName is the name of the file in the container.
+     * @param inputStream is the input stream.
+     * @param streamLength is the stream length, or {@link FileUploadOptions#UNKNOWN_STREAM_LENGTH} to upload
+     *                     until the end of the stream.
+     * @param options is the block upload configuration. If {@code null}, the stream is uploaded with a single request.
+     * @param statusCallback is the callback to notify that the upload is completed (with status).
+     * @param statusCallbackContext is the context of the callback, allowing multiple uploads in parallel.
+     * @throws IllegalArgumentException if one of the parameters is invalid.
+     *              blobName is {@code null} or empty,
+     *              inputStream is {@code null} or not available,
+     *              streamLength is negative and not an unknown length of a block upload,
+     *              statusCallback is {@code null}
+     * @throws IOException if an I/O error occurs in the inputStream.
+     */
+    public synchronized void uploadToBlobAsync(
+            String blobName, InputStream inputStream, long streamLength, FileUploadOptions options,
+            IotHubEventCallback statusCallback, Object statusCallbackContext)
+            throws IllegalArgumentException, IOException
     {
         /* Codes_SRS_FILEUPLOAD_21_005: [If the `blobName` is null or empty, the uploadToBlobAsync shall throw IllegalArgumentException.] */
         if((blobName == null) || blobName.isEmpty())
@@ -108,7 +140,8 @@ public final class FileUpload
         }
 
         /* Codes_SRS_FILEUPLOAD_21_007: [If the `streamLength` is negative, the uploadToBlobAsync shall throw IllegalArgumentException.] */
-        if(streamLength < 0)
+        /* Codes_SRS_FILEUPLOAD_12_001: [If the `options` is provided, the uploadToBlobAsync shall accept UNKNOWN_STREAM_LENGTH as the `streamLength`.] */
+        if((streamLength < 0) && ((options == null) || (streamLength != FileUploadOptions.UNKNOWN_STREAM_LENGTH)))
         {
             throw new IllegalArgumentException("streamLength is negative");
         }
@@ -125,7 +158,21 @@ public final class FileUpload
 
         /* Codes_SRS_FILEUPLOAD_21_004: [The uploadToBlobAsync shall asynchronously upload the InputStream `inputStream` to the blob in `blobName`.] */
         /* Codes_SRS_FILEUPLOAD_21_009: [The uploadToBlobAsync shall create a `FileUploadTask` to control this file upload.] */
-        FileUploadTask fileUploadTask = new FileUploadTask(blobName, inputStream, streamLength, httpsTransportManager, fileUploadStatusCallBack, newUpload);
+        FileUploadTask fileUploadTask;
+        if (options == null)
+        {
+            fileUploadTask = new FileUploadTask(blobName, inputStream, streamLength, httpsTransportManager, fileUploadStatusCallBack, newUpload);
+        }
+        else
+        {
+            /* Codes_SRS_FILEUPLOAD_12_002: [If the `options` is provided, the uploadToBlobAsync shall create a `FileUploadTask` that uploads the stream in blocks.] */
+            /* Codes_SRS_FILEUPLOAD_12_003: [The block uploads of all the files shall run on one executor, created with the first block upload.] */
+            if (blockUploadExecutor == null)
+            {
+                blockUploadExecutor = Executors.newCachedThreadPool();
+            }
+            fileUploadTask = new FileUploadTask(blobName, inputStream, streamLength, options, blockUploadExecutor, httpsTransportManager, fileUploadStatusCallBack, newUpload);
+        }
 
         /* Codes_SRS_FILEUPLOAD_21_010: [The uploadToBlobAsync shall schedule the task `FileUploadTask` to immediately start.] */
         newUpload.setTask(taskScheduler.submit(fileUploadTask));
@@ -171,6 +218,12 @@ public final class FileUpload
         /* Codes_SRS_FILEUPLOAD_21_017: [The closeNow shall shutdown the thread pool by calling `shutdownNow`.] */
         taskScheduler.shutdownNow();
 
+        /* Codes_SRS_FILEUPLOAD_12_004: [The closeNow shall shutdown the block upload executor, if any, by calling `shutdownNow`.] */
+        if (blockUploadExecutor != null)
+        {
+            blockUploadExecutor.shutdownNow();
+        }
+
         /* Codes_SRS_FILEUPLOAD_21_018: [If there is pending file uploads, the closeNow shall cancel the upload, and call the `statusCallback` reporting ERROR.] */
         for (FileUploadInProgress uploadInProgress : fileUploadInProgressesSet)
         {
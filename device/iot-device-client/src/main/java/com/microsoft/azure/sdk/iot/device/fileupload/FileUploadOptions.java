@@ -0,0 +1,178 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.fileupload;
+
+/**
+ * Options for uploading a stream to the storage as a sequence of blocks, instead of with a single request.
+ *
+ * <p>
+ *     The stream is cut in blocks of {@link #getBlockSizeInBytes()} bytes that are uploaded in parallel, up to
+ *     {@link #getConcurrentBlockUploads()} at a time, and then committed as the blob. Streams of unknown length
+ *     can be uploaded by passing {@link #UNKNOWN_STREAM_LENGTH} as the stream length. A block that fails is
+ *     retried with the same data, without uploading the other blocks again. If the upload is resumable, blocks
+ *     left in the storage by a previous attempt to upload the same content to the same blob are not uploaded again.
+ *     The progress of the upload can be followed with a {@link FileUploadProgressCallback}.
+ * </p>
+ */
+public final class FileUploadOptions
+{
+    /**
+     * Stream length to use when the length of the stream is not known. The stream is read until its end.
+     */
+    public static final long UNKNOWN_STREAM_LENGTH = -1;
+
+    /**
+     * The largest block accepted by the storage.
+     */
+    public static final int MAX_BLOCK_SIZE_IN_BYTES = 4 * 1024 * 1024;
+
+    private static final int DEFAULT_CONCURRENT_BLOCK_UPLOADS = 4;
+    private static final int DEFAULT_MAX_BLOCK_RETRIES = 2;
+
+    private int blockSizeInBytes = MAX_BLOCK_SIZE_IN_BYTES;
+    private int concurrentBlockUploads = DEFAULT_CONCURRENT_BLOCK_UPLOADS;
+    private int maxBlockRetries = DEFAULT_MAX_BLOCK_RETRIES;
+    private boolean resumable = false;
+    private FileUploadProgressCallback progressCallback;
+    private Object progressCallbackContext;
+
+    /**
+     * Setter for the size of the blocks.
+     *
+     * @param blockSizeInBytes is the number of bytes in each block, except the last one. Must be between 1 and
+     *                         {@link #MAX_BLOCK_SIZE_IN_BYTES}. The default is {@link #MAX_BLOCK_SIZE_IN_BYTES}.
+     * @throws IllegalArgumentException if the block size is out of range.
+     */
+    public void setBlockSizeInBytes(int blockSizeInBytes) throws IllegalArgumentException
+    {
+        /* Codes_SRS_FILEUPLOADOPTIONS_12_001: [If the `blockSizeInBytes` is less than 1 or greater than MAX_BLOCK_SIZE_IN_BYTES, the setBlockSizeInBytes shall throw IllegalArgumentException.] */
+        if (blockSizeInBytes < 1 || blockSizeInBytes > MAX_BLOCK_SIZE_IN_BYTES)
+        {
+            throw new IllegalArgumentException("blockSizeInBytes must be between 1 and " + MAX_BLOCK_SIZE_IN_BYTES);
+        }
+
+        this.blockSizeInBytes = blockSizeInBytes;
+    }
+
+    /**
+     * Getter for the size of the blocks.
+     *
+     * @return the number of bytes in each block.
+     */
+    public int getBlockSizeInBytes()
+    {
+        return this.blockSizeInBytes;
+    }
+
+    /**
+     * Setter for the number of blocks of the same file uploaded at the same time. Each block in flight holds
+     * {@link #getBlockSizeInBytes()} bytes in memory.
+     *
+     * @param concurrentBlockUploads is the maximum number of blocks uploaded in parallel. Must be greater than 0.
+     *                               The default is 4.
+     * @throws IllegalArgumentException if the number is less than 1.
+     */
+    public void setConcurrentBlockUploads(int concurrentBlockUploads) throws IllegalArgumentException
+    {
+        /* Codes_SRS_FILEUPLOADOPTIONS_12_002: [If the `concurrentBlockUploads` is less than 1, the setConcurrentBlockUploads shall throw IllegalArgumentException.] */
+        if (concurrentBlockUploads < 1)
+        {
+            throw new IllegalArgumentException("concurrentBlockUploads must be at least 1");
+        }
+
+        this.concurrentBlockUploads = concurrentBlockUploads;
+    }
+
+    /**
+     * Getter for the number of blocks of the same file uploaded at the same time.
+     *
+     * @return the maximum number of blocks uploaded in parallel.
+     */
+    public int getConcurrentBlockUploads()
+    {
+        return this.concurrentBlockUploads;
+    }
+
+    /**
+     * Setter for the number of times a failed block upload, or the final commit, is tried again before the
+     * upload fails. These retries come on top of the retry policy of the storage client.
+     *
+     * @param maxBlockRetries is the number of retries. Cannot be negative. The default is 2.
+     * @throws IllegalArgumentException if the number is negative.
+     */
+    public void setMaxBlockRetries(int maxBlockRetries) throws IllegalArgumentException
+    {
+        /* Codes_SRS_FILEUPLOADOPTIONS_12_003: [If the `maxBlockRetries` is negative, the setMaxBlockRetries shall throw IllegalArgumentException.] */
+        if (maxBlockRetries < 0)
+        {
+            throw new IllegalArgumentException("maxBlockRetries cannot be negative");
+        }
+
+        this.maxBlockRetries = maxBlockRetries;
+    }
+
+    /**
+     * Getter for the number of times a failed block upload is tried again.
+     *
+     * @return the number of retries.
+     */
+    public int getMaxBlockRetries()
+    {
+        return this.maxBlockRetries;
+    }
+
+    /**
+     * Setter for the resumable upload. When enabled, the upload first lists the uncommitted blocks of the blob and
+     * skips the blocks whose content is already there, so that uploading the same stream again after a failure
+     * only sends the missing blocks. Listing the blocks requires read access to the blob.
+     *
+     * @param resumable is {@code true} to resume previous uploads of the same content. The default is {@code false}.
+     */
+    public void setResumable(boolean resumable)
+    {
+        this.resumable = resumable;
+    }
+
+    /**
+     * Getter for the resumable upload.
+     *
+     * @return {@code true} if previous uploads of the same content are resumed.
+     */
+    public boolean isResumable()
+    {
+        return this.resumable;
+    }
+
+    /**
+     * Setter for the callback that reports the progress, the transfer rate and the timings of the upload.
+     *
+     * @param progressCallback is the callback to report the progress to, or {@code null} to not report it.
+     * @param progressCallbackContext is the context for the callback. Can be {@code null}.
+     */
+    public void setProgressCallback(FileUploadProgressCallback progressCallback, Object progressCallbackContext)
+    {
+        this.progressCallback = progressCallback;
+        this.progressCallbackContext = progressCallbackContext;
+    }
+
+    /**
+     * Getter for the progress callback.
+     *
+     * @return the callback, or {@code null} if the progress is not reported.
+     */
+    public FileUploadProgressCallback getProgressCallback()
+    {
+        return this.progressCallback;
+    }
+
+    /**
+     * Getter for the context of the progress callback.
+     *
+     * @return the context of the callback.
+     */
+    public Object getProgressCallbackContext()
+    {
+        return this.progressCallbackContext;
+    }
+}
@@ -0,0 +1,152 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.fileupload;
+
+/**
+ * Snapshot of the progress and the timings of a file upload, provided to the {@link FileUploadProgressCallback}.
+ * Durations that were not measured yet are reported as {@link #NOT_MEASURED}.
+ */
+public final class FileUploadProgress
+{
+    /**
+     * Value of a duration that was not measured yet.
+     */
+    public static final long NOT_MEASURED = -1;
+
+    private static final long MILLISECONDS_PER_SECOND = 1000;
+
+    private final long totalBytes;
+    private final long bytesUploaded;
+    private final long bytesTransferred;
+    private final int blocksInFlight;
+    private final int blocksUploaded;
+    private final long lastBlockLatencyMillis;
+    private final long averageBlockLatencyMillis;
+    private final long sasRequestMillis;
+    private final long notificationMillis;
+    private final long elapsedMillis;
+
+    FileUploadProgress(long totalBytes, long bytesUploaded, long bytesTransferred, int blocksInFlight, int blocksUploaded,
+                       long lastBlockLatencyMillis, long averageBlockLatencyMillis, long sasRequestMillis,
+                       long notificationMillis, long elapsedMillis)
+    {
+        this.totalBytes = totalBytes;
+        this.bytesUploaded = bytesUploaded;
+        this.bytesTransferred = bytesTransferred;
+        this.blocksInFlight = blocksInFlight;
+        this.blocksUploaded = blocksUploaded;
+        this.lastBlockLatencyMillis = lastBlockLatencyMillis;
+        this.averageBlockLatencyMillis = averageBlockLatencyMillis;
+        this.sasRequestMillis = sasRequestMillis;
+        this.notificationMillis = notificationMillis;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Getter for the size of the upload.
+     *
+     * @return the number of bytes to upload, or {@link FileUploadOptions#UNKNOWN_STREAM_LENGTH} if the length
+     *         of the stream is not known.
+     */
+    public long getTotalBytes()
+    {
+        return this.totalBytes;
+    }
+
+    /**
+     * Getter for the number of bytes stored in the blob, including the blocks resumed from a previous attempt.
+     *
+     * @return the number of bytes uploaded.
+     */
+    public long getBytesUploaded()
+    {
+        return this.bytesUploaded;
+    }
+
+    /**
+     * Getter for the number of blocks being uploaded.
+     *
+     * @return the number of blocks in flight.
+     */
+    public int getBlocksInFlight()
+    {
+        return this.blocksInFlight;
+    }
+
+    /**
+     * Getter for the number of blocks stored in the blob, including the blocks resumed from a previous attempt.
+     *
+     * @return the number of blocks uploaded.
+     */
+    public int getBlocksUploaded()
+    {
+        return this.blocksUploaded;
+    }
+
+    /**
+     * Getter for the time the last block took to upload, retries included.
+     *
+     * @return the latency in milliseconds, or {@link #NOT_MEASURED}.
+     */
+    public long getLastBlockLatencyMillis()
+    {
+        return this.lastBlockLatencyMillis;
+    }
+
+    /**
+     * Getter for the average time a block took to upload, retries included.
+     *
+     * @return the latency in milliseconds, or {@link #NOT_MEASURED}.
+     */
+    public long getAverageBlockLatencyMillis()
+    {
+        return this.averageBlockLatencyMillis;
+    }
+
+    /**
+     * Getter for the round trip of the request to the IoT Hub for the blob information and SAS token.
+     *
+     * @return the duration in milliseconds, or {@link #NOT_MEASURED}.
+     */
+    public long getSasRequestMillis()
+    {
+        return this.sasRequestMillis;
+    }
+
+    /**
+     * Getter for the round trip of the notification of the upload result to the IoT Hub.
+     *
+     * @return the duration in milliseconds, or {@link #NOT_MEASURED}.
+     */
+    public long getNotificationMillis()
+    {
+        return this.notificationMillis;
+    }
+
+    /**
+     * Getter for the time since the upload started.
+     *
+     * @return the duration in milliseconds.
+     */
+    public long getElapsedMillis()
+    {
+        return this.elapsedMillis;
+    }
+
+    /**
+     * Getter for the transfer rate to the storage. Only the bytes sent by this upload count, not the blocks
+     * resumed from a previous attempt.
+     *
+     * @return the number of bytes sent per second since the upload started, or 0 if no time elapsed.
+     */
+    public long getBytesPerSecond()
+    {
+        if (this.elapsedMillis <= 0)
+        {
+            return 0;
+        }
+
+        return (this.bytesTransferred * MILLISECONDS_PER_SECOND) / this.elapsedMillis;
+    }
+}
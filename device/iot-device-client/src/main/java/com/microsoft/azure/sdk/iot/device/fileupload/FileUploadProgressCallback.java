@@ -0,0 +1,26 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.fileupload;
+
+/**
+ * An interface for a file upload progress callback.
+ *
+ * Developers are expected to create an implementation of this interface and set it in the
+ * {@link FileUploadOptions}. The file upload will call
+ * {@link FileUploadProgressCallback#execute(FileUploadProgress, Object)} each time the upload makes progress:
+ * when the blob information is received from the IoT Hub, when a block finishes uploading, and when the IoT Hub is
+ * notified of the result. Calls for the same upload never overlap and come in order. While a call runs, the upload
+ * goes on, and the changes it makes are reported together by the next call with the latest progress. The calls come
+ * from the upload threads, so the callback should return quickly.
+ */
+public interface FileUploadProgressCallback
+{
+    /**
+     * Executes the callback.
+     *
+     * @param progress the state of the upload at the time of the call.
+     * @param callbackContext a custom context given by the developer.
+     */
+    void execute(FileUploadProgress progress, Object callbackContext);
+}
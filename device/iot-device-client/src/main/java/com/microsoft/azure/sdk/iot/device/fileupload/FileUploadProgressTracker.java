@@ -0,0 +1,260 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.fileupload;
+
+import com.microsoft.azure.sdk.iot.device.CustomLogger;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the progress and timings of one file upload and reports a {@link FileUploadProgress} to the user
+ * callback. Each change takes a snapshot under the tracker lock and hands it over; the callback runs outside the
+ * lock on one thread at a time, so reports never overlap and are in order. While the callback runs, newer snapshots
+ * replace the one waiting, so a slow callback gets the latest progress instead of every change. The thread that
+ * publishes first runs the callback: the block uploads hand back their upload slot before they report, so a slow
+ * callback delays the end of one block thread, but not the number of blocks in flight.
+ */
+final class FileUploadProgressTracker
+{
+    private final FileUploadProgressCallback progressCallback;
+    private final Object progressCallbackContext;
+    private final long totalBytes;
+
+    private final Object lock = new Object();
+
+    // Guarded by lock.
+    private long startNanos;
+    private long bytesUploaded;
+    private long bytesTransferred;
+    private int blocksInFlight;
+    private int blocksUploaded;
+    private int blocksMeasured;
+    private long totalBlockLatencyMillis;
+    private long lastBlockLatencyMillis = FileUploadProgress.NOT_MEASURED;
+    private long sasRequestMillis = FileUploadProgress.NOT_MEASURED;
+    private long notificationMillis = FileUploadProgress.NOT_MEASURED;
+    private FileUploadProgress pendingProgress;
+    private boolean isReporting;
+
+    private final CustomLogger logger = new CustomLogger(this.getClass());
+
+    /**
+     * Constructor.
+     *
+     * @param progressCallback is the callback to report the progress to. Cannot be {@code null}.
+     * @param progressCallbackContext is the context for the callback. Can be any value.
+     * @param totalBytes is the size of the upload, or {@link FileUploadOptions#UNKNOWN_STREAM_LENGTH}.
+     * @throws IllegalArgumentException if the callback is null.
+     */
+    FileUploadProgressTracker(FileUploadProgressCallback progressCallback, Object progressCallbackContext, long totalBytes)
+            throws IllegalArgumentException
+    {
+        /* Codes_SRS_FILEUPLOADPROGRESSTRACKER_12_001: [If the `progressCallback` is null, the constructor shall throw IllegalArgumentException.] */
+        if (progressCallback == null)
+        {
+            throw new IllegalArgumentException("progressCallback is null");
+        }
+
+        this.progressCallback = progressCallback;
+        this.progressCallbackContext = progressCallbackContext;
+        this.totalBytes = totalBytes;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Restarts the elapsed time. Called when the upload task starts running.
+     */
+    void onUploadStarted()
+    {
+        synchronized (this.lock)
+        {
+            /* Codes_SRS_FILEUPLOADPROGRESSTRACKER_12_002: [The onUploadStarted shall start measuring the elapsed time.] */
+            this.startNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Records the round trip of the blob information request to the IoT Hub.
+     *
+     * @param elapsedNanos is the duration of the request.
+     */
+    void onSasRequestCompleted(long elapsedNanos)
+    {
+        boolean isReporter;
+        synchronized (this.lock)
+        {
+            /* Codes_SRS_FILEUPLOADPROGRESSTRACKER_12_003: [The onSasRequestCompleted shall record the SAS request round trip and report the progress.] */
+            this.sasRequestMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+            isReporter = this.publishProgress();
+        }
+
+        if (isReporter)
+        {
+            this.reportPublishedProgress();
+        }
+    }
+
+    /**
+     * Records that a block started uploading. Blocks start as often as they finish, so only the next reported
+     * change shows it.
+     */
+    void onBlockStarted()
+    {
+        synchronized (this.lock)
+        {
+            /* Codes_SRS_FILEUPLOADPROGRESSTRACKER_12_004: [The onBlockStarted shall count one more block in flight, without reporting the progress until the next reported change.] */
+            this.blocksInFlight++;
+        }
+    }
+
+    /**
+     * Records that a block was stored in the blob, without reporting it.
+     *
+     * @param length is the number of bytes in the block.
+     * @param elapsedNanos is the time the block took to upload, retries included.
+     * @return true if the caller must call {@link #reportPublishedProgress()}, once it handed back its upload slot.
+     */
+    boolean onBlockUploaded(long length, long elapsedNanos)
+    {
+        synchronized (this.lock)
+        {
+            /* Codes_SRS_FILEUPLOADPROGRESSTRACKER_12_005: [The onBlockUploaded shall count the block and its bytes as uploaded and transferred, record its latency, remove it from the blocks in flight, and publish the progress for the caller to report.] */
+            this.blocksInFlight--;
+            this.blocksUploaded++;
+            this.bytesUploaded += length;
+            this.bytesTransferred += length;
+            this.lastBlockLatencyMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+            this.totalBlockLatencyMillis += this.lastBlockLatencyMillis;
+            this.blocksMeasured++;
+            return this.publishProgress();
+        }
+    }
+
+    /**
+     * Records that a block failed after all its retries, without reporting it.
+     *
+     * @return true if the caller must call {@link #reportPublishedProgress()}, once it handed back its upload slot.
+     */
+    boolean onBlockFailed()
+    {
+        synchronized (this.lock)
+        {
+            /* Codes_SRS_FILEUPLOADPROGRESSTRACKER_12_006: [The onBlockFailed shall remove the block from the blocks in flight and publish the progress for the caller to report.] */
+            this.blocksInFlight--;
+            return this.publishProgress();
+        }
+    }
+
+    /**
+     * Records a block that a previous attempt already stored in the blob, and that is not uploaded again.
+     *
+     * @param length is the number of bytes in the block.
+     */
+    void onBlockResumed(long length)
+    {
+        boolean isReporter;
+        synchronized (this.lock)
+        {
+            /* Codes_SRS_FILEUPLOADPROGRESSTRACKER_12_007: [The onBlockResumed shall count the block and its bytes as uploaded, but not as transferred, and report the progress.] */
+            this.blocksUploaded++;
+            this.bytesUploaded += length;
+            isReporter = this.publishProgress();
+        }
+
+        if (isReporter)
+        {
+            this.reportPublishedProgress();
+        }
+    }
+
+    /**
+     * Records the round trip of the upload result notification to the IoT Hub.
+     *
+     * @param elapsedNanos is the duration of the notification.
+     */
+    void onNotificationCompleted(long elapsedNanos)
+    {
+        boolean isReporter;
+        synchronized (this.lock)
+        {
+            /* Codes_SRS_FILEUPLOADPROGRESSTRACKER_12_008: [The onNotificationCompleted shall record the notification round trip and report the progress.] */
+            this.notificationMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+            isReporter = this.publishProgress();
+        }
+
+        if (isReporter)
+        {
+            this.reportPublishedProgress();
+        }
+    }
+
+    /**
+     * Getter for the current progress.
+     *
+     * @return a snapshot of the progress.
+     */
+    FileUploadProgress getProgress()
+    {
+        synchronized (this.lock)
+        {
+            long averageBlockLatencyMillis = (this.blocksMeasured == 0) ?
+                    FileUploadProgress.NOT_MEASURED : (this.totalBlockLatencyMillis / this.blocksMeasured);
+
+            return new FileUploadProgress(this.totalBytes, this.bytesUploaded, this.bytesTransferred, this.blocksInFlight,
+                    this.blocksUploaded, this.lastBlockLatencyMillis, averageBlockLatencyMillis, this.sasRequestMillis,
+                    this.notificationMillis, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.startNanos));
+        }
+    }
+
+    /**
+     * Hands over a snapshot of the progress to the reporting thread. Must be called under the tracker lock.
+     *
+     * @return true if no thread is reporting, in which case the caller must call {@link #reportPublishedProgress()}
+     * once it released the lock.
+     */
+    private boolean publishProgress()
+    {
+        this.pendingProgress = this.getProgress();
+        if (this.isReporting)
+        {
+            return false;
+        }
+
+        this.isReporting = true;
+        return true;
+    }
+
+    /**
+     * Reports the published snapshots until none is waiting. Called outside the tracker lock, by the thread that
+     * published while nobody was reporting.
+     */
+    void reportPublishedProgress()
+    {
+        while (true)
+        {
+            FileUploadProgress progress;
+            synchronized (this.lock)
+            {
+                progress = this.pendingProgress;
+                this.pendingProgress = null;
+                if (progress == null)
+                {
+                    this.isReporting = false;
+                    return;
+                }
+            }
+
+            try
+            {
+                /* Codes_SRS_FILEUPLOADPROGRESSTRACKER_12_010: [The tracker shall invoke the progress callback outside of its lock, on one thread at a time, with the latest progress. Changes made while the callback runs shall be reported once it returns.] */
+                this.progressCallback.execute(progress, this.progressCallbackContext);
+            }
+            catch (Exception e)
+            {
+                /* Codes_SRS_FILEUPLOADPROGRESSTRACKER_12_009: [If the progress callback throws, the tracker shall log the error and continue the upload.] */
+                logger.LogError("File upload progress callback failed, method name is %s. %s", logger.getLazyMethodName(), e);
+            }
+        }
+    }
+}
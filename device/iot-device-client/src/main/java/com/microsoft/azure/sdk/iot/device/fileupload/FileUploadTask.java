@@ -22,6 +22,7 @@ import java.net.URISyntaxException;
 import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Provide means to  asynchronous upload file in the Azure Storage using the IoTHub.
@@ -60,6 +61,8 @@ public final class FileUploadTask implements Runnable
     private String blobName;
     private InputStream inputStream;
     private long streamLength;
+    private BlockBlobUploader blockBlobUploader;
+    private FileUploadProgressTracker progressTracker;
     private IotHubEventCallback userCallback;
     private Object userCallbackContext;
 
@@ -83,6 +86,30 @@ public final class FileUploadTask implements Runnable
      */
     FileUploadTask(String blobName, InputStream inputStream, long streamLength, HttpsTransportManager httpsTransportManager,
                     IotHubEventCallback userCallback, Object userCallbackContext) throws IllegalArgumentException
+    {
+        this(blobName, inputStream, streamLength, null, null, httpsTransportManager, userCallback, userCallbackContext);
+    }
+
+    /**
+     * Constructor for a block upload.
+     *
+     * @param blobName is the destination blob name in the storage. Cannot be {@code null}, or empty.
+     * @param inputStream is the byte stream with the information to store in the blob. Cannot be {@code null}.
+     * @param streamLength is the number of bytes to upload. Cannot be negative, except
+     *                     {@link FileUploadOptions#UNKNOWN_STREAM_LENGTH} when uploading in blocks.
+     * @param options is the configuration to upload the stream in blocks. If {@code null}, the stream is uploaded
+     *                with a single request.
+     * @param blockUploadExecutor is the executor to upload the blocks on. Cannot be {@code null} if the
+     *                            {@code options} are provided.
+     * @param httpsTransportManager is the https transport to connect to the IoT Hub. Cannot be {@code null}.
+     * @param userCallback is the callback to call when the upload is completed. Cannot be {@code null}.
+     * @param userCallbackContext is the context for the callback. Can be any value.
+     * @throws IllegalArgumentException if one of the parameters is not valid.
+     */
+    FileUploadTask(String blobName, InputStream inputStream, long streamLength, FileUploadOptions options,
+                   ExecutorService blockUploadExecutor, HttpsTransportManager httpsTransportManager,
+                   IotHubEventCallback userCallback, Object userCallbackContext)
+            throws IllegalArgumentException
     {
         /* Codes_SRS_FILEUPLOADTASK_21_001: [If the `blobName` is null or empty, the constructor shall throw IllegalArgumentException.] */
         if((blobName == null) || blobName.isEmpty())
@@ -97,11 +124,31 @@ public final class FileUploadTask implements Runnable
         }
 
         /* Codes_SRS_FILEUPLOADTASK_21_003: [If the `streamLength` is negative, the constructor shall throw IllegalArgumentException.] */
-        if(streamLength < 0)
+        /* Codes_SRS_FILEUPLOADTASK_12_001: [If the `options` is provided, the constructor shall accept UNKNOWN_STREAM_LENGTH as the `streamLength`.] */
+        if((streamLength < 0) && ((options == null) || (streamLength != FileUploadOptions.UNKNOWN_STREAM_LENGTH)))
         {
             throw new IllegalArgumentException("streamLength is negative");
         }
 
+        if(options != null)
+        {
+            /* Codes_SRS_FILEUPLOADTASK_12_002: [If the `options` is provided, the constructor shall create a `BlockBlobUploader` with it.] */
+            this.blockBlobUploader = new BlockBlobUploader(options, blockUploadExecutor);
+
+            if(options.getProgressCallback() != null)
+            {
+                /* Codes_SRS_FILEUPLOADTASK_12_005: [If the `options` have a progress callback, the constructor shall create a `FileUploadProgressTracker` to report the progress to it.] */
+                this.progressTracker = new FileUploadProgressTracker(options.getProgressCallback(), options.getProgressCallbackContext(), streamLength);
+            }
+
+            /* Codes_SRS_FILEUPLOADTASK_12_003: [If the `streamLength` needs more than MAX_BLOCKS blocks of the configured size, the constructor shall throw IllegalArgumentException.] */
+            long blockSize = this.blockBlobUploader.getBlockSizeInBytes();
+            if((streamLength / blockSize) + ((streamLength % blockSize == 0) ? 0 : 1) > BlockBlobUploader.MAX_BLOCKS)
+            {
+                throw new IllegalArgumentException("streamLength needs more than " + BlockBlobUploader.MAX_BLOCKS + " blocks, use a larger block size");
+            }
+        }
+
         /* Codes_SRS_FILEUPLOADTASK_21_004: [If the `httpsTransportManager` is null, the constructor shall throw IllegalArgumentException.] */
         if(httpsTransportManager == null)
         {
@@ -123,7 +170,7 @@ public final class FileUploadTask implements Runnable
         this.httpsTransportManager = httpsTransportManager;
 
         logger = new CustomLogger(this.getClass());
-        logger.LogInfo("HttpsFileUpload object is created successfully, method name is %s ", logger.getMethodName());
+        logger.LogInfo("HttpsFileUpload object is created successfully, method name is %s ", logger.getLazyMethodName());
     }
 
     /**
@@ -137,6 +184,11 @@ public final class FileUploadTask implements Runnable
         FileUploadStatusParser fileUploadStatusParser = null;
         IotHubStatusCode resultStatus = IotHubStatusCode.OK;
 
+        if (progressTracker != null)
+        {
+            progressTracker.onUploadStarted();
+        }
+
         try
         {
             resultStatus = getContainer();
@@ -155,7 +207,15 @@ public final class FileUploadTask implements Runnable
             /* Codes_SRS_FILEUPLOADTASK_21_019: [The run shall create a `CloudBlockBlob` using the `blobUri`.] */
                 CloudBlockBlob blob = new CloudBlockBlob(blobURI);
             /* Codes_SRS_FILEUPLOADTASK_21_020: [The run shall upload the `inputStream` with the `streamLength` to the created `CloudBlockBlob`.] */
-                blob.upload(inputStream, streamLength);
+                if (blockBlobUploader == null)
+                {
+                    blob.upload(inputStream, streamLength);
+                }
+                else
+                {
+            /* Codes_SRS_FILEUPLOADTASK_12_004: [If the task was created with `options`, the run shall upload the `inputStream` in blocks, using the `BlockBlobUploader`.] */
+                    blockBlobUploader.upload(blob, inputStream, streamLength, progressTracker);
+                }
             /* Codes_SRS_FILEUPLOADTASK_21_021: [If the upload to blob succeed, the run shall create a notification the IoT Hub with `isSuccess` equals true, `statusCode` equals 0.] */
                 fileUploadStatusParser = new FileUploadStatusParser(correlationId, true, 0, "Succeed to upload to storage.");
                 resultStatus = IotHubStatusCode.OK;
@@ -216,14 +276,23 @@ public final class FileUploadTask implements Runnable
         message.setIotHubMethod(IotHubMethod.POST);
 
         ResponseMessage responseMessage;
+        long elapsedNanos;
         synchronized (FILE_UPLOAD_LOCK)
         {
+            long startNanos = System.nanoTime();
             /* Codes_SRS_FILEUPLOADTASK_21_010: [The run shall open the connection with the iothub, using the httpsTransportManager.] */
             httpsTransportManager.open();
             /* Codes_SRS_FILEUPLOADTASK_21_011: [The run shall send the blob request message to the iothub, using the httpsTransportManager.] */
             responseMessage = httpsTransportManager.sendFileUploadMessage(message);
             /* Codes_SRS_FILEUPLOADTASK_21_012: [The run shall close the connection with the iothub, using the httpsTransportManager.] */
             httpsTransportManager.close();
+            elapsedNanos = System.nanoTime() - startNanos;
+        }
+
+        if (progressTracker != null)
+        {
+            /* Codes_SRS_FILEUPLOADTASK_12_006: [If there is a progress tracker, the run shall report the round trip of the blob request to it, after releasing the file upload lock.] */
+            progressTracker.onSasRequestCompleted(elapsedNanos);
         }
 
         IotHubStatusCode resultStatus = responseMessage.getStatus();
@@ -253,14 +322,23 @@ public final class FileUploadTask implements Runnable
             message.setIotHubMethod(IotHubMethod.POST);
 
             ResponseMessage responseMessage;
+            long elapsedNanos;
             synchronized (FILE_UPLOAD_LOCK)
             {
+                long startNanos = System.nanoTime();
             /* Codes_SRS_FILEUPLOADTASK_21_026: [The run shall open the connection with the iothub, using the httpsTransportManager.] */
                 httpsTransportManager.open();
             /* Codes_SRS_FILEUPLOADTASK_21_027: [The run shall send the blob request message to the iothub, using the httpsTransportManager.] */
                 responseMessage = httpsTransportManager.sendFileUploadNotification(message);
             /* Codes_SRS_FILEUPLOADTASK_21_028: [The run shall close the connection with the iothub, using the httpsTransportManager.] */
                 httpsTransportManager.close();
+                elapsedNanos = System.nanoTime() - startNanos;
+            }
+
+            if (progressTracker != null)
+            {
+            /* Codes_SRS_FILEUPLOADTASK_12_007: [If there is a progress tracker, the run shall report the round trip of the notification to it, after releasing the file upload lock.] */
+                progressTracker.onNotificationCompleted(elapsedNanos);
             }
 
             responseStatus = responseMessage.getStatus();
@@ -0,0 +1,78 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport;
+
+import com.microsoft.azure.sdk.iot.device.CustomLogger;
+
+/**
+ * Dispatches received messages to their callbacks as soon as the transport signals that a message arrived, instead
+ * of polling the transport on a fixed period. Each wake up drains the received messages in batches of the configured
+ * receive batch size. Meant to be run once on a dedicated thread; it loops until {@link #stop()} is called.
+ */
+public final class IotHubEventDrivenReceiveTask implements Runnable
+{
+    private static final String THREAD_NAME = "azure-iot-sdk-IotHubEventDrivenReceiveTask";
+
+    // Upper bound on how long the task sleeps without a signal, as a safety net for messages that are never signalled
+    private static final long MAX_IDLE_MILLISECONDS = 1000;
+
+    private final IotHubTransport transport;
+    private volatile boolean isStopped;
+
+    /**
+     * Private logger for class
+     */
+    private final CustomLogger logger = new CustomLogger(this.getClass());
+
+    public IotHubEventDrivenReceiveTask(IotHubTransport transport)
+    {
+        if (transport == null)
+        {
+            logger.LogError("IotHubEventDrivenReceiveTask constructor called with null value for parameter transport");
+            throw new IllegalArgumentException("Parameter 'transport' must not be null");
+        }
+
+        this.transport = transport;
+    }
+
+    public void run()
+    {
+        Thread.currentThread().setName(THREAD_NAME);
+
+        while (!this.isStopped)
+        {
+            try
+            {
+                this.transport.waitForReceiveWork(MAX_IDLE_MILLISECONDS);
+
+                // one batch per pass, so that stop() is honoured between batches
+                while (!this.isStopped && this.transport.hasReceivedMessages())
+                {
+                    logger.LogTrace("Now handling a batch of received messages");
+                    this.transport.handleMessage();
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            // The loop shall not end because of any error or exception thrown by the transport
+            catch (Throwable e)
+            {
+                logger.LogError(e.toString() + ": " + e.getMessage());
+                logger.LogDebug("Exception on handling received messages", e);
+            }
+        }
+    }
+
+    /**
+     * Ends the receive loop after the batch in progress, if any, completes.
+     */
+    public void stop()
+    {
+        this.isStopped = true;
+        this.transport.signalReceiveWork();
+    }
+}
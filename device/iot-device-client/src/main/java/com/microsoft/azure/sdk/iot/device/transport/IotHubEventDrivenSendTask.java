@@ -0,0 +1,81 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport;
+
+import com.microsoft.azure.sdk.iot.device.CustomLogger;
+
+/**
+ * Sends queued messages and invokes callbacks on completed requests as soon as the transport signals new work,
+ * instead of polling the transport on a fixed period. Meant to be run once on a dedicated thread; it loops
+ * until {@link #stop()} is called.
+ */
+public final class IotHubEventDrivenSendTask implements Runnable
+{
+    private static final String THREAD_NAME = "azure-iot-sdk-IotHubEventDrivenSendTask";
+
+    // Upper bound on how long the task sleeps without a signal, as a safety net for work that is never signalled
+    private static final long MAX_IDLE_MILLISECONDS = 1000;
+
+    private final IotHubTransport transport;
+    private volatile boolean isStopped;
+
+    /**
+     * Private logger for class
+     */
+    private final CustomLogger logger = new CustomLogger(this.getClass());
+
+    public IotHubEventDrivenSendTask(IotHubTransport transport)
+    {
+        if (transport == null)
+        {
+            logger.LogError("IotHubEventDrivenSendTask constructor called with null value for parameter transport");
+            throw new IllegalArgumentException("Parameter 'transport' must not be null");
+        }
+
+        this.transport = transport;
+    }
+
+    public void run()
+    {
+        Thread.currentThread().setName(THREAD_NAME);
+
+        while (!this.isStopped)
+        {
+            try
+            {
+                this.transport.waitForSendWork(MAX_IDLE_MILLISECONDS);
+                if (this.isStopped)
+                {
+                    break;
+                }
+
+                logger.LogTrace("Now sending all queued messages to IoT Hub");
+                this.transport.sendAllMessages();
+
+                logger.LogTrace("Now invoking all queued callbacks");
+                this.transport.invokeCallbacks();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            // The loop shall not end because of any error or exception thrown by the transport
+            catch (Throwable e)
+            {
+                logger.LogError(e.toString() + ": " + e.getMessage());
+                logger.LogDebug("Exception on sending queued messages to IoT Hub", e);
+            }
+        }
+    }
+
+    /**
+     * Ends the send loop after the pass in progress, if any, completes.
+     */
+    public void stop()
+    {
+        this.isStopped = true;
+        this.transport.signalSendWork();
+    }
+}
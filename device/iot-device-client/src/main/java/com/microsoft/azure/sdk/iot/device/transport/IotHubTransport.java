@@ -12,12 +12,20 @@ import com.microsoft.azure.sdk.iot.device.exceptions.*;
 import com.microsoft.azure.sdk.iot.device.transport.amqps.AmqpsIotHubConnection;
 import com.microsoft.azure.sdk.iot.device.transport.amqps.exceptions.AmqpConnectionThrottledException;
 import com.microsoft.azure.sdk.iot.device.transport.amqps.exceptions.AmqpUnauthorizedAccessException;
+import com.microsoft.azure.sdk.iot.device.transport.https.HttpsBatchMessage;
 import com.microsoft.azure.sdk.iot.device.transport.https.HttpsIotHubConnection;
+import com.microsoft.azure.sdk.iot.device.transport.https.HttpsSingleMessage;
 import com.microsoft.azure.sdk.iot.device.transport.mqtt.MqttIotHubConnection;
 import com.microsoft.azure.sdk.iot.device.transport.mqtt.exceptions.MqttUnauthorizedException;
 
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.*;
@@ -31,6 +39,7 @@ import static java.util.concurrent.TimeUnit.NANOSECONDS;
 public class IotHubTransport implements IotHubListener
 {
     private static final int MAX_MESSAGES_TO_SEND_PER_THREAD = 10;
+    private static final int MAX_STORED_PACKETS_IN_MEMORY = 100;
     private IotHubConnectionStatus connectionStatus;
     private IotHubTransportConnection iotHubTransportConnection;
 
@@ -46,6 +55,39 @@ public class IotHubTransport implements IotHubListener
     /* Messages whose callbacks that are waiting to be invoked. */
     private final Queue<IotHubTransportPacket> callbackPacketsQueue = new ConcurrentLinkedQueue<>();
 
+    /* Telemetry kept on disk until the IoT Hub acknowledges it, if an offline message store is configured. Stored
+     * messages are moved to the waiting queue a few at a time, so that a long outage does not grow the heap. */
+    private OfflineMessageStore offlineMessageStore;
+    private long maxStoredMessageAgeMillis;
+
+    /* Callbacks of the stored messages that are not in the waiting queue yet, in sequence number order. Holds at
+     * most maxStoredMessageCallbacks entries, as each one keeps its context in memory for the whole outage. */
+    private final ArrayDeque<StoredMessageCallback> storedMessageCallbacks = new ArrayDeque<>();
+    private int maxStoredMessageCallbacks = Integer.MAX_VALUE;
+
+    /* Number of stored messages in the waiting queue, in progress or waiting to be retried */
+    private int storedPacketsInMemory;
+
+    //Lock on the offline message store, the stored message callbacks and storedPacketsInMemory
+    final private Object offlineMessageStoreLock = new Object();
+
+    // Released whenever there is new work for the event driven send task
+    private final Semaphore sendWorkSignal = new Semaphore(0);
+
+    // Released whenever a message is received, for the event driven receive task
+    private final Semaphore receiveWorkSignal = new Semaphore(0);
+
+    /* Runs message callbacks in parallel if the default config allows more than one at a time. Set to null by close,
+     * so readers take a local copy */
+    private volatile MessageCallbackExecutor messageCallbackExecutor;
+
+    /* Received messages dispatched to the callback executor whose acknowledgements must be sent in the order the
+     * messages were received, as MQTT requires */
+    private final Queue<ReceivedMessageAcknowledgement> orderedAcknowledgements = new ArrayDeque<>();
+
+    //Lock on sending acknowledgements and on orderedAcknowledgements
+    final private Object acknowledgementLock = new Object();
+
     /*Connection Status callback information (deprecated)*/
     private IotHubConnectionStateCallback stateCallback;
     private Object stateCallbackContext;
@@ -102,7 +144,7 @@ public class IotHubTransport implements IotHubListener
         if (message == null)
         {
             logger.LogError("onMessageSent called with null message, " +
-                    "method name is %s ", logger.getMethodName());
+                    "method name is %s ", logger.getLazyMethodName());
         }
 
         // remove from in progress queue and add to callback queue
@@ -143,10 +185,17 @@ public class IotHubTransport implements IotHubListener
                 }
             }
         }
+        else if (e != null)
+        {
+            // a connection that is being torn down reports the messages it could not send, after the transport
+            // already moved them back to the waiting queue
+            logger.LogDebug("Message with message id %s failed after it was no longer in progress, " +
+                    "method name is %s ", message.getMessageId(), logger.getLazyMethodName());
+        }
         else
         {
             logger.LogError("Message with message id %s was delivered to IoTHub, but was never sent, " +
-                    "method name is %s ", message.getMessageId(), logger.getMethodName());
+                    "method name is %s ", message.getMessageId(), logger.getLazyMethodName());
         }
     }
 
@@ -158,7 +207,7 @@ public class IotHubTransport implements IotHubListener
             //Codes_SRS_IOTHUBTRANSPORT_34_008: [If this function is called with a non-null message and a non-null
             // throwable, this function shall log an IllegalArgumentException.]
             this.logger.LogError("IllegalArgumentException encountered, method name is %s",
-                    this.logger.getMethodName());
+                    this.logger.getLazyMethodName());
             this.logger.LogError(new IllegalArgumentException("Cannot call onMessageReceived with non-null message and " +
                     "non-null throwable"));
         }
@@ -169,13 +218,14 @@ public class IotHubTransport implements IotHubListener
             logger.LogInfo("Message with hashcode %s is received from IotHub on %s, method name is onMessageReceived",
                     message.hashCode(), new Date());
             this.receivedMessagesQueue.add(message);
+            this.signalReceiveWork();
         }
         else if (e != null)
         {
             //Codes_SRS_IOTHUBTRANSPORT_34_010: [If this function is called with a null message and a non-null
             // throwable, this function shall log that exception.]
             this.logger.LogError("Exception encountered while receiving messages from service, " +
-                    "method name is %s", this.logger.getMethodName());
+                    "method name is %s", this.logger.getLazyMethodName());
             this.logger.LogError(e);
         }
     }
@@ -222,7 +272,7 @@ public class IotHubTransport implements IotHubListener
     {
         if (connectionId.equals(this.iotHubTransportConnection.getConnectionId()))
         {
-            logger.LogInfo("The connection to the IoT Hub has been established, method name is %s ", logger.getMethodName());
+            logger.LogInfo("The connection to the IoT Hub has been established, method name is %s ", logger.getLazyMethodName());
 
             //Codes_SRS_IOTHUBTRANSPORT_34_014: [If the provided connectionId is associated with the current connection, This function shall invoke updateStatus with status CONNECTED, change
             // reason CONNECTION_OK and a null throwable.]
@@ -276,6 +326,17 @@ public class IotHubTransport implements IotHubListener
         this.defaultConfig = this.deviceClientConfigs.peek();
         this.taskScheduler = Executors.newScheduledThreadPool(1);
 
+        //Codes_SRS_IOTHUBTRANSPORT_12_013: [If the default config has offline message store settings, this function
+        // shall open the offline message store.]
+        this.openOfflineMessageStore();
+
+        if (this.defaultConfig.getMessageCallbackConcurrency() > 1)
+        {
+            //Codes_SRS_IOTHUBTRANSPORT_12_022: [If the default config allows more than one message callback at a
+            // time, this function shall create a message callback executor with that concurrency.]
+            this.messageCallbackExecutor = new MessageCallbackExecutor(this.defaultConfig.getMessageCallbackConcurrency());
+        }
+
         //Codes_SRS_IOTHUBTRANSPORT_34_019: [This function shall open the invoke the method openConnection.]
         openConnection();
     }
@@ -304,6 +365,22 @@ public class IotHubTransport implements IotHubListener
         //Codes_SRS_IOTHUBTRANSPORT_34_023: [This function shall invoke all callbacks.]
         this.invokeCallbacks();
 
+        //Codes_SRS_IOTHUBTRANSPORT_12_014: [This function shall close the offline message store, leaving the messages
+        // that were not acknowledged on disk.]
+        this.closeOfflineMessageStore();
+
+        MessageCallbackExecutor callbackExecutor = this.messageCallbackExecutor;
+        if (callbackExecutor != null)
+        {
+            //Codes_SRS_IOTHUBTRANSPORT_12_023: [This function shall shut down the message callback executor.]
+            this.messageCallbackExecutor = null;
+            callbackExecutor.shutdown();
+            synchronized (this.acknowledgementLock)
+            {
+                this.orderedAcknowledgements.clear();
+            }
+        }
+
         if (this.taskScheduler != null)
         {
             this.taskScheduler.shutdown();
@@ -327,7 +404,108 @@ public class IotHubTransport implements IotHubListener
     }
 
     /**
-     * Adds a message to the transport queue.
+     * Adds a device to the devices of this transport. If the transport is connected, the device is opened on the
+     * live AMQP connection without disturbing the other devices; otherwise it is opened with the others on the
+     * next (re)connection.
+     *
+     * @param deviceClientConfig the config of the device to add
+     * @throws DeviceClientException if the device cannot be opened on the live connection
+     * @throws UnsupportedOperationException if the transport does not use AMQPS or AMQPS_WS
+     */
+    public void addDeviceClientConfig(DeviceClientConfig deviceClientConfig) throws DeviceClientException
+    {
+        if (deviceClientConfig == null)
+        {
+            //Codes_SRS_IOTHUBTRANSPORT_12_001: [If the provided config is null, this function shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("deviceClientConfig cannot be null");
+        }
+
+        if (this.defaultConfig.getProtocol() != IotHubClientProtocol.AMQPS && this.defaultConfig.getProtocol() != IotHubClientProtocol.AMQPS_WS)
+        {
+            //Codes_SRS_IOTHUBTRANSPORT_12_002: [If the protocol is not AMQPS or AMQPS_WS, this function shall throw an UnsupportedOperationException.]
+            throw new UnsupportedOperationException("Devices can only be added to a multiplexed AMQPS or AMQPS_WS transport");
+        }
+
+        // reconnection reopens every saved config, so the two must not interleave
+        synchronized (this.reconnectionLock)
+        {
+            if (this.deviceClientConfigs == null)
+            {
+                //Codes_SRS_IOTHUBTRANSPORT_12_012: [If the transport has never been opened, this function shall throw an IllegalStateException.]
+                throw new IllegalStateException("Devices can only be added to a transport that has been opened");
+            }
+
+            //Codes_SRS_IOTHUBTRANSPORT_12_003: [This function shall save the provided config so that it is opened again on reconnection.]
+            this.deviceClientConfigs.add(deviceClientConfig);
+
+            if (this.connectionStatus == IotHubConnectionStatus.CONNECTED)
+            {
+                try
+                {
+                    //Codes_SRS_IOTHUBTRANSPORT_12_004: [If the connection status is CONNECTED, this function shall open the device on the live connection.]
+                    ((AmqpsIotHubConnection) this.iotHubTransportConnection).openDeviceOperationSession(deviceClientConfig);
+                }
+                catch (TransportException e)
+                {
+                    //Codes_SRS_IOTHUBTRANSPORT_12_005: [If the device cannot be opened, this function shall forget the saved config and rethrow the exception.]
+                    this.deviceClientConfigs.remove(deviceClientConfig);
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes a device from the devices of this transport. If the transport is connected, the links of the device
+     * are closed on the live connection; the other devices stay connected. The messages of the device that are
+     * still waiting or in progress are completed with {@code MESSAGE_CANCELLED_ONCLOSE}.
+     *
+     * @param deviceClientConfig the config of the device to remove
+     * @throws IllegalStateException if the device is the only device of this transport
+     */
+    public void removeDeviceClientConfig(DeviceClientConfig deviceClientConfig)
+    {
+        if (deviceClientConfig == null)
+        {
+            //Codes_SRS_IOTHUBTRANSPORT_12_006: [If the provided config is null, this function shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("deviceClientConfig cannot be null");
+        }
+
+        synchronized (this.reconnectionLock)
+        {
+            if (this.deviceClientConfigs == null || !this.deviceClientConfigs.contains(deviceClientConfig))
+            {
+                //Codes_SRS_IOTHUBTRANSPORT_12_007: [If the provided config is not one of the saved configs, this function shall do nothing.]
+                return;
+            }
+
+            if (this.deviceClientConfigs.size() == 1)
+            {
+                //Codes_SRS_IOTHUBTRANSPORT_12_008: [If the provided config is the only saved config, this function shall throw an IllegalStateException.]
+                throw new IllegalStateException("The last device of a transport cannot be removed; close the transport instead");
+            }
+
+            //Codes_SRS_IOTHUBTRANSPORT_12_009: [This function shall forget the saved config and, if it was the default config, use the next saved config as default.]
+            this.deviceClientConfigs.remove(deviceClientConfig);
+            if (this.defaultConfig == deviceClientConfig)
+            {
+                this.defaultConfig = this.deviceClientConfigs.peek();
+            }
+
+            if (this.connectionStatus == IotHubConnectionStatus.CONNECTED)
+            {
+                //Codes_SRS_IOTHUBTRANSPORT_12_010: [If the connection status is CONNECTED, this function shall close the device on the live connection.]
+                ((AmqpsIotHubConnection) this.iotHubTransportConnection).closeDeviceOperationSession(deviceClientConfig.getDeviceId());
+            }
+
+            //Codes_SRS_IOTHUBTRANSPORT_12_011: [This function shall move the waiting and in progress messages of the device to the callback queue with status MESSAGE_CANCELLED_ONCLOSE.]
+            this.cancelPendingPackets(deviceClientConfig.getDeviceId());
+        }
+    }
+
+    /**
+     * Adds a message to the transport queue. If an offline message store is configured, telemetry is written to the
+     * store and is moved to the queue once the connection can take it.
      *
      * @param message the message to be sent.
      * @param callback the callback to be invoked when a response for the
@@ -344,10 +522,55 @@ public class IotHubTransport implements IotHubListener
             throw new IllegalStateException("Cannot add a message when the transport is closed.");
         }
 
-        //Codes_SRS_IOTHUBTRANSPORT_34_042: [This function shall build a transport packet from the provided message,
-        // callback, and context and then add that packet to the waiting queue.]
-        IotHubTransportPacket packet = new IotHubTransportPacket(message, callback, callbackContext, null, System.currentTimeMillis());
-        this.waitingPacketsQueue.add(packet);
+        //Codes_SRS_IOTHUBTRANSPORT_12_015: [If the offline message store is open and the message is telemetry, this
+        // function shall append the message to the store instead of the waiting queue.]
+        if (!this.storeMessage(message, callback, callbackContext, false))
+        {
+            //Codes_SRS_IOTHUBTRANSPORT_34_042: [This function shall build a transport packet from the provided message,
+            // callback, and context and then add that packet to the waiting queue.]
+            IotHubTransportPacket packet = new IotHubTransportPacket(message, callback, callbackContext, null, System.currentTimeMillis());
+            this.waitingPacketsQueue.add(packet);
+        }
+
+        this.signalSendWork();
+    }
+
+    /**
+     * Adds a batch of messages to the transport queue. Over HTTPS, consecutive messages of the batch are coalesced
+     * into as few batch requests as the service size limit allows. Over AMQPS and MQTT, the batch is sent as one
+     * burst. The callback is invoked once per message.
+     *
+     * @param messages the messages to be sent.
+     * @param callback the callback to be invoked when a response for each
+     * message is received.
+     * @param callbackContext the context to be passed in when the callback is
+     * invoked.
+     */
+    public void addMessages(List<Message> messages, IotHubEventCallback callback, Object callbackContext)
+    {
+        if (this.connectionStatus == IotHubConnectionStatus.DISCONNECTED)
+        {
+            throw new IllegalStateException("Cannot add a message when the transport is closed.");
+        }
+
+        long startTimeMillis = System.currentTimeMillis();
+        List<IotHubTransportPacket> packets = new ArrayList<>(messages.size());
+        for (Message message : messages)
+        {
+            //Codes_SRS_IOTHUBTRANSPORT_12_031: [Stored messages of the batch shall be batchable once they are moved
+            // back to the waiting queue.]
+            if (this.storeMessage(message, callback, callbackContext, true))
+            {
+                continue;
+            }
+
+            IotHubTransportPacket packet = new IotHubTransportPacket(message, callback, callbackContext, null, startTimeMillis);
+            packet.setBatchable(true);
+            packets.add(packet);
+        }
+
+        this.waitingPacketsQueue.addAll(packets);
+        this.signalSendWork();
     }
 
     /**
@@ -364,7 +587,68 @@ public class IotHubTransport implements IotHubListener
             return;
         }
 
-        int timeSlice = MAX_MESSAGES_TO_SEND_PER_THREAD;
+        this.sendMessages(MAX_MESSAGES_TO_SEND_PER_THREAD);
+    }
+
+    /**
+     * Sends every message on the transport queue, stopping only when the queue is empty or the connection is lost.
+     * Used by the event driven send task, which is woken up whenever new messages are queued.
+     */
+    public void sendAllMessages()
+    {
+        if (this.connectionStatus == IotHubConnectionStatus.DISCONNECTED
+                || this.connectionStatus == IotHubConnectionStatus.DISCONNECTED_RETRYING)
+        {
+            return;
+        }
+
+        while (this.connectionStatus == IotHubConnectionStatus.CONNECTED)
+        {
+            this.moveStoredMessagesToWaitingQueue();
+            if (this.waitingPacketsQueue.isEmpty())
+            {
+                break;
+            }
+
+            this.sendMessages(MAX_MESSAGES_TO_SEND_PER_THREAD);
+        }
+    }
+
+    /**
+     * Blocks until there is new work for the send task (queued messages, retries, callbacks or a re-established
+     * connection), or until the provided timeout elapses.
+     *
+     * @param timeoutMillis the maximum time to wait, in milliseconds
+     * @return true if new work was signalled, false if the timeout elapsed
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public boolean waitForSendWork(long timeoutMillis) throws InterruptedException
+    {
+        boolean isSignalled = this.sendWorkSignal.tryAcquire(timeoutMillis, MILLISECONDS);
+
+        // one pass of the send task handles everything signalled so far
+        this.sendWorkSignal.drainPermits();
+        return isSignalled;
+    }
+
+    /**
+     * Wakes up the send task if it is waiting for work
+     */
+    void signalSendWork()
+    {
+        if (this.sendWorkSignal.availablePermits() == 0)
+        {
+            this.sendWorkSignal.release();
+        }
+    }
+
+    private void sendMessages(int maxMessagesToSend)
+    {
+        //Codes_SRS_IOTHUBTRANSPORT_12_016: [This function shall move stored messages to the waiting queue while fewer
+        // than 100 stored messages are held in memory.]
+        this.moveStoredMessagesToWaitingQueue();
+
+        int timeSlice = maxMessagesToSend;
 
         while (this.connectionStatus == IotHubConnectionStatus.CONNECTED && timeSlice-- > 0)
         {
@@ -372,14 +656,27 @@ public class IotHubTransport implements IotHubListener
             if (packet != null)
             {
                 logger.LogInfo("Get the message from waiting message queue to be sent to IoT Hub, method name is %s ",
-                        logger.getMethodName());
+                        logger.getLazyMethodName());
                 Message message = packet.getMessage();
 
                 if (message != null && this.isMessageValid(packet))
                 {
-                    //Codes_SRS_IOTHUBTRANSPORT_34_044: [This function continue to dequeue packets saved in the waiting
-                    // queue and send them until connection status isn't CONNECTED or until 10 messages have been sent]
-                    sendPacket(packet);
+                    if (packet.isBatchable() && this.iotHubTransportConnection instanceof HttpsIotHubConnection)
+                    {
+                        sendBatchPackets(packet);
+                    }
+                    else
+                    {
+                        //Codes_SRS_IOTHUBTRANSPORT_34_044: [This function continue to dequeue packets saved in the waiting
+                        // queue and send them until connection status isn't CONNECTED or until 10 messages have been sent]
+                        sendPacket(packet);
+                    }
+                }
+
+                if (packet.isBatchable())
+                {
+                    // the messages of a batch do not count against the per tick limit so that they go out as one burst
+                    timeSlice++;
                 }
             }
         }
@@ -398,7 +695,7 @@ public class IotHubTransport implements IotHubListener
             Object context = packet.getContext();
 
             logger.LogInfo("Invoking the callback function for sent message, IoT Hub responded to message with " +
-                    "status %s, method name is %s ", status.name(), logger.getMethodName());
+                    "status %s, method name is %s ", status.name(), logger.getLazyMethodName());
 
             //Codes_SRS_IOTHUBTRANSPORT_34_045: [This function shall dequeue each packet in the callback queue and
             // execute their saved callback with their saved status and context]
@@ -410,9 +707,9 @@ public class IotHubTransport implements IotHubListener
 
     /**
      * <p>
-     * Invokes the message callback if a message is found and
-     * responds to the IoT Hub on how the processed message should be
-     * handled by the IoT Hub.
+     * Invokes the message callback for up to the configured receive batch
+     * size of received messages and responds to the IoT Hub on how each
+     * processed message should be handled by the IoT Hub.
      * </p>
      * If no message callback is set, the function will do nothing.
      *
@@ -423,16 +720,31 @@ public class IotHubTransport implements IotHubListener
         //Codes_SRS_IOTHUBTRANSPORT_34_046: [If this object's connection status is not CONNECTED, this function shall do nothing.]
         if (this.connectionStatus == IotHubConnectionStatus.CONNECTED)
         {
+            int batchSize = Math.max(1, this.defaultConfig.getReceiveBatchSize());
             if (this.iotHubTransportConnection instanceof HttpsIotHubConnection)
             {
                 //Codes_SRS_IOTHUBTRANSPORT_34_047: [If this object's connection status is CONNECTED and is using HTTPS,
                 // this function shall invoke addReceivedMessagesOverHttpToReceivedQueue.]
-                addReceivedMessagesOverHttpToReceivedQueue();
+                addReceivedMessagesOverHttpToReceivedQueue(batchSize);
             }
 
-            IotHubTransportMessage receivedMessage = this.receivedMessagesQueue.poll();
-            if (receivedMessage != null)
+            //Codes_SRS_IOTHUBTRANSPORT_12_020: [This function shall acknowledge received messages until the queue is
+            // empty or the receive batch size of the default config is reached.]
+            for (int handledMessages = 0; handledMessages < batchSize; handledMessages++)
             {
+                //Codes_SRS_IOTHUBTRANSPORT_12_032: [This function shall stop acknowledging received messages while the
+                // message callback executor is full.]
+                if (this.isMessageCallbackExecutorFull())
+                {
+                    break;
+                }
+
+                IotHubTransportMessage receivedMessage = this.receivedMessagesQueue.poll();
+                if (receivedMessage == null)
+                {
+                    break;
+                }
+
                 //Codes_SRS_IOTHUBTRANSPORT_34_048: [If this object's connection status is CONNECTED and there is a
                 // received message in the queue, this function shall acknowledge the received message
                 this.acknowledgeReceivedMessage(receivedMessage);
@@ -440,6 +752,50 @@ public class IotHubTransport implements IotHubListener
         }
     }
 
+    /**
+     * Returns {@code true} if there are received messages that {@link #handleMessage()} would handle now.
+     *
+     * @return {@code true} if the transport is connected and the received messages queue is not empty
+     */
+    public boolean hasReceivedMessages()
+    {
+        return this.connectionStatus == IotHubConnectionStatus.CONNECTED && !this.receivedMessagesQueue.isEmpty()
+                && !this.isMessageCallbackExecutorFull();
+    }
+
+    private boolean isMessageCallbackExecutorFull()
+    {
+        MessageCallbackExecutor callbackExecutor = this.messageCallbackExecutor;
+        return callbackExecutor != null && callbackExecutor.isFull();
+    }
+
+    /**
+     * Blocks until a message is received, or until the provided timeout elapses.
+     *
+     * @param timeoutMillis the maximum time to wait, in milliseconds
+     * @return true if a received message was signalled, false if the timeout elapsed
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public boolean waitForReceiveWork(long timeoutMillis) throws InterruptedException
+    {
+        boolean isSignalled = this.receiveWorkSignal.tryAcquire(timeoutMillis, MILLISECONDS);
+
+        // the receive task drains the queue after waking up, so earlier signals are covered
+        this.receiveWorkSignal.drainPermits();
+        return isSignalled;
+    }
+
+    /**
+     * Wakes up the receive task if it is waiting for received messages
+     */
+    void signalReceiveWork()
+    {
+        if (this.receiveWorkSignal.availablePermits() == 0)
+        {
+            this.receiveWorkSignal.release();
+        }
+    }
+
     /**
      * Returns {@code true} if the transport has no more messages to handle,
      * and {@code false} otherwise.
@@ -453,10 +809,33 @@ public class IotHubTransport implements IotHubListener
         {
             //Codes_SRS_IOTHUBTRANSPORT_34_043: [This function return true if and only if there are no packets in the
             // waiting queue, in progress, or in the callbacks queue.]
-            return this.waitingPacketsQueue.isEmpty() && this.inProgressPackets.size() == 0 && this.callbackPacketsQueue.isEmpty();
+            return this.waitingPacketsQueue.isEmpty() && this.inProgressPackets.size() == 0 && this.callbackPacketsQueue.isEmpty()
+                    && !this.hasUnreadStoredMessages();
         }
     }
 
+    /**
+     * Getter for the occupancy of the MQTT in-flight window
+     * @return the number of MQTT publishes awaiting a PUBACK, or 0 if the connection is closed or is not MQTT
+     */
+    public int getMqttInFlightMessageCount()
+    {
+        IotHubTransportConnection connection = this.iotHubTransportConnection;
+        //Codes_SRS_IOTHUBTRANSPORT_12_028: [If the connection is an MQTT connection, this function shall return its in-flight message count, and 0 otherwise.]
+        return (connection instanceof MqttIotHubConnection) ? ((MqttIotHubConnection) connection).getInFlightMessageCount() : 0;
+    }
+
+    /**
+     * Getter for the number of MQTT publishes waiting for a slot of the in-flight window
+     * @return the number of queued publishes, or 0 if the connection is closed or is not MQTT
+     */
+    public int getMqttQueuedPublishCount()
+    {
+        IotHubTransportConnection connection = this.iotHubTransportConnection;
+        //Codes_SRS_IOTHUBTRANSPORT_12_029: [If the connection is an MQTT connection, this function shall return its queued publish count, and 0 otherwise.]
+        return (connection instanceof MqttIotHubConnection) ? ((MqttIotHubConnection) connection).getQueuedPublishCount() : 0;
+    }
+
     /**
      * Registers a callback to be executed whenever the connection to the IoT Hub is lost or established.
      *
@@ -527,6 +906,40 @@ public class IotHubTransport implements IotHubListener
         }
     }
 
+    /**
+     * Moves the packets of one device from waiting queue and in progress map into callbacks queue with status
+     * MESSAGE_CANCELLED_ONCLOSE
+     */
+    private void cancelPendingPackets(String deviceId)
+    {
+        Iterator<IotHubTransportPacket> waitingPackets = this.waitingPacketsQueue.iterator();
+        while (waitingPackets.hasNext())
+        {
+            IotHubTransportPacket packet = waitingPackets.next();
+            if (deviceId.equals(packet.getMessage().getConnectionDeviceId()))
+            {
+                waitingPackets.remove();
+                packet.setStatus(IotHubStatusCode.MESSAGE_CANCELLED_ONCLOSE);
+                this.addToCallbackQueue(packet);
+            }
+        }
+
+        synchronized (this.inProgressMessagesLock)
+        {
+            Iterator<Map.Entry<String, IotHubTransportPacket>> inProgress = this.inProgressPackets.entrySet().iterator();
+            while (inProgress.hasNext())
+            {
+                IotHubTransportPacket packet = inProgress.next().getValue();
+                if (deviceId.equals(packet.getMessage().getConnectionDeviceId()))
+                {
+                    inProgress.remove();
+                    packet.setStatus(IotHubStatusCode.MESSAGE_CANCELLED_ONCLOSE);
+                    this.addToCallbackQueue(packet);
+                }
+            }
+        }
+    }
+
     /**
      * If the provided received message has a saved callback, this function shall execute that callback and send the ack
      * to the service
@@ -540,6 +953,16 @@ public class IotHubTransport implements IotHubListener
 
         if (messageCallback != null)
         {
+            MessageCallbackExecutor callbackExecutor = this.messageCallbackExecutor;
+            if (callbackExecutor != null)
+            {
+                //Codes_SRS_IOTHUBTRANSPORT_12_024: [If there is a message callback executor, this function shall run
+                // the callback on it, ordered with the other messages of the same callback, type and input or method
+                // name, and return.]
+                this.dispatchReceivedMessage(callbackExecutor, receivedMessage, messageCallback, messageCallbackContext);
+                return;
+            }
+
             //Codes_SRS_IOTHUBTRANSPORT_34_053: [This function shall execute the callback associate with the provided
             // transport message with the provided message and its saved callback context.]
             IotHubMessageResult result = messageCallback.execute(receivedMessage, messageCallbackContext);
@@ -548,7 +971,10 @@ public class IotHubTransport implements IotHubListener
             {
                 //Codes_SRS_IOTHUBTRANSPORT_34_054: [This function shall send the message callback result along the
                 // connection as the ack to the service.]
-                this.iotHubTransportConnection.sendMessageResult(receivedMessage, result);
+                synchronized (this.acknowledgementLock)
+                {
+                    this.iotHubTransportConnection.sendMessageResult(receivedMessage, result);
+                }
             }
             catch (TransportException e)
             {
@@ -561,16 +987,135 @@ public class IotHubTransport implements IotHubListener
     }
 
     /**
-     * Checks if any messages were received over HTTP and adds all of them to the received messages queue
+     * Runs the callback of a received message on the message callback executor and acknowledges the message once the
+     * callback returns. Over MQTT, acknowledgements are held until the messages received before it are acknowledged.
+     * @param callbackExecutor the executor to run the callback on
+     * @param receivedMessage the message to dispatch
+     * @param messageCallback the callback of the message
+     * @param messageCallbackContext the context of the callback
+     */
+    private void dispatchReceivedMessage(MessageCallbackExecutor callbackExecutor, final IotHubTransportMessage receivedMessage,
+                                         final MessageCallback messageCallback, final Object messageCallbackContext)
+    {
+        final ReceivedMessageAcknowledgement acknowledgement = new ReceivedMessageAcknowledgement(receivedMessage,
+                this.iotHubTransportConnection instanceof MqttIotHubConnection);
+        if (acknowledgement.isOrdered)
+        {
+            synchronized (this.acknowledgementLock)
+            {
+                this.orderedAcknowledgements.add(acknowledgement);
+            }
+        }
+
+        String name = receivedMessage.getMessageType() == MessageType.DEVICE_METHODS
+                ? receivedMessage.getMethodName() : receivedMessage.getInputName();
+        List<Object> orderingKey = Arrays.asList(messageCallback, receivedMessage.getMessageType(), name);
+
+        boolean isAccepted = callbackExecutor.execute(orderingKey, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                // this callback made room in the executor, let the receive task hand over the messages it held back
+                if (!receivedMessagesQueue.isEmpty())
+                {
+                    signalReceiveWork();
+                }
+
+                IotHubMessageResult result;
+                try
+                {
+                    result = messageCallback.execute(receivedMessage, messageCallbackContext);
+                }
+                catch (RuntimeException e)
+                {
+                    //Codes_SRS_IOTHUBTRANSPORT_12_025: [If the callback throws, the message shall be acknowledged
+                    // with ABANDON.]
+                    logger.LogError("Message callback threw, abandoning the message, method name is %s", logger.getLazyMethodName());
+                    logger.LogError(e);
+                    result = IotHubMessageResult.ABANDON;
+                }
+
+                acknowledgeDispatchedMessage(acknowledgement, result);
+            }
+        });
+
+        if (!isAccepted)
+        {
+            //Codes_SRS_IOTHUBTRANSPORT_12_033: [If the message callback executor was shut down, the message shall be
+            // dropped without an acknowledgement, so the service delivers it again.]
+            logger.LogInfo("Message with hashcode %s dropped because the transport is closing, method name is %s",
+                    receivedMessage.hashCode(), logger.getLazyMethodName());
+            if (acknowledgement.isOrdered)
+            {
+                synchronized (this.acknowledgementLock)
+                {
+                    this.orderedAcknowledgements.remove(acknowledgement);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends the acknowledgement of a dispatched message, and over MQTT every held acknowledgement it unblocks
+     * @param acknowledgement the acknowledgement of the message whose callback returned
+     * @param result the result of the callback
+     */
+    private void acknowledgeDispatchedMessage(ReceivedMessageAcknowledgement acknowledgement, IotHubMessageResult result)
+    {
+        synchronized (this.acknowledgementLock)
+        {
+            acknowledgement.result = result;
+            if (!acknowledgement.isOrdered)
+            {
+                this.sendDispatchedMessageResult(acknowledgement);
+                return;
+            }
+
+            //Codes_SRS_IOTHUBTRANSPORT_12_026: [If the connection is MQTT, acknowledgements shall be sent in the
+            // order the messages were received.]
+            while (!this.orderedAcknowledgements.isEmpty() && this.orderedAcknowledgements.peek().result != null)
+            {
+                this.sendDispatchedMessageResult(this.orderedAcknowledgements.poll());
+            }
+        }
+    }
+
+    private void sendDispatchedMessageResult(ReceivedMessageAcknowledgement acknowledgement)
+    {
+        try
+        {
+            this.iotHubTransportConnection.sendMessageResult(acknowledgement.message, acknowledgement.result);
+        }
+        catch (TransportException e)
+        {
+            //Codes_SRS_IOTHUBTRANSPORT_12_027: [If an acknowledgement cannot be sent, the received message shall be
+            // added back into the receivedMessagesQueue.]
+            logger.LogError("Failed to acknowledge a received message, method name is %s", logger.getLazyMethodName());
+            logger.LogError(e);
+            this.receivedMessagesQueue.add(acknowledgement.message);
+        }
+    }
+
+    /**
+     * Checks if any messages were received over HTTP and adds up to the provided number of them to the received
+     * messages queue
+     * @param maxMessagesToReceive the maximum number of messages to fetch from the IoT Hub
      * @throws TransportException if an exception occurs while receiving messages over HTTP connection
      */
-    private void addReceivedMessagesOverHttpToReceivedQueue() throws TransportException
+    private void addReceivedMessagesOverHttpToReceivedQueue(int maxMessagesToReceive) throws TransportException
     {
         //since Http behaves synchronously, we need to check synchronously for any messages it may have received
-        IotHubTransportMessage transportMessage = ((HttpsIotHubConnection)this.iotHubTransportConnection).receiveMessage();
-
-        if (transportMessage != null)
+        for (int receivedMessages = 0; receivedMessages < maxMessagesToReceive; receivedMessages++)
         {
+            IotHubTransportMessage transportMessage = ((HttpsIotHubConnection)this.iotHubTransportConnection).receiveMessage();
+            if (transportMessage == null)
+            {
+                //Codes_SRS_IOTHUBTRANSPORT_12_021: [This function shall stop fetching messages over HTTP as soon as
+                // the IoT Hub has no message to return.]
+                break;
+            }
+
             //Codes_SRS_IOTHUBTRANSPORT_34_056: [If the saved http transport connection can receive a message, add it to receivedMessagesQueue.]
             logger.LogInfo("Message with hashcode %s is received from IotHub on %s, method name is addReceivedMessagesOverHttpToReceivedQueue",
                     transportMessage.hashCode(), new Date());
@@ -664,7 +1209,7 @@ public class IotHubTransport implements IotHubListener
     private void handleDisconnection(TransportException transportException)
     {
         logger.LogInfo("The messages in progress are buffered to be sent again due to a connection loss, " +
-                "method name is %s ", logger.getMethodName());
+                "method name is %s ", logger.getLazyMethodName());
 
         synchronized (this.inProgressMessagesLock)
         {
@@ -799,6 +1344,7 @@ public class IotHubTransport implements IotHubListener
         public void run()
         {
             this.waitingPacketsQueue.add(this.transportPacket);
+            signalSendWork();
         }
     }
 
@@ -902,6 +1448,110 @@ public class IotHubTransport implements IotHubListener
         }
     }
 
+    /**
+     * Coalesces the provided packet and the batchable packets that follow it in the waiting queue into a single HTTPS
+     * batch request, as far as the batch size limit allows, and handles the response for each of them
+     * @param firstPacket the first packet of the batch, already removed from the waiting queue
+     */
+    private void sendBatchPackets(IotHubTransportPacket firstPacket)
+    {
+        HttpsBatchMessage batchMessage = new HttpsBatchMessage();
+        try
+        {
+            batchMessage.addMessage(HttpsSingleMessage.parseHttpsMessage(firstPacket.getMessage()));
+        }
+        catch (IotHubSizeExceededException e)
+        {
+            // too large to be batched, the service will report the size error for the single message
+            sendPacket(firstPacket);
+            return;
+        }
+
+        List<IotHubTransportPacket> batchPackets = new ArrayList<>();
+        batchPackets.add(firstPacket);
+
+        IotHubTransportPacket nextPacket = this.waitingPacketsQueue.peek();
+        while (nextPacket != null && nextPacket.isBatchable())
+        {
+            if (!nextPacket.getMessage().isExpired())
+            {
+                try
+                {
+                    batchMessage.addMessage(HttpsSingleMessage.parseHttpsMessage(nextPacket.getMessage()));
+                }
+                catch (IotHubSizeExceededException e)
+                {
+                    // leave it at the head of the queue, it starts the next batch
+                    break;
+                }
+            }
+
+            IotHubTransportPacket polledPacket = this.waitingPacketsQueue.poll();
+            if (polledPacket != nextPacket)
+            {
+                // the queue was drained concurrently, only send what was measured
+                if (polledPacket != null)
+                {
+                    this.waitingPacketsQueue.add(polledPacket);
+                }
+                break;
+            }
+
+            if (this.isMessageValid(nextPacket))
+            {
+                batchPackets.add(nextPacket);
+            }
+
+            nextPacket = this.waitingPacketsQueue.peek();
+        }
+
+        if (batchPackets.size() == 1)
+        {
+            sendPacket(firstPacket);
+            return;
+        }
+
+        List<Message> batchMessages = new ArrayList<>(batchPackets.size());
+        synchronized (this.inProgressMessagesLock)
+        {
+            for (IotHubTransportPacket packet : batchPackets)
+            {
+                this.inProgressPackets.put(packet.getMessage().getMessageId(), packet);
+                batchMessages.add(packet.getMessage());
+            }
+        }
+
+        TransportException sendException = null;
+        try
+        {
+            logger.LogInfo("Sending %d messages as a single batch, method name is %s ", batchPackets.size(), logger.getLazyMethodName());
+            IotHubStatusCode statusCode = ((HttpsIotHubConnection) this.iotHubTransportConnection).sendBatchMessage(batchMessage, batchMessages);
+            if (statusCode != IotHubStatusCode.OK_EMPTY && statusCode != IotHubStatusCode.OK)
+            {
+                sendException = IotHubStatusCode.getConnectionStatusException(statusCode, "");
+            }
+        }
+        catch (TransportException transportException)
+        {
+            sendException = transportException;
+        }
+
+        // the connection reports each message to onMessageSent, anything it did not report is handled here
+        for (IotHubTransportPacket packet : batchPackets)
+        {
+            IotHubTransportPacket outboundPacket;
+            synchronized (this.inProgressMessagesLock)
+            {
+                outboundPacket = this.inProgressPackets.remove(packet.getMessage().getMessageId());
+            }
+
+            if (outboundPacket != null)
+            {
+                this.handleMessageException(outboundPacket, sendException != null ? sendException : new TransportException("Batch message was not acknowledged"));
+            }
+        }
+    }
+
     /**
      * Checks if the provided packet has expired or if the sas token has expired
      * @param packet the packet to check for expiry
@@ -916,7 +1566,7 @@ public class IotHubTransport implements IotHubListener
             //Codes_SRS_IOTHUBTRANSPORT_28_008:[This function shall set the packet status to MESSAGE_EXPIRED if packet has expired.]
             //Codes_SRS_IOTHUBTRANSPORT_28_009:[This function shall add the expired packet to the Callback Queue.]
             logger.LogInfo("Creating a callback for the expired message with MESSAGE_EXPIRED status, method " +
-                    "name is %s ", logger.getMethodName());
+                    "name is %s ", logger.getLazyMethodName());
             packet.setStatus(IotHubStatusCode.MESSAGE_EXPIRED);
             this.addToCallbackQueue(packet);
             return false;
@@ -927,7 +1577,7 @@ public class IotHubTransport implements IotHubListener
             //Codes_SRS_IOTHUBTRANSPORT_28_010:[This function shall set the packet status to UNAUTHORIZED if sas token has expired.]
             //Codes_SRS_IOTHUBTRANSPORT_28_011:[This function shall add the packet which sas token has expired to the Callback Queue.]
             logger.LogInfo("Creating a callback for the message with expired sas token with UNAUTHORIZED status," +
-                    " method name is %s ", logger.getMethodName());
+                    " method name is %s ", logger.getLazyMethodName());
             packet.setStatus(IotHubStatusCode.UNAUTHORIZED);
             this.addToCallbackQueue(packet);
             this.updateStatus(
@@ -965,6 +1615,10 @@ public class IotHubTransport implements IotHubListener
                 //Codes_SRS_IOTHUBTRANSPORT_28_007: [This function shall reset currentReconnectionAttempt and reconnectionAttemptStartTimeMillis if connection status is changed to CONNECTED.]
                 this.currentReconnectionAttempt = 0;
                 this.reconnectionAttemptStartTimeMillis = 0;
+
+                // packets may have been queued while the connection was down
+                this.signalSendWork();
+                this.signalReceiveWork();
             }
         }
     }
@@ -1041,10 +1695,361 @@ public class IotHubTransport implements IotHubListener
      */
     private void addToCallbackQueue(IotHubTransportPacket packet)
     {
+        //Codes_SRS_IOTHUBTRANSPORT_12_017: [If the packet holds a stored message, this function shall complete it in
+        // the offline message store, unless it was cancelled on close.]
+        if (packet.getStoredSequenceNumber() >= 0)
+        {
+            this.releaseStoredPacket(packet);
+        }
+
         //Codes_SRS_IOTHUBTRANSPORT_28_002: [This function shall add the packet to the callback queue if it has a callback.]
         if (packet.getCallback() != null)
         {
             this.callbackPacketsQueue.add(packet);
+            if (this.sendWorkSignal.availablePermits() == 0)
+            {
+                this.sendWorkSignal.release();
+            }
+        }
+    }
+
+    /**
+     * Opens the offline message store if the default config has its settings and it is not open yet
+     * @throws TransportException if the store cannot be opened
+     */
+    private void openOfflineMessageStore() throws TransportException
+    {
+        OfflineMessageStoreSettings settings = this.defaultConfig.getOfflineMessageStoreSettings();
+        synchronized (this.offlineMessageStoreLock)
+        {
+            if (settings == null || this.offlineMessageStore != null)
+            {
+                return;
+            }
+
+            OfflineMessageStore store = new OfflineMessageStore(settings);
+            try
+            {
+                store.open();
+            }
+            catch (IOException e)
+            {
+                throw new TransportException("Could not open the offline message store", e);
+            }
+
+            this.offlineMessageStore = store;
+            this.maxStoredMessageAgeMillis = settings.getMaxMessageAgeMillis();
+            this.maxStoredMessageCallbacks = settings.getMaxPendingCallbacks();
+            this.storedMessageCallbacks.clear();
+            this.storedPacketsInMemory = 0;
+        }
+    }
+
+    /**
+     * Closes the offline message store, if open. The callbacks of the stored messages that were not moved to the
+     * waiting queue are forgotten, the messages are sent after the store is opened again.
+     */
+    private void closeOfflineMessageStore()
+    {
+        synchronized (this.offlineMessageStoreLock)
+        {
+            if (this.offlineMessageStore != null)
+            {
+                this.offlineMessageStore.close();
+                this.offlineMessageStore = null;
+            }
+
+            this.storedMessageCallbacks.clear();
+            this.storedPacketsInMemory = 0;
+        }
+    }
+
+    /**
+     * Appends a telemetry message to the offline message store, if open. If the store is full and rejects the
+     * message, or if its callback cannot be saved because there are already maxStoredMessageCallbacks saved
+     * callbacks, its callback is invoked with ERROR.
+     * @param isBatchable true if the message may be coalesced with other messages once it is read back
+     * @return true if the store took care of the message, false if it has to be queued in memory
+     */
+    private boolean storeMessage(Message message, IotHubEventCallback callback, Object callbackContext, boolean isBatchable)
+    {
+        if (this.offlineMessageStore == null || message instanceof IotHubTransportMessage
+                || (message.getMessageType() != null && message.getMessageType() != MessageType.DEVICE_TELEMETRY))
+        {
+            return false;
+        }
+
+        byte[] data = OfflineMessageCodec.encode(message);
+        synchronized (this.offlineMessageStoreLock)
+        {
+            if (this.offlineMessageStore == null)
+            {
+                return false;
+            }
+
+            boolean needsStoredCallback = callback != null || isBatchable;
+            if (needsStoredCallback && this.storedMessageCallbacks.size() >= this.maxStoredMessageCallbacks
+                    && !this.canExtendLastStoredCallback(this.offlineMessageStore.getNextSequenceNumber(), callback, callbackContext, isBatchable))
+            {
+                //Codes_SRS_IOTHUBTRANSPORT_12_030: [If the maximum number of stored message callbacks is reached and
+                // the message cannot share the last one, this function shall add the packet to the callback queue
+                // with status ERROR without storing the message.]
+                logger.LogWarn("Rejecting the message, the offline message store holds callbacks for %d messages with " +
+                        "different callbacks or contexts, method name is %s ", this.storedMessageCallbacks.size(), logger.getLazyMethodName());
+                this.addToCallbackQueue(new IotHubTransportPacket(message, callback, callbackContext, IotHubStatusCode.ERROR, System.currentTimeMillis()));
+                return true;
+            }
+
+            long sequenceNumber;
+            try
+            {
+                sequenceNumber = this.offlineMessageStore.append(data, System.currentTimeMillis());
+            }
+            catch (IllegalArgumentException | IOException e)
+            {
+                logger.LogWarn("Queueing the message in memory, it could not be written to the offline message store: %s, " +
+                        "method name is %s ", e.getMessage(), logger.getLazyMethodName());
+                return false;
+            }
+
+            if (sequenceNumber < 0)
+            {
+                //Codes_SRS_IOTHUBTRANSPORT_12_018: [If the offline message store is full and rejects the message, this
+                // function shall add the packet to the callback queue with status ERROR.]
+                logger.LogWarn("The offline message store is full, rejecting the message, method name is %s ", logger.getLazyMethodName());
+                this.addToCallbackQueue(new IotHubTransportPacket(message, callback, callbackContext, IotHubStatusCode.ERROR, System.currentTimeMillis()));
+                return true;
+            }
+
+            //Codes_SRS_IOTHUBTRANSPORT_12_019: [If appending the message evicted older stored messages, this function
+            // shall add packets for them to the callback queue with status ERROR.]
+            this.failEvictedStoredMessages(this.offlineMessageStore.getFirstRetainedSequenceNumber());
+
+            if (needsStoredCallback)
+            {
+                if (this.canExtendLastStoredCallback(sequenceNumber, callback, callbackContext, isBatchable))
+                {
+                    this.storedMessageCallbacks.peekLast().lastSequenceNumber = sequenceNumber;
+                }
+                else
+                {
+                    this.storedMessageCallbacks.add(new StoredMessageCallback(sequenceNumber, callback, callbackContext, isBatchable));
+                }
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * @return true if the stored message with the provided sequence number can share the last saved callback
+     */
+    private boolean canExtendLastStoredCallback(long sequenceNumber, IotHubEventCallback callback, Object callbackContext, boolean isBatchable)
+    {
+        StoredMessageCallback lastCallback = this.storedMessageCallbacks.peekLast();
+        return lastCallback != null && lastCallback.callback == callback && lastCallback.context == callbackContext
+                && lastCallback.isBatchable == isBatchable && lastCallback.lastSequenceNumber == sequenceNumber - 1;
+    }
+
+    /**
+     * Moves stored messages to the waiting queue while fewer than MAX_STORED_PACKETS_IN_MEMORY stored messages are
+     * held in memory. Messages older than the age limit of the store go to the callback queue with MESSAGE_EXPIRED.
+     */
+    private void moveStoredMessagesToWaitingQueue()
+    {
+        synchronized (this.offlineMessageStoreLock)
+        {
+            if (this.offlineMessageStore == null)
+            {
+                return;
+            }
+
+            this.offlineMessageStore.syncIfDue();
+
+            while (this.storedPacketsInMemory < MAX_STORED_PACKETS_IN_MEMORY)
+            {
+                OfflineMessageStore.Record record;
+                try
+                {
+                    record = this.offlineMessageStore.readNext();
+                }
+                catch (IOException e)
+                {
+                    logger.LogError("Could not read from the offline message store: %s, method name is %s ", e.getMessage(), logger.getLazyMethodName());
+                    return;
+                }
+
+                if (record == null)
+                {
+                    return;
+                }
+
+                StoredMessageCallback storedCallback = this.takeStoredMessageCallback(record.getSequenceNumber());
+                IotHubEventCallback callback = storedCallback == null ? null : storedCallback.callback;
+                Object callbackContext = storedCallback == null ? null : storedCallback.context;
+
+                IotHubStatusCode status = null;
+                Message message;
+                try
+                {
+                    message = OfflineMessageCodec.decode(record.getData());
+                }
+                catch (IllegalArgumentException e)
+                {
+                    logger.LogError("Dropping a message of the offline message store that could not be read: %s, " +
+                            "method name is %s ", e.getMessage(), logger.getLazyMethodName());
+                    message = new Message();
+                    status = IotHubStatusCode.ERROR;
+                }
+
+                if (status == null && this.maxStoredMessageAgeMillis > 0
+                        && System.currentTimeMillis() - record.getTimestampMillis() > this.maxStoredMessageAgeMillis)
+                {
+                    status = IotHubStatusCode.MESSAGE_EXPIRED;
+                }
+
+                IotHubTransportPacket packet = new IotHubTransportPacket(message, callback, callbackContext, status, System.currentTimeMillis());
+                packet.setStoredSequenceNumber(record.getSequenceNumber());
+                if (storedCallback != null && storedCallback.isBatchable)
+                {
+                    packet.setBatchable(true);
+                }
+                this.storedPacketsInMemory++;
+
+                if (status == null)
+                {
+                    this.waitingPacketsQueue.add(packet);
+                }
+                else
+                {
+                    this.addToCallbackQueue(packet);
+                }
+            }
+        }
+    }
+
+    /**
+     * Takes the callback of a stored message out of the saved callbacks. The callbacks of the messages before it,
+     * which were evicted from the store, are invoked with ERROR.
+     * @return the callback of the message, or null if it has none
+     */
+    private StoredMessageCallback takeStoredMessageCallback(long sequenceNumber)
+    {
+        this.failEvictedStoredMessages(sequenceNumber);
+
+        StoredMessageCallback storedCallback = this.storedMessageCallbacks.peek();
+        if (storedCallback == null || storedCallback.firstSequenceNumber != sequenceNumber)
+        {
+            return null;
+        }
+
+        storedCallback.firstSequenceNumber++;
+        if (storedCallback.firstSequenceNumber > storedCallback.lastSequenceNumber)
+        {
+            this.storedMessageCallbacks.poll();
+        }
+
+        return storedCallback;
+    }
+
+    /**
+     * Adds packets with status ERROR to the callback queue for the stored messages before the provided sequence
+     * number that still have a saved callback, as they were evicted from the store without being sent.
+     */
+    private void failEvictedStoredMessages(long firstRetainedSequenceNumber)
+    {
+        Message evictedMessage = null;
+        StoredMessageCallback storedCallback = this.storedMessageCallbacks.peek();
+        while (storedCallback != null && storedCallback.firstSequenceNumber < firstRetainedSequenceNumber)
+        {
+            if (evictedMessage == null)
+            {
+                evictedMessage = new Message();
+            }
+
+            long lastEvictedSequenceNumber = Math.min(storedCallback.lastSequenceNumber, firstRetainedSequenceNumber - 1);
+            for (long i = storedCallback.firstSequenceNumber; i <= lastEvictedSequenceNumber; i++)
+            {
+                this.addToCallbackQueue(new IotHubTransportPacket(evictedMessage, storedCallback.callback, storedCallback.context, IotHubStatusCode.ERROR, System.currentTimeMillis()));
+            }
+
+            if (storedCallback.lastSequenceNumber < firstRetainedSequenceNumber)
+            {
+                this.storedMessageCallbacks.poll();
+                storedCallback = this.storedMessageCallbacks.peek();
+            }
+            else
+            {
+                storedCallback.firstSequenceNumber = firstRetainedSequenceNumber;
+            }
+        }
+    }
+
+    /**
+     * Frees the in memory slot of a stored message that reached the callback queue and, unless it was cancelled on
+     * close, completes it in the offline message store so that it is not sent again.
+     */
+    private void releaseStoredPacket(IotHubTransportPacket packet)
+    {
+        synchronized (this.offlineMessageStoreLock)
+        {
+            if (this.storedPacketsInMemory > 0)
+            {
+                this.storedPacketsInMemory--;
+            }
+
+            if (this.offlineMessageStore != null && packet.getStatus() != IotHubStatusCode.MESSAGE_CANCELLED_ONCLOSE)
+            {
+                this.offlineMessageStore.complete(packet.getStoredSequenceNumber());
+            }
+        }
+
+        packet.setStoredSequenceNumber(-1);
+    }
+
+    private boolean hasUnreadStoredMessages()
+    {
+        synchronized (this.offlineMessageStoreLock)
+        {
+            return this.offlineMessageStore != null && this.offlineMessageStore.hasUnreadRecords();
+        }
+    }
+
+    /**
+     * A received message whose callback was dispatched, and the result to acknowledge it with once the callback returns
+     */
+    private static final class ReceivedMessageAcknowledgement
+    {
+        private final IotHubTransportMessage message;
+        private final boolean isOrdered;
+        private IotHubMessageResult result;
+
+        private ReceivedMessageAcknowledgement(IotHubTransportMessage message, boolean isOrdered)
+        {
+            this.message = message;
+            this.isOrdered = isOrdered;
+        }
+    }
+
+    /**
+     * The callback of consecutive stored messages that were sent with the same callback and context, and either all
+     * one by one or all in batches
+     */
+    private static final class StoredMessageCallback
+    {
+        private long firstSequenceNumber;
+        private long lastSequenceNumber;
+        private final IotHubEventCallback callback;
+        private final Object context;
+        private final boolean isBatchable;
+
+        private StoredMessageCallback(long sequenceNumber, IotHubEventCallback callback, Object context, boolean isBatchable)
+        {
+            this.firstSequenceNumber = sequenceNumber;
+            this.lastSequenceNumber = sequenceNumber;
+            this.callback = callback;
+            this.context = context;
+            this.isBatchable = isBatchable;
         }
     }
 
@@ -20,6 +20,8 @@ public final class IotHubTransportPacket
     private IotHubStatusCode status;
     private final long startTimeMillis;
     private int currentRetryAttempt;
+    private boolean isBatchable;
+    private long storedSequenceNumber = -1;
 
     /**
      * Constructor.
@@ -139,4 +141,43 @@ public final class IotHubTransportPacket
         // Codes_SRS_IOTHUBTRANSPORTPACKET_34_009: [This function shall increment the saved retry attempt count by 1.]
         this.currentRetryAttempt++;
     }
+
+    /**
+     * Getter for isBatchable
+     * @return true if this packet was queued as part of a batch and may be coalesced with its neighbours into a
+     * single request by protocols that support it
+     */
+    public boolean isBatchable()
+    {
+        return this.isBatchable;
+    }
+
+    /**
+     * Setter for isBatchable
+     * @param isBatchable true if this packet may be coalesced with other batchable packets
+     */
+    public void setBatchable(boolean isBatchable)
+    {
+        this.isBatchable = isBatchable;
+    }
+
+    /**
+     * Getter for storedSequenceNumber
+     * @return the sequence number of the message in the offline message store, or -1 if the message is only held in
+     * memory
+     */
+    public long getStoredSequenceNumber()
+    {
+        return this.storedSequenceNumber;
+    }
+
+    /**
+     * Setter for storedSequenceNumber
+     * @param storedSequenceNumber the sequence number of the message in the offline message store, or -1 if the
+     *                             message is only held in memory
+     */
+    public void setStoredSequenceNumber(long storedSequenceNumber)
+    {
+        this.storedSequenceNumber = storedSequenceNumber;
+    }
 }
@@ -0,0 +1,239 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport;
+
+import com.microsoft.azure.sdk.iot.device.CustomLogger;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs message callbacks on a fixed number of daemon threads. Tasks that share an ordering key run one at a time, in
+ * the order they were submitted; tasks with different keys run in parallel up to the concurrency limit. The executor
+ * reports itself full once a maximum number of tasks wait to start, so the caller can stop reading messages until
+ * the callbacks catch up.
+ */
+public final class MessageCallbackExecutor
+{
+    private static final String THREAD_NAME = "azure-iot-sdk-MessageCallbackExecutor";
+    private static final int DEFAULT_MAX_WAITING_TASKS = 1000;
+
+    private final ExecutorService executorService;
+    private final int maxWaitingTasks;
+
+    // Tasks waiting behind the running task of each ordering key. A key is present while one of its tasks runs.
+    private final Map<Object, Queue<Runnable>> pendingTasks = new HashMap<>();
+    private final Object pendingTasksLock = new Object();
+
+    // Guarded by pendingTasksLock. Tasks accepted and not started yet, in the pending queues or in the thread pool.
+    private int waitingTasks;
+    private boolean isShutdown;
+
+    private final CustomLogger logger = new CustomLogger(this.getClass());
+
+    /**
+     * Constructor.
+     * @param concurrency the maximum number of callbacks that may run at the same time
+     * @throws IllegalArgumentException if the concurrency is less than 1
+     */
+    public MessageCallbackExecutor(int concurrency) throws IllegalArgumentException
+    {
+        this(concurrency, DEFAULT_MAX_WAITING_TASKS);
+    }
+
+    /**
+     * Constructor.
+     * @param concurrency the maximum number of callbacks that may run at the same time
+     * @param maxWaitingTasks the number of tasks waiting to start at which the executor reports itself full
+     * @throws IllegalArgumentException if the concurrency or the maximum number of waiting tasks is less than 1
+     */
+    public MessageCallbackExecutor(int concurrency, int maxWaitingTasks) throws IllegalArgumentException
+    {
+        if (concurrency < 1)
+        {
+            //Codes_SRS_MESSAGECALLBACKEXECUTOR_12_001: [If the concurrency is less than 1, the constructor shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("The message callback concurrency must be at least 1");
+        }
+
+        if (maxWaitingTasks < 1)
+        {
+            //Codes_SRS_MESSAGECALLBACKEXECUTOR_12_007: [If the maximum number of waiting tasks is less than 1, the constructor shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("The maximum number of waiting message callbacks must be at least 1");
+        }
+
+        //Codes_SRS_MESSAGECALLBACKEXECUTOR_12_002: [The constructor shall create a thread pool of daemon threads with the provided number of threads.]
+        this.executorService = Executors.newFixedThreadPool(concurrency, new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, THREAD_NAME);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.maxWaitingTasks = maxWaitingTasks;
+    }
+
+    /**
+     * Runs the provided task after all previously submitted tasks with the same ordering key have completed.
+     * @param orderingKey the key of the sequence the task belongs to. Keys are compared with {@code equals}
+     * @param task the task to run
+     * @return {@code true} if the task was accepted, {@code false} if the executor was shut down
+     * @throws IllegalArgumentException if the key or the task is null
+     */
+    public boolean execute(Object orderingKey, Runnable task) throws IllegalArgumentException
+    {
+        if (orderingKey == null || task == null)
+        {
+            //Codes_SRS_MESSAGECALLBACKEXECUTOR_12_003: [If the ordering key or the task is null, the function shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("orderingKey and task cannot be null");
+        }
+
+        synchronized (this.pendingTasksLock)
+        {
+            if (this.isShutdown)
+            {
+                //Codes_SRS_MESSAGECALLBACKEXECUTOR_12_008: [If the executor was shut down, the function shall not run the task and return false.]
+                return false;
+            }
+
+            this.waitingTasks++;
+            Queue<Runnable> tasks = this.pendingTasks.get(orderingKey);
+            if (tasks != null)
+            {
+                //Codes_SRS_MESSAGECALLBACKEXECUTOR_12_004: [If a task with the same ordering key is running or
+                // waiting, the function shall queue the task behind it.]
+                tasks.add(task);
+                return true;
+            }
+
+            this.pendingTasks.put(orderingKey, new ArrayDeque<Runnable>());
+        }
+
+        //Codes_SRS_MESSAGECALLBACKEXECUTOR_12_005: [Otherwise the function shall submit the task to the thread pool.]
+        return this.submit(orderingKey, task);
+    }
+
+    /**
+     * Returns {@code true} if as many tasks as the executor accepts wait to start. The caller is expected to stop
+     * submitting until this returns {@code false}; tasks submitted anyway are still run.
+     * @return {@code true} if the maximum number of waiting tasks is reached
+     */
+    public boolean isFull()
+    {
+        synchronized (this.pendingTasksLock)
+        {
+            //Codes_SRS_MESSAGECALLBACKEXECUTOR_12_009: [The function shall return true if the number of tasks accepted
+            // and not started yet reached the maximum number of waiting tasks.]
+            return this.waitingTasks >= this.maxWaitingTasks;
+        }
+    }
+
+    /**
+     * Stops accepting tasks. Callbacks already handed to the pool threads are allowed to finish; the ones queued
+     * behind them are dropped.
+     */
+    public void shutdown()
+    {
+        //Codes_SRS_MESSAGECALLBACKEXECUTOR_12_006: [The function shall shut down the thread pool and drop the queued tasks.]
+        synchronized (this.pendingTasksLock)
+        {
+            this.isShutdown = true;
+            this.pendingTasks.clear();
+            this.waitingTasks = 0;
+        }
+        this.executorService.shutdown();
+    }
+
+    /**
+     * Hands the task to the thread pool.
+     * @return {@code true} if the pool accepted the task, {@code false} if it was shut down
+     */
+    private boolean submit(final Object orderingKey, final Runnable task)
+    {
+        try
+        {
+            this.executorService.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    Thread.currentThread().setName(THREAD_NAME);
+                    taskStarted();
+                    try
+                    {
+                        task.run();
+                    }
+                    catch (Throwable e)
+                    {
+                        logger.LogError("Exception while running a message callback, method name is %s", logger.getLazyMethodName());
+                        logger.LogError(e);
+                    }
+                    finally
+                    {
+                        runNext(orderingKey);
+                    }
+                }
+            });
+            return true;
+        }
+        catch (RejectedExecutionException e)
+        {
+            //Codes_SRS_MESSAGECALLBACKEXECUTOR_12_010: [If the thread pool rejects the task, the function shall drop
+            // the tasks of its ordering key and return false.]
+            logger.LogDebug("Message callback dropped because the executor was shut down", e);
+            synchronized (this.pendingTasksLock)
+            {
+                Queue<Runnable> tasks = this.pendingTasks.remove(orderingKey);
+                if (tasks != null && !this.isShutdown)
+                {
+                    this.waitingTasks -= 1 + tasks.size();
+                }
+            }
+            return false;
+        }
+    }
+
+    private void taskStarted()
+    {
+        synchronized (this.pendingTasksLock)
+        {
+            if (!this.isShutdown)
+            {
+                this.waitingTasks--;
+            }
+        }
+    }
+
+    private void runNext(Object orderingKey)
+    {
+        Runnable next;
+        synchronized (this.pendingTasksLock)
+        {
+            Queue<Runnable> tasks = this.pendingTasks.get(orderingKey);
+            if (tasks == null)
+            {
+                // the executor was shut down
+                return;
+            }
+
+            next = tasks.poll();
+            if (next == null)
+            {
+                this.pendingTasks.remove(orderingKey);
+                return;
+            }
+        }
+
+        // resubmitting instead of looping lets the other keys take turns on the pool threads
+        this.submit(orderingKey, next);
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ *
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ *
+ */
+
+package com.microsoft.azure.sdk.iot.device.transport;
+
+import com.microsoft.azure.sdk.iot.device.Message;
+import com.microsoft.azure.sdk.iot.device.MessageBodyAccessor;
+import com.microsoft.azure.sdk.iot.device.MessageProperty;
+import com.microsoft.azure.sdk.iot.device.MessageType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+
+/**
+ * Converts telemetry messages to and from the bytes kept in an {@link OfflineMessageStore}. Only the fields a device
+ * sets on outgoing telemetry are kept: the body, the user properties, the ids, the routing and the expiry time.
+ */
+public final class OfflineMessageCodec
+{
+    private static final int FORMAT_VERSION = 1;
+    private static final int ESTIMATED_FIELDS_SIZE = 256;
+
+    private OfflineMessageCodec()
+    {
+    }
+
+    /**
+     * Serializes a message.
+     * @param message the message to serialize
+     * @return the serialized message
+     * @throws IllegalArgumentException if the message is null
+     */
+    public static byte[] encode(Message message) throws IllegalArgumentException
+    {
+        if (message == null)
+        {
+            //Codes_SRS_OFFLINEMESSAGECODEC_12_001: [If the message is null, the function shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("message cannot be null");
+        }
+
+        ByteBuffer body = MessageBodyAccessor.getBodyBuffer(message);
+        int bodyLength = body == null ? 0 : body.remaining();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(bodyLength + ESTIMATED_FIELDS_SIZE);
+        DataOutputStream output = new DataOutputStream(bytes);
+        try
+        {
+            //Codes_SRS_OFFLINEMESSAGECODEC_12_002: [The function shall write the body, ids, routing fields, expiry time
+            // and user properties of the message.]
+            output.writeByte(FORMAT_VERSION);
+            output.writeInt(bodyLength);
+            if (body != null)
+            {
+                // the body view is read-only, the channel copies it through a bounded chunk buffer
+                Channels.newChannel(output).write(body);
+            }
+
+            writeNullableString(output, message.getMessageId());
+            writeNullableString(output, message.getCorrelationId());
+            writeNullableString(output, message.getUserId());
+            writeNullableString(output, message.getConnectionDeviceId());
+            writeNullableString(output, message.getConnectionModuleId());
+            writeNullableString(output, message.getOutputName());
+            writeNullableString(output, message.getContentType());
+            writeNullableString(output, message.getContentEncoding());
+            writeNullableString(output, message.getMessageType() == null ? null : message.getMessageType().name());
+            output.writeLong(message.getExpiryTime());
+
+            MessageProperty[] properties = message.getProperties();
+            output.writeInt(properties.length);
+            for (MessageProperty property : properties)
+            {
+                output.writeUTF(property.getName());
+                output.writeUTF(property.getValue());
+            }
+
+            output.flush();
+        }
+        catch (IOException e)
+        {
+            // writing to memory does not fail
+            throw new IllegalStateException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Deserializes a message serialized by {@link #encode(Message)}.
+     * @param data the serialized message
+     * @return the message
+     * @throws IllegalArgumentException if the data is not a serialized message
+     */
+    public static Message decode(byte[] data) throws IllegalArgumentException
+    {
+        if (data == null)
+        {
+            //Codes_SRS_OFFLINEMESSAGECODEC_12_003: [If the data is null, the function shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("data cannot be null");
+        }
+
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(data));
+        try
+        {
+            int version = input.readUnsignedByte();
+            if (version != FORMAT_VERSION)
+            {
+                //Codes_SRS_OFFLINEMESSAGECODEC_12_004: [If the data is not in a known format, the function shall throw an IllegalArgumentException.]
+                throw new IllegalArgumentException("Unknown stored message format " + version);
+            }
+
+            //Codes_SRS_OFFLINEMESSAGECODEC_12_005: [The function shall return a message with the body, ids, routing
+            // fields, expiry time and user properties that were written.]
+            byte[] body = new byte[input.readInt()];
+            input.readFully(body);
+            Message message = new Message(body);
+            message.setMessageId(readNullableString(input));
+            message.setCorrelationId(readNullableString(input));
+            message.setUserId(readNullableString(input));
+            message.setConnectionDeviceId(readNullableString(input));
+            message.setConnectionModuleId(readNullableString(input));
+            message.setOutputName(readNullableString(input));
+            message.setContentTypeFinal(readNullableString(input));
+            message.setContentEncoding(readNullableString(input));
+            String messageType = readNullableString(input);
+            if (messageType != null)
+            {
+                message.setMessageType(MessageType.valueOf(messageType));
+            }
+
+            long expiryTime = input.readLong();
+            if (expiryTime != 0)
+            {
+                message.setAbsoluteExpiryTime(expiryTime);
+            }
+
+            int propertyCount = input.readInt();
+            for (int i = 0; i < propertyCount; i++)
+            {
+                message.setProperty(input.readUTF(), input.readUTF());
+            }
+
+            return message;
+        }
+        catch (IOException | NegativeArraySizeException e)
+        {
+            throw new IllegalArgumentException("The data is not a stored message", e);
+        }
+    }
+
+    private static void writeNullableString(DataOutputStream output, String value) throws IOException
+    {
+        output.writeBoolean(value != null);
+        if (value != null)
+        {
+            output.writeUTF(value);
+        }
+    }
+
+    private static String readNullableString(DataInputStream input) throws IOException
+    {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+}
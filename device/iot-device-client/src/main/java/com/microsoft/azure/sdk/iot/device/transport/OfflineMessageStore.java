@@ -0,0 +1,696 @@
+/*
+ *
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ *
+ */
+
+package com.microsoft.azure.sdk.iot.device.transport;
+
+import com.microsoft.azure.sdk.iot.device.CustomLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only queue of records kept in memory mapped segment files, so that queued records survive a process
+ * restart. Records are read back in the order they were appended and stay on disk until they are completed, in any
+ * order. A checkpoint file remembers the oldest record that is not completed, which is where reading starts again
+ * after a restart, so a record may be read twice but is never lost before it is completed. Writes are flushed to the
+ * disk in batches as configured by {@link OfflineMessageStoreSettings}.
+ * <p>
+ * A segment is unmapped before its file is deleted, as some platforms, such as Windows, cannot delete a file that
+ * is still mapped. Segment files that cannot be deleted are retried whenever segments are deleted and when the store
+ * is opened again.
+ */
+public final class OfflineMessageStore
+{
+    // record layout: data length (int), CRC32 of the data (int), sequence number (long), timestamp (long), data
+    private static final int RECORD_HEADER_SIZE = 24;
+    private static final String SEGMENT_FILE_SUFFIX = ".segment";
+    private static final String CHECKPOINT_FILE_NAME = "checkpoint";
+    private static final int CHECKPOINT_FILE_SIZE = 8;
+
+    private final OfflineMessageStoreSettings settings;
+    private final CustomLogger logger;
+
+    /* Segment files by the sequence number of their first record. The last one is the one written to. */
+    private final TreeMap<Long, File> segments = new TreeMap<>();
+
+    private MappedByteBuffer writeBuffer;
+    private long writeSegmentFirstSequenceNumber;
+    private long nextSequenceNumber;
+
+    private ByteBuffer readBuffer;
+    private long readSegmentFirstSequenceNumber;
+
+    /* The mapping behind readBuffer, or null if readBuffer shares the mapping of the segment being written */
+    private MappedByteBuffer readSegmentMapping;
+
+    /* Files of deleted segments that could not be removed from the disk yet */
+    private final List<File> undeletedSegmentFiles = new ArrayList<>();
+    private long nextSequenceNumberToRead;
+
+    /* Records that were read and are not behind the checkpoint yet, with whether they were completed */
+    private final TreeMap<Long, Boolean> readRecords = new TreeMap<>();
+    private MappedByteBuffer checkpointBuffer;
+    private long checkpointSequenceNumber;
+
+    private int unsyncedWrites;
+    private long lastSyncMillis;
+    private boolean isOpen;
+
+    /**
+     * A record read from the store.
+     */
+    public static final class Record
+    {
+        private final long sequenceNumber;
+        private final long timestampMillis;
+        private final byte[] data;
+
+        Record(long sequenceNumber, long timestampMillis, byte[] data)
+        {
+            this.sequenceNumber = sequenceNumber;
+            this.timestampMillis = timestampMillis;
+            this.data = data;
+        }
+
+        /**
+         * Getter for the sequence number
+         * @return the number identifying this record when completing it. Increases with every appended record
+         */
+        public long getSequenceNumber()
+        {
+            return this.sequenceNumber;
+        }
+
+        /**
+         * Getter for the timestamp
+         * @return the milliseconds since epoch at which the record was appended
+         */
+        public long getTimestampMillis()
+        {
+            return this.timestampMillis;
+        }
+
+        /**
+         * Getter for the data
+         * @return the appended bytes
+         */
+        public byte[] getData()
+        {
+            return this.data;
+        }
+    }
+
+    /**
+     * Constructor. The store must be opened before use.
+     * @param settings the directory, limits and flush policy of the store
+     * @throws IllegalArgumentException if the settings are null
+     */
+    public OfflineMessageStore(OfflineMessageStoreSettings settings) throws IllegalArgumentException
+    {
+        if (settings == null)
+        {
+            //Codes_SRS_OFFLINEMESSAGESTORE_12_001: [If the provided settings are null, the constructor shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("settings cannot be null");
+        }
+
+        this.settings = settings;
+        this.logger = new CustomLogger(this.getClass());
+    }
+
+    /**
+     * Opens the store, recovering the records that were appended and not completed before it was last closed or
+     * before the process stopped. Does nothing if the store is open.
+     * @throws IOException if the directory or the files of the store cannot be created or read
+     */
+    public synchronized void open() throws IOException
+    {
+        if (this.isOpen)
+        {
+            return;
+        }
+
+        File directory = this.settings.getDirectory();
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            //Codes_SRS_OFFLINEMESSAGESTORE_12_002: [If the directory does not exist and cannot be created, the function shall throw an IOException.]
+            throw new IOException("Could not create the offline message store directory " + directory);
+        }
+
+        //Codes_SRS_OFFLINEMESSAGESTORE_12_003: [The function shall read the checkpoint from the checkpoint file, creating it if needed.]
+        this.checkpointBuffer = map(new File(directory, CHECKPOINT_FILE_NAME), CHECKPOINT_FILE_SIZE, false);
+        this.checkpointSequenceNumber = this.checkpointBuffer.getLong(0);
+
+        this.segments.clear();
+        File[] files = directory.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                String name = file.getName();
+                if (name.endsWith(SEGMENT_FILE_SUFFIX))
+                {
+                    try
+                    {
+                        this.segments.put(Long.parseLong(name.substring(0, name.length() - SEGMENT_FILE_SUFFIX.length())), file);
+                    }
+                    catch (NumberFormatException e)
+                    {
+                        logger.LogWarn("Ignoring unexpected file %s in the offline message store, method name is %s ", name, logger.getLazyMethodName());
+                    }
+                }
+            }
+        }
+
+        //Codes_SRS_OFFLINEMESSAGESTORE_12_004: [The function shall delete the segments whose records are all behind the checkpoint.]
+        this.deleteCompletedSegments();
+
+        //Codes_SRS_OFFLINEMESSAGESTORE_12_005: [The function shall scan the last segment to find the sequence number
+        // of the next record, ignoring a record torn by a crash. Appends always start a new segment.]
+        this.nextSequenceNumber = this.checkpointSequenceNumber;
+        if (!this.segments.isEmpty())
+        {
+            Map.Entry<Long, File> lastSegment = this.segments.lastEntry();
+            MappedByteBuffer buffer = map(lastSegment.getValue(), 0, true);
+            long endSequenceNumber = lastSegment.getKey();
+            while (readRecord(buffer, endSequenceNumber) != null)
+            {
+                endSequenceNumber++;
+            }
+
+            this.unmap(buffer);
+
+            if (endSequenceNumber == lastSegment.getKey() || endSequenceNumber <= this.checkpointSequenceNumber)
+            {
+                this.deleteSegment(lastSegment.getKey());
+            }
+
+            this.nextSequenceNumber = Math.max(this.nextSequenceNumber, endSequenceNumber);
+        }
+
+        if (!this.segments.isEmpty() && this.checkpointSequenceNumber < this.segments.firstKey())
+        {
+            // older segments were evicted
+            this.checkpointSequenceNumber = this.segments.firstKey();
+        }
+
+        this.checkpointBuffer.putLong(0, this.checkpointSequenceNumber);
+        this.nextSequenceNumberToRead = this.checkpointSequenceNumber;
+        this.closeReadSegment();
+        this.readRecords.clear();
+        this.writeBuffer = null;
+        this.unsyncedWrites = 0;
+        this.lastSyncMillis = System.currentTimeMillis();
+        this.isOpen = true;
+
+        logger.LogInfo("Opened the offline message store in %s with %d unsent records, method name is %s ",
+                directory, this.nextSequenceNumber - this.checkpointSequenceNumber, logger.getLazyMethodName());
+    }
+
+    /**
+     * Flushes the pending writes to the disk and closes the store. Records that were not completed are read again
+     * after the store is reopened. Does nothing if the store is closed.
+     */
+    public synchronized void close()
+    {
+        if (!this.isOpen)
+        {
+            return;
+        }
+
+        //Codes_SRS_OFFLINEMESSAGESTORE_12_006: [The function shall flush the pending writes and the checkpoint to the disk.]
+        this.sync();
+
+        //Codes_SRS_OFFLINEMESSAGESTORE_12_016: [The function shall unmap the segment files and the checkpoint file.]
+        this.closeReadSegment();
+        this.unmap(this.writeBuffer);
+        this.writeBuffer = null;
+        this.unmap(this.checkpointBuffer);
+        this.checkpointBuffer = null;
+        this.readRecords.clear();
+        this.isOpen = false;
+    }
+
+    /**
+     * Appends a record. If the current segment is full, a new segment is started, evicting the oldest segment first
+     * if the store is at its size limit and the policy is {@code DROP_OLDEST}.
+     *
+     * @param data the bytes to store. Cannot be null or empty
+     * @param timestampMillis the milliseconds since epoch to store with the record
+     * @return the sequence number of the record, or -1 if the store is full and the policy is {@code REJECT_NEWEST}
+     * @throws IllegalArgumentException if the data is empty or too large for a segment
+     * @throws IOException if a new segment file cannot be created
+     */
+    public synchronized long append(byte[] data, long timestampMillis) throws IllegalArgumentException, IOException
+    {
+        this.checkOpen();
+
+        if (data == null || data.length == 0)
+        {
+            //Codes_SRS_OFFLINEMESSAGESTORE_12_007: [If the data is null or empty, the function shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("data cannot be null or empty");
+        }
+
+        int recordSize = RECORD_HEADER_SIZE + data.length;
+        if (recordSize > this.settings.getSegmentSizeBytes())
+        {
+            //Codes_SRS_OFFLINEMESSAGESTORE_12_008: [If the record does not fit in a segment, the function shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("A record of " + data.length + " bytes does not fit in a segment");
+        }
+
+        if (this.writeBuffer == null || this.writeBuffer.remaining() < recordSize)
+        {
+            if (!this.startWriteSegment())
+            {
+                //Codes_SRS_OFFLINEMESSAGESTORE_12_009: [If the store is full and the policy is REJECT_NEWEST, the function shall return -1.]
+                return -1;
+            }
+        }
+
+        //Codes_SRS_OFFLINEMESSAGESTORE_12_010: [The function shall write the record to the current segment and return its sequence number.]
+        long sequenceNumber = this.nextSequenceNumber;
+        this.writeBuffer.putInt(data.length).putInt(crc(data)).putLong(sequenceNumber).putLong(timestampMillis).put(data);
+        this.nextSequenceNumber++;
+
+        this.unsyncedWrites++;
+        this.syncIfDue();
+
+        return sequenceNumber;
+    }
+
+    /**
+     * Reads the next record in append order. Records torn by a crash are skipped.
+     * @return the next record, or null if every appended record was read
+     * @throws IOException if a segment file cannot be read
+     */
+    public synchronized Record readNext() throws IOException
+    {
+        this.checkOpen();
+
+        while (this.nextSequenceNumberToRead < this.nextSequenceNumber)
+        {
+            if (this.readBuffer == null)
+            {
+                Long segmentFirstSequenceNumber = this.segments.floorKey(this.nextSequenceNumberToRead);
+                if (segmentFirstSequenceNumber == null)
+                {
+                    // the records to read were evicted, continue with the oldest segment left
+                    this.nextSequenceNumberToRead = this.segments.isEmpty() ? this.nextSequenceNumber : this.segments.firstKey();
+                    continue;
+                }
+
+                this.openReadSegment(segmentFirstSequenceNumber);
+            }
+
+            //Codes_SRS_OFFLINEMESSAGESTORE_12_011: [The function shall return the next record and remember it as read.]
+            Record record = readRecord(this.readBuffer, this.nextSequenceNumberToRead);
+            if (record != null)
+            {
+                this.nextSequenceNumberToRead++;
+                this.readRecords.put(record.getSequenceNumber(), false);
+                return record;
+            }
+
+            //Codes_SRS_OFFLINEMESSAGESTORE_12_012: [At the end of a segment, or at a record that is not valid, the
+            // function shall continue with the next segment.]
+            Long nextSegmentFirstSequenceNumber = this.segments.higherKey(this.readSegmentFirstSequenceNumber);
+            long skipTo = nextSegmentFirstSequenceNumber == null ? this.nextSequenceNumber : nextSegmentFirstSequenceNumber;
+            if (skipTo > this.nextSequenceNumberToRead)
+            {
+                logger.LogWarn("Skipping %d records of the offline message store that could not be read, method name is %s ",
+                        skipTo - this.nextSequenceNumberToRead, logger.getLazyMethodName());
+            }
+
+            this.nextSequenceNumberToRead = skipTo;
+            this.closeReadSegment();
+        }
+
+        return null;
+    }
+
+    /**
+     * Marks a read record as completed. Once all the records before it are completed too, the checkpoint moves past
+     * it and the segments left behind are deleted. Does nothing if the record is not read or already completed.
+     * @param sequenceNumber the sequence number of the record
+     */
+    public synchronized void complete(long sequenceNumber)
+    {
+        if (!this.isOpen || !this.readRecords.containsKey(sequenceNumber))
+        {
+            return;
+        }
+
+        //Codes_SRS_OFFLINEMESSAGESTORE_12_013: [The function shall move the checkpoint past the completed records
+        // that are not preceded by a record that is not completed.]
+        this.readRecords.put(sequenceNumber, true);
+        long newCheckpointSequenceNumber = this.checkpointSequenceNumber;
+        while (!this.readRecords.isEmpty() && this.readRecords.firstEntry().getValue())
+        {
+            newCheckpointSequenceNumber = this.readRecords.pollFirstEntry().getKey() + 1;
+        }
+
+        if (this.readRecords.isEmpty())
+        {
+            newCheckpointSequenceNumber = this.nextSequenceNumberToRead;
+        }
+
+        if (newCheckpointSequenceNumber > this.checkpointSequenceNumber)
+        {
+            this.checkpointSequenceNumber = newCheckpointSequenceNumber;
+            this.checkpointBuffer.putLong(0, newCheckpointSequenceNumber);
+
+            //Codes_SRS_OFFLINEMESSAGESTORE_12_014: [The function shall delete the segments behind the checkpoint.]
+            this.deleteCompletedSegments();
+
+            this.unsyncedWrites++;
+            this.syncIfDue();
+        }
+    }
+
+    /**
+     * Flushes the pending writes to the disk if the sync batch is full or the sync interval has elapsed since the
+     * previous flush.
+     */
+    public synchronized void syncIfDue()
+    {
+        if (this.isOpen && this.unsyncedWrites > 0
+                && (this.unsyncedWrites >= this.settings.getSyncBatchSize()
+                    || System.currentTimeMillis() - this.lastSyncMillis >= this.settings.getSyncIntervalMillis()))
+        {
+            this.sync();
+        }
+    }
+
+    /**
+     * Flushes the pending writes and the checkpoint to the disk.
+     */
+    public synchronized void sync()
+    {
+        if (!this.isOpen)
+        {
+            return;
+        }
+
+        //Codes_SRS_OFFLINEMESSAGESTORE_12_015: [The function shall force the current segment and the checkpoint to the disk.]
+        if (this.writeBuffer != null)
+        {
+            this.writeBuffer.force();
+        }
+
+        this.checkpointBuffer.force();
+        this.unsyncedWrites = 0;
+        this.lastSyncMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Getter for the unread records
+     * @return true if there are records that were appended and not read yet
+     */
+    public synchronized boolean hasUnreadRecords()
+    {
+        return this.isOpen && this.nextSequenceNumberToRead < this.nextSequenceNumber;
+    }
+
+    /**
+     * Getter for the next sequence number
+     * @return the sequence number that the next appended record gets
+     */
+    public synchronized long getNextSequenceNumber()
+    {
+        return this.nextSequenceNumber;
+    }
+
+    /**
+     * Getter for the oldest retained record
+     * @return the sequence number of the oldest record still on disk. The records before it were completed or evicted
+     */
+    public synchronized long getFirstRetainedSequenceNumber()
+    {
+        return this.segments.isEmpty() ? this.nextSequenceNumber : Math.max(this.segments.firstKey(), this.checkpointSequenceNumber);
+    }
+
+    private void checkOpen()
+    {
+        if (!this.isOpen)
+        {
+            throw new IllegalStateException("The offline message store is not open");
+        }
+    }
+
+    private boolean startWriteSegment() throws IOException
+    {
+        if (this.writeBuffer != null)
+        {
+            this.writeBuffer.force();
+        }
+
+        if (this.segments.size() >= this.settings.getMaxSegmentCount())
+        {
+            if (this.settings.getEvictionPolicy() == OfflineMessageStoreSettings.EvictionPolicy.REJECT_NEWEST)
+            {
+                return false;
+            }
+
+            this.evictOldestSegment();
+        }
+
+        if (this.writeBuffer != null)
+        {
+            if (this.readBuffer != null && this.readSegmentMapping == null
+                    && this.readSegmentFirstSequenceNumber == this.writeSegmentFirstSequenceNumber)
+            {
+                // still being read, unmapped once the reading moves to the next segment
+                this.readSegmentMapping = this.writeBuffer;
+            }
+            else
+            {
+                this.unmap(this.writeBuffer);
+            }
+
+            this.writeBuffer = null;
+        }
+
+        File file = new File(this.settings.getDirectory(), String.format("%020d%s", this.nextSequenceNumber, SEGMENT_FILE_SUFFIX));
+        this.undeletedSegmentFiles.remove(file);
+        this.writeBuffer = map(file, this.settings.getSegmentSizeBytes(), false);
+        this.writeSegmentFirstSequenceNumber = this.nextSequenceNumber;
+        this.segments.put(this.nextSequenceNumber, file);
+        return true;
+    }
+
+    private void evictOldestSegment()
+    {
+        long oldestFirstSequenceNumber = this.segments.firstKey();
+        long nextFirstSequenceNumber = this.segments.higherKey(oldestFirstSequenceNumber);
+
+        logger.LogWarn("The offline message store is full, dropping the records %d to %d, method name is %s ",
+                oldestFirstSequenceNumber, nextFirstSequenceNumber - 1, logger.getLazyMethodName());
+
+        this.deleteSegment(oldestFirstSequenceNumber);
+        this.readRecords.headMap(nextFirstSequenceNumber).clear();
+
+        if (this.nextSequenceNumberToRead < nextFirstSequenceNumber)
+        {
+            this.nextSequenceNumberToRead = nextFirstSequenceNumber;
+            this.closeReadSegment();
+        }
+
+        if (this.checkpointSequenceNumber < nextFirstSequenceNumber)
+        {
+            this.checkpointSequenceNumber = nextFirstSequenceNumber;
+            this.checkpointBuffer.putLong(0, nextFirstSequenceNumber);
+        }
+    }
+
+    private void deleteCompletedSegments()
+    {
+        this.retryUndeletedSegmentFiles();
+
+        while (this.segments.size() > 1 && this.segments.higherKey(this.segments.firstKey()) <= this.checkpointSequenceNumber)
+        {
+            this.deleteSegment(this.segments.firstKey());
+        }
+    }
+
+    private void deleteSegment(long firstSequenceNumber)
+    {
+        File file = this.segments.remove(firstSequenceNumber);
+        if (this.readBuffer != null && this.readSegmentFirstSequenceNumber == firstSequenceNumber)
+        {
+            this.closeReadSegment();
+        }
+
+        //Codes_SRS_OFFLINEMESSAGESTORE_12_017: [If a segment file cannot be deleted, it shall be deleted again with
+        // the next completed segment or when the store is opened again.]
+        if (file != null && !file.delete() && file.exists())
+        {
+            logger.LogWarn("Could not delete the segment file %s, it will be retried, method name is %s ", file, logger.getLazyMethodName());
+            this.undeletedSegmentFiles.add(file);
+        }
+    }
+
+    private void retryUndeletedSegmentFiles()
+    {
+        Iterator<File> iterator = this.undeletedSegmentFiles.iterator();
+        while (iterator.hasNext())
+        {
+            File file = iterator.next();
+            if (file.delete() || !file.exists())
+            {
+                iterator.remove();
+            }
+        }
+    }
+
+    private void closeReadSegment()
+    {
+        this.readBuffer = null;
+        this.unmap(this.readSegmentMapping);
+        this.readSegmentMapping = null;
+    }
+
+    private void openReadSegment(long firstSequenceNumber) throws IOException
+    {
+        this.closeReadSegment();
+
+        ByteBuffer buffer;
+        if (this.writeBuffer != null && firstSequenceNumber == this.writeSegmentFirstSequenceNumber)
+        {
+            buffer = this.writeBuffer.duplicate();
+            buffer.position(0);
+        }
+        else
+        {
+            this.readSegmentMapping = map(this.segments.get(firstSequenceNumber), 0, true);
+            buffer = this.readSegmentMapping;
+        }
+
+        // skip the records that were read before
+        long sequenceNumber = firstSequenceNumber;
+        while (sequenceNumber < this.nextSequenceNumberToRead && buffer.remaining() >= RECORD_HEADER_SIZE)
+        {
+            int length = buffer.getInt(buffer.position());
+            if (length <= 0 || length > buffer.remaining() - RECORD_HEADER_SIZE)
+            {
+                break;
+            }
+
+            buffer.position(buffer.position() + RECORD_HEADER_SIZE + length);
+            sequenceNumber++;
+        }
+
+        this.readBuffer = buffer;
+        this.readSegmentFirstSequenceNumber = firstSequenceNumber;
+    }
+
+    private static Record readRecord(ByteBuffer buffer, long expectedSequenceNumber)
+    {
+        int position = buffer.position();
+        if (buffer.remaining() < RECORD_HEADER_SIZE)
+        {
+            return null;
+        }
+
+        int length = buffer.getInt(position);
+        if (length <= 0 || length > buffer.remaining() - RECORD_HEADER_SIZE
+                || buffer.getLong(position + 8) != expectedSequenceNumber)
+        {
+            return null;
+        }
+
+        byte[] data = new byte[length];
+        buffer.position(position + RECORD_HEADER_SIZE);
+        buffer.get(data);
+        if (crc(data) != buffer.getInt(position + 4))
+        {
+            buffer.position(position);
+            return null;
+        }
+
+        return new Record(expectedSequenceNumber, buffer.getLong(position + 16), data);
+    }
+
+    private static int crc(byte[] data)
+    {
+        CRC32 crc32 = new CRC32();
+        crc32.update(data, 0, data.length);
+        return (int) crc32.getValue();
+    }
+
+    /**
+     * Releases a mapping right away instead of when it is garbage collected, so that its file can be deleted. The
+     * buffer, and any duplicate of it, must not be used afterwards.
+     */
+    private void unmap(MappedByteBuffer buffer)
+    {
+        if (buffer == null)
+        {
+            return;
+        }
+
+        try
+        {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner;
+            try
+            {
+                // Java 9 and later
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            }
+            catch (NoSuchMethodException e)
+            {
+                // Java 8 and earlier
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null)
+                {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+
+                return;
+            }
+
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+        }
+        catch (Exception e)
+        {
+            // the mapping is released when the buffer is garbage collected
+            logger.LogDebug("Could not unmap a segment of the offline message store: %s, method name is %s ", e.getMessage(), logger.getLazyMethodName());
+        }
+    }
+
+    private static MappedByteBuffer map(File file, long size, boolean readOnly) throws IOException
+    {
+        // the mapping stays valid after the file is closed
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, readOnly ? "r" : "rw");
+        try
+        {
+            FileChannel channel = randomAccessFile.getChannel();
+            return readOnly
+                    ? channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                    : channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        finally
+        {
+            randomAccessFile.close();
+        }
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ *
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ *
+ */
+
+package com.microsoft.azure.sdk.iot.device.transport;
+
+import java.io.File;
+
+/**
+ * Settings of the disk backed queue that holds outgoing telemetry until the IoT Hub acknowledges it. The queue
+ * survives connection losses and process restarts, and is bounded by {@link #setMaxStoreSizeBytes(long)} and
+ * {@link #setMaxMessageAgeMillis(long)}. The callbacks of the stored messages are kept in memory and are bounded by
+ * {@link #setMaxPendingCallbacks(int)}.
+ */
+public final class OfflineMessageStoreSettings
+{
+    /**
+     * What to do with a new message when the store has reached its maximum size.
+     */
+    public enum EvictionPolicy
+    {
+        /** Delete the oldest segment of messages to make room. Their callbacks are invoked with {@code ERROR}. */
+        DROP_OLDEST,
+        /** Keep the stored messages and fail the new one. Its callback is invoked with {@code ERROR}. */
+        REJECT_NEWEST
+    }
+
+    private static final int DEFAULT_SEGMENT_SIZE_BYTES = 4 * 1024 * 1024;
+    private static final long DEFAULT_MAX_STORE_SIZE_BYTES = 64L * DEFAULT_SEGMENT_SIZE_BYTES;
+    private static final int DEFAULT_SYNC_BATCH_SIZE = 64;
+    private static final long DEFAULT_SYNC_INTERVAL_MILLIS = 1000;
+    private static final int MIN_SEGMENT_SIZE_BYTES = 64 * 1024;
+    private static final int DEFAULT_MAX_PENDING_CALLBACKS = 10000;
+
+    private final File directory;
+    private int segmentSizeBytes = DEFAULT_SEGMENT_SIZE_BYTES;
+    private long maxStoreSizeBytes = DEFAULT_MAX_STORE_SIZE_BYTES;
+    private long maxMessageAgeMillis;
+    private EvictionPolicy evictionPolicy = EvictionPolicy.DROP_OLDEST;
+    private int syncBatchSize = DEFAULT_SYNC_BATCH_SIZE;
+    private long syncIntervalMillis = DEFAULT_SYNC_INTERVAL_MILLIS;
+    private int maxPendingCallbacks = DEFAULT_MAX_PENDING_CALLBACKS;
+
+    /**
+     * Constructor with 4 MB segments, a 256 MB size limit, no age limit, the {@code DROP_OLDEST} policy and up to
+     * 10000 pending callbacks.
+     *
+     * @param directory the directory holding the segment files. Created if it does not exist. It must not be shared
+     *                  with another client.
+     * @throws IllegalArgumentException if the directory is null
+     */
+    public OfflineMessageStoreSettings(File directory) throws IllegalArgumentException
+    {
+        if (directory == null)
+        {
+            throw new IllegalArgumentException("The store directory cannot be null");
+        }
+
+        this.directory = directory;
+    }
+
+    /**
+     * Getter for the directory
+     * @return the directory holding the segment files
+     */
+    public File getDirectory()
+    {
+        return this.directory;
+    }
+
+    /**
+     * Getter for the segment size
+     * @return the size of each memory mapped segment file, in bytes
+     */
+    public int getSegmentSizeBytes()
+    {
+        return this.segmentSizeBytes;
+    }
+
+    /**
+     * Setter for the segment size. A message larger than a segment is not stored and is queued in memory instead.
+     * @param segmentSizeBytes the size of each segment file, in bytes. Must be at least 64 KB
+     * @throws IllegalArgumentException if the size is less than 64 KB
+     */
+    public void setSegmentSizeBytes(int segmentSizeBytes) throws IllegalArgumentException
+    {
+        if (segmentSizeBytes < MIN_SEGMENT_SIZE_BYTES)
+        {
+            throw new IllegalArgumentException("The segment size must be at least " + MIN_SEGMENT_SIZE_BYTES + " bytes");
+        }
+
+        this.segmentSizeBytes = segmentSizeBytes;
+    }
+
+    /**
+     * Getter for the size limit
+     * @return the maximum disk space used by the segment files, in bytes
+     */
+    public long getMaxStoreSizeBytes()
+    {
+        return this.maxStoreSizeBytes;
+    }
+
+    /**
+     * Setter for the size limit. The store always keeps at least two segments.
+     * @param maxStoreSizeBytes the maximum disk space used by the segment files, in bytes. Must be greater than 0
+     * @throws IllegalArgumentException if the size is less than 1
+     */
+    public void setMaxStoreSizeBytes(long maxStoreSizeBytes) throws IllegalArgumentException
+    {
+        if (maxStoreSizeBytes < 1)
+        {
+            throw new IllegalArgumentException("The maximum store size must be greater than 0");
+        }
+
+        this.maxStoreSizeBytes = maxStoreSizeBytes;
+    }
+
+    /**
+     * Getter for the maximum number of segments
+     * @return the number of segments that fit in the size limit, at least 2
+     */
+    public int getMaxSegmentCount()
+    {
+        return (int) Math.max(2, Math.min(Integer.MAX_VALUE, this.maxStoreSizeBytes / this.segmentSizeBytes));
+    }
+
+    /**
+     * Getter for the age limit
+     * @return the maximum time a message may wait in the store, in milliseconds, or 0 if there is no limit
+     */
+    public long getMaxMessageAgeMillis()
+    {
+        return this.maxMessageAgeMillis;
+    }
+
+    /**
+     * Setter for the age limit. Older messages are not sent, their callbacks are invoked with {@code MESSAGE_EXPIRED}.
+     * @param maxMessageAgeMillis the maximum time a message may wait in the store, in milliseconds. 0 means no limit
+     * @throws IllegalArgumentException if the age is negative
+     */
+    public void setMaxMessageAgeMillis(long maxMessageAgeMillis) throws IllegalArgumentException
+    {
+        if (maxMessageAgeMillis < 0)
+        {
+            throw new IllegalArgumentException("The maximum message age cannot be negative");
+        }
+
+        this.maxMessageAgeMillis = maxMessageAgeMillis;
+    }
+
+    /**
+     * Getter for the eviction policy
+     * @return what happens to a new message when the store is full
+     */
+    public EvictionPolicy getEvictionPolicy()
+    {
+        return this.evictionPolicy;
+    }
+
+    /**
+     * Setter for the eviction policy
+     * @param evictionPolicy what happens to a new message when the store is full
+     * @throws IllegalArgumentException if the policy is null
+     */
+    public void setEvictionPolicy(EvictionPolicy evictionPolicy) throws IllegalArgumentException
+    {
+        if (evictionPolicy == null)
+        {
+            throw new IllegalArgumentException("The eviction policy cannot be null");
+        }
+
+        this.evictionPolicy = evictionPolicy;
+    }
+
+    /**
+     * Getter for the sync batch size
+     * @return the number of writes after which the segment files are flushed to the disk
+     */
+    public int getSyncBatchSize()
+    {
+        return this.syncBatchSize;
+    }
+
+    /**
+     * Setter for the sync batch size. The segment files are flushed to the disk once this many messages were stored
+     * or acknowledged, or once {@link #getSyncIntervalMillis()} has elapsed, whichever comes first. A power loss may
+     * lose the writes since the last flush.
+     * @param syncBatchSize the number of writes between flushes. Must be greater than 0
+     * @throws IllegalArgumentException if the batch size is less than 1
+     */
+    public void setSyncBatchSize(int syncBatchSize) throws IllegalArgumentException
+    {
+        if (syncBatchSize < 1)
+        {
+            throw new IllegalArgumentException("The sync batch size must be greater than 0");
+        }
+
+        this.syncBatchSize = syncBatchSize;
+    }
+
+    /**
+     * Getter for the sync interval
+     * @return the longest time a write waits before being flushed to the disk, in milliseconds
+     */
+    public long getSyncIntervalMillis()
+    {
+        return this.syncIntervalMillis;
+    }
+
+    /**
+     * Setter for the sync interval
+     * @param syncIntervalMillis the longest time a write waits before being flushed to the disk, in milliseconds.
+     *                           Must be greater than 0
+     * @throws IllegalArgumentException if the interval is less than 1
+     */
+    public void setSyncIntervalMillis(long syncIntervalMillis) throws IllegalArgumentException
+    {
+        if (syncIntervalMillis < 1)
+        {
+            throw new IllegalArgumentException("The sync interval must be greater than 0");
+        }
+
+        this.syncIntervalMillis = syncIntervalMillis;
+    }
+
+    /**
+     * Getter for the pending callback limit
+     * @return the maximum number of callbacks kept in memory for the stored messages that were not sent yet
+     */
+    public int getMaxPendingCallbacks()
+    {
+        return this.maxPendingCallbacks;
+    }
+
+    /**
+     * Setter for the pending callback limit. The callback and context of a stored message stay in memory until the
+     * message is sent, consecutive messages sent with the same callback and context share one entry. Once the limit
+     * is reached, a message that needs a new entry, for example because its context is the message itself, is not
+     * stored and its callback is invoked with {@code ERROR}. Messages sent without a callback are not limited.
+     * @param maxPendingCallbacks the maximum number of entries. Must be greater than 0
+     * @throws IllegalArgumentException if the limit is less than 1
+     */
+    public void setMaxPendingCallbacks(int maxPendingCallbacks) throws IllegalArgumentException
+    {
+        if (maxPendingCallbacks < 1)
+        {
+            throw new IllegalArgumentException("The maximum number of pending callbacks must be greater than 0");
+        }
+
+        this.maxPendingCallbacks = maxPendingCallbacks;
+    }
+}
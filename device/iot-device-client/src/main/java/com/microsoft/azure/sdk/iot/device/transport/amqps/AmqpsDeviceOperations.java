@@ -18,9 +18,12 @@ import org.apache.qpid.proton.engine.*;
 import org.apache.qpid.proton.message.impl.MessageImpl;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 public class AmqpsDeviceOperations
 {
@@ -50,6 +53,10 @@ public class AmqpsDeviceOperations
     protected Sender senderLink;
     protected Receiver receiverLink;
 
+    // credit the service granted to the sender link, and the messages waiting on this link for more of it
+    protected int senderLinkCredit;
+    private final Queue<PendingDelivery> pendingDeliveries = new ConcurrentLinkedQueue<>();
+
     private CustomLogger logger;
 
     /**
@@ -121,7 +128,7 @@ public class AmqpsDeviceOperations
      */
     protected synchronized void openLinks(Session session) throws TransportException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", logger.getLazyMethodName());
 
         // Codes_SRS_AMQPSDEVICEOPERATIONS_12_006: [The function shall throw IllegalArgumentException if the session argument is null.]
         if (session == null)
@@ -135,6 +142,7 @@ public class AmqpsDeviceOperations
             {
                 // Codes_SRS_AMQPSDEVICEOPERATIONS_12_008: [**The function shall create sender link with the senderlinkTag member value.]
                 this.senderLink = session.sender(this.getSenderLinkTag());
+                this.senderLinkCredit = 0;
 
                 // Codes_SRS_AMQPSDEVICEOPERATIONS_12_009: [The function shall set both receiver and sender link properties to the amqpProperties member value.]
                 this.senderLink.setProperties(this.getAmqpProperties());
@@ -186,7 +194,7 @@ public class AmqpsDeviceOperations
             }
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", logger.getLazyMethodName());
     }
 
     /**
@@ -194,7 +202,10 @@ public class AmqpsDeviceOperations
      */
     protected void closeLinks()
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", logger.getLazyMethodName());
+
+        // Codes_SRS_AMQPSDEVICEOPERATIONS_12_052: [The function shall drop the messages waiting for link credit, since they are sent again after reconnection.]
+        this.pendingDeliveries.clear();
 
         // Codes_SRS_AMQPSDEVICEOPERATIONS_12_011: [If the sender link is not null the function shall close it and sets it to null.]
         if (this.senderLink != null)
@@ -211,7 +222,7 @@ public class AmqpsDeviceOperations
         this.amqpsSendLinkState = AmqpsDeviceOperationLinkState.CLOSED;
         this.amqpsRecvLinkState = AmqpsDeviceOperationLinkState.CLOSED;
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", logger.getLazyMethodName());
     }
 
     /**
@@ -222,7 +233,7 @@ public class AmqpsDeviceOperations
      */
     protected synchronized void initLink(Link link) throws TransportException, IllegalArgumentException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", logger.getLazyMethodName());
 
         if (link == null)
         {
@@ -276,7 +287,7 @@ public class AmqpsDeviceOperations
             }
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", logger.getLazyMethodName());
     }
 
     /**
@@ -304,14 +315,65 @@ public class AmqpsDeviceOperations
             throw new IllegalArgumentException("Trying deliveryTag cannot be null.");
         }
 
+        if ((this.senderLinkCredit <= 0) || !this.pendingDeliveries.isEmpty())
+        {
+            // Codes_SRS_AMQPSDEVICEOPERATIONS_12_048: [If the sender link has no credit, or other messages are already waiting for credit, the function shall copy the message data to the local queue of the link and return a successful AmqpsSendReturnValue with the hash of the queued message.]
+            // the caller reuses msgData for the next message, so the queued message needs its own copy
+            PendingDelivery pendingDelivery = new PendingDelivery(Arrays.copyOfRange(msgData, offset, offset + length), deliveryTag);
+            this.pendingDeliveries.add(pendingDelivery);
+            return new AmqpsSendReturnValue(true, pendingDelivery.hashCode());
+        }
+
+        return this.sendDelivery(msgData, offset, length, deliveryTag, null);
+    }
+
+    /**
+     * Sends the messages that were queued while the sender link had no credit, as far as the new credit allows
+     *
+     * @param link The link whose credit changed
+     * @return true if the link is the sender link of this operation, false otherwise
+     */
+    protected synchronized boolean onLinkFlow(Link link)
+    {
+        // Codes_SRS_AMQPSDEVICEOPERATIONS_12_049: [The function shall return false if the link is not the sender link of this operation.]
+        if ((this.senderLink == null) || !link.getName().equals(this.getSenderLinkTag()))
+        {
+            return false;
+        }
+
+        // Codes_SRS_AMQPSDEVICEOPERATIONS_12_050: [The function shall save the credit of the link.]
+        this.senderLinkCredit = link.getCredit();
+
+        // Codes_SRS_AMQPSDEVICEOPERATIONS_12_051: [The function shall send the queued messages in order while the link has credit, tagging each delivery with the hash returned when the message was queued.]
+        while ((this.senderLinkCredit > 0) && !this.pendingDeliveries.isEmpty())
+        {
+            PendingDelivery pendingDelivery = this.pendingDeliveries.poll();
+            AmqpsSendReturnValue amqpsSendReturnValue = this.sendDelivery(pendingDelivery.data, 0, pendingDelivery.data.length, pendingDelivery.deliveryTag, pendingDelivery.hashCode());
+            if (!amqpsSendReturnValue.isDeliverySuccessful())
+            {
+                logger.LogError("Failed to send a message queued on link %s, it will be sent again after reconnection, method name is %s ", this.getSenderLinkTag(), logger.getLazyMethodName());
+            }
+        }
+
+        return true;
+    }
+
+    private AmqpsSendReturnValue sendDelivery(byte[] msgData, int offset, int length, byte[] deliveryTag, Integer queuedHash)
+    {
         // Codes_SRS_AMQPSDEVICEOPERATIONS_12_021: [The function shall create a Delivery object using the sender link and the deliveryTag.]
         Delivery delivery = this.senderLink.delivery(deliveryTag);
         try
         {
+            if (queuedHash != null)
+            {
+                delivery.setContext(queuedHash);
+            }
+
             // Codes_SRS_AMQPSDEVICEOPERATIONS_12_022: [The function shall try to send the message data using the sender link with the offset and length argument.]
             this.senderLink.send(msgData, offset, length);
             // Codes_SRS_AMQPSDEVICEOPERATIONS_12_023: [The function shall advance the sender link.]
             this.senderLink.advance();
+            this.senderLinkCredit--;
             // Codes_SRS_AMQPSDEVICEOPERATIONS_12_024: [The function shall set the delivery hash to the value returned by the sender link.]
             return new AmqpsSendReturnValue(true, delivery.hashCode());
         }
@@ -325,6 +387,36 @@ public class AmqpsDeviceOperations
         }
     }
 
+    /**
+     * Returns the hash the in progress message of a delivery was saved with: the hash handed out when the message
+     * was queued for link credit, or the hash of the delivery itself if it was sent right away
+     *
+     * @param delivery the delivery to get the hash for
+     * @return the hash of the in progress message
+     */
+    static int getDeliveryHash(Delivery delivery)
+    {
+        Object context = delivery.getContext();
+        if (context instanceof Integer)
+        {
+            return (Integer) context;
+        }
+
+        return delivery.hashCode();
+    }
+
+    private static final class PendingDelivery
+    {
+        private final byte[] data;
+        private final byte[] deliveryTag;
+
+        private PendingDelivery(byte[] data, byte[] deliveryTag)
+        {
+            this.data = data;
+            this.deliveryTag = deliveryTag;
+        }
+    }
+
     /**
      * Reads the received buffer and handles the link
      * @param linkName The receiver link's name to read from
@@ -578,7 +670,8 @@ public class AmqpsDeviceOperations
         outgoingMessage.setApplicationProperties(applicationProperties);
 
         //Codes_SRS_AMQPSDEVICEOPERATION_34_015: [The function shall create a new Proton message using the IoTHubMessage body.]
-        Binary binary = new Binary(message.getBytes());
+        ByteBuffer body = MessageBodyAccessor.getBodyBuffer(message);
+        Binary binary = Binary.create(body);
         Section section = new Data(binary);
         outgoingMessage.setBody(section);
         return outgoingMessage;
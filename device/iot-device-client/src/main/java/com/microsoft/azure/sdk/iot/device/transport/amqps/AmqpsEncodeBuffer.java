@@ -0,0 +1,90 @@
+package com.microsoft.azure.sdk.iot.device.transport.amqps;
+
+import org.apache.qpid.proton.amqp.messaging.Data;
+import org.apache.qpid.proton.amqp.messaging.Section;
+import org.apache.qpid.proton.message.Message;
+
+import java.nio.BufferOverflowException;
+
+/**
+ * Encode buffer shared by every device session of one AMQP connection. It grows to fit the messages sent, up to
+ * {@link #MAX_RETAINED_SIZE}. A larger message is encoded into an array of its own, which is dropped by
+ * {@link #release()} once the message was sent, so one large message does not pin its size for the life of the
+ * connection.
+ *
+ * Callers must hold the lock of this object from {@link #encode(Message)} until {@link #release()}.
+ */
+public final class AmqpsEncodeBuffer
+{
+    static final int INITIAL_SIZE = 1024;
+    static final int MAX_RETAINED_SIZE = 64 * 1024;
+    private static final int HEADROOM = 1024;
+
+    private byte[] buffer = new byte[INITIAL_SIZE];
+    private byte[] encodedBytes = null;
+
+    /**
+     * Encodes the message. The encoded bytes are available from {@link #getEncodedBytes()} until {@link #release()}.
+     *
+     * @param message the message to encode.
+     * @return the length of the encoded message.
+     */
+    int encode(Message message)
+    {
+        // Codes_SRS_AMQPSENCODEBUFFER_12_001: [The function shall first grow the buffer to fit the Data body of the message, so that a large message is encoded once.]
+        byte[] target = this.buffer;
+        Section body = message.getBody();
+        if (body instanceof Data && ((Data) body).getValue() != null)
+        {
+            int expectedLength = ((Data) body).getValue().getLength() + HEADROOM;
+            if (expectedLength > target.length)
+            {
+                target = new byte[expectedLength];
+            }
+        }
+
+        int length;
+        while (true)
+        {
+            try
+            {
+                length = message.encode(target, 0, target.length);
+                break;
+            }
+            catch (BufferOverflowException e)
+            {
+                // Codes_SRS_AMQPSENCODEBUFFER_12_002: [The function shall double the buffer if encode throws BufferOverflowException.]
+                target = new byte[target.length * 2];
+            }
+        }
+
+        // Codes_SRS_AMQPSENCODEBUFFER_12_003: [The function shall keep a grown buffer for later messages only if it is not larger than MAX_RETAINED_SIZE.]
+        if (target.length <= MAX_RETAINED_SIZE)
+        {
+            this.buffer = target;
+        }
+
+        this.encodedBytes = target;
+        return length;
+    }
+
+    /**
+     * Getter for the array the last message was encoded into.
+     *
+     * @return the encoded bytes, or {@code null} if no message is encoded.
+     */
+    byte[] getEncodedBytes()
+    {
+        return this.encodedBytes;
+    }
+
+    /**
+     * Drops the reference to the last encoded message, so that an oversized array can be collected once the message
+     * was handed to proton, which copies the bytes into the delivery.
+     */
+    void release()
+    {
+        // Codes_SRS_AMQPSENCODEBUFFER_12_004: [The function shall drop the reference to the encoded bytes.]
+        this.encodedBytes = null;
+    }
+}
@@ -27,6 +27,7 @@ import org.apache.qpid.proton.reactor.Reactor;
 import org.apache.qpid.proton.reactor.ReactorOptions;
 
 import java.io.IOException;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Queue;
 import java.util.UUID;
@@ -42,7 +43,6 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
     private static final int MAX_WAIT_TO_TERMINATE_EXECUTOR = 30;
     private IotHubConnectionStatus state;
 
-    private int linkCredit = -1;
     /** The {@link Delivery} tag. */
     private static final String WEB_SOCKET_PATH = "/$iothub/websocket";
     private static final String WEB_SOCKET_SUB_PROTOCOL = "AMQPWSB10";
@@ -142,7 +142,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_006: [The constructor shall set its state to DISCONNECTED.]
         this.state = IotHubConnectionStatus.DISCONNECTED;
 
-        logger.LogInfo("AmqpsIotHubConnection object is created successfully using port %s in %s method ", useWebSockets ? AMQP_WEB_SOCKET_PORT : AMQP_PORT, logger.getMethodName());
+        logger.LogInfo("AmqpsIotHubConnection object is created successfully using port %s in %s method ", useWebSockets ? AMQP_WEB_SOCKET_PORT : AMQP_PORT, logger.getLazyMethodName());
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_12_001: [The constructor shall initialize the AmqpsSessionManager member variable with the given config.]
         this.amqpsSessionManager = new AmqpsSessionManager(this.deviceClientConfig, Executors.newScheduledThreadPool(2));
@@ -164,6 +164,44 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
         }
     }
 
+    /**
+     * Adds a device to this connection while it is open. The device is authenticated and its links are opened
+     * on the existing session, without disturbing the other devices of the connection.
+     *
+     * @param deviceClientConfig the device configuration to add.
+     * @throws TransportException if the device cannot be authenticated or its links cannot be opened.
+     * @throws IllegalStateException if the connection is not open.
+     */
+    public void openDeviceOperationSession(DeviceClientConfig deviceClientConfig) throws TransportException
+    {
+        // Codes_SRS_AMQPSIOTHUBCONNECTION_12_075: [The function shall throw IllegalArgumentException if the deviceClientConfig parameter is null.]
+        if (deviceClientConfig == null)
+        {
+            throw new IllegalArgumentException("deviceClientConfig cannot be null.");
+        }
+
+        // Codes_SRS_AMQPSIOTHUBCONNECTION_12_076: [The function shall throw IllegalStateException if the connection is not open.]
+        if (this.state != IotHubConnectionStatus.CONNECTED)
+        {
+            throw new IllegalStateException("A device can only be added to an open connection.");
+        }
+
+        // Codes_SRS_AMQPSIOTHUBCONNECTION_12_077: [The function shall call AmqpsSessionManager.openDeviceOperationSession with the given deviceClientConfig.]
+        this.amqpsSessionManager.openDeviceOperationSession(deviceClientConfig);
+    }
+
+    /**
+     * Removes a device from this connection and closes its links. The connection and the other devices stay open.
+     *
+     * @param deviceId the id of the device to remove.
+     * @return true if the device was part of this connection, false otherwise.
+     */
+    public boolean closeDeviceOperationSession(String deviceId)
+    {
+        // Codes_SRS_AMQPSIOTHUBCONNECTION_12_078: [The function shall return the result of AmqpsSessionManager.closeDeviceOperationSession with the given deviceId.]
+        return this.amqpsSessionManager.closeDeviceOperationSession(deviceId);
+    }
+
     /**
      * Opens the {@link AmqpsIotHubConnection}.
      * <p>
@@ -179,17 +217,20 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
      */
     public void open(Queue<DeviceClientConfig> deviceClientConfigs) throws TransportException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", logger.getLazyMethodName());
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_007: [If the AMQPS connection is already open, the function shall do nothing.]
         if(this.state == IotHubConnectionStatus.DISCONNECTED)
         {
-            if(deviceClientConfigs.size() > 1)
+            // the first config is the one this connection was created with; the queue is left intact so that
+            // the same set of devices can be opened again on reconnection
+            Iterator<DeviceClientConfig> configIterator = deviceClientConfigs.iterator();
+            if (configIterator.hasNext())
             {
-                deviceClientConfigs.remove();
-                while (!deviceClientConfigs.isEmpty())
+                configIterator.next();
+                while (configIterator.hasNext())
                 {
-                    this.addDeviceOperationSession(deviceClientConfigs.remove());
+                    this.addDeviceOperationSession(configIterator.next());
                 }
             }
 
@@ -236,7 +277,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
 
         this.listener.onConnectionEstablished(this.connectionId);
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", logger.getLazyMethodName());
     }
 
     /**
@@ -245,7 +286,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
      */
     private void openAsync() throws TransportException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", logger.getLazyMethodName());
 
         if (this.reactor == null)
         {
@@ -262,7 +303,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
         ReactorRunner reactorRunner = new ReactorRunner(iotHubReactor, this.listener, this.connectionId);
         executorService.submit(reactorRunner);
 
-        logger.LogInfo("Reactor is assigned to executor service, method name is %s ", logger.getMethodName());
+        logger.LogInfo("Reactor is assigned to executor service, method name is %s ", logger.getLazyMethodName());
     }
 
     /**
@@ -271,7 +312,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
      */
     public void authenticate() throws TransportException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", logger.getLazyMethodName());
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_12_020: [The function shall do nothing if the authentication is already open.]
         if (this.amqpsSessionManager.isAuthenticationOpened())
@@ -280,7 +321,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
             this.amqpsSessionManager.authenticate();
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", logger.getLazyMethodName());
     }
 
     /**
@@ -290,7 +331,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
      */
     public void openLinks() throws TransportException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", logger.getLazyMethodName());
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_12_022: [The function shall do nothing if the authentication is already open.]
         if (this.amqpsSessionManager.isAuthenticationOpened())
@@ -299,7 +340,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
             this.amqpsSessionManager.openDeviceOperationLinks();
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", logger.getLazyMethodName());
     }
 
     /**
@@ -313,7 +354,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
      */
     public void close(boolean isReconnecting) throws TransportException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", logger.getLazyMethodName());
 
         closeAsync();
 
@@ -330,14 +371,14 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
 
         this.executorServicesCleanup();
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", logger.getLazyMethodName());
     }
 
     private void executorServicesCleanup() throws TransportException
     {
         if (this.executorService != null)
         {
-            logger.LogInfo("Shutdown of executor service has started, method name is %s ", logger.getMethodName());
+            logger.LogInfo("Shutdown of executor service has started, method name is %s ", logger.getLazyMethodName());
             this.executorService.shutdown();
             try
             {
@@ -363,7 +404,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
                 this.executorService = null;
                 throw new TransportException("Waited too long for the connection to close.", e);
             }
-            logger.LogInfo("Shutdown of executor service completed, method name is %s ", logger.getMethodName());
+            logger.LogInfo("Shutdown of executor service completed, method name is %s ", logger.getLazyMethodName());
         }
     }
 
@@ -373,7 +414,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
      */
     private void closeAsync()
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", logger.getLazyMethodName());
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_012: [The function shall set the status of the AMQPS connection to DISCONNECTED.]
         this.state = IotHubConnectionStatus.DISCONNECTED;
@@ -392,9 +433,9 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
             this.reactor.stop();
         }
 
-        logger.LogInfo("Proton reactor has been stopped, method name is %s ", logger.getMethodName());
+        logger.LogInfo("Proton reactor has been stopped, method name is %s ", logger.getLazyMethodName());
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", logger.getLazyMethodName());
     }
 
     /**
@@ -407,13 +448,13 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
      */
     private synchronized Integer sendMessage(Message message, MessageType messageType, String deviceId) throws TransportException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", logger.getLazyMethodName());
 
         Integer deliveryHash = -1;
 
-        // Codes_SRS_AMQPSIOTHUBCONNECTION_15_015: [If the state of the connection is DISCONNECTED or there is not enough
-        // credit, the function shall return -1.]
-        if (this.state == IotHubConnectionStatus.DISCONNECTED || this.linkCredit <= 0)
+        // Codes_SRS_AMQPSIOTHUBCONNECTION_15_015: [If the state of the connection is DISCONNECTED, the function shall return -1.]
+        // link credit is tracked per sender link, which queues the message locally while it has none
+        if (this.state == IotHubConnectionStatus.DISCONNECTED)
         {
             deliveryHash = -1;
         }
@@ -434,7 +475,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
     @Override
     public void onReactorInit(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", logger.getLazyMethodName());
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_033: [The event handler shall set the current handler to handle the connection events.]
         if(this.useWebSockets)
@@ -446,7 +487,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
             event.getReactor().connectionToHost(this.chooseHostname(), AMQP_PORT, this);
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", logger.getLazyMethodName());
     }
 
     /**
@@ -457,7 +498,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
     @Override
     public void onReactorFinal(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", logger.getLazyMethodName());
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_12_011: [The function shall call countdown on close latch and open latch.]
         closeLatch.countDown();
@@ -466,7 +507,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
         // Codes_SRS_AMQPSIOTHUBCONNECTION_12_012: [The function shall set the reactor member variable to null.]
         this.reactor = null;
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", logger.getLazyMethodName());
     }
 
     /**
@@ -476,7 +517,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
     @Override
     public void onConnectionInit(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", logger.getLazyMethodName());
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_025: [The event handler shall get the Connection (Proton) object from the event handler and set the host name on the connection.]
         this.connection = event.getConnection();
@@ -495,7 +536,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
             logger.LogError(e);
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", logger.getLazyMethodName());
     }
 
     /**
@@ -505,7 +546,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
     @Override
     public void onConnectionBound(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", logger.getLazyMethodName());
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_030: [The event handler shall get the Transport (Proton) object from the event.]
         Transport transport = event.getConnection().getTransport();
@@ -531,7 +572,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
             }
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", logger.getLazyMethodName());
     }
 
     /**
@@ -541,12 +582,12 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
     @Override
     public void onConnectionUnbound(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", logger.getLazyMethodName());
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_12_010: [The function sets the state to closed.]
         this.state = IotHubConnectionStatus.DISCONNECTED;
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", logger.getLazyMethodName());
     }
 
     /**
@@ -556,7 +597,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
     @Override
     public void onDelivery(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", logger.getLazyMethodName());
 
         AmqpsMessage amqpsMessage = null;
 
@@ -588,22 +629,23 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
             //Sender specific section for dispositions it receives
             if (event.getType() == Event.Type.DELIVERY)
             {
-                logger.LogInfo("Reading the delivery event in Sender link, method name is %s ", logger.getMethodName());
+                logger.LogInfo("Reading the delivery event in Sender link, method name is %s ", logger.getLazyMethodName());
                 // Codes_SRS_AMQPSIOTHUBCONNECTION_15_038: [If this link is the Sender link and the event type is DELIVERY, the event handler shall get the Delivery (Proton) object from the event.]
                 Delivery d = event.getDelivery();
                 DeliveryState remoteState = d.getRemoteState();
 
-                logger.LogInfo("Is state of remote Delivery COMPLETE ? %s, method name is %s ", state, logger.getMethodName());
-                logger.LogInfo("Inform listener that a message has been sent to IoT Hub along with remote state, method name is %s ", logger.getMethodName());
+                logger.LogInfo("Is state of remote Delivery COMPLETE ? %s, method name is %s ", state, logger.getLazyMethodName());
+                logger.LogInfo("Inform listener that a message has been sent to IoT Hub along with remote state, method name is %s ", logger.getLazyMethodName());
 
                 if (!event.getLink().getSource().getAddress().equalsIgnoreCase(AmqpsDeviceAuthenticationCBS.RECEIVER_LINK_ENDPOINT_PATH))
                 {
-                    if (this.inProgressMessages.containsKey(d.hashCode()))
+                    int deliveryHash = AmqpsDeviceOperations.getDeliveryHash(d);
+                    if (this.inProgressMessages.containsKey(deliveryHash))
                     {
                         if (remoteState instanceof Accepted)
                         {
                             // Codes_SRS_AMQPSIOTHUBCONNECTION_34_064: [If the acknowledgement sent from the service is "Accepted", this function shall notify its listener that the message was successfully sent.]
-                            this.listener.onMessageSent(inProgressMessages.remove(d.hashCode()), null);
+                            this.listener.onMessageSent(inProgressMessages.remove(deliveryHash), null);
                         }
                         else if (remoteState instanceof Rejected)
                         {
@@ -627,7 +669,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
                                 transportException = new TransportException("IotHub rejected the message");
                             }
 
-                            this.listener.onMessageSent(inProgressMessages.remove(d.hashCode()), transportException);
+                            this.listener.onMessageSent(inProgressMessages.remove(deliveryHash), transportException);
 
                         }
                         else if (remoteState instanceof Modified || remoteState instanceof Released || remoteState instanceof Received)
@@ -636,7 +678,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
                             TransportException transportException = new TransportException("IotHub responded to message " +
                                     "with Modified, Received or Released; message needs to be re-delivered");
                             transportException.setRetryable(true);
-                            this.listener.onMessageSent(inProgressMessages.remove(d.hashCode()), transportException);
+                            this.listener.onMessageSent(inProgressMessages.remove(deliveryHash), transportException);
                         }
                     }
                     else
@@ -650,7 +692,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
             }
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", logger.getLazyMethodName());
     }
 
     /**
@@ -660,7 +702,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
     @Override
     public void onLinkInit(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", logger.getLazyMethodName());
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_12_016: [The function shall get the link from the event and call device operation objects with it.]
         Link link = event.getLink();
@@ -675,24 +717,25 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
             logger.LogError(this.savedException);
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", logger.getLazyMethodName());
 
     }
 
     /**
-     * Event handler for the link flow event. Handles sending a single message.
+     * Event handler for the link flow event. Sends the messages that were waiting for credit on the link.
      * @param event The Proton Event object.
      */
     @Override
     public void onLinkFlow(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", logger.getLazyMethodName());
 
-        // Codes_SRS_AMQPSIOTHUBCONNECTION_15_040: [The event handler shall save the remaining link credit.]
-        this.linkCredit = event.getLink().getCredit();
-        logger.LogDebug("The link credit value is %s, method name is %s", this.linkCredit, logger.getMethodName());
+        // Codes_SRS_AMQPSIOTHUBCONNECTION_15_040: [The event handler shall call AmqpsSessionManager.onLinkFlow with the link, which saves its credit and sends the messages waiting for it.]
+        Link link = event.getLink();
+        logger.LogDebug("The credit of link %s is %s, method name is %s", link.getName(), link.getCredit(), logger.getLazyMethodName());
+        this.amqpsSessionManager.onLinkFlow(link);
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", logger.getLazyMethodName());
     }
 
     /**
@@ -703,7 +746,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
     @Override
     public void onLinkRemoteOpen(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", logger.getLazyMethodName());
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_12_052: [The function shall call AmqpsSessionManager.onLinkRemoteOpen with the given link.]
         if (this.amqpsSessionManager.onLinkRemoteOpen(event))
@@ -714,7 +757,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
             openLatch.countDown();
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", logger.getLazyMethodName());
     }
 
     /**
@@ -726,8 +769,15 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
     @Override
     public void onLinkRemoteClose(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
-        
+        logger.LogDebug("Entered in method %s", logger.getLazyMethodName());
+
+        // Codes_SRS_AMQPSIOTHUBCONNECTION_12_079: [If the link was closed locally, the function shall do nothing, since the remote close only confirms the local one.]
+        if (event.getLink() != null && event.getLink().getLocalState() == EndpointState.CLOSED)
+        {
+            logger.LogDebug("Locally closed link %s confirmed by the service, method name is %s", event.getLink().getName(), logger.getLazyMethodName());
+            return;
+        }
+
         this.state = IotHubConnectionStatus.DISCONNECTED;
 
         //Codes_SRS_AMQPSIOTHUBCONNECTION_34_061 [If the provided event object's transport holds a remote error condition object, this function shall report the associated TransportException to this object's listeners.]
@@ -735,7 +785,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
 
         this.scheduleReconnection(this.savedException);
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", logger.getLazyMethodName());
     }
 
     /**
@@ -745,7 +795,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
     @Override
     public void onTransportError(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", logger.getLazyMethodName());
 
         this.state = IotHubConnectionStatus.DISCONNECTED;
 
@@ -754,7 +804,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
 
         this.scheduleReconnection(this.savedException);
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", logger.getLazyMethodName());
     }
 
     /**
@@ -766,7 +816,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
      */
     protected AmqpsConvertToProtonReturnValue convertToProton(com.microsoft.azure.sdk.iot.device.Message message) throws TransportException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", logger.getLazyMethodName());
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_12_056: [The function shall call AmqpsSessionManager.convertToProton with the given message.]
         return this.amqpsSessionManager.convertToProton(message);
@@ -782,7 +832,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
      */
     protected AmqpsConvertFromProtonReturnValue convertFromProton(AmqpsMessage amqpsMessage, DeviceClientConfig deviceClientConfig) throws TransportException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", logger.getLazyMethodName());
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_12_056: [*The function shall call AmqpsSessionManager.convertFromProton with the given message. ]
         return this.amqpsSessionManager.convertFromProton(amqpsMessage, deviceClientConfig);
@@ -856,9 +906,9 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
      */
     private void messageReceivedFromServer(AmqpsMessage amqpsMessage) throws TransportException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", logger.getLazyMethodName());
 
-        logger.LogInfo("All the listeners are informed that a message has been received, method name is %s ", logger.getMethodName());
+        logger.LogInfo("All the listeners are informed that a message has been received, method name is %s ", logger.getLazyMethodName());
 
         AmqpsConvertFromProtonReturnValue amqpsHandleMessageReturnValue = this.convertFromProton(amqpsMessage, amqpsMessage.getDeviceClientConfig());
 
@@ -895,7 +945,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
                         catch (NumberFormatException nfe)
                         {
                             this.savedException = new TransportException("Encountered message from service with invalid status code value");
-                            logger.LogInfo("status code received from service could not be parsed to integer, method name is %s ", logger.getMethodName());
+                            logger.LogInfo("status code received from service could not be parsed to integer, method name is %s ", logger.getLazyMethodName());
                         }
                     }
                 }
@@ -905,14 +955,14 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
             }
 
             // Should never happen; message type was not telemetry, twin, methods, or CBS
-            logger.LogError("No handler found for received message, method name is %s ", logger.getMethodName());
+            logger.LogError("No handler found for received message, method name is %s ", logger.getLazyMethodName());
             return;
         }
 
         // Codes_SRS_AMQPSTRANSPORT_12_008: [The function shall return if there is no message callback defined.]
         if (amqpsHandleMessageReturnValue.getMessageCallback() == null)
         {
-            logger.LogError("Callback is not defined therefore response to IoT Hub cannot be generated. All received messages will be removed from receive message queue, method name is %s ", logger.getMethodName());
+            logger.LogError("Callback is not defined therefore response to IoT Hub cannot be generated. All received messages will be removed from receive message queue, method name is %s ", logger.getLazyMethodName());
             throw new TransportException("callback is not defined");
         }
 
@@ -1020,7 +1070,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
                     amqpsMessage.acknowledge(AmqpsMessage.ACK_TYPE.COMPLETE);
                     break;
                 default:
-                    logger.LogError("Invalid IoT Hub message result (%s), method name is %s ", result.name(), logger.getMethodName());
+                    logger.LogError("Invalid IoT Hub message result (%s), method name is %s ", result.name(), logger.getLazyMethodName());
                     return false;
             }
 
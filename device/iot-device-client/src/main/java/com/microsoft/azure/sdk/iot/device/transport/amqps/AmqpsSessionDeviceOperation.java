@@ -4,7 +4,6 @@ import com.microsoft.azure.sdk.iot.device.*;
 import com.microsoft.azure.sdk.iot.device.exceptions.TransportException;
 import org.apache.qpid.proton.engine.*;
 
-import java.nio.BufferOverflowException;
 import java.util.*;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
@@ -22,6 +21,9 @@ public class AmqpsSessionDeviceOperation
 
     private long nextTag = 0;
 
+    // Encode buffer shared by every device session of the connection
+    private final AmqpsEncodeBuffer encodeBuffer;
+
     private Integer openLock = new Integer(1);
 
     private long tokenRenewalPeriodInMilliseconds = 4000; //4 seconds;
@@ -44,11 +46,12 @@ public class AmqpsSessionDeviceOperation
      *
      * @param deviceClientConfig the configuration of teh device.
      * @param amqpsDeviceAuthentication the authentication object associated with the device.
-     * @throws IllegalArgumentException if deviceClientConfig or amqpsDeviceAuthentication is null
+     * @param encodeBuffer the encode buffer of the connection.
+     * @throws IllegalArgumentException if deviceClientConfig, amqpsDeviceAuthentication or encodeBuffer is null
      */
-    public AmqpsSessionDeviceOperation(final DeviceClientConfig deviceClientConfig, AmqpsDeviceAuthentication amqpsDeviceAuthentication) throws IllegalArgumentException
+    public AmqpsSessionDeviceOperation(final DeviceClientConfig deviceClientConfig, AmqpsDeviceAuthentication amqpsDeviceAuthentication, AmqpsEncodeBuffer encodeBuffer) throws IllegalArgumentException
     {
-        // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_001: [The constructor shall throw IllegalArgumentException if the deviceClientConfig or the amqpsDeviceAuthentication parameter is null.]
+        // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_001: [The constructor shall throw IllegalArgumentException if the deviceClientConfig, the amqpsDeviceAuthentication or the encodeBuffer parameter is null.]
         if (deviceClientConfig == null)
         {
             throw new IllegalArgumentException("deviceClientConfig cannot be null.");
@@ -57,10 +60,15 @@ public class AmqpsSessionDeviceOperation
         {
             throw new IllegalArgumentException("amqpsDeviceAuthentication cannot be null.");
         }
+        if (encodeBuffer == null)
+        {
+            throw new IllegalArgumentException("encodeBuffer cannot be null.");
+        }
 
-        // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_002: [The constructor shall save the deviceClientConfig and amqpsDeviceAuthentication parameter value to a member variable.]
+        // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_002: [The constructor shall save the deviceClientConfig, amqpsDeviceAuthentication and encodeBuffer parameter value to a member variable.]
         this.deviceClientConfig = deviceClientConfig;
         this.amqpsDeviceAuthentication = amqpsDeviceAuthentication;
+        this.encodeBuffer = encodeBuffer;
 
         // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_003: [The constructor shall create AmqpsDeviceTelemetry, AmqpsDeviceMethods and AmqpsDeviceTwin and add them to the device operations list. ]
         this.amqpsDeviceOperationsList.add(new AmqpsDeviceTelemetry(this.deviceClientConfig));
@@ -113,7 +121,7 @@ public class AmqpsSessionDeviceOperation
      */
     public void authenticate() throws TransportException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", logger.getLazyMethodName());
 
         // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_006: [The function shall start the authentication if the authentication type is CBS.]
         if (this.deviceClientConfig.getAuthenticationType() == DeviceClientConfig.AuthType.SAS_TOKEN)
@@ -144,7 +152,7 @@ public class AmqpsSessionDeviceOperation
 
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", logger.getLazyMethodName());
     }
 
     /**
@@ -154,14 +162,14 @@ public class AmqpsSessionDeviceOperation
      */
     public void renewToken() throws TransportException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", logger.getLazyMethodName());
 
         if ((this.deviceClientConfig.getAuthenticationType() == DeviceClientConfig.AuthType.SAS_TOKEN) &&
                 (this.amqpsAuthenticatorState == AmqpsDeviceAuthenticationState.AUTHENTICATED))
         {
             if (this.deviceClientConfig.getSasTokenAuthentication().isRenewalNecessary())
             {
-                logger.LogDebug("Sas token cannot be renewed automatically, so amqp connection will be unauthorized soon, method: %s", logger.getMethodName());
+                logger.LogDebug("Sas token cannot be renewed automatically, so amqp connection will be unauthorized soon, method: %s", logger.getLazyMethodName());
             }
             else
             {
@@ -170,7 +178,18 @@ public class AmqpsSessionDeviceOperation
             }
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", logger.getLazyMethodName());
+    }
+
+    /**
+     * Getter for the id of the device this session operates for.
+     *
+     * @return the device id.
+     */
+    String getDeviceId()
+    {
+        // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_063: [The function shall return the deviceId of the device client config.]
+        return this.deviceClientConfig.getDeviceId();
     }
 
     /**
@@ -213,7 +232,7 @@ public class AmqpsSessionDeviceOperation
      */
     void openLinks(Session session) throws TransportException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", logger.getLazyMethodName());
 
         // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_042: [The function shall do nothing if the session parameter is null.]
         if (session != null)
@@ -231,7 +250,7 @@ public class AmqpsSessionDeviceOperation
             }
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", logger.getLazyMethodName());
     }
 
     /**
@@ -239,7 +258,7 @@ public class AmqpsSessionDeviceOperation
      */
     void closeLinks()
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", logger.getLazyMethodName());
 
         for (int i = 0; i < amqpsDeviceOperationsList.size(); i++)
         {
@@ -247,7 +266,7 @@ public class AmqpsSessionDeviceOperation
             amqpsDeviceOperationsList.get(i).closeLinks();
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", logger.getLazyMethodName());
     }
 
     /**
@@ -259,7 +278,7 @@ public class AmqpsSessionDeviceOperation
      */
     void initLink(Link link) throws TransportException, IllegalArgumentException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", logger.getLazyMethodName());
 
         // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_043: [The function shall do nothing if the link parameter is null.]
         if (link != null)
@@ -274,7 +293,7 @@ public class AmqpsSessionDeviceOperation
             }
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", logger.getLazyMethodName());
     }
 
     /**
@@ -297,29 +316,27 @@ public class AmqpsSessionDeviceOperation
             // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_013: [The function shall return -1 if the deviceId int he connection string is not equal to the deviceId in the config.]
             if (this.deviceClientConfig.getDeviceId().equals(deviceId))
             {
-                // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_014: [The function shall encode the message and copy the contents to the byte buffer.]
-                byte[] msgData = new byte[1024];
-                int length;
-
-                while (true)
+                // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_014: [The function shall encode the message into the encode buffer of the connection.]
+                // Proton copies the encoded bytes into the delivery on send, so the buffer can be reused as soon as the send returns
+                synchronized (this.encodeBuffer)
                 {
                     try
                     {
-                        length = message.encode(msgData, 0, msgData.length);
-                        break;
+                        int length = this.encodeBuffer.encode(message);
+
+                        // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_017: [The function shall set the delivery tag for the sender.]
+                        byte[] deliveryTag = String.valueOf(this.nextTag++).getBytes();
+
+                        // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_018: [The function shall call sendMessageAndGetDeliveryHash on all device operation objects.]
+                        // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_019: [The function shall return the delivery hash.]
+                        return this.sendMessageAndGetDeliveryHash(messageType, this.encodeBuffer.getEncodedBytes(), 0, length, deliveryTag);
                     }
-                    catch (BufferOverflowException e)
+                    finally
                     {
-                        // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_015: [The function shall doubles the buffer if encode throws BufferOverflowException.]
-                        msgData = new byte[msgData.length * 2];
+                        // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_015: [The function shall release the encode buffer once the message was sent.]
+                        this.encodeBuffer.release();
                     }
                 }
-                // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_017: [The function shall set the delivery tag for the sender.]
-                byte[] deliveryTag = String.valueOf(this.nextTag++).getBytes();
-
-                // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_018: [The function shall call sendMessageAndGetDeliveryHash on all device operation objects.]
-                // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_019: [The function shall return the delivery hash.]
-                return this.sendMessageAndGetDeliveryHash(messageType, msgData, 0, length, deliveryTag);
             }
             else
             {
@@ -450,6 +467,28 @@ public class AmqpsSessionDeviceOperation
         return false;
     }
 
+    /**
+     * Delegate the link flow to the managed device operations, so
+     * that the owner of the link can send the messages waiting for
+     * link credit.
+     *
+     * @param link the link whose credit changed.
+     *
+     * @return Boolean true if the link is owned by this device, false otherwise.
+     */
+    Boolean onLinkFlow(Link link)
+    {
+        // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_064: [The function shall call onLinkFlow on the device operations and return true if any of them owns the link, false otherwise.]
+        for (int i = 0; i < this.amqpsDeviceOperationsList.size(); i++)
+        {
+            if (this.amqpsDeviceOperationsList.get(i).onLinkFlow(link))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Convert from IoTHub message to Proton using operation 
      * specific converter. 
@@ -7,7 +7,7 @@ import com.microsoft.azure.sdk.iot.device.MessageType;
 import com.microsoft.azure.sdk.iot.device.ObjectLock;
 import com.microsoft.azure.sdk.iot.device.exceptions.TransportException;
 import org.apache.qpid.proton.engine.*;
-import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.*;
 
 
@@ -21,7 +21,10 @@ public class AmqpsSessionManager
     protected Session session = null;
 
     private AmqpsDeviceAuthentication amqpsDeviceAuthentication;
-    private ArrayList<AmqpsSessionDeviceOperation> amqpsDeviceSessionList = new ArrayList<>();
+    // sends on the connection are serialized, so every device session encodes into the same buffer
+    private final AmqpsEncodeBuffer encodeBuffer = new AmqpsEncodeBuffer();
+    // devices can be added and removed while the reactor and the send task walk this list
+    private List<AmqpsSessionDeviceOperation> amqpsDeviceSessionList = new CopyOnWriteArrayList<>();
 
     private long SEND_PERIOD_MILLISECONDS = 300;
     private ScheduledExecutorService taskSchedulerCBSSend;
@@ -95,10 +98,105 @@ public class AmqpsSessionManager
         }
 
         // Codes_SRS_AMQPSESSIONMANAGER_12_009: [The function shall create a new  AmqpsSessionDeviceOperation with the given deviceClietnConfig and add it to the session list.]
-        AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(deviceClientConfig, this.amqpsDeviceAuthentication);
+        AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(deviceClientConfig, this.amqpsDeviceAuthentication, this.encodeBuffer);
         this.amqpsDeviceSessionList.add(amqpsSessionDeviceOperation);
     }
 
+    /**
+     * Register the given device to the manager while the session is open, authenticate it and
+     * open its links. The sessions of the other devices are not touched.
+     *
+     * @param deviceClientConfig the device to register.
+     * @throws TransportException if the device cannot be authenticated or its links cannot be opened in time.
+     */
+    void openDeviceOperationSession(DeviceClientConfig deviceClientConfig) throws TransportException
+    {
+        logger.LogDebug("Entered in method %s", logger.getLazyMethodName());
+
+        // Codes_SRS_AMQPSESSIONMANAGER_12_044: [The function shall throw IllegalArgumentException if the deviceClientConfig parameter is null.]
+        if (deviceClientConfig == null)
+        {
+            throw new IllegalArgumentException("deviceClientConfig cannot be null.");
+        }
+
+        // Codes_SRS_AMQPSESSIONMANAGER_12_045: [The function shall throw IllegalStateException if the session or the authentication is not open.]
+        if ((this.session == null) || !this.isAuthenticationOpened())
+        {
+            throw new IllegalStateException("A device can only be opened on an open session.");
+        }
+
+        // Codes_SRS_AMQPSESSIONMANAGER_12_046: [The function shall create a new AmqpsSessionDeviceOperation with the given deviceClientConfig and add it to the session list.]
+        AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(deviceClientConfig, this.amqpsDeviceAuthentication, this.encodeBuffer);
+        this.amqpsDeviceSessionList.add(amqpsSessionDeviceOperation);
+
+        try
+        {
+            // Codes_SRS_AMQPSESSIONMANAGER_12_047: [The function shall authenticate the new device and throw TransportException if it is not authenticated.]
+            amqpsSessionDeviceOperation.authenticate();
+            if (amqpsSessionDeviceOperation.getAmqpsAuthenticatorState() != AmqpsDeviceAuthenticationState.AUTHENTICATED)
+            {
+                throw new TransportException("Timed out waiting to authenticate device " + deviceClientConfig.getDeviceId());
+            }
+
+            // Codes_SRS_AMQPSESSIONMANAGER_12_048: [The function shall open the links of the new device and wait until they are open, or throw TransportException if they are not open in time.]
+            amqpsSessionDeviceOperation.openLinks(this.session);
+            long deadline = System.currentTimeMillis() + MAX_WAIT_TO_AUTHENTICATE_MS;
+            synchronized (this.openLinksLock)
+            {
+                long remaining = MAX_WAIT_TO_AUTHENTICATE_MS;
+                while (!amqpsSessionDeviceOperation.operationLinksOpened() && (remaining > 0))
+                {
+                    this.openLinksLock.waitLock(remaining);
+                    remaining = deadline - System.currentTimeMillis();
+                }
+            }
+
+            if (!amqpsSessionDeviceOperation.operationLinksOpened())
+            {
+                throw new TransportException("Timed out waiting to open the links of device " + deviceClientConfig.getDeviceId());
+            }
+        }
+        catch (InterruptedException e)
+        {
+            // Codes_SRS_AMQPSESSIONMANAGER_12_049: [If the device cannot be opened, the function shall remove and close the new device session before throwing.]
+            this.amqpsDeviceSessionList.remove(amqpsSessionDeviceOperation);
+            amqpsSessionDeviceOperation.close();
+            throw new TransportException("Interrupted while opening the links of device " + deviceClientConfig.getDeviceId(), e);
+        }
+        catch (TransportException e)
+        {
+            this.amqpsDeviceSessionList.remove(amqpsSessionDeviceOperation);
+            amqpsSessionDeviceOperation.close();
+            throw e;
+        }
+
+        logger.LogDebug("Exited from method %s", logger.getLazyMethodName());
+    }
+
+    /**
+     * Remove the given device from the manager and close its links. The session and the links of the
+     * other devices stay open.
+     *
+     * @param deviceId the id of the device to remove.
+     * @return true if the device was registered, false otherwise.
+     */
+    boolean closeDeviceOperationSession(String deviceId)
+    {
+        for (AmqpsSessionDeviceOperation amqpsSessionDeviceOperation : this.amqpsDeviceSessionList)
+        {
+            // Codes_SRS_AMQPSESSIONMANAGER_12_050: [The function shall remove the device session with the given deviceId from the session list, close it and return true.]
+            if (amqpsSessionDeviceOperation.getDeviceId().equals(deviceId))
+            {
+                this.amqpsDeviceSessionList.remove(amqpsSessionDeviceOperation);
+                amqpsSessionDeviceOperation.close();
+                return true;
+            }
+        }
+
+        // Codes_SRS_AMQPSESSIONMANAGER_12_051: [The function shall return false if no device session has the given deviceId.]
+        return false;
+    }
+
     /**
      * Close the Proton objects and the schedulers.
      * After calling this function all resource freed.
@@ -106,17 +204,17 @@ public class AmqpsSessionManager
      */
     void closeNow()
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", logger.getLazyMethodName());
 
         // Codes_SRS_AMQPSESSIONMANAGER_12_043: [THe function shall shut down the scheduler.]
         this.shutDownScheduler();
 
         // Codes_SRS_AMQPSESSIONMANAGER_12_010: [The function shall call all device session to closeNow links.]
-        for (int i = 0; i < this.amqpsDeviceSessionList.size(); i++)
+        for (AmqpsSessionDeviceOperation amqpsSessionDeviceOperation : this.amqpsDeviceSessionList)
         {
-            if (this.amqpsDeviceSessionList.get(i) != null)
+            if (amqpsSessionDeviceOperation != null)
             {
-                this.amqpsDeviceSessionList.get(i).close();
+                amqpsSessionDeviceOperation.close();
             }
         }
 
@@ -130,7 +228,7 @@ public class AmqpsSessionManager
             this.session = null;
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", logger.getLazyMethodName());
     }
 
     /**
@@ -140,25 +238,25 @@ public class AmqpsSessionManager
      */
     public void authenticate() throws TransportException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", logger.getLazyMethodName());
 
         if (this.deviceClientConfig.getAuthenticationType() == DeviceClientConfig.AuthType.SAS_TOKEN)
         {
             // Codes_SRS_AMQPSESSIONMANAGER_12_014: [The function shall do nothing if the authentication is not open.]
             if (this.isAuthenticationOpened())
             {
-                for (int i = 0; i < this.amqpsDeviceSessionList.size(); i++)
+                for (AmqpsSessionDeviceOperation amqpsSessionDeviceOperation : this.amqpsDeviceSessionList)
                 {
-                    if (this.amqpsDeviceSessionList.get(i) != null)
+                    if (amqpsSessionDeviceOperation != null)
                     {
                         // Codes_SRS_AMQPSESSIONMANAGER_12_015: [The function shall call authenticate on all session list members.]
-                        this.amqpsDeviceSessionList.get(i).authenticate();
+                        amqpsSessionDeviceOperation.authenticate();
                     }
                 }
             }
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", logger.getLazyMethodName());
     }
 
     /**
@@ -169,17 +267,17 @@ public class AmqpsSessionManager
      */
     public void openDeviceOperationLinks() throws TransportException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", logger.getLazyMethodName());
 
         // Codes_SRS_AMQPSESSIONMANAGER_12_018: [The function shall do nothing if the session is not open.]
         if (this.session != null)
         {
-            for (int i = 0; i < this.amqpsDeviceSessionList.size(); i++)
+            for (AmqpsSessionDeviceOperation amqpsSessionDeviceOperation : this.amqpsDeviceSessionList)
             {
-                if (this.amqpsDeviceSessionList.get(i) != null)
+                if (amqpsSessionDeviceOperation != null)
                 {
                     // Codes_SRS_AMQPSESSIONMANAGER_12_019: [The function shall call openLinks on all session list members.]
-                    this.amqpsDeviceSessionList.get(i).openLinks(this.session);
+                    amqpsSessionDeviceOperation.openLinks(this.session);
 
                     synchronized (this.openLinksLock)
                     {
@@ -198,7 +296,7 @@ public class AmqpsSessionManager
             }
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", logger.getLazyMethodName());
     }
 
     /**
@@ -209,7 +307,7 @@ public class AmqpsSessionManager
      */
     void onConnectionInit(Connection connection) throws TransportException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", logger.getLazyMethodName());
 
         if (connection != null)
         {
@@ -226,10 +324,10 @@ public class AmqpsSessionManager
         {
             if (this.isAuthenticationOpened())
             {
-                for (int i = 0; i < this.amqpsDeviceSessionList.size(); i++)
+                for (AmqpsSessionDeviceOperation amqpsSessionDeviceOperation : this.amqpsDeviceSessionList)
                 {
                     // Codes_SRS_AMQPSESSIONMANAGER_12_042: [The function shall call openLinks on all device sessions if the session is not null and the authentication is open.]
-                    this.amqpsDeviceSessionList.get(i).openLinks(this.session);
+                    amqpsSessionDeviceOperation.openLinks(this.session);
                 }
             }
             else
@@ -239,7 +337,7 @@ public class AmqpsSessionManager
             }
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", logger.getLazyMethodName());
     }
 
     /**
@@ -250,7 +348,7 @@ public class AmqpsSessionManager
      */
     void onConnectionBound(Transport transport) throws TransportException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", logger.getLazyMethodName());
 
         if (this.session != null)
         {
@@ -258,7 +356,7 @@ public class AmqpsSessionManager
             this.amqpsDeviceAuthentication.setSslDomain(transport);
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", logger.getLazyMethodName());
     }
 
     /**
@@ -272,16 +370,16 @@ public class AmqpsSessionManager
      */
     void onLinkInit(Link link) throws TransportException, IllegalArgumentException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", logger.getLazyMethodName());
 
         if (this.session != null)
         {
             if (this.isAuthenticationOpened())
             {
-                for (int i = 0; i < this.amqpsDeviceSessionList.size(); i++)
+                for (AmqpsSessionDeviceOperation amqpsSessionDeviceOperation : this.amqpsDeviceSessionList)
                 {
                     // Codes_SRS_AMQPSESSIONMANAGER_12_027: [The function shall call authentication initLink on all session list member if the authentication is open and the session is not null.]
-                    this.amqpsDeviceSessionList.get(i).initLink(link);
+                    amqpsSessionDeviceOperation.initLink(link);
                 }
             }
             else
@@ -291,7 +389,7 @@ public class AmqpsSessionManager
             }
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", logger.getLazyMethodName());
     }
 
     /**
@@ -307,19 +405,19 @@ public class AmqpsSessionManager
      */
     boolean onLinkRemoteOpen(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", logger.getLazyMethodName());
 
         Boolean isLinkFound = false;
 
         String linkName = event.getLink().getName();
         if (this.isAuthenticationOpened())
         {
-            for (int i = 0; i < this.amqpsDeviceSessionList.size(); i++)
+            for (AmqpsSessionDeviceOperation amqpsSessionDeviceOperation : this.amqpsDeviceSessionList)
             {
-                isLinkFound = this.amqpsDeviceSessionList.get(i).isLinkFound(linkName);
+                isLinkFound = amqpsSessionDeviceOperation.isLinkFound(linkName);
                 if (isLinkFound == true)
                 {
-                    if (this.amqpsDeviceSessionList.get(i).operationLinksOpened())
+                    if (amqpsSessionDeviceOperation.operationLinksOpened())
                     {
                         synchronized (this.openLinksLock)
                         {
@@ -344,11 +442,36 @@ public class AmqpsSessionManager
             }
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", logger.getLazyMethodName());
 
         return isLinkFound;
     }
 
+    /**
+     * Delegate the link flow event to the authentication and the
+     * device operation objects, so that the owner of the link can
+     * send the messages waiting for link credit.
+     *
+     * @param link the link whose credit changed.
+     */
+    void onLinkFlow(Link link)
+    {
+        // Codes_SRS_AMQPSESSIONMANAGER_12_052: [The function shall call onLinkFlow on the authentication object and stop if it owns the link.]
+        if (this.amqpsDeviceAuthentication.onLinkFlow(link))
+        {
+            return;
+        }
+
+        // Codes_SRS_AMQPSESSIONMANAGER_12_053: [The function shall call onLinkFlow on the device sessions until one of them owns the link.]
+        for (AmqpsSessionDeviceOperation amqpsSessionDeviceOperation : this.amqpsDeviceSessionList)
+        {
+            if (amqpsSessionDeviceOperation.onLinkFlow(link))
+            {
+                break;
+            }
+        }
+    }
+
     /**
      * Delegate the send call to device operation objects. 
      * Loop through the device operation list and find the sender 
@@ -364,10 +487,10 @@ public class AmqpsSessionManager
 
         if (this.session != null)
         {
-            for (int i = 0; i < this.amqpsDeviceSessionList.size(); i++)
+            for (AmqpsSessionDeviceOperation amqpsSessionDeviceOperation : this.amqpsDeviceSessionList)
             {
                 // Codes_SRS_AMQPSESSIONMANAGER_12_032: [The function shall call sendMessage on all session list member and if there is a successful send return with the deliveryHash, otherwise return -1.]
-                deliveryHash = this.amqpsDeviceSessionList.get(i).sendMessage(message, messageType, deviceId);
+                deliveryHash = amqpsSessionDeviceOperation.sendMessage(message, messageType, deviceId);
                 if (deliveryHash != -1)
                 {
                     break;
@@ -397,10 +520,10 @@ public class AmqpsSessionManager
         {
             if (this.isAuthenticationOpened())
             {
-                for (int i = 0; i < this.amqpsDeviceSessionList.size(); i++)
+                for (AmqpsSessionDeviceOperation amqpsSessionDeviceOperation : this.amqpsDeviceSessionList)
                 {
                     // Codes_SRS_AMQPSESSIONMANAGER_12_035: [The function shall call device sessions getMessageFromReceiverLink if the authentication is open.]
-                    amqpsMessage = this.amqpsDeviceSessionList.get(i).getMessageFromReceiverLink(linkName);
+                    amqpsMessage = amqpsSessionDeviceOperation.getMessageFromReceiverLink(linkName);
                     if (amqpsMessage != null)
                     {
                         break;
@@ -430,10 +553,10 @@ public class AmqpsSessionManager
 
         if (this.isAuthenticationOpened())
         {
-            for (int i = 0; i < this.amqpsDeviceSessionList.size(); i++)
+            for (AmqpsSessionDeviceOperation amqpsSessionDeviceOperation : this.amqpsDeviceSessionList)
             {
                 // Codes_SRS_AMQPSESSIONMANAGER_12_038: [The function shall call all device session's isLinkFound, and if any of them true return true otherwise return false.]
-                isLinkFound = this.amqpsDeviceSessionList.get(i).isLinkFound(linkName);
+                isLinkFound = amqpsSessionDeviceOperation.isLinkFound(linkName);
                 if (isLinkFound == true)
                 {
                     break;
@@ -454,10 +577,10 @@ public class AmqpsSessionManager
         boolean areAllLinksOpen = true;
         if (this.isAuthenticationOpened())
         {
-            for (int i = 0; i < this.amqpsDeviceSessionList.size(); i++)
+            for (AmqpsSessionDeviceOperation amqpsSessionDeviceOperation : this.amqpsDeviceSessionList)
             {
                 // Codes_SRS_AMQPSESSIONMANAGER_34_044: [If this object's authentication is open, this function shall return if all saved sessions' links are open.]
-                areAllLinksOpen &= this.amqpsDeviceSessionList.get(i).operationLinksOpened();
+                areAllLinksOpen &= amqpsSessionDeviceOperation.operationLinksOpened();
             }
         }
         else
@@ -493,10 +616,10 @@ public class AmqpsSessionManager
     {
         AmqpsConvertToProtonReturnValue amqpsConvertToProtonReturnValue = null;
 
-        for (int i = 0; i < this.amqpsDeviceSessionList.size(); i++)
+        for (AmqpsSessionDeviceOperation amqpsSessionDeviceOperation : this.amqpsDeviceSessionList)
         {
             // Codes_SRS_AMQPSESSIONMANAGER_12_040: [The function shall call all device session's convertToProton, and if any of them not null return with the value.]
-            amqpsConvertToProtonReturnValue = this.amqpsDeviceSessionList.get(i).convertToProton(message);
+            amqpsConvertToProtonReturnValue = amqpsSessionDeviceOperation.convertToProton(message);
             if (amqpsConvertToProtonReturnValue != null)
             {
                 break;
@@ -524,10 +647,10 @@ public class AmqpsSessionManager
     {
         AmqpsConvertFromProtonReturnValue amqpsConvertFromProtonReturnValue = null;
 
-        for (int i = 0; i < this.amqpsDeviceSessionList.size(); i++)
+        for (AmqpsSessionDeviceOperation amqpsSessionDeviceOperation : this.amqpsDeviceSessionList)
         {
             // Codes_SRS_AMQPSESSIONMANAGER_12_041: [The function shall call all device session's convertFromProton, and if any of them not null return with the value.]
-            amqpsConvertFromProtonReturnValue = this.amqpsDeviceSessionList.get(i).convertFromProton(amqpsMessage, deviceClientConfig);
+            amqpsConvertFromProtonReturnValue = amqpsSessionDeviceOperation.convertFromProton(amqpsMessage, deviceClientConfig);
             if (amqpsConvertFromProtonReturnValue != null)
             {
                 break;
@@ -16,6 +16,7 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 
@@ -145,6 +146,46 @@ public class HttpsIotHubConnection implements IotHubTransportConnection
         }
     }
 
+    /**
+     * Sends a batch of event messages in a single request.
+     *
+     * @param batchMessage the batch body built from the provided messages.
+     * @param messages the messages contained in the batch, each of which is reported to the listener.
+     *
+     * @return the IotHubStatusCode from sending the batch, which applies to every message in it.
+     *
+     * @throws TransportException if the IoT Hub could not be reached.
+     */
+    public IotHubStatusCode sendBatchMessage(HttpsBatchMessage batchMessage, List<Message> messages) throws TransportException
+    {
+        synchronized (HTTPS_CONNECTION_LOCK)
+        {
+            IotHubEventUri iotHubEventUri = new IotHubEventUri(getHostName(), this.config.getDeviceId(), this.config.getModuleId());
+            URL eventUrl = this.buildUrlFromString(HTTPS_HEAD_TAG + iotHubEventUri.toString());
+
+            HttpsRequest request = new HttpsRequest(eventUrl, HttpsMethod.POST, batchMessage.getBody(), this.config.getProductInfo().getUserAgentString());
+            request.setHeaderField(HTTPS_PROPERTY_IOTHUB_TO_TAG, iotHubEventUri.getPath())
+                    .setHeaderField(HTTPS_PROPERTY_CONTENT_TYPE_TAG, batchMessage.getContentType());
+
+            HttpsResponse response = this.sendRequest(request);
+
+            IotHubStatusCode status = IotHubStatusCode.getIotHubStatusCode(response.getStatus());
+            for (Message message : messages)
+            {
+                if (status == IotHubStatusCode.OK || status == IotHubStatusCode.OK_EMPTY)
+                {
+                    this.listener.onMessageSent(message, null);
+                }
+                else
+                {
+                    this.listener.onMessageSent(message, IotHubStatusCode.getConnectionStatusException(status, ""));
+                }
+            }
+
+            return status;
+        }
+    }
+
     /**
      * Sends an generic https message.
      *
@@ -4,8 +4,10 @@
 package com.microsoft.azure.sdk.iot.device.transport.https;
 
 import com.microsoft.azure.sdk.iot.device.Message;
+import com.microsoft.azure.sdk.iot.device.MessageBodyAccessor;
 import com.microsoft.azure.sdk.iot.device.MessageProperty;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -79,8 +81,10 @@ public final class HttpsSingleMessage implements HttpsMessage
     {
         // Codes_SRS_HTTPSSINGLEMESSAGE_11_001: [The parsed HttpsSingleMessage shall have a copy of the original message body as its body.]
         // Codes_SRS_HTTPSSINGLEMESSAGE_21_016: [The parsed HttpsSingleMessage shall have a copy of the original message body as its body.]
-        byte[] msgBody = message.getBytes();
-        httpsMsg.body = Arrays.copyOf(msgBody, msgBody.length);
+        // one copy straight from the message's own array, getBytes() would add a second one
+        ByteBuffer msgBody = MessageBodyAccessor.getBodyBuffer(message);
+        httpsMsg.body = new byte[msgBody.remaining()];
+        msgBody.get(httpsMsg.body);
 
         // Codes_SRS_HTTPSSINGLEMESSAGE_11_003: [The parsed HttpsSingleMessage shall add the prefix 'iothub-app-' to each of the message properties.]
         // Codes_SRS_HTTPSSINGLEMESSAGE_21_018: [The parsed HttpsSingleMessage shall add the prefix 'iothub-app-' to each of the message properties.]
@@ -5,6 +5,7 @@ package com.microsoft.azure.sdk.iot.device.transport.mqtt;
 
 import com.microsoft.azure.sdk.iot.device.DeviceTwin.DeviceOperations;
 import com.microsoft.azure.sdk.iot.device.Message;
+import com.microsoft.azure.sdk.iot.device.MessageBodyAccessor;
 import com.microsoft.azure.sdk.iot.device.MessageType;
 import com.microsoft.azure.sdk.iot.device.exceptions.TransportException;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubListener;
@@ -20,8 +21,12 @@ import org.eclipse.paho.client.mqttv3.MqttMessage;
 
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
@@ -47,8 +52,6 @@ abstract public class Mqtt implements MqttCallback
     private final static String MESSAGE_SYSTEM_PROPERTY_IDENTIFIER_ENCODED = "%24";
     private final static char MESSAGE_SYSTEM_PROPERTY_IDENTIFIER_DECODED = '$';
     final static char MESSAGE_PROPERTY_KEY_VALUE_SEPARATOR = '=';
-    private final static int PROPERTY_KEY_INDEX = 0;
-    private final static int PROPERTY_VALUE_INDEX = 1;
 
     /* The system property keys expected in a message */
     //This may be common with amqp as well
@@ -193,53 +196,113 @@ abstract public class Mqtt implements MqttCallback
                     throw transportException;
                 }
 
-                if (message == null || publishTopic == null || publishTopic.length() == 0 || message.getBytes() == null)
+                if (message == null || publishTopic == null || publishTopic.length() == 0 || MessageBodyAccessor.getBodyBuffer(message) == null)
                 {
                     //Codes_SRS_Mqtt_25_013: [If the either publishTopic is null or empty or if payload is null, the function shall throw an IllegalArgumentException.]
                     throw new IllegalArgumentException("Cannot publish on null or empty publish topic");
                 }
 
-                byte[] payload = message.getBytes();
-
-                while (this.mqttConnection.getMqttAsyncClient().getPendingDeliveryTokens().length >= MqttConnection.MAX_IN_FLIGHT_COUNT)
+                Queue<Pair<String, Message>> pendingPublishes = this.mqttConnection.getPendingPublishes();
+                synchronized (pendingPublishes)
                 {
-                    //Codes_SRS_Mqtt_25_048: [publish shall check for pending publish tokens by calling getPendingDeliveryTokens. And if there are pending tokens publish shall sleep until the number of pending tokens are less than 10 as per paho limitations]
-                    Thread.sleep(10);
-
-                    if (this.mqttConnection.getMqttAsyncClient() == null)
+                    //Codes_SRS_Mqtt_25_048: [If the in-flight window is full, or if earlier publishes are still
+                    // waiting for a slot, publish shall queue the message and return without blocking. Queued
+                    // messages are published as PUBACKs free up slots.]
+                    if (!pendingPublishes.isEmpty() || this.mqttConnection.getInFlightCount() >= this.mqttConnection.getMaxInFlightCount())
                     {
-                        TransportException transportException = new TransportException("Connection was lost while waiting for mqtt deliveries to finish");
-                        transportException.setRetryable(true);
-                        throw transportException;
+                        pendingPublishes.add(new MutablePair<>(publishTopic, message));
+                        return;
                     }
 
-                    if (!this.mqttConnection.getMqttAsyncClient().isConnected())
+                    try
                     {
-                        //Codes_SRS_Mqtt_25_012: [If the MQTT connection is closed, the function shall throw a ProtocolException.]
-                        TransportException transportException = new TransportException("Cannot publish when mqtt client is holding 10 tokens and is disconnected");
-                        transportException.setRetryable(true);
-                        throw transportException;
+                        //Codes_SRS_Mqtt_25_014: [The function shall publish message payload on the publishTopic specified to the IoT Hub given in the configuration.]
+                        this.publishToPaho(publishTopic, message);
                     }
-                }
-
-                MqttMessage mqttMessage = (payload.length == 0) ? new MqttMessage() : new MqttMessage(payload);
-
-                mqttMessage.setQos(MqttConnection.QOS);
+                    catch (MqttException e)
+                    {
+                        if (e.getReasonCode() != MqttException.REASON_CODE_MAX_INFLIGHT)
+                        {
+                            throw e;
+                        }
 
-                //Codes_SRS_Mqtt_25_014: [The function shall publish message payload on the publishTopic specified to the IoT Hub given in the configuration.]
-                IMqttDeliveryToken publishToken = this.mqttConnection.getMqttAsyncClient().publish(publishTopic, mqttMessage);
-                unacknowledgedSentMessages.put(publishToken.getMessageId(), message);
+                        // paho tracks its own window and it filled up first, the next PUBACK publishes this message
+                        pendingPublishes.add(new MutablePair<>(publishTopic, message));
+                    }
+                }
             }
             catch (MqttException e)
             {
                 //Codes_SRS_Mqtt_25_047: [If the Mqtt Client Async throws MqttException, the function shall throw a ProtocolException with the message.]
                 throw PahoExceptionTranslator.convertToMqttException(e, "Unable to publish message on topic : " + publishTopic);
             }
-            catch (InterruptedException e)
+        }
+    }
+
+    /**
+     * Publishes queued messages while the in-flight window has free slots. A queued message that fails to publish is
+     * reported to the listener as failed so that the transport can retry it. The listener is called after the queue is
+     * released, so it never runs while publishers are locked out.
+     */
+    private void publishPendingMessages()
+    {
+        List<Pair<Message, TransportException>> failedPublishes = new ArrayList<>();
+        Queue<Pair<String, Message>> pendingPublishes = this.mqttConnection.getPendingPublishes();
+        synchronized (pendingPublishes)
+        {
+            while (!pendingPublishes.isEmpty()
+                    && this.mqttConnection.getMqttAsyncClient() != null
+                    && this.mqttConnection.getInFlightCount() < this.mqttConnection.getMaxInFlightCount())
             {
-                throw new TransportException("Interrupted, Unable to publish message on topic : " + publishTopic, e);
+                Pair<String, Message> pendingPublish = pendingPublishes.peek();
+                try
+                {
+                    this.publishToPaho(pendingPublish.getKey(), pendingPublish.getValue());
+                }
+                catch (MqttException e)
+                {
+                    if (e.getReasonCode() == MqttException.REASON_CODE_MAX_INFLIGHT)
+                    {
+                        // the window filled up again, the next PUBACK resumes
+                        break;
+                    }
+
+                    failedPublishes.add(new MutablePair<Message, TransportException>(pendingPublish.getValue(),
+                            PahoExceptionTranslator.convertToMqttException(e, "Unable to publish message on topic : " + pendingPublish.getKey())));
+                }
+
+                pendingPublishes.poll();
             }
         }
+
+        if (this.listener != null)
+        {
+            for (Pair<Message, TransportException> failedPublish : failedPublishes)
+            {
+                this.listener.onMessageSent(failedPublish.getKey(), failedPublish.getValue());
+            }
+        }
+    }
+
+    /**
+     * Copies the provided read-only body into the array paho takes
+     */
+    private static byte[] toPayload(ByteBuffer body)
+    {
+        byte[] payload = new byte[body.remaining()];
+        body.duplicate().get(payload);
+        return payload;
+    }
+
+    private void publishToPaho(String publishTopic, Message message) throws MqttException
+    {
+        ByteBuffer body = MessageBodyAccessor.getBodyBuffer(message);
+        MqttMessage mqttMessage = (body.remaining() == 0) ? new MqttMessage() : new MqttMessage(toPayload(body));
+
+        mqttMessage.setQos(MqttConnection.QOS);
+
+        IMqttDeliveryToken publishToken = this.mqttConnection.getMqttAsyncClient().publish(publishTopic, mqttMessage);
+        unacknowledgedSentMessages.put(publishToken.getMessageId(), message);
     }
 
     /**
@@ -413,6 +476,7 @@ abstract public class Mqtt implements MqttCallback
             {
                 Message deliveredMessage = unacknowledgedSentMessages.remove(iMqttDeliveryToken.getMessageId());
 
+                boolean isTrackedByTransport = true;
                 if (deliveredMessage instanceof IotHubTransportMessage)
                 {
                     DeviceOperations deviceOperation = ((IotHubTransportMessage) deliveredMessage).getDeviceOperationType();
@@ -425,14 +489,20 @@ abstract public class Mqtt implements MqttCallback
                         // or DEVICE_OPERATION_TWIN_UNSUBSCRIBE_DESIRED_PROPERTIES_REQUEST, this function shall not notify the saved
                         // listener that the message was sent.]
                         //no need to alert the IotHubTransport layer about these messages as they are not tracked in the inProgressQueue
-                        return;
+                        isTrackedByTransport = false;
                     }
                 }
 
-                //Codes_SRS_Mqtt_34_042: [If this object has a saved listener, that listener shall be notified of the successfully delivered message.]
-                this.listener.onMessageSent(deliveredMessage, null);
+                if (isTrackedByTransport)
+                {
+                    //Codes_SRS_Mqtt_34_042: [If this object has a saved listener, that listener shall be notified of the successfully delivered message.]
+                    this.listener.onMessageSent(deliveredMessage, null);
+                }
             }
         }
+
+        // the PUBACK freed a slot of the in-flight window
+        this.publishPendingMessages();
     }
 
     public Pair<String, byte[]> peekMessage()
@@ -473,7 +543,7 @@ abstract public class Mqtt implements MqttCallback
             assignPropertiesToMessage(message, propertiesString);
 
             String routeString = topic.substring(0, propertiesStringStartingIndex);
-            String[] routeComponents = routeString.split("/");
+            String[] routeComponents = TopicParser.splitTopic(routeString);
 
             if (routeComponents.length > 2 && routeComponents[2].equals(MODULES_PATH_STRING))
             {
@@ -502,13 +572,33 @@ abstract public class Mqtt implements MqttCallback
     {
         //Codes_SRS_Mqtt_34_054: [A message may have 0 to many custom properties]
         //expected format is <key>=<value><MESSAGE_PROPERTY_SEPARATOR><key>=<value><MESSAGE_PROPERTY_SEPARATOR>...
-        for (String propertyString : propertiesString.split(String.valueOf(MESSAGE_PROPERTY_SEPARATOR)))
+        //the properties are walked with indexOf instead of split, which saves the regex and array work on every message
+        int propertiesEnd = propertiesString.length();
+        while (propertiesEnd > 0 && propertiesString.charAt(propertiesEnd - 1) == MESSAGE_PROPERTY_SEPARATOR)
         {
-            if (propertyString.contains("="))
+            // like split, ignore trailing separators
+            propertiesEnd--;
+        }
+
+        int propertyStart = 0;
+        while (propertyStart < propertiesEnd)
+        {
+            int propertyEnd = propertiesString.indexOf(MESSAGE_PROPERTY_SEPARATOR, propertyStart);
+            if (propertyEnd == -1 || propertyEnd > propertiesEnd)
+            {
+                propertyEnd = propertiesEnd;
+            }
+
+            String propertyString = propertiesString.substring(propertyStart, propertyEnd);
+            propertyStart = propertyEnd + 1;
+
+            int keyValueSeparatorIndex = propertyString.indexOf(MESSAGE_PROPERTY_KEY_VALUE_SEPARATOR);
+            if (keyValueSeparatorIndex != -1)
             {
                 //Expected format is <key>=<value> where both key and value may be encoded
-                String key = propertyString.split("=")[PROPERTY_KEY_INDEX];
-                String value = propertyString.split("=")[PROPERTY_VALUE_INDEX];
+                int valueEnd = propertyString.indexOf(MESSAGE_PROPERTY_KEY_VALUE_SEPARATOR, keyValueSeparatorIndex + 1);
+                String key = propertyString.substring(0, keyValueSeparatorIndex);
+                String value = propertyString.substring(keyValueSeparatorIndex + 1, valueEnd == -1 ? propertyString.length() : valueEnd);
                 try
                 {
                     //Codes_SRS_Mqtt_34_053: [A property's key and value may include unusual characters such as &, %, $]
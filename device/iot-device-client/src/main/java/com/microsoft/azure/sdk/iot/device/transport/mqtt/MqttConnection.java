@@ -7,6 +7,7 @@ package com.microsoft.azure.sdk.iot.device.transport.mqtt;
 
 import com.microsoft.azure.sdk.iot.device.exceptions.TransportException;
 import com.microsoft.azure.sdk.iot.device.transport.mqtt.exceptions.PahoExceptionTranslator;
+import com.microsoft.azure.sdk.iot.device.Message;
 import org.apache.commons.lang3.tuple.Pair;
 import org.eclipse.paho.client.mqttv3.*;
 import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
@@ -20,6 +21,7 @@ public class MqttConnection
     private MqttAsyncClient mqttAsyncClient = null;
     private MqttConnectOptions connectionOptions = null;
     private ConcurrentLinkedQueue<Pair<String, byte[]>> allReceivedMessages;
+    private ConcurrentLinkedQueue<Pair<String, Message>> pendingPublishes;
     private Object mqttLock;
     private MqttCallback mqttCallback;
 
@@ -30,8 +32,9 @@ public class MqttConnection
     static final int QOS = 1;
     static final int MAX_SUBSCRIBE_ACK_WAIT_TIME = 15 * 1000;
 
-    // paho mqtt only supports 10 messages in flight at the same time
+    // default paho in-flight window, used until setMaxInFlightCount is called
     static final int MAX_IN_FLIGHT_COUNT = 10;
+    private int maxInFlightCount = MAX_IN_FLIGHT_COUNT;
 
     /**
      * Constructor to create MqttAsync Client with Paho
@@ -75,9 +78,53 @@ public class MqttConnection
 
         //Codes_SRS_MQTTCONNECTION_25_003: [The constructor shall create lock, queue for this MqttConnection.]
         this.allReceivedMessages = new ConcurrentLinkedQueue<>();
+        this.pendingPublishes = new ConcurrentLinkedQueue<>();
         this.mqttLock = new Object();
     }
 
+    /**
+     * Setter for the maximum number of publishes that may be awaiting a PUBACK at the same time. Must be set before
+     * connecting.
+     * @param maxInFlightCount the size of the in-flight window
+     */
+    void setMaxInFlightCount(int maxInFlightCount)
+    {
+        this.maxInFlightCount = maxInFlightCount;
+        this.connectionOptions.setMaxInflight(maxInFlightCount);
+    }
+
+    /**
+     * Getter for the size of the in-flight window
+     * @return the maximum number of publishes that may be awaiting a PUBACK at the same time
+     */
+    int getMaxInFlightCount()
+    {
+        return this.maxInFlightCount;
+    }
+
+    /**
+     * Getter for the number of publishes currently awaiting a PUBACK
+     * @return the occupancy of the in-flight window
+     */
+    int getInFlightCount()
+    {
+        if (this.mqttAsyncClient == null)
+        {
+            return 0;
+        }
+
+        return this.mqttAsyncClient.getPendingDeliveryTokens().length;
+    }
+
+    /**
+     * Getter for the publishes waiting for a free slot in the in-flight window, as pairs of topic and message
+     * @return Queue for the pending publishes
+     */
+    ConcurrentLinkedQueue<Pair<String, Message>> getPendingPublishes()
+    {
+        return this.pendingPublishes;
+    }
+
     /**
      * Generates the connection options for the mqtt broker connection.
      *
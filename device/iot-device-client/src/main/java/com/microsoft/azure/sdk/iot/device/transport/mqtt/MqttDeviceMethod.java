@@ -61,7 +61,7 @@ public class MqttDeviceMethod extends Mqtt
 
         if (!requestMap.isEmpty())
         {
-            logger.LogInfo("Pending %d responses to be sent to IotHub yet unsubscribed %s", requestMap.size(), logger.getMethodName());
+            logger.LogInfo("Pending %d responses to be sent to IotHub yet unsubscribed %s", requestMap.size(), logger.getLazyMethodName());
         }
     }
 
@@ -14,7 +14,6 @@ import org.apache.commons.lang3.tuple.Pair;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.regex.Pattern;
 
 public class MqttDeviceTwin extends Mqtt
 {
@@ -75,7 +74,7 @@ public class MqttDeviceTwin extends Mqtt
 
         if (!requestMap.isEmpty())
         {
-            logger.LogInfo("Pending %d responses from IotHub yet unsubscribed %s", requestMap.size(), logger.getMethodName());
+            logger.LogInfo("Pending %d responses from IotHub yet unsubscribed %s", requestMap.size(), logger.getLazyMethodName());
         }
     }
 
@@ -298,7 +297,7 @@ public class MqttDeviceTwin extends Mqtt
                         if (topic.length() > RES.length() && topic.startsWith(RES))
                         {
                             // Tokenize on backslash
-                            String[] topicTokens = topic.split(Pattern.quote("/"));
+                            String[] topicTokens = TopicParser.splitTopic(topic);
                             if (data != null && data.length > 0)
                             {
                                 //Codes_SRS_MQTTDEVICETWIN_25_044: [If the topic is of type response then this method shall set data and operation type as DEVICE_OPERATION_TWIN_GET_RESPONSE if data is not null]
@@ -375,7 +374,7 @@ public class MqttDeviceTwin extends Mqtt
 
                                 // Case for $iothub/twin/PATCH/properties/desired/?$version={new version}
                                 // Tokenize on backslash
-                                String[] topicTokens = topic.split(Pattern.quote("/"));
+                                String[] topicTokens = TopicParser.splitTopic(topic);
                                 if (topicTokens.length > PATCH_VERSION_TOKEN)
                                 {
                                     if (message != null)
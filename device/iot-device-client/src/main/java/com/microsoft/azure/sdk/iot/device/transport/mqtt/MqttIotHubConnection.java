@@ -6,10 +6,13 @@ package com.microsoft.azure.sdk.iot.device.transport.mqtt;
 import com.microsoft.azure.sdk.iot.device.*;
 import com.microsoft.azure.sdk.iot.device.exceptions.TransportException;
 import com.microsoft.azure.sdk.iot.device.transport.*;
+import org.apache.commons.lang3.tuple.Pair;
 
 import javax.net.ssl.SSLContext;
 import java.io.IOException;
 import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.UUID;
@@ -170,6 +173,8 @@ public class MqttIotHubConnection implements IotHubTransportConnection, MqttMess
                             clientId, this.iotHubUserName, this.iotHubUserPassword, sslContext);
                 }
 
+                mqttConnection.setMaxInFlightCount(this.config.getMqttMaxInFlightCount());
+
                 //Codes_SRS_MQTTIOTHUBCONNECTION_34_030: [This function shall instantiate this object's MqttMessaging object with this object as the listener.]
                 this.deviceMessaging = new MqttMessaging(mqttConnection, this.config.getDeviceId(), this.listener, this, this.connectionId, this.config.getModuleId(), this.config.getGatewayHostname() != null);
                 this.mqttConnection.setMqttCallback(this.deviceMessaging);
@@ -245,6 +250,45 @@ public class MqttIotHubConnection implements IotHubTransportConnection, MqttMess
             this.state = IotHubConnectionStatus.DISCONNECTED;
             throw e;
         }
+        finally
+        {
+            //Codes_SRS_MQTTIOTHUBCONNECTION_12_001: [The function shall report every publish still waiting for a slot of the in-flight window to the listener as failed with a retryable exception.]
+            this.failPendingPublishes();
+        }
+    }
+
+    /**
+     * The queue of publishes waiting for the in-flight window belongs to the MqttConnection being closed, and the next
+     * open creates a new one. The queued messages are reported as failed so that the transport sends them again instead
+     * of them being dropped with the old connection.
+     */
+    private void failPendingPublishes()
+    {
+        if (this.mqttConnection == null)
+        {
+            return;
+        }
+
+        List<Message> failedMessages = new ArrayList<>();
+        Queue<Pair<String, Message>> pendingPublishes = this.mqttConnection.getPendingPublishes();
+        synchronized (pendingPublishes)
+        {
+            Pair<String, Message> pendingPublish;
+            while ((pendingPublish = pendingPublishes.poll()) != null)
+            {
+                failedMessages.add(pendingPublish.getValue());
+            }
+        }
+
+        if (this.listener != null)
+        {
+            for (Message failedMessage : failedMessages)
+            {
+                TransportException transportException = new TransportException("The MQTT connection was closed before the message was published");
+                transportException.setRetryable(true);
+                this.listener.onMessageSent(failedMessage, transportException);
+            }
+        }
     }
 
     /**
@@ -262,11 +306,11 @@ public class MqttIotHubConnection implements IotHubTransportConnection, MqttMess
         {
             // Codes_SRS_MQTTIOTHUBCONNECTION_15_010: [If the message is null or empty,
             // the function shall return status code BAD_FORMAT.]
-            if (message == null || message.getBytes() == null ||
+            if (message == null || MessageBodyAccessor.getBodyBuffer(message) == null ||
                     (
                             (message.getMessageType() != MessageType.DEVICE_TWIN
                                     && message.getMessageType() != MessageType.DEVICE_METHODS)
-                                    && message.getBytes().length == 0))
+                                    && MessageBodyAccessor.getBodyBuffer(message).remaining() == 0))
             {
                 return IotHubStatusCode.BAD_FORMAT;
             }
@@ -367,11 +411,11 @@ public class MqttIotHubConnection implements IotHubTransportConnection, MqttMess
         {
             // Codes_SRS_MQTTIOTHUBCONNECTION_15_010: [If the message is null or empty,
             // the function shall return status code BAD_FORMAT.]
-            if (message == null || message.getBytes() == null ||
+            if (message == null || MessageBodyAccessor.getBodyBuffer(message) == null ||
                     (
                             (message.getMessageType() != DEVICE_TWIN
                                     && message.getMessageType() != DEVICE_METHODS)
-                                    && message.getBytes().length == 0))
+                                    && MessageBodyAccessor.getBodyBuffer(message).remaining() == 0))
             {
                 return IotHubStatusCode.BAD_FORMAT;
             }
@@ -464,6 +508,30 @@ public class MqttIotHubConnection implements IotHubTransportConnection, MqttMess
         return ackSent;
     }
 
+    /**
+     * Getter for the occupancy of the MQTT in-flight window
+     * @return the number of publishes awaiting a PUBACK, or 0 if the connection is not open
+     */
+    public int getInFlightMessageCount()
+    {
+        synchronized (this.MQTT_CONNECTION_LOCK)
+        {
+            return this.mqttConnection == null ? 0 : this.mqttConnection.getInFlightCount();
+        }
+    }
+
+    /**
+     * Getter for the number of publishes queued by the client until a slot of the in-flight window frees up
+     * @return the number of queued publishes, or 0 if the connection is not open
+     */
+    public int getQueuedPublishCount()
+    {
+        synchronized (this.MQTT_CONNECTION_LOCK)
+        {
+            return this.mqttConnection == null ? 0 : this.mqttConnection.getPendingPublishes().size();
+        }
+    }
+
     @Override
     public String getConnectionId()
     {
@@ -4,6 +4,7 @@
 package com.microsoft.azure.sdk.iot.device.transport.mqtt;
 
 import com.microsoft.azure.sdk.iot.device.Message;
+import com.microsoft.azure.sdk.iot.device.MessageBodyAccessor;
 import com.microsoft.azure.sdk.iot.device.MessageProperty;
 import com.microsoft.azure.sdk.iot.device.exceptions.TransportException;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubListener;
@@ -11,6 +12,9 @@ import com.microsoft.azure.sdk.iot.device.transport.IotHubListener;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class MqttMessaging extends Mqtt
 {
@@ -20,6 +24,14 @@ public class MqttMessaging extends Mqtt
     private String publishTopic;
     private boolean isEdgeHub;
 
+    // room for the system properties of a typical message, so that the topic builder does not have to grow
+    private static final int PUBLISH_TOPIC_PROPERTIES_CAPACITY = 256;
+
+    // the encoded "key=value" fragments of the properties that rarely change between the messages of a client, such
+    // as its connection ids, output names and content type
+    private static final int MAX_CACHED_FRAGMENTS = 32;
+    private final Map<String, Map<String, String>> propertyFragmentCache = new HashMap<>();
+
     public MqttMessaging(MqttConnection mqttConnection, String deviceId, IotHubListener listener, MqttMessageListener messageListener, String connectionId, String moduleId, boolean isEdgeHub) throws TransportException
     {
         //Codes_SRS_MqttMessaging_25_002: [The constructor shall use the configuration to instantiate super class and passing the parameters.]
@@ -48,6 +60,11 @@ public class MqttMessaging extends Mqtt
 
         this.moduleId = moduleId;
         this.isEdgeHub = isEdgeHub;
+
+        for (String propertyKey : new String[] {OUTPUT_NAME, CONNECTION_DEVICE_ID, CONNECTION_MODULE_ID, CONTENT_ENCODING, CONTENT_TYPE})
+        {
+            this.propertyFragmentCache.put(propertyKey, new ConcurrentHashMap<String, String>());
+        }
     }
 
     public void start() throws TransportException
@@ -81,13 +98,13 @@ public class MqttMessaging extends Mqtt
      */
     public void send(Message message) throws TransportException
     {
-        if (message == null || message.getBytes() == null)
+        if (message == null || MessageBodyAccessor.getBodyBuffer(message) == null)
         {
             //Codes_SRS_MqttMessaging_25_025: [send method shall throw an IllegalArgumentException if the message is null.]
             throw new IllegalArgumentException("Message cannot be null");
         }
 
-        StringBuilder stringBuilder = new StringBuilder();
+        StringBuilder stringBuilder = new StringBuilder(this.publishTopic.length() + PUBLISH_TOPIC_PROPERTIES_CAPACITY);
         stringBuilder.append(this.publishTopic);
 
         boolean separatorNeeded = false;
@@ -104,11 +121,12 @@ public class MqttMessaging extends Mqtt
         separatorNeeded = appendPropertyIfPresent(stringBuilder, separatorNeeded, CORRELATION_ID, message.getCorrelationId());
         separatorNeeded = appendPropertyIfPresent(stringBuilder, separatorNeeded, USER_ID, message.getUserId());
         separatorNeeded = appendPropertyIfPresent(stringBuilder, separatorNeeded, TO, message.getTo());
-        separatorNeeded = appendPropertyIfPresent(stringBuilder, separatorNeeded, OUTPUT_NAME, message.getOutputName());
-        separatorNeeded = appendPropertyIfPresent(stringBuilder, separatorNeeded, CONNECTION_DEVICE_ID, message.getConnectionDeviceId());
-        separatorNeeded = appendPropertyIfPresent(stringBuilder, separatorNeeded, CONNECTION_MODULE_ID, message.getConnectionModuleId());
-        separatorNeeded = appendPropertyIfPresent(stringBuilder, separatorNeeded, CONTENT_ENCODING, message.getContentEncoding());
-        separatorNeeded = appendPropertyIfPresent(stringBuilder, separatorNeeded, CONTENT_TYPE, message.getContentType());
+        //Codes_SRS_MqttMessaging_12_001: [The encoded output name, connection device id, connection module id, content encoding and content type shall be reused from previous messages with the same values.]
+        separatorNeeded = appendCachedPropertyIfPresent(stringBuilder, separatorNeeded, OUTPUT_NAME, message.getOutputName());
+        separatorNeeded = appendCachedPropertyIfPresent(stringBuilder, separatorNeeded, CONNECTION_DEVICE_ID, message.getConnectionDeviceId());
+        separatorNeeded = appendCachedPropertyIfPresent(stringBuilder, separatorNeeded, CONNECTION_MODULE_ID, message.getConnectionModuleId());
+        separatorNeeded = appendCachedPropertyIfPresent(stringBuilder, separatorNeeded, CONTENT_ENCODING, message.getContentEncoding());
+        separatorNeeded = appendCachedPropertyIfPresent(stringBuilder, separatorNeeded, CONTENT_TYPE, message.getContentType());
 
         for (MessageProperty property : message.getProperties())
         {
@@ -147,7 +165,7 @@ public class MqttMessaging extends Mqtt
 
                 stringBuilder.append(propertyKey);
                 stringBuilder.append(MESSAGE_PROPERTY_KEY_VALUE_SEPARATOR);
-                stringBuilder.append(URLEncoder.encode(propertyValue, StandardCharsets.UTF_8.name()));
+                appendEncoded(stringBuilder, propertyValue);
 
                 return true;
             }
@@ -159,4 +177,63 @@ public class MqttMessaging extends Mqtt
             throw new TransportException("Could not utf-8 encode the mqtt property", e);
         }
     }
+
+    /**
+     * Appends the property like {@link #appendPropertyIfPresent(StringBuilder, boolean, String, String)}, reusing the
+     * "key=value" fragment built for an earlier message with the same value.
+     */
+    private boolean appendCachedPropertyIfPresent(StringBuilder stringBuilder, boolean separatorNeeded, String propertyKey, String propertyValue) throws TransportException
+    {
+        if (propertyValue == null || propertyValue.isEmpty())
+        {
+            return separatorNeeded;
+        }
+
+        Map<String, String> fragments = this.propertyFragmentCache.get(propertyKey);
+        String fragment = fragments.get(propertyValue);
+        if (fragment == null)
+        {
+            StringBuilder fragmentBuilder = new StringBuilder();
+            appendPropertyIfPresent(fragmentBuilder, false, propertyKey, propertyValue);
+            fragment = fragmentBuilder.toString();
+
+            // bounded, so that a client that does vary these values cannot grow the cache without limit
+            if (fragments.size() < MAX_CACHED_FRAGMENTS)
+            {
+                fragments.put(propertyValue, fragment);
+            }
+        }
+
+        if (separatorNeeded)
+        {
+            stringBuilder.append(MESSAGE_PROPERTY_SEPARATOR);
+        }
+
+        stringBuilder.append(fragment);
+        return true;
+    }
+
+    /**
+     * Appends the value encoded the way {@link URLEncoder} encodes it. Values made of characters that URLEncoder leaves
+     * as they are, such as generated message ids, are appended without creating an encoded copy.
+     */
+    private static void appendEncoded(StringBuilder stringBuilder, String value) throws UnsupportedEncodingException
+    {
+        for (int i = 0; i < value.length(); i++)
+        {
+            if (!isLeftUnencoded(value.charAt(i)))
+            {
+                stringBuilder.append(URLEncoder.encode(value, StandardCharsets.UTF_8.name()));
+                return;
+            }
+        }
+
+        stringBuilder.append(value);
+    }
+
+    private static boolean isLeftUnencoded(char c)
+    {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '.' || c == '-' || c == '*' || c == '_';
+    }
 }
@@ -14,6 +14,8 @@ public class TopicParser
     private final String REQ_ID = "$rid=";
     private final String VERSION = "$version=";
 
+    private static final char TOPIC_SEPARATOR = '/';
+
     public TopicParser(String topic) throws TransportException
     {
         if (topic == null || topic.length() == 0)
@@ -23,7 +25,47 @@ public class TopicParser
         }
 
         //Codes_SRS_TopicParser_25_001: [The constructor shall spilt the topic by "/" and save the tokens.]
-        this.topicTokens = topic.split("/");
+        this.topicTokens = splitTopic(topic);
+    }
+
+    /**
+     * Splits the topic on "/" the way {@code topic.split("/")} does, including dropping trailing empty tokens, but
+     * without going through the regex machinery or growing an intermediate list.
+     *
+     * @param topic the topic to split
+     * @return the tokens of the topic
+     */
+    static String[] splitTopic(String topic)
+    {
+        //Codes_SRS_TopicParser_12_001: [The function shall return the same tokens as String.split("/"), dropping trailing empty tokens.]
+        int end = topic.length();
+        while (end > 0 && topic.charAt(end - 1) == TOPIC_SEPARATOR)
+        {
+            end--;
+        }
+
+        if (end == 0)
+        {
+            return topic.isEmpty() ? new String[] {topic} : new String[0];
+        }
+
+        int tokenCount = 1;
+        for (int i = topic.indexOf(TOPIC_SEPARATOR); i != -1 && i < end; i = topic.indexOf(TOPIC_SEPARATOR, i + 1))
+        {
+            tokenCount++;
+        }
+
+        String[] tokens = new String[tokenCount];
+        int tokenStart = 0;
+        for (int tokenIndex = 0; tokenIndex < tokenCount - 1; tokenIndex++)
+        {
+            int tokenEnd = topic.indexOf(TOPIC_SEPARATOR, tokenStart);
+            tokens[tokenIndex] = topic.substring(tokenStart, tokenEnd);
+            tokenStart = tokenEnd + 1;
+        }
+        tokens[tokenCount - 1] = topic.substring(tokenStart, end);
+
+        return tokens;
     }
 
     protected String getStatus(int tokenIndexStatus) throws TransportException
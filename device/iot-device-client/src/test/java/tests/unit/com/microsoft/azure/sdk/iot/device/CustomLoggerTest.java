@@ -59,6 +59,56 @@ public class CustomLoggerTest
         assertThat("getExecutingMethodName", is(equalTo(methodName)));
     }
 
+    @Test
+    public void lazyMethodNameResolvesToCallerWhenFormatted(@Mocked final Logger mockLogger)
+    {
+        new NonStrictExpectations()
+        {
+            {
+                LoggerFactory.getLogger((Class)any);
+                result = mockLogger;
+                mockLogger.isInfoEnabled();
+                result = true;
+            }
+        };
+
+        CustomLogger logger = new CustomLogger(this.getClass());
+        logger.LogInfo("method name is %s", logger.getLazyMethodName());
+
+        new Verifications()
+        {
+            {
+                mockLogger.info("method name is lazyMethodNameResolvesToCallerWhenFormatted");
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void lazyMethodNameNotLoggedWhenLevelDisabled(@Mocked final Logger mockLogger)
+    {
+        new NonStrictExpectations()
+        {
+            {
+                LoggerFactory.getLogger((Class)any);
+                result = mockLogger;
+                mockLogger.isDebugEnabled();
+                result = false;
+            }
+        };
+
+        CustomLogger logger = new CustomLogger(this.getClass());
+        logger.LogDebug("method name is %s", logger.getLazyMethodName());
+
+        new Verifications()
+        {
+            {
+                mockLogger.debug(anyString);
+                times = 0;
+            }
+        };
+    }
+
     // Tests_SRS_CUSTOMERLOGGER_25_002: [The function shall print message for INFO level.]
     @Test
     public void testLogInfo(@Mocked final Logger mockLogger)
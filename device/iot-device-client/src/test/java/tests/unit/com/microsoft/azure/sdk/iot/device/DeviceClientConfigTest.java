@@ -7,6 +7,7 @@ import com.microsoft.azure.sdk.iot.device.*;
 import com.microsoft.azure.sdk.iot.device.DeviceTwin.Pair;
 import com.microsoft.azure.sdk.iot.device.auth.*;
 import com.microsoft.azure.sdk.iot.device.transport.ExponentialBackoffWithJitter;
+import com.microsoft.azure.sdk.iot.device.transport.OfflineMessageStoreSettings;
 import com.microsoft.azure.sdk.iot.device.transport.RetryPolicy;
 import com.microsoft.azure.sdk.iot.provisioning.security.SecurityProvider;
 import com.microsoft.azure.sdk.iot.provisioning.security.SecurityProviderSymmetricKey;
@@ -17,6 +18,7 @@ import mockit.*;
 import org.junit.Test;
 
 import javax.net.ssl.SSLContext;
+import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.Map;
@@ -557,6 +559,123 @@ public class DeviceClientConfigTest
         assertTrue(config.isUseWebsocket());
     }
 
+    @Test
+    public void setMqttMaxInFlightCountSets()
+    {
+        final IotHubConnectionString iotHubConnectionString =
+                Deencapsulation.newInstance(IotHubConnectionString.class,
+                        new Class[] {String.class, String.class, String.class, String.class},
+                        "test.iothubhostname",
+                        "test-deviceid",
+                        "test-devicekey",
+                        null);
+
+        DeviceClientConfig config = Deencapsulation.newInstance(DeviceClientConfig.class, iotHubConnectionString);
+        assertEquals(10, config.getMqttMaxInFlightCount());
+        config.setMqttMaxInFlightCount(100);
+        assertEquals(100, config.getMqttMaxInFlightCount());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void setMqttMaxInFlightCountThrowsOnZero()
+    {
+        final IotHubConnectionString iotHubConnectionString =
+                Deencapsulation.newInstance(IotHubConnectionString.class,
+                        new Class[] {String.class, String.class, String.class, String.class},
+                        "test.iothubhostname",
+                        "test-deviceid",
+                        "test-devicekey",
+                        null);
+
+        DeviceClientConfig config = Deencapsulation.newInstance(DeviceClientConfig.class, iotHubConnectionString);
+        config.setMqttMaxInFlightCount(0);
+    }
+
+    @Test
+    public void setEventDrivenReceiveAndReceiveBatchSizeSets()
+    {
+        final IotHubConnectionString iotHubConnectionString =
+                Deencapsulation.newInstance(IotHubConnectionString.class,
+                        new Class[] {String.class, String.class, String.class, String.class},
+                        "test.iothubhostname",
+                        "test-deviceid",
+                        "test-devicekey",
+                        null);
+
+        DeviceClientConfig config = Deencapsulation.newInstance(DeviceClientConfig.class, iotHubConnectionString);
+        assertFalse(config.isEventDrivenReceive());
+        assertEquals(10, config.getReceiveBatchSize());
+        config.setEventDrivenReceive(true);
+        config.setReceiveBatchSize(500);
+        assertTrue(config.isEventDrivenReceive());
+        assertEquals(500, config.getReceiveBatchSize());
+    }
+
+    @Test
+    public void setMessageCallbackConcurrencySets()
+    {
+        final IotHubConnectionString iotHubConnectionString =
+                Deencapsulation.newInstance(IotHubConnectionString.class,
+                        new Class[] {String.class, String.class, String.class, String.class},
+                        "test.iothubhostname",
+                        "test-deviceid",
+                        "test-devicekey",
+                        null);
+
+        DeviceClientConfig config = Deencapsulation.newInstance(DeviceClientConfig.class, iotHubConnectionString);
+        assertEquals(1, config.getMessageCallbackConcurrency());
+        config.setMessageCallbackConcurrency(8);
+        assertEquals(8, config.getMessageCallbackConcurrency());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void setMessageCallbackConcurrencyThrowsOnZero()
+    {
+        final IotHubConnectionString iotHubConnectionString =
+                Deencapsulation.newInstance(IotHubConnectionString.class,
+                        new Class[] {String.class, String.class, String.class, String.class},
+                        "test.iothubhostname",
+                        "test-deviceid",
+                        "test-devicekey",
+                        null);
+
+        DeviceClientConfig config = Deencapsulation.newInstance(DeviceClientConfig.class, iotHubConnectionString);
+        config.setMessageCallbackConcurrency(0);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void setReceiveBatchSizeThrowsOnZero()
+    {
+        final IotHubConnectionString iotHubConnectionString =
+                Deencapsulation.newInstance(IotHubConnectionString.class,
+                        new Class[] {String.class, String.class, String.class, String.class},
+                        "test.iothubhostname",
+                        "test-deviceid",
+                        "test-devicekey",
+                        null);
+
+        DeviceClientConfig config = Deencapsulation.newInstance(DeviceClientConfig.class, iotHubConnectionString);
+        config.setReceiveBatchSize(0);
+    }
+
+    @Test
+    public void setOfflineMessageStoreSettingsSets()
+    {
+        final IotHubConnectionString iotHubConnectionString =
+                Deencapsulation.newInstance(IotHubConnectionString.class,
+                        new Class[] {String.class, String.class, String.class, String.class},
+                        "test.iothubhostname",
+                        "test-deviceid",
+                        "test-devicekey",
+                        null);
+        OfflineMessageStoreSettings settings = new OfflineMessageStoreSettings(new File("store"));
+
+        DeviceClientConfig config = Deencapsulation.newInstance(DeviceClientConfig.class, iotHubConnectionString);
+        assertNull(config.getOfflineMessageStoreSettings());
+        config.setOfflineMessageStoreSettings(settings);
+        assertEquals(settings, config.getOfflineMessageStoreSettings());
+    }
+
     //Tests_SRS_DEVICECLIENTCONFIG_25_037: [The function shall return the true if websocket is enabled, false otherwise.]
     @Test
     public void getWebsocketEnabledGets() throws URISyntaxException, IOException
@@ -9,6 +9,7 @@ import com.microsoft.azure.sdk.iot.device.auth.IotHubAuthenticationProvider;
 import com.microsoft.azure.sdk.iot.device.auth.IotHubSasTokenAuthenticationProvider;
 import com.microsoft.azure.sdk.iot.device.exceptions.TransportException;
 import com.microsoft.azure.sdk.iot.device.fileupload.FileUpload;
+import com.microsoft.azure.sdk.iot.device.fileupload.FileUploadOptions;
 import com.microsoft.azure.sdk.iot.device.transport.amqps.IoTHubConnectionType;
 import com.microsoft.azure.sdk.iot.provisioning.security.SecurityProvider;
 import mockit.*;
@@ -352,7 +353,8 @@ public class DeviceClientTest
         client.open();
     }
 
-    // Tests_SRS_DEVICECLIENT_12_019: [If the client has been initialized to use TransportClient and the TransportClient is already opened the function shall do nothing.]
+    // Tests_SRS_DEVICECLIENT_12_019: [If the client has been initialized to use TransportClient and the TransportClient is already opened the function shall not open a connection of its own.]
+    // Tests_SRS_DEVICECLIENT_12_031: [If the client has been initialized to use TransportClient and the TransportClient is already opened the function shall ask the TransportClient to connect this client, which does nothing if it is connected already.]
     @Test
     public void openUseTransportClientAndCalledAfterTransportClientOpenedDoNothing(final @Mocked InternalClient mockedInternalClient) throws URISyntaxException, IOException
     {
@@ -379,6 +381,8 @@ public class DeviceClientTest
             {
                 Deencapsulation.invoke(mockDeviceIO, "open");
                 times = 0;
+                Deencapsulation.invoke(mockTransportClient, "openDeviceClient", new Class[] {DeviceClient.class}, any);
+                times = 1;
             }
         };
     }
@@ -462,6 +466,39 @@ public class DeviceClientTest
         };
     }
 
+    // Tests_SRS_DEVICECLIENT_12_040: [If the deviceIO is null, the function shall return 0, otherwise it shall return the in-flight message count of the deviceIO.]
+    // Tests_SRS_DEVICECLIENT_12_041: [If the deviceIO is null, the function shall return 0, otherwise it shall return the queued publish count of the deviceIO.]
+    @Test
+    public void getMqttWindowMetricsReturnDeviceIOMetrics() throws URISyntaxException
+    {
+        // arrange
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;deviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        DeviceClient client = new DeviceClient(connString, mockTransportClient);
+        int inFlightMessageCountWithoutDeviceIO = client.getMqttInFlightMessageCount();
+        int queuedPublishCountWithoutDeviceIO = client.getMqttQueuedPublishCount();
+        Deencapsulation.setField(client, "deviceIO", mockDeviceIO);
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.getMqttInFlightMessageCount();
+                result = 10;
+                mockDeviceIO.getMqttQueuedPublishCount();
+                result = 3;
+            }
+        };
+
+        // act
+        int inFlightMessageCount = client.getMqttInFlightMessageCount();
+        int queuedPublishCount = client.getMqttQueuedPublishCount();
+
+        // assert
+        assertEquals(0, inFlightMessageCountWithoutDeviceIO);
+        assertEquals(0, queuedPublishCountWithoutDeviceIO);
+        assertEquals(10, inFlightMessageCount);
+        assertEquals(3, queuedPublishCount);
+    }
+
     // Tests_SRS_DEVICECLIENT_12_005: [If the client has been initialized to use TransportClient and the TransportClient is already opened the function shall throw an IOException.]
     @Test (expected = IOException.class)
     public void closeNowUseTransportClientAndCalledAfterTransportClientOpenedThrows() throws IOException, URISyntaxException
@@ -1601,6 +1638,43 @@ public class DeviceClientTest
         Deencapsulation.invoke(client, "uploadToBlobAsync", destinationBlobName, mockInputStream, streamLength, mockedStatusCB, mockedPropertyCB);
     }
 
+    @Test
+    public void startFileUploadWithOptionsPassesOptionsToFileUpload(@Mocked final FileUpload mockedFileUpload,
+                                                                    @Mocked final InputStream mockInputStream,
+                                                                    @Mocked final IotHubEventCallback mockedStatusCB) throws IOException, URISyntaxException
+    {
+        //arrange
+        final IotHubClientProtocol protocol = IotHubClientProtocol.AMQPS;
+        final String destinationBlobName = "valid/blob/name.txt";
+        final FileUploadOptions options = new FileUploadOptions();
+
+        // assert
+        new Expectations()
+        {
+            {
+                Deencapsulation.newInstance(FileUpload.class, new Class[] {DeviceClientConfig.class}, (DeviceClientConfig) any);
+                result = mockedFileUpload;
+                mockedFileUpload.uploadToBlobAsync(destinationBlobName, mockInputStream, FileUploadOptions.UNKNOWN_STREAM_LENGTH, options, mockedStatusCB, any);
+                times = 1;
+            }
+        };
+        DeviceClient client = Deencapsulation.newInstance(DeviceClient.class, new Class[] {String.class, IotHubClientProtocol.class}, "some conn string", protocol);
+
+        // act
+        client.uploadToBlobAsync(destinationBlobName, mockInputStream, FileUploadOptions.UNKNOWN_STREAM_LENGTH, options, mockedStatusCB, null);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void startFileUploadNullOptionsThrows(@Mocked final InputStream mockInputStream,
+                                                 @Mocked final IotHubEventCallback mockedStatusCB) throws IOException, URISyntaxException
+    {
+        //arrange
+        DeviceClient client = Deencapsulation.newInstance(DeviceClient.class, new Class[] {String.class, IotHubClientProtocol.class}, "some conn string", IotHubClientProtocol.AMQPS);
+
+        // act
+        client.uploadToBlobAsync("valid/blob/name.txt", mockInputStream, 100, null, mockedStatusCB, null);
+    }
+
     /* Tests_SRS_INTERNALCLIENT_21_045: [If the `callback` is null, the uploadToBlobAsync shall throw IllegalArgumentException.] */
     @Test (expected = IllegalArgumentException.class)
     public void startFileUploadNullCallbackThrows(@Mocked final InputStream mockInputStream,
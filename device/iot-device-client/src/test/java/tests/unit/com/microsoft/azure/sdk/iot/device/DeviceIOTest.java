@@ -6,6 +6,8 @@ package tests.unit.com.microsoft.azure.sdk.iot.device;
 import com.microsoft.azure.sdk.iot.device.*;
 import com.microsoft.azure.sdk.iot.device.exceptions.DeviceClientException;
 import com.microsoft.azure.sdk.iot.device.exceptions.TransportException;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubEventDrivenReceiveTask;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubEventDrivenSendTask;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubReceiveTask;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubSendTask;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubTransport;
@@ -42,6 +44,12 @@ public class DeviceIOTest
     @Mocked
     IotHubReceiveTask mockIotHubReceiveTask;
 
+    @Mocked
+    IotHubEventDrivenSendTask mockIotHubEventDrivenSendTask;
+
+    @Mocked
+    IotHubEventDrivenReceiveTask mockIotHubEventDrivenReceiveTask;
+
     @Mocked
     IotHubTransport mockedTransport;
 
@@ -305,6 +313,185 @@ public class DeviceIOTest
         assertEquals("OPEN", Deencapsulation.getField(deviceIO, "state").toString());
     }
 
+    @Test
+    public void openEventDrivenSubmitsSendTaskInsteadOfScheduling() throws DeviceClientException, IOException
+    {
+        // arrange
+        final Object deviceIO = newDeviceIO();
+        new NonStrictExpectations()
+        {
+            {
+                mockConfig.isEventDrivenSend();
+                result = true;
+                new IotHubEventDrivenSendTask(mockedTransport);
+                result = mockIotHubEventDrivenSendTask;
+                new IotHubReceiveTask(mockedTransport);
+                result = mockIotHubReceiveTask;
+                mockExecutors.newScheduledThreadPool(2);
+                result = mockScheduler;
+            }
+        };
+
+        // act
+        Deencapsulation.invoke(deviceIO, "open");
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockScheduler.submit(mockIotHubEventDrivenSendTask);
+                times = 1;
+                new IotHubSendTask((IotHubTransport) any);
+                times = 0;
+                mockScheduler.scheduleAtFixedRate(mockIotHubReceiveTask,
+                        0, RECEIVE_PERIOD_MILLIS_AMQPS,
+                        TimeUnit.MILLISECONDS);
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void closeStopsEventDrivenSendTask() throws DeviceClientException, IOException
+    {
+        // arrange
+        final Object deviceIO = newDeviceIO();
+        new NonStrictExpectations()
+        {
+            {
+                mockConfig.isEventDrivenSend();
+                result = true;
+                new IotHubEventDrivenSendTask(mockedTransport);
+                result = mockIotHubEventDrivenSendTask;
+                new IotHubReceiveTask(mockedTransport);
+                result = mockIotHubReceiveTask;
+                mockExecutors.newScheduledThreadPool(2);
+                result = mockScheduler;
+            }
+        };
+        Deencapsulation.invoke(deviceIO, "open");
+
+        // act
+        Deencapsulation.invoke(deviceIO, "close");
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockIotHubEventDrivenSendTask.stop();
+                times = 1;
+                mockScheduler.shutdown();
+                times = 1;
+            }
+        };
+    }
+
+    /* Tests_SRS_DEVICE_IO_12_014: [If event driven receive is set and the protocol is not HTTPS, the open shall submit an event driven receive task instead of scheduling receive tasks.] */
+    @Test
+    public void openEventDrivenSubmitsReceiveTaskInsteadOfScheduling() throws DeviceClientException, IOException
+    {
+        // arrange
+        final Object deviceIO = newDeviceIO();
+        new NonStrictExpectations()
+        {
+            {
+                mockConfig.isEventDrivenReceive();
+                result = true;
+                new IotHubEventDrivenReceiveTask(mockedTransport);
+                result = mockIotHubEventDrivenReceiveTask;
+                mockExecutors.newScheduledThreadPool(2);
+                result = mockScheduler;
+            }
+        };
+
+        // act
+        Deencapsulation.invoke(deviceIO, "open");
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockScheduler.submit(mockIotHubEventDrivenReceiveTask);
+                times = 1;
+                new IotHubReceiveTask((IotHubTransport) any);
+                times = 0;
+            }
+        };
+    }
+
+    /* Tests_SRS_DEVICE_IO_12_014: [If event driven receive is set and the protocol is not HTTPS, the open shall submit an event driven receive task instead of scheduling receive tasks.] */
+    @Test
+    public void openEventDrivenReceiveOverHttpsSchedulesReceiveTask() throws DeviceClientException, IOException
+    {
+        // arrange
+        new NonStrictExpectations()
+        {
+            {
+                mockConfig.getProtocol();
+                result = IotHubClientProtocol.HTTPS;
+            }
+        };
+        final Object deviceIO = newDeviceIO();
+        new NonStrictExpectations()
+        {
+            {
+                mockConfig.isEventDrivenReceive();
+                result = true;
+                new IotHubReceiveTask(mockedTransport);
+                result = mockIotHubReceiveTask;
+                mockExecutors.newScheduledThreadPool(2);
+                result = mockScheduler;
+            }
+        };
+
+        // act
+        Deencapsulation.invoke(deviceIO, "open");
+
+        // assert
+        new Verifications()
+        {
+            {
+                new IotHubEventDrivenReceiveTask((IotHubTransport) any);
+                times = 0;
+                mockScheduler.scheduleAtFixedRate(mockIotHubReceiveTask, 0, anyLong, TimeUnit.MILLISECONDS);
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void closeStopsEventDrivenReceiveTask() throws DeviceClientException, IOException
+    {
+        // arrange
+        final Object deviceIO = newDeviceIO();
+        new NonStrictExpectations()
+        {
+            {
+                mockConfig.isEventDrivenReceive();
+                result = true;
+                new IotHubEventDrivenReceiveTask(mockedTransport);
+                result = mockIotHubEventDrivenReceiveTask;
+                mockExecutors.newScheduledThreadPool(2);
+                result = mockScheduler;
+            }
+        };
+        Deencapsulation.invoke(deviceIO, "open");
+
+        // act
+        Deencapsulation.invoke(deviceIO, "close");
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockIotHubEventDrivenReceiveTask.stop();
+                times = 1;
+                mockScheduler.shutdown();
+                times = 1;
+            }
+        };
+    }
+
     /* Tests_SRS_DEVICE_IO_21_012: [The open shall open the transport to communicate with an IoT Hub.] */
     /* Tests_SRS_DEVICE_IO_21_013: [The open shall schedule send tasks to run every SEND_PERIOD_MILLIS milliseconds.] */
     /* Tests_SRS_DEVICE_IO_21_014: [The open shall schedule receive tasks to run every RECEIVE_PERIOD_MILLIS milliseconds.] */
@@ -513,6 +700,104 @@ public class DeviceIOTest
     }
 
 
+    // Tests_SRS_DEVICE_IO_12_010: [If the device IO is open, the function shall add the config to the open transport, and throw IOException if that fails.]
+    // Tests_SRS_DEVICE_IO_12_013: [The function shall return the number of saved configs.]
+    @Test
+    public void addClientWhileOpenAddsConfigToTransport(@Mocked final DeviceClientConfig mockNewConfig) throws IOException, DeviceClientException
+    {
+        // arrange
+        final Object deviceIO = newDeviceIO();
+        openDeviceIO(deviceIO, mockedTransport, mockExecutors, mockScheduler);
+
+        // act
+        Deencapsulation.invoke(deviceIO, "addClient", mockNewConfig);
+
+        // assert
+        assertEquals(2, (int) Deencapsulation.invoke(deviceIO, "getClientCount"));
+        new Verifications()
+        {
+            {
+                mockedTransport.addDeviceClientConfig(mockNewConfig);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_DEVICE_IO_12_010: [If the device IO is open, the function shall add the config to the open transport, and throw IOException if that fails.]
+    @Test
+    public void addClientWhileClosedOnlySavesConfig(@Mocked final DeviceClientConfig mockNewConfig) throws DeviceClientException
+    {
+        // arrange
+        final Object deviceIO = newDeviceIO();
+
+        // act
+        Deencapsulation.invoke(deviceIO, "addClient", mockNewConfig);
+
+        // assert
+        assertEquals(2, (int) Deencapsulation.invoke(deviceIO, "getClientCount"));
+        new Verifications()
+        {
+            {
+                mockedTransport.addDeviceClientConfig((DeviceClientConfig) any);
+                times = 0;
+            }
+        };
+    }
+
+    // Tests_SRS_DEVICE_IO_12_010: [If the device IO is open, the function shall add the config to the open transport, and throw IOException if that fails.]
+    @Test
+    public void addClientWhileOpenThrowsIfTransportFails(@Mocked final DeviceClientConfig mockNewConfig) throws IOException, DeviceClientException
+    {
+        // arrange
+        final Object deviceIO = newDeviceIO();
+        openDeviceIO(deviceIO, mockedTransport, mockExecutors, mockScheduler);
+        new NonStrictExpectations()
+        {
+            {
+                mockedTransport.addDeviceClientConfig(mockNewConfig);
+                result = new TransportException("not authorized");
+            }
+        };
+
+        // act
+        try
+        {
+            Deencapsulation.invoke(deviceIO, "addClient", mockNewConfig);
+            fail("addClient should have thrown");
+        }
+        catch (Exception expected)
+        {
+            assertTrue(expected instanceof IOException);
+        }
+
+        // assert
+        assertEquals(1, (int) Deencapsulation.invoke(deviceIO, "getClientCount"));
+    }
+
+    // Tests_SRS_DEVICE_IO_12_011: [If the device IO is open, the function shall remove the config from the open transport.]
+    // Tests_SRS_DEVICE_IO_12_012: [The function shall remove the config from the saved list.]
+    @Test
+    public void removeClientWhileOpenRemovesConfigFromTransport(@Mocked final DeviceClientConfig mockNewConfig) throws IOException
+    {
+        // arrange
+        final Object deviceIO = newDeviceIO();
+        openDeviceIO(deviceIO, mockedTransport, mockExecutors, mockScheduler);
+        Deencapsulation.invoke(deviceIO, "addClient", mockNewConfig);
+
+        // act
+        Deencapsulation.invoke(deviceIO, "removeClient", mockNewConfig);
+
+        // assert
+        assertEquals(1, (int) Deencapsulation.invoke(deviceIO, "getClientCount"));
+        new Verifications()
+        {
+            {
+                mockedTransport.removeDeviceClientConfig(mockNewConfig);
+                times = 1;
+            }
+        };
+    }
+
     /* Tests_SRS_DEVICE_IO_21_022: [The sendEventAsync shall add the message, with its associated callback and callback context, to the transport.] */
     // Tests_SRS_DEVICE_IO_12_001: [The function shall set the deviceId on the message if the deviceId parameter is not null.]
     @Test
@@ -594,6 +879,70 @@ public class DeviceIOTest
         Deencapsulation.invoke(deviceIO, "sendEventAsync", new Class[] {Message.class, IotHubEventCallback.class, Object.class, String.class}, mockMsg, mockCallback, context, mockConfig.getDeviceId());
     }
 
+    @Test
+    public void sendEventBatchAsyncAddsMessagesToTransportSuccess(
+            @Mocked final Message mockMsg,
+            @Mocked final IotHubEventCallback mockCallback)
+            throws IOException
+    {
+        // arrange
+        final Map<String, Object> context = new HashMap<>();
+        final List<Message> messages = new ArrayList<>();
+        messages.add(mockMsg);
+        messages.add(mockMsg);
+        final Object deviceIO = newDeviceIO();
+        openDeviceIO(deviceIO, mockedTransport, mockExecutors, mockScheduler);
+
+        // act
+        Deencapsulation.invoke(deviceIO, "sendEventBatchAsync",
+                new Class[] {List.class, IotHubEventCallback.class, Object.class, String.class},
+                messages, mockCallback, context, "someDeviceId");
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockMsg.setConnectionDeviceId("someDeviceId");
+                times = 2;
+                mockedTransport.addMessages(messages, mockCallback, context);
+                times = 1;
+            }
+        };
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void sendEventBatchAsyncRejectsEmptyBatchThrows(
+            @Mocked final IotHubEventCallback mockCallback)
+            throws IOException
+    {
+        // arrange
+        final Map<String, Object> context = new HashMap<>();
+        final Object deviceIO = newDeviceIO();
+        openDeviceIO(deviceIO, mockedTransport, mockExecutors, mockScheduler);
+
+        // act
+        Deencapsulation.invoke(deviceIO, "sendEventBatchAsync",
+                new Class[] {List.class, IotHubEventCallback.class, Object.class, String.class},
+                new ArrayList<Message>(), mockCallback, context, "someDeviceId");
+    }
+
+    @Test (expected = IllegalStateException.class)
+    public void sendEventBatchAsyncClientNotOpenedThrows(
+            @Mocked final Message mockMsg,
+            @Mocked final IotHubEventCallback mockCallback)
+    {
+        // arrange
+        final Map<String, Object> context = new HashMap<>();
+        final List<Message> messages = new ArrayList<>();
+        messages.add(mockMsg);
+        final Object deviceIO = newDeviceIO();
+
+        // act
+        Deencapsulation.invoke(deviceIO, "sendEventBatchAsync",
+                new Class[] {List.class, IotHubEventCallback.class, Object.class, String.class},
+                messages, mockCallback, context, "someDeviceId");
+    }
+
     /* Tests_SRS_DEVICE_IO_21_025: [The getProtocol shall return the protocol for transport.] */
     @Test
     public void getTransportProtocolSuccess()
@@ -884,6 +1233,33 @@ public class DeviceIOTest
         assertFalse(isOpen);
     }
 
+    /* Tests_SRS_DEVICE_IO_12_030: [The getMqttInFlightMessageCount shall return the in-flight message count of the transport.] */
+    /* Tests_SRS_DEVICE_IO_12_031: [The getMqttQueuedPublishCount shall return the queued publish count of the transport.] */
+    @Test
+    public void getMqttWindowMetricsReturnTransportMetrics()
+            throws URISyntaxException, IOException
+    {
+        // arrange
+        final Object deviceIO = newDeviceIO();
+        new NonStrictExpectations()
+        {
+            {
+                mockedTransport.getMqttInFlightMessageCount();
+                result = 10;
+                mockedTransport.getMqttQueuedPublishCount();
+                result = 3;
+            }
+        };
+
+        // act
+        int inFlightMessageCount = Deencapsulation.invoke(deviceIO, "getMqttInFlightMessageCount");
+        int queuedPublishCount = Deencapsulation.invoke(deviceIO, "getMqttQueuedPublishCount");
+
+        // assert
+        assertEquals(10, inFlightMessageCount);
+        assertEquals(3, queuedPublishCount);
+    }
+
     /* Tests_SRS_DEVICE_IO_21_039: [The isEmpty shall return the transport queue state, true if the queue is empty, false if there is pending messages in the queue.] */
     @Test
     public void isEmptyTrueSuccess()
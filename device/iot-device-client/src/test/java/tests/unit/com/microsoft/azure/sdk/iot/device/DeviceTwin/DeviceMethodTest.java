@@ -13,7 +13,11 @@ import mockit.NonStrictExpectations;
 import mockit.Verifications;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static com.microsoft.azure.sdk.iot.device.DeviceTwin.DeviceOperations.DEVICE_OPERATION_METHOD_RECEIVE_REQUEST;
+import static com.microsoft.azure.sdk.iot.device.DeviceTwin.DeviceOperations.DEVICE_OPERATION_METHOD_SEND_RESPONSE;
 import static com.microsoft.azure.sdk.iot.device.DeviceTwin.DeviceOperations.DEVICE_OPERATION_METHOD_SUBSCRIBE_REQUEST;
 import static com.microsoft.azure.sdk.iot.device.MessageType.DEVICE_METHODS;
 import static org.junit.Assert.*;
@@ -146,7 +150,7 @@ public class DeviceMethodTest
         DeviceMethod testMethod = new DeviceMethod(mockedDeviceIO, mockedConfig, mockedStatusCB, null);
 
         //act
-        testMethod.subscribeToDeviceMethod(null, null);
+        testMethod.subscribeToDeviceMethod((DeviceMethodCallback) null, null);
 
     }
 
@@ -420,4 +424,334 @@ public class DeviceMethodTest
 
     }
 
+    private static final class RecordingAsyncCallback implements DeviceMethodAsyncCallback
+    {
+        final List<DeviceMethodResponder> responders = new ArrayList<>();
+
+        @Override
+        public void call(String methodName, Object methodData, Object context, DeviceMethodResponder responder)
+        {
+            responders.add(responder);
+        }
+    }
+
+    private static IotHubTransportMessage createMethodRequest(String methodName, String requestId)
+    {
+        IotHubTransportMessage request = new IotHubTransportMessage("TestPayload".getBytes(), DEVICE_METHODS);
+        request.setDeviceOperationType(DEVICE_OPERATION_METHOD_RECEIVE_REQUEST);
+        request.setMethodName(methodName);
+        request.setRequestId(requestId);
+        return request;
+    }
+
+    private List<IotHubTransportMessage> getSentResponses()
+    {
+        final List<Message> sentMessages = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                mockedDeviceIO.sendEventAsync(withCapture(sentMessages), (IotHubEventCallback)any, any, anyString);
+            }
+        };
+
+        List<IotHubTransportMessage> responses = new ArrayList<>();
+        for (Message sentMessage : sentMessages)
+        {
+            IotHubTransportMessage transportMessage = (IotHubTransportMessage) sentMessage;
+            if (transportMessage.getDeviceOperationType() == DEVICE_OPERATION_METHOD_SEND_RESPONSE)
+            {
+                responses.add(transportMessage);
+            }
+        }
+        return responses;
+    }
+
+    /*
+    **Tests_SRS_DEVICEMETHOD_12_007: [**If deviceMethodAsyncCallback parameter is null then this method shall throw IllegalArgumentException**]**
+     */
+    @Test (expected = IllegalArgumentException.class)
+    public void subscribeToMethodsAsyncThrowsIfCallBackNull() throws IllegalArgumentException
+    {
+        //arrange
+        DeviceMethod testMethod = new DeviceMethod(mockedDeviceIO, mockedConfig, mockedStatusCB, null);
+
+        //act
+        testMethod.subscribeToDeviceMethodAsync(null, null);
+    }
+
+    /*
+    **Tests_SRS_DEVICEMETHOD_12_001: [**If an asynchronous device method callback is subscribed, this method shall start or queue the invocation with a responder that carries the request id, and mark the result as complete without waiting for the response.**]**
+    **Tests_SRS_DEVICEMETHOD_12_004: [**When the user responds to an asynchronous invocation, this method shall send the response with the request id of that invocation.**]**
+     */
+    @Test
+    public void asyncResponsesUseRequestIdOfTheirInvocation() throws IllegalArgumentException
+    {
+        //arrange
+        DeviceMethod testMethod = new DeviceMethod(mockedDeviceIO, mockedConfig, mockedStatusCB, null);
+        RecordingAsyncCallback testCallback = new RecordingAsyncCallback();
+        testMethod.subscribeToDeviceMethodAsync(testCallback, null);
+        MessageCallback testDeviceMethodResponseMessageCallback = Deencapsulation.newInnerInstance("deviceMethodResponseCallback", testMethod);
+
+        //act
+        IotHubMessageResult firstResult = testDeviceMethodResponseMessageCallback.execute(createMethodRequest("reboot", "1"), null);
+        IotHubMessageResult secondResult = testDeviceMethodResponseMessageCallback.execute(createMethodRequest("reboot", "2"), null);
+        testCallback.responders.get(1).respond(new DeviceMethodData(200, "second"));
+        testCallback.responders.get(0).respond(new DeviceMethodData(200, "first"));
+
+        //assert
+        assertEquals(IotHubMessageResult.COMPLETE, firstResult);
+        assertEquals(IotHubMessageResult.COMPLETE, secondResult);
+        assertEquals(2, testCallback.responders.size());
+        assertEquals("1", testCallback.responders.get(0).getRequestId());
+        assertEquals("reboot", testCallback.responders.get(0).getMethodName());
+
+        List<IotHubTransportMessage> responses = getSentResponses();
+        assertEquals(2, responses.size());
+        assertEquals("2", responses.get(0).getRequestId());
+        assertEquals("1", responses.get(1).getRequestId());
+    }
+
+    /*
+    **Tests_SRS_DEVICEMETHOD_12_002: [**If the method already runs as many invocations as its concurrency limit, the invocation shall wait until one of them responds.**]**
+    **Tests_SRS_DEVICEMETHOD_12_006: [**When an invocation finishes, the oldest invocation waiting for the same method shall be started in its slot.**]**
+    **Tests_SRS_DEVICEMETHOD_12_009: [**This method shall save the limit for the method name. Running invocations are not affected.**]**
+     */
+    @Test
+    public void asyncInvocationsBeyondLimitWaitForAResponse() throws IllegalArgumentException
+    {
+        //arrange
+        DeviceMethod testMethod = new DeviceMethod(mockedDeviceIO, mockedConfig, mockedStatusCB, null);
+        RecordingAsyncCallback testCallback = new RecordingAsyncCallback();
+        testMethod.subscribeToDeviceMethodAsync(testCallback, null);
+        testMethod.setMaxConcurrentInvocations("reboot", 1);
+        MessageCallback testDeviceMethodResponseMessageCallback = Deencapsulation.newInnerInstance("deviceMethodResponseCallback", testMethod);
+
+        //act
+        testDeviceMethodResponseMessageCallback.execute(createMethodRequest("reboot", "1"), null);
+        testDeviceMethodResponseMessageCallback.execute(createMethodRequest("reboot", "2"), null);
+        testDeviceMethodResponseMessageCallback.execute(createMethodRequest("update", "3"), null);
+
+        //assert
+        assertEquals(2, testCallback.responders.size());
+        assertEquals("1", testCallback.responders.get(0).getRequestId());
+        assertEquals("3", testCallback.responders.get(1).getRequestId());
+
+        //act
+        testCallback.responders.get(0).respond(new DeviceMethodData(200, null));
+
+        //assert
+        assertEquals(3, testCallback.responders.size());
+        assertEquals("2", testCallback.responders.get(2).getRequestId());
+    }
+
+    /*
+    **Tests_SRS_DEVICEMETHOD_12_003: [**If the asynchronous callback throws before responding, the user shall be notified on the status callback as ERROR and the invocation shall free its slot.**]**
+     */
+    @Test
+    public void asyncCallbackThrowingReportsErrorAndFreesSlot() throws IllegalArgumentException
+    {
+        //arrange
+        DeviceMethod testMethod = new DeviceMethod(mockedDeviceIO, mockedConfig, mockedStatusCB, null);
+        final List<String> invokedRequestIds = new ArrayList<>();
+        testMethod.subscribeToDeviceMethodAsync(new DeviceMethodAsyncCallback()
+        {
+            @Override
+            public void call(String methodName, Object methodData, Object context, DeviceMethodResponder responder)
+            {
+                invokedRequestIds.add(responder.getRequestId());
+                throw new IllegalStateException("Test Exception");
+            }
+        }, null);
+        testMethod.setMaxConcurrentInvocations("reboot", 1);
+        MessageCallback testDeviceMethodResponseMessageCallback = Deencapsulation.newInnerInstance("deviceMethodResponseCallback", testMethod);
+
+        //act
+        testDeviceMethodResponseMessageCallback.execute(createMethodRequest("reboot", "1"), null);
+        testDeviceMethodResponseMessageCallback.execute(createMethodRequest("reboot", "2"), null);
+
+        //assert
+        assertEquals(2, invokedRequestIds.size());
+        assertTrue(getSentResponses().isEmpty());
+        new Verifications()
+        {
+            {
+                mockedStatusCB.execute(IotHubStatusCode.ERROR, any);
+                times = 2;
+            }
+        };
+    }
+
+    /*
+    **Tests_SRS_DEVICEMETHOD_12_005: [**If the user responds with null, the user shall be notified on the status callback as ERROR and no response shall be sent.**]**
+     */
+    @Test
+    public void asyncNullResponseReportsError() throws IllegalArgumentException
+    {
+        //arrange
+        DeviceMethod testMethod = new DeviceMethod(mockedDeviceIO, mockedConfig, mockedStatusCB, null);
+        RecordingAsyncCallback testCallback = new RecordingAsyncCallback();
+        testMethod.subscribeToDeviceMethodAsync(testCallback, null);
+        MessageCallback testDeviceMethodResponseMessageCallback = Deencapsulation.newInnerInstance("deviceMethodResponseCallback", testMethod);
+        testDeviceMethodResponseMessageCallback.execute(createMethodRequest("reboot", "1"), null);
+
+        //act
+        testCallback.responders.get(0).respond(null);
+
+        //assert
+        assertTrue(getSentResponses().isEmpty());
+        new Verifications()
+        {
+            {
+                mockedStatusCB.execute(IotHubStatusCode.ERROR, any);
+                times = 1;
+            }
+        };
+    }
+
+    /*
+    Tests_SRS_DEVICEMETHODRESPONDER_12_001: [If the invocation was already answered, the function shall throw an IllegalStateException.]
+     */
+    @Test (expected = IllegalStateException.class)
+    public void asyncResponderThrowsIfRespondedTwice() throws IllegalArgumentException
+    {
+        //arrange
+        DeviceMethod testMethod = new DeviceMethod(mockedDeviceIO, mockedConfig, mockedStatusCB, null);
+        RecordingAsyncCallback testCallback = new RecordingAsyncCallback();
+        testMethod.subscribeToDeviceMethodAsync(testCallback, null);
+        MessageCallback testDeviceMethodResponseMessageCallback = Deencapsulation.newInnerInstance("deviceMethodResponseCallback", testMethod);
+        testDeviceMethodResponseMessageCallback.execute(createMethodRequest("reboot", "1"), null);
+        testCallback.responders.get(0).respond(new DeviceMethodData(200, null));
+
+        //act
+        testCallback.responders.get(0).respond(new DeviceMethodData(200, null));
+    }
+
+    /*
+    **Tests_SRS_DEVICEMETHOD_12_008: [**If the method name is null or empty, or the limit is less than 1, this method shall throw IllegalArgumentException**]**
+     */
+    @Test (expected = IllegalArgumentException.class)
+    public void setMaxConcurrentInvocationsThrowsIfMethodNameEmpty() throws IllegalArgumentException
+    {
+        //arrange
+        DeviceMethod testMethod = new DeviceMethod(mockedDeviceIO, mockedConfig, mockedStatusCB, null);
+
+        //act
+        testMethod.setMaxConcurrentInvocations("", 1);
+    }
+
+    /*
+    **Tests_SRS_DEVICEMETHOD_12_008: [**If the method name is null or empty, or the limit is less than 1, this method shall throw IllegalArgumentException**]**
+     */
+    @Test (expected = IllegalArgumentException.class)
+    public void setMaxConcurrentInvocationsThrowsIfLimitLessThanOne() throws IllegalArgumentException
+    {
+        //arrange
+        DeviceMethod testMethod = new DeviceMethod(mockedDeviceIO, mockedConfig, mockedStatusCB, null);
+
+        //act
+        testMethod.setMaxConcurrentInvocations("reboot", 0);
+    }
+
+    /*
+    **Tests_SRS_DEVICEMETHOD_12_006: [**When an invocation finishes, the oldest invocation waiting for the same method shall be started in its slot.**]**
+     */
+    @Test
+    public void synchronousResponsesDrainWaitingInvocationsWithoutRecursion() throws IllegalArgumentException
+    {
+        //arrange
+        final int invocationCount = 500;
+        final List<Integer> stackDepths = new ArrayList<>();
+        DeviceMethod testMethod = new DeviceMethod(mockedDeviceIO, mockedConfig, mockedStatusCB, null);
+        RecordingAsyncCallback firstCallback = new RecordingAsyncCallback();
+        testMethod.subscribeToDeviceMethodAsync(firstCallback, null);
+        testMethod.setMaxConcurrentInvocations("reboot", 1);
+        MessageCallback testDeviceMethodResponseMessageCallback = Deencapsulation.newInnerInstance("deviceMethodResponseCallback", testMethod);
+        testDeviceMethodResponseMessageCallback.execute(createMethodRequest("reboot", "0"), null);
+        for (int i = 1; i < invocationCount; i++)
+        {
+            testDeviceMethodResponseMessageCallback.execute(createMethodRequest("reboot", String.valueOf(i)), null);
+        }
+        testMethod.subscribeToDeviceMethodAsync(new DeviceMethodAsyncCallback()
+        {
+            @Override
+            public void call(String methodName, Object methodData, Object context, DeviceMethodResponder responder)
+            {
+                stackDepths.add(Thread.currentThread().getStackTrace().length);
+                responder.respond(new DeviceMethodData(200, null));
+            }
+        }, null);
+
+        //act
+        firstCallback.responders.get(0).respond(new DeviceMethodData(200, null));
+
+        //assert
+        assertEquals(invocationCount - 1, stackDepths.size());
+        assertEquals(stackDepths.get(0), stackDepths.get(invocationCount - 2));
+    }
+
+    /*
+    **Tests_SRS_DEVICEMETHOD_12_010: [**If the user does not respond to an asynchronous invocation within the response timeout, this method shall send a response with status 504 and free the slot of the invocation.**]**
+     */
+    @Test
+    public void asyncInvocationNotAnsweredInTimeIsAnsweredWithErrorAndFreesSlot() throws Exception
+    {
+        //arrange
+        DeviceMethod testMethod = new DeviceMethod(mockedDeviceIO, mockedConfig, mockedStatusCB, null);
+        RecordingAsyncCallback testCallback = new RecordingAsyncCallback();
+        testMethod.subscribeToDeviceMethodAsync(testCallback, null);
+        testMethod.setMaxConcurrentInvocations("reboot", 1);
+        testMethod.setAsyncResponseTimeout(50);
+        MessageCallback testDeviceMethodResponseMessageCallback = Deencapsulation.newInnerInstance("deviceMethodResponseCallback", testMethod);
+
+        //act
+        testDeviceMethodResponseMessageCallback.execute(createMethodRequest("reboot", "1"), null);
+        testDeviceMethodResponseMessageCallback.execute(createMethodRequest("reboot", "2"), null);
+        for (int i = 0; i < 100 && testCallback.responders.size() < 2; i++)
+        {
+            Thread.sleep(20);
+        }
+
+        //assert
+        assertEquals(2, testCallback.responders.size());
+        assertEquals("2", testCallback.responders.get(1).getRequestId());
+        testCallback.responders.get(1).respond(new DeviceMethodData(200, null));
+
+        List<IotHubTransportMessage> responses = getSentResponses();
+        assertEquals(2, responses.size());
+        assertEquals("1", responses.get(0).getRequestId());
+        assertEquals("504", responses.get(0).getStatus());
+        assertEquals("2", responses.get(1).getRequestId());
+    }
+
+    /*
+    **Tests_SRS_DEVICEMETHOD_12_010: [**If the user does not respond to an asynchronous invocation within the response timeout, this method shall send a response with status 504 and free the slot of the invocation.**]**
+     */
+    @Test (expected = IllegalStateException.class)
+    public void asyncResponderThrowsIfRespondingAfterTimeout() throws Exception
+    {
+        //arrange
+        DeviceMethod testMethod = new DeviceMethod(mockedDeviceIO, mockedConfig, mockedStatusCB, null);
+        RecordingAsyncCallback testCallback = new RecordingAsyncCallback();
+        testMethod.subscribeToDeviceMethodAsync(testCallback, null);
+        testMethod.setAsyncResponseTimeout(1);
+        MessageCallback testDeviceMethodResponseMessageCallback = Deencapsulation.newInnerInstance("deviceMethodResponseCallback", testMethod);
+        testDeviceMethodResponseMessageCallback.execute(createMethodRequest("reboot", "1"), null);
+        Thread.sleep(200);
+
+        //act
+        testCallback.responders.get(0).respond(new DeviceMethodData(200, null));
+    }
+
+    /*
+    **Tests_SRS_DEVICEMETHOD_12_011: [**If the timeout is less than 1, this method shall throw IllegalArgumentException. Otherwise it applies to the invocations started afterwards.**]**
+     */
+    @Test (expected = IllegalArgumentException.class)
+    public void setAsyncResponseTimeoutThrowsIfLessThanOne() throws IllegalArgumentException
+    {
+        //arrange
+        DeviceMethod testMethod = new DeviceMethod(mockedDeviceIO, mockedConfig, mockedStatusCB, null);
+
+        //act
+        testMethod.setAsyncResponseTimeout(0);
+    }
 }
@@ -11,6 +11,7 @@ import com.microsoft.azure.sdk.iot.device.auth.IotHubAuthenticationProvider;
 import com.microsoft.azure.sdk.iot.device.auth.IotHubSasTokenAuthenticationProvider;
 import com.microsoft.azure.sdk.iot.device.fileupload.FileUpload;
 import com.microsoft.azure.sdk.iot.device.transport.ExponentialBackoffWithJitter;
+import com.microsoft.azure.sdk.iot.device.transport.OfflineMessageStoreSettings;
 import com.microsoft.azure.sdk.iot.device.transport.RetryPolicy;
 import com.microsoft.azure.sdk.iot.provisioning.security.SecurityProvider;
 import com.microsoft.azure.sdk.iot.provisioning.security.exceptions.SecurityProviderException;
@@ -1390,6 +1391,136 @@ public class InternalClientTest
         };
     }
 
+    @Test
+    public void subscribeToMethodsAsyncSubscribesAsyncCallback(@Mocked final IotHubEventCallback mockedStatusCB,
+                                                               @Mocked final DeviceMethodAsyncCallback mockedDeviceMethodAsyncCB,
+                                                               @Mocked final DeviceMethod mockedMethod) throws IOException, URISyntaxException
+    {
+        //arrange
+        final IotHubClientProtocol protocol = IotHubClientProtocol.MQTT;
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = true;
+            }
+        };
+        final InternalClient client = Deencapsulation.newInstance(InternalClient.class, new Class[] {IotHubConnectionString.class, IotHubClientProtocol.class, long.class, long.class}, mockIotHubConnectionString, protocol, SEND_PERIOD, RECEIVE_PERIOD);
+        Deencapsulation.invoke(client, "open");
+
+        //act
+        Deencapsulation.invoke(client, "subscribeToMethodsAsyncInternal", new Class[] {DeviceMethodAsyncCallback.class, Object.class, IotHubEventCallback.class, Object.class}, mockedDeviceMethodAsyncCB, NULL_OBJECT, mockedStatusCB, NULL_OBJECT);
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockedMethod.subscribeToDeviceMethodAsync(mockedDeviceMethodAsyncCB, any);
+                times = 1;
+            }
+        };
+    }
+
+    @Test (expected = IOException.class)
+    public void subscribeToMethodsAsyncThrowsIfClientNotOpen(@Mocked final IotHubEventCallback mockedStatusCB,
+                                                             @Mocked final DeviceMethodAsyncCallback mockedDeviceMethodAsyncCB)
+            throws IOException, URISyntaxException
+    {
+        //arrange
+        final IotHubClientProtocol protocol = IotHubClientProtocol.MQTT;
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = false;
+            }
+        };
+        final InternalClient client = Deencapsulation.newInstance(InternalClient.class, new Class[] {IotHubConnectionString.class, IotHubClientProtocol.class, long.class, long.class}, mockIotHubConnectionString, protocol, SEND_PERIOD, RECEIVE_PERIOD);
+
+        //act
+        Deencapsulation.invoke(client, "subscribeToMethodsAsyncInternal", new Class[] {DeviceMethodAsyncCallback.class, Object.class, IotHubEventCallback.class, Object.class}, mockedDeviceMethodAsyncCB, null, mockedStatusCB, null);
+    }
+
+    @Test (expected = IllegalStateException.class)
+    public void setMethodConcurrencyLimitThrowsIfNotSubscribed() throws URISyntaxException
+    {
+        //arrange
+        final InternalClient client = Deencapsulation.newInstance(InternalClient.class, new Class[] {IotHubConnectionString.class, IotHubClientProtocol.class, long.class, long.class}, mockIotHubConnectionString, IotHubClientProtocol.MQTT, SEND_PERIOD, RECEIVE_PERIOD);
+
+        //act
+        Deencapsulation.invoke(client, "setMethodConcurrencyLimitInternal", "reboot", 2);
+    }
+
+    @Test
+    public void setMethodConcurrencyLimitSetsLimitOnDeviceMethod(@Mocked final IotHubEventCallback mockedStatusCB,
+                                                                 @Mocked final DeviceMethodAsyncCallback mockedDeviceMethodAsyncCB,
+                                                                 @Mocked final DeviceMethod mockedMethod) throws IOException, URISyntaxException
+    {
+        //arrange
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = true;
+            }
+        };
+        final InternalClient client = Deencapsulation.newInstance(InternalClient.class, new Class[] {IotHubConnectionString.class, IotHubClientProtocol.class, long.class, long.class}, mockIotHubConnectionString, IotHubClientProtocol.MQTT, SEND_PERIOD, RECEIVE_PERIOD);
+        Deencapsulation.invoke(client, "open");
+        Deencapsulation.invoke(client, "subscribeToMethodsAsyncInternal", new Class[] {DeviceMethodAsyncCallback.class, Object.class, IotHubEventCallback.class, Object.class}, mockedDeviceMethodAsyncCB, NULL_OBJECT, mockedStatusCB, NULL_OBJECT);
+
+        //act
+        Deencapsulation.invoke(client, "setMethodConcurrencyLimitInternal", "reboot", 2);
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockedMethod.setMaxConcurrentInvocations("reboot", 2);
+                times = 1;
+            }
+        };
+    }
+
+    @Test (expected = IllegalStateException.class)
+    public void setMethodResponseTimeoutThrowsIfNotSubscribed() throws URISyntaxException
+    {
+        //arrange
+        final InternalClient client = Deencapsulation.newInstance(InternalClient.class, new Class[] {IotHubConnectionString.class, IotHubClientProtocol.class, long.class, long.class}, mockIotHubConnectionString, IotHubClientProtocol.MQTT, SEND_PERIOD, RECEIVE_PERIOD);
+
+        //act
+        Deencapsulation.invoke(client, "setMethodResponseTimeoutInternal", 1000L);
+    }
+
+    @Test
+    public void setMethodResponseTimeoutSetsTimeoutOnDeviceMethod(@Mocked final IotHubEventCallback mockedStatusCB,
+                                                                  @Mocked final DeviceMethodAsyncCallback mockedDeviceMethodAsyncCB,
+                                                                  @Mocked final DeviceMethod mockedMethod) throws IOException, URISyntaxException
+    {
+        //arrange
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = true;
+            }
+        };
+        final InternalClient client = Deencapsulation.newInstance(InternalClient.class, new Class[] {IotHubConnectionString.class, IotHubClientProtocol.class, long.class, long.class}, mockIotHubConnectionString, IotHubClientProtocol.MQTT, SEND_PERIOD, RECEIVE_PERIOD);
+        Deencapsulation.invoke(client, "open");
+        Deencapsulation.invoke(client, "subscribeToMethodsAsyncInternal", new Class[] {DeviceMethodAsyncCallback.class, Object.class, IotHubEventCallback.class, Object.class}, mockedDeviceMethodAsyncCB, NULL_OBJECT, mockedStatusCB, NULL_OBJECT);
+
+        //act
+        Deencapsulation.invoke(client, "setMethodResponseTimeoutInternal", 1000L);
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockedMethod.setAsyncResponseTimeout(1000L);
+                times = 1;
+            }
+        };
+    }
+
     //Tests_SRS_INTERNALCLIENT_34_044: [**If the SAS token has expired before this call, throw a Security Exception**]
     @Test (expected = SecurityException.class)
     public void tokenExpiresAfterDeviceClientInitializedBeforeOpen() throws SecurityException, URISyntaxException, IOException
@@ -1990,6 +2121,187 @@ public class InternalClientTest
         };
     }
 
+    @Test
+    public void setOptionOfflineMessageStoreSucceeds(@Mocked final OfflineMessageStoreSettings mockSettings)
+            throws IOException, URISyntaxException
+    {
+        // arrange
+        final IotHubClientProtocol protocol = IotHubClientProtocol.MQTT;
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = false;
+            }
+        };
+        InternalClient client = Deencapsulation.newInstance(InternalClient.class, new Class[] {IotHubConnectionString.class, IotHubClientProtocol.class, long.class, long.class}, mockIotHubConnectionString, protocol, SEND_PERIOD, RECEIVE_PERIOD);
+
+        // act
+        client.setOption("SetOfflineMessageStore", mockSettings);
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockConfig.setOfflineMessageStoreSettings(mockSettings);
+            }
+        };
+    }
+
+    @Test (expected = IllegalStateException.class)
+    public void setOptionOfflineMessageStoreAfterOpenFails(@Mocked final OfflineMessageStoreSettings mockSettings)
+            throws IOException, URISyntaxException
+    {
+        // arrange
+        final IotHubClientProtocol protocol = IotHubClientProtocol.MQTT;
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = true;
+            }
+        };
+        InternalClient client = Deencapsulation.newInstance(InternalClient.class, new Class[] {IotHubConnectionString.class, IotHubClientProtocol.class, long.class, long.class}, mockIotHubConnectionString, protocol, SEND_PERIOD, RECEIVE_PERIOD);
+
+        // act
+        client.setOption("SetOfflineMessageStore", mockSettings);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void setOptionOfflineMessageStoreWithStringFails()
+            throws IOException, URISyntaxException
+    {
+        // arrange
+        final IotHubClientProtocol protocol = IotHubClientProtocol.MQTT;
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = false;
+            }
+        };
+        InternalClient client = Deencapsulation.newInstance(InternalClient.class, new Class[] {IotHubConnectionString.class, IotHubClientProtocol.class, long.class, long.class}, mockIotHubConnectionString, protocol, SEND_PERIOD, RECEIVE_PERIOD);
+
+        // act
+        client.setOption("SetOfflineMessageStore", "notSettings");
+    }
+
+    @Test
+    public void setOptionEventDrivenReceiveAndReceiveBatchSizeSucceed()
+            throws IOException, URISyntaxException
+    {
+        // arrange
+        final IotHubClientProtocol protocol = IotHubClientProtocol.AMQPS;
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = false;
+            }
+        };
+        InternalClient client = Deencapsulation.newInstance(InternalClient.class, new Class[] {IotHubConnectionString.class, IotHubClientProtocol.class, long.class, long.class}, mockIotHubConnectionString, protocol, SEND_PERIOD, RECEIVE_PERIOD);
+
+        // act
+        client.setOption("SetEventDrivenReceive", true);
+        client.setOption("SetReceiveBatchSize", 100);
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockConfig.setEventDrivenReceive(true);
+                times = 1;
+                mockConfig.setReceiveBatchSize(100);
+                times = 1;
+            }
+        };
+    }
+
+    @Test (expected = IllegalStateException.class)
+    public void setOptionEventDrivenReceiveAfterOpenFails()
+            throws IOException, URISyntaxException
+    {
+        // arrange
+        final IotHubClientProtocol protocol = IotHubClientProtocol.AMQPS;
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = true;
+            }
+        };
+        InternalClient client = Deencapsulation.newInstance(InternalClient.class, new Class[] {IotHubConnectionString.class, IotHubClientProtocol.class, long.class, long.class}, mockIotHubConnectionString, protocol, SEND_PERIOD, RECEIVE_PERIOD);
+
+        // act
+        client.setOption("SetEventDrivenReceive", true);
+    }
+
+    @Test
+    public void setOptionMessageCallbackConcurrencySucceeds()
+            throws IOException, URISyntaxException
+    {
+        // arrange
+        final IotHubClientProtocol protocol = IotHubClientProtocol.MQTT;
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = false;
+            }
+        };
+        InternalClient client = Deencapsulation.newInstance(InternalClient.class, new Class[] {IotHubConnectionString.class, IotHubClientProtocol.class, long.class, long.class}, mockIotHubConnectionString, protocol, SEND_PERIOD, RECEIVE_PERIOD);
+
+        // act
+        client.setOption("SetMessageCallbackConcurrency", 4);
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockConfig.setMessageCallbackConcurrency(4);
+                times = 1;
+            }
+        };
+    }
+
+    @Test (expected = IllegalStateException.class)
+    public void setOptionMessageCallbackConcurrencyAfterOpenFails()
+            throws IOException, URISyntaxException
+    {
+        // arrange
+        final IotHubClientProtocol protocol = IotHubClientProtocol.MQTT;
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = true;
+            }
+        };
+        InternalClient client = Deencapsulation.newInstance(InternalClient.class, new Class[] {IotHubConnectionString.class, IotHubClientProtocol.class, long.class, long.class}, mockIotHubConnectionString, protocol, SEND_PERIOD, RECEIVE_PERIOD);
+
+        // act
+        client.setOption("SetMessageCallbackConcurrency", 4);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void setOptionReceiveBatchSizeWithLongFails()
+            throws IOException, URISyntaxException
+    {
+        // arrange
+        final IotHubClientProtocol protocol = IotHubClientProtocol.AMQPS;
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = false;
+            }
+        };
+        InternalClient client = Deencapsulation.newInstance(InternalClient.class, new Class[] {IotHubConnectionString.class, IotHubClientProtocol.class, long.class, long.class}, mockIotHubConnectionString, protocol, SEND_PERIOD, RECEIVE_PERIOD);
+
+        // act
+        client.setOption("SetReceiveBatchSize", 100L);
+    }
+
     @Test (expected = IllegalArgumentException.class)
     public void setOptionSendIntervalWithStringInsteadOfLongFails()
             throws IOException, URISyntaxException
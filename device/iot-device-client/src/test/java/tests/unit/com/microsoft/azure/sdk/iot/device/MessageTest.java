@@ -5,6 +5,7 @@ package tests.unit.com.microsoft.azure.sdk.iot.device;
 
 import com.microsoft.azure.sdk.iot.device.IotHubConnectionString;
 import com.microsoft.azure.sdk.iot.device.Message;
+import com.microsoft.azure.sdk.iot.device.MessageBodyAccessor;
 import com.microsoft.azure.sdk.iot.device.MessageProperty;
 import com.microsoft.azure.sdk.iot.device.MessageType;
 import mockit.Deencapsulation;
@@ -12,6 +13,7 @@ import mockit.Mocked;
 import mockit.NonStrictExpectations;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 
@@ -113,6 +115,47 @@ public class MessageTest
         assertThat(testValue, is(expectedValue));
     }
 
+    @Test
+    public void getBodyBufferSpansBodyWithoutCopy()
+    {
+        final byte[] body = { 0x61, 0x62, 0x63 };
+
+        Message msg = new Message(body);
+        ByteBuffer testBody = MessageBodyAccessor.getBodyBuffer(msg);
+        byte[] testBytes = new byte[testBody.remaining()];
+        testBody.get(testBytes);
+
+        assertArrayEquals(body, testBytes);
+        assertArrayEquals(body, msg.getBytes());
+    }
+
+    @Test
+    public void getBodyBufferIsReadOnly()
+    {
+        final byte[] body = { 0x61, 0x62, 0x63 };
+
+        Message msg = new Message(body);
+        ByteBuffer testBody = MessageBodyAccessor.getBodyBuffer(msg);
+
+        assertTrue(testBody.isReadOnly());
+        assertFalse(testBody.hasArray());
+    }
+
+    @Test
+    public void getBodyBufferReturnsNullWithoutBody()
+    {
+        Message msg = new Message();
+
+        assertNull(MessageBodyAccessor.getBodyBuffer(msg));
+    }
+
+    // Tests_SRS_MESSAGEBODYACCESSOR_12_001: [If the message is null, the function shall throw an IllegalArgumentException.]
+    @Test(expected = IllegalArgumentException.class)
+    public void getBodyBufferRejectsNullMessage()
+    {
+        MessageBodyAccessor.getBodyBuffer(null);
+    }
+
     // Tests_SRS_MESSAGE_11_028: [If name is null, the function shall throw an IllegalArgumentException.]
     @Test(expected = IllegalArgumentException.class)
     public void setPropertyRejectsNullName()
@@ -282,6 +325,17 @@ public class MessageTest
         assertFalse(msg.isExpired());
     }
 
+    // Tests_SRS_MESSAGE_12_001: [The function shall return the message's absolute expiry time.]
+    @Test
+    public void getExpiryTimeReturnsAbsoluteExpiryTime()
+    {
+        Message msg = new Message("body");
+        assertEquals(0, msg.getExpiryTime());
+
+        msg.setAbsoluteExpiryTime(1234L);
+        assertEquals(1234L, msg.getExpiryTime());
+    }
+
     // Tests_SRS_MESSAGE_34_038: [If the provided absolute expiry time is negative, an IllegalArgumentException shall be thrown.]
     @Test (expected = IllegalArgumentException.class)
     public void setAbsoluteTimeWithNegativeTimeThrowsIllegalArgumentException()
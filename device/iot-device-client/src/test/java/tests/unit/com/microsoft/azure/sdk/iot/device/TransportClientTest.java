@@ -3,16 +3,15 @@ package tests.unit.com.microsoft.azure.sdk.iot.device;
 import com.microsoft.azure.sdk.iot.device.*;
 import com.microsoft.azure.sdk.iot.device.auth.IotHubSasTokenAuthenticationProvider;
 import com.microsoft.azure.sdk.iot.device.exceptions.TransportException;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubConnectionStatus;
 import com.microsoft.azure.sdk.iot.device.transport.NoRetry;
 import com.microsoft.azure.sdk.iot.device.transport.RetryPolicy;
-import mockit.Deencapsulation;
-import mockit.Mocked;
-import mockit.NonStrictExpectations;
-import mockit.Verifications;
+import mockit.*;
 import org.junit.Test;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import static org.junit.Assert.*;
 
@@ -23,6 +22,11 @@ import static org.junit.Assert.*;
  */
 public class TransportClientTest
 {
+    private static ArrayList<DeviceIO> deviceIOListOf(DeviceIO... deviceIOs)
+    {
+        return new ArrayList<>(Arrays.asList(deviceIOs));
+    }
+
     @Mocked
     DeviceClient mockDeviceClient;
 
@@ -72,7 +76,7 @@ public class TransportClientTest
     }
 
     // Tests_SRS_TRANSPORTCLIENT_12_002: [The constructor shall store the provided protocol.]
-    // Tests_SRS_TRANSPORTCLIENT_12_003: [The constructor shall set the the deviceIO to null.]
+    // Tests_SRS_TRANSPORTCLIENT_12_003: [The constructor shall initialize the deviceIO list to empty.]
     // Tests_SRS_TRANSPORTCLIENT_12_004: [The constructor shall initialize the device list member.]
     @Test
     public void constructorSuccessAMQPS()
@@ -85,11 +89,12 @@ public class TransportClientTest
 
         // assert
         IotHubClientProtocol actualProtocol = Deencapsulation.getField(transportClient, "iotHubClientProtocol");
-        DeviceIO deviceIO = Deencapsulation.getField(transportClient, "deviceIO");
+        ArrayList deviceIOList = Deencapsulation.getField(transportClient, "deviceIOList");
         ArrayList deviceClientList = Deencapsulation.getField(transportClient, "deviceClientList");
 
         assertEquals(iotHubClientProtocol, actualProtocol);
-        assertNull(deviceIO);
+        assertTrue(deviceIOList.isEmpty());
+        assertEquals(1, transportClient.getConnectionCount());
         assertNotNull(deviceClientList);
     }
 
@@ -100,7 +105,7 @@ public class TransportClientTest
         // arrange
         IotHubClientProtocol iotHubClientProtocol = IotHubClientProtocol.AMQPS;
         TransportClient transportClient = new TransportClient(iotHubClientProtocol);
-        Deencapsulation.setField(transportClient, "deviceIO", mockDeviceIO);
+        Deencapsulation.setField(transportClient, "deviceIOList", deviceIOListOf(mockDeviceIO));
 
         new NonStrictExpectations()
         {
@@ -121,7 +126,7 @@ public class TransportClientTest
         // arrange
         IotHubClientProtocol iotHubClientProtocol = IotHubClientProtocol.AMQPS;
         TransportClient transportClient = new TransportClient(iotHubClientProtocol);
-        Deencapsulation.setField(transportClient, "deviceIO", mockDeviceIO);
+        Deencapsulation.setField(transportClient, "deviceIOList", deviceIOListOf(mockDeviceIO));
 
         new NonStrictExpectations()
         {
@@ -145,8 +150,8 @@ public class TransportClientTest
         };
     }
 
-    // Tests_SRS_TRANSPORTCLIENT_12_011: [The function shall create a new DeviceIO using the first registered device client's configuration.]
-    // Tests_SRS_TRANSPORTCLIENT_12_012: [The function shall set the created DeviceIO to all registered device client.]
+    // Tests_SRS_TRANSPORTCLIENT_12_011: [The function shall create a new DeviceIO for each connection that has device clients, using the configuration of its first device client.]
+    // Tests_SRS_TRANSPORTCLIENT_12_012: [The function shall set the created DeviceIO to all device clients of its connection.]
     // Tests_SRS_TRANSPORTCLIENT_12_013: [The function shall open the transport in multiplexing mode.]
     @Test
     public void openSuccess() throws IOException, TransportException
@@ -175,7 +180,9 @@ public class TransportClientTest
 
         // assert
         final ArrayList<DeviceClient> actualDeviceClientList = Deencapsulation.getField(transportClient, "deviceClientList");
-        final DeviceIO actualDeviceIO =  Deencapsulation.getField(transportClient, "deviceIO");
+        final ArrayList<DeviceIO> actualDeviceIOList = Deencapsulation.getField(transportClient, "deviceIOList");
+        assertEquals(1, actualDeviceIOList.size());
+        final DeviceIO actualDeviceIO = actualDeviceIOList.get(0);
 
         assertNotNull(actualDeviceIO);
         new Verifications()
@@ -196,7 +203,7 @@ public class TransportClientTest
         // arrange
         IotHubClientProtocol iotHubClientProtocol = IotHubClientProtocol.AMQPS;
         final TransportClient transportClient = new TransportClient(iotHubClientProtocol);
-        Deencapsulation.setField(transportClient, "deviceIO", mockDeviceIO);
+        Deencapsulation.setField(transportClient, "deviceIOList", deviceIOListOf(mockDeviceIO));
 
         // act
         transportClient.closeNow();
@@ -205,8 +212,8 @@ public class TransportClientTest
         ArrayList<DeviceClient> actualDeviceClientList = Deencapsulation.getField(transportClient, "deviceClientList");
         assertEquals(actualDeviceClientList.size(), 0);
 
-        DeviceIO deviceIO = Deencapsulation.getField(transportClient, "deviceIO");
-        assertNull(deviceIO);
+        ArrayList<DeviceIO> deviceIOList = Deencapsulation.getField(transportClient, "deviceIOList");
+        assertTrue(deviceIOList.isEmpty());
 
         new Verifications()
         {
@@ -217,7 +224,7 @@ public class TransportClientTest
         };
     }
 
-    // Tests_SRS_TRANSPORTCLIENT_12_014: [If the deviceIO not null the function shall call multiplexClose on the deviceIO and set the deviceIO to null.]
+    // Tests_SRS_TRANSPORTCLIENT_12_014: [The function shall call multiplexClose on every deviceIO and clear the deviceIO list.]
     // Tests_SRS_TRANSPORTCLIENT_12_015: [If the registered device list is not empty the function shall call closeFileUpload on all devices.]
     // Tests_SRS_TRANSPORTCLIENT_12_016: [The function shall clear the registered device list.]
     @Test
@@ -226,15 +233,15 @@ public class TransportClientTest
         // arrange
         IotHubClientProtocol iotHubClientProtocol = IotHubClientProtocol.AMQPS;
         final TransportClient transportClient = new TransportClient(iotHubClientProtocol);
-        Deencapsulation.setField(transportClient, "deviceIO", mockDeviceIO);
+        Deencapsulation.setField(transportClient, "deviceIOList", deviceIOListOf(mockDeviceIO));
         Deencapsulation.invoke(transportClient, "registerDeviceClient", mockDeviceClient);
 
         // act
         transportClient.closeNow();
 
         // assert
-        DeviceIO deviceIO = Deencapsulation.getField(transportClient, "deviceIO");
-        assertNull(deviceIO);
+        ArrayList<DeviceIO> deviceIOList = Deencapsulation.getField(transportClient, "deviceIOList");
+        assertTrue(deviceIOList.isEmpty());
 
         new Verifications()
         {
@@ -268,7 +275,7 @@ public class TransportClientTest
         final long value = 42;
         IotHubClientProtocol iotHubClientProtocol = IotHubClientProtocol.AMQPS;
         TransportClient transportClient = new TransportClient(iotHubClientProtocol);
-        Deencapsulation.setField(transportClient, "deviceIO", mockDeviceIO);
+        Deencapsulation.setField(transportClient, "deviceIOList", deviceIOListOf(mockDeviceIO));
         Deencapsulation.setField(transportClient, "transportClientState", TransportClient.TransportClientState.CLOSED);
 
         // act
@@ -289,7 +296,7 @@ public class TransportClientTest
         transportClient.setSendInterval(value);
     }
 
-    // Tests_SRS_TRANSPORTCLIENT_12_018: [The function shall set the new interval on the underlying device IO it the transport client is not open.]
+    // Tests_SRS_TRANSPORTCLIENT_12_018: [The function shall set the new interval on the underlying device IO of every connection it the transport client is not open.]
     @Test
     public void setSendIntervalSuccess() throws IOException
     {
@@ -297,7 +304,7 @@ public class TransportClientTest
         final long value = 42;
         IotHubClientProtocol iotHubClientProtocol = IotHubClientProtocol.AMQPS;
         TransportClient transportClient = new TransportClient(iotHubClientProtocol);
-        Deencapsulation.setField(transportClient, "deviceIO", mockDeviceIO);
+        Deencapsulation.setField(transportClient, "deviceIOList", deviceIOListOf(mockDeviceIO));
         Deencapsulation.setField(transportClient, "transportClientState", TransportClient.TransportClientState.OPENED);
 
         // act
@@ -323,14 +330,14 @@ public class TransportClientTest
         Deencapsulation.invoke(transportClient, "registerDeviceClient", (DeviceClient)null);
     }
 
-    // Tests_SRS_TRANSPORTCLIENT_12_006: [The function shall throw  IllegalStateException if the connection is already open.]
-    @Test (expected = IllegalStateException.class)
-    public void registerDeviceClientThrowsOpen()
+    // Tests_SRS_TRANSPORTCLIENT_12_007: [The function shall add the given device client to the deviceClientList.]
+    @Test
+    public void registerDeviceClientWhileOpenOnlyAddsToList() throws IOException
     {
         // arrange
         IotHubClientProtocol iotHubClientProtocol = IotHubClientProtocol.AMQPS;
         TransportClient transportClient = new TransportClient(iotHubClientProtocol);
-        Deencapsulation.setField(transportClient, "deviceIO", mockDeviceIO);
+        Deencapsulation.setField(transportClient, "deviceIOList", deviceIOListOf(mockDeviceIO));
 
         new NonStrictExpectations()
         {
@@ -342,6 +349,17 @@ public class TransportClientTest
 
         // act
         Deencapsulation.invoke(transportClient, "registerDeviceClient", mockDeviceClient);
+
+        // assert
+        ArrayList<DeviceClient> actualDeviceClientList = Deencapsulation.getField(transportClient, "deviceClientList");
+        assertEquals(1, actualDeviceClientList.size());
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(mockDeviceIO, "addClient", new Class[] {DeviceClientConfig.class}, any);
+                times = 0;
+            }
+        };
     }
 
     // Tests_SRS_TRANSPORTCLIENT_12_007: [The function shall add the given device client to the deviceClientList.]
@@ -422,4 +440,529 @@ public class TransportClientTest
             }
         };
     }
+
+    // Tests_SRS_TRANSPORTCLIENT_12_024: [If the `connectionCount` is less than 1, the constructor shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsConnectionCountZero()
+    {
+        // act
+        new TransportClient(IotHubClientProtocol.AMQPS, 0);
+    }
+
+    // Tests_SRS_TRANSPORTCLIENT_12_027: [The getter shall return the connection count.]
+    @Test
+    public void getConnectionCountReturnsConnectionCount()
+    {
+        // act
+        TransportClient transportClient = new TransportClient(IotHubClientProtocol.AMQPS_WS, 4);
+
+        // assert
+        assertEquals(4, transportClient.getConnectionCount());
+    }
+
+    // Tests_SRS_TRANSPORTCLIENT_12_028: [The function shall return the non-negative hash of the device id modulo the connection count.]
+    @Test
+    public void getShardIndexIsNonNegativeForNegativeHash()
+    {
+        // arrange
+        final String deviceId = "polygenelubricants";
+        assertTrue(deviceId.hashCode() < 0);
+
+        // act
+        int shardIndex = Deencapsulation.invoke(TransportClient.class, "getShardIndex", deviceId, 3);
+
+        // assert
+        assertEquals((deviceId.hashCode() & Integer.MAX_VALUE) % 3, shardIndex);
+    }
+
+    // Tests_SRS_TRANSPORTCLIENT_12_011: [The function shall create a new DeviceIO for each connection that has device clients, using the configuration of its first device client.]
+    // Tests_SRS_TRANSPORTCLIENT_12_012: [The function shall set the created DeviceIO to all device clients of its connection.]
+    @Test
+    public void openSpreadsDevicesAcrossConnections() throws IOException
+    {
+        // arrange
+        final TransportClient transportClient = new TransportClient(IotHubClientProtocol.AMQPS, 2);
+        Deencapsulation.invoke(transportClient, "registerDeviceClient", mockDeviceClient);
+        Deencapsulation.invoke(transportClient, "registerDeviceClient", mockDeviceClient);
+
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceClient.getConfig();
+                result = mockDeviceClientConfig;
+                // "a" and "b" hash to different connections out of 2
+                mockDeviceClientConfig.getDeviceId();
+                returns("a", "b");
+            }
+        };
+
+        // act
+        transportClient.open();
+
+        // assert
+        ArrayList<DeviceIO> actualDeviceIOList = Deencapsulation.getField(transportClient, "deviceIOList");
+        assertEquals(2, actualDeviceIOList.size());
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(mockDeviceIO, "addClient", mockDeviceClientConfig);
+                times = 0;
+                Deencapsulation.invoke(mockDeviceIO, "open");
+                times = 2;
+            }
+        };
+    }
+
+    // Tests_SRS_TRANSPORTCLIENT_12_012: [The function shall set the created DeviceIO to all device clients of its connection.]
+    @Test
+    public void openMultiplexesDevicesOfTheSameConnection() throws IOException
+    {
+        // arrange
+        final TransportClient transportClient = new TransportClient(IotHubClientProtocol.AMQPS, 2);
+        Deencapsulation.invoke(transportClient, "registerDeviceClient", mockDeviceClient);
+        Deencapsulation.invoke(transportClient, "registerDeviceClient", mockDeviceClient);
+
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceClient.getConfig();
+                result = mockDeviceClientConfig;
+                // "a" and "c" hash to the same connection out of 2
+                mockDeviceClientConfig.getDeviceId();
+                returns("a", "c");
+            }
+        };
+
+        // act
+        transportClient.open();
+
+        // assert
+        ArrayList<DeviceIO> actualDeviceIOList = Deencapsulation.getField(transportClient, "deviceIOList");
+        assertEquals(1, actualDeviceIOList.size());
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(mockDeviceIO, "addClient", mockDeviceClientConfig);
+                times = 1;
+                Deencapsulation.invoke(mockDeviceIO, "open");
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_TRANSPORTCLIENT_12_025: [If a connection cannot be opened, the function shall close the connections opened so far and rethrow the exception.]
+    @Test
+    public void openClosesOpenedConnectionsIfOneFails() throws IOException
+    {
+        // arrange
+        final TransportClient transportClient = new TransportClient(IotHubClientProtocol.AMQPS, 2);
+        Deencapsulation.invoke(transportClient, "registerDeviceClient", mockDeviceClient);
+        Deencapsulation.invoke(transportClient, "registerDeviceClient", mockDeviceClient);
+
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceClient.getConfig();
+                result = mockDeviceClientConfig;
+                mockDeviceClientConfig.getDeviceId();
+                returns("a", "b");
+                Deencapsulation.invoke(mockDeviceIO, "open");
+                result = null;
+                result = new IOException();
+            }
+        };
+
+        // act
+        try
+        {
+            transportClient.open();
+            fail("open should have thrown");
+        }
+        catch (IOException expected)
+        {
+            // expected
+        }
+
+        // assert
+        ArrayList<DeviceIO> actualDeviceIOList = Deencapsulation.getField(transportClient, "deviceIOList");
+        assertTrue(actualDeviceIOList.isEmpty());
+        assertEquals(TransportClient.TransportClientState.CLOSED, Deencapsulation.invoke(transportClient, "getTransportClientState"));
+        new Verifications()
+        {
+            {
+                mockDeviceIO.multiplexClose();
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_TRANSPORTCLIENT_12_014: [The function shall call multiplexClose on every deviceIO and clear the deviceIO list.]
+    @Test
+    public void closeNowClosesEveryConnection() throws IOException
+    {
+        // arrange
+        final TransportClient transportClient = new TransportClient(IotHubClientProtocol.AMQPS, 2);
+        Deencapsulation.setField(transportClient, "deviceIOList", deviceIOListOf(mockDeviceIO, mockDeviceIO));
+
+        // act
+        transportClient.closeNow();
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockDeviceIO.multiplexClose();
+                times = 2;
+            }
+        };
+    }
+
+    // Tests_SRS_TRANSPORTCLIENT_12_018: [The function shall set the new interval on the underlying device IO of every connection it the transport client is not open.]
+    @Test
+    public void setSendIntervalSetsEveryConnection() throws IOException
+    {
+        // arrange
+        final long value = 42;
+        TransportClient transportClient = new TransportClient(IotHubClientProtocol.AMQPS, 2);
+        Deencapsulation.setField(transportClient, "deviceIOList", deviceIOListOf(mockDeviceIO, mockDeviceIO));
+        Deencapsulation.setField(transportClient, "transportClientState", TransportClient.TransportClientState.OPENED);
+
+        // act
+        transportClient.setSendInterval(value);
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockDeviceIO.setSendPeriodInMilliseconds(value);
+                times = 2;
+            }
+        };
+    }
+
+    // Tests_SRS_TRANSPORTCLIENT_12_026: [The function shall save the callback and context, and register them with every open connection.]
+    @Test
+    public void registerConnectionStatusChangeCallbackRegistersWithEveryConnection()
+    {
+        // arrange
+        TransportClient transportClient = new TransportClient(IotHubClientProtocol.AMQPS, 2);
+        Deencapsulation.setField(transportClient, "deviceIOList", deviceIOListOf(mockDeviceIO, mockDeviceIO));
+
+        // act
+        transportClient.registerConnectionStatusChangeCallback(new RecordingStatusCallback(), null);
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockDeviceIO.registerConnectionStatusChangeCallback((IotHubConnectionStatusChangeCallback) any, 0);
+                times = 1;
+                mockDeviceIO.registerConnectionStatusChangeCallback((IotHubConnectionStatusChangeCallback) any, 1);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_TRANSPORTCLIENT_12_029: [The aggregator shall record the status of the reporting connection and invoke the user callback only if the combined status changed.]
+    @Test
+    public void aggregatorReportsConnectedOnlyWhenAllConnectionsAreConnected()
+    {
+        // arrange
+        final Object context = new Object();
+        RecordingStatusCallback callback = new RecordingStatusCallback();
+        IotHubConnectionStatusChangeCallback aggregator = newAggregator(callback, context,
+                IotHubConnectionStatus.DISCONNECTED, IotHubConnectionStatus.DISCONNECTED);
+
+        // act
+        aggregator.execute(IotHubConnectionStatus.CONNECTED, IotHubConnectionStatusChangeReason.CONNECTION_OK, null, 0);
+        aggregator.execute(IotHubConnectionStatus.CONNECTED, IotHubConnectionStatusChangeReason.CONNECTION_OK, null, 1);
+
+        // assert
+        assertEquals(1, callback.statuses.size());
+        assertEquals(IotHubConnectionStatus.CONNECTED, callback.statuses.get(0));
+        assertSame(context, callback.context);
+    }
+
+    // Tests_SRS_TRANSPORTCLIENT_12_029: [The aggregator shall record the status of the reporting connection and invoke the user callback only if the combined status changed.]
+    @Test
+    public void aggregatorReportsTheWorstConnectionStatus()
+    {
+        // arrange
+        RecordingStatusCallback callback = new RecordingStatusCallback();
+        IotHubConnectionStatusChangeCallback aggregator = newAggregator(callback, null,
+                IotHubConnectionStatus.CONNECTED, IotHubConnectionStatus.CONNECTED);
+
+        // act
+        aggregator.execute(IotHubConnectionStatus.DISCONNECTED_RETRYING, IotHubConnectionStatusChangeReason.NO_NETWORK, null, 0);
+        aggregator.execute(IotHubConnectionStatus.DISCONNECTED_RETRYING, IotHubConnectionStatusChangeReason.NO_NETWORK, null, 1);
+        aggregator.execute(IotHubConnectionStatus.DISCONNECTED, IotHubConnectionStatusChangeReason.RETRY_EXPIRED, null, 1);
+        aggregator.execute(IotHubConnectionStatus.CONNECTED, IotHubConnectionStatusChangeReason.CONNECTION_OK, null, 0);
+
+        // assert
+        assertEquals(2, callback.statuses.size());
+        assertEquals(IotHubConnectionStatus.DISCONNECTED_RETRYING, callback.statuses.get(0));
+        assertEquals(IotHubConnectionStatus.DISCONNECTED, callback.statuses.get(1));
+    }
+
+    // Tests_SRS_TRANSPORTCLIENT_12_035: [The function shall throw IllegalStateException if the transport client is not open.]
+    @Test (expected = IllegalStateException.class)
+    public void openDeviceClientThrowsIfNotOpen()
+    {
+        // arrange
+        TransportClient transportClient = new TransportClient(IotHubClientProtocol.AMQPS);
+
+        // act
+        Deencapsulation.invoke(transportClient, "openDeviceClient", mockDeviceClient);
+    }
+
+    // Tests_SRS_TRANSPORTCLIENT_12_036: [The function shall do nothing if the device client is already connected.]
+    @Test
+    public void openDeviceClientDoesNothingIfConnected() throws IOException
+    {
+        // arrange
+        TransportClient transportClient = new TransportClient(IotHubClientProtocol.AMQPS);
+        Deencapsulation.setField(transportClient, "transportClientState", TransportClient.TransportClientState.OPENED);
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockDeviceClient, "getDeviceIO");
+                result = mockDeviceIO;
+                mockDeviceIO.isOpen();
+                result = true;
+            }
+        };
+
+        // act
+        Deencapsulation.invoke(transportClient, "openDeviceClient", mockDeviceClient);
+
+        // assert
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(mockDeviceIO, "addClient", new Class[] {DeviceClientConfig.class}, any);
+                times = 0;
+                Deencapsulation.invoke(mockDeviceIO, "open");
+                times = 0;
+            }
+        };
+    }
+
+    // Tests_SRS_TRANSPORTCLIENT_12_037: [If the shard of the device has an open connection, the function shall add the device to that connection.]
+    @Test
+    public void openDeviceClientJoinsOpenConnectionOfItsShard(@Mocked final DeviceClient newDeviceClient,
+                                                              @Mocked final DeviceIO sharedDeviceIO) throws IOException
+    {
+        // arrange
+        final TransportClient transportClient = new TransportClient(IotHubClientProtocol.AMQPS);
+        Deencapsulation.invoke(transportClient, "registerDeviceClient", mockDeviceClient);
+        Deencapsulation.invoke(transportClient, "registerDeviceClient", newDeviceClient);
+        Deencapsulation.setField(transportClient, "deviceIOList", deviceIOListOf(sharedDeviceIO));
+        Deencapsulation.setField(transportClient, "transportClientState", TransportClient.TransportClientState.OPENED);
+
+        new Expectations()
+        {
+            {
+                Deencapsulation.invoke(newDeviceClient, "getDeviceIO");
+                result = null;
+                Deencapsulation.invoke(mockDeviceClient, "getDeviceIO");
+                result = sharedDeviceIO;
+                sharedDeviceIO.isOpen();
+                result = true;
+                newDeviceClient.getConfig();
+                result = mockDeviceClientConfig;
+            }
+        };
+
+        // act
+        Deencapsulation.invoke(transportClient, "openDeviceClient", newDeviceClient);
+
+        // assert
+        ArrayList<DeviceIO> actualDeviceIOList = Deencapsulation.getField(transportClient, "deviceIOList");
+        assertEquals(1, actualDeviceIOList.size());
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(sharedDeviceIO, "addClient", mockDeviceClientConfig);
+                times = 1;
+                Deencapsulation.invoke(newDeviceClient, "setDeviceIO", sharedDeviceIO);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_TRANSPORTCLIENT_12_038: [If the shard of the device has no open connection, the function shall open a new connection for the device, with the send interval of the other connections.]
+    @Test
+    public void openDeviceClientOpensNewConnectionIfShardHasNone() throws IOException
+    {
+        // arrange
+        final TransportClient transportClient = new TransportClient(IotHubClientProtocol.AMQPS);
+        Deencapsulation.invoke(transportClient, "registerDeviceClient", mockDeviceClient);
+        Deencapsulation.setField(transportClient, "transportClientState", TransportClient.TransportClientState.OPENED);
+
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockDeviceClient, "getDeviceIO");
+                result = null;
+                mockDeviceClient.getConfig();
+                result = mockDeviceClientConfig;
+            }
+        };
+
+        // act
+        Deencapsulation.invoke(transportClient, "openDeviceClient", mockDeviceClient);
+
+        // assert
+        ArrayList<DeviceIO> actualDeviceIOList = Deencapsulation.getField(transportClient, "deviceIOList");
+        assertEquals(1, actualDeviceIOList.size());
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(mockDeviceIO, "open");
+                times = 1;
+                Deencapsulation.invoke(mockDeviceClient, "setDeviceIO", new Class[] {DeviceIO.class}, any);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_TRANSPORTCLIENT_12_030: [The function shall throw IllegalArgumentException if the deviceClient parameter is null.]
+    @Test (expected = IllegalArgumentException.class)
+    public void unregisterDeviceClientThrowsDeviceClientNull() throws IOException
+    {
+        // act
+        new TransportClient(IotHubClientProtocol.AMQPS).unregisterDeviceClient(null);
+    }
+
+    // Tests_SRS_TRANSPORTCLIENT_12_031: [The function shall do nothing if the device client is not registered.]
+    @Test
+    public void unregisterDeviceClientDoesNothingIfNotRegistered() throws IOException
+    {
+        // arrange
+        TransportClient transportClient = new TransportClient(IotHubClientProtocol.AMQPS);
+
+        // act
+        transportClient.unregisterDeviceClient(mockDeviceClient);
+
+        // assert
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(mockDeviceClient, "closeFileUpload");
+                times = 0;
+                Deencapsulation.invoke(mockDeviceClient, "setDeviceIO", new Class[] {DeviceIO.class}, any);
+                times = 0;
+            }
+        };
+    }
+
+    // Tests_SRS_TRANSPORTCLIENT_12_032: [If the device shares its connection with other devices, the function shall remove it from that connection.]
+    // Tests_SRS_TRANSPORTCLIENT_12_034: [The function shall detach the device IO from the device client.]
+    @Test
+    public void unregisterDeviceClientLeavesSharedConnectionOpen() throws IOException
+    {
+        // arrange
+        final TransportClient transportClient = new TransportClient(IotHubClientProtocol.AMQPS);
+        Deencapsulation.invoke(transportClient, "registerDeviceClient", mockDeviceClient);
+        Deencapsulation.setField(transportClient, "deviceIOList", deviceIOListOf(mockDeviceIO));
+
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockDeviceClient, "getDeviceIO");
+                result = mockDeviceIO;
+                mockDeviceClient.getConfig();
+                result = mockDeviceClientConfig;
+                mockDeviceIO.isOpen();
+                result = true;
+                Deencapsulation.invoke(mockDeviceIO, "getClientCount");
+                result = 2;
+            }
+        };
+
+        // act
+        transportClient.unregisterDeviceClient(mockDeviceClient);
+
+        // assert
+        ArrayList<DeviceClient> actualDeviceClientList = Deencapsulation.getField(transportClient, "deviceClientList");
+        ArrayList<DeviceIO> actualDeviceIOList = Deencapsulation.getField(transportClient, "deviceIOList");
+        assertTrue(actualDeviceClientList.isEmpty());
+        assertEquals(1, actualDeviceIOList.size());
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(mockDeviceClient, "closeFileUpload");
+                times = 1;
+                Deencapsulation.invoke(mockDeviceIO, "removeClient", mockDeviceClientConfig);
+                times = 1;
+                mockDeviceIO.multiplexClose();
+                times = 0;
+                Deencapsulation.invoke(mockDeviceClient, "setDeviceIO", new Class[] {DeviceIO.class}, (DeviceIO) null);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_TRANSPORTCLIENT_12_033: [If the device is the last device of its connection, the function shall close that connection without reporting it to the connection status callback.]
+    @Test
+    public void unregisterDeviceClientClosesConnectionOfLastDevice() throws IOException
+    {
+        // arrange
+        final TransportClient transportClient = new TransportClient(IotHubClientProtocol.AMQPS);
+        Deencapsulation.invoke(transportClient, "registerDeviceClient", mockDeviceClient);
+        Deencapsulation.setField(transportClient, "deviceIOList", deviceIOListOf(mockDeviceIO));
+
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockDeviceClient, "getDeviceIO");
+                result = mockDeviceIO;
+                mockDeviceIO.isOpen();
+                result = true;
+                Deencapsulation.invoke(mockDeviceIO, "getClientCount");
+                result = 1;
+            }
+        };
+
+        // act
+        transportClient.unregisterDeviceClient(mockDeviceClient);
+
+        // assert
+        ArrayList<DeviceIO> actualDeviceIOList = Deencapsulation.getField(transportClient, "deviceIOList");
+        assertTrue(actualDeviceIOList.isEmpty());
+        new VerificationsInOrder()
+        {
+            {
+                mockDeviceIO.registerConnectionStatusChangeCallback(null, null);
+                mockDeviceIO.multiplexClose();
+            }
+        };
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(mockDeviceIO, "removeClient", new Class[] {DeviceClientConfig.class}, any);
+                times = 0;
+            }
+        };
+    }
+
+    private static IotHubConnectionStatusChangeCallback newAggregator(IotHubConnectionStatusChangeCallback callback, Object context, IotHubConnectionStatus... initialStatuses)
+    {
+        return Deencapsulation.newInstance("com.microsoft.azure.sdk.iot.device.TransportClient$ConnectionStatusAggregator",
+                new Class[] {IotHubConnectionStatus[].class, IotHubConnectionStatusChangeCallback.class, Object.class},
+                initialStatuses, callback, context);
+    }
+
+    private static class RecordingStatusCallback implements IotHubConnectionStatusChangeCallback
+    {
+        final ArrayList<IotHubConnectionStatus> statuses = new ArrayList<>();
+        Object context;
+
+        @Override
+        public void execute(IotHubConnectionStatus status, IotHubConnectionStatusChangeReason statusChangeReason, Throwable throwable, Object callbackContext)
+        {
+            this.statuses.add(status);
+            this.context = callbackContext;
+        }
+    }
 }
@@ -0,0 +1,583 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.device.fileupload;
+
+import com.microsoft.azure.sdk.iot.deps.util.Base64;
+import com.microsoft.azure.sdk.iot.device.fileupload.FileUploadOptions;
+import com.microsoft.azure.sdk.iot.device.fileupload.FileUploadProgress;
+import com.microsoft.azure.sdk.iot.device.fileupload.FileUploadProgressCallback;
+import com.microsoft.azure.storage.AccessCondition;
+import com.microsoft.azure.storage.OperationContext;
+import com.microsoft.azure.storage.StorageException;
+import com.microsoft.azure.storage.StorageExtendedErrorInformation;
+import com.microsoft.azure.storage.blob.BlobRequestOptions;
+import com.microsoft.azure.storage.blob.BlockEntry;
+import com.microsoft.azure.storage.blob.BlockListingFilter;
+import com.microsoft.azure.storage.blob.CloudBlockBlob;
+import mockit.Deencapsulation;
+import mockit.Delegate;
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
+import mockit.Verifications;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for block blob uploader class.
+ */
+public class BlockBlobUploaderTest
+{
+    private static final String BLOCK_BLOB_UPLOADER_CLASS = "com.microsoft.azure.sdk.iot.device.fileupload.BlockBlobUploader";
+    private static final String PROGRESS_TRACKER_CLASS = "com.microsoft.azure.sdk.iot.device.fileupload.FileUploadProgressTracker";
+    private static final byte[] TEST_DATA = "0123456789".getBytes();
+
+    @Mocked
+    private CloudBlockBlob mockCloudBlockBlob;
+
+    private ExecutorService blockUploadExecutor;
+
+    @Before
+    public void setUp()
+    {
+        blockUploadExecutor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown()
+    {
+        blockUploadExecutor.shutdownNow();
+    }
+
+    private Object createUploader(int blockSize, int concurrency, int maxRetries, boolean resumable) throws ClassNotFoundException
+    {
+        // retries without waiting, the backoff has its own tests
+        return createUploader(blockSize, concurrency, maxRetries, resumable, blockUploadExecutor, 0L);
+    }
+
+    private static FileUploadOptions createOptions(int blockSize, int concurrency, int maxRetries, boolean resumable)
+    {
+        FileUploadOptions options = new FileUploadOptions();
+        options.setBlockSizeInBytes(blockSize);
+        options.setConcurrentBlockUploads(concurrency);
+        options.setMaxBlockRetries(maxRetries);
+        options.setResumable(resumable);
+        return options;
+    }
+
+    private static Object createUploader(int blockSize, int concurrency, int maxRetries, boolean resumable, ExecutorService executor,
+                                         long initialRetryDelayMillis) throws ClassNotFoundException
+    {
+        return Deencapsulation.newInstance(Class.forName(BLOCK_BLOB_UPLOADER_CLASS),
+                new Class[] {FileUploadOptions.class, ExecutorService.class, long.class},
+                createOptions(blockSize, concurrency, maxRetries, resumable), executor, initialRetryDelayMillis);
+    }
+
+    private void upload(Object uploader, InputStream inputStream, long streamLength) throws ClassNotFoundException
+    {
+        upload(uploader, inputStream, streamLength, null);
+    }
+
+    private void upload(Object uploader, InputStream inputStream, long streamLength, Object progressTracker) throws ClassNotFoundException
+    {
+        Deencapsulation.invoke(uploader, "upload",
+                new Class[] {CloudBlockBlob.class, InputStream.class, long.class, Class.forName(PROGRESS_TRACKER_CLASS)},
+                mockCloudBlockBlob, inputStream, streamLength, progressTracker);
+    }
+
+    private static Object createProgressTracker(final List<FileUploadProgress> reports, long totalBytes) throws ClassNotFoundException
+    {
+        FileUploadProgressCallback progressCallback = new FileUploadProgressCallback()
+        {
+            @Override
+            public void execute(FileUploadProgress progress, Object callbackContext)
+            {
+                reports.add(progress);
+            }
+        };
+        return Deencapsulation.newInstance(Class.forName(PROGRESS_TRACKER_CLASS),
+                new Class[] {FileUploadProgressCallback.class, Object.class, long.class}, progressCallback, null, totalBytes);
+    }
+
+    private static StorageException createStorageException(int httpStatusCode)
+    {
+        return new StorageException("", "", httpStatusCode, new StorageExtendedErrorInformation(), new Exception());
+    }
+
+    private List<String> getCommittedBlockIds() throws StorageException
+    {
+        final List<Iterable<BlockEntry>> commits = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                mockCloudBlockBlob.commitBlockList(withCapture(commits));
+            }
+        };
+
+        List<String> blockIds = new ArrayList<>();
+        for (BlockEntry blockEntry : commits.get(commits.size() - 1))
+        {
+            blockIds.add(blockEntry.getId());
+        }
+        return blockIds;
+    }
+
+    /* Tests_SRS_BLOCKBLOBUPLOADER_12_001: [If the `options` is null, the constructor shall throw IllegalArgumentException.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorNullOptionsThrows() throws ClassNotFoundException
+    {
+        // act
+        Deencapsulation.newInstance(Class.forName(BLOCK_BLOB_UPLOADER_CLASS), new Class[] {FileUploadOptions.class, ExecutorService.class}, null, blockUploadExecutor);
+    }
+
+    /* Tests_SRS_BLOCKBLOBUPLOADER_12_014: [If the `blockUploadExecutor` is null, the constructor shall throw IllegalArgumentException.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorNullExecutorThrows() throws ClassNotFoundException
+    {
+        // act
+        createUploader(4, 1, 0, false, null, 0L);
+    }
+
+    /* Tests_SRS_BLOCKBLOBUPLOADER_12_017: [If the `initialRetryDelayMillis` is negative, the constructor shall throw IllegalArgumentException.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorNegativeRetryDelayThrows() throws ClassNotFoundException
+    {
+        // act
+        createUploader(4, 1, 0, false, blockUploadExecutor, -1L);
+    }
+
+    /* Tests_SRS_BLOCKBLOBUPLOADER_12_015: [Before retrying a block or the commit, the upload shall wait a random time between 0 and the initial delay doubled on each attempt, capped at MAX_RETRY_DELAY_MILLIS.] */
+    @Test
+    public void constructorUsesDefaultRetryDelay() throws ClassNotFoundException
+    {
+        // act
+        Object uploader = Deencapsulation.newInstance(Class.forName(BLOCK_BLOB_UPLOADER_CLASS),
+                new Class[] {FileUploadOptions.class, ExecutorService.class}, createOptions(4, 1, 0, false), blockUploadExecutor);
+
+        // assert
+        assertEquals(500L, (long) Deencapsulation.getField(uploader, "initialRetryDelayMillis"));
+    }
+
+    /* Tests_SRS_BLOCKBLOBUPLOADER_12_008: [The upload shall upload up to `concurrentBlockUploads` blocks at the same time.] */
+    @Test
+    public void uploadRunsBlocksOnSharedExecutorAndLeavesItRunning() throws ClassNotFoundException, StorageException, IOException
+    {
+        // arrange
+        Object firstUploader = createUploader(4, 2, 0, false);
+        Object secondUploader = createUploader(4, 2, 0, false);
+
+        // act
+        upload(firstUploader, new ByteArrayInputStream(TEST_DATA), TEST_DATA.length);
+        upload(secondUploader, new ByteArrayInputStream(TEST_DATA), TEST_DATA.length);
+
+        // assert
+        assertFalse(blockUploadExecutor.isShutdown());
+        new Verifications()
+        {
+            {
+                mockCloudBlockBlob.uploadBlock(anyString, (InputStream) any, anyLong);
+                times = 6;
+                mockCloudBlockBlob.commitBlockList((Iterable<BlockEntry>) any);
+                times = 2;
+            }
+        };
+    }
+
+    /* Tests_SRS_BLOCKBLOBUPLOADER_12_015: [Before retrying a block or the commit, the upload shall wait a random time between 0 and the initial delay doubled on each attempt, capped at MAX_RETRY_DELAY_MILLIS.] */
+    @Test
+    public void waitBeforeRetryWaitsAtMostTheExponentialBackoff() throws ClassNotFoundException
+    {
+        // arrange
+        Object uploader = createUploader(4, 1, 0, false, blockUploadExecutor, 10L);
+
+        // act
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 10; i++)
+        {
+            Deencapsulation.invoke(uploader, "waitBeforeRetry", 2);
+        }
+        long elapsed = System.currentTimeMillis() - start;
+
+        // assert
+        // each wait is at most 10 * 2^2 ms
+        assertTrue(elapsed < 10 * 40 + 200);
+    }
+
+    /* Tests_SRS_BLOCKBLOBUPLOADER_12_008: [The upload shall upload up to `concurrentBlockUploads` blocks at the same time.] */
+    /* Tests_SRS_BLOCKBLOBUPLOADER_12_009: [After all blocks are uploaded, the upload shall commit the block list in the stream order.] */
+    @Test
+    public void uploadCutsStreamInBlocksAndCommitsInOrder() throws ClassNotFoundException, StorageException, IOException
+    {
+        // arrange
+        Object uploader = createUploader(4, 2, 0, false);
+
+        // act
+        upload(uploader, new ByteArrayInputStream(TEST_DATA), TEST_DATA.length);
+
+        // assert
+        final List<Long> blockLengths = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                mockCloudBlockBlob.uploadBlock(anyString, (InputStream) any, withCapture(blockLengths));
+                times = 3;
+                mockCloudBlockBlob.upload((InputStream) any, anyLong);
+                times = 0;
+            }
+        };
+        long totalLength = 0;
+        for (long blockLength : blockLengths)
+        {
+            totalLength += blockLength;
+        }
+        assertEquals(TEST_DATA.length, totalLength);
+
+        List<String> committedBlockIds = getCommittedBlockIds();
+        assertEquals(3, committedBlockIds.size());
+        for (int i = 0; i < committedBlockIds.size(); i++)
+        {
+            String blockId = new String(Base64.decodeBase64Local(committedBlockIds.get(i).getBytes()));
+            assertEquals(String.format("%05d", i), blockId.substring(0, 5));
+            assertEquals(committedBlockIds.get(0).length(), committedBlockIds.get(i).length());
+        }
+    }
+
+    /* Tests_SRS_BLOCKBLOBUPLOADER_12_005: [If the `streamLength` is unknown, the upload shall read the stream until its end.] */
+    @Test
+    public void uploadUnknownLengthReadsUntilEndOfStream() throws ClassNotFoundException, StorageException, IOException
+    {
+        // arrange
+        Object uploader = createUploader(4, 1, 0, false);
+
+        // act
+        upload(uploader, new ByteArrayInputStream(TEST_DATA), FileUploadOptions.UNKNOWN_STREAM_LENGTH);
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockCloudBlockBlob.uploadBlock(anyString, (InputStream) any, 4);
+                times = 2;
+                mockCloudBlockBlob.uploadBlock(anyString, (InputStream) any, 2);
+                times = 1;
+            }
+        };
+        assertEquals(3, getCommittedBlockIds().size());
+    }
+
+    /* Tests_SRS_BLOCKBLOBUPLOADER_12_005: [If the `streamLength` is unknown, the upload shall read the stream until its end.] */
+    @Test
+    public void uploadEmptyStreamCommitsEmptyBlob() throws ClassNotFoundException, StorageException, IOException
+    {
+        // arrange
+        Object uploader = createUploader(4, 1, 0, false);
+
+        // act
+        upload(uploader, new ByteArrayInputStream(new byte[0]), FileUploadOptions.UNKNOWN_STREAM_LENGTH);
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockCloudBlockBlob.uploadBlock(anyString, (InputStream) any, anyLong);
+                times = 0;
+            }
+        };
+        assertEquals(0, getCommittedBlockIds().size());
+    }
+
+    /* Tests_SRS_BLOCKBLOBUPLOADER_12_004: [If the stream ends before `streamLength` bytes, the upload shall throw IOException.] */
+    @Test (expected = IOException.class)
+    public void uploadStreamShorterThanLengthThrows() throws ClassNotFoundException
+    {
+        // arrange
+        Object uploader = createUploader(4, 1, 0, false);
+
+        // act
+        upload(uploader, new ByteArrayInputStream(TEST_DATA), TEST_DATA.length + 1);
+    }
+
+    /* Tests_SRS_BLOCKBLOBUPLOADER_12_011: [If a block fails to upload, the upload shall upload the same block with the same id again up to `maxBlockRetries` times.] */
+    @Test
+    public void uploadRetriesFailedBlockWithSameId() throws ClassNotFoundException, StorageException, IOException
+    {
+        // arrange
+        Object uploader = createUploader(TEST_DATA.length, 1, 1, false);
+        new NonStrictExpectations()
+        {
+            {
+                mockCloudBlockBlob.uploadBlock(anyString, (InputStream) any, anyLong);
+                result = createStorageException(500);
+                result = null;
+            }
+        };
+
+        // act
+        upload(uploader, new ByteArrayInputStream(TEST_DATA), TEST_DATA.length);
+
+        // assert
+        final List<String> blockIds = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                mockCloudBlockBlob.uploadBlock(withCapture(blockIds), (InputStream) any, anyLong);
+                times = 2;
+            }
+        };
+        assertEquals(blockIds.get(0), blockIds.get(1));
+        assertEquals(1, getCommittedBlockIds().size());
+    }
+
+    /* Tests_SRS_BLOCKBLOBUPLOADER_12_012: [If a block fails after all the retries, the upload shall stop reading the stream and throw the failure.] */
+    @Test (expected = StorageException.class)
+    public void uploadBlockFailsAfterRetriesThrows() throws ClassNotFoundException, StorageException, IOException
+    {
+        // arrange
+        Object uploader = createUploader(4, 1, 0, false);
+        new NonStrictExpectations()
+        {
+            {
+                mockCloudBlockBlob.uploadBlock(anyString, (InputStream) any, anyLong);
+                result = createStorageException(500);
+            }
+        };
+
+        // act
+        try
+        {
+            upload(uploader, new ByteArrayInputStream(TEST_DATA), TEST_DATA.length);
+        }
+        finally
+        {
+            // assert
+            new Verifications()
+            {
+                {
+                    mockCloudBlockBlob.commitBlockList((Iterable<BlockEntry>) any);
+                    times = 0;
+                }
+            };
+        }
+    }
+
+    /* Tests_SRS_BLOCKBLOBUPLOADER_12_010: [If the commit fails, the upload shall commit the same block list again up to `maxBlockRetries` times, without uploading the blocks again.] */
+    @Test
+    public void uploadRetriesCommitWithoutUploadingBlocksAgain() throws ClassNotFoundException, StorageException, IOException
+    {
+        // arrange
+        Object uploader = createUploader(4, 1, 1, false);
+        new NonStrictExpectations()
+        {
+            {
+                mockCloudBlockBlob.commitBlockList((Iterable<BlockEntry>) any);
+                result = createStorageException(500);
+                result = null;
+            }
+        };
+
+        // act
+        upload(uploader, new ByteArrayInputStream(TEST_DATA), TEST_DATA.length);
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockCloudBlockBlob.uploadBlock(anyString, (InputStream) any, anyLong);
+                times = 3;
+                mockCloudBlockBlob.commitBlockList((Iterable<BlockEntry>) any);
+                times = 2;
+            }
+        };
+    }
+
+    /* Tests_SRS_BLOCKBLOBUPLOADER_12_003: [If the upload is resumable, the upload shall get the ids of the uncommitted blocks of the blob.] */
+    /* Tests_SRS_BLOCKBLOBUPLOADER_12_007: [If a block with the same id is already staged in the blob, the upload shall not upload it again.] */
+    @Test
+    public void uploadResumableSkipsStagedBlocks() throws ClassNotFoundException, StorageException, IOException
+    {
+        // arrange
+        upload(createUploader(4, 1, 0, false), new ByteArrayInputStream(TEST_DATA), TEST_DATA.length);
+        final List<String> previousBlockIds = getCommittedBlockIds();
+        final ArrayList<BlockEntry> stagedBlocks = new ArrayList<>();
+        stagedBlocks.add(new BlockEntry(previousBlockIds.get(0)));
+        stagedBlocks.add(new BlockEntry(previousBlockIds.get(1)));
+        new NonStrictExpectations()
+        {
+            {
+                mockCloudBlockBlob.downloadBlockList(BlockListingFilter.UNCOMMITTED, (AccessCondition) any, (BlobRequestOptions) any, (OperationContext) any);
+                result = stagedBlocks;
+            }
+        };
+        Object uploader = createUploader(4, 1, 0, true);
+
+        // act
+        upload(uploader, new ByteArrayInputStream(TEST_DATA), TEST_DATA.length);
+
+        // assert
+        final List<String> uploadedBlockIds = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                mockCloudBlockBlob.uploadBlock(withCapture(uploadedBlockIds), (InputStream) any, anyLong);
+            }
+        };
+        // only the block that is not staged is uploaded again
+        assertEquals(1, uploadedBlockIds.size());
+        assertEquals(previousBlockIds.get(2), uploadedBlockIds.get(0));
+        assertEquals(previousBlockIds, getCommittedBlockIds());
+    }
+
+    /* Tests_SRS_BLOCKBLOBUPLOADER_12_003: [If the upload is resumable, the upload shall get the ids of the uncommitted blocks of the blob.] */
+    @Test
+    public void uploadResumableUploadsAllBlocksIfBlobNotFound() throws ClassNotFoundException, StorageException, IOException
+    {
+        // arrange
+        new NonStrictExpectations()
+        {
+            {
+                mockCloudBlockBlob.downloadBlockList(BlockListingFilter.UNCOMMITTED, (AccessCondition) any, (BlobRequestOptions) any, (OperationContext) any);
+                result = createStorageException(404);
+            }
+        };
+        Object uploader = createUploader(4, 2, 0, true);
+
+        // act
+        upload(uploader, new ByteArrayInputStream(TEST_DATA), TEST_DATA.length);
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockCloudBlockBlob.uploadBlock(anyString, (InputStream) any, anyLong);
+                times = 3;
+            }
+        };
+        assertFalse(getCommittedBlockIds().isEmpty());
+    }
+
+    /* Tests_SRS_BLOCKBLOBUPLOADER_12_013: [If a `progressTracker` is provided, the upload shall report the blocks resumed, started, uploaded and failed to it.] */
+    @Test
+    public void uploadReportsProgressOfEachBlock() throws ClassNotFoundException
+    {
+        // arrange
+        Object uploader = createUploader(4, 1, 0, false);
+        List<FileUploadProgress> reports = new ArrayList<>();
+        Object progressTracker = createProgressTracker(reports, TEST_DATA.length);
+
+        // act
+        upload(uploader, new ByteArrayInputStream(TEST_DATA), TEST_DATA.length, progressTracker);
+
+        // assert
+        // one report when each block is stored, a block stored while the previous one reports is coalesced
+        assertTrue(reports.size() >= 1 && reports.size() <= 3);
+        FileUploadProgress lastReport = reports.get(reports.size() - 1);
+        assertEquals(TEST_DATA.length, lastReport.getBytesUploaded());
+        assertEquals(3, lastReport.getBlocksUploaded());
+        assertEquals(0, lastReport.getBlocksInFlight());
+        assertTrue(lastReport.getAverageBlockLatencyMillis() >= 0);
+    }
+
+    /* Tests_SRS_BLOCKBLOBUPLOADER_12_016: [A block shall report its progress after it handed back its upload slot, so the progress callback does not hold it.] */
+    @Test
+    public void uploadSlowProgressCallbackDoesNotHoldBlockSlot() throws ClassNotFoundException, StorageException, IOException
+    {
+        // arrange
+        Object uploader = createUploader(4, 1, 0, false);
+        final AtomicInteger blocksStarted = new AtomicInteger();
+        final CountDownLatch secondBlockStarted = new CountDownLatch(1);
+        final List<Boolean> secondBlockStartedDuringCallback = new ArrayList<>();
+        FileUploadProgressCallback slowCallback = new FileUploadProgressCallback()
+        {
+            @Override
+            public void execute(FileUploadProgress progress, Object callbackContext)
+            {
+                if (secondBlockStartedDuringCallback.isEmpty())
+                {
+                    try
+                    {
+                        secondBlockStartedDuringCallback.add(secondBlockStarted.await(5, TimeUnit.SECONDS));
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        };
+        Object progressTracker = Deencapsulation.newInstance(Class.forName(PROGRESS_TRACKER_CLASS),
+                new Class[] {FileUploadProgressCallback.class, Object.class, long.class}, slowCallback, null, (long) TEST_DATA.length);
+        new NonStrictExpectations()
+        {
+            {
+                mockCloudBlockBlob.uploadBlock(anyString, (InputStream) any, anyLong);
+                result = new Delegate()
+                {
+                    void uploadBlock(String blockId, InputStream sourceStream, long length)
+                    {
+                        if (blocksStarted.incrementAndGet() == 2)
+                        {
+                            secondBlockStarted.countDown();
+                        }
+                    }
+                };
+            }
+        };
+
+        // act
+        upload(uploader, new ByteArrayInputStream(TEST_DATA), TEST_DATA.length, progressTracker);
+
+        // assert
+        // with one block at a time, the second block can only start if the first one released its slot
+        assertEquals(1, secondBlockStartedDuringCallback.size());
+        assertTrue(secondBlockStartedDuringCallback.get(0));
+    }
+
+    /* Tests_SRS_BLOCKBLOBUPLOADER_12_013: [If a `progressTracker` is provided, the upload shall report the blocks resumed, started, uploaded and failed to it.] */
+    @Test
+    public void uploadReportsFailedBlock() throws ClassNotFoundException, StorageException, IOException
+    {
+        // arrange
+        Object uploader = createUploader(TEST_DATA.length, 1, 0, false);
+        List<FileUploadProgress> reports = new ArrayList<>();
+        Object progressTracker = createProgressTracker(reports, TEST_DATA.length);
+        new NonStrictExpectations()
+        {
+            {
+                mockCloudBlockBlob.uploadBlock(anyString, (InputStream) any, anyLong);
+                result = createStorageException(500);
+            }
+        };
+
+        // act
+        try
+        {
+            upload(uploader, new ByteArrayInputStream(TEST_DATA), TEST_DATA.length, progressTracker);
+        }
+        catch (Exception e)
+        {
+            // expected
+        }
+
+        // assert
+        FileUploadProgress lastReport = reports.get(reports.size() - 1);
+        assertEquals(0, lastReport.getBlocksInFlight());
+        assertEquals(0, lastReport.getBlocksUploaded());
+        assertEquals(0, lastReport.getBytesUploaded());
+    }
+}
@@ -0,0 +1,94 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.device.fileupload;
+
+import com.microsoft.azure.sdk.iot.device.fileupload.FileUploadOptions;
+import com.microsoft.azure.sdk.iot.device.fileupload.FileUploadProgress;
+import com.microsoft.azure.sdk.iot.device.fileupload.FileUploadProgressCallback;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for file upload options class.
+ * 100% methods, 100% lines covered
+ */
+public class FileUploadOptionsTest
+{
+    @Test
+    public void defaultsSucceed()
+    {
+        // act
+        FileUploadOptions options = new FileUploadOptions();
+
+        // assert
+        assertEquals(FileUploadOptions.MAX_BLOCK_SIZE_IN_BYTES, options.getBlockSizeInBytes());
+        assertEquals(4, options.getConcurrentBlockUploads());
+        assertEquals(2, options.getMaxBlockRetries());
+        assertFalse(options.isResumable());
+        assertNull(options.getProgressCallback());
+    }
+
+    @Test
+    public void settersSucceed()
+    {
+        // arrange
+        FileUploadOptions options = new FileUploadOptions();
+        final Object context = new Object();
+        FileUploadProgressCallback progressCallback = new FileUploadProgressCallback()
+        {
+            @Override
+            public void execute(FileUploadProgress progress, Object callbackContext)
+            {
+            }
+        };
+
+        // act
+        options.setBlockSizeInBytes(1024);
+        options.setConcurrentBlockUploads(8);
+        options.setMaxBlockRetries(0);
+        options.setResumable(true);
+        options.setProgressCallback(progressCallback, context);
+
+        // assert
+        assertEquals(1024, options.getBlockSizeInBytes());
+        assertEquals(8, options.getConcurrentBlockUploads());
+        assertEquals(0, options.getMaxBlockRetries());
+        assertTrue(options.isResumable());
+        assertEquals(progressCallback, options.getProgressCallback());
+        assertEquals(context, options.getProgressCallbackContext());
+    }
+
+    /* Tests_SRS_FILEUPLOADOPTIONS_12_001: [If the `blockSizeInBytes` is less than 1 or greater than MAX_BLOCK_SIZE_IN_BYTES, the setBlockSizeInBytes shall throw IllegalArgumentException.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void setBlockSizeInBytesZeroThrows()
+    {
+        // act
+        new FileUploadOptions().setBlockSizeInBytes(0);
+    }
+
+    /* Tests_SRS_FILEUPLOADOPTIONS_12_001: [If the `blockSizeInBytes` is less than 1 or greater than MAX_BLOCK_SIZE_IN_BYTES, the setBlockSizeInBytes shall throw IllegalArgumentException.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void setBlockSizeInBytesTooLargeThrows()
+    {
+        // act
+        new FileUploadOptions().setBlockSizeInBytes(FileUploadOptions.MAX_BLOCK_SIZE_IN_BYTES + 1);
+    }
+
+    /* Tests_SRS_FILEUPLOADOPTIONS_12_002: [If the `concurrentBlockUploads` is less than 1, the setConcurrentBlockUploads shall throw IllegalArgumentException.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void setConcurrentBlockUploadsZeroThrows()
+    {
+        // act
+        new FileUploadOptions().setConcurrentBlockUploads(0);
+    }
+
+    /* Tests_SRS_FILEUPLOADOPTIONS_12_003: [If the `maxBlockRetries` is negative, the setMaxBlockRetries shall throw IllegalArgumentException.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void setMaxBlockRetriesNegativeThrows()
+    {
+        // act
+        new FileUploadOptions().setMaxBlockRetries(-1);
+    }
+}
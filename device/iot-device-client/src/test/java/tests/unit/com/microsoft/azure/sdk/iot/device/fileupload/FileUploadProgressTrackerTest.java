@@ -0,0 +1,254 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.device.fileupload;
+
+import com.microsoft.azure.sdk.iot.device.fileupload.FileUploadProgress;
+import com.microsoft.azure.sdk.iot.device.fileupload.FileUploadProgressCallback;
+import mockit.Deencapsulation;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for file upload progress tracker class.
+ * 100% methods, 100% lines covered
+ */
+public class FileUploadProgressTrackerTest
+{
+    private static final String PROGRESS_TRACKER_CLASS = "com.microsoft.azure.sdk.iot.device.fileupload.FileUploadProgressTracker";
+    private static final long TOTAL_BYTES = 100;
+    private static final Object CALLBACK_CONTEXT = new Object();
+
+    private final List<FileUploadProgress> reports = new ArrayList<>();
+    private final List<Object> contexts = new ArrayList<>();
+
+    private final FileUploadProgressCallback recordingCallback = new FileUploadProgressCallback()
+    {
+        @Override
+        public void execute(FileUploadProgress progress, Object callbackContext)
+        {
+            reports.add(progress);
+            contexts.add(callbackContext);
+        }
+    };
+
+    private static Object createTracker(FileUploadProgressCallback progressCallback) throws ClassNotFoundException
+    {
+        return Deencapsulation.newInstance(Class.forName(PROGRESS_TRACKER_CLASS),
+                new Class[] {FileUploadProgressCallback.class, Object.class, long.class}, progressCallback, CALLBACK_CONTEXT, TOTAL_BYTES);
+    }
+
+    private FileUploadProgress lastReport()
+    {
+        return reports.get(reports.size() - 1);
+    }
+
+    /* Tests_SRS_FILEUPLOADPROGRESSTRACKER_12_001: [If the `progressCallback` is null, the constructor shall throw IllegalArgumentException.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorNullCallbackThrows() throws ClassNotFoundException
+    {
+        // act
+        Deencapsulation.newInstance(Class.forName(PROGRESS_TRACKER_CLASS),
+                new Class[] {FileUploadProgressCallback.class, Object.class, long.class}, null, CALLBACK_CONTEXT, TOTAL_BYTES);
+    }
+
+    /* Tests_SRS_FILEUPLOADPROGRESSTRACKER_12_002: [The onUploadStarted shall start measuring the elapsed time.] */
+    @Test
+    public void getProgressBeforeAnyEventReportsNothingMeasured() throws ClassNotFoundException
+    {
+        // arrange
+        Object tracker = createTracker(recordingCallback);
+        Deencapsulation.invoke(tracker, "onUploadStarted");
+
+        // act
+        FileUploadProgress progress = Deencapsulation.invoke(tracker, "getProgress");
+
+        // assert
+        assertTrue(reports.isEmpty());
+        assertEquals(TOTAL_BYTES, progress.getTotalBytes());
+        assertEquals(0, progress.getBytesUploaded());
+        assertEquals(0, progress.getBlocksUploaded());
+        assertEquals(FileUploadProgress.NOT_MEASURED, progress.getLastBlockLatencyMillis());
+        assertEquals(FileUploadProgress.NOT_MEASURED, progress.getAverageBlockLatencyMillis());
+        assertEquals(FileUploadProgress.NOT_MEASURED, progress.getSasRequestMillis());
+        assertEquals(FileUploadProgress.NOT_MEASURED, progress.getNotificationMillis());
+        assertTrue(progress.getElapsedMillis() >= 0);
+    }
+
+    /* Tests_SRS_FILEUPLOADPROGRESSTRACKER_12_003: [The onSasRequestCompleted shall record the SAS request round trip and report the progress.] */
+    /* Tests_SRS_FILEUPLOADPROGRESSTRACKER_12_008: [The onNotificationCompleted shall record the notification round trip and report the progress.] */
+    @Test
+    public void onRoundTripsRecordDurations() throws ClassNotFoundException
+    {
+        // arrange
+        Object tracker = createTracker(recordingCallback);
+
+        // act
+        Deencapsulation.invoke(tracker, "onSasRequestCompleted", TimeUnit.MILLISECONDS.toNanos(25));
+        Deencapsulation.invoke(tracker, "onNotificationCompleted", TimeUnit.MILLISECONDS.toNanos(15));
+
+        // assert
+        assertEquals(2, reports.size());
+        assertEquals(CALLBACK_CONTEXT, contexts.get(0));
+        assertEquals(25, reports.get(0).getSasRequestMillis());
+        assertEquals(FileUploadProgress.NOT_MEASURED, reports.get(0).getNotificationMillis());
+        assertEquals(25, lastReport().getSasRequestMillis());
+        assertEquals(15, lastReport().getNotificationMillis());
+    }
+
+    /* Tests_SRS_FILEUPLOADPROGRESSTRACKER_12_004: [The onBlockStarted shall count one more block in flight, without reporting the progress until the next reported change.] */
+    /* Tests_SRS_FILEUPLOADPROGRESSTRACKER_12_005: [The onBlockUploaded shall count the block and its bytes as uploaded and transferred, record its latency, remove it from the blocks in flight, and publish the progress for the caller to report.] */
+    @Test
+    public void onBlockEventsCountBytesAndLatency() throws ClassNotFoundException
+    {
+        // arrange
+        Object tracker = createTracker(recordingCallback);
+
+        // act
+        Deencapsulation.invoke(tracker, "onBlockStarted");
+        Deencapsulation.invoke(tracker, "onBlockStarted");
+        FileUploadProgress whileInFlight = Deencapsulation.invoke(tracker, "getProgress");
+        boolean firstIsReporter = Deencapsulation.invoke(tracker, "onBlockUploaded", 40L, TimeUnit.MILLISECONDS.toNanos(10));
+        int reportsBeforeReporting = reports.size();
+        Deencapsulation.invoke(tracker, "reportPublishedProgress");
+        boolean secondIsReporter = Deencapsulation.invoke(tracker, "onBlockUploaded", 60L, TimeUnit.MILLISECONDS.toNanos(30));
+        Deencapsulation.invoke(tracker, "reportPublishedProgress");
+
+        // assert
+        assertTrue(firstIsReporter);
+        assertTrue(secondIsReporter);
+        assertEquals(0, reportsBeforeReporting);
+        assertEquals(2, reports.size());
+        assertEquals(2, whileInFlight.getBlocksInFlight());
+        assertEquals(1, reports.get(0).getBlocksInFlight());
+        assertEquals(0, lastReport().getBlocksInFlight());
+        assertEquals(2, lastReport().getBlocksUploaded());
+        assertEquals(TOTAL_BYTES, lastReport().getBytesUploaded());
+        assertEquals(30, lastReport().getLastBlockLatencyMillis());
+        assertEquals(20, lastReport().getAverageBlockLatencyMillis());
+    }
+
+    /* Tests_SRS_FILEUPLOADPROGRESSTRACKER_12_006: [The onBlockFailed shall remove the block from the blocks in flight and publish the progress for the caller to report.] */
+    @Test
+    public void onBlockFailedRemovesBlockInFlight() throws ClassNotFoundException
+    {
+        // arrange
+        Object tracker = createTracker(recordingCallback);
+        Deencapsulation.invoke(tracker, "onBlockStarted");
+
+        // act
+        boolean isReporter = Deencapsulation.invoke(tracker, "onBlockFailed");
+        Deencapsulation.invoke(tracker, "reportPublishedProgress");
+
+        // assert
+        assertTrue(isReporter);
+        assertEquals(1, reports.size());
+        assertEquals(0, lastReport().getBlocksInFlight());
+        assertEquals(0, lastReport().getBlocksUploaded());
+        assertEquals(0, lastReport().getBytesUploaded());
+    }
+
+    /* Tests_SRS_FILEUPLOADPROGRESSTRACKER_12_007: [The onBlockResumed shall count the block and its bytes as uploaded, but not as transferred, and report the progress.] */
+    @Test
+    public void onBlockResumedCountsUploadedButNotTransferred() throws ClassNotFoundException
+    {
+        // arrange
+        Object tracker = createTracker(recordingCallback);
+
+        // act
+        Deencapsulation.invoke(tracker, "onBlockResumed", 40L);
+
+        // assert
+        assertEquals(1, reports.size());
+        assertEquals(1, lastReport().getBlocksUploaded());
+        assertEquals(40, lastReport().getBytesUploaded());
+        assertEquals(0, lastReport().getBytesPerSecond());
+        assertEquals(FileUploadProgress.NOT_MEASURED, lastReport().getAverageBlockLatencyMillis());
+    }
+
+    /* Tests_SRS_FILEUPLOADPROGRESSTRACKER_12_009: [If the progress callback throws, the tracker shall log the error and continue the upload.] */
+    @Test
+    public void callbackExceptionDoesNotPropagate() throws ClassNotFoundException
+    {
+        // arrange
+        Object tracker = createTracker(new FileUploadProgressCallback()
+        {
+            @Override
+            public void execute(FileUploadProgress progress, Object callbackContext)
+            {
+                throw new IllegalStateException();
+            }
+        });
+
+        // act
+        Deencapsulation.invoke(tracker, "onBlockStarted");
+        Deencapsulation.invoke(tracker, "onBlockUploaded", 40L, 0L);
+        Deencapsulation.invoke(tracker, "reportPublishedProgress");
+
+        // assert
+        FileUploadProgress progress = Deencapsulation.invoke(tracker, "getProgress");
+        assertEquals(40, progress.getBytesUploaded());
+    }
+
+    /* Tests_SRS_FILEUPLOADPROGRESSTRACKER_12_010: [The tracker shall invoke the progress callback outside of its lock, on one thread at a time, with the latest progress. Changes made while the callback runs shall be reported once it returns.] */
+    @Test
+    public void changesDuringSlowCallbackDoNotWaitAndAreCoalesced() throws Exception
+    {
+        // arrange
+        final CountDownLatch callbackEntered = new CountDownLatch(1);
+        final CountDownLatch releaseCallback = new CountDownLatch(1);
+        final List<FileUploadProgress> slowReports = Collections.synchronizedList(new ArrayList<FileUploadProgress>());
+        final Object tracker = createTracker(new FileUploadProgressCallback()
+        {
+            @Override
+            public void execute(FileUploadProgress progress, Object callbackContext)
+            {
+                slowReports.add(progress);
+                callbackEntered.countDown();
+                try
+                {
+                    releaseCallback.await(5, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        Thread reporter = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                Deencapsulation.invoke(tracker, "onSasRequestCompleted", TimeUnit.MILLISECONDS.toNanos(25));
+            }
+        });
+        reporter.start();
+        assertTrue(callbackEntered.await(5, TimeUnit.SECONDS));
+
+        // act
+        long startNanos = System.nanoTime();
+        Deencapsulation.invoke(tracker, "onBlockResumed", 40L);
+        Deencapsulation.invoke(tracker, "onBlockResumed", 60L);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        releaseCallback.countDown();
+        reporter.join(5000);
+
+        // assert
+        assertFalse(reporter.isAlive());
+        assertTrue(elapsedMillis < 1000);
+        assertEquals(2, slowReports.size());
+        assertEquals(0, slowReports.get(0).getBytesUploaded());
+        assertEquals(TOTAL_BYTES, slowReports.get(1).getBytesUploaded());
+        assertEquals(2, slowReports.get(1).getBlocksUploaded());
+    }
+}
@@ -7,26 +7,40 @@ import com.microsoft.azure.sdk.iot.device.IotHubEventCallback;
 import com.microsoft.azure.sdk.iot.device.IotHubMethod;
 import com.microsoft.azure.sdk.iot.device.IotHubStatusCode;
 import com.microsoft.azure.sdk.iot.device.ResponseMessage;
+import com.microsoft.azure.sdk.iot.device.fileupload.FileUploadOptions;
+import com.microsoft.azure.sdk.iot.device.fileupload.FileUploadProgress;
+import com.microsoft.azure.sdk.iot.device.fileupload.FileUploadProgressCallback;
 import com.microsoft.azure.sdk.iot.device.fileupload.FileUploadTask;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubTransportMessage;
 import com.microsoft.azure.sdk.iot.device.transport.https.HttpsTransportManager;
 import com.microsoft.azure.storage.StorageException;
 import com.microsoft.azure.storage.StorageExtendedErrorInformation;
+import com.microsoft.azure.storage.blob.BlockEntry;
 import com.microsoft.azure.storage.blob.CloudBlockBlob;
 import mockit.Deencapsulation;
 import mockit.Mocked;
 import mockit.NonStrictExpectations;
 import mockit.Verifications;
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Unit tests for file upload task class.
@@ -64,6 +78,8 @@ public class FileUploadTaskTest
     @Mocked
     private CloudBlockBlob mockCloudBlockBlob;
 
+    private ExecutorService blockUploadExecutor;
+
     private static final String VALID_BLOB_NAME = "test-device1/image.jpg";
     private static final String VALID_BLOB_NAME_URI = "test-device1%2Fimage.jpg";
     private static final String VALID_CORRELATION_ID = "somecorrelationid";
@@ -93,6 +109,18 @@ public class FileUploadTaskTest
 
 
 
+    @Before
+    public void setUp()
+    {
+        blockUploadExecutor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown()
+    {
+        blockUploadExecutor.shutdownNow();
+    }
+
     private void requestExpectations(final String blobName, final String requestJson) throws IOException
     {
         new NonStrictExpectations()
@@ -296,6 +324,45 @@ public class FileUploadTaskTest
         assertEquals(Deencapsulation.getField(fileUploadTask, "httpsTransportManager"), mockHttpsTransportManager);
     }
 
+    /* Tests_SRS_FILEUPLOADTASK_21_003: [If the `streamLength` is negative, the constructor shall throw IllegalArgumentException.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorUnknownStreamLengthWithoutOptionsThrows()
+    {
+        // act
+        Deencapsulation.newInstance(FileUploadTask.class,
+                new Class[] {String.class, InputStream.class, long.class, HttpsTransportManager.class, IotHubEventCallback.class, Object.class},
+                VALID_BLOB_NAME, mockInputStream, FileUploadOptions.UNKNOWN_STREAM_LENGTH, mockHttpsTransportManager, mockIotHubEventCallback, VALID_CALLBACK_CONTEXT);
+    }
+
+    /* Tests_SRS_FILEUPLOADTASK_12_001: [If the `options` is provided, the constructor shall accept UNKNOWN_STREAM_LENGTH as the `streamLength`.] */
+    /* Tests_SRS_FILEUPLOADTASK_12_002: [If the `options` is provided, the constructor shall create a `BlockBlobUploader` with it.] */
+    @Test
+    public void constructorUnknownStreamLengthWithOptionsSucceed()
+    {
+        // act
+        FileUploadTask fileUploadTask = Deencapsulation.newInstance(FileUploadTask.class,
+                new Class[] {String.class, InputStream.class, long.class, FileUploadOptions.class, ExecutorService.class, HttpsTransportManager.class, IotHubEventCallback.class, Object.class},
+                VALID_BLOB_NAME, mockInputStream, FileUploadOptions.UNKNOWN_STREAM_LENGTH, new FileUploadOptions(), blockUploadExecutor, mockHttpsTransportManager, mockIotHubEventCallback, VALID_CALLBACK_CONTEXT);
+
+        // assert
+        assertEquals(FileUploadOptions.UNKNOWN_STREAM_LENGTH, Deencapsulation.getField(fileUploadTask, "streamLength"));
+        assertNotNull(Deencapsulation.getField(fileUploadTask, "blockBlobUploader"));
+    }
+
+    /* Tests_SRS_FILEUPLOADTASK_12_003: [If the `streamLength` needs more than MAX_BLOCKS blocks of the configured size, the constructor shall throw IllegalArgumentException.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorTooManyBlocksThrows()
+    {
+        // arrange
+        FileUploadOptions options = new FileUploadOptions();
+        options.setBlockSizeInBytes(1);
+
+        // act
+        Deencapsulation.newInstance(FileUploadTask.class,
+                new Class[] {String.class, InputStream.class, long.class, FileUploadOptions.class, ExecutorService.class, HttpsTransportManager.class, IotHubEventCallback.class, Object.class},
+                VALID_BLOB_NAME, mockInputStream, 50001L, options, blockUploadExecutor, mockHttpsTransportManager, mockIotHubEventCallback, VALID_CALLBACK_CONTEXT);
+    }
+
     /* Tests_SRS_FILEUPLOADTASK_21_007: [The run shall create a FileUpload request message, by using the FileUploadRequestParser.] */
     @Test
     public void runCreateRequest() throws IOException, IllegalArgumentException, URISyntaxException, StorageException
@@ -507,6 +574,112 @@ public class FileUploadTaskTest
         };
     }
 
+    /* Tests_SRS_FILEUPLOADTASK_12_004: [If the task was created with `options`, the run shall upload the `inputStream` in blocks, using the `BlockBlobUploader`.] */
+    @Test
+    public void runUploadStreamInBlocksWithOptions() throws IOException, IllegalArgumentException, URISyntaxException, StorageException
+    {
+        // arrange
+        expectSuccess(VALID_BLOB_NAME, VALID_CORRELATION_ID, VALID_HOST_NAME, VALID_CONTAINER_NAME, VALID_SAS_TOKEN,
+                VALID_REQUEST_JSON, VALID_RESPONSE_JSON, VALID_NOTIFICATION_JSON);
+        FileUploadOptions options = new FileUploadOptions();
+        options.setBlockSizeInBytes(40);
+        final InputStream inputStream = new ByteArrayInputStream(new byte[(int) VALID_STREAM_LENGTH]);
+        FileUploadTask fileUploadTask = Deencapsulation.newInstance(FileUploadTask.class,
+                new Class[] {String.class, InputStream.class, long.class, FileUploadOptions.class, ExecutorService.class, HttpsTransportManager.class, IotHubEventCallback.class, Object.class},
+                VALID_BLOB_NAME, inputStream, VALID_STREAM_LENGTH, options, blockUploadExecutor, mockHttpsTransportManager, mockIotHubEventCallback, VALID_CALLBACK_CONTEXT);
+
+        // act
+        Deencapsulation.invoke(fileUploadTask, "run");
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockCloudBlockBlob.upload((InputStream) any, anyLong);
+                times = 0;
+                mockCloudBlockBlob.uploadBlock(anyString, (InputStream) any, anyLong);
+                times = 3;
+                mockCloudBlockBlob.commitBlockList((Iterable<BlockEntry>) any);
+                times = 1;
+                mockIotHubEventCallback.execute(IotHubStatusCode.OK, VALID_CALLBACK_CONTEXT);
+                times = 1;
+            }
+        };
+    }
+
+    /* Tests_SRS_FILEUPLOADTASK_12_005: [If the `options` have a progress callback, the constructor shall create a `FileUploadProgressTracker` to report the progress to it.] */
+    /* Tests_SRS_FILEUPLOADTASK_12_006: [If there is a progress tracker, the run shall report the round trip of the blob request to it, after releasing the file upload lock.] */
+    /* Tests_SRS_FILEUPLOADTASK_12_007: [If there is a progress tracker, the run shall report the round trip of the notification to it, after releasing the file upload lock.] */
+    @Test
+    public void runReportsProgressWithOptions() throws IOException, IllegalArgumentException, URISyntaxException, StorageException
+    {
+        // arrange
+        expectSuccess(VALID_BLOB_NAME, VALID_CORRELATION_ID, VALID_HOST_NAME, VALID_CONTAINER_NAME, VALID_SAS_TOKEN,
+                VALID_REQUEST_JSON, VALID_RESPONSE_JSON, VALID_NOTIFICATION_JSON);
+        final List<FileUploadProgress> reports = new ArrayList<>();
+        FileUploadOptions options = new FileUploadOptions();
+        options.setBlockSizeInBytes(40);
+        options.setProgressCallback(new FileUploadProgressCallback()
+        {
+            @Override
+            public void execute(FileUploadProgress progress, Object callbackContext)
+            {
+                reports.add(progress);
+            }
+        }, VALID_CALLBACK_CONTEXT);
+        final InputStream inputStream = new ByteArrayInputStream(new byte[(int) VALID_STREAM_LENGTH]);
+        FileUploadTask fileUploadTask = Deencapsulation.newInstance(FileUploadTask.class,
+                new Class[] {String.class, InputStream.class, long.class, FileUploadOptions.class, ExecutorService.class, HttpsTransportManager.class, IotHubEventCallback.class, Object.class},
+                VALID_BLOB_NAME, inputStream, VALID_STREAM_LENGTH, options, blockUploadExecutor, mockHttpsTransportManager, mockIotHubEventCallback, VALID_CALLBACK_CONTEXT);
+
+        // act
+        Deencapsulation.invoke(fileUploadTask, "run");
+
+        // assert
+        assertNotNull(Deencapsulation.getField(fileUploadTask, "progressTracker"));
+        FileUploadProgress firstReport = reports.get(0);
+        assertTrue(firstReport.getSasRequestMillis() >= 0);
+        assertEquals(FileUploadProgress.NOT_MEASURED, firstReport.getNotificationMillis());
+        FileUploadProgress lastReport = reports.get(reports.size() - 1);
+        assertEquals(VALID_STREAM_LENGTH, lastReport.getTotalBytes());
+        assertEquals(VALID_STREAM_LENGTH, lastReport.getBytesUploaded());
+        assertEquals(3, lastReport.getBlocksUploaded());
+        assertTrue(lastReport.getNotificationMillis() >= 0);
+    }
+
+    /* Tests_SRS_FILEUPLOADTASK_12_006: [If there is a progress tracker, the run shall report the round trip of the blob request to it, after releasing the file upload lock.] */
+    /* Tests_SRS_FILEUPLOADTASK_12_007: [If there is a progress tracker, the run shall report the round trip of the notification to it, after releasing the file upload lock.] */
+    @Test
+    public void runReportsProgressOutsideFileUploadLock() throws IOException, IllegalArgumentException, URISyntaxException, StorageException
+    {
+        // arrange
+        expectSuccess(VALID_BLOB_NAME, VALID_CORRELATION_ID, VALID_HOST_NAME, VALID_CONTAINER_NAME, VALID_SAS_TOKEN,
+                VALID_REQUEST_JSON, VALID_RESPONSE_JSON, VALID_NOTIFICATION_JSON);
+        final Object fileUploadLock = Deencapsulation.getField(FileUploadTask.class, "FILE_UPLOAD_LOCK");
+        final List<Boolean> reportedUnderLock = new ArrayList<>();
+        FileUploadOptions options = new FileUploadOptions();
+        options.setBlockSizeInBytes(40);
+        options.setProgressCallback(new FileUploadProgressCallback()
+        {
+            @Override
+            public void execute(FileUploadProgress progress, Object callbackContext)
+            {
+                reportedUnderLock.add(Thread.holdsLock(fileUploadLock));
+            }
+        }, VALID_CALLBACK_CONTEXT);
+        final InputStream inputStream = new ByteArrayInputStream(new byte[(int) VALID_STREAM_LENGTH]);
+        FileUploadTask fileUploadTask = Deencapsulation.newInstance(FileUploadTask.class,
+                new Class[] {String.class, InputStream.class, long.class, FileUploadOptions.class, ExecutorService.class, HttpsTransportManager.class, IotHubEventCallback.class, Object.class},
+                VALID_BLOB_NAME, inputStream, VALID_STREAM_LENGTH, options, blockUploadExecutor, mockHttpsTransportManager, mockIotHubEventCallback, VALID_CALLBACK_CONTEXT);
+
+        // act
+        Deencapsulation.invoke(fileUploadTask, "run");
+
+        // assert
+        assertFalse(reportedUnderLock.isEmpty());
+        assertFalse(reportedUnderLock.contains(true));
+    }
+
     /* Tests_SRS_FILEUPLOADTASK_21_021: [If the upload to blob succeed, the run shall create a notification the IoT Hub with `isSuccess` equals true, `statusCode` equals 0.] */
     @Test
     public void runCreateNotificationSucceed() throws IOException, IllegalArgumentException, URISyntaxException, StorageException
@@ -9,6 +9,7 @@ import com.microsoft.azure.sdk.iot.device.IotHubEventCallback;
 import com.microsoft.azure.sdk.iot.device.IotHubStatusCode;
 import com.microsoft.azure.sdk.iot.device.fileupload.FileUpload;
 import com.microsoft.azure.sdk.iot.device.fileupload.FileUploadInProgress;
+import com.microsoft.azure.sdk.iot.device.fileupload.FileUploadOptions;
 import com.microsoft.azure.sdk.iot.device.fileupload.FileUploadTask;
 import com.microsoft.azure.sdk.iot.device.transport.https.HttpsTransportManager;
 import mockit.*;
@@ -19,6 +20,7 @@ import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingDeque;
@@ -53,6 +55,9 @@ public class FileUploadTest
     @Mocked
     private ScheduledExecutorService mockScheduler;
 
+    @Mocked
+    private ExecutorService mockBlockUploadExecutor;
+
     @Mocked
     private FileUploadInProgress mockFileUploadInProgress;
 
@@ -186,6 +191,100 @@ public class FileUploadTest
         fileUpload.uploadToBlobAsync(blobName, mockInputStream, streamLength, mockIotHubEventCallback, context);
     }
 
+    /* Tests_SRS_FILEUPLOAD_12_001: [If the `options` is provided, the uploadToBlobAsync shall accept UNKNOWN_STREAM_LENGTH as the `streamLength`.] */
+    /* Tests_SRS_FILEUPLOAD_12_002: [If the `options` is provided, the uploadToBlobAsync shall create a `FileUploadTask` that uploads the stream in blocks.] */
+    @Test
+    public void uploadToBlobAsyncWithOptionsSuccess() throws IOException
+    {
+        // arrange
+        final String blobName = "validBlobName";
+        final long streamLength = FileUploadOptions.UNKNOWN_STREAM_LENGTH;
+        final FileUploadOptions options = new FileUploadOptions();
+        final Map<String, Object> context = new HashMap<>();
+
+        constructorExpectations();
+        FileUpload fileUpload = new FileUpload(mockConfig);
+
+        // assert
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.newInstance(FileUploadInProgress.class,
+                        new Class[] {IotHubEventCallback.class, Object.class},
+                        mockIotHubEventCallback, context);
+                result = mockFileUploadInProgress;
+                times = 1;
+                Executors.newCachedThreadPool();
+                result = mockBlockUploadExecutor;
+                times = 1;
+                Deencapsulation.newInstance(FileUploadTask.class,
+                        new Class[] { String.class, InputStream.class, long.class, FileUploadOptions.class, ExecutorService.class, HttpsTransportManager.class, IotHubEventCallback.class, Object.class},
+                        blobName, mockInputStream, streamLength, options, mockBlockUploadExecutor, mockHttpsTransportManager, (IotHubEventCallback)any, mockFileUploadInProgress);
+                result = mockFileUploadTask;
+                times = 1;
+                mockScheduler.submit(mockFileUploadTask);
+                times = 1;
+            }
+        };
+
+        // act
+        fileUpload.uploadToBlobAsync(blobName, mockInputStream, streamLength, options, mockIotHubEventCallback, context);
+    }
+
+    /* Tests_SRS_FILEUPLOAD_12_003: [The block uploads of all the files shall run on one executor, created with the first block upload.] */
+    /* Tests_SRS_FILEUPLOAD_12_004: [The closeNow shall shutdown the block upload executor, if any, by calling `shutdownNow`.] */
+    @Test
+    public void uploadToBlobAsyncWithOptionsSharesBlockUploadExecutor() throws IOException
+    {
+        // arrange
+        final FileUploadOptions options = new FileUploadOptions();
+        final Map<String, Object> context = new HashMap<>();
+
+        constructorExpectations();
+        FileUpload fileUpload = new FileUpload(mockConfig);
+        new NonStrictExpectations()
+        {
+            {
+                Executors.newCachedThreadPool();
+                result = mockBlockUploadExecutor;
+            }
+        };
+
+        // act
+        fileUpload.uploadToBlobAsync("validBlobName1", mockInputStream, 100, options, mockIotHubEventCallback, context);
+        fileUpload.uploadToBlobAsync("validBlobName2", mockInputStream, 100, options, mockIotHubEventCallback, context);
+        fileUpload.closeNow();
+
+        // assert
+        new Verifications()
+        {
+            {
+                Executors.newCachedThreadPool();
+                times = 1;
+                Deencapsulation.newInstance(FileUploadTask.class,
+                        new Class[] { String.class, InputStream.class, long.class, FileUploadOptions.class, ExecutorService.class, HttpsTransportManager.class, IotHubEventCallback.class, Object.class},
+                        anyString, mockInputStream, 100L, options, mockBlockUploadExecutor, mockHttpsTransportManager, (IotHubEventCallback)any, any);
+                times = 2;
+                mockBlockUploadExecutor.shutdownNow();
+                times = 1;
+            }
+        };
+    }
+
+    /* Tests_SRS_FILEUPLOAD_21_007: [If the `streamLength` is negative, the uploadToBlobAsync shall throw IllegalArgumentException.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void uploadToBlobAsyncUnknownStreamLengthWithoutOptionsThrows() throws IOException
+    {
+        // arrange
+        final Map<String, Object> context = new HashMap<>();
+
+        constructorExpectations();
+        FileUpload fileUpload = new FileUpload(mockConfig);
+
+        // act
+        fileUpload.uploadToBlobAsync("validBlobName", mockInputStream, FileUploadOptions.UNKNOWN_STREAM_LENGTH, mockIotHubEventCallback, context);
+    }
+
     /* Tests_SRS_FILEUPLOAD_21_005: [If the `blobName` is null or empty, the uploadToBlobAsync shall throw IllegalArgumentException.] */
     @Test (expected = IllegalArgumentException.class)
     public void uploadToBlobAsyncNullBlobNameThrows() throws IOException
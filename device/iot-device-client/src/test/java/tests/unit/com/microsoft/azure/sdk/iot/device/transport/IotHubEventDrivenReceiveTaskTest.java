@@ -0,0 +1,133 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.device.transport;
+
+import com.microsoft.azure.sdk.iot.device.exceptions.DeviceClientException;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubEventDrivenReceiveTask;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubTransport;
+import mockit.Deencapsulation;
+import mockit.Delegate;
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
+import mockit.Verifications;
+import org.junit.Test;
+
+/** Unit tests for IotHubEventDrivenReceiveTask. */
+public class IotHubEventDrivenReceiveTaskTest
+{
+    @Mocked
+    IotHubTransport mockTransport;
+
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsOnNullTransport()
+    {
+        new IotHubEventDrivenReceiveTask(null);
+    }
+
+    @Test
+    public void runHandlesReceivedMessagesUntilQueueIsDrained() throws InterruptedException, DeviceClientException
+    {
+        final IotHubEventDrivenReceiveTask receiveTask = new IotHubEventDrivenReceiveTask(mockTransport);
+        new NonStrictExpectations()
+        {
+            {
+                mockTransport.waitForReceiveWork(anyLong);
+                result = true;
+                mockTransport.hasReceivedMessages();
+                result = new Delegate()
+                {
+                    int calls;
+
+                    boolean hasReceivedMessages()
+                    {
+                        if (++calls == 3)
+                        {
+                            // end the loop after the first wake up
+                            Deencapsulation.setField(receiveTask, "isStopped", true);
+                            return false;
+                        }
+                        return true;
+                    }
+                };
+            }
+        };
+
+        receiveTask.run();
+
+        new Verifications()
+        {
+            {
+                mockTransport.handleMessage();
+                times = 2;
+            }
+        };
+    }
+
+    @Test
+    public void runDoesNotCrashFromThrowable() throws InterruptedException, DeviceClientException
+    {
+        final IotHubEventDrivenReceiveTask receiveTask = new IotHubEventDrivenReceiveTask(mockTransport);
+        new NonStrictExpectations()
+        {
+            {
+                mockTransport.waitForReceiveWork(anyLong);
+                result = true;
+                mockTransport.hasReceivedMessages();
+                result = true;
+                mockTransport.handleMessage();
+                result = new Delegate()
+                {
+                    void handleMessage()
+                    {
+                        Deencapsulation.setField(receiveTask, "isStopped", true);
+                        throw new RuntimeException("Test that receive does not crash.");
+                    }
+                };
+            }
+        };
+
+        receiveTask.run();
+    }
+
+    @Test
+    public void runEndsWhenInterrupted() throws InterruptedException, DeviceClientException
+    {
+        IotHubEventDrivenReceiveTask receiveTask = new IotHubEventDrivenReceiveTask(mockTransport);
+        new NonStrictExpectations()
+        {
+            {
+                mockTransport.waitForReceiveWork(anyLong);
+                result = new InterruptedException();
+            }
+        };
+
+        receiveTask.run();
+
+        new Verifications()
+        {
+            {
+                mockTransport.handleMessage();
+                times = 0;
+            }
+        };
+        // clear the interrupt flag restored by the task
+        Thread.interrupted();
+    }
+
+    @Test
+    public void stopWakesUpTheTask()
+    {
+        IotHubEventDrivenReceiveTask receiveTask = new IotHubEventDrivenReceiveTask(mockTransport);
+
+        receiveTask.stop();
+
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(mockTransport, "signalReceiveWork");
+                times = 1;
+            }
+        };
+    }
+}
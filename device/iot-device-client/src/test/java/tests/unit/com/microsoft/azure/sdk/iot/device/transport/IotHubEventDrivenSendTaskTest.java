@@ -0,0 +1,125 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.device.transport;
+
+import com.microsoft.azure.sdk.iot.device.transport.IotHubEventDrivenSendTask;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubTransport;
+import mockit.Deencapsulation;
+import mockit.Delegate;
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
+import mockit.Verifications;
+import org.junit.Test;
+
+/** Unit tests for IotHubEventDrivenSendTask. */
+public class IotHubEventDrivenSendTaskTest
+{
+    @Mocked
+    IotHubTransport mockTransport;
+
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsOnNullTransport()
+    {
+        new IotHubEventDrivenSendTask(null);
+    }
+
+    @Test
+    public void runSendsAllMessagesAndInvokesCallbacksWhenSignalled() throws InterruptedException
+    {
+        final IotHubEventDrivenSendTask sendTask = new IotHubEventDrivenSendTask(mockTransport);
+        new NonStrictExpectations()
+        {
+            {
+                mockTransport.waitForSendWork(anyLong);
+                result = true;
+                mockTransport.invokeCallbacks();
+                result = new Delegate()
+                {
+                    void invokeCallbacks()
+                    {
+                        // end the loop after the first pass
+                        Deencapsulation.setField(sendTask, "isStopped", true);
+                    }
+                };
+            }
+        };
+
+        sendTask.run();
+
+        new Verifications()
+        {
+            {
+                mockTransport.sendAllMessages();
+                times = 1;
+                mockTransport.invokeCallbacks();
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void runDoesNotCrashFromThrowable() throws InterruptedException
+    {
+        final IotHubEventDrivenSendTask sendTask = new IotHubEventDrivenSendTask(mockTransport);
+        new NonStrictExpectations()
+        {
+            {
+                mockTransport.waitForSendWork(anyLong);
+                result = true;
+                mockTransport.sendAllMessages();
+                result = new Delegate()
+                {
+                    void sendAllMessages()
+                    {
+                        Deencapsulation.setField(sendTask, "isStopped", true);
+                        throw new RuntimeException("Test that send does not crash.");
+                    }
+                };
+            }
+        };
+
+        sendTask.run();
+    }
+
+    @Test
+    public void runEndsWhenInterrupted() throws InterruptedException
+    {
+        IotHubEventDrivenSendTask sendTask = new IotHubEventDrivenSendTask(mockTransport);
+        new NonStrictExpectations()
+        {
+            {
+                mockTransport.waitForSendWork(anyLong);
+                result = new InterruptedException();
+            }
+        };
+
+        sendTask.run();
+
+        new Verifications()
+        {
+            {
+                mockTransport.sendAllMessages();
+                times = 0;
+            }
+        };
+        // clear the interrupt flag restored by the task
+        Thread.interrupted();
+    }
+
+    @Test
+    public void stopWakesUpTheTask()
+    {
+        IotHubEventDrivenSendTask sendTask = new IotHubEventDrivenSendTask(mockTransport);
+
+        sendTask.stop();
+
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(mockTransport, "signalSendWork");
+                times = 1;
+            }
+        };
+    }
+}
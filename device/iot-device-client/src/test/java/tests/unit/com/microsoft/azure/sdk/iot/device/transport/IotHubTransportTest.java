@@ -12,7 +12,9 @@ import com.microsoft.azure.sdk.iot.device.transport.*;
 import com.microsoft.azure.sdk.iot.device.transport.amqps.AmqpsIotHubConnection;
 import com.microsoft.azure.sdk.iot.device.transport.amqps.exceptions.AmqpConnectionThrottledException;
 import com.microsoft.azure.sdk.iot.device.transport.amqps.exceptions.AmqpUnauthorizedAccessException;
+import com.microsoft.azure.sdk.iot.device.transport.https.HttpsBatchMessage;
 import com.microsoft.azure.sdk.iot.device.transport.https.HttpsIotHubConnection;
+import com.microsoft.azure.sdk.iot.device.transport.https.HttpsSingleMessage;
 import com.microsoft.azure.sdk.iot.device.transport.mqtt.MqttIotHubConnection;
 import com.microsoft.azure.sdk.iot.device.transport.mqtt.exceptions.MqttUnauthorizedException;
 import mockit.*;
@@ -91,6 +93,18 @@ public class IotHubTransportTest
     @Mocked
     IotHubTransport.MessageRetryRunnable mockedMessageRetryRunnable;
 
+    @Mocked
+    OfflineMessageStore mockedOfflineMessageStore;
+
+    @Mocked
+    OfflineMessageStoreSettings mockedOfflineMessageStoreSettings;
+
+    @Mocked
+    OfflineMessageStore.Record mockedStoredRecord;
+
+    @Mocked
+    OfflineMessageCodec mockedOfflineMessageCodec;
+
     @Mocked
     IotHubServiceException mockedIothubServiceException;
 
@@ -249,6 +263,51 @@ public class IotHubTransportTest
         };
     }
 
+    //Tests_SRS_IOTHUBTRANSPORT_12_028: [If the connection is an MQTT connection, this function shall return its in-flight message count, and 0 otherwise.]
+    //Tests_SRS_IOTHUBTRANSPORT_12_029: [If the connection is an MQTT connection, this function shall return its queued publish count, and 0 otherwise.]
+    @Test
+    public void getMqttWindowMetricsReturnMqttConnectionMetrics()
+    {
+        //arrange
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedMqttIotHubConnection);
+        new NonStrictExpectations()
+        {
+            {
+                mockedMqttIotHubConnection.getInFlightMessageCount();
+                result = 10;
+                mockedMqttIotHubConnection.getQueuedPublishCount();
+                result = 3;
+            }
+        };
+
+        //act
+        int inFlightMessageCount = transport.getMqttInFlightMessageCount();
+        int queuedPublishCount = transport.getMqttQueuedPublishCount();
+
+        //assert
+        assertEquals(10, inFlightMessageCount);
+        assertEquals(3, queuedPublishCount);
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_12_028: [If the connection is an MQTT connection, this function shall return its in-flight message count, and 0 otherwise.]
+    //Tests_SRS_IOTHUBTRANSPORT_12_029: [If the connection is an MQTT connection, this function shall return its queued publish count, and 0 otherwise.]
+    @Test
+    public void getMqttWindowMetricsReturnZeroWithoutMqttConnection()
+    {
+        //arrange
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedAmqpsIotHubConnection);
+
+        //act
+        int inFlightMessageCount = transport.getMqttInFlightMessageCount();
+        int queuedPublishCount = transport.getMqttQueuedPublishCount();
+
+        //assert
+        assertEquals(0, inFlightMessageCount);
+        assertEquals(0, queuedPublishCount);
+    }
+
     //Tests_SRS_IOTHUBTRANSPORT_34_009: [If this function is called with a non-null message and a null exception, this function shall add that message to the receivedMessagesQueue.]
     @Test
     public void onMessageReceivedWithMessageAndNoExceptionAddsToQueue()
@@ -367,7 +426,7 @@ public class IotHubTransportTest
                 }
             }
 
-            @Mock void addReceivedMessagesOverHttpToReceivedQueue()
+            @Mock void addReceivedMessagesOverHttpToReceivedQueue(int maxMessagesToReceive)
             {
                 methodsCalled.append("addReceivedMessagesOverHttpToReceivedQueue");
             }
@@ -1128,6 +1187,110 @@ public class IotHubTransportTest
         assertEquals(1, waitingPacketsQueue.size());
     }
 
+    @Test (expected = IllegalStateException.class)
+    public void addMessagesThrowsIfDisconnected()
+    {
+        //arrange
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", DISCONNECTED);
+
+        //act
+        transport.addMessages(Collections.singletonList(mockedMessage), mockedEventCallback, new Object());
+    }
+
+    @Test
+    public void addMessagesAddsBatchablePackets()
+    {
+        //arrange
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        Queue<IotHubTransportPacket> waitingPacketsQueue = new ConcurrentLinkedQueue<>();
+        Deencapsulation.setField(transport, "waitingPacketsQueue", waitingPacketsQueue);
+
+        new NonStrictExpectations()
+        {
+            {
+                new IotHubTransportPacket(mockedMessage, mockedEventCallback, any, null, anyLong);
+                result = mockedPacket;
+            }
+        };
+
+        //act
+        transport.addMessages(Arrays.asList(mockedMessage, mockedMessage), mockedEventCallback, new Object());
+
+        //assert
+        assertEquals(2, waitingPacketsQueue.size());
+        new Verifications()
+        {
+            {
+                mockedPacket.setBatchable(true);
+                times = 2;
+            }
+        };
+    }
+
+    @Test
+    public void sendMessagesCoalescesBatchablePacketsOverHttps(final @Mocked HttpsBatchMessage mockedBatchMessage,
+                                                               final @Mocked HttpsSingleMessage mockedSingleMessage) throws TransportException
+    {
+        //arrange
+        new MockUp<IotHubTransport>()
+        {
+            @Mock boolean isMessageValid(IotHubTransportPacket packet)
+            {
+                return true;
+            }
+
+            @Mock void handleMessageException(IotHubTransportPacket packet, TransportException transportException)
+            {
+                //do nothing
+            }
+        };
+
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        final int MAX_MESSAGES_TO_SEND_PER_THREAD = Deencapsulation.getField(transport, "MAX_MESSAGES_TO_SEND_PER_THREAD");
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedHttpsIotHubConnection);
+        Queue<IotHubTransportPacket> waitingPacketsQueue = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < MAX_MESSAGES_TO_SEND_PER_THREAD + 5; i++)
+        {
+            waitingPacketsQueue.add(mockedPacket);
+        }
+
+        Deencapsulation.setField(transport, "waitingPacketsQueue", waitingPacketsQueue);
+
+        new NonStrictExpectations()
+        {
+            {
+                mockedPacket.isBatchable();
+                result = true;
+                mockedPacket.getMessage();
+                result = mockedMessage;
+                mockedMessage.isExpired();
+                result = false;
+                mockedMessage.getMessageId();
+                result = "messageId";
+                mockedHttpsIotHubConnection.sendBatchMessage((HttpsBatchMessage) any, (List<Message>) any);
+                result = IotHubStatusCode.OK_EMPTY;
+            }
+        };
+
+        //act
+        transport.sendMessages();
+
+        //assert
+        assertTrue(waitingPacketsQueue.isEmpty());
+        new Verifications()
+        {
+            {
+                mockedHttpsIotHubConnection.sendBatchMessage((HttpsBatchMessage) any, (List<Message>) any);
+                times = 1;
+                mockedHttpsIotHubConnection.sendMessage((Message) any);
+                times = 0;
+            }
+        };
+    }
+
     //Tests_SRS_IOTHUBTRANSPORT_34_043: [If the connection status of this object is not CONNECTED, this function shall do nothing]
     @Test
     public void sendMessagesDoesNothingIfNotConnected()
@@ -1178,6 +1341,81 @@ public class IotHubTransportTest
         assertEquals(1, waitingPacketsQueue.size());
     }
 
+    @Test
+    public void sendAllMessagesDrainsWholeQueue()
+    {
+        //arrange
+        new MockUp<IotHubTransport>()
+        {
+            @Mock void sendPacket(IotHubTransportPacket packet)
+            {
+                //do nothing
+            }
+        };
+
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        final int MAX_MESSAGES_TO_SEND_PER_THREAD = Deencapsulation.getField(transport, "MAX_MESSAGES_TO_SEND_PER_THREAD");
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        Queue<IotHubTransportPacket> waitingPacketsQueue = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < MAX_MESSAGES_TO_SEND_PER_THREAD * 3 + 1; i++)
+        {
+            waitingPacketsQueue.add(mockedPacket);
+        }
+
+        Deencapsulation.setField(transport, "waitingPacketsQueue", waitingPacketsQueue);
+
+        //act
+        transport.sendAllMessages();
+
+        //assert
+        assertTrue(waitingPacketsQueue.isEmpty());
+    }
+
+    @Test
+    public void sendAllMessagesDoesNothingIfNotConnected()
+    {
+        //arrange
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", DISCONNECTED_RETRYING);
+        Queue<IotHubTransportPacket> waitingPacketsQueue = new ConcurrentLinkedQueue<>();
+        waitingPacketsQueue.add(mockedPacket);
+        Deencapsulation.setField(transport, "waitingPacketsQueue", waitingPacketsQueue);
+
+        //act
+        transport.sendAllMessages();
+
+        //assert
+        assertFalse(waitingPacketsQueue.isEmpty());
+    }
+
+    @Test
+    public void addMessageSignalsSendWork() throws InterruptedException
+    {
+        //arrange
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+
+        //act
+        transport.addMessage(mockedMessage, mockedEventCallback, new Object());
+
+        //assert
+        assertTrue(transport.waitForSendWork(0));
+        assertFalse(transport.waitForSendWork(0));
+    }
+
+    @Test
+    public void waitForSendWorkTimesOutWithoutSignal() throws InterruptedException
+    {
+        //arrange
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+
+        //act
+        boolean isSignalled = transport.waitForSendWork(1);
+
+        //assert
+        assertFalse(isSignalled);
+    }
+
     //Tests_SRS_IOTHUBTRANSPORT_34_045: [This function shall dequeue each packet in the callback queue and execute
     // their saved callback with their saved status and context]
     @Test
@@ -1226,7 +1464,7 @@ public class IotHubTransportTest
         //arrange
         new MockUp<IotHubTransport>()
         {
-            @Mock void addReceivedMessagesOverHttpToReceivedQueue()
+            @Mock void addReceivedMessagesOverHttpToReceivedQueue(int maxMessagesToReceive)
             {
                 fail("should not have called this method");
             }
@@ -1264,7 +1502,7 @@ public class IotHubTransportTest
                 }
             }
 
-            @Mock void addReceivedMessagesOverHttpToReceivedQueue()
+            @Mock void addReceivedMessagesOverHttpToReceivedQueue(int maxMessagesToReceive)
             {
                 methodsCalled.append("addReceivedMessagesOverHttpToReceivedQueue");
             }
@@ -1319,1471 +1557,2717 @@ public class IotHubTransportTest
         assertEquals("acknowledgeReceivedMessage", methodsCalled.toString());
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_34_049: [If the provided callback is null, this function shall throw an IllegalArgumentException.]
-    @Test (expected = IllegalArgumentException.class)
-    public void registerConnectionStateCallbackThrowsForNullCallback()
+    //Tests_SRS_IOTHUBTRANSPORT_12_020: [This function shall acknowledge received messages until the queue is empty
+    // or the receive batch size of the default config is reached.]
+    @Test
+    public void handleMessageAcknowledgesUpToReceiveBatchSize() throws DeviceClientException
     {
         //arrange
-        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        final StringBuilder methodsCalled = new StringBuilder();
+        new MockUp<IotHubTransport>()
+        {
+            @Mock void acknowledgeReceivedMessage(IotHubTransportMessage receivedMessage)
+            {
+                methodsCalled.append("acknowledgeReceivedMessage");
+            }
+        };
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        Queue<IotHubTransportMessage> receivedMessagesQueue = new ConcurrentLinkedQueue<>();
+        receivedMessagesQueue.add(mockedTransportMessage);
+        receivedMessagesQueue.add(mockedTransportMessage);
+        receivedMessagesQueue.add(mockedTransportMessage);
+        Deencapsulation.setField(transport, "receivedMessagesQueue", receivedMessagesQueue);
+        new NonStrictExpectations()
+        {
+            {
+                mockedConfig.getReceiveBatchSize();
+                result = 2;
+            }
+        };
 
         //act
-        transport.registerConnectionStateCallback(null, new Object());
+        transport.handleMessage();
+
+        //assert
+        assertEquals(1, receivedMessagesQueue.size());
+        assertTrue(transport.hasReceivedMessages());
+        assertEquals("acknowledgeReceivedMessageacknowledgeReceivedMessage", methodsCalled.toString());
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_34_050: [This function shall save the provided callback and context.]
+    //Tests_SRS_IOTHUBTRANSPORT_12_032: [This function shall stop acknowledging received messages while the message
+    // callback executor is full.]
     @Test
-    public void registerConnectionStateCallbackSavesProvidedCallbackAndContext()
+    public void handleMessageStopsWhileMessageCallbackExecutorIsFull(final @Mocked MessageCallbackExecutor mockedCallbackExecutor) throws DeviceClientException
     {
         //arrange
-        IotHubTransport transport = new IotHubTransport(mockedConfig);
-        final Object context = new Object();
+        final StringBuilder methodsCalled = new StringBuilder();
+        new MockUp<IotHubTransport>()
+        {
+            @Mock void acknowledgeReceivedMessage(IotHubTransportMessage receivedMessage)
+            {
+                methodsCalled.append("acknowledgeReceivedMessage");
+            }
+        };
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        Deencapsulation.setField(transport, "messageCallbackExecutor", mockedCallbackExecutor);
+        Queue<IotHubTransportMessage> receivedMessagesQueue = new ConcurrentLinkedQueue<>();
+        receivedMessagesQueue.add(mockedTransportMessage);
+        receivedMessagesQueue.add(mockedTransportMessage);
+        Deencapsulation.setField(transport, "receivedMessagesQueue", receivedMessagesQueue);
+        new NonStrictExpectations()
+        {
+            {
+                mockedConfig.getReceiveBatchSize();
+                result = 10;
+                mockedCallbackExecutor.isFull();
+                returns(false, true);
+            }
+        };
 
         //act
-        transport.registerConnectionStateCallback(mockedIotHubConnectionStateCallback, context);
+        transport.handleMessage();
 
         //assert
-        assertEquals(mockedIotHubConnectionStateCallback, Deencapsulation.getField(transport, "stateCallback"));
-        assertEquals(context, Deencapsulation.getField(transport, "stateCallbackContext"));
+        assertEquals(1, receivedMessagesQueue.size());
+        assertFalse(transport.hasReceivedMessages());
+        assertEquals("acknowledgeReceivedMessage", methodsCalled.toString());
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_34_051: [If the provided callback is null but the context is not, this function shall throw an IllegalArgumentException.]
-    @Test(expected = IllegalArgumentException.class)
-    public void registerConnectionStatusChangeCallbackThrowsForNullCallback()
+    @Test
+    public void onMessageReceivedSignalsReceiveWork() throws InterruptedException
     {
         //arrange
         IotHubTransport transport = new IotHubTransport(mockedConfig);
 
         //act
-        transport.registerConnectionStatusChangeCallback(null, new Object());
+        transport.onMessageReceived(mockedTransportMessage, null);
+
+        //assert
+        assertTrue(transport.waitForReceiveWork(0));
+        assertFalse(transport.waitForReceiveWork(0));
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_34_051: [If the provided callback is null but the context is not, this function shall throw an IllegalArgumentException.]
     @Test
-    public void registerConnectionStatusChangeCallbackDoesNotThrowForNullCallbackIfContextIsAlsoNull()
+    public void waitForReceiveWorkTimesOutWithoutSignal() throws InterruptedException
     {
         //arrange
         IotHubTransport transport = new IotHubTransport(mockedConfig);
-        transport.registerConnectionStatusChangeCallback(mockedIotHubConnectionStatusChangeCallback, new Object());
-        assertNotNull(Deencapsulation.getField(transport, "connectionStatusChangeCallback"));
-        assertNotNull(Deencapsulation.getField(transport, "connectionStatusChangeCallbackContext"));
 
         //act
-        transport.registerConnectionStatusChangeCallback(null, null);
+        boolean isSignalled = transport.waitForReceiveWork(1);
 
         //assert
-        assertNull(Deencapsulation.getField(transport, "connectionStatusChangeCallback"));
-        assertNull(Deencapsulation.getField(transport, "connectionStatusChangeCallbackContext"));
-
+        assertFalse(isSignalled);
+        assertFalse(transport.hasReceivedMessages());
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_34_052: [This function shall save the provided callback and context.]
+    //Tests_SRS_IOTHUBTRANSPORT_12_022: [If the default config allows more than one message callback at a time, this
+    // function shall create a message callback executor with that concurrency.]
     @Test
-    public void registerConnectionStatusChangeCallbackSavesProvidedCallbackAndContext()
+    public void openCreatesMessageCallbackExecutor(final @Mocked MessageCallbackExecutor mockedCallbackExecutor) throws DeviceClientException
     {
         //arrange
-        IotHubTransport transport = new IotHubTransport(mockedConfig);
-        final Object context = new Object();
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", DISCONNECTED);
+        Collection<DeviceClientConfig> configs = new ArrayList<>();
+        configs.add(mockedConfig);
+        new MockUp<IotHubTransport>()
+        {
+            @Mock boolean isSasTokenExpired()
+            {
+                return false;
+            }
+
+            @Mock void openConnection()
+            {
+            }
+        };
+        new NonStrictExpectations()
+        {
+            {
+                mockedConfig.getMessageCallbackConcurrency();
+                result = 4;
+            }
+        };
 
         //act
-        transport.registerConnectionStatusChangeCallback(mockedIotHubConnectionStatusChangeCallback, context);
+        transport.open(configs);
 
         //assert
-        assertEquals(mockedIotHubConnectionStatusChangeCallback, Deencapsulation.getField(transport, "connectionStatusChangeCallback"));
-        assertEquals(context, Deencapsulation.getField(transport, "connectionStatusChangeCallbackContext"));
+        assertNotNull(Deencapsulation.getField(transport, "messageCallbackExecutor"));
+        new Verifications()
+        {
+            {
+                new MessageCallbackExecutor(4);
+                times = 1;
+            }
+        };
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_34_053: [This function shall execute the callback associate with the provided
-    // transport message with the provided message and its saved callback context.]
-    //Tests_SRS_IOTHUBTRANSPORT_34_054: [This function shall send the message callback result along the
-    // connection as the ack to the service.]
+    //Tests_SRS_IOTHUBTRANSPORT_12_023: [This function shall shut down the message callback executor.]
     @Test
-    public void acknowledgeReceivedMessageSendsAck() throws TransportException
+    public void closeShutsDownMessageCallbackExecutor(final @Mocked MessageCallbackExecutor mockedCallbackExecutor) throws DeviceClientException
     {
         //arrange
-        IotHubTransport transport = new IotHubTransport(mockedConfig);
-        final Object context = new Object();
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        Deencapsulation.setField(transport, "taskScheduler", mockedScheduledExecutorService);
         Deencapsulation.setField(transport, "iotHubTransportConnection", mockedIotHubTransportConnection);
-        new Expectations()
-        {
-            {
-                mockedTransportMessage.getMessageCallback();
-                result = mockedMessageCallback;
-
-                mockedTransportMessage.getMessageCallbackContext();
-                result = context;
-
-                mockedMessageCallback.execute(mockedTransportMessage, context);
-                result = IotHubMessageResult.COMPLETE;
-            }
-        };
+        Deencapsulation.setField(transport, "messageCallbackExecutor", mockedCallbackExecutor);
 
         //act
-        Deencapsulation.invoke(transport, "acknowledgeReceivedMessage", mockedTransportMessage);
+        transport.close(CLIENT_CLOSE, null);
 
         //assert
+        assertNull(Deencapsulation.getField(transport, "messageCallbackExecutor"));
         new Verifications()
         {
             {
-                mockedIotHubTransportConnection.sendMessageResult(mockedTransportMessage, IotHubMessageResult.COMPLETE);
+                mockedCallbackExecutor.shutdown();
                 times = 1;
             }
         };
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_34_055: [If an exception is thrown while acknowledging the received message,
-    // this function shall add the received message back into the receivedMessagesQueue and then rethrow the exception.]
+    //Tests_SRS_IOTHUBTRANSPORT_12_024: [If there is a message callback executor, this function shall run the callback
+    // on it, ordered with the other messages of the same callback, type and input or method name, and return.]
     @Test
-    public void acknowledgeReceivedMessageReQueuesFailedMessages() throws TransportException
+    public void acknowledgeReceivedMessageDispatchesToMessageCallbackExecutor(final @Mocked MessageCallbackExecutor mockedCallbackExecutor) throws TransportException
     {
         //arrange
-        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        final List<Runnable> tasks = new ArrayList<>();
         final Object context = new Object();
-        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedIotHubTransportConnection);
-        new Expectations()
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedAmqpsIotHubConnection);
+        Deencapsulation.setField(transport, "messageCallbackExecutor", mockedCallbackExecutor);
+        new NonStrictExpectations()
         {
             {
                 mockedTransportMessage.getMessageCallback();
                 result = mockedMessageCallback;
-
                 mockedTransportMessage.getMessageCallbackContext();
                 result = context;
-
+                mockedTransportMessage.getMessageType();
+                result = MessageType.DEVICE_TELEMETRY;
+                mockedTransportMessage.getInputName();
+                result = "input1";
                 mockedMessageCallback.execute(mockedTransportMessage, context);
-                result = IotHubMessageResult.COMPLETE;
-
-                mockedIotHubTransportConnection.sendMessageResult(mockedTransportMessage, IotHubMessageResult.COMPLETE);
-                result = mockedTransportException;
+                result = IotHubMessageResult.REJECT;
+                mockedCallbackExecutor.execute(any, (Runnable) any);
+                result = new Delegate()
+                {
+                    boolean execute(Object orderingKey, Runnable task)
+                    {
+                        return tasks.add(task);
+                    }
+                };
             }
         };
 
-        boolean exceptionRethrown = false;
-
         //act
-        try
-        {
-            Deencapsulation.invoke(transport, "acknowledgeReceivedMessage", mockedTransportMessage);
-        }
-        catch (Exception e)
-        {
-            exceptionRethrown = true;
-        }
+        Deencapsulation.invoke(transport, "acknowledgeReceivedMessage", mockedTransportMessage);
 
         //assert
-        assertTrue(exceptionRethrown);
-        Queue<IotHubTransportMessage> receivedMessagesQueue = Deencapsulation.getField(transport, "receivedMessagesQueue");
-        assertEquals(1, receivedMessagesQueue.size());
-    }
-
-    //Tests_SRS_IOTHUBTRANSPORT_34_056: [If the saved http transport connection can receive a message, add it to receivedMessagesQueue.]
-    @Test
-    public void addReceivedMessagesOverHttpToReceivedQueueChecksForHttpMessages() throws TransportException
-    {
-        //arrange
-        IotHubTransport transport = new IotHubTransport(mockedConfig);
-        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedHttpsIotHubConnection);
+        assertEquals(1, tasks.size());
+        new Verifications()
+        {
+            {
+                mockedCallbackExecutor.execute(Arrays.asList(mockedMessageCallback, MessageType.DEVICE_TELEMETRY, "input1"), (Runnable) any);
+                times = 1;
+                mockedMessageCallback.execute((Message) any, any);
+                times = 0;
+            }
+        };
 
         //act
-        Deencapsulation.invoke(transport, "addReceivedMessagesOverHttpToReceivedQueue");
+        tasks.get(0).run();
 
         //assert
-        Queue<IotHubTransportMessage> receivedMessagesQueue = Deencapsulation.getField(transport, "receivedMessagesQueue");
-        assertEquals(1, receivedMessagesQueue.size());
         new Verifications()
         {
             {
-                mockedHttpsIotHubConnection.receiveMessage();
+                mockedMessageCallback.execute(mockedTransportMessage, context);
+                times = 1;
+                mockedAmqpsIotHubConnection.sendMessageResult(mockedTransportMessage, IotHubMessageResult.REJECT);
                 times = 1;
             }
         };
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_34_057: [This function shall move all packets from inProgressQueue to waiting queue.]
-    //Tests_SRS_IOTHUBTRANSPORT_34_058: [This function shall invoke updateStatus with DISCONNECTED_RETRYING, and the provided transportException.]
-    //Tests_SRS_IOTHUBTRANSPORT_34_059: [This function shall invoke checkForUnauthorizedException with the provided exception.]
-    //Tests_SRS_IOTHUBTRANSPORT_34_060: [This function shall invoke reconnect with the provided exception.]
+    //Tests_SRS_IOTHUBTRANSPORT_12_025: [If the callback throws, the message shall be acknowledged with ABANDON.]
     @Test
-    public void handleDisconnectionClearsInProgressAndReconnects()
+    public void dispatchedMessageIsAbandonedIfCallbackThrows(final @Mocked MessageCallbackExecutor mockedCallbackExecutor) throws TransportException
     {
         //arrange
-        final StringBuilder methodsCalled = new StringBuilder();
-        new MockUp<IotHubTransport>()
+        final List<Runnable> tasks = new ArrayList<>();
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedAmqpsIotHubConnection);
+        Deencapsulation.setField(transport, "messageCallbackExecutor", mockedCallbackExecutor);
+        new NonStrictExpectations()
         {
-            @Mock IotHubConnectionStatusChangeReason exceptionToStatusChangeReason(Throwable e)
-            {
-                methodsCalled.append("exceptionToStatusChangeReason");
-                return mockedIotHubConnectionStatusChangeReason;
-            }
-
-            @Mock void updateStatus(IotHubConnectionStatus newConnectionStatus, IotHubConnectionStatusChangeReason reason, Throwable throwable)
-            {
-                methodsCalled.append("updateStatus");
-            }
-
-            @Mock void checkForUnauthorizedException(TransportException transportException)
-            {
-                methodsCalled.append("checkForUnauthorizedException");
-            }
-
-            @Mock void reconnect(TransportException transportException)
             {
-                methodsCalled.append("reconnect");
+                mockedTransportMessage.getMessageCallback();
+                result = mockedMessageCallback;
+                mockedMessageCallback.execute((Message) any, any);
+                result = new IllegalStateException();
+                mockedCallbackExecutor.execute(any, (Runnable) any);
+                result = new Delegate()
+                {
+                    boolean execute(Object orderingKey, Runnable task)
+                    {
+                        return tasks.add(task);
+                    }
+                };
             }
         };
-        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.invoke(transport, "acknowledgeReceivedMessage", mockedTransportMessage);
 
         //act
-        Deencapsulation.invoke(transport, "handleDisconnection", mockedTransportException);
+        tasks.get(0).run();
 
         //assert
-        assertTrue(methodsCalled.toString().contains("exceptionToStatusChangeReason"));
-        assertTrue(methodsCalled.toString().contains("updateStatus"));
-        assertTrue(methodsCalled.toString().contains("checkForUnauthorizedException"));
-        assertTrue(methodsCalled.toString().contains("reconnect"));
+        new Verifications()
+        {
+            {
+                mockedAmqpsIotHubConnection.sendMessageResult(mockedTransportMessage, IotHubMessageResult.ABANDON);
+                times = 1;
+            }
+        };
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_34_061: [This function shall close the saved connection, and then invoke openConnection and return null.]
+    //Tests_SRS_IOTHUBTRANSPORT_12_026: [If the connection is MQTT, acknowledgements shall be sent in the order the
+    // messages were received.]
     @Test
-    public void singleReconnectAttemptSuccess() throws TransportException
+    public void dispatchedMessagesAreAcknowledgedInReceiveOrderOverMqtt(final @Mocked MessageCallbackExecutor mockedCallbackExecutor) throws TransportException
     {
         //arrange
-        new MockUp<IotHubTransport>()
+        final List<Runnable> tasks = new ArrayList<>();
+        final IotHubTransportMessage firstMessage = new IotHubTransportMessage("first");
+        final IotHubTransportMessage secondMessage = new IotHubTransportMessage("second");
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedMqttIotHubConnection);
+        Deencapsulation.setField(transport, "messageCallbackExecutor", mockedCallbackExecutor);
+        new NonStrictExpectations()
         {
-            @Mock void openConnection()
             {
-                //do nothing
+                firstMessage.getMessageCallback();
+                result = mockedMessageCallback;
+                secondMessage.getMessageCallback();
+                result = mockedMessageCallback;
+                mockedMessageCallback.execute((Message) any, any);
+                result = IotHubMessageResult.COMPLETE;
+                mockedCallbackExecutor.execute(any, (Runnable) any);
+                result = new Delegate()
+                {
+                    boolean execute(Object orderingKey, Runnable task)
+                    {
+                        return tasks.add(task);
+                    }
+                };
             }
         };
-        final IotHubTransport transport = new IotHubTransport(mockedConfig);
-        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedIotHubTransportConnection);
+        Deencapsulation.invoke(transport, "acknowledgeReceivedMessage", firstMessage);
+        Deencapsulation.invoke(transport, "acknowledgeReceivedMessage", secondMessage);
 
-        new Expectations()
+        //act
+        tasks.get(1).run();
+
+        //assert
+        new Verifications()
         {
             {
-                //open and close happen with no exception
-                mockedIotHubTransportConnection.close(true);
+                mockedMqttIotHubConnection.sendMessageResult((Message) any, (IotHubMessageResult) any);
+                times = 0;
             }
         };
 
         //act
-        Exception result = Deencapsulation.invoke(transport, "singleReconnectAttempt");
+        tasks.get(0).run();
 
         //assert
-        assertNull(result);
+        new VerificationsInOrder()
+        {
+            {
+                mockedMqttIotHubConnection.sendMessageResult(firstMessage, IotHubMessageResult.COMPLETE);
+                mockedMqttIotHubConnection.sendMessageResult(secondMessage, IotHubMessageResult.COMPLETE);
+            }
+        };
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_34_062: [If an exception is encountered while closing or opening the connection,
-    // this function shall invoke checkForUnauthorizedException on that exception and then return it.]
+    //Tests_SRS_IOTHUBTRANSPORT_12_027: [If an acknowledgement cannot be sent, the received message shall be added
+    // back into the receivedMessagesQueue.]
     @Test
-    public void singleReconnectAttemptReturnsEncounteredException() throws TransportException
+    public void dispatchedMessageIsQueuedAgainIfAcknowledgementFails(final @Mocked MessageCallbackExecutor mockedCallbackExecutor) throws TransportException
     {
         //arrange
-        final IotHubTransport transport = new IotHubTransport(mockedConfig);
-        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedIotHubTransportConnection);
-
-        new Expectations(IotHubTransport.class)
+        final List<Runnable> tasks = new ArrayList<>();
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedAmqpsIotHubConnection);
+        Deencapsulation.setField(transport, "messageCallbackExecutor", mockedCallbackExecutor);
+        new NonStrictExpectations()
         {
             {
-                //open and close happen with no exception
-                mockedIotHubTransportConnection.close(true);
+                mockedTransportMessage.getMessageCallback();
+                result = mockedMessageCallback;
+                mockedAmqpsIotHubConnection.sendMessageResult((Message) any, (IotHubMessageResult) any);
                 result = mockedTransportException;
-
-                Deencapsulation.invoke(transport, "checkForUnauthorizedException", mockedTransportException);
+                mockedCallbackExecutor.execute(any, (Runnable) any);
+                result = new Delegate()
+                {
+                    boolean execute(Object orderingKey, Runnable task)
+                    {
+                        return tasks.add(task);
+                    }
+                };
             }
         };
+        Deencapsulation.invoke(transport, "acknowledgeReceivedMessage", mockedTransportMessage);
 
         //act
-        Exception result = Deencapsulation.invoke(transport, "singleReconnectAttempt");
+        tasks.get(0).run();
 
         //assert
-        assertEquals(mockedTransportException, result);
-        new Verifications()
-        {
-            {
-                Deencapsulation.invoke(transport, "checkForUnauthorizedException", mockedTransportException);
-                times = 1;
-            }
-        };
+        Queue<IotHubTransportMessage> receivedMessagesQueue = Deencapsulation.getField(transport, "receivedMessagesQueue");
+        assertEquals(1, receivedMessagesQueue.size());
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_34_063: [If the provided transportException is retryable, the packet has not
-    // timed out, and the retry policy allows, this function shall schedule a task to add the provided
-    // packet to the waiting list after the amount of time determined by the retry policy.]
+    //Tests_SRS_IOTHUBTRANSPORT_12_033: [If the message callback executor was shut down, the message shall be dropped
+    // without an acknowledgement, so the service delivers it again.]
     @Test
-    public void handleMessageExceptionSchedulesRetryIfRetryable()
+    public void dispatchedMessageIsDroppedIfMessageCallbackExecutorIsShutDown(final @Mocked MessageCallbackExecutor mockedCallbackExecutor) throws TransportException
     {
         //arrange
-        new MockUp<IotHubTransport>()
-        {
-            @Mock boolean hasOperationTimedOut(long time)
-            {
-                return false;
-            }
-        };
-        final IotHubTransport transport = new IotHubTransport(mockedConfig);
-
-        final long expectedDelay = 0;
-        final long duration = 0;
-        Deencapsulation.setField(transport, "taskScheduler", mockedTaskScheduler);
-        new Expectations()
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedMqttIotHubConnection);
+        Deencapsulation.setField(transport, "messageCallbackExecutor", mockedCallbackExecutor);
+        new NonStrictExpectations()
         {
             {
-                mockedTransportException.isRetryable();
-                result = true;
-
-                mockedConfig.getRetryPolicy();
-                result = mockedRetryPolicy;
-
-                mockedRetryPolicy.getRetryDecision(anyInt, mockedTransportException);
-                result = mockedRetryDecision;
-
-                mockedRetryDecision.shouldRetry();
-                result = true;
-
-                mockedRetryDecision.getDuration();
-                result = duration;
+                mockedTransportMessage.getMessageCallback();
+                result = mockedMessageCallback;
+                mockedCallbackExecutor.execute(any, (Runnable) any);
+                result = false;
             }
         };
 
         //act
-        Deencapsulation.invoke(transport, "handleMessageException", mockedPacket, mockedTransportException);
+        Deencapsulation.invoke(transport, "acknowledgeReceivedMessage", mockedTransportMessage);
 
         //assert
+        Queue<?> orderedAcknowledgements = Deencapsulation.getField(transport, "orderedAcknowledgements");
+        assertTrue(orderedAcknowledgements.isEmpty());
         new Verifications()
         {
             {
-                mockedPacket.incrementRetryAttempt();
-                times = 1;
-
-                mockedTaskScheduler.schedule((IotHubTransport.MessageRetryRunnable) any, expectedDelay, TimeUnit.MILLISECONDS);
-                times = 1;
+                mockedMessageCallback.execute((Message) any, any);
+                times = 0;
+                mockedMqttIotHubConnection.sendMessageResult((Message) any, (IotHubMessageResult) any);
+                times = 0;
             }
         };
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_34_064: [If the provided transportException is not retryable, the packet has expired,
-    // or if the retry policy says to not retry, this function shall add the provided packet to the callback queue.]
-    @Test
+    //Tests_SRS_IOTHUBTRANSPORT_34_049: [If the provided callback is null, this function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void registerConnectionStateCallbackThrowsForNullCallback()
+    {
+        //arrange
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+
+        //act
+        transport.registerConnectionStateCallback(null, new Object());
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_34_050: [This function shall save the provided callback and context.]
+    @Test
+    public void registerConnectionStateCallbackSavesProvidedCallbackAndContext()
+    {
+        //arrange
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        final Object context = new Object();
+
+        //act
+        transport.registerConnectionStateCallback(mockedIotHubConnectionStateCallback, context);
+
+        //assert
+        assertEquals(mockedIotHubConnectionStateCallback, Deencapsulation.getField(transport, "stateCallback"));
+        assertEquals(context, Deencapsulation.getField(transport, "stateCallbackContext"));
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_34_051: [If the provided callback is null but the context is not, this function shall throw an IllegalArgumentException.]
+    @Test(expected = IllegalArgumentException.class)
+    public void registerConnectionStatusChangeCallbackThrowsForNullCallback()
+    {
+        //arrange
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+
+        //act
+        transport.registerConnectionStatusChangeCallback(null, new Object());
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_34_051: [If the provided callback is null but the context is not, this function shall throw an IllegalArgumentException.]
+    @Test
+    public void registerConnectionStatusChangeCallbackDoesNotThrowForNullCallbackIfContextIsAlsoNull()
+    {
+        //arrange
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        transport.registerConnectionStatusChangeCallback(mockedIotHubConnectionStatusChangeCallback, new Object());
+        assertNotNull(Deencapsulation.getField(transport, "connectionStatusChangeCallback"));
+        assertNotNull(Deencapsulation.getField(transport, "connectionStatusChangeCallbackContext"));
+
+        //act
+        transport.registerConnectionStatusChangeCallback(null, null);
+
+        //assert
+        assertNull(Deencapsulation.getField(transport, "connectionStatusChangeCallback"));
+        assertNull(Deencapsulation.getField(transport, "connectionStatusChangeCallbackContext"));
+
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_34_052: [This function shall save the provided callback and context.]
+    @Test
+    public void registerConnectionStatusChangeCallbackSavesProvidedCallbackAndContext()
+    {
+        //arrange
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        final Object context = new Object();
+
+        //act
+        transport.registerConnectionStatusChangeCallback(mockedIotHubConnectionStatusChangeCallback, context);
+
+        //assert
+        assertEquals(mockedIotHubConnectionStatusChangeCallback, Deencapsulation.getField(transport, "connectionStatusChangeCallback"));
+        assertEquals(context, Deencapsulation.getField(transport, "connectionStatusChangeCallbackContext"));
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_34_053: [This function shall execute the callback associate with the provided
+    // transport message with the provided message and its saved callback context.]
+    //Tests_SRS_IOTHUBTRANSPORT_34_054: [This function shall send the message callback result along the
+    // connection as the ack to the service.]
+    @Test
+    public void acknowledgeReceivedMessageSendsAck() throws TransportException
+    {
+        //arrange
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        final Object context = new Object();
+        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedIotHubTransportConnection);
+        new Expectations()
+        {
+            {
+                mockedTransportMessage.getMessageCallback();
+                result = mockedMessageCallback;
+
+                mockedTransportMessage.getMessageCallbackContext();
+                result = context;
+
+                mockedMessageCallback.execute(mockedTransportMessage, context);
+                result = IotHubMessageResult.COMPLETE;
+            }
+        };
+
+        //act
+        Deencapsulation.invoke(transport, "acknowledgeReceivedMessage", mockedTransportMessage);
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockedIotHubTransportConnection.sendMessageResult(mockedTransportMessage, IotHubMessageResult.COMPLETE);
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_34_055: [If an exception is thrown while acknowledging the received message,
+    // this function shall add the received message back into the receivedMessagesQueue and then rethrow the exception.]
+    @Test
+    public void acknowledgeReceivedMessageReQueuesFailedMessages() throws TransportException
+    {
+        //arrange
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        final Object context = new Object();
+        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedIotHubTransportConnection);
+        new Expectations()
+        {
+            {
+                mockedTransportMessage.getMessageCallback();
+                result = mockedMessageCallback;
+
+                mockedTransportMessage.getMessageCallbackContext();
+                result = context;
+
+                mockedMessageCallback.execute(mockedTransportMessage, context);
+                result = IotHubMessageResult.COMPLETE;
+
+                mockedIotHubTransportConnection.sendMessageResult(mockedTransportMessage, IotHubMessageResult.COMPLETE);
+                result = mockedTransportException;
+            }
+        };
+
+        boolean exceptionRethrown = false;
+
+        //act
+        try
+        {
+            Deencapsulation.invoke(transport, "acknowledgeReceivedMessage", mockedTransportMessage);
+        }
+        catch (Exception e)
+        {
+            exceptionRethrown = true;
+        }
+
+        //assert
+        assertTrue(exceptionRethrown);
+        Queue<IotHubTransportMessage> receivedMessagesQueue = Deencapsulation.getField(transport, "receivedMessagesQueue");
+        assertEquals(1, receivedMessagesQueue.size());
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_34_056: [If the saved http transport connection can receive a message, add it to receivedMessagesQueue.]
+    @Test
+    public void addReceivedMessagesOverHttpToReceivedQueueChecksForHttpMessages() throws TransportException
+    {
+        //arrange
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedHttpsIotHubConnection);
+
+        //act
+        Deencapsulation.invoke(transport, "addReceivedMessagesOverHttpToReceivedQueue", 1);
+
+        //assert
+        Queue<IotHubTransportMessage> receivedMessagesQueue = Deencapsulation.getField(transport, "receivedMessagesQueue");
+        assertEquals(1, receivedMessagesQueue.size());
+        new Verifications()
+        {
+            {
+                mockedHttpsIotHubConnection.receiveMessage();
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_12_021: [This function shall stop fetching messages over HTTP as soon as the IoT Hub
+    // has no message to return.]
+    @Test
+    public void addReceivedMessagesOverHttpToReceivedQueueFetchesUntilNoMessageIsReturned() throws TransportException
+    {
+        //arrange
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedHttpsIotHubConnection);
+        new NonStrictExpectations()
+        {
+            {
+                mockedHttpsIotHubConnection.receiveMessage();
+                returns(mockedTransportMessage, mockedTransportMessage, null);
+            }
+        };
+
+        //act
+        Deencapsulation.invoke(transport, "addReceivedMessagesOverHttpToReceivedQueue", 5);
+
+        //assert
+        Queue<IotHubTransportMessage> receivedMessagesQueue = Deencapsulation.getField(transport, "receivedMessagesQueue");
+        assertEquals(2, receivedMessagesQueue.size());
+        new Verifications()
+        {
+            {
+                mockedHttpsIotHubConnection.receiveMessage();
+                times = 3;
+            }
+        };
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_34_057: [This function shall move all packets from inProgressQueue to waiting queue.]
+    //Tests_SRS_IOTHUBTRANSPORT_34_058: [This function shall invoke updateStatus with DISCONNECTED_RETRYING, and the provided transportException.]
+    //Tests_SRS_IOTHUBTRANSPORT_34_059: [This function shall invoke checkForUnauthorizedException with the provided exception.]
+    //Tests_SRS_IOTHUBTRANSPORT_34_060: [This function shall invoke reconnect with the provided exception.]
+    @Test
+    public void handleDisconnectionClearsInProgressAndReconnects()
+    {
+        //arrange
+        final StringBuilder methodsCalled = new StringBuilder();
+        new MockUp<IotHubTransport>()
+        {
+            @Mock IotHubConnectionStatusChangeReason exceptionToStatusChangeReason(Throwable e)
+            {
+                methodsCalled.append("exceptionToStatusChangeReason");
+                return mockedIotHubConnectionStatusChangeReason;
+            }
+
+            @Mock void updateStatus(IotHubConnectionStatus newConnectionStatus, IotHubConnectionStatusChangeReason reason, Throwable throwable)
+            {
+                methodsCalled.append("updateStatus");
+            }
+
+            @Mock void checkForUnauthorizedException(TransportException transportException)
+            {
+                methodsCalled.append("checkForUnauthorizedException");
+            }
+
+            @Mock void reconnect(TransportException transportException)
+            {
+                methodsCalled.append("reconnect");
+            }
+        };
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+
+        //act
+        Deencapsulation.invoke(transport, "handleDisconnection", mockedTransportException);
+
+        //assert
+        assertTrue(methodsCalled.toString().contains("exceptionToStatusChangeReason"));
+        assertTrue(methodsCalled.toString().contains("updateStatus"));
+        assertTrue(methodsCalled.toString().contains("checkForUnauthorizedException"));
+        assertTrue(methodsCalled.toString().contains("reconnect"));
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_34_061: [This function shall close the saved connection, and then invoke openConnection and return null.]
+    @Test
+    public void singleReconnectAttemptSuccess() throws TransportException
+    {
+        //arrange
+        new MockUp<IotHubTransport>()
+        {
+            @Mock void openConnection()
+            {
+                //do nothing
+            }
+        };
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedIotHubTransportConnection);
+
+        new Expectations()
+        {
+            {
+                //open and close happen with no exception
+                mockedIotHubTransportConnection.close(true);
+            }
+        };
+
+        //act
+        Exception result = Deencapsulation.invoke(transport, "singleReconnectAttempt");
+
+        //assert
+        assertNull(result);
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_34_062: [If an exception is encountered while closing or opening the connection,
+    // this function shall invoke checkForUnauthorizedException on that exception and then return it.]
+    @Test
+    public void singleReconnectAttemptReturnsEncounteredException() throws TransportException
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedIotHubTransportConnection);
+
+        new Expectations(IotHubTransport.class)
+        {
+            {
+                //open and close happen with no exception
+                mockedIotHubTransportConnection.close(true);
+                result = mockedTransportException;
+
+                Deencapsulation.invoke(transport, "checkForUnauthorizedException", mockedTransportException);
+            }
+        };
+
+        //act
+        Exception result = Deencapsulation.invoke(transport, "singleReconnectAttempt");
+
+        //assert
+        assertEquals(mockedTransportException, result);
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(transport, "checkForUnauthorizedException", mockedTransportException);
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_34_063: [If the provided transportException is retryable, the packet has not
+    // timed out, and the retry policy allows, this function shall schedule a task to add the provided
+    // packet to the waiting list after the amount of time determined by the retry policy.]
+    @Test
+    public void handleMessageExceptionSchedulesRetryIfRetryable()
+    {
+        //arrange
+        new MockUp<IotHubTransport>()
+        {
+            @Mock boolean hasOperationTimedOut(long time)
+            {
+                return false;
+            }
+        };
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+
+        final long expectedDelay = 0;
+        final long duration = 0;
+        Deencapsulation.setField(transport, "taskScheduler", mockedTaskScheduler);
+        new Expectations()
+        {
+            {
+                mockedTransportException.isRetryable();
+                result = true;
+
+                mockedConfig.getRetryPolicy();
+                result = mockedRetryPolicy;
+
+                mockedRetryPolicy.getRetryDecision(anyInt, mockedTransportException);
+                result = mockedRetryDecision;
+
+                mockedRetryDecision.shouldRetry();
+                result = true;
+
+                mockedRetryDecision.getDuration();
+                result = duration;
+            }
+        };
+
+        //act
+        Deencapsulation.invoke(transport, "handleMessageException", mockedPacket, mockedTransportException);
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockedPacket.incrementRetryAttempt();
+                times = 1;
+
+                mockedTaskScheduler.schedule((IotHubTransport.MessageRetryRunnable) any, expectedDelay, TimeUnit.MILLISECONDS);
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_34_064: [If the provided transportException is not retryable, the packet has expired,
+    // or if the retry policy says to not retry, this function shall add the provided packet to the callback queue.]
+    @Test
     public void handleMessageExceptionDoesNotRetryIfDeviceOperationTimedOut(final @Mocked IotHubStatusCode mockedStatus)
     {
         //arrange
         new MockUp<IotHubTransport>()
         {
-            @Mock boolean hasOperationTimedOut(long time)
+            @Mock boolean hasOperationTimedOut(long time)
+            {
+                return true;
+            }
+        };
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        final long expectedDelay = 0;
+        Deencapsulation.setField(transport, "taskScheduler", mockedTaskScheduler);
+        new NonStrictExpectations()
+        {
+            {
+                mockedIothubServiceException.isRetryable();
+                result = true;
+
+                mockedConfig.getRetryPolicy();
+                result = mockedRetryPolicy;
+
+                mockedRetryPolicy.getRetryDecision(anyInt, mockedTransportException);
+                result = mockedRetryDecision;
+
+                mockedRetryDecision.shouldRetry();
+                result = true;
+
+                mockedIothubServiceException.getStatusCode();
+                result = mockedStatus;
+            }
+        };
+
+        //act
+        Deencapsulation.invoke(transport, "handleMessageException", mockedPacket, mockedIothubServiceException);
+
+        //assert
+        Queue<IotHubTransportPacket> callbackQueue = Deencapsulation.getField(transport, "callbackPacketsQueue");
+        assertEquals(1, callbackQueue.size());
+        assertEquals(mockedPacket, callbackQueue.poll());
+        new Verifications()
+        {
+            {
+                mockedPacket.setStatus(mockedStatus);
+                times = 1;
+
+                mockedTaskScheduler.schedule((IotHubTransport.MessageRetryRunnable) any, expectedDelay, TimeUnit.MILLISECONDS);
+                times = 0;
+            }
+        };
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_34_064: [If the provided transportException is not retryable, the packet has expired,
+    // or if the retry policy says to not retry, this function shall add the provided packet to the callback queue.]
+    @Test
+    public void handleMessageExceptionDoesNotRetryIfExceptionIsNotRetryable(final @Mocked IotHubStatusCode mockedStatus)
+    {
+        //arrange
+        new MockUp<IotHubTransport>()
+        {
+            @Mock boolean hasOperationTimedOut(long time)
+            {
+                return false;
+            }
+        };
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        final long expectedDelay = 0;
+        Deencapsulation.setField(transport, "taskScheduler", mockedTaskScheduler);
+        new NonStrictExpectations()
+        {
+            {
+                mockedTransportException.isRetryable();
+                result = false;
+
+                mockedConfig.getRetryPolicy();
+                result = mockedRetryPolicy;
+
+                mockedRetryPolicy.getRetryDecision(anyInt, mockedTransportException);
+                result = mockedRetryDecision;
+
+                mockedRetryDecision.shouldRetry();
+                result = true;
+
+                mockedIothubServiceException.getStatusCode();
+                result = mockedStatus;
+            }
+        };
+
+        //act
+        Deencapsulation.invoke(transport, "handleMessageException", mockedPacket, mockedIothubServiceException);
+
+        //assert
+        Queue<IotHubTransportPacket> callbackQueue = Deencapsulation.getField(transport, "callbackPacketsQueue");
+        assertEquals(1, callbackQueue.size());
+        assertEquals(mockedPacket, callbackQueue.poll());
+        new Verifications()
+        {
+            {
+                mockedPacket.setStatus(mockedStatus);
+                times = 1;
+
+                mockedTaskScheduler.schedule((IotHubTransport.MessageRetryRunnable) any, expectedDelay, TimeUnit.MILLISECONDS);
+                times = 0;
+            }
+        };
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_34_064: [If the provided transportException is not retryable, the packet has expired,
+    // or if the retry policy says to not retry, this function shall add the provided packet to the callback queue.]
+    @Test
+    public void handleMessageExceptionDoesNotRetryIfRetryPolicySaysToNotRetry(final @Mocked IotHubStatusCode mockedStatus)
+    {
+        //arrange
+        new MockUp<IotHubTransport>()
+        {
+            @Mock boolean hasOperationTimedOut(long time)
+            {
+                return false;
+            }
+        };
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        final long expectedDelay = 0;
+        Deencapsulation.setField(transport, "taskScheduler", mockedTaskScheduler);
+        new NonStrictExpectations()
+        {
+            {
+                mockedTransportException.isRetryable();
+                result = true;
+
+                mockedConfig.getRetryPolicy();
+                result = mockedRetryPolicy;
+
+                mockedRetryPolicy.getRetryDecision(anyInt, mockedTransportException);
+                result = mockedRetryDecision;
+
+                mockedRetryDecision.shouldRetry();
+                result = false;
+
+                mockedIothubServiceException.getStatusCode();
+                result = mockedStatus;
+            }
+        };
+
+        //act
+        Deencapsulation.invoke(transport, "handleMessageException", mockedPacket, mockedIothubServiceException);
+
+        //assert
+        Queue<IotHubTransportPacket> callbackQueue = Deencapsulation.getField(transport, "callbackPacketsQueue");
+        assertEquals(1, callbackQueue.size());
+        assertEquals(mockedPacket, callbackQueue.poll());
+        new Verifications()
+        {
+            {
+                mockedPacket.setStatus(mockedStatus);
+                times = 1;
+
+                mockedTaskScheduler.schedule((IotHubTransport.MessageRetryRunnable) any, expectedDelay, TimeUnit.MILLISECONDS);
+                times = 0;
+            }
+        };
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_34_068: [If the reconnection effort ends because the retry policy said to
+    // stop, this function shall invoke close with RETRY_EXPIRED and the last transportException.]
+    //Tests_SRS_IOTHUBTRANSPORT_34_065: [If the saved reconnection attempt start time is 0, this function shall 
+    // save the current time as the time that reconnection started.]
+    //Tests_SRS_IOTHUBTRANSPORT_34_066: [This function shall attempt to reconnect while this object's state is
+    // DISCONNECTED_RETRYING, the operation hasn't timed out, and the last transport exception is retryable.]
+    @Test
+    public void reconnectAttemptsToReconnectUntilRetryPolicyEnds()
+    {
+        //arrange
+        final StringBuilder methodsCalled = new StringBuilder();
+        new MockUp<IotHubTransport>()
+        {
+            @Mock boolean hasOperationTimedOut(long time)
+            {
+                return false;
+            }
+
+            @Mock void close(IotHubConnectionStatusChangeReason reason, Throwable cause)
+            {
+                if (reason == RETRY_EXPIRED)
+                {
+                    methodsCalled.append("close");
+                }
+            }
+        };
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", DISCONNECTED_RETRYING);
+        new Expectations()
+        {
+            {
+                mockedTransportException.isRetryable();
+                result = true;
+
+                mockedConfig.getRetryPolicy();
+                result = mockedRetryPolicy;
+
+                mockedRetryPolicy.getRetryDecision(anyInt, (TransportException) any);
+                result = mockedRetryDecision;
+
+                mockedRetryDecision.shouldRetry();
+                result = false;
+            }
+        };
+
+        //act
+        Deencapsulation.invoke(transport, "reconnect", mockedTransportException);
+
+        //assert
+        long reconnectionAttemptStartTimeMillis = Deencapsulation.getField(transport, "reconnectionAttemptStartTimeMillis");
+        assertTrue(reconnectionAttemptStartTimeMillis > 0);
+        assertEquals("close", methodsCalled.toString());
+    }
+
+
+    //Tests_SRS_IOTHUBTRANSPORT_34_069: [If the reconnection effort ends because the reconnection timed out,
+    // this function shall invoke close with RETRY_EXPIRED and a DeviceOperationTimeoutException.]
+    @Test
+    public void reconnectAttemptsToReconnectUntilOperationTimesOut()
+    {
+        //arrange
+        final StringBuilder methodsCalled = new StringBuilder();
+        new MockUp<IotHubTransport>()
+        {
+            @Mock boolean hasOperationTimedOut(long time)
+            {
+                return true;
+            }
+
+            @Mock void close(IotHubConnectionStatusChangeReason reason, Throwable cause)
+            {
+                if (reason == RETRY_EXPIRED)
+                {
+                    methodsCalled.append("close");
+                }
+            }
+        };
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", DISCONNECTED_RETRYING);
+
+        //act
+        Deencapsulation.invoke(transport, "reconnect", mockedTransportException);
+
+        //assert
+        long reconnectionAttemptStartTimeMillis = Deencapsulation.getField(transport, "reconnectionAttemptStartTimeMillis");
+        assertTrue(reconnectionAttemptStartTimeMillis > 0);
+        assertEquals("close", methodsCalled.toString());
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_34_070: [If the reconnection effort ends because a terminal exception is
+    // encountered, this function shall invoke close with that terminal exception.]
+    @Test
+    public void reconnectAttemptsToReconnectUntilExceptionNotRetryable()
+    {
+        //arrange
+        final StringBuilder methodsCalled = new StringBuilder();
+        new MockUp<IotHubTransport>()
+        {
+            @Mock boolean hasOperationTimedOut(long time)
+            {
+                return false;
+            }
+
+            @Mock void close(IotHubConnectionStatusChangeReason reason, Throwable cause)
+            {
+                methodsCalled.append("close");
+            }
+
+            @Mock IotHubConnectionStatusChangeReason exceptionToStatusChangeReason(Throwable e)
+            {
+                if (e.equals(mockedTransportException))
+                {
+                    methodsCalled.append("exceptionToStatusChangeReason");
+                }
+
+                return IotHubConnectionStatusChangeReason.BAD_CREDENTIAL;
+            }
+        };
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", DISCONNECTED_RETRYING);
+
+        //act
+        Deencapsulation.invoke(transport, "reconnect", mockedTransportException);
+
+        //assert
+        long reconnectionAttemptStartTimeMillis = Deencapsulation.getField(transport, "reconnectionAttemptStartTimeMillis");
+        assertTrue(reconnectionAttemptStartTimeMillis > 0);
+        assertTrue(methodsCalled.toString().contains("close"));
+        assertTrue(methodsCalled.toString().contains("exceptionToStatusChangeReason"));
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_34_071: [If an exception is encountered while closing, this function shall invoke
+    // updateStatus with DISCONNECTED, COMMUNICATION_ERROR, and the last transport exception.]
+    @Test
+    public void reconnectUpdatesStatusIfClosingFailed()
+    {
+        //arrange
+        final StringBuilder methodsCalled = new StringBuilder();
+        new MockUp<IotHubTransport>()
+        {
+            @Mock void addToCallbackQueue(IotHubTransportPacket packet)
+            {
+                methodsCalled.append("addToCallbackQueue");
+            }
+
+            @Mock boolean hasOperationTimedOut(long time)
+            {
+                return true;
+            }
+
+            @Mock void updateStatus(IotHubConnectionStatus newConnectionStatus, IotHubConnectionStatusChangeReason reason, Throwable throwable)
+            {
+                if (newConnectionStatus == DISCONNECTED && reason == COMMUNICATION_ERROR)
+                {
+                    methodsCalled.append("updateStatus");
+                }
+            }
+
+            @Mock void close(IotHubConnectionStatusChangeReason reason, Throwable cause) throws TransportException
+            {
+                if (reason == RETRY_EXPIRED)
+                {
+                    methodsCalled.append("close");
+                }
+
+                throw new TransportException("close failed");
+            }
+        };
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", DISCONNECTED_RETRYING);
+        new NonStrictExpectations()
+        {
+            {
+                mockedTransportException.isRetryable();
+                result = true;
+
+                mockedConfig.getRetryPolicy();
+                result = mockedRetryPolicy;
+
+                mockedRetryPolicy.getRetryDecision(anyInt, (TransportException) any);
+                result = mockedRetryDecision;
+
+                mockedRetryDecision.shouldRetry();
+                result = true;
+            }
+        };
+
+        //act
+        Deencapsulation.invoke(transport, "reconnect", mockedTransportException);
+
+        //assert
+        long reconnectionAttemptStartTimeMillis = Deencapsulation.getField(transport, "reconnectionAttemptStartTimeMillis");
+        assertTrue(reconnectionAttemptStartTimeMillis > 0);
+        assertTrue(methodsCalled.toString().contains("updateStatus"));
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_28_008:[This function shall set the packet status to MESSAGE_EXPIRED if packet has expired.]
+    //Tests_SRS_IOTHUBTRANSPORT_28_009:[This function shall add the expired packet to the Callback Queue.]
+    @Test
+    public void isMessageValidWithMessageExpired()
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        new NonStrictExpectations(IotHubTransport.class)
+        {
+            {
+                mockedPacket.getMessage();
+                result = mockedMessage;
+                mockedMessage.isExpired();
+                result = true;
+                Deencapsulation.invoke(transport, "addToCallbackQueue", new Class[] {IotHubTransportPacket.class}, mockedPacket);
+                Deencapsulation.invoke(transport, "isSasTokenExpired");
+                result = false;
+            }
+        };
+
+        //act
+        boolean ret = Deencapsulation.invoke(transport, "isMessageValid", new Class[] {IotHubTransportPacket.class}, mockedPacket);
+
+        //assert
+        assertFalse(ret);
+        new Verifications()
+        {
+            {
+                mockedPacket.setStatus(IotHubStatusCode.MESSAGE_EXPIRED);
+                times = 1;
+                Deencapsulation.invoke(transport, "addToCallbackQueue", new Class[] {IotHubTransportPacket.class}, mockedPacket);
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_28_008:[This function shall set the packet status to MESSAGE_EXPIRED if packet has expired.]
+    //Tests_SRS_IOTHUBTRANSPORT_28_009:[This function shall add the expired packet to the Callback Queue.]
+    //Tests_SRS_IOTHUBTRANSPORT_28_010:[This function shall set the packet status to UNAUTHORIZED if sas token has expired.]
+    //Tests_SRS_IOTHUBTRANSPORT_28_011:[This function shall add the packet which sas token has expired to the Callback Queue.]
+    @Test
+    public void isMessageValidWithMessageNotExpiredAndValidSasToken()
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        new NonStrictExpectations(IotHubTransport.class)
+        {
+            {
+                mockedPacket.getMessage();
+                result = mockedMessage;
+                mockedMessage.isExpired();
+                result = false;
+                Deencapsulation.invoke(transport, "addToCallbackQueue", new Class[] {IotHubTransportPacket.class}, mockedPacket);
+                Deencapsulation.invoke(transport, "isSasTokenExpired");
+                result = false;
+            }
+        };
+
+        //act
+        boolean ret = Deencapsulation.invoke(transport, "isMessageValid", new Class[] {IotHubTransportPacket.class}, mockedPacket);
+
+        //assert
+        assertTrue(ret);
+        new Verifications()
+        {
+            {
+                mockedPacket.setStatus(IotHubStatusCode.MESSAGE_EXPIRED);
+                times = 0;
+                mockedPacket.getStoredSequenceNumber();
+                times = 0;
+                mockedPacket.getCallback();
+                times = 0;
+            }
+        };
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_28_010:[This function shall set the packet status to UNAUTHORIZED if sas token has expired.]
+    //Tests_SRS_IOTHUBTRANSPORT_28_011:[This function shall add the packet which sas token has expired to the Callback Queue.]
+    @Test
+    public void isMessageValidWithMessageNotExpiredSasTokenExpired()
+    {
+        //arrange
+        final StringBuilder methodsCalled = new StringBuilder();
+        new MockUp<IotHubTransport>()
+        {
+            @Mock void addToCallbackQueue(IotHubTransportPacket packet)
+            {
+                methodsCalled.append("addToCallbackQueue");
+            }
+
+            @Mock boolean isSasTokenExpired()
+            {
+                return true;
+            }
+
+            @Mock void updateStatus(IotHubConnectionStatus newConnectionStatus, IotHubConnectionStatusChangeReason reason, Throwable throwable)
+            {
+                if (newConnectionStatus == DISCONNECTED && reason == EXPIRED_SAS_TOKEN)
+                {
+                    methodsCalled.append("updateStatus");
+                }
+            }
+        };
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        new NonStrictExpectations()
+        {
+            {
+                mockedPacket.getMessage();
+                result = mockedMessage;
+                mockedMessage.isExpired();
+                result = false;
+            }
+        };
+
+        //act
+        boolean ret = Deencapsulation.invoke(transport, "isMessageValid", new Class[] {IotHubTransportPacket.class}, mockedPacket);
+
+        //assert
+        assertFalse(ret);
+        new Verifications()
+        {
+            {
+                mockedPacket.setStatus(IotHubStatusCode.UNAUTHORIZED);
+                times = 1;
+            }
+        };
+        assertTrue(methodsCalled.toString().contains("addToCallbackQueue"));
+        assertTrue(methodsCalled.toString().contains("updateStatus"));
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_28_005:[This function shall updated the saved connection status if the connection status has changed.]
+    //Tests_SRS_IOTHUBTRANSPORT_28_006:[This function shall invoke all callbacks listening for the state change if the connection status has changed.]
+    //Tests_SRS_IOTHUBTRANSPORT_28_007: [This function shall reset currentReconnectionAttempt and reconnectionAttemptStartTimeMillis if connection status is changed to CONNECTED.]
+    @Test
+    public void updateStatusConnectionStatusChangedToConnected()
+    {
+        //arrange
+        final StringBuilder methodsCalled = new StringBuilder();
+        new MockUp<IotHubTransport>()
+        {
+            @Mock void invokeConnectionStatusChangeCallback(IotHubConnectionStatus status, IotHubConnectionStatusChangeReason reason, Throwable e)
+            {
+                methodsCalled.append("invokeConnectionStatusChangeCallback");
+            }
+        };
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", IotHubConnectionStatus.DISCONNECTED_RETRYING);
+        Deencapsulation.setField(transport, "currentReconnectionAttempt", 5);
+        Deencapsulation.setField(transport, "reconnectionAttemptStartTimeMillis", 5);
+
+        //act
+        Deencapsulation.invoke(transport, "updateStatus",
+                new Class[] {IotHubConnectionStatus.class, IotHubConnectionStatusChangeReason.class, Throwable.class},
+                IotHubConnectionStatus.CONNECTED, IotHubConnectionStatusChangeReason.NO_NETWORK, null);
+
+        //assert
+        assertEquals(IotHubConnectionStatus.CONNECTED, Deencapsulation.getField(transport, "connectionStatus"));
+        assertEquals(0, Deencapsulation.getField(transport, "currentReconnectionAttempt"));
+        assertEquals(0L, Deencapsulation.getField(transport, "reconnectionAttemptStartTimeMillis"));
+        assertTrue(methodsCalled.toString().equalsIgnoreCase("invokeConnectionStatusChangeCallback"));
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_28_005:[This function shall updated the saved connection status if the connection status has changed.]
+    //Tests_SRS_IOTHUBTRANSPORT_28_006:[This function shall invoke all callbacks listening for the state change if the connection status has changed.]
+    //Tests_SRS_IOTHUBTRANSPORT_28_007: [This function shall reset currentReconnectionAttempt and reconnectionAttemptStartTimeMillis if connection status is changed to CONNECTED.]
+    @Test
+    public void updateStatusConnectionStatusNotChanged()
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", IotHubConnectionStatus.CONNECTED);
+        Deencapsulation.setField(transport, "currentReconnectionAttempt", 5);
+        new Expectations(IotHubTransport.class)
+        {
+            {
+                Deencapsulation.invoke(transport, "invokeConnectionStatusChangeCallback",
+                        new Class[] {IotHubConnectionStatus.class, IotHubConnectionStatusChangeReason.class, Throwable.class},
+                        IotHubConnectionStatus.CONNECTED, null, null);
+            }
+        };
+
+        //act
+        Deencapsulation.invoke(transport, "updateStatus",
+                new Class[] {IotHubConnectionStatus.class, IotHubConnectionStatusChangeReason.class, Throwable.class},
+                IotHubConnectionStatus.CONNECTED, null, null);
+
+        //assert
+        assertEquals(IotHubConnectionStatus.CONNECTED, Deencapsulation.getField(transport, "connectionStatus"));
+        assertEquals(5, Deencapsulation.getField(transport, "currentReconnectionAttempt"));
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_28_005:[This function shall updated the saved connection status if the connection status has changed.]
+    //Tests_SRS_IOTHUBTRANSPORT_28_006:[This function shall invoke all callbacks listening for the state change if the connection status has changed.]
+    //Tests_SRS_IOTHUBTRANSPORT_28_007: [This function shall reset currentReconnectionAttempt and reconnectionAttemptStartTimeMillis if connection status is changed to CONNECTED.]
+    @Test
+    public void updateStatusConnectionStatusChangedToDisconnected()
+    {
+        //arrange
+        final StringBuilder methodsCalled = new StringBuilder();
+        new MockUp<IotHubTransport>()
+        {
+            @Mock void invokeConnectionStatusChangeCallback(IotHubConnectionStatus status, IotHubConnectionStatusChangeReason reason, Throwable e)
             {
-                return true;
+                if (status == DISCONNECTED && reason == NO_NETWORK)
+                {
+                    methodsCalled.append("invokeConnectionStatusChangeCallback");
+                }
             }
         };
         final IotHubTransport transport = new IotHubTransport(mockedConfig);
-        final long expectedDelay = 0;
-        Deencapsulation.setField(transport, "taskScheduler", mockedTaskScheduler);
+        Deencapsulation.setField(transport, "connectionStatus", IotHubConnectionStatus.DISCONNECTED_RETRYING);
+        Deencapsulation.setField(transport, "currentReconnectionAttempt", 5);
+
+        //act
+        Deencapsulation.invoke(transport, "updateStatus",
+                new Class[] {IotHubConnectionStatus.class, IotHubConnectionStatusChangeReason.class, Throwable.class},
+                IotHubConnectionStatus.DISCONNECTED, IotHubConnectionStatusChangeReason.NO_NETWORK, null);
+
+        //assert
+        assertEquals(IotHubConnectionStatus.DISCONNECTED, Deencapsulation.getField(transport, "connectionStatus"));
+        assertEquals(5, Deencapsulation.getField(transport, "currentReconnectionAttempt"));
+        assertEquals("invokeConnectionStatusChangeCallback", methodsCalled.toString());
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_28_004:[This function shall notify the connection status change callback if the callback is not null]
+    @Test
+    public void invokeConnectionStatusChangeCallbackWithCallback()
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatusChangeCallback", mockedIotHubConnectionStatusChangeCallback);
+
+        //act
+        Deencapsulation.invoke(transport, "invokeConnectionStatusChangeCallback",
+                new Class[] {IotHubConnectionStatus.class, IotHubConnectionStatusChangeReason.class, Throwable.class},
+                IotHubConnectionStatus.CONNECTED, IotHubConnectionStatusChangeReason.CONNECTION_OK, new IOException());
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockedIotHubConnectionStatusChangeCallback.execute(
+                        (IotHubConnectionStatus)any,
+                        (IotHubConnectionStatusChangeReason)any,
+                        (Throwable)any,
+                        any);
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_28_004:[This function shall notify the connection status change callback if the callback is not null]
+    @Test
+    public void invokeConnectionStatusChangeCallbackWithNullCallback()
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatusChangeCallback", null);
+
+        //act
+        Deencapsulation.invoke(transport, "invokeConnectionStatusChangeCallback",
+                new Class[] {IotHubConnectionStatus.class, IotHubConnectionStatusChangeReason.class, Throwable.class},
+                IotHubConnectionStatus.CONNECTED, IotHubConnectionStatusChangeReason.CONNECTION_OK, new IOException());
+
+        //assert
+
+        new Verifications()
+        {
+            {
+                mockedIotHubConnectionStatusChangeCallback.execute(
+                        (IotHubConnectionStatus)any,
+                        (IotHubConnectionStatusChangeReason)any,
+                        (Throwable)any,
+                        any);
+                times = 0;
+            }
+        };
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_28_003: [This function shall indicate if the device's sas token is expired.]
+    @Test
+    public void isSasTokenExpiredAuthenticationTypeIsSasTokenAndExpired()
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
         new NonStrictExpectations()
         {
             {
-                mockedIothubServiceException.isRetryable();
+                mockedConfig.getAuthenticationType();
+                result = DeviceClientConfig.AuthType.SAS_TOKEN;
+                mockedConfig.getSasTokenAuthentication().isRenewalNecessary();
                 result = true;
+            }
+        };
 
-                mockedConfig.getRetryPolicy();
-                result = mockedRetryPolicy;
+        //act
+        boolean ret = Deencapsulation.invoke(transport, "isSasTokenExpired");
 
-                mockedRetryPolicy.getRetryDecision(anyInt, mockedTransportException);
-                result = mockedRetryDecision;
+        //assert
+        assertTrue(ret);
+    }
 
-                mockedRetryDecision.shouldRetry();
+    //Tests_SRS_IOTHUBTRANSPORT_28_003: [This function shall indicate if the device's sas token is expired.]
+    @Test
+    public void isSasTokenExpiredAuthenticationTypeIsSasTokenAndNotExpired()
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        new NonStrictExpectations()
+        {
+            {
+                mockedConfig.getAuthenticationType();
+                result = DeviceClientConfig.AuthType.SAS_TOKEN;
+                mockedConfig.getSasTokenAuthentication().isRenewalNecessary();
+                result = false;
+            }
+        };
+
+        //act
+        boolean ret = Deencapsulation.invoke(transport, "isSasTokenExpired");
+
+        //assert
+        assertFalse(ret);
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_28_003: [This function shall indicate if the device's sas token is expired.]
+    @Test
+    public void isSasTokenExpiredAuthenticationTypeNotSasToken()
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        new NonStrictExpectations()
+        {
+            {
+                mockedConfig.getAuthenticationType();
+                result = DeviceClientConfig.AuthType.X509_CERTIFICATE;
+                mockedConfig.getSasTokenAuthentication().isRenewalNecessary();
                 result = true;
+            }
+        };
 
-                mockedIothubServiceException.getStatusCode();
-                result = mockedStatus;
+        //act
+        boolean ret = Deencapsulation.invoke(transport, "isSasTokenExpired");
+
+        //assert
+        assertFalse(ret);
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_28_002: [This function shall add the packet to the callback queue if it has a callback.]
+    @Test
+    public void addToCallbackQueuePacketHasCallback(@Mocked final IotHubEventCallback mockCallback)
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        new NonStrictExpectations()
+        {
+            {
+                mockedPacket.getCallback();
+                result = mockCallback;
             }
         };
 
         //act
-        Deencapsulation.invoke(transport, "handleMessageException", mockedPacket, mockedIothubServiceException);
+        Deencapsulation.invoke(transport, "addToCallbackQueue", mockedPacket);
+
+        //assert
+        Queue<IotHubTransportPacket> callbackPacketsQueue = Deencapsulation.getField(transport, "callbackPacketsQueue");
+        assertEquals(1, callbackPacketsQueue.size());
+        assertTrue(callbackPacketsQueue.contains(mockedPacket));
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_28_002: [This function shall add the packet to the callback queue if it has a callback.]
+    @Test
+    public void addToCallbackQueuePacketNoCallback(@Mocked final IotHubEventCallback mockCallback)
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        new NonStrictExpectations()
+        {
+            {
+                mockedPacket.getCallback();
+                result = null;
+            }
+        };
+
+        //act
+        Deencapsulation.invoke(transport, "addToCallbackQueue", mockedPacket);
+
+        //assert
+        Queue<IotHubTransportPacket> callbackPacketsQueue = Deencapsulation.getField(transport, "callbackPacketsQueue");
+        assertEquals(0, callbackPacketsQueue.size());
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_28_001: [This function shall set the MqttUnauthorizedException as retryable if the sas token has not expired.]
+    @Test
+    public void checkForUnauthorizedExceptionInMqttUnauthroizedException()
+    {
+        //arrange
+        new MockUp<IotHubTransport>()
+        {
+            @Mock boolean isSasTokenExpired()
+            {
+                return false;
+            }
+        };
+        final MqttUnauthorizedException testException = new MqttUnauthorizedException();
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+
+        //act
+        Deencapsulation.invoke(transport, "checkForUnauthorizedException", testException);
 
         //assert
-        Queue<IotHubTransportPacket> callbackQueue = Deencapsulation.getField(transport, "callbackPacketsQueue");
-        assertEquals(1, callbackQueue.size());
-        assertEquals(mockedPacket, callbackQueue.poll());
         new Verifications()
         {
             {
-                mockedPacket.setStatus(mockedStatus);
+                testException.setRetryable(true);
                 times = 1;
-
-                mockedTaskScheduler.schedule((IotHubTransport.MessageRetryRunnable) any, expectedDelay, TimeUnit.MILLISECONDS);
-                times = 0;
             }
         };
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_34_064: [If the provided transportException is not retryable, the packet has expired,
-    // or if the retry policy says to not retry, this function shall add the provided packet to the callback queue.]
+    //Tests_SRS_IOTHUBTRANSPORT_28_001: [This function shall set the MqttUnauthorizedException, UnauthorizedException or
+    //AmqpUnauthorizedAccessException as retryable if the sas token has not expired.]
     @Test
-    public void handleMessageExceptionDoesNotRetryIfExceptionIsNotRetryable(final @Mocked IotHubStatusCode mockedStatus)
+    public void checkForUnauthorizedExceptionInUnauthorizedException()
     {
         //arrange
         new MockUp<IotHubTransport>()
         {
-            @Mock boolean hasOperationTimedOut(long time)
+            @Mock boolean isSasTokenExpired()
             {
                 return false;
             }
         };
-        final IotHubTransport transport = new IotHubTransport(mockedConfig);
-        final long expectedDelay = 0;
-        Deencapsulation.setField(transport, "taskScheduler", mockedTaskScheduler);
-        new NonStrictExpectations()
-        {
-            {
-                mockedTransportException.isRetryable();
-                result = false;
-
-                mockedConfig.getRetryPolicy();
-                result = mockedRetryPolicy;
-
-                mockedRetryPolicy.getRetryDecision(anyInt, mockedTransportException);
-                result = mockedRetryDecision;
 
-                mockedRetryDecision.shouldRetry();
-                result = true;
-
-                mockedIothubServiceException.getStatusCode();
-                result = mockedStatus;
-            }
-        };
+        final UnauthorizedException testException = new UnauthorizedException();
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
 
         //act
-        Deencapsulation.invoke(transport, "handleMessageException", mockedPacket, mockedIothubServiceException);
+        Deencapsulation.invoke(transport, "checkForUnauthorizedException", testException);
 
         //assert
-        Queue<IotHubTransportPacket> callbackQueue = Deencapsulation.getField(transport, "callbackPacketsQueue");
-        assertEquals(1, callbackQueue.size());
-        assertEquals(mockedPacket, callbackQueue.poll());
         new Verifications()
         {
             {
-                mockedPacket.setStatus(mockedStatus);
+                testException.setRetryable(true);
                 times = 1;
-
-                mockedTaskScheduler.schedule((IotHubTransport.MessageRetryRunnable) any, expectedDelay, TimeUnit.MILLISECONDS);
-                times = 0;
             }
         };
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_34_064: [If the provided transportException is not retryable, the packet has expired,
-    // or if the retry policy says to not retry, this function shall add the provided packet to the callback queue.]
+    //Tests_SRS_IOTHUBTRANSPORT_28_001: [This function shall set the MqttUnauthorizedException, UnauthorizedException or
+    //AmqpUnauthorizedAccessException as retryable if the sas token has not expired.]
     @Test
-    public void handleMessageExceptionDoesNotRetryIfRetryPolicySaysToNotRetry(final @Mocked IotHubStatusCode mockedStatus)
+    public void checkForUnauthorizedExceptionInAmqpUnauthorizedAccessException()
     {
         //arrange
         new MockUp<IotHubTransport>()
         {
-            @Mock boolean hasOperationTimedOut(long time)
+            @Mock boolean isSasTokenExpired()
             {
                 return false;
             }
         };
-        final IotHubTransport transport = new IotHubTransport(mockedConfig);
-        final long expectedDelay = 0;
-        Deencapsulation.setField(transport, "taskScheduler", mockedTaskScheduler);
-        new NonStrictExpectations()
-        {
-            {
-                mockedTransportException.isRetryable();
-                result = true;
-
-                mockedConfig.getRetryPolicy();
-                result = mockedRetryPolicy;
-
-                mockedRetryPolicy.getRetryDecision(anyInt, mockedTransportException);
-                result = mockedRetryDecision;
-
-                mockedRetryDecision.shouldRetry();
-                result = false;
 
-                mockedIothubServiceException.getStatusCode();
-                result = mockedStatus;
-            }
-        };
+        final AmqpUnauthorizedAccessException testException = new AmqpUnauthorizedAccessException();
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
 
         //act
-        Deencapsulation.invoke(transport, "handleMessageException", mockedPacket, mockedIothubServiceException);
+        Deencapsulation.invoke(transport, "checkForUnauthorizedException", testException);
 
         //assert
-        Queue<IotHubTransportPacket> callbackQueue = Deencapsulation.getField(transport, "callbackPacketsQueue");
-        assertEquals(1, callbackQueue.size());
-        assertEquals(mockedPacket, callbackQueue.poll());
         new Verifications()
         {
             {
-                mockedPacket.setStatus(mockedStatus);
+                testException.setRetryable(true);
                 times = 1;
-
-                mockedTaskScheduler.schedule((IotHubTransport.MessageRetryRunnable) any, expectedDelay, TimeUnit.MILLISECONDS);
-                times = 0;
             }
         };
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_34_068: [If the reconnection effort ends because the retry policy said to
-    // stop, this function shall invoke close with RETRY_EXPIRED and the last transportException.]
-    //Tests_SRS_IOTHUBTRANSPORT_34_065: [If the saved reconnection attempt start time is 0, this function shall 
-    // save the current time as the time that reconnection started.]
-    //Tests_SRS_IOTHUBTRANSPORT_34_066: [This function shall attempt to reconnect while this object's state is
-    // DISCONNECTED_RETRYING, the operation hasn't timed out, and the last transport exception is retryable.]
+    //Tests_SRS_IOTHUBTRANSPORT_28_001: [This function shall set the MqttUnauthorizedException, UnauthorizedException or
+    //AmqpUnauthorizedAccessException as retryable if the sas token has not expired.]
     @Test
-    public void reconnectAttemptsToReconnectUntilRetryPolicyEnds()
+    public void checkForUnauthorizedExceptionWithExpiredSASToken()
     {
         //arrange
-        final StringBuilder methodsCalled = new StringBuilder();
         new MockUp<IotHubTransport>()
         {
-            @Mock boolean hasOperationTimedOut(long time)
-            {
-                return false;
-            }
-
-            @Mock void close(IotHubConnectionStatusChangeReason reason, Throwable cause)
+            @Mock boolean isSasTokenExpired()
             {
-                if (reason == RETRY_EXPIRED)
-                {
-                    methodsCalled.append("close");
-                }
+                return true;
             }
         };
+        final UnauthorizedException testException = new UnauthorizedException();
         final IotHubTransport transport = new IotHubTransport(mockedConfig);
-        Deencapsulation.setField(transport, "connectionStatus", DISCONNECTED_RETRYING);
-        new Expectations()
-        {
-            {
-                mockedTransportException.isRetryable();
-                result = true;
-
-                mockedConfig.getRetryPolicy();
-                result = mockedRetryPolicy;
-
-                mockedRetryPolicy.getRetryDecision(anyInt, (TransportException) any);
-                result = mockedRetryDecision;
-
-                mockedRetryDecision.shouldRetry();
-                result = false;
-            }
-        };
 
         //act
-        Deencapsulation.invoke(transport, "reconnect", mockedTransportException);
+        Deencapsulation.invoke(transport, "checkForUnauthorizedException", testException);
 
         //assert
-        long reconnectionAttemptStartTimeMillis = Deencapsulation.getField(transport, "reconnectionAttemptStartTimeMillis");
-        assertTrue(reconnectionAttemptStartTimeMillis > 0);
-        assertEquals("close", methodsCalled.toString());
+        new Verifications()
+        {
+            {
+                testException.setRetryable(true);
+                times = 0;
+            }
+        };
     }
 
-
-    //Tests_SRS_IOTHUBTRANSPORT_34_069: [If the reconnection effort ends because the reconnection timed out,
-    // this function shall invoke close with RETRY_EXPIRED and a DeviceOperationTimeoutException.]
+    //Tests_SRS_IOTHUBTRANSPORT_28_001: [This function shall set the MqttUnauthorizedException, UnauthorizedException or
+    //AmqpUnauthorizedAccessException as retryable if the sas token has not expired.]
     @Test
-    public void reconnectAttemptsToReconnectUntilOperationTimesOut()
+    public void checkForUnauthorizedExceptionWithOtherTransportException()
     {
         //arrange
-        final StringBuilder methodsCalled = new StringBuilder();
         new MockUp<IotHubTransport>()
         {
-            @Mock boolean hasOperationTimedOut(long time)
+            @Mock boolean isSasTokenExpired()
             {
                 return true;
             }
-
-            @Mock void close(IotHubConnectionStatusChangeReason reason, Throwable cause)
-            {
-                if (reason == RETRY_EXPIRED)
-                {
-                    methodsCalled.append("close");
-                }
-            }
         };
+        final TransportException testException = new TransportException();
         final IotHubTransport transport = new IotHubTransport(mockedConfig);
-        Deencapsulation.setField(transport, "connectionStatus", DISCONNECTED_RETRYING);
 
         //act
-        Deencapsulation.invoke(transport, "reconnect", mockedTransportException);
+        Deencapsulation.invoke(transport, "checkForUnauthorizedException", testException);
 
         //assert
-        long reconnectionAttemptStartTimeMillis = Deencapsulation.getField(transport, "reconnectionAttemptStartTimeMillis");
-        assertTrue(reconnectionAttemptStartTimeMillis > 0);
-        assertEquals("close", methodsCalled.toString());
+        new Verifications()
+        {
+            {
+                testException.setRetryable(true);
+                times = 0;
+            }
+        };
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_34_070: [If the reconnection effort ends because a terminal exception is
-    // encountered, this function shall invoke close with that terminal exception.]
+    //Tests_SRS_IOTHUBTRANSPORT_34_072: [This function shall check if the provided message should expect an ACK or not.]
+    //Tests_SRS_IOTHUBTRANSPORT_34_073: [This function shall send the provided message over the saved connection
+    // and save the response code.]
     @Test
-    public void reconnectAttemptsToReconnectUntilExceptionNotRetryable()
+    public void sendPacketHappyPathWithAck() throws TransportException
     {
         //arrange
-        final StringBuilder methodsCalled = new StringBuilder();
-        new MockUp<IotHubTransport>()
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Map<String, IotHubTransportPacket> inProgressMessages = new HashMap<>();
+        Deencapsulation.setField(transport, "inProgressPackets", inProgressMessages);
+        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedHttpsIotHubConnection);
+        new NonStrictExpectations()
         {
-            @Mock boolean hasOperationTimedOut(long time)
-            {
-                return false;
-            }
-
-            @Mock void close(IotHubConnectionStatusChangeReason reason, Throwable cause)
             {
-                methodsCalled.append("close");
-            }
+                mockedPacket.getMessage();
+                result = mockedTransportMessage;
 
-            @Mock IotHubConnectionStatusChangeReason exceptionToStatusChangeReason(Throwable e)
-            {
-                if (e.equals(mockedTransportException))
-                {
-                    methodsCalled.append("exceptionToStatusChangeReason");
-                }
+                mockedTransportMessage.isMessageAckNeeded((IotHubClientProtocol) any);
+                result = true;
 
-                return IotHubConnectionStatusChangeReason.BAD_CREDENTIAL;
+                mockedHttpsIotHubConnection.sendMessage((Message) any);
+                result = IotHubStatusCode.OK_EMPTY;
             }
         };
-        final IotHubTransport transport = new IotHubTransport(mockedConfig);
-        Deencapsulation.setField(transport, "connectionStatus", DISCONNECTED_RETRYING);
 
         //act
-        Deencapsulation.invoke(transport, "reconnect", mockedTransportException);
+        Deencapsulation.invoke(transport, "sendPacket", mockedPacket);
 
         //assert
-        long reconnectionAttemptStartTimeMillis = Deencapsulation.getField(transport, "reconnectionAttemptStartTimeMillis");
-        assertTrue(reconnectionAttemptStartTimeMillis > 0);
-        assertTrue(methodsCalled.toString().contains("close"));
-        assertTrue(methodsCalled.toString().contains("exceptionToStatusChangeReason"));
+        assertEquals(1, inProgressMessages.size());
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_34_071: [If an exception is encountered while closing, this function shall invoke
-    // updateStatus with DISCONNECTED, COMMUNICATION_ERROR, and the last transport exception.]
+
+    //Tests_SRS_IOTHUBTRANSPORT_34_074: [If the response from sending is not OK or OK_EMPTY, this function
+    // shall invoke handleMessageException with that message.]
     @Test
-    public void reconnectUpdatesStatusIfClosingFailed()
+    public void sendPacketReceivesStatusThatIsNotOkOrOkEmpty() throws TransportException
     {
         //arrange
         final StringBuilder methodsCalled = new StringBuilder();
         new MockUp<IotHubTransport>()
         {
-            @Mock void addToCallbackQueue(IotHubTransportPacket packet)
-            {
-                methodsCalled.append("addToCallbackQueue");
-            }
-
-            @Mock boolean hasOperationTimedOut(long time)
-            {
-                return true;
-            }
-
-            @Mock void updateStatus(IotHubConnectionStatus newConnectionStatus, IotHubConnectionStatusChangeReason reason, Throwable throwable)
-            {
-                if (newConnectionStatus == DISCONNECTED && reason == COMMUNICATION_ERROR)
-                {
-                    methodsCalled.append("updateStatus");
-                }
-            }
-
-            @Mock void close(IotHubConnectionStatusChangeReason reason, Throwable cause) throws TransportException
+            @Mock void handleMessageException(IotHubTransportPacket packet, TransportException exception)
             {
-                if (reason == RETRY_EXPIRED)
+                if (packet.equals(mockedPacket))
                 {
-                    methodsCalled.append("close");
+                    methodsCalled.append("handleMessageException");
                 }
-
-                throw new TransportException("close failed");
             }
         };
         final IotHubTransport transport = new IotHubTransport(mockedConfig);
-        Deencapsulation.setField(transport, "connectionStatus", DISCONNECTED_RETRYING);
-        new NonStrictExpectations()
+        Map<String, IotHubTransportPacket> inProgressMessages = new HashMap<>();
+        Deencapsulation.setField(transport, "inProgressPackets", inProgressMessages);
+        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedHttpsIotHubConnection);
+        new Expectations()
         {
             {
-                mockedTransportException.isRetryable();
-                result = true;
-
-                mockedConfig.getRetryPolicy();
-                result = mockedRetryPolicy;
-
-                mockedRetryPolicy.getRetryDecision(anyInt, (TransportException) any);
-                result = mockedRetryDecision;
+                mockedPacket.getMessage();
+                result = mockedTransportMessage;
 
-                mockedRetryDecision.shouldRetry();
+                mockedTransportMessage.isMessageAckNeeded((IotHubClientProtocol) any);
                 result = true;
+
+                mockedHttpsIotHubConnection.sendMessage((Message) any);
+                result = IotHubStatusCode.HUB_OR_DEVICE_ID_NOT_FOUND;
             }
         };
 
         //act
-        Deencapsulation.invoke(transport, "reconnect", mockedTransportException);
+        Deencapsulation.invoke(transport, "sendPacket", mockedPacket);
 
         //assert
-        long reconnectionAttemptStartTimeMillis = Deencapsulation.getField(transport, "reconnectionAttemptStartTimeMillis");
-        assertTrue(reconnectionAttemptStartTimeMillis > 0);
-        assertTrue(methodsCalled.toString().contains("updateStatus"));
+        assertEquals(0, inProgressMessages.size());
+        assertEquals("handleMessageException", methodsCalled.toString());
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_28_008:[This function shall set the packet status to MESSAGE_EXPIRED if packet has expired.]
-    //Tests_SRS_IOTHUBTRANSPORT_28_009:[This function shall add the expired packet to the Callback Queue.]
+    //Tests_SRS_IOTHUBTRANSPORT_34_075: [If the response from sending is OK or OK_EMPTY and no ack is expected,
+    // this function shall put that set that status in the sent packet and add that packet to the callbacks queue.]
     @Test
-    public void isMessageValidWithMessageExpired()
+    public void sendPacketHappyPathWithoutAck() throws TransportException
     {
         //arrange
-        final IotHubTransport transport = new IotHubTransport(mockedConfig);
-        new NonStrictExpectations(IotHubTransport.class)
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Map<String, IotHubTransportPacket> inProgressMessages = new HashMap<>();
+        Queue<IotHubTransportPacket> callbackPacketsQueue = new ConcurrentLinkedQueue<>();
+        Deencapsulation.setField(transport, "callbackPacketsQueue", callbackPacketsQueue);
+        Deencapsulation.setField(transport, "inProgressPackets", inProgressMessages);
+        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedHttpsIotHubConnection);
+        new NonStrictExpectations()
         {
             {
                 mockedPacket.getMessage();
-                result = mockedMessage;
-                mockedMessage.isExpired();
-                result = true;
-                Deencapsulation.invoke(transport, "addToCallbackQueue", new Class[] {IotHubTransportPacket.class}, mockedPacket);
-                Deencapsulation.invoke(transport, "isSasTokenExpired");
+                result = mockedTransportMessage;
+
+                mockedTransportMessage.isMessageAckNeeded((IotHubClientProtocol) any);
                 result = false;
+
+                mockedHttpsIotHubConnection.sendMessage((Message) any);
+                result = IotHubStatusCode.OK_EMPTY;
             }
         };
 
         //act
-        boolean ret = Deencapsulation.invoke(transport, "isMessageValid", new Class[] {IotHubTransportPacket.class}, mockedPacket);
+        Deencapsulation.invoke(transport, "sendPacket", mockedPacket);
 
         //assert
-        assertFalse(ret);
+        assertEquals(0, inProgressMessages.size());
+        assertEquals(1, callbackPacketsQueue.size());
         new Verifications()
         {
             {
-                mockedPacket.setStatus(IotHubStatusCode.MESSAGE_EXPIRED);
-                times = 1;
-                Deencapsulation.invoke(transport, "addToCallbackQueue", new Class[] {IotHubTransportPacket.class}, mockedPacket);
+                mockedPacket.setStatus(IotHubStatusCode.OK_EMPTY);
                 times = 1;
             }
         };
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_28_008:[This function shall set the packet status to MESSAGE_EXPIRED if packet has expired.]
-    //Tests_SRS_IOTHUBTRANSPORT_28_009:[This function shall add the expired packet to the Callback Queue.]
-    //Tests_SRS_IOTHUBTRANSPORT_28_010:[This function shall set the packet status to UNAUTHORIZED if sas token has expired.]
-    //Tests_SRS_IOTHUBTRANSPORT_28_011:[This function shall add the packet which sas token has expired to the Callback Queue.]
+
+    //Tests_SRS_IOTHUBTRANSPORT_34_076: [If an exception is encountered while sending the message, this function
+    // shall invoke handleMessageException with that packet.]
     @Test
-    public void isMessageValidWithMessageNotExpiredAndValidSasToken()
+    public void sendPacketFailsToSend() throws TransportException
     {
         //arrange
+        final StringBuilder methodsCalled = new StringBuilder();
+        new MockUp<IotHubTransport>()
+        {
+            @Mock void handleMessageException(IotHubTransportPacket packet, TransportException exception)
+            {
+                methodsCalled.append("handleMessageException");
+            }
+        };
         final IotHubTransport transport = new IotHubTransport(mockedConfig);
-        new NonStrictExpectations(IotHubTransport.class)
+        Map<String, IotHubTransportPacket> inProgressMessages = new HashMap<>();
+        Queue<IotHubTransportPacket> callbackPacketsQueue = new ConcurrentLinkedQueue<>();
+        Deencapsulation.setField(transport, "callbackPacketsQueue", callbackPacketsQueue);
+        Deencapsulation.setField(transport, "inProgressPackets", inProgressMessages);
+        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedHttpsIotHubConnection);
+        new Expectations()
         {
             {
                 mockedPacket.getMessage();
-                result = mockedMessage;
-                mockedMessage.isExpired();
-                result = false;
-                Deencapsulation.invoke(transport, "addToCallbackQueue", new Class[] {IotHubTransportPacket.class}, mockedPacket);
-                Deencapsulation.invoke(transport, "isSasTokenExpired");
+                result = mockedTransportMessage;
+
+                mockedTransportMessage.isMessageAckNeeded((IotHubClientProtocol) any);
                 result = false;
+
+                mockedHttpsIotHubConnection.sendMessage((Message) any);
+                result = mockedTransportException;
             }
         };
 
         //act
-        boolean ret = Deencapsulation.invoke(transport, "isMessageValid", new Class[] {IotHubTransportPacket.class}, mockedPacket);
+        Deencapsulation.invoke(transport, "sendPacket", mockedPacket);
 
         //assert
-        assertTrue(ret);
-        new Verifications()
-        {
-            {
-                mockedPacket.setStatus(IotHubStatusCode.MESSAGE_EXPIRED);
-                times = 0;
-                Deencapsulation.invoke(transport, "addToCallbackQueue", new Class[] {IotHubTransportPacket.class}, mockedPacket);
-                times = 0;
-            }
-        };
+        assertEquals(0, inProgressMessages.size());
+        assertEquals(0, callbackPacketsQueue.size());
+        assertEquals(methodsCalled.toString(), "handleMessageException");
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_28_010:[This function shall set the packet status to UNAUTHORIZED if sas token has expired.]
-    //Tests_SRS_IOTHUBTRANSPORT_28_011:[This function shall add the packet which sas token has expired to the Callback Queue.]
+    //Tests_SRS_IOTHUBTRANSPORT_34_076: [If an exception is encountered while sending the message, this function
+    // shall invoke handleMessageException with that packet.]
     @Test
-    public void isMessageValidWithMessageNotExpiredSasTokenExpired()
+    public void sendPacketFailsToSendAndExpectsAck() throws TransportException
     {
         //arrange
         final StringBuilder methodsCalled = new StringBuilder();
         new MockUp<IotHubTransport>()
         {
-            @Mock void addToCallbackQueue(IotHubTransportPacket packet)
-            {
-                methodsCalled.append("addToCallbackQueue");
-            }
-
-            @Mock boolean isSasTokenExpired()
-            {
-                return true;
-            }
-
-            @Mock void updateStatus(IotHubConnectionStatus newConnectionStatus, IotHubConnectionStatusChangeReason reason, Throwable throwable)
+            @Mock void handleMessageException(IotHubTransportPacket packet, TransportException exception)
             {
-                if (newConnectionStatus == DISCONNECTED && reason == EXPIRED_SAS_TOKEN)
+                if (packet.equals(mockedPacket) && exception.equals(mockedTransportException))
                 {
-                    methodsCalled.append("updateStatus");
+                    methodsCalled.append("handleMessageException");
                 }
             }
         };
         final IotHubTransport transport = new IotHubTransport(mockedConfig);
-        new NonStrictExpectations()
+        Map<String, IotHubTransportPacket> inProgressMessages = new HashMap<>();
+        Queue<IotHubTransportPacket> callbackPacketsQueue = new ConcurrentLinkedQueue<>();
+        Deencapsulation.setField(transport, "callbackPacketsQueue", callbackPacketsQueue);
+        Deencapsulation.setField(transport, "inProgressPackets", inProgressMessages);
+        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedHttpsIotHubConnection);
+        new Expectations()
         {
             {
                 mockedPacket.getMessage();
-                result = mockedMessage;
-                mockedMessage.isExpired();
-                result = false;
+                result = mockedTransportMessage;
+
+                mockedTransportMessage.isMessageAckNeeded((IotHubClientProtocol) any);
+                result = true;
+
+                mockedHttpsIotHubConnection.sendMessage((Message) any);
+                result = mockedTransportException;
             }
         };
 
         //act
-        boolean ret = Deencapsulation.invoke(transport, "isMessageValid", new Class[] {IotHubTransportPacket.class}, mockedPacket);
+        Deencapsulation.invoke(transport, "sendPacket", mockedPacket);
+
+        //assert
+        assertEquals(0, inProgressMessages.size());
+        assertEquals(0, callbackPacketsQueue.size());
+        assertEquals("handleMessageException", methodsCalled.toString());
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_34_079: [If the provided transportException is an AmqpConnectionThrottledException,
+    // this function shall set the status of the callback packet to the error code for THROTTLED.]
+    @Test
+    public void handleMessageExceptionChecksForAmqpThrottling()
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+
+        //act
+        Deencapsulation.invoke(transport, "handleMessageException", new Class[] {IotHubTransportPacket.class, TransportException.class}, mockedPacket, new AmqpConnectionThrottledException());
 
         //assert
-        assertFalse(ret);
         new Verifications()
         {
             {
-                mockedPacket.setStatus(IotHubStatusCode.UNAUTHORIZED);
+                mockedPacket.setStatus(IotHubStatusCode.THROTTLED);
                 times = 1;
             }
         };
-        assertTrue(methodsCalled.toString().contains("addToCallbackQueue"));
-        assertTrue(methodsCalled.toString().contains("updateStatus"));
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_28_005:[This function shall updated the saved connection status if the connection status has changed.]
-    //Tests_SRS_IOTHUBTRANSPORT_28_006:[This function shall invoke all callbacks listening for the state change if the connection status has changed.]
-    //Tests_SRS_IOTHUBTRANSPORT_28_007: [This function shall reset currentReconnectionAttempt and reconnectionAttemptStartTimeMillis if connection status is changed to CONNECTED.]
-    @Test
-    public void updateStatusConnectionStatusChangedToConnected()
+    //Tests_SRS_IOTHUBTRANSPORT_12_001: [If the provided config is null, this function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void addDeviceClientConfigThrowsForNullConfig() throws DeviceClientException
     {
         //arrange
-        final StringBuilder methodsCalled = new StringBuilder();
-        new MockUp<IotHubTransport>()
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+
+        //act
+        transport.addDeviceClientConfig(null);
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_12_002: [If the protocol is not AMQPS or AMQPS_WS, this function shall throw an UnsupportedOperationException.]
+    @Test (expected = UnsupportedOperationException.class)
+    public void addDeviceClientConfigThrowsForMqtt(final @Mocked DeviceClientConfig newConfig) throws DeviceClientException
+    {
+        //arrange
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        new NonStrictExpectations()
         {
-            @Mock void invokeConnectionStatusChangeCallback(IotHubConnectionStatus status, IotHubConnectionStatusChangeReason reason, Throwable e)
             {
-                methodsCalled.append("invokeConnectionStatusChangeCallback");
+                mockedConfig.getProtocol();
+                result = IotHubClientProtocol.MQTT;
             }
         };
-        final IotHubTransport transport = new IotHubTransport(mockedConfig);
-        Deencapsulation.setField(transport, "connectionStatus", IotHubConnectionStatus.DISCONNECTED_RETRYING);
-        Deencapsulation.setField(transport, "currentReconnectionAttempt", 5);
-        Deencapsulation.setField(transport, "reconnectionAttemptStartTimeMillis", 5);
 
         //act
-        Deencapsulation.invoke(transport, "updateStatus",
-                new Class[] {IotHubConnectionStatus.class, IotHubConnectionStatusChangeReason.class, Throwable.class},
-                IotHubConnectionStatus.CONNECTED, IotHubConnectionStatusChangeReason.NO_NETWORK, null);
+        transport.addDeviceClientConfig(newConfig);
+    }
 
-        //assert
-        assertEquals(IotHubConnectionStatus.CONNECTED, Deencapsulation.getField(transport, "connectionStatus"));
-        assertEquals(0, Deencapsulation.getField(transport, "currentReconnectionAttempt"));
-        assertEquals(0L, Deencapsulation.getField(transport, "reconnectionAttemptStartTimeMillis"));
-        assertTrue(methodsCalled.toString().equalsIgnoreCase("invokeConnectionStatusChangeCallback"));
+    //Tests_SRS_IOTHUBTRANSPORT_12_012: [If the transport has never been opened, this function shall throw an IllegalStateException.]
+    @Test (expected = IllegalStateException.class)
+    public void addDeviceClientConfigThrowsIfNeverOpened(final @Mocked DeviceClientConfig newConfig) throws DeviceClientException
+    {
+        //arrange
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        new NonStrictExpectations()
+        {
+            {
+                mockedConfig.getProtocol();
+                result = IotHubClientProtocol.AMQPS;
+            }
+        };
+
+        //act
+        transport.addDeviceClientConfig(newConfig);
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_28_005:[This function shall updated the saved connection status if the connection status has changed.]
-    //Tests_SRS_IOTHUBTRANSPORT_28_006:[This function shall invoke all callbacks listening for the state change if the connection status has changed.]
-    //Tests_SRS_IOTHUBTRANSPORT_28_007: [This function shall reset currentReconnectionAttempt and reconnectionAttemptStartTimeMillis if connection status is changed to CONNECTED.]
+    //Tests_SRS_IOTHUBTRANSPORT_12_003: [This function shall save the provided config so that it is opened again on reconnection.]
+    //Tests_SRS_IOTHUBTRANSPORT_12_004: [If the connection status is CONNECTED, this function shall open the device on the live connection.]
     @Test
-    public void updateStatusConnectionStatusNotChanged()
+    public void addDeviceClientConfigOpensDeviceOnLiveConnection(final @Mocked DeviceClientConfig newConfig) throws DeviceClientException
     {
         //arrange
-        final IotHubTransport transport = new IotHubTransport(mockedConfig);
-        Deencapsulation.setField(transport, "connectionStatus", IotHubConnectionStatus.CONNECTED);
-        Deencapsulation.setField(transport, "currentReconnectionAttempt", 5);
-        new Expectations(IotHubTransport.class)
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        final Queue<DeviceClientConfig> configs = new ConcurrentLinkedQueue<>();
+        configs.add(mockedConfig);
+        Deencapsulation.setField(transport, "deviceClientConfigs", configs);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedAmqpsIotHubConnection);
+        new NonStrictExpectations()
         {
             {
-                Deencapsulation.invoke(transport, "invokeConnectionStatusChangeCallback",
-                        new Class[] {IotHubConnectionStatus.class, IotHubConnectionStatusChangeReason.class, Throwable.class},
-                        IotHubConnectionStatus.CONNECTED, null, null);
+                mockedConfig.getProtocol();
+                result = IotHubClientProtocol.AMQPS_WS;
             }
         };
 
         //act
-        Deencapsulation.invoke(transport, "updateStatus",
-                new Class[] {IotHubConnectionStatus.class, IotHubConnectionStatusChangeReason.class, Throwable.class},
-                IotHubConnectionStatus.CONNECTED, null, null);
+        transport.addDeviceClientConfig(newConfig);
+
+        //assert
+        assertEquals(2, configs.size());
+        assertTrue(configs.contains(newConfig));
+        new Verifications()
+        {
+            {
+                mockedAmqpsIotHubConnection.openDeviceOperationSession(newConfig);
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_12_003: [This function shall save the provided config so that it is opened again on reconnection.]
+    @Test
+    public void addDeviceClientConfigWhileDisconnectedOnlySavesConfig(final @Mocked DeviceClientConfig newConfig) throws DeviceClientException
+    {
+        //arrange
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        final Queue<DeviceClientConfig> configs = new ConcurrentLinkedQueue<>();
+        configs.add(mockedConfig);
+        Deencapsulation.setField(transport, "deviceClientConfigs", configs);
+        Deencapsulation.setField(transport, "connectionStatus", DISCONNECTED_RETRYING);
+        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedAmqpsIotHubConnection);
+        new NonStrictExpectations()
+        {
+            {
+                mockedConfig.getProtocol();
+                result = IotHubClientProtocol.AMQPS;
+            }
+        };
+
+        //act
+        transport.addDeviceClientConfig(newConfig);
 
         //assert
-        assertEquals(IotHubConnectionStatus.CONNECTED, Deencapsulation.getField(transport, "connectionStatus"));
-        assertEquals(5, Deencapsulation.getField(transport, "currentReconnectionAttempt"));
+        assertTrue(configs.contains(newConfig));
+        new Verifications()
+        {
+            {
+                mockedAmqpsIotHubConnection.openDeviceOperationSession((DeviceClientConfig) any);
+                times = 0;
+            }
+        };
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_28_005:[This function shall updated the saved connection status if the connection status has changed.]
-    //Tests_SRS_IOTHUBTRANSPORT_28_006:[This function shall invoke all callbacks listening for the state change if the connection status has changed.]
-    //Tests_SRS_IOTHUBTRANSPORT_28_007: [This function shall reset currentReconnectionAttempt and reconnectionAttemptStartTimeMillis if connection status is changed to CONNECTED.]
+    //Tests_SRS_IOTHUBTRANSPORT_12_005: [If the device cannot be opened, this function shall forget the saved config and rethrow the exception.]
     @Test
-    public void updateStatusConnectionStatusChangedToDisconnected()
+    public void addDeviceClientConfigForgetsConfigIfOpenFails(final @Mocked DeviceClientConfig newConfig) throws DeviceClientException
     {
         //arrange
-        final StringBuilder methodsCalled = new StringBuilder();
-        new MockUp<IotHubTransport>()
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        final Queue<DeviceClientConfig> configs = new ConcurrentLinkedQueue<>();
+        configs.add(mockedConfig);
+        Deencapsulation.setField(transport, "deviceClientConfigs", configs);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedAmqpsIotHubConnection);
+        new NonStrictExpectations()
         {
-            @Mock void invokeConnectionStatusChangeCallback(IotHubConnectionStatus status, IotHubConnectionStatusChangeReason reason, Throwable e)
             {
-                if (status == DISCONNECTED && reason == NO_NETWORK)
-                {
-                    methodsCalled.append("invokeConnectionStatusChangeCallback");
-                }
+                mockedConfig.getProtocol();
+                result = IotHubClientProtocol.AMQPS;
+                mockedAmqpsIotHubConnection.openDeviceOperationSession((DeviceClientConfig) any);
+                result = mockedTransportException;
             }
         };
-        final IotHubTransport transport = new IotHubTransport(mockedConfig);
-        Deencapsulation.setField(transport, "connectionStatus", IotHubConnectionStatus.DISCONNECTED_RETRYING);
-        Deencapsulation.setField(transport, "currentReconnectionAttempt", 5);
 
         //act
-        Deencapsulation.invoke(transport, "updateStatus",
-                new Class[] {IotHubConnectionStatus.class, IotHubConnectionStatusChangeReason.class, Throwable.class},
-                IotHubConnectionStatus.DISCONNECTED, IotHubConnectionStatusChangeReason.NO_NETWORK, null);
+        boolean thrown = false;
+        try
+        {
+            transport.addDeviceClientConfig(newConfig);
+        }
+        catch (TransportException e)
+        {
+            thrown = true;
+        }
 
         //assert
-        assertEquals(IotHubConnectionStatus.DISCONNECTED, Deencapsulation.getField(transport, "connectionStatus"));
-        assertEquals(5, Deencapsulation.getField(transport, "currentReconnectionAttempt"));
-        assertEquals("invokeConnectionStatusChangeCallback", methodsCalled.toString());
+        assertTrue(thrown);
+        assertEquals(1, configs.size());
+        assertFalse(configs.contains(newConfig));
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_28_004:[This function shall notify the connection status change callback if the callback is not null]
+    //Tests_SRS_IOTHUBTRANSPORT_12_006: [If the provided config is null, this function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void removeDeviceClientConfigThrowsForNullConfig()
+    {
+        //arrange
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+
+        //act
+        transport.removeDeviceClientConfig(null);
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_12_007: [If the provided config is not one of the saved configs, this function shall do nothing.]
     @Test
-    public void invokeConnectionStatusChangeCallbackWithCallback()
+    public void removeDeviceClientConfigDoesNothingForUnknownConfig(final @Mocked DeviceClientConfig otherConfig)
     {
         //arrange
-        final IotHubTransport transport = new IotHubTransport(mockedConfig);
-        Deencapsulation.setField(transport, "connectionStatusChangeCallback", mockedIotHubConnectionStatusChangeCallback);
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        final Queue<DeviceClientConfig> configs = new ConcurrentLinkedQueue<>();
+        configs.add(mockedConfig);
+        Deencapsulation.setField(transport, "deviceClientConfigs", configs);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedAmqpsIotHubConnection);
 
         //act
-        Deencapsulation.invoke(transport, "invokeConnectionStatusChangeCallback",
-                new Class[] {IotHubConnectionStatus.class, IotHubConnectionStatusChangeReason.class, Throwable.class},
-                IotHubConnectionStatus.CONNECTED, IotHubConnectionStatusChangeReason.CONNECTION_OK, new IOException());
+        transport.removeDeviceClientConfig(otherConfig);
 
         //assert
+        assertEquals(1, configs.size());
         new Verifications()
         {
             {
-                mockedIotHubConnectionStatusChangeCallback.execute(
-                        (IotHubConnectionStatus)any,
-                        (IotHubConnectionStatusChangeReason)any,
-                        (Throwable)any,
-                        any);
-                times = 1;
+                mockedAmqpsIotHubConnection.closeDeviceOperationSession(anyString);
+                times = 0;
             }
         };
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_28_004:[This function shall notify the connection status change callback if the callback is not null]
+    //Tests_SRS_IOTHUBTRANSPORT_12_008: [If the provided config is the only saved config, this function shall throw an IllegalStateException.]
+    @Test (expected = IllegalStateException.class)
+    public void removeDeviceClientConfigThrowsForLastConfig()
+    {
+        //arrange
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        final Queue<DeviceClientConfig> configs = new ConcurrentLinkedQueue<>();
+        configs.add(mockedConfig);
+        Deencapsulation.setField(transport, "deviceClientConfigs", configs);
+
+        //act
+        transport.removeDeviceClientConfig(mockedConfig);
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_12_009: [This function shall forget the saved config and, if it was the default config, use the next saved config as default.]
+    //Tests_SRS_IOTHUBTRANSPORT_12_010: [If the connection status is CONNECTED, this function shall close the device on the live connection.]
+    //Tests_SRS_IOTHUBTRANSPORT_12_011: [This function shall move the waiting and in progress messages of the device to the callback queue with status MESSAGE_CANCELLED_ONCLOSE.]
     @Test
-    public void invokeConnectionStatusChangeCallbackWithNullCallback()
+    public void removeDeviceClientConfigClosesDeviceAndCancelsItsMessages(final @Mocked DeviceClientConfig otherConfig,
+                                                                          final @Mocked IotHubTransportPacket otherPacket,
+                                                                          final @Mocked Message otherMessage)
     {
         //arrange
-        final IotHubTransport transport = new IotHubTransport(mockedConfig);
-        Deencapsulation.setField(transport, "connectionStatusChangeCallback", null);
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        final Queue<DeviceClientConfig> configs = new ConcurrentLinkedQueue<>();
+        configs.add(mockedConfig);
+        configs.add(otherConfig);
+        final Queue<IotHubTransportPacket> waitingPacketsQueue = new ConcurrentLinkedQueue<>();
+        final Map<String, IotHubTransportPacket> inProgressPackets = new ConcurrentHashMap<>();
+        final Queue<IotHubTransportPacket> callbackPacketsQueue = new ConcurrentLinkedQueue<>();
+        waitingPacketsQueue.add(mockedPacket);
+        waitingPacketsQueue.add(otherPacket);
+        inProgressPackets.put("1", mockedPacket);
+        inProgressPackets.put("2", otherPacket);
+        Deencapsulation.setField(transport, "deviceClientConfigs", configs);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedAmqpsIotHubConnection);
+        Deencapsulation.setField(transport, "waitingPacketsQueue", waitingPacketsQueue);
+        Deencapsulation.setField(transport, "inProgressPackets", inProgressPackets);
+        Deencapsulation.setField(transport, "callbackPacketsQueue", callbackPacketsQueue);
+        new NonStrictExpectations()
+        {
+            {
+                mockedConfig.getDeviceId();
+                result = "removedDevice";
+                mockedPacket.getMessage();
+                result = mockedMessage;
+                mockedMessage.getConnectionDeviceId();
+                result = "removedDevice";
+                otherPacket.getMessage();
+                result = otherMessage;
+                otherMessage.getConnectionDeviceId();
+                result = "otherDevice";
+            }
+        };
 
         //act
-        Deencapsulation.invoke(transport, "invokeConnectionStatusChangeCallback",
-                new Class[] {IotHubConnectionStatus.class, IotHubConnectionStatusChangeReason.class, Throwable.class},
-                IotHubConnectionStatus.CONNECTED, IotHubConnectionStatusChangeReason.CONNECTION_OK, new IOException());
+        transport.removeDeviceClientConfig(mockedConfig);
 
         //assert
-
+        assertEquals(1, configs.size());
+        assertEquals(otherConfig, Deencapsulation.getField(transport, "defaultConfig"));
+        assertEquals(1, waitingPacketsQueue.size());
+        assertEquals(otherPacket, waitingPacketsQueue.peek());
+        assertEquals(1, inProgressPackets.size());
+        assertEquals(otherPacket, inProgressPackets.get("2"));
+        assertEquals(2, callbackPacketsQueue.size());
         new Verifications()
         {
             {
-                mockedIotHubConnectionStatusChangeCallback.execute(
-                        (IotHubConnectionStatus)any,
-                        (IotHubConnectionStatusChangeReason)any,
-                        (Throwable)any,
-                        any);
+                mockedAmqpsIotHubConnection.closeDeviceOperationSession("removedDevice");
+                times = 1;
+                mockedPacket.setStatus(IotHubStatusCode.MESSAGE_CANCELLED_ONCLOSE);
+                times = 2;
+                otherPacket.setStatus((IotHubStatusCode) any);
                 times = 0;
             }
         };
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_28_003: [This function shall indicate if the device's sas token is expired.]
+    //Tests_SRS_IOTHUBTRANSPORT_12_013: [If the default config has offline message store settings, this function
+    // shall open the offline message store.]
     @Test
-    public void isSasTokenExpiredAuthenticationTypeIsSasTokenAndExpired()
+    public void openOpensOfflineMessageStore() throws DeviceClientException, IOException
     {
         //arrange
         final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", DISCONNECTED);
+        Collection<DeviceClientConfig> configs = new ArrayList<>();
+        configs.add(mockedConfig);
+        new MockUp<IotHubTransport>()
+        {
+            @Mock boolean isSasTokenExpired()
+            {
+                return false;
+            }
+
+            @Mock void openConnection()
+            {
+            }
+        };
         new NonStrictExpectations()
         {
             {
-                mockedConfig.getAuthenticationType();
-                result = DeviceClientConfig.AuthType.SAS_TOKEN;
-                mockedConfig.getSasTokenAuthentication().isRenewalNecessary();
-                result = true;
+                mockedConfig.getOfflineMessageStoreSettings();
+                result = mockedOfflineMessageStoreSettings;
             }
         };
 
         //act
-        boolean ret = Deencapsulation.invoke(transport, "isSasTokenExpired");
+        transport.open(configs);
 
         //assert
-        assertTrue(ret);
+        assertNotNull(Deencapsulation.getField(transport, "offlineMessageStore"));
+        new Verifications()
+        {
+            {
+                new OfflineMessageStore(mockedOfflineMessageStoreSettings);
+                times = 1;
+                mockedOfflineMessageStore.open();
+                times = 1;
+            }
+        };
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_28_003: [This function shall indicate if the device's sas token is expired.]
-    @Test
-    public void isSasTokenExpiredAuthenticationTypeIsSasTokenAndNotExpired()
+    @Test (expected = TransportException.class)
+    public void openThrowsIfOfflineMessageStoreCannotBeOpened() throws DeviceClientException, IOException
     {
         //arrange
         final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", DISCONNECTED);
+        Collection<DeviceClientConfig> configs = new ArrayList<>();
+        configs.add(mockedConfig);
+        new MockUp<IotHubTransport>()
+        {
+            @Mock boolean isSasTokenExpired()
+            {
+                return false;
+            }
+        };
         new NonStrictExpectations()
         {
             {
-                mockedConfig.getAuthenticationType();
-                result = DeviceClientConfig.AuthType.SAS_TOKEN;
-                mockedConfig.getSasTokenAuthentication().isRenewalNecessary();
-                result = false;
+                mockedConfig.getOfflineMessageStoreSettings();
+                result = mockedOfflineMessageStoreSettings;
+                mockedOfflineMessageStore.open();
+                result = new IOException();
             }
         };
 
         //act
-        boolean ret = Deencapsulation.invoke(transport, "isSasTokenExpired");
+        transport.open(configs);
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_12_014: [This function shall close the offline message store, leaving the messages
+    // that were not acknowledged on disk.]
+    @Test
+    public void closeClosesOfflineMessageStore() throws DeviceClientException
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        Deencapsulation.setField(transport, "taskScheduler", mockedScheduledExecutorService);
+        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedIotHubTransportConnection);
+        Deencapsulation.setField(transport, "offlineMessageStore", mockedOfflineMessageStore);
+
+        //act
+        transport.close(CLIENT_CLOSE, null);
 
         //assert
-        assertFalse(ret);
+        assertNull(Deencapsulation.getField(transport, "offlineMessageStore"));
+        new Verifications()
+        {
+            {
+                mockedOfflineMessageStore.close();
+                times = 1;
+                mockedOfflineMessageStore.complete(anyLong);
+                times = 0;
+            }
+        };
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_28_003: [This function shall indicate if the device's sas token is expired.]
+    //Tests_SRS_IOTHUBTRANSPORT_12_015: [If the offline message store is open and the message is telemetry, this
+    // function shall append the message to the store instead of the waiting queue.]
     @Test
-    public void isSasTokenExpiredAuthenticationTypeNotSasToken()
+    public void addMessageAppendsTelemetryToOfflineMessageStore() throws IOException
     {
         //arrange
-        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        final byte[] data = new byte[] {1, 2, 3};
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", DISCONNECTED_RETRYING);
+        Deencapsulation.setField(transport, "offlineMessageStore", mockedOfflineMessageStore);
+        Queue<IotHubTransportPacket> waitingPacketsQueue = new ConcurrentLinkedQueue<>();
+        Deencapsulation.setField(transport, "waitingPacketsQueue", waitingPacketsQueue);
         new NonStrictExpectations()
         {
             {
-                mockedConfig.getAuthenticationType();
-                result = DeviceClientConfig.AuthType.X509_CERTIFICATE;
-                mockedConfig.getSasTokenAuthentication().isRenewalNecessary();
-                result = true;
+                mockedMessage.getMessageType();
+                result = MessageType.DEVICE_TELEMETRY;
+                OfflineMessageCodec.encode(mockedMessage);
+                result = data;
+                mockedOfflineMessageStore.append(data, anyLong);
+                returns(0L, 1L);
+                mockedOfflineMessageStore.getFirstRetainedSequenceNumber();
+                result = 0L;
             }
         };
+        Object context = new Object();
 
         //act
-        boolean ret = Deencapsulation.invoke(transport, "isSasTokenExpired");
+        transport.addMessage(mockedMessage, mockedEventCallback, context);
+        transport.addMessage(mockedMessage, mockedEventCallback, context);
 
         //assert
-        assertFalse(ret);
+        assertTrue(waitingPacketsQueue.isEmpty());
+        Collection<?> storedMessageCallbacks = Deencapsulation.getField(transport, "storedMessageCallbacks");
+        assertEquals(1, storedMessageCallbacks.size());
+        assertEquals(1L, Deencapsulation.getField(storedMessageCallbacks.iterator().next(), "lastSequenceNumber"));
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_28_002: [This function shall add the packet to the callback queue if it has a callback.]
     @Test
-    public void addToCallbackQueuePacketHasCallback(@Mocked final IotHubEventCallback mockCallback)
+    public void addMessageQueuesTransportMessagesInMemory() throws IOException
     {
         //arrange
-        final IotHubTransport transport = new IotHubTransport(mockedConfig);
-        new NonStrictExpectations()
-        {
-            {
-                mockedPacket.getCallback();
-                result = mockCallback;
-            }
-        };
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        Deencapsulation.setField(transport, "offlineMessageStore", mockedOfflineMessageStore);
+        Queue<IotHubTransportPacket> waitingPacketsQueue = new ConcurrentLinkedQueue<>();
+        Deencapsulation.setField(transport, "waitingPacketsQueue", waitingPacketsQueue);
 
         //act
-        Deencapsulation.invoke(transport, "addToCallbackQueue", mockedPacket);
+        transport.addMessage(mockedTransportMessage, mockedEventCallback, null);
 
         //assert
-        Queue<IotHubTransportPacket> callbackPacketsQueue = Deencapsulation.getField(transport, "callbackPacketsQueue");
-        assertEquals(1, callbackPacketsQueue.size());
-        assertTrue(callbackPacketsQueue.contains(mockedPacket));
+        assertEquals(1, waitingPacketsQueue.size());
+        new Verifications()
+        {
+            {
+                mockedOfflineMessageStore.append((byte[]) any, anyLong);
+                times = 0;
+            }
+        };
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_28_002: [This function shall add the packet to the callback queue if it has a callback.]
+    //Tests_SRS_IOTHUBTRANSPORT_12_018: [If the offline message store is full and rejects the message, this
+    // function shall add the packet to the callback queue with status ERROR.]
     @Test
-    public void addToCallbackQueuePacketNoCallback(@Mocked final IotHubEventCallback mockCallback)
+    public void addMessageFailsMessageIfOfflineMessageStoreFull() throws IOException
     {
         //arrange
-        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        final Object context = new Object();
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        Deencapsulation.setField(transport, "offlineMessageStore", mockedOfflineMessageStore);
+        Queue<IotHubTransportPacket> waitingPacketsQueue = new ConcurrentLinkedQueue<>();
+        Queue<IotHubTransportPacket> callbackPacketsQueue = new ConcurrentLinkedQueue<>();
+        Deencapsulation.setField(transport, "waitingPacketsQueue", waitingPacketsQueue);
+        Deencapsulation.setField(transport, "callbackPacketsQueue", callbackPacketsQueue);
         new NonStrictExpectations()
         {
             {
-                mockedPacket.getCallback();
-                result = null;
+                mockedMessage.getMessageType();
+                result = MessageType.DEVICE_TELEMETRY;
+                mockedOfflineMessageStore.append((byte[]) any, anyLong);
+                result = -1L;
+                mockedPacket.getStoredSequenceNumber();
+                result = -1L;
             }
         };
 
         //act
-        Deencapsulation.invoke(transport, "addToCallbackQueue", mockedPacket);
+        transport.addMessage(mockedMessage, mockedEventCallback, context);
 
         //assert
-        Queue<IotHubTransportPacket> callbackPacketsQueue = Deencapsulation.getField(transport, "callbackPacketsQueue");
-        assertEquals(0, callbackPacketsQueue.size());
+        assertTrue(waitingPacketsQueue.isEmpty());
+        assertEquals(1, callbackPacketsQueue.size());
+        new Verifications()
+        {
+            {
+                new IotHubTransportPacket(mockedMessage, mockedEventCallback, context, IotHubStatusCode.ERROR, anyLong);
+                times = 1;
+            }
+        };
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_28_001: [This function shall set the MqttUnauthorizedException as retryable if the sas token has not expired.]
+    //Tests_SRS_IOTHUBTRANSPORT_12_019: [If appending the message evicted older stored messages, this function
+    // shall add packets for them to the callback queue with status ERROR.]
     @Test
-    public void checkForUnauthorizedExceptionInMqttUnauthroizedException()
+    public void addMessageFailsEvictedStoredMessages() throws IOException
     {
         //arrange
-        new MockUp<IotHubTransport>()
+        final Object context = new Object();
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        Deencapsulation.setField(transport, "offlineMessageStore", mockedOfflineMessageStore);
+        Queue<IotHubTransportPacket> callbackPacketsQueue = new ConcurrentLinkedQueue<>();
+        Deencapsulation.setField(transport, "callbackPacketsQueue", callbackPacketsQueue);
+        new NonStrictExpectations()
         {
-            @Mock boolean isSasTokenExpired()
             {
-                return false;
+                mockedMessage.getMessageType();
+                result = MessageType.DEVICE_TELEMETRY;
+                mockedOfflineMessageStore.append((byte[]) any, anyLong);
+                returns(0L, 1L);
+                mockedOfflineMessageStore.getFirstRetainedSequenceNumber();
+                returns(0L, 1L);
+                mockedPacket.getStoredSequenceNumber();
+                result = -1L;
             }
         };
-        final MqttUnauthorizedException testException = new MqttUnauthorizedException();
-        final IotHubTransport transport = new IotHubTransport(mockedConfig);
 
         //act
-        Deencapsulation.invoke(transport, "checkForUnauthorizedException", testException);
+        transport.addMessage(mockedMessage, mockedEventCallback, context);
+        transport.addMessage(mockedMessage, mockedEventCallback, context);
 
         //assert
+        assertEquals(1, callbackPacketsQueue.size());
+        Collection<?> storedMessageCallbacks = Deencapsulation.getField(transport, "storedMessageCallbacks");
+        assertEquals(1, storedMessageCallbacks.size());
+        assertEquals(1L, Deencapsulation.getField(storedMessageCallbacks.iterator().next(), "firstSequenceNumber"));
         new Verifications()
         {
             {
-                testException.setRetryable(true);
+                new IotHubTransportPacket((Message) any, mockedEventCallback, context, IotHubStatusCode.ERROR, anyLong);
                 times = 1;
             }
         };
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_28_001: [This function shall set the MqttUnauthorizedException, UnauthorizedException or
-    //AmqpUnauthorizedAccessException as retryable if the sas token has not expired.]
+    //Tests_SRS_IOTHUBTRANSPORT_12_030: [If the maximum number of stored message callbacks is reached and the
+    // message cannot share the last one, this function shall add the packet to the callback queue with status ERROR
+    // without storing the message.]
     @Test
-    public void checkForUnauthorizedExceptionInUnauthorizedException()
+    public void addMessageFailsMessageIfStoredCallbackLimitReached() throws IOException
     {
         //arrange
-        new MockUp<IotHubTransport>()
+        final Object firstContext = new Object();
+        final Object secondContext = new Object();
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", DISCONNECTED_RETRYING);
+        Deencapsulation.setField(transport, "offlineMessageStore", mockedOfflineMessageStore);
+        Deencapsulation.setField(transport, "maxStoredMessageCallbacks", 1);
+        Queue<IotHubTransportPacket> callbackPacketsQueue = new ConcurrentLinkedQueue<>();
+        Deencapsulation.setField(transport, "callbackPacketsQueue", callbackPacketsQueue);
+        new NonStrictExpectations()
         {
-            @Mock boolean isSasTokenExpired()
             {
-                return false;
+                mockedMessage.getMessageType();
+                result = MessageType.DEVICE_TELEMETRY;
+                mockedOfflineMessageStore.append((byte[]) any, anyLong);
+                returns(0L, 1L);
+                mockedOfflineMessageStore.getNextSequenceNumber();
+                result = 1L;
+                mockedOfflineMessageStore.getFirstRetainedSequenceNumber();
+                result = 0L;
+                mockedPacket.getStoredSequenceNumber();
+                result = -1L;
             }
         };
 
-        final UnauthorizedException testException = new UnauthorizedException();
-        final IotHubTransport transport = new IotHubTransport(mockedConfig);
-
         //act
-        Deencapsulation.invoke(transport, "checkForUnauthorizedException", testException);
+        transport.addMessage(mockedMessage, mockedEventCallback, firstContext);
+        transport.addMessage(mockedMessage, mockedEventCallback, firstContext);
+        transport.addMessage(mockedMessage, mockedEventCallback, secondContext);
 
         //assert
+        assertEquals(1, callbackPacketsQueue.size());
+        Collection<?> storedMessageCallbacks = Deencapsulation.getField(transport, "storedMessageCallbacks");
+        assertEquals(1, storedMessageCallbacks.size());
         new Verifications()
         {
             {
-                testException.setRetryable(true);
+                mockedOfflineMessageStore.append((byte[]) any, anyLong);
+                times = 2;
+                new IotHubTransportPacket(mockedMessage, mockedEventCallback, secondContext, IotHubStatusCode.ERROR, anyLong);
                 times = 1;
             }
         };
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_28_001: [This function shall set the MqttUnauthorizedException, UnauthorizedException or
-    //AmqpUnauthorizedAccessException as retryable if the sas token has not expired.]
+    //Tests_SRS_IOTHUBTRANSPORT_12_031: [Stored messages of the batch shall be batchable once they are moved back to
+    // the waiting queue.]
     @Test
-    public void checkForUnauthorizedExceptionInAmqpUnauthorizedAccessException()
+    public void addMessagesKeepsStoredMessagesBatchable() throws IOException
     {
         //arrange
-        new MockUp<IotHubTransport>()
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", DISCONNECTED_RETRYING);
+        Deencapsulation.setField(transport, "offlineMessageStore", mockedOfflineMessageStore);
+        Queue<IotHubTransportPacket> waitingPacketsQueue = new ConcurrentLinkedQueue<>();
+        Deencapsulation.setField(transport, "waitingPacketsQueue", waitingPacketsQueue);
+        new NonStrictExpectations()
         {
-            @Mock boolean isSasTokenExpired()
             {
-                return false;
+                mockedMessage.getMessageType();
+                result = MessageType.DEVICE_TELEMETRY;
+                mockedOfflineMessageStore.append((byte[]) any, anyLong);
+                returns(0L, 1L);
+                mockedOfflineMessageStore.getFirstRetainedSequenceNumber();
+                result = 0L;
+                mockedOfflineMessageStore.readNext();
+                returns(mockedStoredRecord, mockedStoredRecord, null);
+                mockedStoredRecord.getSequenceNumber();
+                returns(0L, 0L, 1L, 1L);
+                OfflineMessageCodec.decode((byte[]) any);
+                result = mockedMessage;
             }
         };
-
-        final AmqpUnauthorizedAccessException testException = new AmqpUnauthorizedAccessException();
-        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        transport.addMessages(Arrays.asList(mockedMessage, mockedMessage), null, null);
 
         //act
-        Deencapsulation.invoke(transport, "checkForUnauthorizedException", testException);
+        Deencapsulation.invoke(transport, "moveStoredMessagesToWaitingQueue");
 
         //assert
+        assertEquals(2, waitingPacketsQueue.size());
+        Collection<?> storedMessageCallbacks = Deencapsulation.getField(transport, "storedMessageCallbacks");
+        assertTrue(storedMessageCallbacks.isEmpty());
         new Verifications()
         {
             {
-                testException.setRetryable(true);
-                times = 1;
+                mockedPacket.setBatchable(true);
+                times = 2;
             }
         };
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_28_001: [This function shall set the MqttUnauthorizedException, UnauthorizedException or
-    //AmqpUnauthorizedAccessException as retryable if the sas token has not expired.]
+    //Tests_SRS_IOTHUBTRANSPORT_12_016: [This function shall move stored messages to the waiting queue while fewer
+    // than 100 stored messages are held in memory.]
     @Test
-    public void checkForUnauthorizedExceptionWithExpiredSASToken()
+    public void sendMessagesMovesStoredMessagesToWaitingQueue() throws IOException
     {
         //arrange
-        new MockUp<IotHubTransport>()
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "offlineMessageStore", mockedOfflineMessageStore);
+        Queue<IotHubTransportPacket> waitingPacketsQueue = new ConcurrentLinkedQueue<>();
+        Deencapsulation.setField(transport, "waitingPacketsQueue", waitingPacketsQueue);
+        new NonStrictExpectations()
         {
-            @Mock boolean isSasTokenExpired()
             {
-                return true;
+                mockedOfflineMessageStore.readNext();
+                returns(mockedStoredRecord, null);
+                mockedStoredRecord.getSequenceNumber();
+                result = 5L;
+                OfflineMessageCodec.decode((byte[]) any);
+                result = mockedMessage;
             }
         };
-        final UnauthorizedException testException = new UnauthorizedException();
-        final IotHubTransport transport = new IotHubTransport(mockedConfig);
 
         //act
-        Deencapsulation.invoke(transport, "checkForUnauthorizedException", testException);
+        Deencapsulation.invoke(transport, "moveStoredMessagesToWaitingQueue");
 
         //assert
+        assertEquals(1, waitingPacketsQueue.size());
+        assertEquals(1, Deencapsulation.getField(transport, "storedPacketsInMemory"));
         new Verifications()
         {
             {
-                testException.setRetryable(true);
-                times = 0;
+                new IotHubTransportPacket(mockedMessage, null, null, null, anyLong);
+                times = 1;
+                mockedPacket.setStoredSequenceNumber(5L);
+                times = 1;
+                mockedOfflineMessageStore.syncIfDue();
+                times = 1;
             }
         };
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_28_001: [This function shall set the MqttUnauthorizedException, UnauthorizedException or
-    //AmqpUnauthorizedAccessException as retryable if the sas token has not expired.]
     @Test
-    public void checkForUnauthorizedExceptionWithOtherTransportException()
+    public void sendMessagesKeepsStoredMessagesOnDiskWhileEnoughAreInMemory() throws IOException
     {
         //arrange
-        new MockUp<IotHubTransport>()
-        {
-            @Mock boolean isSasTokenExpired()
-            {
-                return true;
-            }
-        };
-        final TransportException testException = new TransportException();
-        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "offlineMessageStore", mockedOfflineMessageStore);
+        Deencapsulation.setField(transport, "storedPacketsInMemory", 100);
 
         //act
-        Deencapsulation.invoke(transport, "checkForUnauthorizedException", testException);
+        Deencapsulation.invoke(transport, "moveStoredMessagesToWaitingQueue");
 
         //assert
         new Verifications()
         {
             {
-                testException.setRetryable(true);
+                mockedOfflineMessageStore.readNext();
                 times = 0;
             }
         };
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_34_072: [This function shall check if the provided message should expect an ACK or not.]
-    //Tests_SRS_IOTHUBTRANSPORT_34_073: [This function shall send the provided message over the saved connection
-    // and save the response code.]
     @Test
-    public void sendPacketHappyPathWithAck() throws TransportException
+    public void sendMessagesExpiresStoredMessagesOlderThanAgeLimit() throws IOException
     {
         //arrange
         IotHubTransport transport = new IotHubTransport(mockedConfig);
-        Map<String, IotHubTransportPacket> inProgressMessages = new HashMap<>();
-        Deencapsulation.setField(transport, "inProgressPackets", inProgressMessages);
-        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedHttpsIotHubConnection);
+        Deencapsulation.setField(transport, "offlineMessageStore", mockedOfflineMessageStore);
+        Deencapsulation.setField(transport, "maxStoredMessageAgeMillis", 1000L);
+        Queue<IotHubTransportPacket> waitingPacketsQueue = new ConcurrentLinkedQueue<>();
+        Deencapsulation.setField(transport, "waitingPacketsQueue", waitingPacketsQueue);
         new NonStrictExpectations()
         {
             {
-                mockedPacket.getMessage();
-                result = mockedTransportMessage;
-
-                mockedTransportMessage.isMessageAckNeeded((IotHubClientProtocol) any);
-                result = true;
-
-                mockedHttpsIotHubConnection.sendMessage((Message) any);
-                result = IotHubStatusCode.OK_EMPTY;
+                mockedOfflineMessageStore.readNext();
+                returns(mockedStoredRecord, null);
+                mockedStoredRecord.getTimestampMillis();
+                result = 1L;
+                OfflineMessageCodec.decode((byte[]) any);
+                result = mockedMessage;
             }
         };
 
         //act
-        Deencapsulation.invoke(transport, "sendPacket", mockedPacket);
+        Deencapsulation.invoke(transport, "moveStoredMessagesToWaitingQueue");
 
         //assert
-        assertEquals(1, inProgressMessages.size());
-    }
-
-
-    //Tests_SRS_IOTHUBTRANSPORT_34_074: [If the response from sending is not OK or OK_EMPTY, this function
-    // shall invoke handleMessageException with that message.]
-    @Test
-    public void sendPacketReceivesStatusThatIsNotOkOrOkEmpty() throws TransportException
-    {
-        //arrange
-        final StringBuilder methodsCalled = new StringBuilder();
-        new MockUp<IotHubTransport>()
-        {
-            @Mock void handleMessageException(IotHubTransportPacket packet, TransportException exception)
-            {
-                if (packet.equals(mockedPacket))
-                {
-                    methodsCalled.append("handleMessageException");
-                }
-            }
-        };
-        final IotHubTransport transport = new IotHubTransport(mockedConfig);
-        Map<String, IotHubTransportPacket> inProgressMessages = new HashMap<>();
-        Deencapsulation.setField(transport, "inProgressPackets", inProgressMessages);
-        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedHttpsIotHubConnection);
-        new Expectations()
+        assertTrue(waitingPacketsQueue.isEmpty());
+        new Verifications()
         {
             {
-                mockedPacket.getMessage();
-                result = mockedTransportMessage;
-
-                mockedTransportMessage.isMessageAckNeeded((IotHubClientProtocol) any);
-                result = true;
-
-                mockedHttpsIotHubConnection.sendMessage((Message) any);
-                result = IotHubStatusCode.HUB_OR_DEVICE_ID_NOT_FOUND;
+                new IotHubTransportPacket(mockedMessage, null, null, IotHubStatusCode.MESSAGE_EXPIRED, anyLong);
+                times = 1;
             }
         };
-
-        //act
-        Deencapsulation.invoke(transport, "sendPacket", mockedPacket);
-
-        //assert
-        assertEquals(0, inProgressMessages.size());
-        assertEquals("handleMessageException", methodsCalled.toString());
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_34_075: [If the response from sending is OK or OK_EMPTY and no ack is expected,
-    // this function shall put that set that status in the sent packet and add that packet to the callbacks queue.]
+    //Tests_SRS_IOTHUBTRANSPORT_12_017: [If the packet holds a stored message, this function shall complete it in
+    // the offline message store, unless it was cancelled on close.]
     @Test
-    public void sendPacketHappyPathWithoutAck() throws TransportException
+    public void addToCallbackQueueCompletesStoredMessage()
     {
         //arrange
         IotHubTransport transport = new IotHubTransport(mockedConfig);
-        Map<String, IotHubTransportPacket> inProgressMessages = new HashMap<>();
-        Queue<IotHubTransportPacket> callbackPacketsQueue = new ConcurrentLinkedQueue<>();
-        Deencapsulation.setField(transport, "callbackPacketsQueue", callbackPacketsQueue);
-        Deencapsulation.setField(transport, "inProgressPackets", inProgressMessages);
-        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedHttpsIotHubConnection);
+        Deencapsulation.setField(transport, "offlineMessageStore", mockedOfflineMessageStore);
+        Deencapsulation.setField(transport, "storedPacketsInMemory", 1);
         new NonStrictExpectations()
         {
             {
-                mockedPacket.getMessage();
-                result = mockedTransportMessage;
-
-                mockedTransportMessage.isMessageAckNeeded((IotHubClientProtocol) any);
-                result = false;
-
-                mockedHttpsIotHubConnection.sendMessage((Message) any);
+                mockedPacket.getStoredSequenceNumber();
+                result = 7L;
+                mockedPacket.getStatus();
                 result = IotHubStatusCode.OK_EMPTY;
             }
         };
 
         //act
-        Deencapsulation.invoke(transport, "sendPacket", mockedPacket);
+        Deencapsulation.invoke(transport, "addToCallbackQueue", new Class[] {IotHubTransportPacket.class}, mockedPacket);
 
         //assert
-        assertEquals(0, inProgressMessages.size());
-        assertEquals(1, callbackPacketsQueue.size());
+        assertEquals(0, Deencapsulation.getField(transport, "storedPacketsInMemory"));
         new Verifications()
         {
             {
-                mockedPacket.setStatus(IotHubStatusCode.OK_EMPTY);
+                mockedOfflineMessageStore.complete(7L);
+                times = 1;
+                mockedPacket.setStoredSequenceNumber(-1L);
                 times = 1;
             }
         };
     }
 
-
-    //Tests_SRS_IOTHUBTRANSPORT_34_076: [If an exception is encountered while sending the message, this function
-    // shall invoke handleMessageException with that packet.]
+    //Tests_SRS_IOTHUBTRANSPORT_12_017: [If the packet holds a stored message, this function shall complete it in
+    // the offline message store, unless it was cancelled on close.]
     @Test
-    public void sendPacketFailsToSend() throws TransportException
+    public void addToCallbackQueueKeepsCancelledStoredMessageOnDisk()
     {
         //arrange
-        final StringBuilder methodsCalled = new StringBuilder();
-        new MockUp<IotHubTransport>()
-        {
-            @Mock void handleMessageException(IotHubTransportPacket packet, TransportException exception)
-            {
-                methodsCalled.append("handleMessageException");
-            }
-        };
-        final IotHubTransport transport = new IotHubTransport(mockedConfig);
-        Map<String, IotHubTransportPacket> inProgressMessages = new HashMap<>();
-        Queue<IotHubTransportPacket> callbackPacketsQueue = new ConcurrentLinkedQueue<>();
-        Deencapsulation.setField(transport, "callbackPacketsQueue", callbackPacketsQueue);
-        Deencapsulation.setField(transport, "inProgressPackets", inProgressMessages);
-        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedHttpsIotHubConnection);
-        new Expectations()
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "offlineMessageStore", mockedOfflineMessageStore);
+        Deencapsulation.setField(transport, "storedPacketsInMemory", 1);
+        new NonStrictExpectations()
         {
             {
-                mockedPacket.getMessage();
-                result = mockedTransportMessage;
-
-                mockedTransportMessage.isMessageAckNeeded((IotHubClientProtocol) any);
-                result = false;
-
-                mockedHttpsIotHubConnection.sendMessage((Message) any);
-                result = mockedTransportException;
+                mockedPacket.getStoredSequenceNumber();
+                result = 7L;
+                mockedPacket.getStatus();
+                result = IotHubStatusCode.MESSAGE_CANCELLED_ONCLOSE;
             }
         };
 
         //act
-        Deencapsulation.invoke(transport, "sendPacket", mockedPacket);
+        Deencapsulation.invoke(transport, "addToCallbackQueue", new Class[] {IotHubTransportPacket.class}, mockedPacket);
 
         //assert
-        assertEquals(0, inProgressMessages.size());
-        assertEquals(0, callbackPacketsQueue.size());
-        assertEquals(methodsCalled.toString(), "handleMessageException");
+        assertEquals(0, Deencapsulation.getField(transport, "storedPacketsInMemory"));
+        new Verifications()
+        {
+            {
+                mockedOfflineMessageStore.complete(anyLong);
+                times = 0;
+            }
+        };
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_34_076: [If an exception is encountered while sending the message, this function
-    // shall invoke handleMessageException with that packet.]
     @Test
-    public void sendPacketFailsToSendAndExpectsAck() throws TransportException
+    public void isEmptyReturnsFalseIfOfflineMessageStoreHasUnreadMessages()
     {
         //arrange
-        final StringBuilder methodsCalled = new StringBuilder();
-        new MockUp<IotHubTransport>()
-        {
-            @Mock void handleMessageException(IotHubTransportPacket packet, TransportException exception)
-            {
-                if (packet.equals(mockedPacket) && exception.equals(mockedTransportException))
-                {
-                    methodsCalled.append("handleMessageException");
-                }
-            }
-        };
         final IotHubTransport transport = new IotHubTransport(mockedConfig);
-        Map<String, IotHubTransportPacket> inProgressMessages = new HashMap<>();
-        Queue<IotHubTransportPacket> callbackPacketsQueue = new ConcurrentLinkedQueue<>();
-        Deencapsulation.setField(transport, "callbackPacketsQueue", callbackPacketsQueue);
-        Deencapsulation.setField(transport, "inProgressPackets", inProgressMessages);
-        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedHttpsIotHubConnection);
-        new Expectations()
+        Deencapsulation.setField(transport, "offlineMessageStore", mockedOfflineMessageStore);
+        new NonStrictExpectations()
         {
             {
-                mockedPacket.getMessage();
-                result = mockedTransportMessage;
-
-                mockedTransportMessage.isMessageAckNeeded((IotHubClientProtocol) any);
+                mockedOfflineMessageStore.hasUnreadRecords();
                 result = true;
-
-                mockedHttpsIotHubConnection.sendMessage((Message) any);
-                result = mockedTransportException;
             }
         };
 
         //act
-        Deencapsulation.invoke(transport, "sendPacket", mockedPacket);
-
-        //assert
-        assertEquals(0, inProgressMessages.size());
-        assertEquals(0, callbackPacketsQueue.size());
-        assertEquals("handleMessageException", methodsCalled.toString());
-    }
-
-    //Tests_SRS_IOTHUBTRANSPORT_34_079: [If the provided transportException is an AmqpConnectionThrottledException,
-    // this function shall set the status of the callback packet to the error code for THROTTLED.]
-    @Test
-    public void handleMessageExceptionChecksForAmqpThrottling()
-    {
-        //arrange
-        final IotHubTransport transport = new IotHubTransport(mockedConfig);
-
-        //act
-        Deencapsulation.invoke(transport, "handleMessageException", new Class[] {IotHubTransportPacket.class, TransportException.class}, mockedPacket, new AmqpConnectionThrottledException());
+        boolean isEmpty = transport.isEmpty();
 
         //assert
-        new Verifications()
-        {
-            {
-                mockedPacket.setStatus(IotHubStatusCode.THROTTLED);
-                times = 1;
-            }
-        };
+        assertFalse(isEmpty);
     }
-
 }
@@ -0,0 +1,251 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.device.transport;
+
+import com.microsoft.azure.sdk.iot.device.CustomLogger;
+import com.microsoft.azure.sdk.iot.device.transport.MessageCallbackExecutor;
+import mockit.Mocked;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** Unit tests for MessageCallbackExecutor. */
+public class MessageCallbackExecutorTest
+{
+    private static final long TIMEOUT_SECONDS = 10;
+
+    @Mocked
+    CustomLogger mockedLogger;
+
+    //Tests_SRS_MESSAGECALLBACKEXECUTOR_12_001: [If the concurrency is less than 1, the constructor shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsOnZeroConcurrency()
+    {
+        new MessageCallbackExecutor(0);
+    }
+
+    //Tests_SRS_MESSAGECALLBACKEXECUTOR_12_007: [If the maximum number of waiting tasks is less than 1, the constructor shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsOnZeroMaxWaitingTasks()
+    {
+        new MessageCallbackExecutor(1, 0);
+    }
+
+    //Tests_SRS_MESSAGECALLBACKEXECUTOR_12_002: [The constructor shall create a thread pool of daemon threads with the provided number of threads.]
+    @Test
+    public void executeRunsTasksOnDaemonThreads() throws InterruptedException
+    {
+        final List<Boolean> isDaemon = Collections.synchronizedList(new ArrayList<Boolean>());
+        final CountDownLatch done = new CountDownLatch(1);
+        MessageCallbackExecutor executor = new MessageCallbackExecutor(1);
+
+        executor.execute("input1", new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                isDaemon.add(Thread.currentThread().isDaemon());
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertTrue(isDaemon.get(0));
+    }
+
+    //Tests_SRS_MESSAGECALLBACKEXECUTOR_12_008: [If the executor was shut down, the function shall not run the task and return false.]
+    @Test
+    public void executeReturnsFalseAfterShutdown()
+    {
+        MessageCallbackExecutor executor = new MessageCallbackExecutor(1);
+        executor.shutdown();
+
+        boolean isAccepted = executor.execute("input1", new Runnable()
+        {
+            @Override
+            public void run()
+            {
+            }
+        });
+
+        assertFalse(isAccepted);
+        assertFalse(executor.isFull());
+    }
+
+    //Tests_SRS_MESSAGECALLBACKEXECUTOR_12_009: [The function shall return true if the number of tasks accepted and not started yet reached the maximum number of waiting tasks.]
+    @Test
+    public void isFullWhileMaxWaitingTasksWaitBehindSlowTask() throws InterruptedException
+    {
+        final CountDownLatch slowTaskStarted = new CountDownLatch(1);
+        final CountDownLatch releaseSlowTask = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(3);
+        MessageCallbackExecutor executor = new MessageCallbackExecutor(1, 2);
+        Runnable countDown = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                done.countDown();
+            }
+        };
+
+        executor.execute("input1", new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                slowTaskStarted.countDown();
+                try
+                {
+                    releaseSlowTask.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            }
+        });
+        assertTrue(slowTaskStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        executor.execute("input1", countDown);
+        boolean isFullWithOneWaiting = executor.isFull();
+        executor.execute("input1", countDown);
+        boolean isFullWithTwoWaiting = executor.isFull();
+        releaseSlowTask.countDown();
+
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertFalse(isFullWithOneWaiting);
+        assertTrue(isFullWithTwoWaiting);
+    }
+
+    //Tests_SRS_MESSAGECALLBACKEXECUTOR_12_003: [If the ordering key or the task is null, the function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void executeThrowsOnNullKey()
+    {
+        MessageCallbackExecutor executor = new MessageCallbackExecutor(1);
+        try
+        {
+            executor.execute(null, new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                }
+            });
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    //Tests_SRS_MESSAGECALLBACKEXECUTOR_12_004: [If a task with the same ordering key is running or waiting, the function shall queue the task behind it.]
+    @Test
+    public void executeRunsTasksWithSameKeyInOrder() throws InterruptedException
+    {
+        final int taskCount = 50;
+        final List<Integer> completed = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch done = new CountDownLatch(taskCount);
+        MessageCallbackExecutor executor = new MessageCallbackExecutor(4);
+
+        for (int i = 0; i < taskCount; i++)
+        {
+            final int index = i;
+            executor.execute("input1", new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    completed.add(index);
+                    done.countDown();
+                }
+            });
+        }
+
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        executor.shutdown();
+        for (int i = 0; i < taskCount; i++)
+        {
+            assertEquals(i, (int) completed.get(i));
+        }
+    }
+
+    //Tests_SRS_MESSAGECALLBACKEXECUTOR_12_005: [Otherwise the function shall submit the task to the thread pool.]
+    @Test
+    public void executeRunsTasksWithDifferentKeysInParallel() throws InterruptedException
+    {
+        final CountDownLatch slowTaskStarted = new CountDownLatch(1);
+        final CountDownLatch releaseSlowTask = new CountDownLatch(1);
+        final CountDownLatch fastTaskDone = new CountDownLatch(1);
+        MessageCallbackExecutor executor = new MessageCallbackExecutor(2);
+
+        executor.execute("diagnostics", new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                slowTaskStarted.countDown();
+                try
+                {
+                    releaseSlowTask.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        assertTrue(slowTaskStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        executor.execute("ping", new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                fastTaskDone.countDown();
+            }
+        });
+
+        // the second key runs while the first one is still busy
+        assertTrue(fastTaskDone.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        releaseSlowTask.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void executeRunsNextTaskAfterTaskThrows() throws InterruptedException
+    {
+        final CountDownLatch done = new CountDownLatch(1);
+        MessageCallbackExecutor executor = new MessageCallbackExecutor(1);
+
+        executor.execute("input1", new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                throw new IllegalStateException("callback failed");
+            }
+        });
+        executor.execute("input1", new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,116 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.device.transport;
+
+import com.microsoft.azure.sdk.iot.device.Message;
+import com.microsoft.azure.sdk.iot.device.MessageType;
+import com.microsoft.azure.sdk.iot.device.transport.OfflineMessageCodec;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for OfflineMessageCodec.
+ */
+public class OfflineMessageCodecTest
+{
+    //Tests_SRS_OFFLINEMESSAGECODEC_12_001: [If the message is null, the function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void encodeThrowsIfMessageNull()
+    {
+        //act
+        OfflineMessageCodec.encode(null);
+    }
+
+    //Tests_SRS_OFFLINEMESSAGECODEC_12_002: [The function shall write the body, ids, routing fields, expiry time
+    // and user properties of the message.]
+    //Tests_SRS_OFFLINEMESSAGECODEC_12_005: [The function shall return a message with the body, ids, routing
+    // fields, expiry time and user properties that were written.]
+    @Test
+    public void decodeReturnsEncodedMessage()
+    {
+        //arrange
+        Message message = new Message("{\"temperature\":21.5}");
+        message.setMessageId("message-id");
+        message.setCorrelationId("correlation-id");
+        message.setUserId("user-id");
+        message.setConnectionDeviceId("device-id");
+        message.setConnectionModuleId("module-id");
+        message.setOutputName("output");
+        message.setContentEncoding("utf-8");
+        message.setContentTypeFinal("application/json");
+        message.setMessageType(MessageType.DEVICE_TELEMETRY);
+        message.setAbsoluteExpiryTime(1234567L);
+        message.setProperty("alert", "true");
+        message.setProperty("unit", "celsius");
+
+        //act
+        Message decodedMessage = OfflineMessageCodec.decode(OfflineMessageCodec.encode(message));
+
+        //assert
+        assertEquals("{\"temperature\":21.5}", new String(decodedMessage.getBytes(), StandardCharsets.UTF_8));
+        assertEquals("message-id", decodedMessage.getMessageId());
+        assertEquals("correlation-id", decodedMessage.getCorrelationId());
+        assertEquals("user-id", decodedMessage.getUserId());
+        assertEquals("device-id", decodedMessage.getConnectionDeviceId());
+        assertEquals("module-id", decodedMessage.getConnectionModuleId());
+        assertEquals("output", decodedMessage.getOutputName());
+        assertEquals("utf-8", decodedMessage.getContentEncoding());
+        assertEquals("application/json", decodedMessage.getContentType());
+        assertEquals(MessageType.DEVICE_TELEMETRY, decodedMessage.getMessageType());
+        assertEquals(1234567L, decodedMessage.getExpiryTime());
+        assertEquals(2, decodedMessage.getProperties().length);
+        assertEquals("true", decodedMessage.getProperty("alert"));
+        assertEquals("celsius", decodedMessage.getProperty("unit"));
+    }
+
+    @Test
+    public void decodeKeepsUnsetFieldsUnset()
+    {
+        //arrange
+        Message message = new Message(new byte[] {1, 2, 3});
+        message.setCorrelationId(null);
+
+        //act
+        Message decodedMessage = OfflineMessageCodec.decode(OfflineMessageCodec.encode(message));
+
+        //assert
+        assertArrayEquals(new byte[] {1, 2, 3}, decodedMessage.getBytes());
+        assertEquals(message.getMessageId(), decodedMessage.getMessageId());
+        assertNull(decodedMessage.getCorrelationId());
+        assertNull(decodedMessage.getConnectionDeviceId());
+        assertNull(decodedMessage.getMessageType());
+        assertEquals(0, decodedMessage.getExpiryTime());
+        assertEquals(0, decodedMessage.getProperties().length);
+    }
+
+    //Tests_SRS_OFFLINEMESSAGECODEC_12_003: [If the data is null, the function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void decodeThrowsIfDataNull()
+    {
+        //act
+        OfflineMessageCodec.decode(null);
+    }
+
+    //Tests_SRS_OFFLINEMESSAGECODEC_12_004: [If the data is not in a known format, the function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void decodeThrowsIfFormatUnknown()
+    {
+        //act
+        OfflineMessageCodec.decode(new byte[] {7, 0, 0, 0, 0});
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void decodeThrowsIfDataTruncated()
+    {
+        //arrange
+        byte[] data = OfflineMessageCodec.encode(new Message("body"));
+
+        //act
+        OfflineMessageCodec.decode(Arrays.copyOf(data, data.length - 3));
+    }
+}
@@ -0,0 +1,91 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.device.transport;
+
+import com.microsoft.azure.sdk.iot.device.transport.OfflineMessageStoreSettings;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for OfflineMessageStoreSettings.
+ */
+public class OfflineMessageStoreSettingsTest
+{
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsIfDirectoryNull()
+    {
+        //act
+        new OfflineMessageStoreSettings(null);
+    }
+
+    @Test
+    public void constructorSetsDefaults()
+    {
+        //arrange
+        File directory = new File("store");
+
+        //act
+        OfflineMessageStoreSettings settings = new OfflineMessageStoreSettings(directory);
+
+        //assert
+        assertEquals(directory, settings.getDirectory());
+        assertEquals(4 * 1024 * 1024, settings.getSegmentSizeBytes());
+        assertEquals(256L * 1024 * 1024, settings.getMaxStoreSizeBytes());
+        assertEquals(64, settings.getMaxSegmentCount());
+        assertEquals(0, settings.getMaxMessageAgeMillis());
+        assertEquals(OfflineMessageStoreSettings.EvictionPolicy.DROP_OLDEST, settings.getEvictionPolicy());
+        assertEquals(10000, settings.getMaxPendingCallbacks());
+    }
+
+    @Test
+    public void maxSegmentCountIsAtLeastTwo()
+    {
+        //arrange
+        OfflineMessageStoreSettings settings = new OfflineMessageStoreSettings(new File("store"));
+
+        //act
+        settings.setMaxStoreSizeBytes(1);
+
+        //assert
+        assertEquals(2, settings.getMaxSegmentCount());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void setSegmentSizeBytesThrowsIfTooSmall()
+    {
+        //act
+        new OfflineMessageStoreSettings(new File("store")).setSegmentSizeBytes(1024);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void setMaxMessageAgeMillisThrowsIfNegative()
+    {
+        //act
+        new OfflineMessageStoreSettings(new File("store")).setMaxMessageAgeMillis(-1);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void setEvictionPolicyThrowsIfNull()
+    {
+        //act
+        new OfflineMessageStoreSettings(new File("store")).setEvictionPolicy(null);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void setSyncBatchSizeThrowsIfZero()
+    {
+        //act
+        new OfflineMessageStoreSettings(new File("store")).setSyncBatchSize(0);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void setMaxPendingCallbacksThrowsIfZero()
+    {
+        //act
+        new OfflineMessageStoreSettings(new File("store")).setMaxPendingCallbacks(0);
+    }
+}
@@ -0,0 +1,402 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.device.transport;
+
+import com.microsoft.azure.sdk.iot.device.CustomLogger;
+import com.microsoft.azure.sdk.iot.device.transport.OfflineMessageStore;
+import com.microsoft.azure.sdk.iot.device.transport.OfflineMessageStoreSettings;
+import mockit.Mocked;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for OfflineMessageStore. The store is exercised on real files in a temporary directory.
+ */
+public class OfflineMessageStoreTest
+{
+    private static final int SEGMENT_SIZE = 64 * 1024;
+    private static final int LARGE_RECORD_SIZE = 20 * 1024;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Mocked
+    CustomLogger mockedLogger;
+
+    private OfflineMessageStoreSettings createSettings() throws IOException
+    {
+        OfflineMessageStoreSettings settings = new OfflineMessageStoreSettings(new File(temporaryFolder.getRoot(), "store"));
+        settings.setSegmentSizeBytes(SEGMENT_SIZE);
+        return settings;
+    }
+
+    private static byte[] record(int size, int value)
+    {
+        byte[] data = new byte[size];
+        Arrays.fill(data, (byte) value);
+        return data;
+    }
+
+    private static File[] segmentFiles(OfflineMessageStoreSettings settings)
+    {
+        File[] files = settings.getDirectory().listFiles();
+        int count = 0;
+        for (File file : files)
+        {
+            if (file.getName().endsWith(".segment"))
+            {
+                files[count++] = file;
+            }
+        }
+
+        File[] segments = Arrays.copyOf(files, count);
+        Arrays.sort(segments);
+        return segments;
+    }
+
+    //Tests_SRS_OFFLINEMESSAGESTORE_12_001: [If the provided settings are null, the constructor shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsIfSettingsNull()
+    {
+        //act
+        new OfflineMessageStore(null);
+    }
+
+    //Tests_SRS_OFFLINEMESSAGESTORE_12_002: [If the directory does not exist and cannot be created, the function shall throw an IOException.]
+    @Test (expected = IOException.class)
+    public void openThrowsIfDirectoryCannotBeCreated() throws IOException
+    {
+        //arrange
+        File file = temporaryFolder.newFile("not-a-directory");
+        OfflineMessageStore store = new OfflineMessageStore(new OfflineMessageStoreSettings(new File(file, "store")));
+
+        //act
+        store.open();
+    }
+
+    //Tests_SRS_OFFLINEMESSAGESTORE_12_010: [The function shall write the record to the current segment and return its sequence number.]
+    //Tests_SRS_OFFLINEMESSAGESTORE_12_011: [The function shall return the next record and remember it as read.]
+    @Test
+    public void appendedRecordsAreReadInOrder() throws IOException
+    {
+        //arrange
+        OfflineMessageStore store = new OfflineMessageStore(createSettings());
+        store.open();
+
+        //act
+        long first = store.append(record(10, 1), 100);
+        long second = store.append(record(20, 2), 200);
+
+        //assert
+        assertEquals(0, first);
+        assertEquals(1, second);
+        assertTrue(store.hasUnreadRecords());
+
+        OfflineMessageStore.Record firstRecord = store.readNext();
+        assertEquals(0, firstRecord.getSequenceNumber());
+        assertEquals(100, firstRecord.getTimestampMillis());
+        assertArrayEquals(record(10, 1), firstRecord.getData());
+
+        OfflineMessageStore.Record secondRecord = store.readNext();
+        assertEquals(1, secondRecord.getSequenceNumber());
+        assertArrayEquals(record(20, 2), secondRecord.getData());
+
+        assertNull(store.readNext());
+        assertFalse(store.hasUnreadRecords());
+    }
+
+    //Tests_SRS_OFFLINEMESSAGESTORE_12_007: [If the data is null or empty, the function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void appendThrowsIfDataEmpty() throws IOException
+    {
+        //arrange
+        OfflineMessageStore store = new OfflineMessageStore(createSettings());
+        store.open();
+
+        //act
+        store.append(new byte[0], 1);
+    }
+
+    //Tests_SRS_OFFLINEMESSAGESTORE_12_008: [If the record does not fit in a segment, the function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void appendThrowsIfRecordLargerThanSegment() throws IOException
+    {
+        //arrange
+        OfflineMessageStore store = new OfflineMessageStore(createSettings());
+        store.open();
+
+        //act
+        store.append(new byte[SEGMENT_SIZE], 1);
+    }
+
+    @Test (expected = IllegalStateException.class)
+    public void appendThrowsIfNotOpen() throws IOException
+    {
+        //arrange
+        OfflineMessageStore store = new OfflineMessageStore(createSettings());
+
+        //act
+        store.append(record(10, 1), 1);
+    }
+
+    //Tests_SRS_OFFLINEMESSAGESTORE_12_003: [The function shall read the checkpoint from the checkpoint file, creating it if needed.]
+    //Tests_SRS_OFFLINEMESSAGESTORE_12_006: [The function shall flush the pending writes and the checkpoint to the disk.]
+    //Tests_SRS_OFFLINEMESSAGESTORE_12_013: [The function shall move the checkpoint past the completed records
+    // that are not preceded by a record that is not completed.]
+    @Test
+    public void recordsNotCompletedAreReadAgainAfterReopen() throws IOException
+    {
+        //arrange
+        OfflineMessageStoreSettings settings = createSettings();
+        OfflineMessageStore store = new OfflineMessageStore(settings);
+        store.open();
+        for (int i = 0; i < 4; i++)
+        {
+            store.append(record(10, i), i);
+        }
+
+        for (int i = 0; i < 4; i++)
+        {
+            store.readNext();
+        }
+
+        // record 1 is still waiting for an acknowledgement, so records 2 and 3 stay on disk too
+        store.complete(0);
+        store.complete(2);
+        store.complete(3);
+
+        //act
+        store.close();
+        OfflineMessageStore reopenedStore = new OfflineMessageStore(settings);
+        reopenedStore.open();
+
+        //assert
+        assertEquals(1, reopenedStore.readNext().getSequenceNumber());
+        assertEquals(2, reopenedStore.readNext().getSequenceNumber());
+        assertEquals(3, reopenedStore.readNext().getSequenceNumber());
+        assertNull(reopenedStore.readNext());
+        assertEquals(4, reopenedStore.append(record(10, 4), 4));
+    }
+
+    @Test
+    public void completedRecordsAreNotReadAfterReopen() throws IOException
+    {
+        //arrange
+        OfflineMessageStoreSettings settings = createSettings();
+        OfflineMessageStore store = new OfflineMessageStore(settings);
+        store.open();
+        store.append(record(10, 0), 0);
+        store.append(record(10, 1), 1);
+        store.readNext();
+        store.readNext();
+        store.complete(1);
+        store.complete(0);
+
+        //act
+        store.close();
+        OfflineMessageStore reopenedStore = new OfflineMessageStore(settings);
+        reopenedStore.open();
+
+        //assert
+        assertFalse(reopenedStore.hasUnreadRecords());
+        assertNull(reopenedStore.readNext());
+        assertEquals(2, reopenedStore.append(record(10, 2), 2));
+    }
+
+    //Tests_SRS_OFFLINEMESSAGESTORE_12_012: [At the end of a segment, or at a record that is not valid, the
+    // function shall continue with the next segment.]
+    //Tests_SRS_OFFLINEMESSAGESTORE_12_014: [The function shall delete the segments behind the checkpoint.]
+    @Test
+    public void readContinuesInNextSegmentAndCompletedSegmentsAreDeleted() throws IOException
+    {
+        //arrange
+        OfflineMessageStoreSettings settings = createSettings();
+        OfflineMessageStore store = new OfflineMessageStore(settings);
+        store.open();
+
+        // three records fit in a segment
+        for (int i = 0; i < 7; i++)
+        {
+            store.append(record(LARGE_RECORD_SIZE, i), i);
+        }
+
+        assertEquals(3, segmentFiles(settings).length);
+
+        //act
+        for (int i = 0; i < 7; i++)
+        {
+            OfflineMessageStore.Record record = store.readNext();
+            assertEquals(i, record.getSequenceNumber());
+            assertArrayEquals(record(LARGE_RECORD_SIZE, i), record.getData());
+            if (i < 6)
+            {
+                store.complete(i);
+            }
+        }
+
+        //assert
+        File[] segments = segmentFiles(settings);
+        assertEquals(1, segments.length);
+        assertEquals(String.format("%020d.segment", 6), segments[0].getName());
+    }
+
+    //Tests_SRS_OFFLINEMESSAGESTORE_12_014: [The function shall delete the segments behind the checkpoint.]
+    @Test
+    public void readContinuesWhenSegmentBeingReadIsNoLongerWritten() throws IOException
+    {
+        //arrange
+        OfflineMessageStoreSettings settings = createSettings();
+        OfflineMessageStore store = new OfflineMessageStore(settings);
+        store.open();
+        store.append(record(LARGE_RECORD_SIZE, 0), 0);
+        store.append(record(LARGE_RECORD_SIZE, 1), 1);
+        assertEquals(0, store.readNext().getSequenceNumber());
+
+        //act
+        // the segment being read is full after the third record, the fourth one starts a new segment
+        store.append(record(LARGE_RECORD_SIZE, 2), 2);
+        store.append(record(LARGE_RECORD_SIZE, 3), 3);
+
+        //assert
+        store.complete(0);
+        for (int i = 1; i < 4; i++)
+        {
+            OfflineMessageStore.Record record = store.readNext();
+            assertEquals(i, record.getSequenceNumber());
+            assertArrayEquals(record(LARGE_RECORD_SIZE, i), record.getData());
+            store.complete(i);
+        }
+
+        assertNull(store.readNext());
+        File[] segments = segmentFiles(settings);
+        assertEquals(1, segments.length);
+        assertEquals(String.format("%020d.segment", 3), segments[0].getName());
+        store.close();
+    }
+
+    //Tests_SRS_OFFLINEMESSAGESTORE_12_004: [The function shall delete the segments whose records are all behind the checkpoint.]
+    @Test
+    public void openDeletesCompletedSegments() throws IOException
+    {
+        //arrange
+        OfflineMessageStoreSettings settings = createSettings();
+        OfflineMessageStore store = new OfflineMessageStore(settings);
+        store.open();
+        for (int i = 0; i < 4; i++)
+        {
+            store.append(record(LARGE_RECORD_SIZE, i), i);
+        }
+
+        for (int i = 0; i < 4; i++)
+        {
+            store.readNext();
+            store.complete(i);
+        }
+
+        store.close();
+
+        //act
+        OfflineMessageStore reopenedStore = new OfflineMessageStore(settings);
+        reopenedStore.open();
+
+        //assert
+        assertEquals(0, segmentFiles(settings).length);
+        assertEquals(4, reopenedStore.getFirstRetainedSequenceNumber());
+    }
+
+    @Test
+    public void dropOldestEvictsOldestSegmentWhenFull() throws IOException
+    {
+        //arrange
+        OfflineMessageStoreSettings settings = createSettings();
+        settings.setMaxStoreSizeBytes(2 * SEGMENT_SIZE);
+        OfflineMessageStore store = new OfflineMessageStore(settings);
+        store.open();
+
+        //act
+        for (int i = 0; i < 7; i++)
+        {
+            assertEquals(i, store.append(record(LARGE_RECORD_SIZE, i), i));
+        }
+
+        //assert
+        assertEquals(2, segmentFiles(settings).length);
+        assertEquals(3, store.getFirstRetainedSequenceNumber());
+        assertEquals(3, store.readNext().getSequenceNumber());
+    }
+
+    //Tests_SRS_OFFLINEMESSAGESTORE_12_009: [If the store is full and the policy is REJECT_NEWEST, the function shall return -1.]
+    @Test
+    public void rejectNewestReturnsMinusOneWhenFull() throws IOException
+    {
+        //arrange
+        OfflineMessageStoreSettings settings = createSettings();
+        settings.setMaxStoreSizeBytes(2 * SEGMENT_SIZE);
+        settings.setEvictionPolicy(OfflineMessageStoreSettings.EvictionPolicy.REJECT_NEWEST);
+        OfflineMessageStore store = new OfflineMessageStore(settings);
+        store.open();
+        for (int i = 0; i < 6; i++)
+        {
+            store.append(record(LARGE_RECORD_SIZE, i), i);
+        }
+
+        //act
+        long sequenceNumber = store.append(record(LARGE_RECORD_SIZE, 6), 6);
+
+        //assert
+        assertEquals(-1, sequenceNumber);
+        assertEquals(0, store.getFirstRetainedSequenceNumber());
+
+        // completing the first segment makes room again
+        for (int i = 0; i < 3; i++)
+        {
+            store.readNext();
+            store.complete(i);
+        }
+
+        assertEquals(6, store.append(record(LARGE_RECORD_SIZE, 6), 6));
+    }
+
+    //Tests_SRS_OFFLINEMESSAGESTORE_12_005: [The function shall scan the last segment to find the sequence number
+    // of the next record, ignoring a record torn by a crash. Appends always start a new segment.]
+    @Test
+    public void openIgnoresTornRecord() throws IOException
+    {
+        //arrange
+        OfflineMessageStoreSettings settings = createSettings();
+        OfflineMessageStore store = new OfflineMessageStore(settings);
+        store.open();
+        store.append(record(10, 0), 0);
+        store.append(record(10, 1), 1);
+        store.append(record(10, 2), 2);
+        store.close();
+
+        // corrupt the data of the last record, as if the process stopped while writing it
+        RandomAccessFile segment = new RandomAccessFile(segmentFiles(settings)[0], "rw");
+        segment.seek(2 * (24 + 10) + 24);
+        segment.write(42);
+        segment.close();
+
+        //act
+        OfflineMessageStore reopenedStore = new OfflineMessageStore(settings);
+        reopenedStore.open();
+
+        //assert
+        assertEquals(0, reopenedStore.readNext().getSequenceNumber());
+        assertEquals(1, reopenedStore.readNext().getSequenceNumber());
+        assertNull(reopenedStore.readNext());
+        assertEquals(2, reopenedStore.append(record(10, 3), 3));
+        OfflineMessageStore.Record record = reopenedStore.readNext();
+        assertEquals(2, record.getSequenceNumber());
+        assertArrayEquals(record(10, 3), record.getData());
+    }
+}
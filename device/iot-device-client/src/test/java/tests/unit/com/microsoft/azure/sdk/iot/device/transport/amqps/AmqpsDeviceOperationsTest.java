@@ -24,6 +24,7 @@ import org.junit.Test;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Queue;
 import java.util.UUID;
 
 import static junit.framework.TestCase.assertFalse;
@@ -537,6 +538,7 @@ public class AmqpsDeviceOperationsTest
         final int length = 1;
         final byte[] deliveryTag = new byte[1];
         Deencapsulation.setField(amqpsDeviceOperations, "senderLink", mockSender);
+        Deencapsulation.setField(amqpsDeviceOperations, "senderLinkCredit", 1);
 
         new NonStrictExpectations()
         {
@@ -583,6 +585,7 @@ public class AmqpsDeviceOperationsTest
         final int length = 1;
         final byte[] deliveryTag = new byte[1];
         Deencapsulation.setField(amqpsDeviceOperations, "senderLink", mockSender);
+        Deencapsulation.setField(amqpsDeviceOperations, "senderLinkCredit", 1);
 
         new NonStrictExpectations()
         {
@@ -612,6 +615,186 @@ public class AmqpsDeviceOperationsTest
         };
     }
 
+    /*
+    **Tests_SRS_AMQPSDEVICEOPERATIONS_12_048: [If the sender link has no credit, or other messages are already waiting for credit, the function shall copy the message data to the local queue of the link and return a successful AmqpsSendReturnValue with the hash of the queued message.]
+    */
+    @Test
+    public void sendMessageAndGetDeliveryHashQueuesWithoutCredit()
+    {
+        //arrange
+        AmqpsDeviceOperations amqpsDeviceOperations = Deencapsulation.newInstance(AmqpsDeviceOperations.class, mockDeviceClientConfig, "", "", "", "", "", "");
+        final byte[] msgData = new byte[] {1, 2, 3};
+        final byte[] deliveryTag = new byte[1];
+        Deencapsulation.setField(amqpsDeviceOperations, "senderLink", mockSender);
+        Deencapsulation.setField(amqpsDeviceOperations, "senderLinkCredit", 0);
+
+        //act
+        AmqpsSendReturnValue amqpsSendReturnValue = Deencapsulation.invoke(amqpsDeviceOperations, "sendMessageAndGetDeliveryHash", MessageType.DEVICE_TELEMETRY, msgData, 0, 2, deliveryTag);
+
+        //assert
+        boolean deliverySuccessful = Deencapsulation.invoke(amqpsSendReturnValue, "isDeliverySuccessful");
+        int deliveryHash = Deencapsulation.invoke(amqpsSendReturnValue, "getDeliveryHash");
+        assertTrue(deliverySuccessful);
+        assertTrue(deliveryHash != -1);
+        new Verifications()
+        {
+            {
+                mockSender.delivery((byte[]) any);
+                times = 0;
+                mockSender.send((byte[]) any, anyInt, anyInt);
+                times = 0;
+            }
+        };
+    }
+
+    /*
+    **Tests_SRS_AMQPSDEVICEOPERATIONS_12_048: [If the sender link has no credit, or other messages are already waiting for credit, the function shall copy the message data to the local queue of the link and return a successful AmqpsSendReturnValue with the hash of the queued message.]
+    */
+    @Test
+    public void sendMessageAndGetDeliveryHashQueuesBehindWaitingMessages()
+    {
+        //arrange
+        AmqpsDeviceOperations amqpsDeviceOperations = Deencapsulation.newInstance(AmqpsDeviceOperations.class, mockDeviceClientConfig, "", "", "", "", "", "");
+        final byte[] deliveryTag = new byte[1];
+        Deencapsulation.setField(amqpsDeviceOperations, "senderLink", mockSender);
+        Deencapsulation.setField(amqpsDeviceOperations, "senderLinkCredit", 0);
+        Deencapsulation.invoke(amqpsDeviceOperations, "sendMessageAndGetDeliveryHash", MessageType.DEVICE_TELEMETRY, new byte[1], 0, 1, deliveryTag);
+        Deencapsulation.setField(amqpsDeviceOperations, "senderLinkCredit", 10);
+
+        //act
+        Deencapsulation.invoke(amqpsDeviceOperations, "sendMessageAndGetDeliveryHash", MessageType.DEVICE_TELEMETRY, new byte[1], 0, 1, deliveryTag);
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockSender.send((byte[]) any, anyInt, anyInt);
+                times = 0;
+            }
+        };
+    }
+
+    /*
+    **Tests_SRS_AMQPSDEVICEOPERATIONS_12_049: [The function shall return false if the link is not the sender link of this operation.]
+    */
+    @Test
+    public void onLinkFlowReturnsFalseForOtherLink()
+    {
+        //arrange
+        AmqpsDeviceOperations amqpsDeviceOperations = Deencapsulation.newInstance(AmqpsDeviceOperations.class, mockDeviceClientConfig, "", "", "", "", "", "");
+        Deencapsulation.setField(amqpsDeviceOperations, "senderLink", mockSender);
+        Deencapsulation.setField(amqpsDeviceOperations, "senderLinkTag", "sender");
+        new NonStrictExpectations()
+        {
+            {
+                mockLink.getName();
+                result = "receiver";
+                mockLink.getCredit();
+                result = 10;
+            }
+        };
+
+        //act
+        boolean isSenderLink = Deencapsulation.invoke(amqpsDeviceOperations, "onLinkFlow", mockLink);
+
+        //assert
+        assertFalse(isSenderLink);
+        assertEquals(0, (int) Deencapsulation.getField(amqpsDeviceOperations, "senderLinkCredit"));
+    }
+
+    /*
+    **Tests_SRS_AMQPSDEVICEOPERATIONS_12_050: [The function shall save the credit of the link.]
+    **Tests_SRS_AMQPSDEVICEOPERATIONS_12_051: [The function shall send the queued messages in order while the link has credit, tagging each delivery with the hash returned when the message was queued.]
+    */
+    @Test
+    public void onLinkFlowSendsQueuedMessagesWithinCredit()
+    {
+        //arrange
+        AmqpsDeviceOperations amqpsDeviceOperations = Deencapsulation.newInstance(AmqpsDeviceOperations.class, mockDeviceClientConfig, "", "", "", "", "", "");
+        final byte[] firstTag = new byte[] {1};
+        final byte[] secondTag = new byte[] {2};
+        final byte[] thirdTag = new byte[] {3};
+        Deencapsulation.setField(amqpsDeviceOperations, "senderLink", mockSender);
+        Deencapsulation.setField(amqpsDeviceOperations, "senderLinkTag", "sender");
+        AmqpsSendReturnValue first = Deencapsulation.invoke(amqpsDeviceOperations, "sendMessageAndGetDeliveryHash", MessageType.DEVICE_TELEMETRY, new byte[] {7, 8}, 0, 2, firstTag);
+        final int firstHash = Deencapsulation.invoke(first, "getDeliveryHash");
+        Deencapsulation.invoke(amqpsDeviceOperations, "sendMessageAndGetDeliveryHash", MessageType.DEVICE_TELEMETRY, new byte[1], 0, 1, secondTag);
+        Deencapsulation.invoke(amqpsDeviceOperations, "sendMessageAndGetDeliveryHash", MessageType.DEVICE_TELEMETRY, new byte[1], 0, 1, thirdTag);
+        new NonStrictExpectations()
+        {
+            {
+                mockLink.getName();
+                result = "sender";
+                mockLink.getCredit();
+                result = 2;
+                mockSender.delivery((byte[]) any);
+                result = mockDelivery;
+            }
+        };
+
+        //act
+        boolean isSenderLink = Deencapsulation.invoke(amqpsDeviceOperations, "onLinkFlow", mockLink);
+
+        //assert
+        assertTrue(isSenderLink);
+        assertEquals(0, (int) Deencapsulation.getField(amqpsDeviceOperations, "senderLinkCredit"));
+        new Verifications()
+        {
+            {
+                mockSender.delivery(firstTag);
+                times = 1;
+                mockDelivery.setContext(firstHash);
+                times = 1;
+                mockSender.send(new byte[] {7, 8}, 0, 2);
+                times = 1;
+                mockSender.delivery(secondTag);
+                times = 1;
+                mockSender.delivery(thirdTag);
+                times = 0;
+                mockSender.advance();
+                times = 2;
+            }
+        };
+    }
+
+    /*
+    **Tests_SRS_AMQPSDEVICEOPERATIONS_12_052: [The function shall drop the messages waiting for link credit, since they are sent again after reconnection.]
+    */
+    @Test
+    public void closeLinksDropsQueuedMessages()
+    {
+        //arrange
+        AmqpsDeviceOperations amqpsDeviceOperations = Deencapsulation.newInstance(AmqpsDeviceOperations.class, mockDeviceClientConfig, "", "", "", "", "", "");
+        Deencapsulation.setField(amqpsDeviceOperations, "senderLink", mockSender);
+        Deencapsulation.invoke(amqpsDeviceOperations, "sendMessageAndGetDeliveryHash", MessageType.DEVICE_TELEMETRY, new byte[1], 0, 1, new byte[1]);
+
+        //act
+        Deencapsulation.invoke(amqpsDeviceOperations, "closeLinks");
+
+        //assert
+        Queue pendingDeliveries = Deencapsulation.getField(amqpsDeviceOperations, "pendingDeliveries");
+        assertTrue(pendingDeliveries.isEmpty());
+    }
+
+    @Test
+    public void getDeliveryHashPrefersHashOfQueuedMessage()
+    {
+        //arrange
+        new NonStrictExpectations()
+        {
+            {
+                mockDelivery.getContext();
+                result = 1234;
+            }
+        };
+
+        //act
+        int deliveryHash = Deencapsulation.invoke(AmqpsDeviceOperations.class, "getDeliveryHash", mockDelivery);
+
+        //assert
+        assertEquals(1234, deliveryHash);
+    }
+
     /*
     **Tests_SRS_AMQPSDEVICEOPERATIONS_12_036: [**The function shall throw IllegalArgumentException if the linkName is empty.**]**
     */
@@ -955,8 +955,7 @@ public class AmqpsIotHubConnectionTest {
         };
     }
 
-    // Tests_SRS_AMQPSIOTHUBCONNECTION_15_015: [If the state of the connection is DISCONNECTED or there is not enough
-    // credit, the function shall return -1.]
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_15_015: [If the state of the connection is DISCONNECTED, the function shall return -1.]
     @Test
     public void sendMessageDoesNothingIfConnectionIsClosed() throws TransportException
     {
@@ -965,7 +964,6 @@ public class AmqpsIotHubConnectionTest {
         final AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig, mockScheduledExecutorService);
 
         Deencapsulation.setField(connection, "state", IotHubConnectionStatus.DISCONNECTED);
-        Deencapsulation.setField(connection, "linkCredit", 100);
 
         Integer expectedDeliveryHash = -1;
         Integer actualDeliveryHash = Deencapsulation.invoke(connection, "sendMessage", Message.Factory.create(), MessageType.DEVICE_TELEMETRY, "someDeviceId");
@@ -973,22 +971,27 @@ public class AmqpsIotHubConnectionTest {
         assertEquals(expectedDeliveryHash, actualDeliveryHash);
     }
 
-    // Tests_SRS_AMQPSIOTHUBCONNECTION_15_015: [If the state of the connection is DISCONNECTED or there is not enough
-    // credit, the function shall return -1.]
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_15_015: [If the state of the connection is DISCONNECTED, the function shall return -1.]
     @Test
-    public void sendMessageDoesNothingIfNotEnoughLinkCredit() throws TransportException
+    public void sendMessageDoesNotCheckLinkCreditOfConnection() throws TransportException
     {
         baseExpectations();
 
-        final AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig, mockScheduledExecutorService);
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockAmqpsSessionManager, "sendMessage", new Class[] {Message.class, MessageType.class, String.class}, mockProtonMessage, MessageType.DEVICE_TELEMETRY, "someDeviceId");
+                result = 42;
+            }
+        };
 
+        final AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig, mockScheduledExecutorService);
+        Deencapsulation.setField(connection, "amqpsSessionManager", mockAmqpsSessionManager);
         Deencapsulation.setField(connection, "state", IotHubConnectionStatus.CONNECTED);
-        Deencapsulation.setField(connection, "linkCredit", -1);
 
-        Integer expectedDeliveryHash = -1;
-        Integer actualDeliveryHash = Deencapsulation.invoke(connection, "sendMessage", Message.Factory.create(), MessageType.DEVICE_TELEMETRY, "someDeviceId");
+        Integer actualDeliveryHash = Deencapsulation.invoke(connection, "sendMessage", mockProtonMessage, MessageType.DEVICE_TELEMETRY, "someDeviceId");
 
-        assertEquals(expectedDeliveryHash, actualDeliveryHash);
+        assertEquals(42, (int) actualDeliveryHash);
     }
 
     // Tests_SRS_AMQPSIOTHUBCONNECTION_12_024: [The function shall call AmqpsSessionManager.sendMessage with the given parameters.]
@@ -1016,7 +1019,6 @@ public class AmqpsIotHubConnectionTest {
         final AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig, mockScheduledExecutorService);
         Deencapsulation.setField(connection, "amqpsSessionManager", mockAmqpsSessionManager);
         Deencapsulation.setField(connection, "state", IotHubConnectionStatus.CONNECTED);
-        Deencapsulation.setField(connection, "linkCredit", 100);
 
         // act
         Integer actualDeliveryHash = Deencapsulation.invoke(connection, "sendMessage", mockProtonMessage, MessageType.DEVICE_TELEMETRY, "someDeviceId");
@@ -1857,7 +1859,7 @@ public class AmqpsIotHubConnectionTest {
         assertNotNull(savedException);
     }
 
-    // Tests_SRS_AMQPSIOTHUBCONNECTION_15_040: [The event handler shall save the remaining link credit.]
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_15_040: [The event handler shall call AmqpsSessionManager.onLinkFlow with the link, which saves its credit and sends the messages waiting for it.]
     @Test
     public void onLinkFlow() throws TransportException
     {
@@ -1874,19 +1876,13 @@ public class AmqpsIotHubConnectionTest {
         };
 
         final AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig, mockScheduledExecutorService);
+        Deencapsulation.setField(connection, "amqpsSessionManager", mockAmqpsSessionManager);
         connection.onLinkFlow(mockEvent);
 
-        Integer expectedLinkCredit = 100;
-        Integer actualLinkCredit = Deencapsulation.getField(connection, "linkCredit");
-
-        assertEquals(expectedLinkCredit, actualLinkCredit);
-
         new Verifications()
         {
             {
-                mockEvent.getLink();
-                times = 1;
-                mockSender.getCredit();
+                Deencapsulation.invoke(mockAmqpsSessionManager, "onLinkFlow", new Class[] {Link.class}, mockSender);
                 times = 1;
             }
         };
@@ -2114,6 +2110,111 @@ public class AmqpsIotHubConnectionTest {
         assertEquals(IotHubStatusCode.getIotHubStatusCode(expectedErrorCode), savedException.getStatusCode());
     }
 
+    //Tests_SRS_AMQPSIOTHUBCONNECTION_12_079: [If the link was closed locally, the function shall do nothing, since the remote close only confirms the local one.]
+    @Test
+    public void onLinkRemoteCloseIgnoresLocallyClosedLink() throws TransportException
+    {
+        final StringBuilder methodsCalled = new StringBuilder();
+        new MockUp<AmqpsIotHubConnection>()
+        {
+            @Mock void scheduleReconnection(Throwable throwable)
+            {
+                methodsCalled.append("scheduleReconnection");
+            }
+        };
+        baseExpectations();
+        final AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig, mockScheduledExecutorService);
+        Deencapsulation.setField(connection, "state", IotHubConnectionStatus.CONNECTED);
+        new NonStrictExpectations()
+        {
+            {
+                mockEvent.getLink();
+                result = mockLink;
+                mockLink.getLocalState();
+                result = EndpointState.CLOSED;
+            }
+        };
+
+        //act
+        connection.onLinkRemoteClose(mockEvent);
+
+        //assert
+        assertEquals("", methodsCalled.toString());
+        assertEquals(IotHubConnectionStatus.CONNECTED, Deencapsulation.getField(connection, "state"));
+    }
+
+    //Tests_SRS_AMQPSIOTHUBCONNECTION_12_075: [The function shall throw IllegalArgumentException if the deviceClientConfig parameter is null.]
+    @Test (expected = IllegalArgumentException.class)
+    public void openDeviceOperationSessionThrowsForNullConfig() throws TransportException
+    {
+        //arrange
+        baseExpectations();
+        AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig, mockScheduledExecutorService);
+        Deencapsulation.setField(connection, "state", IotHubConnectionStatus.CONNECTED);
+
+        //act
+        connection.openDeviceOperationSession(null);
+    }
+
+    //Tests_SRS_AMQPSIOTHUBCONNECTION_12_076: [The function shall throw IllegalStateException if the connection is not open.]
+    @Test (expected = IllegalStateException.class)
+    public void openDeviceOperationSessionThrowsIfNotConnected() throws TransportException
+    {
+        //arrange
+        baseExpectations();
+        AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig, mockScheduledExecutorService);
+        Deencapsulation.setField(connection, "state", IotHubConnectionStatus.DISCONNECTED);
+
+        //act
+        connection.openDeviceOperationSession(mockConfig);
+    }
+
+    //Tests_SRS_AMQPSIOTHUBCONNECTION_12_077: [The function shall call AmqpsSessionManager.openDeviceOperationSession with the given deviceClientConfig.]
+    @Test
+    public void openDeviceOperationSessionCallsSessionManager() throws TransportException
+    {
+        //arrange
+        baseExpectations();
+        AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig, mockScheduledExecutorService);
+        Deencapsulation.setField(connection, "state", IotHubConnectionStatus.CONNECTED);
+        Deencapsulation.setField(connection, "amqpsSessionManager", mockAmqpsSessionManager);
+
+        //act
+        connection.openDeviceOperationSession(mockConfig);
+
+        //assert
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(mockAmqpsSessionManager, "openDeviceOperationSession", mockConfig);
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_AMQPSIOTHUBCONNECTION_12_078: [The function shall return the result of AmqpsSessionManager.closeDeviceOperationSession with the given deviceId.]
+    @Test
+    public void closeDeviceOperationSessionCallsSessionManager() throws TransportException
+    {
+        //arrange
+        baseExpectations();
+        AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig, mockScheduledExecutorService);
+        Deencapsulation.setField(connection, "amqpsSessionManager", mockAmqpsSessionManager);
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockAmqpsSessionManager, "closeDeviceOperationSession", "someDevice");
+                result = true;
+            }
+        };
+
+        //act
+        boolean closed = connection.closeDeviceOperationSession("someDevice");
+
+        //assert
+        assertTrue(closed);
+    }
+
     // Tests_SRS_AMQPSTRANSPORT_34_068: [If the provided message is saved in the saved map of messages to acknowledge, and if the provided result is ABANDON, this function shall send the amqp ack with ABANDON.]
     // Tests_SRS_AMQPSTRANSPORT_34_071: [If the amqp message is acknowledged, this function shall remove it from the saved map of messages to acknowledge and return true.]
     @Test
@@ -2368,7 +2469,6 @@ public class AmqpsIotHubConnectionTest {
         final int expectedHash = 40;
         AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig, mockScheduledExecutorService);
         Deencapsulation.setField(connection, "state", IotHubConnectionStatus.CONNECTED);
-        Deencapsulation.setField(connection, "linkCredit", 20);
         new NonStrictExpectations()
         {
             {
@@ -2413,7 +2513,6 @@ public class AmqpsIotHubConnectionTest {
         final int expectedHash = -1;
         AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig, mockScheduledExecutorService);
         Deencapsulation.setField(connection, "state", IotHubConnectionStatus.CONNECTED);
-        Deencapsulation.setField(connection, "linkCredit", 20);
         new NonStrictExpectations()
         {
             {
@@ -12,7 +12,6 @@ import org.apache.qpid.proton.engine.Link;
 import org.apache.qpid.proton.engine.Session;
 import org.junit.Test;
 
-import java.nio.BufferOverflowException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -102,23 +101,33 @@ public class AmqpsSessionDeviceOperationTest
     @Mocked
     List<UUID> mockListUUID;
 
+    private final AmqpsEncodeBuffer encodeBuffer = new AmqpsEncodeBuffer();
 
-    // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_001: [The constructor shall throw IllegalArgumentException if the deviceClientConfig or the amqpsDeviceAuthentication parameter is null.]
+    // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_001: [The constructor shall throw IllegalArgumentException if the deviceClientConfig, the amqpsDeviceAuthentication or the encodeBuffer parameter is null.]
     @Test (expected = IllegalArgumentException.class)
     public void constructorThrowsIfDeviceClientIsNull() throws IllegalArgumentException, TransportException
     {
         // arrange
         // act
-        new AmqpsSessionDeviceOperation(null, mockAmqpsDeviceAuthentication);
+        new AmqpsSessionDeviceOperation(null, mockAmqpsDeviceAuthentication, encodeBuffer);
     }
 
-    // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_001: [The constructor shall throw IllegalArgumentException if the deviceClientConfig or the amqpsDeviceAuthentication parameter is null.]
+    // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_001: [The constructor shall throw IllegalArgumentException if the deviceClientConfig, the amqpsDeviceAuthentication or the encodeBuffer parameter is null.]
     @Test (expected = IllegalArgumentException.class)
     public void constructorThrowsIfAmqpsDeviceAuthenticationIsNull() throws IllegalArgumentException, TransportException
     {
         // arrange
         // act
-        new AmqpsSessionDeviceOperation(mockDeviceClientConfig, null);
+        new AmqpsSessionDeviceOperation(mockDeviceClientConfig, null, encodeBuffer);
+    }
+
+    // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_001: [The constructor shall throw IllegalArgumentException if the deviceClientConfig, the amqpsDeviceAuthentication or the encodeBuffer parameter is null.]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsIfEncodeBufferIsNull() throws IllegalArgumentException, TransportException
+    {
+        // arrange
+        // act
+        new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication, null);
     }
 
     // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_002: [The constructor shall save the deviceClientConfig and amqpsDeviceAuthentication parameter value to a member variable.]
@@ -128,7 +137,7 @@ public class AmqpsSessionDeviceOperationTest
     public void constructorSuccessSAS() throws IllegalArgumentException, TransportException
     {
         // act
-        AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthenticationCBS);
+        AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthenticationCBS, encodeBuffer);
 
         // assert
         DeviceClientConfig actualDeviceClientConfig = Deencapsulation.getField(amqpsSessionDeviceOperation, "deviceClientConfig");
@@ -184,7 +193,7 @@ public class AmqpsSessionDeviceOperationTest
         };
 
         // act
-        AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthenticationCBS);
+        AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthenticationCBS, encodeBuffer);
 
         // assert
         DeviceClientConfig actualDeviceClientConfig = Deencapsulation.getField(amqpsSessionDeviceOperation, "deviceClientConfig");
@@ -219,7 +228,7 @@ public class AmqpsSessionDeviceOperationTest
     public void close() throws TransportException
     {
         // arrange
-        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
+        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication, encodeBuffer);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "deviceClientConfig", mockDeviceClientConfig);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "taskSchedulerTokenRenewal", mockScheduledExecutorService);
 
@@ -249,7 +258,7 @@ public class AmqpsSessionDeviceOperationTest
     {
         // arrange
         final int MAX_WAIT_TO_AUTHENTICATE = 10*1000;
-        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
+        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication, encodeBuffer);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "deviceClientConfig", mockDeviceClientConfig);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "authenticationLatch", mockCountDownLatch);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "cbsCorrelationIdList", mockListUUID);
@@ -289,7 +298,7 @@ public class AmqpsSessionDeviceOperationTest
     {
         // arrange
         final int MAX_WAIT_TO_AUTHENTICATE = 10*1000;
-        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
+        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication, encodeBuffer);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "authenticationLatch", mockCountDownLatch);
 
         new NonStrictExpectations()
@@ -313,7 +322,7 @@ public class AmqpsSessionDeviceOperationTest
         // arrange
         final long tokenValidSecs = 3600;
         final long expectedRenewalTimeMillisecs = 2700 * 1000;
-        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
+        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication, encodeBuffer);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "amqpsAuthenticatorState", AmqpsDeviceAuthenticationState.AUTHENTICATED);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "taskSchedulerTokenRenewal", mockScheduledExecutorService);
 
@@ -351,7 +360,7 @@ public class AmqpsSessionDeviceOperationTest
     public void getAmqpsAuthenticatorState() throws TransportException
     {
         // arrange
-        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
+        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication, encodeBuffer);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "amqpsAuthenticatorState", AmqpsDeviceAuthenticationState.UNKNOWN);
 
         // act
@@ -366,7 +375,7 @@ public class AmqpsSessionDeviceOperationTest
     public void operationLinksOpenedTrue() throws IllegalArgumentException, TransportException
     {
         // arrange
-        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
+        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication, encodeBuffer);
         ArrayList<AmqpsDeviceOperations> operationList = new ArrayList<>();
         operationList.add(mockAmqpsDeviceTelemetry);
         operationList.add(mockAmqpsDeviceMethods);
@@ -398,7 +407,7 @@ public class AmqpsSessionDeviceOperationTest
     public void operationLinksOpenedFalse() throws IllegalArgumentException, TransportException
     {
         // arrange
-        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
+        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication, encodeBuffer);
         ArrayList<AmqpsDeviceOperations> operationList = new ArrayList<>();
         operationList.add(mockAmqpsDeviceTelemetry);
         operationList.add(mockAmqpsDeviceMethods);
@@ -429,7 +438,7 @@ public class AmqpsSessionDeviceOperationTest
     public void openLinks() throws IllegalArgumentException, TransportException
     {
         // arrange
-        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
+        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication, encodeBuffer);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "amqpsAuthenticatorState", AmqpsDeviceAuthenticationState.AUTHENTICATED);
 
         // act
@@ -450,7 +459,7 @@ public class AmqpsSessionDeviceOperationTest
     public void closeLinks() throws IllegalArgumentException, TransportException
     {
         // arrange
-        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
+        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication, encodeBuffer);
 
         // act
         Deencapsulation.invoke(amqpsSessionDeviceOperation, "closeLinks");
@@ -470,7 +479,7 @@ public class AmqpsSessionDeviceOperationTest
     public void initLink() throws IllegalArgumentException, TransportException
     {
         // arrange
-        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
+        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication, encodeBuffer);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "amqpsAuthenticatorState", AmqpsDeviceAuthenticationState.AUTHENTICATED);
 
         // act
@@ -491,7 +500,7 @@ public class AmqpsSessionDeviceOperationTest
     public void sendMessageNotAuthenticated() throws IllegalArgumentException, TransportException
     {
         // arrange
-        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
+        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication, encodeBuffer);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "amqpsAuthenticatorState", AmqpsDeviceAuthenticationState.AUTHENTICATING);
 
         // act
@@ -506,7 +515,7 @@ public class AmqpsSessionDeviceOperationTest
     public void sendMessageDeviceIdMismatch() throws IllegalArgumentException, TransportException
     {
         // arrange
-        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
+        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication, encodeBuffer);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "amqpsAuthenticatorState", AmqpsDeviceAuthenticationState.AUTHENTICATED);
 
         new NonStrictExpectations()
@@ -534,7 +543,7 @@ public class AmqpsSessionDeviceOperationTest
     public void sendMessageNoDelivery() throws IllegalArgumentException, TransportException
     {
         // arrange
-        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
+        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication, encodeBuffer);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "amqpsAuthenticatorState", AmqpsDeviceAuthenticationState.AUTHENTICATED);
         final byte[] bytes = new byte[1024];
         new NonStrictExpectations()
@@ -579,7 +588,7 @@ public class AmqpsSessionDeviceOperationTest
     public void sendMessageSuccess() throws IllegalArgumentException, TransportException
     {
         // arrange
-        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
+        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication, encodeBuffer);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "amqpsAuthenticatorState", AmqpsDeviceAuthenticationState.AUTHENTICATED);
         final byte[] bytes = new byte[1024];
         new NonStrictExpectations()
@@ -616,47 +625,41 @@ public class AmqpsSessionDeviceOperationTest
         };
     }
 
-    // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_015: [The function shall doubles the buffer if encode throws BufferOverflowException.]
+    // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_014: [The function shall encode the message into the encode buffer of the connection.]
+    // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_015: [The function shall release the encode buffer once the message was sent.]
     @Test
-    public void sendMessageDoublesBufferIfEncodeThrowsBufferOverflowException() throws IllegalArgumentException, TransportException
+    public void sendMessageEncodesIntoConnectionEncodeBufferAndReleasesIt() throws IllegalArgumentException, TransportException
     {
         // arrange
-        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
+        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication, encodeBuffer);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "amqpsAuthenticatorState", AmqpsDeviceAuthenticationState.AUTHENTICATED);
-        final byte[] bytes = new byte[1024];
         new NonStrictExpectations()
         {
             {
-                mockIotHubConnectionString.getDeviceId();
-                result = "deviceId";
                 mockDeviceClientConfig.getDeviceId();
-                result = "deviceId";
-
-                mockProtonMessage.encode(bytes, anyInt, anyInt);
-                result = new BufferOverflowException();
-
-                Deencapsulation.invoke(mockAmqpsDeviceTelemetry, "sendMessageAndGetDeliveryHash", MessageType.DEVICE_TELEMETRY, bytes, anyInt, anyInt, bytes);
+                result = "someDeviceId";
+                Deencapsulation.invoke(mockAmqpsDeviceTelemetry, "sendMessageAndGetDeliveryHash", new Class[] {MessageType.class, byte[].class, int.class, int.class, byte[].class}, MessageType.DEVICE_TELEMETRY, any, anyInt, anyInt, any);
                 result = mockAmqpsSendReturnValue;
                 Deencapsulation.invoke(mockAmqpsSendReturnValue, "isDeliverySuccessful");
                 result = true;
-
-                mockDeviceClientConfig.getDeviceId();
-                result = "someDeviceId";
             }
         };
 
         // act
-        Integer actualDeliveryHash = Deencapsulation.invoke(amqpsSessionDeviceOperation, "sendMessage", mockProtonMessage, MessageType.DEVICE_TELEMETRY, "someDeviceId");
+        Deencapsulation.invoke(amqpsSessionDeviceOperation, "sendMessage", mockProtonMessage, MessageType.DEVICE_TELEMETRY, "someDeviceId");
+        Deencapsulation.invoke(amqpsSessionDeviceOperation, "sendMessage", mockProtonMessage, MessageType.DEVICE_TELEMETRY, "someDeviceId");
 
         // assert
-        assertTrue(actualDeliveryHash != -1);
+        assertNull(Deencapsulation.invoke(encodeBuffer, "getEncodedBytes"));
+        final List<byte[]> encodedBuffers = new ArrayList<>();
         new Verifications()
         {
             {
-                mockProtonMessage.encode(bytes, anyInt, anyInt);
-                times = 1;
+                mockProtonMessage.encode(withCapture(encodedBuffers), anyInt, anyInt);
+                times = 2;
             }
         };
+        assertSame(encodedBuffers.get(0), encodedBuffers.get(1));
     }
 
     // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_020: [The function shall return null if the state is not authenticated or authenticating.]
@@ -665,7 +668,7 @@ public class AmqpsSessionDeviceOperationTest
     {
         // arrange
         final String linkName = "linkName";
-        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
+        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication, encodeBuffer);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "amqpsAuthenticatorState", AmqpsDeviceAuthenticationState.NOT_AUTHENTICATED);
 
         new NonStrictExpectations()
@@ -689,7 +692,7 @@ public class AmqpsSessionDeviceOperationTest
     {
         // arrange
         final String linkName = "linkName";
-        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
+        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication, encodeBuffer);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "amqpsAuthenticatorState", AmqpsDeviceAuthenticationState.AUTHENTICATED);
 
         new NonStrictExpectations()
@@ -713,7 +716,7 @@ public class AmqpsSessionDeviceOperationTest
     {
         // arrange
         final String linkName = "linkName";
-        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
+        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication, encodeBuffer);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "amqpsAuthenticatorState", AmqpsDeviceAuthenticationState.AUTHENTICATED);
 
         new NonStrictExpectations()
@@ -749,7 +752,7 @@ public class AmqpsSessionDeviceOperationTest
         final Integer propertyValue = 200;
         final List<UUID> cbsCorrelationIdList = Collections.synchronizedList(new ArrayList<UUID>());
         cbsCorrelationIdList.add(mockUUID);
-        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
+        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication, encodeBuffer);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "amqpsAuthenticatorState", AmqpsDeviceAuthenticationState.AUTHENTICATING);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "amqpsDeviceAuthentication", mockAmqpsDeviceAuthentication);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "cbsCorrelationIdList", cbsCorrelationIdList);
@@ -797,7 +800,7 @@ public class AmqpsSessionDeviceOperationTest
         final String propertyKey = "status-code";
         final Integer propertyValue = 200;
         final List<UUID> cbsCorrelationIdList = Collections.synchronizedList(new ArrayList<UUID>());
-        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
+        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication, encodeBuffer);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "amqpsAuthenticatorState", AmqpsDeviceAuthenticationState.AUTHENTICATING);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "amqpsDeviceAuthentication", mockAmqpsDeviceAuthentication);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "cbsCorrelationIdList", cbsCorrelationIdList);
@@ -846,7 +849,7 @@ public class AmqpsSessionDeviceOperationTest
         final Integer propertyValue = 200;
         final List<UUID> cbsCorrelationIdList = Collections.synchronizedList(new ArrayList<UUID>());
         cbsCorrelationIdList.add(mockUUID);
-        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
+        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication, encodeBuffer);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "amqpsAuthenticatorState", AmqpsDeviceAuthenticationState.AUTHENTICATING);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "amqpsDeviceAuthentication", mockAmqpsDeviceAuthentication);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "cbsCorrelationIdList", cbsCorrelationIdList);
@@ -891,7 +894,7 @@ public class AmqpsSessionDeviceOperationTest
         final Integer propertyValue = 200;
         final List<UUID> cbsCorrelationIdList = Collections.synchronizedList(new ArrayList<UUID>());
         cbsCorrelationIdList.add(mockUUID);
-        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
+        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication, encodeBuffer);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "amqpsAuthenticatorState", AmqpsDeviceAuthenticationState.UNKNOWN);
         ArrayList<AmqpsDeviceOperations> operationList = new ArrayList<>();
         operationList.add(mockAmqpsDeviceTelemetry);
@@ -920,13 +923,61 @@ public class AmqpsSessionDeviceOperationTest
         };
     }
 
+    // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_064: [The function shall call onLinkFlow on the device operations and return true if any of them owns the link, false otherwise.]
+    @Test
+    public void onLinkFlowReturnsTrueIfOperationOwnsLink() throws TransportException
+    {
+        // arrange
+        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication, encodeBuffer);
+
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockAmqpsDeviceTelemetry, "onLinkFlow", mockLink);
+                result = true;
+            }
+        };
+
+        // act
+        Boolean isOwner = Deencapsulation.invoke(amqpsSessionDeviceOperation, "onLinkFlow", mockLink);
+
+        // assert
+        assertTrue(isOwner);
+    }
+
+    // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_064: [The function shall call onLinkFlow on the device operations and return true if any of them owns the link, false otherwise.]
+    @Test
+    public void onLinkFlowReturnsFalseIfNoOperationOwnsLink() throws TransportException
+    {
+        // arrange
+        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication, encodeBuffer);
+
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockAmqpsDeviceTelemetry, "onLinkFlow", mockLink);
+                result = false;
+                Deencapsulation.invoke(mockAmqpsDeviceMethods, "onLinkFlow", mockLink);
+                result = false;
+                Deencapsulation.invoke(mockAmqpsDeviceTwin, "onLinkFlow", mockLink);
+                result = false;
+            }
+        };
+
+        // act
+        Boolean isOwner = Deencapsulation.invoke(amqpsSessionDeviceOperation, "onLinkFlow", mockLink);
+
+        // assert
+        assertFalse(isOwner);
+    }
+
     // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_024: [The function shall return true if any of the operation's link name is a match and return false otherwise.]
     @Test
     public void isLinkFoundTrue() throws TransportException
     {
         // arrange
         final String linkName = "linkName";
-        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
+        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication, encodeBuffer);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "amqpsAuthenticatorState", AmqpsDeviceAuthenticationState.AUTHENTICATED);
 
         new NonStrictExpectations()
@@ -950,7 +1001,7 @@ public class AmqpsSessionDeviceOperationTest
     {
         // arrange
         final String linkName = "linkName";
-        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
+        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication, encodeBuffer);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "amqpsAuthenticatorState", AmqpsDeviceAuthenticationState.AUTHENTICATED);
 
         new NonStrictExpectations()
@@ -974,7 +1025,7 @@ public class AmqpsSessionDeviceOperationTest
     public void convertToProtonSuccess() throws IllegalArgumentException, InterruptedException, TransportException
     {
         // arrange
-        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
+        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication, encodeBuffer);
 
         new NonStrictExpectations()
         {
@@ -997,7 +1048,7 @@ public class AmqpsSessionDeviceOperationTest
     public void convertFromoProtonSuccess() throws IllegalArgumentException, TransportException
     {
         // arrange
-        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
+        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication, encodeBuffer);
 
         new NonStrictExpectations()
         {
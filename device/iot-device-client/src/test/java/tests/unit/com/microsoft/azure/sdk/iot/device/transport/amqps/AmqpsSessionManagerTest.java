@@ -9,6 +9,7 @@ import org.junit.Test;
 
 import javax.net.ssl.SSLContext;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
@@ -118,7 +119,7 @@ public class AmqpsSessionManagerTest
         AmqpsSessionManager amqpsSessionManager = new AmqpsSessionManager(mockDeviceClientConfig, mockScheduledExecutorService);
 
         // assert
-        ArrayList<AmqpsSessionDeviceOperation> actualList =  Deencapsulation.getField(amqpsSessionManager, "amqpsDeviceSessionList");
+        List<AmqpsSessionDeviceOperation> actualList =  Deencapsulation.getField(amqpsSessionManager, "amqpsDeviceSessionList");
         assertEquals(actualList.size(), 1);
     }
 
@@ -136,7 +137,7 @@ public class AmqpsSessionManagerTest
         AmqpsSessionManager amqpsSessionManager = new AmqpsSessionManager(mockDeviceClientConfig, mockScheduledExecutorService);
 
         // assert
-        ArrayList<AmqpsSessionDeviceOperation> actualList =  Deencapsulation.getField(amqpsSessionManager, "amqpsDeviceSessionList");
+        List<AmqpsSessionDeviceOperation> actualList =  Deencapsulation.getField(amqpsSessionManager, "amqpsDeviceSessionList");
         assertEquals(actualList.size(), 1);
 
         new Verifications()
@@ -160,13 +161,13 @@ public class AmqpsSessionManagerTest
         Deencapsulation.invoke(amqpsSessionManager, "addDeviceOperationSession", mockDeviceClientConfig);
 
         // assert
-        ArrayList<AmqpsSessionDeviceOperation> actualList =  Deencapsulation.getField(amqpsSessionManager, "amqpsDeviceSessionList");
+        List<AmqpsSessionDeviceOperation> actualList =  Deencapsulation.getField(amqpsSessionManager, "amqpsDeviceSessionList");
         assertEquals(actualList.size(), 2);
 
         new Verifications()
         {
             {
-                new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthenticationCBS);
+                new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthenticationCBS, (AmqpsEncodeBuffer) any);
                 times = 1;
             }
         };
@@ -203,7 +204,7 @@ public class AmqpsSessionManagerTest
         Deencapsulation.invoke(amqpsSessionManager, "closeNow");
 
         // assert
-        ArrayList<AmqpsSessionDeviceOperation> actualList =  Deencapsulation.getField(amqpsSessionManager, "amqpsDeviceSessionList");
+        List<AmqpsSessionDeviceOperation> actualList =  Deencapsulation.getField(amqpsSessionManager, "amqpsDeviceSessionList");
         assertEquals(2, actualList.size());
         Session actualSession =  Deencapsulation.getField(amqpsSessionManager, "session");
         assertNull(actualSession);
@@ -1155,6 +1156,246 @@ public class AmqpsSessionManagerTest
         assertTrue(result);
     }
 
+    // Tests_SRS_AMQPSESSIONMANAGER_12_044: [The function shall throw IllegalArgumentException if the deviceClientConfig parameter is null.]
+    @Test (expected = IllegalArgumentException.class)
+    public void openDeviceOperationSessionThrowsIfConfigIsNull() throws TransportException
+    {
+        // arrange
+        baseExpectationsSAS();
+        AmqpsSessionManager amqpsSessionManager = new AmqpsSessionManager(mockDeviceClientConfig, mockScheduledExecutorService);
+        Deencapsulation.setField(amqpsSessionManager, "session", mockSession);
+
+        // act
+        Deencapsulation.invoke(amqpsSessionManager, "openDeviceOperationSession", new Class[] {DeviceClientConfig.class}, (DeviceClientConfig) null);
+    }
+
+    // Tests_SRS_AMQPSESSIONMANAGER_12_045: [The function shall throw IllegalStateException if the session or the authentication is not open.]
+    @Test (expected = IllegalStateException.class)
+    public void openDeviceOperationSessionThrowsIfSessionIsNotOpen() throws TransportException
+    {
+        // arrange
+        baseExpectationsSAS();
+        AmqpsSessionManager amqpsSessionManager = new AmqpsSessionManager(mockDeviceClientConfig, mockScheduledExecutorService);
+        Deencapsulation.setField(amqpsSessionManager, "session", null);
+
+        // act
+        Deencapsulation.invoke(amqpsSessionManager, "openDeviceOperationSession", mockDeviceClientConfig);
+    }
+
+    // Tests_SRS_AMQPSESSIONMANAGER_12_046: [The function shall create a new AmqpsSessionDeviceOperation with the given deviceClientConfig and add it to the session list.]
+    // Tests_SRS_AMQPSESSIONMANAGER_12_047: [The function shall authenticate the new device and throw TransportException if it is not authenticated.]
+    // Tests_SRS_AMQPSESSIONMANAGER_12_048: [The function shall open the links of the new device and wait until they are open, or throw TransportException if they are not open in time.]
+    @Test
+    public void openDeviceOperationSessionAuthenticatesAndOpensLinks() throws TransportException
+    {
+        // arrange
+        baseExpectationsSAS();
+        AmqpsSessionManager amqpsSessionManager = new AmqpsSessionManager(mockDeviceClientConfig, mockScheduledExecutorService);
+        Deencapsulation.setField(amqpsSessionManager, "session", mockSession);
+        Deencapsulation.setField(amqpsSessionManager, "amqpsDeviceAuthentication", mockAmqpsDeviceAuthenticationCBS);
+        new NonStrictExpectations()
+        {
+            {
+                mockAmqpsDeviceAuthenticationCBS.operationLinksOpened();
+                result = true;
+                mockAmqpsSessionDeviceOperation.getAmqpsAuthenticatorState();
+                result = AmqpsDeviceAuthenticationState.AUTHENTICATED;
+                mockAmqpsSessionDeviceOperation.operationLinksOpened();
+                result = true;
+            }
+        };
+
+        // act
+        Deencapsulation.invoke(amqpsSessionManager, "openDeviceOperationSession", mockDeviceClientConfig);
+
+        // assert
+        List<AmqpsSessionDeviceOperation> actualList = Deencapsulation.getField(amqpsSessionManager, "amqpsDeviceSessionList");
+        assertEquals(2, actualList.size());
+        new Verifications()
+        {
+            {
+                mockAmqpsSessionDeviceOperation.authenticate();
+                times = 1;
+                Deencapsulation.invoke(mockAmqpsSessionDeviceOperation, "openLinks", mockSession);
+                times = 1;
+                mockAmqpsSessionDeviceOperation.close();
+                times = 0;
+            }
+        };
+    }
+
+    // Tests_SRS_AMQPSESSIONMANAGER_12_047: [The function shall authenticate the new device and throw TransportException if it is not authenticated.]
+    // Tests_SRS_AMQPSESSIONMANAGER_12_049: [If the device cannot be opened, the function shall remove and close the new device session before throwing.]
+    @Test
+    public void openDeviceOperationSessionRemovesDeviceIfNotAuthenticated() throws TransportException
+    {
+        // arrange
+        baseExpectationsSAS();
+        AmqpsSessionManager amqpsSessionManager = new AmqpsSessionManager(mockDeviceClientConfig, mockScheduledExecutorService);
+        Deencapsulation.setField(amqpsSessionManager, "session", mockSession);
+        Deencapsulation.setField(amqpsSessionManager, "amqpsDeviceAuthentication", mockAmqpsDeviceAuthenticationCBS);
+        new NonStrictExpectations()
+        {
+            {
+                mockAmqpsDeviceAuthenticationCBS.operationLinksOpened();
+                result = true;
+                mockAmqpsSessionDeviceOperation.getAmqpsAuthenticatorState();
+                result = AmqpsDeviceAuthenticationState.NOT_AUTHENTICATED;
+            }
+        };
+
+        // act
+        boolean thrown = false;
+        try
+        {
+            Deencapsulation.invoke(amqpsSessionManager, "openDeviceOperationSession", mockDeviceClientConfig);
+        }
+        catch (Exception e)
+        {
+            thrown = e instanceof TransportException;
+        }
+
+        // assert
+        assertTrue(thrown);
+        List<AmqpsSessionDeviceOperation> actualList = Deencapsulation.getField(amqpsSessionManager, "amqpsDeviceSessionList");
+        assertEquals(1, actualList.size());
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(mockAmqpsSessionDeviceOperation, "openLinks", new Class[] {Session.class}, any);
+                times = 0;
+                mockAmqpsSessionDeviceOperation.close();
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_AMQPSESSIONMANAGER_12_050: [The function shall remove the device session with the given deviceId from the session list, close it and return true.]
+    @Test
+    public void closeDeviceOperationSessionRemovesAndClosesDevice() throws TransportException
+    {
+        // arrange
+        AmqpsSessionManager amqpsSessionManager = new AmqpsSessionManager(mockDeviceClientConfig, mockScheduledExecutorService);
+        List<AmqpsSessionDeviceOperation> sessionList = Deencapsulation.getField(amqpsSessionManager, "amqpsDeviceSessionList");
+        sessionList.clear();
+        sessionList.add(mockAmqpsSessionDeviceOperation);
+        sessionList.add(mockAmqpsSessionDeviceOperation1);
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockAmqpsSessionDeviceOperation, "getDeviceId");
+                returns("device0", "device0");
+                Deencapsulation.invoke(mockAmqpsSessionDeviceOperation1, "getDeviceId");
+                result = "device1";
+            }
+        };
+
+        // act
+        boolean closed = Deencapsulation.invoke(amqpsSessionManager, "closeDeviceOperationSession", "device1");
+
+        // assert
+        assertTrue(closed);
+        assertEquals(1, sessionList.size());
+        assertEquals(mockAmqpsSessionDeviceOperation, sessionList.get(0));
+    }
+
+    // Tests_SRS_AMQPSESSIONMANAGER_12_051: [The function shall return false if no device session has the given deviceId.]
+    @Test
+    public void closeDeviceOperationSessionReturnsFalseForUnknownDevice() throws TransportException
+    {
+        // arrange
+        AmqpsSessionManager amqpsSessionManager = new AmqpsSessionManager(mockDeviceClientConfig, mockScheduledExecutorService);
+        List<AmqpsSessionDeviceOperation> sessionList = Deencapsulation.getField(amqpsSessionManager, "amqpsDeviceSessionList");
+        sessionList.clear();
+        sessionList.add(mockAmqpsSessionDeviceOperation);
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockAmqpsSessionDeviceOperation, "getDeviceId");
+                result = "device0";
+            }
+        };
+
+        // act
+        boolean closed = Deencapsulation.invoke(amqpsSessionManager, "closeDeviceOperationSession", "device1");
+
+        // assert
+        assertFalse(closed);
+        assertEquals(1, sessionList.size());
+        new Verifications()
+        {
+            {
+                mockAmqpsSessionDeviceOperation.close();
+                times = 0;
+            }
+        };
+    }
+
+    // Tests_SRS_AMQPSESSIONMANAGER_12_052: [The function shall call onLinkFlow on the authentication object and stop if it owns the link.]
+    @Test
+    public void onLinkFlowStopsAtAuthenticationLink() throws TransportException
+    {
+        // arrange
+        AmqpsSessionManager amqpsSessionManager = new AmqpsSessionManager(mockDeviceClientConfig, mockScheduledExecutorService);
+        Deencapsulation.setField(amqpsSessionManager, "amqpsDeviceAuthentication", mockAmqpsDeviceAuthenticationCBS);
+        List<AmqpsSessionDeviceOperation> sessionList = Deencapsulation.getField(amqpsSessionManager, "amqpsDeviceSessionList");
+        sessionList.clear();
+        sessionList.add(mockAmqpsSessionDeviceOperation);
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockAmqpsDeviceAuthenticationCBS, "onLinkFlow", mockLink);
+                result = true;
+            }
+        };
+
+        // act
+        Deencapsulation.invoke(amqpsSessionManager, "onLinkFlow", mockLink);
+
+        // assert
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(mockAmqpsSessionDeviceOperation, "onLinkFlow", mockLink);
+                times = 0;
+            }
+        };
+    }
+
+    // Tests_SRS_AMQPSESSIONMANAGER_12_053: [The function shall call onLinkFlow on the device sessions until one of them owns the link.]
+    @Test
+    public void onLinkFlowStopsAtOwningDeviceSession() throws TransportException
+    {
+        // arrange
+        AmqpsSessionManager amqpsSessionManager = new AmqpsSessionManager(mockDeviceClientConfig, mockScheduledExecutorService);
+        Deencapsulation.setField(amqpsSessionManager, "amqpsDeviceAuthentication", mockAmqpsDeviceAuthenticationCBS);
+        List<AmqpsSessionDeviceOperation> sessionList = Deencapsulation.getField(amqpsSessionManager, "amqpsDeviceSessionList");
+        sessionList.clear();
+        sessionList.add(mockAmqpsSessionDeviceOperation);
+        sessionList.add(mockAmqpsSessionDeviceOperation1);
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockAmqpsDeviceAuthenticationCBS, "onLinkFlow", mockLink);
+                result = false;
+                Deencapsulation.invoke(mockAmqpsSessionDeviceOperation, "onLinkFlow", mockLink);
+                result = true;
+            }
+        };
+
+        // act
+        Deencapsulation.invoke(amqpsSessionManager, "onLinkFlow", mockLink);
+
+        // assert
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(mockAmqpsSessionDeviceOperation, "onLinkFlow", mockLink);
+                times = 1;
+            }
+        };
+    }
+
     private void baseExpectationsSAS()
     {
         // arrange
@@ -1165,7 +1406,7 @@ public class AmqpsSessionManagerTest
                 result = DeviceClientConfig.AuthType.SAS_TOKEN;
                 new AmqpsDeviceAuthenticationCBS(mockDeviceClientConfig);
                 result = mockAmqpsDeviceAuthenticationCBS;
-                new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthenticationCBS);
+                new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthenticationCBS, (AmqpsEncodeBuffer) any);
                 result = mockAmqpsSessionDeviceOperation;
             }
         };
@@ -7,12 +7,14 @@ import com.microsoft.azure.sdk.iot.device.Message;
 import com.microsoft.azure.sdk.iot.device.MessageProperty;
 import com.microsoft.azure.sdk.iot.device.transport.https.HttpsResponse;
 import com.microsoft.azure.sdk.iot.device.transport.https.HttpsSingleMessage;
+import mockit.Deencapsulation;
 import mockit.Expectations;
 import mockit.Mocked;
 import mockit.NonStrictExpectations;
 import mockit.Verifications;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -42,8 +44,8 @@ public class HttpsSingleMessageTest
         new NonStrictExpectations()
         {
             {
-                mockMsg.getBytes();
-                result = body;
+                Deencapsulation.invoke(mockMsg, "getBodyBuffer");
+                result = ByteBuffer.wrap(body);
                 mockMsg.getProperties();
                 result = properties;
                 mockProperty.getName();
@@ -78,8 +80,8 @@ public class HttpsSingleMessageTest
         new NonStrictExpectations()
         {
             {
-                mockMsg.getBytes();
-                result = body;
+                Deencapsulation.invoke(mockMsg, "getBodyBuffer");
+                result = ByteBuffer.wrap(body);
                 mockMsg.getProperties();
                 result = properties;
                 mockProperty.getName();
@@ -111,8 +113,8 @@ public class HttpsSingleMessageTest
         new NonStrictExpectations()
         {
             {
-                mockMsg.getBytes();
-                result = body;
+                Deencapsulation.invoke(mockMsg, "getBodyBuffer");
+                result = ByteBuffer.wrap(body);
                 mockMsg.getProperties();
                 result = properties;
                 mockProperty.getName();
@@ -190,8 +192,8 @@ public class HttpsSingleMessageTest
         new NonStrictExpectations()
         {
             {
-                mockMsg.getBytes();
-                result = body;
+                Deencapsulation.invoke(mockMsg, "getBodyBuffer");
+                result = ByteBuffer.wrap(body);
                 mockMsg.getProperties();
                 result = properties;
                 mockMsg.getMessageId();
@@ -231,8 +233,8 @@ public class HttpsSingleMessageTest
         new NonStrictExpectations()
         {
             {
-                mockMsg.getBytes();
-                result = body;
+                Deencapsulation.invoke(mockMsg, "getBodyBuffer");
+                result = ByteBuffer.wrap(body);
                 mockMsg.getProperties();
                 result = properties;
                 mockProperty.getName();
@@ -270,8 +272,8 @@ public class HttpsSingleMessageTest
         new NonStrictExpectations()
         {
             {
-                mockMsg.getBytes();
-                result = body;
+                Deencapsulation.invoke(mockMsg, "getBodyBuffer");
+                result = ByteBuffer.wrap(body);
                 mockMsg.getProperties();
                 result = properties;
                 mockProperty.getName();
@@ -304,8 +306,8 @@ public class HttpsSingleMessageTest
         new NonStrictExpectations()
         {
             {
-                mockMsg.getBytes();
-                result = body;
+                Deencapsulation.invoke(mockMsg, "getBodyBuffer");
+                result = ByteBuffer.wrap(body);
                 mockMsg.getProperties();
                 result = properties;
                 mockProperty.getName();
@@ -357,8 +359,8 @@ public class HttpsSingleMessageTest
         new NonStrictExpectations()
         {
             {
-                mockMsg.getBytes();
-                result = body;
+                Deencapsulation.invoke(mockMsg, "getBodyBuffer");
+                result = ByteBuffer.wrap(body);
                 mockMsg.getProperties();
                 result = properties;
                 mockMsg.getMessageId();
@@ -584,8 +586,8 @@ public class HttpsSingleMessageTest
         new NonStrictExpectations()
         {
             {
-                mockMsg.getBytes();
-                result = body;
+                Deencapsulation.invoke(mockMsg, "getBodyBuffer");
+                result = ByteBuffer.wrap(body);
                 mockMsg.getProperties();
                 result = properties;
                 mockProperty.getName();
@@ -620,8 +622,8 @@ public class HttpsSingleMessageTest
         new NonStrictExpectations()
         {
             {
-                mockMsg.getBytes();
-                result = body;
+                Deencapsulation.invoke(mockMsg, "getBodyBuffer");
+                result = ByteBuffer.wrap(body);
                 mockMsg.getProperties();
                 result = properties;
                 mockProperty.getName();
@@ -653,8 +655,8 @@ public class HttpsSingleMessageTest
         new NonStrictExpectations()
         {
             {
-                mockMsg.getBytes();
-                result = body;
+                Deencapsulation.invoke(mockMsg, "getBodyBuffer");
+                result = ByteBuffer.wrap(body);
                 mockMsg.getProperties();
                 result = properties;
                 mockProperty.getName();
@@ -686,8 +688,8 @@ public class HttpsSingleMessageTest
         new NonStrictExpectations()
         {
             {
-                mockMsg.getBytes();
-                result = body;
+                Deencapsulation.invoke(mockMsg, "getBodyBuffer");
+                result = ByteBuffer.wrap(body);
                 mockMsg.getProperties();
                 result = properties;
                 mockProperty.getName();
@@ -113,6 +113,48 @@ public class MqttConnectionTest
         assertNotNull(actualLock);
     }
 
+    @Test
+    public void setMaxInFlightCountSetsConnectionOption() throws Exception
+    {
+        //arrange
+        baseConstructorExpectations();
+        final MqttConnection mqttConnection = Deencapsulation.newInstance(MqttConnection.class, SERVER_URI, CLIENT_ID, USER_NAME, PWORD, mockIotHubSSLContext);
+
+        //act
+        Deencapsulation.invoke(mqttConnection, "setMaxInFlightCount", 64);
+
+        //assert
+        assertEquals(64, (int) Deencapsulation.invoke(mqttConnection, "getMaxInFlightCount"));
+        new Verifications()
+        {
+            {
+                mockMqttConnectionOptions.setMaxInflight(64);
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void getInFlightCountReturnsPendingDeliveryTokenCount(@Mocked final IMqttDeliveryToken mockDeliveryToken) throws Exception
+    {
+        //arrange
+        baseConstructorExpectations();
+        final MqttConnection mqttConnection = Deencapsulation.newInstance(MqttConnection.class, SERVER_URI, CLIENT_ID, USER_NAME, PWORD, mockIotHubSSLContext);
+        new NonStrictExpectations()
+        {
+            {
+                mockMqttAsyncClient.getPendingDeliveryTokens();
+                result = new IMqttDeliveryToken[] {mockDeliveryToken, mockDeliveryToken, mockDeliveryToken};
+            }
+        };
+
+        //act
+        int inFlightCount = Deencapsulation.invoke(mqttConnection, "getInFlightCount");
+
+        //assert
+        assertEquals(3, inFlightCount);
+    }
+
     @Test (expected = ProtocolException.class)
     public void constructorThrowsOnAsyncClientFailure() throws Exception
     {
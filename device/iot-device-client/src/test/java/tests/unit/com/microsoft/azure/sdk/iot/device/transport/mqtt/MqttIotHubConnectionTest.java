@@ -15,11 +15,14 @@ import com.microsoft.azure.sdk.iot.device.transport.IotHubTransportMessage;
 import com.microsoft.azure.sdk.iot.device.transport.TransportUtils;
 import com.microsoft.azure.sdk.iot.device.transport.mqtt.*;
 import mockit.*;
+import org.apache.commons.lang3.tuple.MutablePair;
+import org.apache.commons.lang3.tuple.Pair;
 import org.junit.Test;
 
 import javax.net.ssl.SSLContext;
 import java.io.IOException;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
@@ -425,6 +428,7 @@ public class MqttIotHubConnectionTest
             {
                 Deencapsulation.newInstance(MqttConnection.class, new Class[] {String.class, String.class, String.class, String.class, SSLContext.class}, any, any, any, any, mockSslContext);
                 result = mockedMqttConnection;
+                Deencapsulation.invoke(mockedMqttConnection, "setMaxInFlightCount", 0);
             }
         };
 
@@ -481,6 +485,7 @@ public class MqttIotHubConnectionTest
             {
                 Deencapsulation.newInstance(MqttConnection.class, new Class[] {String.class, String.class, String.class, String.class, SSLContext.class}, any, any, any, any, mockSslContext);
                 result = mockedMqttConnection;
+                Deencapsulation.invoke(mockedMqttConnection, "setMaxInFlightCount", 0);
             }
         };
 
@@ -582,6 +587,42 @@ public class MqttIotHubConnectionTest
         };
     }
 
+    //Tests_SRS_MQTTIOTHUBCONNECTION_12_001: [The function shall report every publish still waiting for a slot of the in-flight window to the listener as failed with a retryable exception.]
+    @Test
+    public void closeFailsPendingPublishesAsRetryable() throws IOException, TransportException
+    {
+        //arrange
+        baseExpectations();
+        openExpectations();
+        final Queue<Pair<String, Message>> pendingPublishes = new ConcurrentLinkedQueue<>();
+        pendingPublishes.add(new MutablePair<String, Message>("topic", mockedMessage));
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockedMqttConnection, "getPendingPublishes");
+                result = pendingPublishes;
+            }
+        };
+        MqttIotHubConnection connection = new MqttIotHubConnection(mockConfig);
+        connection.setListener(mockedIotHubListener);
+        connection.open(mockedQueue);
+
+        //act
+        connection.close(false);
+
+        //assert
+        assertTrue(pendingPublishes.isEmpty());
+        new Verifications()
+        {
+            {
+                mockedIotHubListener.onMessageSent(mockedMessage, (TransportException) any);
+                times = 1;
+                mockedTransportException.setRetryable(true);
+                times = 1;
+            }
+        };
+    }
+
     //Tests_SRS_MQTTIOTHUBCONNECTION_34_022: [If the list of device client configuration objects is larger than 1, this function shall throw an UnsupportedOperationException.]
     @Test (expected = UnsupportedOperationException.class)
     public void openThrowsForMultiplexing() throws TransportException
@@ -702,8 +743,8 @@ public class MqttIotHubConnectionTest
         new NonStrictExpectations()
         {
             {
-                mockedMessage.getBytes();
-                result = msgBody;
+                Deencapsulation.invoke(mockedMessage, "getBodyBuffer");
+                result = ByteBuffer.wrap(msgBody);
                 mockDeviceMessaging.send(mockedMessage);
             }
         };
@@ -748,12 +789,11 @@ public class MqttIotHubConnectionTest
         baseExpectations();
         openExpectations();
 
-        final byte[] msgBody = null;
         new NonStrictExpectations()
         {
             {
-                mockedMessage.getBytes();
-                result = msgBody;
+                Deencapsulation.invoke(mockedMessage, "getBodyBuffer");
+                result = null;
             }
         };
 
@@ -776,8 +816,8 @@ public class MqttIotHubConnectionTest
         new NonStrictExpectations()
         {
             {
-                mockedMessage.getBytes();
-                result = new byte[0];
+                Deencapsulation.invoke(mockedMessage, "getBodyBuffer");
+                result = ByteBuffer.wrap(new byte[0]);
             }
         };
 
@@ -799,8 +839,8 @@ public class MqttIotHubConnectionTest
         new NonStrictExpectations()
         {
             {
-                mockedMessage.getBytes();
-                result = msgBody;
+                Deencapsulation.invoke(mockedMessage, "getBodyBuffer");
+                result = ByteBuffer.wrap(msgBody);
             }
         };
 
@@ -818,8 +858,8 @@ public class MqttIotHubConnectionTest
         new NonStrictExpectations()
         {
             {
-                mockedMessage.getBytes();
-                result = msgBody;
+                Deencapsulation.invoke(mockedMessage, "getBodyBuffer");
+                result = ByteBuffer.wrap(msgBody);
             }
         };
 
@@ -841,8 +881,8 @@ public class MqttIotHubConnectionTest
         new NonStrictExpectations()
         {
             {
-                mockDeviceTwinMsg.getBytes();
-                result = msgBody;
+                Deencapsulation.invoke(mockDeviceTwinMsg, "getBodyBuffer");
+                result = ByteBuffer.wrap(msgBody);
                 mockDeviceTwinMsg.getMessageType();
                 result = MessageType.DEVICE_TWIN;
 
@@ -881,8 +921,8 @@ public class MqttIotHubConnectionTest
         new NonStrictExpectations()
         {
             {
-                mockDeviceMethodMsg.getBytes();
-                result = msgBody;
+                Deencapsulation.invoke(mockDeviceMethodMsg, "getBodyBuffer");
+                result = ByteBuffer.wrap(msgBody);
                 mockDeviceMethodMsg.getMessageType();
                 result = MessageType.DEVICE_METHODS;
 
@@ -17,7 +17,9 @@ import org.junit.Test;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
@@ -250,8 +252,8 @@ public class MqttMessagingTest
         new NonStrictExpectations()
         {
             {
-                mockedMessage.getBytes();
-                result = messageBody;
+                Deencapsulation.invoke(mockedMessage, "getBodyBuffer");
+                result = ByteBuffer.wrap(messageBody);
                 Deencapsulation.invoke(mockMqtt, "publish", new Class[] {String.class, Message.class}, anyString, (Message) any);
             }
         };
@@ -263,7 +265,7 @@ public class MqttMessagingTest
         new Verifications()
         {
             {
-                mockedMessage.getBytes();
+                Deencapsulation.invoke(mockedMessage, "getBodyBuffer");
                 times = 1;
                 Deencapsulation.invoke(mockMqtt, "publish", new Class[]{String.class, Message.class}, anyString, mockedMessage);
                 times = 1;
@@ -280,8 +282,8 @@ public class MqttMessagingTest
         new NonStrictExpectations()
         {
             {
-                mockedMessage.getBytes();
-                result = messageBody;
+                Deencapsulation.invoke(mockedMessage, "getBodyBuffer");
+                result = ByteBuffer.wrap(messageBody);
             }
         };
 
@@ -291,7 +293,7 @@ public class MqttMessagingTest
         new Verifications()
         {
             {
-                mockedMessage.getBytes();
+                Deencapsulation.invoke(mockedMessage, "getBodyBuffer");
                 times = 1;
                 Deencapsulation.invoke(mockMqtt, "publish", MOCK_PARSE_TOPIC, new byte[1]);
                 times = 1;
@@ -312,7 +314,7 @@ public class MqttMessagingTest
         new Verifications()
         {
             {
-                mockedMessage.getBytes();
+                Deencapsulation.invoke(mockedMessage, "getBodyBuffer");
                 times = 0;
                 Deencapsulation.invoke(mockMqtt, "publish", MOCK_PARSE_TOPIC, new byte[1]);
                 times = 0;
@@ -337,8 +339,8 @@ public class MqttMessagingTest
         new NonStrictExpectations()
         {
             {
-                mockedMessage.getBytes();
-                result = messageBody;
+                Deencapsulation.invoke(mockedMessage, "getBodyBuffer");
+                result = ByteBuffer.wrap(messageBody);
                 mockedMessage.getProperties();
                 result = messageProperties;
             }
@@ -372,8 +374,8 @@ public class MqttMessagingTest
         new NonStrictExpectations()
         {
             {
-                mockedMessage.getBytes();
-                result = messageBody;
+                Deencapsulation.invoke(mockedMessage, "getBodyBuffer");
+                result = ByteBuffer.wrap(messageBody);
                 mockedMessage.getProperties();
                 result = messageProperties;
                 mockedMessage.getMessageId();
@@ -408,8 +410,8 @@ public class MqttMessagingTest
         new NonStrictExpectations()
         {
             {
-                mockedMessage.getBytes();
-                result = messageBody;
+                Deencapsulation.invoke(mockedMessage, "getBodyBuffer");
+                result = ByteBuffer.wrap(messageBody);
                 mockedMessage.getProperties();
                 result = messageProperties;
                 mockedMessage.getCorrelationId();
@@ -444,8 +446,8 @@ public class MqttMessagingTest
         new NonStrictExpectations()
         {
             {
-                mockedMessage.getBytes();
-                result = messageBody;
+                Deencapsulation.invoke(mockedMessage, "getBodyBuffer");
+                result = ByteBuffer.wrap(messageBody);
                 mockedMessage.getProperties();
                 result = messageProperties;
                 mockedMessage.getUserId();
@@ -480,8 +482,8 @@ public class MqttMessagingTest
         new NonStrictExpectations()
         {
             {
-                mockedMessage.getBytes();
-                result = messageBody;
+                Deencapsulation.invoke(mockedMessage, "getBodyBuffer");
+                result = ByteBuffer.wrap(messageBody);
                 mockedMessage.getProperties();
                 result = messageProperties;
                 mockedMessage.getTo();
@@ -536,8 +538,8 @@ public class MqttMessagingTest
         new NonStrictExpectations()
         {
             {
-                mockedMessage.getBytes();
-                result = messageBody;
+                Deencapsulation.invoke(mockedMessage, "getBodyBuffer");
+                result = ByteBuffer.wrap(messageBody);
                 mockedMessage.getMessageId();
                 result = messageId;
                 mockedMessage.getCorrelationId();
@@ -573,6 +575,56 @@ public class MqttMessagingTest
         };
     }
 
+    //Tests_SRS_MqttMessaging_12_001: [The encoded output name, connection device id, connection module id, content encoding and content type shall be reused from previous messages with the same values.]
+    @Test
+    public void sendReusesEncodedPropertiesAndStillEncodesNewValues(@Mocked final Mqtt mockMqtt) throws TransportException, UnsupportedEncodingException
+    {
+        final byte[] messageBody = {0x61, 0x62, 0x63};
+        final String firstMessageId = "first-id";
+        final String secondMessageId = "second id&more";
+        final String contentType = "application/json";
+        final String firstOutputName = "output1";
+        final String secondOutputName = "output/2";
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockedMessage, "getBodyBuffer");
+                result = ByteBuffer.wrap(messageBody);
+                mockedMessage.getMessageId();
+                returns(firstMessageId, secondMessageId);
+                mockedMessage.getOutputName();
+                returns(firstOutputName, secondOutputName);
+                mockedMessage.getContentType();
+                result = contentType;
+                mockedMessage.getProperties();
+                result = new MessageProperty[0];
+            }
+        };
+
+        MqttMessaging testMqttMessaging = new MqttMessaging(mockedMqttConnection, CLIENT_ID, mockedIotHubListener, null, "", "", false);
+        final String firstTopic = String.format("devices/%s/messages/events/$.mid=%s&$.on=%s&$.ct=%s",
+                CLIENT_ID, firstMessageId, firstOutputName, URLEncoder.encode(contentType, StandardCharsets.UTF_8.name()));
+        final String secondTopic = String.format("devices/%s/messages/events/$.mid=%s&$.on=%s&$.ct=%s",
+                CLIENT_ID, URLEncoder.encode(secondMessageId, StandardCharsets.UTF_8.name()), URLEncoder.encode(secondOutputName, StandardCharsets.UTF_8.name()), URLEncoder.encode(contentType, StandardCharsets.UTF_8.name()));
+
+        // act
+        testMqttMessaging.send(mockedMessage);
+        testMqttMessaging.send(mockedMessage);
+
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(mockMqtt, "publish", firstTopic, mockedMessage);
+                times = 1;
+                Deencapsulation.invoke(mockMqtt, "publish", secondTopic, mockedMessage);
+                times = 1;
+            }
+        };
+        Map<String, Map<String, String>> propertyFragmentCache = Deencapsulation.getField(testMqttMessaging, "propertyFragmentCache");
+        assertEquals(1, propertyFragmentCache.get("$.ct").size());
+        assertEquals(2, propertyFragmentCache.get("$.on").size());
+    }
+
     //Tests_SRS_MqttMessaging_34_035: [start method shall subscribe to the cloud to device events if not communicating to an edgeHub.]
     @Test
     public void startSubscribesForInputEventsIfEdgehub(@Mocked final Mqtt mockMqtt) throws TransportException
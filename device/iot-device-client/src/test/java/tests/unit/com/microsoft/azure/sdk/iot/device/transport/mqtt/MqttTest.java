@@ -20,11 +20,13 @@ import org.junit.Test;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.microsoft.azure.sdk.iot.device.DeviceTwin.DeviceOperations.DEVICE_OPERATION_METHOD_SUBSCRIBE_REQUEST;
 import static com.microsoft.azure.sdk.iot.device.DeviceTwin.DeviceOperations.DEVICE_OPERATION_TWIN_SUBSCRIBE_DESIRED_PROPERTIES_REQUEST;
@@ -145,6 +147,10 @@ public class MqttTest
                 result = new ConcurrentLinkedQueue<>();
                 Deencapsulation.invoke(mockedMqttConnection, "getMqttLock");
                 result = new Object();
+                Deencapsulation.invoke(mockedMqttConnection, "getPendingPublishes");
+                result = new ConcurrentLinkedQueue<>();
+                Deencapsulation.invoke(mockedMqttConnection, "getMaxInFlightCount");
+                result = 10;
             }
         };
     }
@@ -183,8 +189,8 @@ public class MqttTest
         new NonStrictExpectations()
         {
             {
-                mockedMessage.getBytes();
-                result = payload;
+                Deencapsulation.invoke(mockedMessage, "getBodyBuffer");
+                result = ByteBuffer.wrap(payload);
                 mockMqttAsyncClient.isConnected();
                 result = true;
                 new MqttMessage(payload);
@@ -1370,6 +1376,125 @@ public class MqttTest
         };
     }
 
+    //Tests_SRS_Mqtt_25_048: [If the in-flight window is full, or if earlier publishes are still waiting for a slot,
+    // publish shall queue the message and return without blocking.]
+    @Test
+    public void publishQueuesMessageWhenInFlightWindowIsFull(final @Mocked Message mockedMessage) throws MqttException, TransportException
+    {
+        //arrange
+        baseConstructorExpectations();
+        final byte[] payload = {0x61, 0x62, 0x63};
+        final Queue<Pair<String, Message>> pendingPublishes = new ConcurrentLinkedQueue<>();
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockedMessage, "getBodyBuffer");
+                result = ByteBuffer.wrap(payload);
+                mockMqttAsyncClient.isConnected();
+                result = true;
+                Deencapsulation.invoke(mockedMqttConnection, "getPendingPublishes");
+                result = pendingPublishes;
+                Deencapsulation.invoke(mockedMqttConnection, "getInFlightCount");
+                result = 10;
+            }
+        };
+        Mqtt mockMqtt = instantiateMqtt(true);
+
+        //act
+        Deencapsulation.invoke(mockMqtt, "publish", MOCK_PARSE_TOPIC, mockedMessage);
+
+        //assert
+        assertEquals(1, pendingPublishes.size());
+        new Verifications()
+        {
+            {
+                mockMqttAsyncClient.publish(anyString, (MqttMessage) any);
+                times = 0;
+            }
+        };
+    }
+
+    //Tests_SRS_Mqtt_25_048: [Queued messages are published as PUBACKs free up slots.]
+    @Test
+    public void deliveryCompletePublishesQueuedMessages(final @Mocked Message mockedMessage) throws MqttException, TransportException
+    {
+        //arrange
+        baseConstructorExpectations();
+        basePublishExpectations(mockedMessage);
+        final Queue<Pair<String, Message>> pendingPublishes = new ConcurrentLinkedQueue<>();
+        pendingPublishes.add(new MutablePair<>(MOCK_PARSE_TOPIC, mockedMessage));
+        pendingPublishes.add(new MutablePair<>(MOCK_PARSE_TOPIC, mockedMessage));
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockedMqttConnection, "getPendingPublishes");
+                result = pendingPublishes;
+                Deencapsulation.invoke(mockedMqttConnection, "getInFlightCount");
+                returns(9, 10);
+            }
+        };
+        Mqtt mockMqtt = instantiateMqtt(true, mockedIotHubListener);
+
+        //act
+        mockMqtt.deliveryComplete(mockMqttDeliveryToken);
+
+        //assert
+        assertEquals(1, pendingPublishes.size());
+        new Verifications()
+        {
+            {
+                mockMqttAsyncClient.publish(MOCK_PARSE_TOPIC, mockMqttMessage);
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_Mqtt_25_048: [A queued message that fails to publish is reported to the listener as failed, after the queue is released.]
+    @Test
+    public void deliveryCompleteReportsFailedQueuedPublishOutsideQueueLock(final @Mocked Message mockedMessage) throws MqttException, TransportException
+    {
+        //arrange
+        baseConstructorExpectations();
+        basePublishExpectations(mockedMessage);
+        final Queue<Pair<String, Message>> pendingPublishes = new ConcurrentLinkedQueue<>();
+        pendingPublishes.add(new MutablePair<>(MOCK_PARSE_TOPIC, mockedMessage));
+        final AtomicBoolean listenerCalledUnderLock = new AtomicBoolean(true);
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockedMqttConnection, "getPendingPublishes");
+                result = pendingPublishes;
+                Deencapsulation.invoke(mockedMqttConnection, "getInFlightCount");
+                result = 0;
+                mockMqttAsyncClient.publish(MOCK_PARSE_TOPIC, mockMqttMessage);
+                result = mockMqttException;
+                mockedIotHubListener.onMessageSent(mockedMessage, (TransportException) any);
+                result = new Delegate()
+                {
+                    void onMessageSent(Message message, TransportException e)
+                    {
+                        listenerCalledUnderLock.set(Thread.holdsLock(pendingPublishes));
+                    }
+                };
+            }
+        };
+        Mqtt mockMqtt = instantiateMqtt(true, mockedIotHubListener);
+
+        //act
+        mockMqtt.deliveryComplete(mockMqttDeliveryToken);
+
+        //assert
+        assertTrue(pendingPublishes.isEmpty());
+        assertFalse(listenerCalledUnderLock.get());
+        new Verifications()
+        {
+            {
+                mockedIotHubListener.onMessageSent(mockedMessage, (TransportException) any);
+                times = 1;
+            }
+        };
+    }
+
     //Tests_SRS_Mqtt_34_056: [If the acknowledged message is of type
     // DEVICE_OPERATION_TWIN_SUBSCRIBE_DESIRED_PROPERTIES_REQUEST, DEVICE_OPERATION_METHOD_SUBSCRIBE_REQUEST,
     // or DEVICE_OPERATION_TWIN_UNSUBSCRIBE_DESIRED_PROPERTIES_REQUEST, this function shall not notify the saved
@@ -392,4 +392,33 @@ public class TopicParserTest
         //act
         String methodName = Deencapsulation.invoke(testParser, "getMethodName", 3);
     }
+
+    /*
+    Tests_SRS_TopicParser_12_001: [The function shall return the same tokens as String.split("/"), dropping trailing empty tokens.]
+     */
+    @Test
+    public void splitTopicMatchesStringSplit()
+    {
+        //arrange
+        String[] topics = new String[]
+                {
+                        "$iothub/twin/res/200/?$rid=1&$version=2",
+                        "$iothub/twin/res/",
+                        "$iothub/methods/POST/methodName/?$rid=10",
+                        "/leading/separator",
+                        "double//separator",
+                        "trailing//",
+                        "noseparator",
+                        "///"
+                };
+
+        for (String topic : topics)
+        {
+            //act
+            String[] tokens = Deencapsulation.invoke(TopicParser.class, "splitTopic", topic);
+
+            //assert
+            assertArrayEquals(topic, topic.split("/"), tokens);
+        }
+    }
 }
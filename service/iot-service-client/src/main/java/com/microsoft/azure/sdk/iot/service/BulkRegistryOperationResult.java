@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.annotations.SerializedName;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of a bulk registry operation. The operation is applied to each device on its own, so some devices
+ * may fail while the others succeed; each failure is reported with the id of its device.
+ */
+public class BulkRegistryOperationResult
+{
+    private static final Gson gson = new GsonBuilder().create();
+
+    @SerializedName("isSuccessful")
+    private boolean isSuccessful;
+
+    @SerializedName("errors")
+    private List<DeviceRegistryOperationError> errors;
+
+    @SerializedName("warnings")
+    private List<DeviceRegistryOperationWarning> warnings;
+
+    /**
+     * Constructor for the result of an operation on no devices
+     */
+    BulkRegistryOperationResult()
+    {
+        this.isSuccessful = true;
+        this.errors = new ArrayList<>();
+        this.warnings = new ArrayList<>();
+    }
+
+    /**
+     * Create a result from the json body the hub replied with
+     * @param json the body of the response
+     * @return the parsed result
+     * @throws IllegalArgumentException if the json is null, empty or not a bulk registry operation result
+     */
+    static BulkRegistryOperationResult fromJson(String json) throws IllegalArgumentException
+    {
+        if (Tools.isNullOrEmpty(json))
+        {
+            throw new IllegalArgumentException("json cannot be null or empty");
+        }
+
+        BulkRegistryOperationResult result;
+        try
+        {
+            result = gson.fromJson(json, BulkRegistryOperationResult.class);
+        }
+        catch (JsonSyntaxException e)
+        {
+            throw new IllegalArgumentException("The provided json is not a bulk registry operation result", e);
+        }
+
+        if (result == null)
+        {
+            throw new IllegalArgumentException("The provided json is not a bulk registry operation result");
+        }
+
+        if (result.errors == null)
+        {
+            result.errors = new ArrayList<>();
+        }
+
+        if (result.warnings == null)
+        {
+            result.warnings = new ArrayList<>();
+        }
+
+        return result;
+    }
+
+    /**
+     * Add the outcome of another request of the same operation to this one
+     * @param other the result to merge into this one
+     */
+    void merge(BulkRegistryOperationResult other)
+    {
+        this.isSuccessful = this.isSuccessful && other.isSuccessful;
+        this.errors.addAll(other.errors);
+        this.warnings.addAll(other.warnings);
+    }
+
+    /**
+     * Getter for the overall outcome
+     * @return true if the operation succeeded for every device
+     */
+    public boolean isSuccessful()
+    {
+        return isSuccessful;
+    }
+
+    /**
+     * Getter for the failed devices
+     * @return one error for each device the operation failed for
+     */
+    public List<DeviceRegistryOperationError> getErrors()
+    {
+        return Collections.unmodifiableList(errors);
+    }
+
+    /**
+     * Getter for the warnings
+     * @return the warnings the hub replied with
+     */
+    public List<DeviceRegistryOperationWarning> getWarnings()
+    {
+        return Collections.unmodifiableList(warnings);
+    }
+}
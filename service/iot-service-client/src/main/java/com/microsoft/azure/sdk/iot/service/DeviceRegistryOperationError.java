@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service;
+
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * The failure of one device in a bulk registry operation
+ */
+public class DeviceRegistryOperationError
+{
+    @SerializedName("deviceId")
+    private String deviceId;
+
+    @SerializedName("errorCode")
+    private String errorCode;
+
+    @SerializedName("errorStatus")
+    private String errorStatus;
+
+    //empty constructor for Gson
+    DeviceRegistryOperationError()
+    {
+    }
+
+    /**
+     * Getter for the device id
+     * @return the id of the device the operation failed for
+     */
+    public String getDeviceId()
+    {
+        return deviceId;
+    }
+
+    /**
+     * Getter for the error code
+     * @return the error code the hub replied with for this device
+     */
+    public String getErrorCode()
+    {
+        return errorCode;
+    }
+
+    /**
+     * Getter for the error status
+     * @return the description of the failure
+     */
+    public String getErrorStatus()
+    {
+        return errorStatus;
+    }
+}
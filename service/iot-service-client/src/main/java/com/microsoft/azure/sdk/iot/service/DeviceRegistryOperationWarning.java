@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service;
+
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * A warning about one device in a bulk registry operation. The operation succeeded for the device
+ */
+public class DeviceRegistryOperationWarning
+{
+    @SerializedName("deviceId")
+    private String deviceId;
+
+    @SerializedName("warningCode")
+    private String warningCode;
+
+    @SerializedName("warningStatus")
+    private String warningStatus;
+
+    //empty constructor for Gson
+    DeviceRegistryOperationWarning()
+    {
+    }
+
+    /**
+     * Getter for the device id
+     * @return the id of the device the warning is about
+     */
+    public String getDeviceId()
+    {
+        return deviceId;
+    }
+
+    /**
+     * Getter for the warning code
+     * @return the warning code the hub replied with for this device
+     */
+    public String getWarningCode()
+    {
+        return warningCode;
+    }
+
+    /**
+     * Getter for the warning status
+     * @return the description of the warning
+     */
+    public String getWarningStatus()
+    {
+        return warningStatus;
+    }
+}
@@ -0,0 +1,21 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service;
+
+/**
+ * Callback for the feedback batches pushed by {@link FeedbackReceiver#start(FeedbackBatchHandler)}.
+ */
+public interface FeedbackBatchHandler
+{
+    /**
+     * Called once for each feedback batch, in the order the batches arrive, on a thread owned by the receiver.
+     * The batch is completed with the service when this call returns. If it throws, the batch is abandoned
+     * and the service delivers it again, until the maximum delivery count of the hub is reached.
+     *
+     * @param feedbackBatch The received feedback batch
+     */
+    void onFeedbackBatchReceived(FeedbackBatch feedbackBatch);
+}
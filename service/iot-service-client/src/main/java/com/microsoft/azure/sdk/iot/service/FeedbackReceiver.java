@@ -5,6 +5,11 @@
 
 package com.microsoft.azure.sdk.iot.service;
 
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasTokenProvider;
+import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpFeedbackReceivedHandler;
+import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpMalformedMessageException;
+import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpPersistentReceive;
+import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpPersistentReceiveEvent;
 import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpReceive;
 
 import java.io.IOException;
@@ -19,11 +24,19 @@ import java.util.concurrent.Executors;
 public class FeedbackReceiver extends Receiver
 {
     private final long DEFAULT_TIMEOUT_MS = 60000;
+    private static final int DEFAULT_LINK_CREDIT = 10;
     private final ExecutorService executor = Executors.newFixedThreadPool(10);
 
     private String deviceId;
     private AmqpReceive amqpReceive;
 
+    private String hostName;
+    private String userName;
+    private String sasToken;
+    private IotHubServiceClientProtocol iotHubServiceClientProtocol;
+    private IotHubConnectionString iotHubConnectionString;
+    private AmqpPersistentReceive amqpPersistentReceive;
+
     /**
      * Constructor to verify initialization parameters
      * Create instance of AmqpReceive
@@ -58,6 +71,10 @@ public class FeedbackReceiver extends Receiver
         
         // Codes_SRS_SERVICE_SDK_JAVA_FEEDBACKRECEIVER_12_002: [The constructor shall store deviceId]
         this.deviceId = deviceId;
+        this.hostName = hostName;
+        this.userName = userName;
+        this.sasToken = sasToken;
+        this.iotHubServiceClientProtocol = iotHubServiceClientProtocol;
         // Codes_SRS_SERVICE_SDK_JAVA_FEEDBACKRECEIVER_12_003: [The constructor shall create a new instance of AmqpReceive object]
         this.amqpReceive = new AmqpReceive(hostName, userName, sasToken, iotHubServiceClientProtocol);
     }
@@ -92,11 +109,29 @@ public class FeedbackReceiver extends Receiver
         {
             throw new IllegalArgumentException("iotHubServiceClientProtocol cannot be null");
         }
-                
+
+        this.hostName = hostName;
+        this.userName = userName;
+        this.sasToken = sasToken;
+        this.iotHubServiceClientProtocol = iotHubServiceClientProtocol;
         // Codes_SRS_SERVICE_SDK_JAVA_FEEDBACKRECEIVER_12_003: [The constructor shall create a new instance of AmqpReceive object]
         this.amqpReceive = new AmqpReceive(hostName, userName, sasToken, iotHubServiceClientProtocol);
     }
-        
+
+    /**
+     * Constructor used by the service client. Unlike the receivers created with a SAS token, the persistent
+     * subscription signs each of its connections with a fresh SAS token, so it outlives the token lifetime.
+     *
+     * @param iotHubConnectionString The connection string of the iot hub
+     * @param iotHubServiceClientProtocol protocol to be used
+     */
+    FeedbackReceiver(IotHubConnectionString iotHubConnectionString, IotHubServiceClientProtocol iotHubServiceClientProtocol)
+    {
+        this(iotHubConnectionString.getHostName(), iotHubConnectionString.getUserString(),
+                IotHubServiceSasTokenProvider.getSasToken(iotHubConnectionString).toString(), iotHubServiceClientProtocol);
+        this.iotHubConnectionString = iotHubConnectionString;
+    }
+
     /**
      * Open AmqpReceive object
      *
@@ -127,6 +162,86 @@ public class FeedbackReceiver extends Receiver
         }
         // Codes_SRS_SERVICE_SDK_JAVA_FEEDBACKRECEIVER_12_007: [The function shall call close() on the member AMQPReceive object]
         this.amqpReceive.close();
+        stop();
+    }
+
+    /**
+     * Start a persistent feedback subscription with the default link credit.
+     *
+     * @param feedbackBatchHandler The callback to push each received FeedbackBatch to
+     * @throws IOException This exception is thrown if the connection could not be established or a subscription is already started
+     * @see #start(FeedbackBatchHandler, int)
+     */
+    public void start(FeedbackBatchHandler feedbackBatchHandler) throws IOException
+    {
+        start(feedbackBatchHandler, DEFAULT_LINK_CREDIT);
+    }
+
+    /**
+     * Start a persistent feedback subscription. One AMQP connection and receiver link to the feedback endpoint
+     * stays open until {@link #stop()} or {@link #close()} is called, and is re-established if it is lost. Each
+     * FeedbackBatch is pushed to the handler as it arrives and completed with the service once the handler
+     * returns, so no batch is lost if the process stops while handling it. A batch the handler throws on is
+     * delivered again, until the maximum delivery count of the hub is reached; a batch that cannot be parsed is rejected.
+     * A receiver created with a SAS token keeps using it, so its subscription stops once the token expires.
+     *
+     * @param feedbackBatchHandler The callback to push each received FeedbackBatch to
+     * @param linkCredit The maximum number of batches the service delivers before earlier ones are completed
+     * @throws IllegalArgumentException if the handler is null or the link credit is less than 1
+     * @throws IOException This exception is thrown if the connection could not be established or a subscription is already started
+     */
+    public synchronized void start(FeedbackBatchHandler feedbackBatchHandler, int linkCredit) throws IllegalArgumentException, IOException
+    {
+        if (feedbackBatchHandler == null)
+        {
+            throw new IllegalArgumentException("feedbackBatchHandler cannot be null");
+        }
+
+        if (linkCredit < 1)
+        {
+            throw new IllegalArgumentException("linkCredit must be at least 1");
+        }
+
+        if (this.amqpPersistentReceive != null)
+        {
+            throw new IOException("A feedback subscription is already started. call stop before start");
+        }
+
+        AmqpPersistentReceiveEvent event = bodies ->
+        {
+            FeedbackBatch feedbackBatch;
+            try
+            {
+                feedbackBatch = FeedbackBatchMessage.parse(bodies.get(0));
+            }
+            catch (RuntimeException e)
+            {
+                throw new AmqpMalformedMessageException("The feedback batch could not be parsed", e);
+            }
+
+            feedbackBatchHandler.onFeedbackBatchReceived(feedbackBatch);
+        };
+
+        AmqpPersistentReceive persistentReceive = this.iotHubConnectionString == null
+                ? new AmqpPersistentReceive(this.hostName, this.userName, this.sasToken, this.iotHubServiceClientProtocol,
+                        AmqpFeedbackReceivedHandler.ENDPOINT, linkCredit, 1, event)
+                : new AmqpPersistentReceive(this.iotHubConnectionString, this.iotHubServiceClientProtocol,
+                        AmqpFeedbackReceivedHandler.ENDPOINT, linkCredit, 1, event);
+        persistentReceive.open();
+        this.amqpPersistentReceive = persistentReceive;
+    }
+
+    /**
+     * Stop the persistent feedback subscription, if one is started. Batches pushed to the handler but not
+     * completed yet are delivered again to the next subscription.
+     */
+    public synchronized void stop()
+    {
+        if (this.amqpPersistentReceive != null)
+        {
+            this.amqpPersistentReceive.close();
+            this.amqpPersistentReceive = null;
+        }
     }
 
     /**
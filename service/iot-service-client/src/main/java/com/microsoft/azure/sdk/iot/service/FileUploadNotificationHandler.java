@@ -0,0 +1,23 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service;
+
+import java.util.List;
+
+/**
+ * Callback for the file upload notifications pushed by {@link FileUploadNotificationReceiver#start(FileUploadNotificationHandler)}.
+ */
+public interface FileUploadNotificationHandler
+{
+    /**
+     * Called with the notifications that arrived since the previous call, in arrival order, on a thread owned by
+     * the receiver. All of them are completed with the service together when this call returns. If it throws,
+     * they are abandoned and the service delivers them again, until the maximum delivery count of the hub is reached.
+     *
+     * @param fileUploadNotifications The received notifications, never empty
+     */
+    void onFileUploadNotificationsReceived(List<FileUploadNotification> fileUploadNotifications);
+}
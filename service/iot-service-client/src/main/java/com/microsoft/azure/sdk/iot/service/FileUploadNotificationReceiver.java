@@ -5,9 +5,16 @@
 
 package com.microsoft.azure.sdk.iot.service;
 
+import com.microsoft.azure.sdk.iot.deps.serializer.FileUploadNotificationParser;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasTokenProvider;
 import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpFileUploadNotificationReceive;
+import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpFileUploadNotificationReceivedHandler;
+import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpPersistentReceive;
+import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpPersistentReceiveEvent;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -15,9 +22,18 @@ import java.util.concurrent.Executors;
 public class FileUploadNotificationReceiver extends Receiver
 {
     private final long DEFAULT_TIMEOUT_MS = 60000;
+    private static final int DEFAULT_LINK_CREDIT = 50;
+    private static final int DEFAULT_MAX_BATCH_SIZE = 50;
     private final ExecutorService executor = Executors.newFixedThreadPool(3);
     private AmqpFileUploadNotificationReceive amqpFileUploadNotificationReceive;
 
+    private final String hostName;
+    private final String userName;
+    private final String sasToken;
+    private final IotHubServiceClientProtocol iotHubServiceClientProtocol;
+    private IotHubConnectionString iotHubConnectionString;
+    private AmqpPersistentReceive amqpPersistentReceive;
+
     /**
      * Constructor to verify initialization parameters
      * Create instance of AmqpReceive
@@ -46,10 +62,29 @@ public class FileUploadNotificationReceiver extends Receiver
             throw new IllegalArgumentException("iotHubServiceClientProtocol cannot be null");
         }
 
+        this.hostName = hostName;
+        this.userName = userName;
+        this.sasToken = sasToken;
+        this.iotHubServiceClientProtocol = iotHubServiceClientProtocol;
+
         // Codes_SRS_SERVICE_SDK_JAVA_FILEUPLOADNOTIFICATIONRECEIVER_25_002: [** The constructor shall create a new instance of AmqpFileUploadNotificationReceive object **]**
         this.amqpFileUploadNotificationReceive = new AmqpFileUploadNotificationReceive(hostName, userName, sasToken, iotHubServiceClientProtocol);
     }
 
+    /**
+     * Constructor used by the service client. Unlike the receivers created with a SAS token, the persistent
+     * notification stream signs each of its connections with a fresh SAS token, so it outlives the token lifetime.
+     *
+     * @param iotHubConnectionString The connection string of the iot hub
+     * @param iotHubServiceClientProtocol The iot hub protocol name
+     */
+    FileUploadNotificationReceiver(IotHubConnectionString iotHubConnectionString, IotHubServiceClientProtocol iotHubServiceClientProtocol)
+    {
+        this(iotHubConnectionString.getHostName(), iotHubConnectionString.getUserString(),
+                IotHubServiceSasTokenProvider.getSasToken(iotHubConnectionString).toString(), iotHubServiceClientProtocol);
+        this.iotHubConnectionString = iotHubConnectionString;
+    }
+
     /**
      * Open AmqpReceive object
      *
@@ -70,6 +105,103 @@ public class FileUploadNotificationReceiver extends Receiver
     {
         // Codes_SRS_SERVICE_SDK_JAVA_FILEUPLOADNOTIFICATIONRECEIVER_25_006: [** The function shall call close() on the member AmqpFileUploadNotificationReceive object **]**
         this.amqpFileUploadNotificationReceive.close();
+        stop();
+    }
+
+    /**
+     * Start a persistent notification stream with the default link credit and batch size.
+     *
+     * @param fileUploadNotificationHandler The callback to push the received notifications to
+     * @throws IOException This exception is thrown if the connection could not be established or a stream is already started
+     * @see #start(FileUploadNotificationHandler, int, int)
+     */
+    public void start(FileUploadNotificationHandler fileUploadNotificationHandler) throws IOException
+    {
+        start(fileUploadNotificationHandler, DEFAULT_LINK_CREDIT, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    /**
+     * Start a persistent notification stream. One AMQP connection and receiver link to the file notification
+     * endpoint stays open until {@link #stop()} or {@link #close()} is called, and is re-established if it is lost.
+     * Notifications are pushed to the handler as they arrive. Notifications that arrive while the handler is busy
+     * are pushed together on its next call, and every notification of a call is completed with the service once
+     * the handler returns. The notifications of a call the handler throws on are delivered again, until the
+     * maximum delivery count of the hub is reached.
+     *
+     * @param fileUploadNotificationHandler The callback to push the received notifications to
+     * @param linkCredit The maximum number of notifications the service delivers before earlier ones are completed
+     * @param maxBatchSize The maximum number of notifications pushed in one call, at most the link credit
+     * @throws IllegalArgumentException if the handler is null, or the link credit or batch size are out of range
+     * @throws IOException This exception is thrown if the connection could not be established or a stream is already started
+     */
+    public synchronized void start(FileUploadNotificationHandler fileUploadNotificationHandler, int linkCredit, int maxBatchSize)
+            throws IllegalArgumentException, IOException
+    {
+        if (fileUploadNotificationHandler == null)
+        {
+            throw new IllegalArgumentException("fileUploadNotificationHandler cannot be null");
+        }
+
+        if (linkCredit < 1 || maxBatchSize < 1 || maxBatchSize > linkCredit)
+        {
+            throw new IllegalArgumentException("linkCredit and maxBatchSize must be at least 1, and maxBatchSize at most linkCredit");
+        }
+
+        if (this.amqpPersistentReceive != null)
+        {
+            throw new IOException("A file upload notification stream is already started. call stop before start");
+        }
+
+        AmqpPersistentReceiveEvent event = bodies ->
+        {
+            List<FileUploadNotification> fileUploadNotifications = parseNotifications(bodies);
+            if (!fileUploadNotifications.isEmpty())
+            {
+                fileUploadNotificationHandler.onFileUploadNotificationsReceived(fileUploadNotifications);
+            }
+        };
+
+        AmqpPersistentReceive persistentReceive = this.iotHubConnectionString == null
+                ? new AmqpPersistentReceive(this.hostName, this.userName, this.sasToken, this.iotHubServiceClientProtocol,
+                        AmqpFileUploadNotificationReceivedHandler.FILENOTIFICATION_ENDPOINT, linkCredit, maxBatchSize, event)
+                : new AmqpPersistentReceive(this.iotHubConnectionString, this.iotHubServiceClientProtocol,
+                        AmqpFileUploadNotificationReceivedHandler.FILENOTIFICATION_ENDPOINT, linkCredit, maxBatchSize, event);
+        persistentReceive.open();
+        this.amqpPersistentReceive = persistentReceive;
+    }
+
+    /**
+     * Stop the persistent notification stream, if one is started. Notifications pushed to the handler but not
+     * completed yet are delivered again to the next stream.
+     */
+    public synchronized void stop()
+    {
+        if (this.amqpPersistentReceive != null)
+        {
+            this.amqpPersistentReceive.close();
+            this.amqpPersistentReceive = null;
+        }
+    }
+
+    private static List<FileUploadNotification> parseNotifications(List<String> bodies)
+    {
+        List<FileUploadNotification> fileUploadNotifications = new ArrayList<>(bodies.size());
+        for (String body : bodies)
+        {
+            try
+            {
+                FileUploadNotificationParser notificationParser = new FileUploadNotificationParser(body);
+                fileUploadNotifications.add(new FileUploadNotification(notificationParser.getDeviceId(),
+                        notificationParser.getBlobUri(), notificationParser.getBlobName(), notificationParser.getLastUpdatedTime(),
+                        notificationParser.getBlobSizeInBytesTag(), notificationParser.getEnqueuedTimeUtc()));
+            }
+            catch (Exception e)
+            {
+                // same as receive(): a notification that cannot be parsed is completed and dropped, it would never parse on redelivery
+            }
+        }
+
+        return fileUploadNotifications;
     }
 
     /**
@@ -10,9 +10,11 @@ import com.microsoft.azure.sdk.iot.deps.serializer.ConfigurationParser;
 import com.microsoft.azure.sdk.iot.deps.serializer.DeviceParser;
 import com.microsoft.azure.sdk.iot.deps.serializer.JobPropertiesParser;
 import com.microsoft.azure.sdk.iot.deps.serializer.RegistryStatisticsParser;
-import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
+import com.microsoft.azure.sdk.iot.service.auth.AuthenticationType;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasTokenProvider;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubExceptionManager;
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpEngines;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpMethod;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpRequest;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponse;
@@ -26,10 +28,14 @@ import java.io.StringReader;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Use the RegistryManager class to manage the identity registry in IoT Hubs.
@@ -38,6 +44,7 @@ public class RegistryManager
 {
     private final Integer DEFAULT_HTTP_TIMEOUT_MS = 24000;
     private static final int EXECUTOR_THREAD_POOL_SIZE = 10;
+    private static final int MAX_DEVICES_PER_BULK_REQUEST = 100;
     private ExecutorService executor;
     private IotHubConnectionString iotHubConnectionString;
 
@@ -106,33 +113,41 @@ public class RegistryManager
             throw new IllegalArgumentException("device cannot be null");
         }
 
+        HttpRequest request = createAddDeviceRequest(device);
+
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_009: [The function shall send the created request and get the response]
+        HttpResponse response = HttpEngines.getEngine().send(request);
+
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_010: [The function shall verify the response status and throw proper Exception]
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_011: [The function shall create a new Device object from the response and return with it]
+        return deviceFromResponse(response);
+    }
+
+    private HttpRequest createAddDeviceRequest(Device device) throws IOException
+    {
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_005: [The function shall deserialize the given device object to Json string]
         String deviceJson = device.toDeviceParser().toJson();
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_006: [The function shall get the URL for the device]
         URL url = iotHubConnectionString.getUrlDevice(device.getDeviceId());
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_007: [The function shall create a new SAS token for the device]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString).toString();
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_008: [The function shall create a new HttpRequest for adding the device to IotHub]
-        HttpRequest request = CreateRequest(url, HttpMethod.PUT, deviceJson.getBytes(), sasTokenString);
-
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_009: [The function shall send the created request and get the response]
-        HttpResponse response = request.send();
+        return CreateRequest(url, HttpMethod.PUT, deviceJson.getBytes(), sasTokenString);
+    }
 
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_010: [The function shall verify the response status and throw proper Exception]
+    private static Device deviceFromResponse(HttpResponse response) throws IotHubException, JsonSyntaxException
+    {
         IotHubExceptionManager.httpResponseVerification(response);
 
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_011: [The function shall create a new Device object from the response and return with it]
         String bodyStr = new String(response.getBody(), StandardCharsets.UTF_8);
-
-        Device iotHubDevice = new Device(new DeviceParser(bodyStr));
-
-        return iotHubDevice;
+        return new Device(new DeviceParser(bodyStr));
     }
 
     /**
-     * Async wrapper for add() operation
+     * Async version of the addDevice() operation. The request is sent by the
+     * {@link HttpEngines#getEngine() http engine} without waiting for the response.
      *
      * @param device The device object to add
      * @return The future object for the requested operation
@@ -147,21 +162,8 @@ public class RegistryManager
             throw new IllegalArgumentException("device cannot be null");
         }
 
-        // Codes_SRS_SERVICE_SDK_JAVA_ REGISTRYMANAGER_12_013: [The function shall create an async wrapper around the addDevice() function call, handle the return value or delegate exception]
-        final CompletableFuture<Device> future = new CompletableFuture<>();
-        executor.submit(() ->
-        {
-            try
-            {
-                Device responseDevice = addDevice(device);
-                future.complete(responseDevice);
-            }
-            catch (IOException | IotHubException e)
-            {
-                future.completeExceptionally(e);
-            }
-        });
-        return future;
+        // Codes_SRS_SERVICE_SDK_JAVA_ REGISTRYMANAGER_12_013: [The function shall send the same request as addDevice() asynchronously, and complete the future with the device from the response or with the exception]
+        return sendAsync(() -> createAddDeviceRequest(device), RegistryManager::deviceFromResponse);
     }
 
     /**
@@ -180,29 +182,30 @@ public class RegistryManager
             throw new IllegalArgumentException("deviceId cannot be null or empty");
         }
 
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_015: [The function shall get the URL for the device]
-        URL url = iotHubConnectionString.getUrlDevice(deviceId);
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_016: [The function shall create a new SAS token for the device]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
-
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_017: [The function shall create a new HttpRequest for getting a device from IotHub]
-        HttpRequest request = CreateRequest(url, HttpMethod.GET, new byte[0], sasTokenString);
+        HttpRequest request = createGetDeviceRequest(deviceId);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_018: [The function shall send the created request and get the response]
-        HttpResponse response = request.send();
+        HttpResponse response = HttpEngines.getEngine().send(request);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_019: [The function shall verify the response status and throw proper Exception]
-        IotHubExceptionManager.httpResponseVerification(response);
-
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_020: [The function shall create a new Device object from the response and return with it]
-        String bodyStr = new String(response.getBody(), StandardCharsets.UTF_8);
+        return deviceFromResponse(response);
+    }
+
+    private HttpRequest createGetDeviceRequest(String deviceId) throws IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_015: [The function shall get the URL for the device]
+        URL url = iotHubConnectionString.getUrlDevice(deviceId);
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_016: [The function shall create a new SAS token for the device]
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString).toString();
 
-        Device iotHubDevice = new Device(new DeviceParser(bodyStr));
-        return iotHubDevice;
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_017: [The function shall create a new HttpRequest for getting a device from IotHub]
+        return CreateRequest(url, HttpMethod.GET, new byte[0], sasTokenString);
     }
 
     /**
-     * Async wrapper for getDevice() operation
+     * Async version of the getDevice() operation. The request is sent by the
+     * {@link HttpEngines#getEngine() http engine} without waiting for the response.
      *
      * @param deviceId The id of requested device
      * @return The future object for the requested operation
@@ -217,21 +220,8 @@ public class RegistryManager
             throw new IllegalArgumentException("deviceId cannot be null or empty");
         }
 
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_022: [The function shall create an async wrapper around the addDevice() function call, handle the return value or delegate exception]
-        final CompletableFuture<Device> future = new CompletableFuture<>();
-        executor.submit(() ->
-        {
-            try
-            {
-                Device responseDevice = getDevice(deviceId);
-                future.complete(responseDevice);
-            }
-            catch (IotHubException | IOException e)
-            {
-                future.completeExceptionally(e);
-            }
-        });
-        return future;
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_022: [The function shall send the same request as getDevice() asynchronously, and complete the future with the device from the response or with the exception]
+        return sendAsync(() -> createGetDeviceRequest(deviceId), RegistryManager::deviceFromResponse);
     }
 
     /**
@@ -254,21 +244,31 @@ public class RegistryManager
             throw new IllegalArgumentException("maxCount cannot be less then 1");
         }
 
+        HttpRequest request = createGetDevicesRequest(maxCount);
+
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_027: [The function shall send the created request and get the response]
+        HttpResponse response = HttpEngines.getEngine().send(request);
+
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_028: [The function shall verify the response status and throw proper Exception]
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_029: [The function shall create a new ArrayList<Device> object from the response and return with it]
+        return devicesFromResponse(response);
+    }
+
+    private HttpRequest createGetDevicesRequest(Integer maxCount) throws IOException
+    {
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_024: [The function shall get the URL for the device]
         URL url = iotHubConnectionString.getUrlDeviceList(maxCount);
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_025: [The function shall create a new SAS token for the device]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString).toString();
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_026: [The function shall create a new HttpRequest for getting a device list from IotHub]
-        HttpRequest request = CreateRequest(url, HttpMethod.GET, new byte[0], sasTokenString);
-
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_027: [The function shall send the created request and get the response]
-        HttpResponse response = request.send();
+        return CreateRequest(url, HttpMethod.GET, new byte[0], sasTokenString);
+    }
 
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_028: [The function shall verify the response status and throw proper Exception]
+    private static ArrayList<Device> devicesFromResponse(HttpResponse response) throws IotHubException, JsonSyntaxException
+    {
         IotHubExceptionManager.httpResponseVerification(response);
 
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_029: [The function shall create a new ArrayList<Device> object from the response and return with it]
         String bodyStr = new String(response.getBody(), StandardCharsets.UTF_8);
         try (JsonReader jsonReader = Json.createReader(new StringReader(bodyStr)))
         {
@@ -286,7 +286,8 @@ public class RegistryManager
     }
 
     /**
-     * Async wrapper for getDevices() operation
+     * Async version of the getDevices() operation. The request is sent by the
+     * {@link HttpEngines#getEngine() http engine} without waiting for the response.
      *
      * @deprecated as of release 1.12.0. Please use
      * {@link com.microsoft.azure.sdk.iot.service.devicetwin.DeviceTwin#queryTwin(String sqlQuery, Integer pageSize)}
@@ -306,21 +307,8 @@ public class RegistryManager
             throw new IllegalArgumentException("maxCount cannot be less then 1");
         }
 
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_031: [The function shall create an async wrapper around the getDevices() function call, handle the return value or delegate exception]
-        final CompletableFuture<ArrayList<Device>> future = new CompletableFuture<>();
-        executor.submit(() ->
-        {
-            try
-            {
-                ArrayList<Device> response = getDevices(maxCount);
-                future.complete(response);
-            }
-            catch (IotHubException | IOException e)
-            {
-                future.completeExceptionally(e);
-            }
-        });
-        return future;
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_031: [The function shall send the same request as getDevices() asynchronously, and complete the future with the devices from the response or with the exception]
+        return sendAsync(() -> createGetDevicesRequest(maxCount), RegistryManager::devicesFromResponse);
     }
 
     /**
@@ -393,33 +381,35 @@ public class RegistryManager
             throw new IllegalArgumentException("device cannot be null");
         }
 
+        HttpRequest request = createUpdateDeviceRequest(device, forceUpdate);
+
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_039: [The function shall send the created request and get the response]
+        HttpResponse response = HttpEngines.getEngine().send(request);
+
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_040: [The function shall verify the response status and throw proper Exception]
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_041: [The function shall create a new Device object from the response and return with it]
+        return deviceFromResponse(response);
+    }
+
+    private HttpRequest createUpdateDeviceRequest(Device device, Boolean forceUpdate) throws IOException
+    {
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_035: [The function shall set forceUpdate on the device]
         device.setForceUpdate(forceUpdate);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_036: [The function shall get the URL for the device]
         URL url = iotHubConnectionString.getUrlDevice(device.getDeviceId());
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_037: [The function shall create a new SAS token for the device]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString).toString();
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_038: [The function shall create a new HttpRequest for updating the device on IotHub]
         HttpRequest request = CreateRequest(url, HttpMethod.PUT, device.toDeviceParser().toJson().getBytes(), sasTokenString);
         request.setHeaderField("If-Match", "*");
-
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_039: [The function shall send the created request and get the response]
-        HttpResponse response = request.send();
-
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_040: [The function shall verify the response status and throw proper Exception]
-        IotHubExceptionManager.httpResponseVerification(response);
-
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_041: [The function shall create a new Device object from the response and return with it]
-        String bodyStr = new String(response.getBody(), StandardCharsets.UTF_8);
-        Device iotHubDevice = new Device(new DeviceParser(bodyStr));
-
-        return iotHubDevice;
+        return request;
     }
 
     /**
-     * Async wrapper for updateDevice() operation
+     * Async version of the updateDevice() operation. The request is sent by the
+     * {@link HttpEngines#getEngine() http engine} without waiting for the response.
      *
      * @param device The device object containing updated data
      * @return The future object for the requested operation
@@ -433,25 +423,13 @@ public class RegistryManager
         {
             throw new IllegalArgumentException("device cannot be null");
         }
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_043: [The function shall create an async wrapper around the updateDevice() function call, handle the return value or delegate exception]
-        final CompletableFuture<Device> future = new CompletableFuture<>();
-        executor.submit(() ->
-        {
-            try
-            {
-                Device responseDevice = updateDevice(device);
-                future.complete(responseDevice);
-            }
-            catch (IotHubException | IOException e)
-            {
-                future.completeExceptionally(e);
-            }
-        });
-        return future;
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_043: [The function shall call updateDeviceAsync with forceUpdate = false]
+        return updateDeviceAsync(device, false);
     }
 
     /**
-     * Async wrapper for forced updateDevice() operation
+     * Async version of the forced updateDevice() operation. The request is sent by the
+     * {@link HttpEngines#getEngine() http engine} without waiting for the response.
      *
      * @param device The device object containing updated data
      * @param forceUpdate True is the update has to be forced regardless if the device state
@@ -466,21 +444,8 @@ public class RegistryManager
         {
             throw new IllegalArgumentException("device cannot be null");
         }
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_045: [The function shall create an async wrapper around the updateDevice(Device, device, Boolean forceUpdate) function call, handle the return value or delegate exception]
-        final CompletableFuture<Device> future = new CompletableFuture<>();
-        executor.submit(() ->
-        {
-            try
-            {
-                Device responseDevice = updateDevice(device, forceUpdate);
-                future.complete(responseDevice);
-            }
-            catch (IotHubException | IOException e)
-            {
-                future.completeExceptionally(e);
-            }
-        });
-        return future;
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_045: [The function shall send the same request as updateDevice(Device device, Boolean forceUpdate) asynchronously, and complete the future with the device from the response or with the exception]
+        return sendAsync(() -> createUpdateDeviceRequest(device, forceUpdate), RegistryManager::deviceFromResponse);
     }
 
     /**
@@ -525,6 +490,17 @@ public class RegistryManager
      * @throws IotHubException This exception is thrown if the response verification failed
      */
     private void removeDeviceOperation(String deviceId, String etag) throws IOException, IotHubException
+    {
+        HttpRequest request = createRemoveDeviceRequest(deviceId, etag);
+
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_050: [The function shall send the created request and get the response]
+        HttpResponse response = HttpEngines.getEngine().send(request);
+
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_051: [The function shall verify the response status and throw proper Exception]
+        IotHubExceptionManager.httpResponseVerification(response);
+    }
+
+    private HttpRequest createRemoveDeviceRequest(String deviceId, String etag) throws IOException
     {
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_046: [The function shall throw IllegalArgumentException if the input deviceId is null or empty]
         if (Tools.isNullOrEmpty(deviceId))
@@ -542,23 +518,19 @@ public class RegistryManager
         URL url = iotHubConnectionString.getUrlDevice(deviceId);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_048: [The function shall create a new SAS token for the device]
-        String sasToken = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        String sasToken = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString).toString();
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_049: [The function shall create a new HttpRequest for removing the device from IotHub]
         HttpRequest request = new HttpRequest(url, HttpMethod.DELETE, new byte[0]);
         request.setReadTimeoutMillis(DEFAULT_HTTP_TIMEOUT_MS);
         request.setHeaderField("authorization", sasToken);
         request.setHeaderField("If-Match", etag);
-
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_050: [The function shall send the created request and get the response]
-        HttpResponse response = request.send();
-
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_051: [The function shall verify the response status and throw proper Exception]
-        IotHubExceptionManager.httpResponseVerification(response);
+        return request;
     }
 
     /**
-     * Async wrapper for removeDevice() operation
+     * Async version of the removeDevice() operation. The request is sent by the
+     * {@link HttpEngines#getEngine() http engine} without waiting for the response.
      *
      * @param deviceId The device object to remove
      * @return The future object for the requested operation
@@ -574,21 +546,183 @@ public class RegistryManager
             throw new IllegalArgumentException("deviceId cannot be null or empty");
         }
 
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_053: [The function shall create an async wrapper around the removeDevice() function call, handle the return value or delegate exception]
-        final CompletableFuture<Boolean> future = new CompletableFuture<Boolean>();
-        executor.submit(() ->
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_053: [The function shall send the same request as removeDevice() asynchronously, and complete the future with true or with the exception]
+        return sendAsync(() -> createRemoveDeviceRequest(deviceId, "*"), response ->
+        {
+            IotHubExceptionManager.httpResponseVerification(response);
+            return true;
+        });
+    }
+
+    /**
+     * Create multiple devices using the bulk registry endpoint of the hub. The devices are sent in requests of up
+     * to 100 devices each, and the requests are run concurrently on this registry manager's executor service.
+     *
+     * @param devices The devices to create
+     * @return The combined result of all requests, with an error for each device that could not be created
+     * @throws IllegalArgumentException This exception is thrown if the collection or one of its devices is null
+     * @throws IOException This exception is thrown if the IO operation of a request failed
+     * @throws IotHubException This exception is thrown if the verification of a request failed. The other requests may have been applied
+     */
+    public BulkRegistryOperationResult addDevices(Collection<Device> devices) throws IllegalArgumentException, IOException, IotHubException
+    {
+        return bulkDeviceOperation(devices, ImportMode.Create);
+    }
+
+    /**
+     * Update multiple devices, not forced, using the bulk registry endpoint of the hub. The devices are sent in
+     * requests of up to 100 devices each, and the requests are run concurrently on this registry manager's
+     * executor service.
+     *
+     * @param devices The devices containing the updated data
+     * @return The combined result of all requests, with an error for each device that could not be updated
+     * @throws IllegalArgumentException This exception is thrown if the collection or one of its devices is null
+     * @throws IOException This exception is thrown if the IO operation of a request failed
+     * @throws IotHubException This exception is thrown if the verification of a request failed. The other requests may have been applied
+     */
+    public BulkRegistryOperationResult updateDevices(Collection<Device> devices) throws IllegalArgumentException, IOException, IotHubException
+    {
+        return bulkDeviceOperation(devices, ImportMode.Update);
+    }
+
+    /**
+     * Remove multiple devices using the bulk registry endpoint of the hub. A device with an eTag other than "*" is
+     * only removed if its eTag still matches. The devices are sent in requests of up to 100 devices each, and the
+     * requests are run concurrently on this registry manager's executor service.
+     *
+     * @param devices The devices to remove
+     * @return The combined result of all requests, with an error for each device that could not be removed
+     * @throws IllegalArgumentException This exception is thrown if the collection or one of its devices is null
+     * @throws IOException This exception is thrown if the IO operation of a request failed
+     * @throws IotHubException This exception is thrown if the verification of a request failed. The other requests may have been applied
+     */
+    public BulkRegistryOperationResult removeDevices(Collection<Device> devices) throws IllegalArgumentException, IOException, IotHubException
+    {
+        return bulkDeviceOperation(devices, ImportMode.Delete);
+    }
+
+    private BulkRegistryOperationResult bulkDeviceOperation(Collection<Device> devices, ImportMode importMode)
+            throws IllegalArgumentException, IOException, IotHubException
+    {
+        if (devices == null)
+        {
+            throw new IllegalArgumentException("devices cannot be null");
+        }
+
+        List<List<ExportImportDevice>> chunks = new ArrayList<>();
+        List<ExportImportDevice> chunk = null;
+        for (Device device : devices)
+        {
+            if (device == null)
+            {
+                throw new IllegalArgumentException("devices cannot contain null");
+            }
+
+            if (chunk == null || chunk.size() == MAX_DEVICES_PER_BULK_REQUEST)
+            {
+                chunk = new ArrayList<>(MAX_DEVICES_PER_BULK_REQUEST);
+                chunks.add(chunk);
+            }
+
+            chunk.add(toExportImportDevice(device, importMode));
+        }
+
+        List<Future<BulkRegistryOperationResult>> futures = new ArrayList<>(chunks.size());
+        for (List<ExportImportDevice> exportImportDevices : chunks)
+        {
+            futures.add(executor.submit(() -> sendBulkRequest(exportImportDevices)));
+        }
+
+        // wait for every request before reporting a failure, so none is left running unobserved
+        BulkRegistryOperationResult result = new BulkRegistryOperationResult();
+        Exception failure = null;
+        for (Future<BulkRegistryOperationResult> future : futures)
         {
             try
             {
-                removeDevice(deviceId);
-                future.complete(true);
+                result.merge(future.get());
             }
-            catch (IotHubException | IOException e)
+            catch (InterruptedException e)
             {
-                future.completeExceptionally(e);
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the bulk registry requests", e);
             }
-        });
-        return future;
+            catch (ExecutionException e)
+            {
+                if (failure == null)
+                {
+                    failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+        }
+
+        if (failure instanceof IotHubException)
+        {
+            throw (IotHubException) failure;
+        }
+        else if (failure instanceof IOException)
+        {
+            throw (IOException) failure;
+        }
+        else if (failure != null)
+        {
+            throw new IOException("A bulk registry request failed", failure);
+        }
+
+        return result;
+    }
+
+    private BulkRegistryOperationResult sendBulkRequest(List<ExportImportDevice> exportImportDevices) throws IOException, IotHubException
+    {
+        StringBuilder bodyBuilder = new StringBuilder("[");
+        for (ExportImportDevice exportImportDevice : exportImportDevices)
+        {
+            if (bodyBuilder.length() > 1)
+            {
+                bodyBuilder.append(',');
+            }
+            bodyBuilder.append(exportImportDevice.toExportImportDeviceParser().toJson());
+        }
+        bodyBuilder.append(']');
+
+        URL url = iotHubConnectionString.getUrlBulkDevices();
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString).toString();
+
+        HttpRequest request = CreateRequest(url, HttpMethod.POST, bodyBuilder.toString().getBytes(StandardCharsets.UTF_8), sasTokenString);
+        HttpResponse response = HttpEngines.getEngine().send(request);
+
+        IotHubExceptionManager.httpResponseVerification(response);
+
+        String bodyStr = new String(response.getBody(), StandardCharsets.UTF_8);
+        return BulkRegistryOperationResult.fromJson(bodyStr);
+    }
+
+    private static ExportImportDevice toExportImportDevice(Device device, ImportMode importMode)
+    {
+        // certificate authority authentication generates no keys; it is replaced by the device's own authentication below
+        ExportImportDevice exportImportDevice = new ExportImportDevice(device.getDeviceId(), AuthenticationType.CERTIFICATE_AUTHORITY);
+
+        if (importMode == ImportMode.Delete)
+        {
+            String eTag = device.geteTag();
+            if (!Tools.isNullOrEmpty(eTag) && !"*".equals(eTag))
+            {
+                exportImportDevice.seteTag(eTag);
+                importMode = ImportMode.DeleteIfMatchETag;
+            }
+        }
+        else
+        {
+            exportImportDevice.setStatus(device.getStatus());
+            exportImportDevice.setStatusReason(device.getStatusReason());
+            if (device.authentication != null)
+            {
+                exportImportDevice.setAuthentication(device.authentication);
+            }
+        }
+
+        exportImportDevice.setImportMode(importMode);
+        return exportImportDevice;
     }
 
     /**
@@ -599,30 +733,41 @@ public class RegistryManager
      * @throws IotHubException This exception is thrown if the response verification failed
      */
     public RegistryStatistics getStatistics() throws IOException, IotHubException, JsonSyntaxException
+    {
+        HttpRequest request = createGetStatisticsRequest();
+
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_057: [The function shall send the created request and get the response]
+        HttpResponse response = HttpEngines.getEngine().send(request);
+
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_058: [The function shall verify the response status and throw proper Exception]
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_059: [The function shall create a new RegistryStatistics object from the response and return with it]
+        return statisticsFromResponse(response);
+    }
+
+    private HttpRequest createGetStatisticsRequest() throws IOException
     {
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_054: [The function shall get the URL for the device]
         URL url = iotHubConnectionString.getUrlDeviceStatistics();
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_055: [The function shall create a new SAS token for the device]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString).toString();
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_056: [The function shall create a new HttpRequest for getting statistics a device from IotHub]
-        HttpRequest request = CreateRequest(url, HttpMethod.GET, new byte[0], sasTokenString);
-
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_057: [The function shall send the created request and get the response]
-        HttpResponse response = request.send();
+        return CreateRequest(url, HttpMethod.GET, new byte[0], sasTokenString);
+    }
 
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_058: [The function shall verify the response status and throw proper Exception]
+    private static RegistryStatistics statisticsFromResponse(HttpResponse response) throws IotHubException, JsonSyntaxException
+    {
         IotHubExceptionManager.httpResponseVerification(response);
 
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_059: [The function shall create a new RegistryStatistics object from the response and return with it]
         String bodyStr = new String(response.getBody(), StandardCharsets.UTF_8);
         RegistryStatistics registryStatistics = new RegistryStatistics(new RegistryStatisticsParser(bodyStr));
         return registryStatistics;
     }
 
     /**
-     * Async wrapper for getStatistics() operation
+     * Async version of the getStatistics() operation. The request is sent by the
+     * {@link HttpEngines#getEngine() http engine} without waiting for the response.
      *
      * @return The future object for the requested operation
      * @throws IOException This exception is thrown if the IO operation failed
@@ -630,21 +775,8 @@ public class RegistryManager
      */
     public CompletableFuture<RegistryStatistics> getStatisticsAsync() throws IOException, IotHubException
     {
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_060: [The function shall create an async wrapper around the getStatistics() function call, handle the return value or delegate exception]
-        final CompletableFuture<RegistryStatistics> future = new CompletableFuture<>();
-        executor.submit(() ->
-        {
-            try
-            {
-                RegistryStatistics responseDevice = getStatistics();
-                future.complete(responseDevice);
-            }
-            catch (IotHubException | IOException e)
-            {
-                future.completeExceptionally(e);
-            }
-        });
-        return future;
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_060: [The function shall send the same request as getStatistics() asynchronously, and complete the future with the statistics from the response or with the exception]
+        return sendAsync(() -> createGetStatisticsRequest(), RegistryManager::statisticsFromResponse);
     }
 
     /**
@@ -661,6 +793,19 @@ public class RegistryManager
      */
     public JobProperties exportDevices(String exportBlobContainerUri, Boolean excludeKeys)
             throws IllegalArgumentException, IOException, IotHubException, JsonSyntaxException
+    {
+        HttpRequest request = createExportDevicesRequest(exportBlobContainerUri, excludeKeys);
+
+        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_065: [The function shall send the created request and get the response]
+        HttpResponse response = HttpEngines.getEngine().send(request);
+
+        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_066: [The function shall verify the response status and throw proper Exception]
+        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_067: [The function shall create a new JobProperties object from the response and return it]
+        return ProcessJobResponse(response);
+    }
+
+    private HttpRequest createExportDevicesRequest(String exportBlobContainerUri, Boolean excludeKeys)
+            throws IllegalArgumentException, IOException
     {
         // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_061: [The function shall throw IllegalArgumentException
         // if any of the input parameters is null]
@@ -673,22 +818,17 @@ public class RegistryManager
         URL url = iotHubConnectionString.getUrlCreateExportImportJob();
 
         // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_063: [The function shall create a new SAS token for the bulk export job]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString).toString();
 
         // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_064: [The function shall create a new HttpRequest for the bulk export job creation ]
         String jobPropertiesJson = CreateExportJobPropertiesJson(exportBlobContainerUri, excludeKeys);
-        HttpRequest request = CreateRequest(url, HttpMethod.POST, jobPropertiesJson.getBytes(), sasTokenString);
-
-        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_065: [The function shall send the created request and get the response]
-        HttpResponse response = request.send();
-
-        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_066: [The function shall verify the response status and throw proper Exception]
-        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_067: [The function shall create a new JobProperties object from the response and return it]
-        return ProcessJobResponse(response);
+        return CreateRequest(url, HttpMethod.POST, jobPropertiesJson.getBytes(), sasTokenString);
     }
 
     /**
-     * Async wrapper for exportDevices() operation
+     * Async version of the exportDevices() operation. The request is sent by the
+     * {@link HttpEngines#getEngine() http engine} without waiting for the response.
+     *
      * @param excludeKeys if to exclude keys or not
      * @param exportBlobContainerUri the blob storage container URI to store at.
      * @return The future object for the requested operation
@@ -700,22 +840,9 @@ public class RegistryManager
     public CompletableFuture<JobProperties> exportDevicesAsync(String exportBlobContainerUri, Boolean excludeKeys)
             throws IllegalArgumentException, IOException, IotHubException, JsonSyntaxException
     {
-        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_068: [The function shall create an async wrapper around the
-        // exportDevices() function call, handle the return value or delegate exception]
-        final CompletableFuture<JobProperties> future = new CompletableFuture<>();
-        executor.submit(() ->
-        {
-            try
-            {
-                JobProperties responseJobProperties = exportDevices(exportBlobContainerUri, excludeKeys);
-                future.complete(responseJobProperties);
-            }
-            catch (IllegalArgumentException | IotHubException | IOException e)
-            {
-                future.completeExceptionally(e);
-            }
-        });
-        return future;
+        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_068: [The function shall send the same request as exportDevices()
+        // asynchronously, and complete the future with the job properties from the response or with the exception]
+        return sendAsync(() -> createExportDevicesRequest(exportBlobContainerUri, excludeKeys), this::ProcessJobResponse);
     }
 
     /**
@@ -732,6 +859,19 @@ public class RegistryManager
      */
     public JobProperties importDevices(String importBlobContainerUri, String outputBlobContainerUri)
             throws IllegalArgumentException, IOException, IotHubException, JsonSyntaxException
+    {
+        HttpRequest request = createImportDevicesRequest(importBlobContainerUri, outputBlobContainerUri);
+
+        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_073: [The function shall send the created request and get the response]
+        HttpResponse response = HttpEngines.getEngine().send(request);
+
+        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_074: [The function shall verify the response status and throw proper Exception]
+        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_075: [The function shall create a new JobProperties object from the response and return it]
+        return ProcessJobResponse(response);
+    }
+
+    private HttpRequest createImportDevicesRequest(String importBlobContainerUri, String outputBlobContainerUri)
+            throws IllegalArgumentException, IOException
     {
         // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_069: [The function shall throw IllegalArgumentException if any of the input parameters is null]
         if (importBlobContainerUri == null || outputBlobContainerUri == null)
@@ -743,22 +883,16 @@ public class RegistryManager
         URL url = iotHubConnectionString.getUrlCreateExportImportJob();
 
         // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_071: [The function shall create a new SAS token for the bulk import job]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString).toString();
 
         // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_072: [The function shall create a new HttpRequest for the bulk import job creation]
         String jobPropertiesJson = CreateImportJobPropertiesJson(importBlobContainerUri, outputBlobContainerUri);
-        HttpRequest request = CreateRequest(url, HttpMethod.POST, jobPropertiesJson.getBytes(), sasTokenString);
-
-        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_073: [The function shall send the created request and get the response]
-        HttpResponse response = request.send();
-
-        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_074: [The function shall verify the response status and throw proper Exception]
-        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_075: [The function shall create a new JobProperties object from the response and return it]
-        return ProcessJobResponse(response);
+        return CreateRequest(url, HttpMethod.POST, jobPropertiesJson.getBytes(), sasTokenString);
     }
 
     /**
-     * Async wrapper for importDevices() operation
+     * Async version of the importDevices() operation. The request is sent by the
+     * {@link HttpEngines#getEngine() http engine} without waiting for the response.
      *
      * @param importBlobContainerUri Uri for importBlobContainer
      * @param outputBlobContainerUri Uri for outputBlobContainer
@@ -771,22 +905,9 @@ public class RegistryManager
     public CompletableFuture<JobProperties> importDevicesAsync(String importBlobContainerUri, String outputBlobContainerUri)
             throws IllegalArgumentException, IOException, IotHubException, JsonSyntaxException
     {
-        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_076: [The function shall create an async wrapper around
-        // the importDevices() function call, handle the return value or delegate exception]
-        final CompletableFuture<JobProperties> future = new CompletableFuture<>();
-        executor.submit(() ->
-        {
-            try
-            {
-                JobProperties responseJobProperties = importDevices(importBlobContainerUri, outputBlobContainerUri);
-                future.complete(responseJobProperties);
-            }
-            catch (IllegalArgumentException | IotHubException | IOException e)
-            {
-                future.completeExceptionally(e);
-            }
-        });
-        return future;
+        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_076: [The function shall send the same request as importDevices()
+        // asynchronously, and complete the future with the job properties from the response or with the exception]
+        return sendAsync(() -> createImportDevicesRequest(importBlobContainerUri, outputBlobContainerUri), this::ProcessJobResponse);
     }
 
     /**
@@ -801,6 +922,18 @@ public class RegistryManager
      * @throws IotHubException This exception is thrown if the response verification failed
      */
     public JobProperties getJob(String jobId) throws IllegalArgumentException, IOException, IotHubException, JsonSyntaxException
+    {
+        HttpRequest request = createGetJobRequest(jobId);
+
+        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_081: [The function shall send the created request and get the response]
+        HttpResponse response = HttpEngines.getEngine().send(request);
+
+        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_082: [The function shall verify the response status and throw proper Exception ]
+        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_083: [The function shall create a new JobProperties object from the response and return it]
+        return ProcessJobResponse(response);
+    }
+
+    private HttpRequest createGetJobRequest(String jobId) throws IllegalArgumentException, IOException
     {
         // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_077: [The function shall throw IllegalArgumentException if the input parameter is null]
         if (jobId == null)
@@ -812,21 +945,16 @@ public class RegistryManager
         URL url = iotHubConnectionString.getUrlImportExportJob(jobId);
 
         // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_079: [The function shall create a new SAS token for the get request **]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString).toString();
 
         // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_080: [The function shall create a new HttpRequest for getting the properties of a job]
-        HttpRequest request = CreateRequest(url, HttpMethod.GET, new byte[0], sasTokenString);
-
-        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_081: [The function shall send the created request and get the response]
-        HttpResponse response = request.send();
-
-        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_082: [The function shall verify the response status and throw proper Exception ]
-        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_083: [The function shall create a new JobProperties object from the response and return it]
-        return ProcessJobResponse(response);
+        return CreateRequest(url, HttpMethod.GET, new byte[0], sasTokenString);
     }
 
     /**
-     * Async wrapper for getJob() operation
+     * Async version of the getJob() operation. The request is sent by the
+     * {@link HttpEngines#getEngine() http engine} without waiting for the response.
+     *
      * @param jobId jobID as String
      * @return The future object for the requested operation
      *
@@ -837,22 +965,9 @@ public class RegistryManager
     public CompletableFuture<JobProperties> getJobAsync(
             String jobId) throws IllegalArgumentException, IOException, IotHubException
     {
-        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_084: [The function shall create an async wrapper around
-        // the getJob() function call, handle the return value or delegate exception]
-        final CompletableFuture<JobProperties> future = new CompletableFuture<>();
-        executor.submit(() ->
-        {
-            try
-            {
-                JobProperties responseJobProperties = getJob(jobId);
-                future.complete(responseJobProperties);
-            }
-            catch (IllegalArgumentException | IotHubException | IOException e)
-            {
-                future.completeExceptionally(e);
-            }
-        });
-        return future;
+        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_084: [The function shall send the same request as getJob()
+        // asynchronously, and complete the future with the job properties from the response or with the exception]
+        return sendAsync(() -> createGetJobRequest(jobId), this::ProcessJobResponse);
     }
 
     /**
@@ -878,13 +993,13 @@ public class RegistryManager
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_003: [The function shall get the URL for the module]
         URL url = iotHubConnectionString.getUrlModule(module.getDeviceId(), module.getId());
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_004: [The function shall create a new SAS token for the module]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString).toString();
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_005: [The function shall create a new HttpRequest for adding the module to IotHub]
         HttpRequest request = CreateRequest(url, HttpMethod.PUT, moduleJson.getBytes(), sasTokenString);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_006: [The function shall send the created request and get the response]
-        HttpResponse response = request.send();
+        HttpResponse response = HttpEngines.getEngine().send(request);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_007: [The function shall verify the response status and throw proper Exception]
         IotHubExceptionManager.httpResponseVerification(response);
@@ -923,13 +1038,13 @@ public class RegistryManager
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_011: [The function shall get the URL for the device]
         URL url = iotHubConnectionString.getUrlModule(deviceId, moduleId);
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_012: [The function shall create a new SAS token for the device]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString).toString();
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_013: [The function shall create a new HttpRequest for getting a device from IotHub]
         HttpRequest request = CreateRequest(url, HttpMethod.GET, new byte[0], sasTokenString);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_014: [The function shall send the created request and get the response]
-        HttpResponse response = request.send();
+        HttpResponse response = HttpEngines.getEngine().send(request);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_015: [The function shall verify the response status and throw proper Exception]
         IotHubExceptionManager.httpResponseVerification(response);
@@ -960,13 +1075,13 @@ public class RegistryManager
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_018: [The function shall get the URL for the device]
         URL url = iotHubConnectionString.getUrlModulesOnDevice(deviceId);
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_019: [The function shall create a new SAS token for the device]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString).toString();
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_020: [The function shall create a new HttpRequest for getting a device from IotHub]
         HttpRequest request = CreateRequest(url, HttpMethod.GET, new byte[0], sasTokenString);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_021: [The function shall send the created request and get the response]
-        HttpResponse response = request.send();
+        HttpResponse response = HttpEngines.getEngine().send(request);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_022: [The function shall verify the response status and throw proper Exception]
         IotHubExceptionManager.httpResponseVerification(response);
@@ -1030,14 +1145,14 @@ public class RegistryManager
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_028: [The function shall get the URL for the module]
         URL url = iotHubConnectionString.getUrlModule(module.getDeviceId(), module.getId());
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_029: [The function shall create a new SAS token for the module]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString).toString();
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_030: [The function shall create a new HttpRequest for updating the module on IotHub]
         HttpRequest request = CreateRequest(url, HttpMethod.PUT, module.toDeviceParser().toJson().getBytes(), sasTokenString);
         request.setHeaderField("If-Match", "*");
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_031: [The function shall send the created request and get the response]
-        HttpResponse response = request.send();
+        HttpResponse response = HttpEngines.getEngine().send(request);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_032: [The function shall verify the response status and throw proper Exception]
         IotHubExceptionManager.httpResponseVerification(response);
@@ -1116,7 +1231,7 @@ public class RegistryManager
         URL url = iotHubConnectionString.getUrlModule(deviceId, moduleId);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_037: [The function shall create a new SAS token for the module]
-        String sasToken = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        String sasToken = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString).toString();
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_038: [The function shall create a new HttpRequest for removing the module from IotHub]
         HttpRequest request = new HttpRequest(url, HttpMethod.DELETE, new byte[0]);
@@ -1125,7 +1240,7 @@ public class RegistryManager
         request.setHeaderField("If-Match", etag);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_039: [The function shall send the created request and get the response]
-        HttpResponse response = request.send();
+        HttpResponse response = HttpEngines.getEngine().send(request);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_040: [The function shall verify the response status and throw proper Exception]
         IotHubExceptionManager.httpResponseVerification(response);
@@ -1154,13 +1269,13 @@ public class RegistryManager
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_043: [The function shall get the URL for the configuration]
         URL url = iotHubConnectionString.getUrlConfiguration(configuration.getId());
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_044: [The function shall create a new SAS token for the configuration]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString).toString();
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_045: [The function shall create a new HttpRequest for adding the configuration to IotHub]
         HttpRequest request = CreateRequest(url, HttpMethod.PUT, configurationJson.getBytes(), sasTokenString);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_046: [The function shall send the created request and get the response]
-        HttpResponse response = request.send();
+        HttpResponse response = HttpEngines.getEngine().send(request);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_047: [The function shall verify the response status and throw proper Exception]
         IotHubExceptionManager.httpResponseVerification(response);
@@ -1192,13 +1307,13 @@ public class RegistryManager
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_050: [The function shall get the URL for the device]
         URL url = iotHubConnectionString.getUrlConfiguration(configurationId);
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_051: [The function shall create a new SAS token for the device]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString).toString();
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_052: [The function shall create a new HttpRequest for getting a device from IotHub]
         HttpRequest request = CreateRequest(url, HttpMethod.GET, new byte[0], sasTokenString);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_053: [The function shall send the created request and get the response]
-        HttpResponse response = request.send();
+        HttpResponse response = HttpEngines.getEngine().send(request);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_054: [The function shall verify the response status and throw proper Exception]
         IotHubExceptionManager.httpResponseVerification(response);
@@ -1229,13 +1344,13 @@ public class RegistryManager
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_057: [The function shall get the URL for the device]
         URL url = iotHubConnectionString.getUrlConfigurationsList(maxCount);
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_058: [The function shall create a new SAS token for the device]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString).toString();
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_059: [The function shall create a new HttpRequest for getting a device from IotHub]
         HttpRequest request = CreateRequest(url, HttpMethod.GET, new byte[0], sasTokenString);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_060: [The function shall send the created request and get the response]
-        HttpResponse response = request.send();
+        HttpResponse response = HttpEngines.getEngine().send(request);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_061: [The function shall verify the response status and throw proper Exception]
         IotHubExceptionManager.httpResponseVerification(response);
@@ -1299,14 +1414,14 @@ public class RegistryManager
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_067: [The function shall get the URL for the configuration]
         URL url = iotHubConnectionString.getUrlConfiguration(configuration.getId());
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_068: [The function shall create a new SAS token for the configuration]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString).toString();
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_069: [The function shall create a new HttpRequest for updating the device on IotHub]
         HttpRequest request = CreateRequest(url, HttpMethod.PUT, configuration.toConfigurationParser().toJson().getBytes(), sasTokenString);
         request.setHeaderField("If-Match", "*");
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_070: [The function shall send the created request and get the response]
-        HttpResponse response = request.send();
+        HttpResponse response = HttpEngines.getEngine().send(request);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_071: [The function shall verify the response status and throw proper Exception]
         IotHubExceptionManager.httpResponseVerification(response);
@@ -1377,7 +1492,7 @@ public class RegistryManager
         URL url = iotHubConnectionString.getUrlConfiguration(configurationId);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_075: [The function shall create a new SAS token for the configuration]
-        String sasToken = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        String sasToken = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString).toString();
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_076: [The function shall create a new HttpRequest for removing the configuration from IotHub]
         HttpRequest request = new HttpRequest(url, HttpMethod.DELETE, new byte[0]);
@@ -1386,7 +1501,7 @@ public class RegistryManager
         request.setHeaderField("If-Match", etag);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_077: [The function shall send the created request and get the response]
-        HttpResponse response = request.send();
+        HttpResponse response = HttpEngines.getEngine().send(request);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_28_078: [The function shall verify the response status and throw proper Exception]
         IotHubExceptionManager.httpResponseVerification(response);
@@ -1411,11 +1526,11 @@ public class RegistryManager
         URL url = iotHubConnectionString.getUrlApplyConfigurationContent(deviceId);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_34_090: [The function shall create a new SAS token for the configuration]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString).toString();
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_34_091: [The function shall send a new HTTP POST request with the created url, sas token, and the provided content in json form as the body.]
         HttpRequest request = CreateRequest(url, HttpMethod.POST, content.toConfigurationContentParser().toJson().getBytes(), sasTokenString);
-        HttpResponse response = request.send();
+        HttpResponse response = HttpEngines.getEngine().send(request);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_34_092: [The function shall verify the response status and throw proper Exception]
         IotHubExceptionManager.httpResponseVerification(response);
@@ -1439,6 +1554,57 @@ public class RegistryManager
         return jobProperties.toJobPropertiesParser().toJson();
     }
 
+    /**
+     * Create the request and send it with the http engine on this registry manager's executor without waiting for
+     * the response, and complete the returned future with the result of the response handler. A failure to create
+     * the request, of the engine or of the handler completes the future exceptionally, as it did when the whole
+     * synchronous operation ran on the executor.
+     */
+    private <T> CompletableFuture<T> sendAsync(HttpRequestFactory requestFactory, HttpResponseHandler<T> responseHandler)
+    {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+
+        HttpRequest request;
+        try
+        {
+            request = requestFactory.create();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        HttpEngines.getEngine().sendAsync(request, this.executor).whenComplete((response, throwable) ->
+        {
+            if (throwable != null)
+            {
+                future.completeExceptionally(throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable);
+                return;
+            }
+
+            try
+            {
+                future.complete(responseHandler.handle(response));
+            }
+            catch (IOException | IotHubException | RuntimeException e)
+            {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    private interface HttpRequestFactory
+    {
+        HttpRequest create() throws IOException;
+    }
+
+    private interface HttpResponseHandler<T>
+    {
+        T handle(HttpResponse response) throws IOException, IotHubException;
+    }
+
     private JobProperties ProcessJobResponse(HttpResponse response) throws IotHubException, JsonSyntaxException {
         IotHubExceptionManager.httpResponseVerification(response);
         String bodyStr = new String(response.getBody(), StandardCharsets.UTF_8);
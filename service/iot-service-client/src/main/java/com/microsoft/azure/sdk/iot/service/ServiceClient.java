@@ -6,11 +6,14 @@
 package com.microsoft.azure.sdk.iot.service;
 
 import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasTokenProvider;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
+import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpPersistentSend;
 import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpSend;
 
 import java.io.IOException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -22,6 +25,7 @@ public class ServiceClient
     private final ExecutorService executor = Executors.newFixedThreadPool(10);
 
     private AmqpSend amqpMessageSender;
+    private AmqpPersistentSend amqpPersistentMessageSender;
     private final String hostName;
     private final String userName;
     private final String sasToken;
@@ -51,6 +55,30 @@ public class ServiceClient
         return iotServiceClient;
     }
 
+    /**
+     * Create ServiceClient from the specified connection string and options
+     * @param iotHubServiceClientProtocol  protocol to use
+     * @param connectionString The connection string for the IotHub
+     * @param options The options for the client, for instance to keep one connection open between open and close
+     * @return The created ServiceClient object
+     * @throws IOException This exception is thrown if the object creation failed
+     */
+    public static ServiceClient createFromConnectionString(String connectionString, IotHubServiceClientProtocol iotHubServiceClientProtocol, ServiceClientOptions options) throws IOException
+    {
+        if (Tools.isNullOrEmpty(connectionString))
+        {
+            throw new IllegalArgumentException(connectionString);
+        }
+
+        if (options == null)
+        {
+            throw new IllegalArgumentException("options cannot be null");
+        }
+
+        IotHubConnectionString iotHubConnectionString = IotHubConnectionStringBuilder.createConnectionString(connectionString);
+        return new ServiceClient(iotHubConnectionString, iotHubServiceClientProtocol, options);
+    }
+
     /**
      * Initialize AMQP sender using given connection string
      *
@@ -66,7 +94,7 @@ public class ServiceClient
         }
 
         // Codes_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_12_005: [The constructor shall create a SAS token object using the IotHubConnectionString]
-        IotHubServiceSasToken iotHubServiceSasToken = new IotHubServiceSasToken(iotHubConnectionString);
+        IotHubServiceSasToken iotHubServiceSasToken = IotHubServiceSasTokenProvider.getSasToken(iotHubConnectionString);
 
         // Codes_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_12_006: [The constructor shall store connection string, hostname, username and sasToken]
         this.iotHubConnectionString = iotHubConnectionString;
@@ -79,6 +107,23 @@ public class ServiceClient
         this.amqpMessageSender = new AmqpSend(hostName, userName, sasToken, this.iotHubServiceClientProtocol);
     }
 
+    /**
+     * Initialize AMQP sender using given connection string and options
+     *
+     * @param iotHubConnectionString The ConnectionString object for the IotHub
+     * @param iotHubServiceClientProtocol protocol to use
+     * @param options The options for the client
+     */
+    protected ServiceClient(IotHubConnectionString iotHubConnectionString, IotHubServiceClientProtocol iotHubServiceClientProtocol, ServiceClientOptions options)
+    {
+        this(iotHubConnectionString, iotHubServiceClientProtocol);
+
+        if (options.isPersistentConnection())
+        {
+            this.amqpPersistentMessageSender = new AmqpPersistentSend(iotHubConnectionString, iotHubServiceClientProtocol);
+        }
+    }
+
     /**
      * Open AMQP sender
      * @throws IOException This exception is thrown if the AmqpSender object is not initialized
@@ -92,6 +137,11 @@ public class ServiceClient
         }
         // Codes_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_12_009: [The function shall call open() on the member AMQP sender object]
         this.amqpMessageSender.open();
+
+        if (this.amqpPersistentMessageSender != null)
+        {
+            this.amqpPersistentMessageSender.open();
+        }
     }
 
     /**
@@ -107,6 +157,11 @@ public class ServiceClient
         }
         // Codes_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_12_011: [The function shall call close() on the member AMQP sender object]
         this.amqpMessageSender.close();
+
+        if (this.amqpPersistentMessageSender != null)
+        {
+            this.amqpPersistentMessageSender.close();
+        }
     }
 
     /**
@@ -139,6 +194,33 @@ public class ServiceClient
         {
             throw new IOException("AMQP sender is not initialized");
         }
+
+        if (this.amqpPersistentMessageSender != null)
+        {
+            try
+            {
+                this.amqpPersistentMessageSender.send(deviceId, moduleId, message).get();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the message to be acknowledged", e);
+            }
+            catch (ExecutionException e)
+            {
+                if (e.getCause() instanceof IotHubException)
+                {
+                    throw (IotHubException) e.getCause();
+                }
+                if (e.getCause() instanceof IOException)
+                {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            }
+            return;
+        }
+
         // Codes_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_28_002: [The function shall call send() on the member AMQP sender object with the given parameters]
         this.amqpMessageSender.send(deviceId, moduleId, message);
     }
@@ -196,6 +278,21 @@ public class ServiceClient
      */
     public CompletableFuture<Void> sendAsync(String deviceId, Message message)
     {
+        if (this.amqpPersistentMessageSender != null)
+        {
+            // the persistent sender completes the future from its own thread, no pool thread is needed
+            try
+            {
+                return this.amqpPersistentMessageSender.send(deviceId, null, message);
+            }
+            catch (IllegalArgumentException e)
+            {
+                final CompletableFuture<Void> future = new CompletableFuture<>();
+                future.completeExceptionally(e);
+                return future;
+            }
+        }
+
         // Codes_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_12_016: [The function shall create an async wrapper around the send() function call]
         final CompletableFuture<Void> future = new CompletableFuture<>();
         executor.submit(() -> {
@@ -234,7 +331,7 @@ public class ServiceClient
      public FeedbackReceiver getFeedbackReceiver()
     {
         // Codes_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_12_018: [The function shall create a FeedbackReceiver object and returns with it. This API doesn't need deviceId as an input parameter]
-        FeedbackReceiver feedbackReceiver = new FeedbackReceiver(hostName, userName, sasToken, iotHubServiceClientProtocol);
+        FeedbackReceiver feedbackReceiver = new FeedbackReceiver(this.iotHubConnectionString, iotHubServiceClientProtocol);
         return feedbackReceiver;
     }
 
@@ -245,7 +342,7 @@ public class ServiceClient
      */
     public FileUploadNotificationReceiver getFileUploadNotificationReceiver()
     {
-        return new FileUploadNotificationReceiver(hostName, userName, sasToken, iotHubServiceClientProtocol);
+        return new FileUploadNotificationReceiver(this.iotHubConnectionString, iotHubServiceClientProtocol);
     }
     
 }
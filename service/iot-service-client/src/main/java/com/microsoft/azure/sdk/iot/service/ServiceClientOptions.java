@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service;
+
+/**
+ * Optional settings for a {@link ServiceClient}
+ */
+public class ServiceClientOptions
+{
+    private boolean persistentConnection;
+
+    /**
+     * Constructor for the default ServiceClientOptions object. Every send uses its own short lived connection
+     */
+    public ServiceClientOptions()
+    {
+        this.persistentConnection = false;
+    }
+
+    /**
+     * Getter for PersistentConnection
+     *
+     * @return true if the service client keeps one connection open between {@link ServiceClient#open()} and
+     * {@link ServiceClient#close()}
+     */
+    public boolean isPersistentConnection()
+    {
+        return this.persistentConnection;
+    }
+
+    /**
+     * Setter for PersistentConnection. When set, {@link ServiceClient#open()} establishes one AMQP connection and
+     * sender link that stays up, is re-established after a connection loss, and carries every message sent until
+     * {@link ServiceClient#close()}. Sends are pipelined, so many messages can be in flight at once.
+     *
+     * @param persistentConnection the value to set
+     */
+    public void setPersistentConnection(boolean persistentConnection)
+    {
+        this.persistentConnection = persistentConnection;
+    }
+}
@@ -12,6 +12,7 @@ import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.security.NoSuchAlgorithmException;
 
 /** 
  * Grants device access to an IoT Hub for the specified amount of time. 
@@ -41,6 +42,23 @@ public final class IotHubServiceSasToken
     /* The SAS token that grants access. */
     protected final String token;
 
+    // Mac.getInstance is a provider lookup, so each thread keeps its own instance and only re-keys it per token
+    private static final ThreadLocal<Mac> hmacSha256 = new ThreadLocal<Mac>()
+    {
+        @Override
+        protected Mac initialValue()
+        {
+            try
+            {
+                return Mac.getInstance("HmacSHA256");
+            }
+            catch (NoSuchAlgorithmException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+
     /**
      * Constructor. Generates a SAS token that grants access to an IoT Hub for
      * the specified amount of time. (1 year specified in TOKEN_VALID_SECS)
@@ -87,7 +105,7 @@ public final class IotHubServiceSasToken
             SecretKeySpec signingKey = new SecretKeySpec(keyBytes, "HmacSHA256");
 
             // Get an hmac_sha1 Mac instance and initialize with the signing key
-            Mac mac = Mac.getInstance("HmacSHA256");
+            Mac mac = hmacSha256.get();
             mac.init(signingKey);
 
             // Codes_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKEN_12_005: [The constructor shall compute the final signature by url encoding the signed key]
@@ -120,6 +138,16 @@ public final class IotHubServiceSasToken
         return expiresOnDate / 1000;
     }
 
+    /**
+     * Getter for the expiry time of this token
+     *
+     * @return The time, as a UNIX timestamp in seconds, before which the token is valid
+     */
+    public long getExpiryTime()
+    {
+        return this.expiryTime;
+    }
+
     /**
      * Returns the string representation of the SAS token.
      *
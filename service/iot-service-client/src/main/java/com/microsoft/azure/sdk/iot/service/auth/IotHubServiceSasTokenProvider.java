@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.auth;
+
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Hands out service SAS tokens for an {@link IotHubConnectionString}, reusing a signed token until a configurable
+ * fraction of its time to live has passed instead of signing a new one for every request. Tokens are cached per
+ * connection string object, so every client built from the same object shares them.
+ */
+public final class IotHubServiceSasTokenProvider
+{
+    private static final double DEFAULT_RENEWAL_FRACTION = 0.75;
+
+    private static volatile double renewalFraction = DEFAULT_RENEWAL_FRACTION;
+
+    // Weak keys, so that a cached token does not outlive the clients that use its connection string
+    private static final Map<IotHubConnectionString, CachedToken> cachedTokens = new WeakHashMap<>();
+
+    private IotHubServiceSasTokenProvider()
+    {
+    }
+
+    /**
+     * Returns a SAS token for the provided connection string. The token is the cached one if it was created for this
+     * connection string object less than the renewal fraction of its lifetime ago, otherwise a newly signed one.
+     *
+     * @param iotHubConnectionString Connection string object containing the connection parameters
+     * @return a valid SAS token for the connection string
+     * @throws IllegalArgumentException if the connection string is null
+     */
+    public static IotHubServiceSasToken getSasToken(IotHubConnectionString iotHubConnectionString) throws IllegalArgumentException
+    {
+        if (iotHubConnectionString == null)
+        {
+            throw new IllegalArgumentException("iotHubConnectionString cannot be null");
+        }
+
+        long now = System.currentTimeMillis();
+        synchronized (cachedTokens)
+        {
+            CachedToken cachedToken = cachedTokens.get(iotHubConnectionString);
+            if (cachedToken != null && now < cachedToken.renewalTimeMillis)
+            {
+                return cachedToken.sasToken;
+            }
+        }
+
+        // Signing happens outside of the lock; two threads racing here both get a valid token
+        IotHubServiceSasToken sasToken = new IotHubServiceSasToken(iotHubConnectionString);
+        long renewalTimeMillis = now + (long) ((sasToken.getExpiryTime() * 1000 - now) * renewalFraction);
+        synchronized (cachedTokens)
+        {
+            cachedTokens.put(iotHubConnectionString, new CachedToken(sasToken, renewalTimeMillis));
+        }
+
+        return sasToken;
+    }
+
+    /**
+     * Setter for the fraction of a token's time to live after which a new token is signed. Defaults to 0.75.
+     *
+     * @param fraction the value to set, greater than 0 and at most 1
+     * @throws IllegalArgumentException if the fraction is not within that range
+     */
+    public static void setRenewalFraction(double fraction) throws IllegalArgumentException
+    {
+        if (fraction <= 0 || fraction > 1)
+        {
+            throw new IllegalArgumentException("fraction must be greater than 0 and at most 1");
+        }
+
+        renewalFraction = fraction;
+    }
+
+    /**
+     * Getter for the renewal fraction
+     *
+     * @return the fraction of a token's time to live after which a new token is signed
+     */
+    public static double getRenewalFraction()
+    {
+        return renewalFraction;
+    }
+
+    private static final class CachedToken
+    {
+        private final IotHubServiceSasToken sasToken;
+        private final long renewalTimeMillis;
+
+        private CachedToken(IotHubServiceSasToken sasToken, long renewalTimeMillis)
+        {
+            this.sasToken = sasToken;
+            this.renewalTimeMillis = renewalTimeMillis;
+        }
+    }
+}
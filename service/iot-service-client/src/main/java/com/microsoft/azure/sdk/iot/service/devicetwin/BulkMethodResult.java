@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.devicetwin;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Store the outcome of invoking one method on many devices with
+ * {@link DeviceMethod#invokeOnDevicesAsync(java.util.Collection, String, Long, Long, Object, int)}.
+ * Every device appears either in the results or in the failures.
+ */
+public final class BulkMethodResult
+{
+    private final Map<String, MethodResult> results;
+    private final Map<String, Throwable> failures;
+
+    BulkMethodResult(Map<String, MethodResult> results, Map<String, Throwable> failures)
+    {
+        /* Codes_SRS_BULKMETHODRESULT_21_001: [The constructor shall save a copy of the results and failures.] */
+        this.results = Collections.unmodifiableMap(new LinkedHashMap<>(results));
+        this.failures = Collections.unmodifiableMap(new LinkedHashMap<>(failures));
+    }
+
+    /**
+     * Getter for the devices that answered the method, whatever the status they returned.
+     *
+     * @return an unmodifiable map of the method results, by device id, in completion order
+     */
+    public Map<String, MethodResult> getResults()
+    {
+        /* Codes_SRS_BULKMETHODRESULT_21_002: [The getResults shall return the method results by device id.] */
+        return this.results;
+    }
+
+    /**
+     * Getter for the devices whose invocation failed, for instance because the device was not connected
+     * or the request timed out.
+     *
+     * @return an unmodifiable map of the exceptions, by device id, in completion order
+     */
+    public Map<String, Throwable> getFailures()
+    {
+        /* Codes_SRS_BULKMETHODRESULT_21_003: [The getFailures shall return the exceptions by device id.] */
+        return this.failures;
+    }
+
+    /**
+     * Check whether every invocation succeeded.
+     *
+     * @return true if no invocation failed
+     */
+    public boolean isSuccessful()
+    {
+        /* Codes_SRS_BULKMETHODRESULT_21_004: [The isSuccessful shall return true if there is no failure.] */
+        return this.failures.isEmpty();
+    }
+}
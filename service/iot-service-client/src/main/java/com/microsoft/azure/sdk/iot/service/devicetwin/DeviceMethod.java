@@ -13,15 +13,25 @@ import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponse;
 import java.io.IOException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * DeviceMethod enables service client to directly invoke methods on various devices from service client.
+ * An instance holds no per-call state, so it can be shared by threads invoking methods concurrently.
  */
 public class DeviceMethod
 {
     private IotHubConnectionString iotHubConnectionString = null;
-    private Integer requestId = 0;
+    private final AtomicInteger requestId = new AtomicInteger(0);
     private static final int DEFAULT_RESPONSE_TIMEOUT = 30; // default response timeout is 30 seconds
     private static final int DEFAULT_CONNECT_TIMEOUT = 0;
     private static final int THOUSAND_MS = 1000;
@@ -61,7 +71,7 @@ public class DeviceMethod
      * @throws IotHubException This exception is thrown if the response verification failed
      * @throws IOException This exception is thrown if the IO operation failed
      */
-    public synchronized MethodResult invoke(String deviceId, String methodName, Long responseTimeoutInSeconds, Long connectTimeoutInSeconds, Object payload) throws IotHubException, IOException
+    public MethodResult invoke(String deviceId, String methodName, Long responseTimeoutInSeconds, Long connectTimeoutInSeconds, Object payload) throws IotHubException, IOException
     {
         /* Codes_SRS_DEVICEMETHOD_21_004: [The invoke shall throw IllegalArgumentException if the provided deviceId is null or empty.] */
         if((deviceId == null) || deviceId.isEmpty())
@@ -94,7 +104,7 @@ public class DeviceMethod
      * @throws IotHubException This exception is thrown if the response verification failed
      * @throws IOException This exception is thrown if the IO operation failed
      */
-    public synchronized MethodResult invoke(String deviceId, String moduleId, String methodName, Long responseTimeoutInSeconds, Long connectTimeoutInSeconds, Object payload) throws IotHubException, IOException
+    public MethodResult invoke(String deviceId, String moduleId, String methodName, Long responseTimeoutInSeconds, Long connectTimeoutInSeconds, Object payload) throws IotHubException, IOException
     {
         /* Codes_SRS_DEVICEMETHOD_28_001: [The invoke shall throw IllegalArgumentException if the provided deviceId is null or empty.] */
         if((deviceId == null) || deviceId.isEmpty())
@@ -132,7 +142,153 @@ public class DeviceMethod
      * @throws IotHubException This exception is thrown if the response verification failed
      * @throws IOException This exception is thrown if the IO operation failed
      */
-    private synchronized MethodResult invokeMethod(URL url, String methodName, Long responseTimeoutInSeconds, Long connectTimeoutInSeconds, Object payload) throws IotHubException, IOException
+    private MethodResult invokeMethod(URL url, String methodName, Long responseTimeoutInSeconds, Long connectTimeoutInSeconds, Object payload) throws IotHubException, IOException
+    {
+        String json = toMethodJson(methodName, responseTimeoutInSeconds, connectTimeoutInSeconds, payload);
+        long timeoutInMs = toTimeoutInMs(responseTimeoutInSeconds, connectTimeoutInSeconds);
+
+        /* Codes_SRS_DEVICEMETHOD_21_009: [The invoke shall send the created request and get the response using the HttpRequester.] */
+        /* Codes_SRS_DEVICEMETHOD_21_010: [The invoke shall create a new HttpRequest with http method as `POST`.] */
+        HttpResponse response = DeviceOperations.request(this.iotHubConnectionString, url, HttpMethod.POST, json.getBytes(StandardCharsets.UTF_8), String.valueOf(requestId.getAndIncrement()), timeoutInMs);
+
+        return toMethodResult(response);
+    }
+
+    /**
+     * Directly invokes a method on the device without waiting for its result. The request is sent by the
+     * {@link com.microsoft.azure.sdk.iot.service.transport.http.HttpEngines#getEngine() http engine}, so
+     * no thread is held while the device runs the method unless the engine itself blocks.
+     *
+     * @param deviceId is the device where the request is send to.
+     * @param methodName is the name of the method that shall be invoked on the device.
+     * @param responseTimeoutInSeconds is the maximum waiting time for a response from the device in seconds.
+     * @param connectTimeoutInSeconds is the maximum waiting time for a response from the connection in seconds.
+     * @param payload is the the method parameter
+     * @return a future completed with the status and payload resulted from the method invoke, or completed
+     * exceptionally with the {@link IotHubException} or {@link IOException} that invoke would have thrown
+     * @throws IotHubException This exception is thrown if the request could not be created
+     * @throws IOException This exception is thrown if the request could not be created
+     */
+    public CompletableFuture<MethodResult> invokeAsync(String deviceId, String methodName, Long responseTimeoutInSeconds, Long connectTimeoutInSeconds, Object payload) throws IotHubException, IOException
+    {
+        /* Codes_SRS_DEVICEMETHOD_21_024: [The invokeAsync shall throw IllegalArgumentException if the provided deviceId is null or empty.] */
+        if((deviceId == null) || deviceId.isEmpty())
+        {
+            throw new IllegalArgumentException("deviceId is empty or null.");
+        }
+
+        /* Codes_SRS_DEVICEMETHOD_21_025: [The invokeAsync shall throw IllegalArgumentException if the provided methodName is null, empty, or not valid.] */
+        if((methodName == null) || methodName.isEmpty())
+        {
+            throw new IllegalArgumentException("methodName is empty or null.");
+        }
+
+        /* Codes_SRS_DEVICEMETHOD_21_026: [The invokeAsync shall build the Method URL `{iot hub}/twins/{device id}/methods/` by calling getUrlMethod.] */
+        URL url = this.iotHubConnectionString.getUrlMethod(deviceId);
+
+        return invokeMethodAsync(url, methodName, responseTimeoutInSeconds, connectTimeoutInSeconds, payload);
+    }
+
+    /**
+     * Directly invokes a method on the module without waiting for its result. The request is sent by the
+     * {@link com.microsoft.azure.sdk.iot.service.transport.http.HttpEngines#getEngine() http engine}.
+     *
+     * @param deviceId is the device where the module is related to.
+     * @param moduleId is the module where the request is sent to.
+     * @param methodName is the name of the method that shall be invoked on the device.
+     * @param responseTimeoutInSeconds is the maximum waiting time for a response from the device in seconds.
+     * @param connectTimeoutInSeconds is the maximum waiting time for a response from the connection in seconds.
+     * @param payload is the the method parameter
+     * @return a future completed with the status and payload resulted from the method invoke, or completed
+     * exceptionally with the {@link IotHubException} or {@link IOException} that invoke would have thrown
+     * @throws IotHubException This exception is thrown if the request could not be created
+     * @throws IOException This exception is thrown if the request could not be created
+     */
+    public CompletableFuture<MethodResult> invokeAsync(String deviceId, String moduleId, String methodName, Long responseTimeoutInSeconds, Long connectTimeoutInSeconds, Object payload) throws IotHubException, IOException
+    {
+        /* Codes_SRS_DEVICEMETHOD_21_027: [The invokeAsync shall throw IllegalArgumentException if the provided deviceId, moduleId or methodName is null or empty.] */
+        if((deviceId == null) || deviceId.isEmpty())
+        {
+            throw new IllegalArgumentException("deviceId is empty or null.");
+        }
+
+        if((moduleId == null) || moduleId.isEmpty())
+        {
+            throw new IllegalArgumentException("moduleId is empty or null.");
+        }
+
+        if((methodName == null) || methodName.isEmpty())
+        {
+            throw new IllegalArgumentException("methodName is empty or null.");
+        }
+
+        /* Codes_SRS_DEVICEMETHOD_21_028: [The invokeAsync shall build the Method URL `{iot hub}/twins/{device id}/modules/{module id}/methods/` by calling getUrlModuleMethod.] */
+        URL url = this.iotHubConnectionString.getUrlModuleMethod(deviceId, moduleId);
+
+        return invokeMethodAsync(url, methodName, responseTimeoutInSeconds, connectTimeoutInSeconds, payload);
+    }
+
+    /**
+     * Invokes the same method on many devices, with at most maxConcurrentInvocations outstanding at any time,
+     * and collects the result of every device. A failure on one device does not stop the others.
+     *
+     * @param deviceIds are the devices where the request is send to. Duplicated ids are invoked once.
+     * @param methodName is the name of the method that shall be invoked on the devices.
+     * @param responseTimeoutInSeconds is the maximum waiting time for a response from each device in seconds.
+     * @param connectTimeoutInSeconds is the maximum waiting time for a response from the connection in seconds.
+     * @param payload is the the method parameter
+     * @param maxConcurrentInvocations is the maximum number of invocations outstanding at the same time.
+     * @return a future completed with the results and failures of all devices once every invocation finished
+     * @throws IllegalArgumentException if deviceIds is null or empty or contains a null or empty id, if the
+     * methodName is null or empty, or if maxConcurrentInvocations is less than 1
+     */
+    public CompletableFuture<BulkMethodResult> invokeOnDevicesAsync(Collection<String> deviceIds, String methodName,
+            Long responseTimeoutInSeconds, Long connectTimeoutInSeconds, Object payload, int maxConcurrentInvocations)
+            throws IllegalArgumentException
+    {
+        /* Codes_SRS_DEVICEMETHOD_21_029: [The invokeOnDevicesAsync shall throw IllegalArgumentException if the provided deviceIds is null, empty or contains a null or empty id.] */
+        if((deviceIds == null) || deviceIds.isEmpty())
+        {
+            throw new IllegalArgumentException("deviceIds is empty or null.");
+        }
+
+        for (String deviceId : deviceIds)
+        {
+            if((deviceId == null) || deviceId.isEmpty())
+            {
+                throw new IllegalArgumentException("deviceIds contains an empty or null id.");
+            }
+        }
+
+        /* Codes_SRS_DEVICEMETHOD_21_030: [The invokeOnDevicesAsync shall throw IllegalArgumentException if the provided methodName is null or empty.] */
+        if((methodName == null) || methodName.isEmpty())
+        {
+            throw new IllegalArgumentException("methodName is empty or null.");
+        }
+
+        /* Codes_SRS_DEVICEMETHOD_21_031: [The invokeOnDevicesAsync shall throw IllegalArgumentException if the provided maxConcurrentInvocations is less than 1.] */
+        if(maxConcurrentInvocations < 1)
+        {
+            throw new IllegalArgumentException("maxConcurrentInvocations must be at least 1.");
+        }
+
+        /* Codes_SRS_DEVICEMETHOD_21_032: [The invokeOnDevicesAsync shall invoke the method on every device with invokeAsync, starting the next invocation only when one of the at most maxConcurrentInvocations outstanding ones finished.] */
+        /* Codes_SRS_DEVICEMETHOD_21_033: [The invokeOnDevicesAsync shall complete the future with the result or the failure of every device once all invocations finished.] */
+        MethodFanOut fanOut = new MethodFanOut(deviceIds, methodName, responseTimeoutInSeconds, connectTimeoutInSeconds, payload, maxConcurrentInvocations);
+        fanOut.drain();
+        return fanOut.future;
+    }
+
+    private CompletableFuture<MethodResult> invokeMethodAsync(URL url, String methodName, Long responseTimeoutInSeconds, Long connectTimeoutInSeconds, Object payload) throws IotHubException, IOException
+    {
+        String json = toMethodJson(methodName, responseTimeoutInSeconds, connectTimeoutInSeconds, payload);
+        long timeoutInMs = toTimeoutInMs(responseTimeoutInSeconds, connectTimeoutInSeconds);
+
+        CompletableFuture<HttpResponse> response = DeviceOperations.requestAsync(this.iotHubConnectionString, url, HttpMethod.POST, json.getBytes(StandardCharsets.UTF_8), String.valueOf(requestId.getAndIncrement()), timeoutInMs);
+        return response.thenApply(DeviceMethod::toMethodResult);
+    }
+
+    private static String toMethodJson(String methodName, Long responseTimeoutInSeconds, Long connectTimeoutInSeconds, Object payload)
     {
         /* Codes_SRS_DEVICEMETHOD_21_006: [The invoke shall throw IllegalArgumentException if the provided responseTimeoutInSeconds is negative.] */
         /* Codes_SRS_DEVICEMETHOD_21_007: [The invoke shall throw IllegalArgumentException if the provided connectTimeoutInSeconds is negative.] */
@@ -147,6 +303,11 @@ public class DeviceMethod
             throw new IllegalArgumentException("MethodParser return null Json");
         }
 
+        return json;
+    }
+
+    private static long toTimeoutInMs(Long responseTimeoutInSeconds, Long connectTimeoutInSeconds)
+    {
         long  responseTimeout, connectTimeout;
 
         if (responseTimeoutInSeconds == null)
@@ -168,12 +329,11 @@ public class DeviceMethod
         }
         
         // Calculate total timeout in milliseconds
-        long timeoutInMs = (responseTimeout + connectTimeout) * THOUSAND_MS; 
-               
-        /* Codes_SRS_DEVICEMETHOD_21_009: [The invoke shall send the created request and get the response using the HttpRequester.] */
-        /* Codes_SRS_DEVICEMETHOD_21_010: [The invoke shall create a new HttpRequest with http method as `POST`.] */
-        HttpResponse response = DeviceOperations.request(this.iotHubConnectionString, url, HttpMethod.POST, json.getBytes(StandardCharsets.UTF_8), String.valueOf(requestId++), timeoutInMs);
+        return (responseTimeout + connectTimeout) * THOUSAND_MS;
+    }
 
+    private static MethodResult toMethodResult(HttpResponse response)
+    {
         /* Codes_SRS_DEVICEMETHOD_21_013: [The invoke shall deserialize the payload using the `serializer.MethodParser`.] */
         MethodParser methodParserResponse = new MethodParser();
         methodParserResponse.fromJson(new String(response.getBody(), StandardCharsets.UTF_8));
@@ -233,4 +393,112 @@ public class DeviceMethod
         /* Codes_SRS_DEVICEMETHOD_21_023: [The scheduleDeviceMethod shall return the created instance of the Job class.] */
         return job;
     }
+
+    /**
+     * Keeps up to maxConcurrentInvocations invocations of one method outstanding until every device was invoked.
+     * Invocations are started from a loop rather than from the completion of the previous one, so invocations
+     * that complete synchronously do not grow the stack.
+     */
+    private final class MethodFanOut
+    {
+        private final Iterator<String> pendingDeviceIds;
+        private final String methodName;
+        private final Long responseTimeoutInSeconds;
+        private final Long connectTimeoutInSeconds;
+        private final Object payload;
+        private final int deviceCount;
+        private final Map<String, MethodResult> results = new LinkedHashMap<>();
+        private final Map<String, Throwable> failures = new LinkedHashMap<>();
+        private final CompletableFuture<BulkMethodResult> future = new CompletableFuture<>();
+
+        private int availableSlots;
+        private boolean draining = false;
+
+        private MethodFanOut(Collection<String> deviceIds, String methodName, Long responseTimeoutInSeconds,
+                             Long connectTimeoutInSeconds, Object payload, int maxConcurrentInvocations)
+        {
+            Collection<String> uniqueDeviceIds = new ArrayList<>(new LinkedHashSet<>(deviceIds));
+            this.pendingDeviceIds = uniqueDeviceIds.iterator();
+            this.deviceCount = uniqueDeviceIds.size();
+            this.methodName = methodName;
+            this.responseTimeoutInSeconds = responseTimeoutInSeconds;
+            this.connectTimeoutInSeconds = connectTimeoutInSeconds;
+            this.payload = payload;
+            this.availableSlots = maxConcurrentInvocations;
+        }
+
+        private void drain()
+        {
+            synchronized (this)
+            {
+                if (this.draining)
+                {
+                    // the thread already in the loop below picks up the released slot
+                    return;
+                }
+                this.draining = true;
+            }
+
+            while (true)
+            {
+                String deviceId;
+                synchronized (this)
+                {
+                    if (this.availableSlots == 0 || !this.pendingDeviceIds.hasNext())
+                    {
+                        this.draining = false;
+                        return;
+                    }
+                    this.availableSlots--;
+                    deviceId = this.pendingDeviceIds.next();
+                }
+
+                start(deviceId);
+            }
+        }
+
+        private void start(String deviceId)
+        {
+            CompletableFuture<MethodResult> invocation;
+            try
+            {
+                invocation = invokeAsync(deviceId, this.methodName, this.responseTimeoutInSeconds, this.connectTimeoutInSeconds, this.payload);
+            }
+            catch (IotHubException | IOException | RuntimeException e)
+            {
+                onInvocationCompleted(deviceId, null, e);
+                return;
+            }
+
+            invocation.whenComplete((result, throwable) -> onInvocationCompleted(deviceId, result, throwable));
+        }
+
+        private void onInvocationCompleted(String deviceId, MethodResult result, Throwable throwable)
+        {
+            boolean allCompleted;
+            synchronized (this)
+            {
+                if (throwable == null)
+                {
+                    this.results.put(deviceId, result);
+                }
+                else
+                {
+                    this.failures.put(deviceId, (throwable instanceof CompletionException && throwable.getCause() != null) ? throwable.getCause() : throwable);
+                }
+
+                this.availableSlots++;
+                allCompleted = (this.results.size() + this.failures.size()) == this.deviceCount;
+            }
+
+            if (allCompleted)
+            {
+                this.future.complete(new BulkMethodResult(this.results, this.failures));
+            }
+            else
+            {
+                drain();
+            }
+        }
+    }
 }
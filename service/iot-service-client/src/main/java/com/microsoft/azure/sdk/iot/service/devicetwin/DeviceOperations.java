@@ -4,17 +4,21 @@
 package com.microsoft.azure.sdk.iot.service.devicetwin;
 
 import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
-import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasTokenProvider;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubExceptionManager;
 import com.microsoft.azure.sdk.iot.service.transport.TransportUtils;
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpEngines;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpMethod;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpRequest;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponse;
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponseBodyReader;
 
 import java.io.IOException;
 import java.net.URL;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Set of common operations for Twin and Method.
@@ -32,7 +36,8 @@ public class DeviceOperations
     private static final String ACCEPT_CHARSET = "charset=utf-8";
     private static final String CONTENT_TYPE = "Content-Type";
     private static final Integer DEFAULT_HTTP_TIMEOUT_MS = 24000;
-    private static Map<String, String> headers = null;
+    // Per thread, so that concurrent requests from different threads don't pick up each other's headers
+    private static final ThreadLocal<Map<String, String>> headers = new ThreadLocal<>();
 
     /**
      * Send a http request to the IoTHub using the Twin/Method standard, and return its response.
@@ -55,6 +60,114 @@ public class DeviceOperations
             String requestId,
             long timeoutInMs) 
             throws IOException, IotHubException, IllegalArgumentException
+    {
+        HttpRequest request = createRequest(iotHubConnectionString, url, method, payload, requestId, timeoutInMs);
+
+        /* Codes_SRS_DEVICE_OPERATIONS_21_015: [The request shall send the created request and get the response.] */
+        HttpResponse response = HttpEngines.getEngine().send(request);
+
+        /* Codes_SRS_DEVICE_OPERATIONS_21_016: [If the resulted HttpResponseStatus represents fail, the request shall throw proper Exception by calling httpResponseVerification.] */
+        IotHubExceptionManager.httpResponseVerification(response);
+        
+        /* Codes_SRS_DEVICE_OPERATIONS_21_017: [If the resulted status represents success, the request shall return the http response.] */
+        return response;
+    }
+
+    /**
+     * Send a http request to the IoTHub using the Twin/Method standard, and hand the body of a successful response
+     * to the given reader as it is received, instead of returning it in the response.
+     *
+     * @param iotHubConnectionString is the connection string for the IoTHub
+     * @param url is the Twin URL for the device ID.
+     * @param method is the HTTP method (GET, POST, DELETE, PATCH, PUT).
+     * @param payload is the array of bytes that contains the payload.
+     * @param requestId is an unique number that identify the request.
+     * @param timeoutInMs is timeout in milliseconds.
+     * @param bodyReader is the reader of the body of a successful response.
+     * @return the result of the request, without its body.
+     * @throws IotHubException This exception is thrown if the response verification failed
+     * @throws IOException This exception is thrown if the IO operation failed, or if the reader could not read the body
+     */
+    public static HttpResponse request(
+            IotHubConnectionString iotHubConnectionString,
+            URL url,
+            HttpMethod method,
+            byte[] payload,
+            String requestId,
+            long timeoutInMs,
+            HttpResponseBodyReader bodyReader)
+            throws IOException, IotHubException, IllegalArgumentException
+    {
+        /* Codes_SRS_DEVICE_OPERATIONS_21_025: [The request shall throw IllegalArgumentException if the provided `bodyReader` is null.] */
+        if (bodyReader == null)
+        {
+            throw new IllegalArgumentException("Null bodyReader");
+        }
+
+        HttpRequest request = createRequest(iotHubConnectionString, url, method, payload, requestId, timeoutInMs);
+
+        /* Codes_SRS_DEVICE_OPERATIONS_21_026: [The request shall send the created request through the http engine, which hands the body of a successful response to the bodyReader.] */
+        HttpResponse response = HttpEngines.getEngine().send(request, bodyReader);
+
+        /* Codes_SRS_DEVICE_OPERATIONS_21_016: [If the resulted HttpResponseStatus represents fail, the request shall throw proper Exception by calling httpResponseVerification.] */
+        IotHubExceptionManager.httpResponseVerification(response);
+
+        return response;
+    }
+
+    /**
+     * Send a http request to the IoTHub using the Twin/Method standard without waiting for its response.
+     * The request is built and validated on the calling thread and handed to the {@link HttpEngines#getEngine() http engine},
+     * so no thread is held while it is outstanding unless the engine itself blocks.
+     *
+     * @param iotHubConnectionString is the connection string for the IoTHub
+     * @param url is the Twin URL for the device ID.
+     * @param method is the HTTP method (GET, POST, DELETE, PATCH, PUT).
+     * @param payload is the array of bytes that contains the payload.
+     * @param requestId is an unique number that identify the request.
+     * @param timeoutInMs is timeout in milliseconds.
+     * @return a future completed with the http response, or completed exceptionally with the
+     * {@link IotHubException} or {@link IOException} that {@link #request} would have thrown.
+     * @throws IotHubException This exception is thrown if the request could not be created
+     * @throws IOException This exception is thrown if the request could not be created
+     */
+    public static CompletableFuture<HttpResponse> requestAsync(
+            IotHubConnectionString iotHubConnectionString,
+            URL url,
+            HttpMethod method,
+            byte[] payload,
+            String requestId,
+            long timeoutInMs)
+            throws IOException, IotHubException, IllegalArgumentException
+    {
+        /* Codes_SRS_DEVICE_OPERATIONS_21_022: [The requestAsync shall create the request in the same way as the request does.] */
+        HttpRequest request = createRequest(iotHubConnectionString, url, method, payload, requestId, timeoutInMs);
+
+        /* Codes_SRS_DEVICE_OPERATIONS_21_023: [The requestAsync shall send the created request with the sendAsync of the http engine.] */
+        return HttpEngines.getEngine().sendAsync(request).thenApply(response ->
+        {
+            try
+            {
+                /* Codes_SRS_DEVICE_OPERATIONS_21_024: [If the resulted HttpResponseStatus represents fail, the requestAsync shall complete the future exceptionally with the exception thrown by httpResponseVerification.] */
+                IotHubExceptionManager.httpResponseVerification(response);
+            }
+            catch (IotHubException e)
+            {
+                throw new CompletionException(e);
+            }
+
+            return response;
+        });
+    }
+
+    private static HttpRequest createRequest(
+            IotHubConnectionString iotHubConnectionString,
+            URL url,
+            HttpMethod method,
+            byte[] payload,
+            String requestId,
+            long timeoutInMs)
+            throws IOException, IotHubException, IllegalArgumentException
     {
         /* Codes_SRS_DEVICE_OPERATIONS_21_001: [The request shall throw IllegalArgumentException if the provided `iotHubConnectionString` is null.] */
         if(iotHubConnectionString == null)
@@ -87,7 +200,7 @@ public class DeviceOperations
         }
 
         /* Codes_SRS_DEVICE_OPERATIONS_21_006: [The request shall create a new SASToken with the ServiceConnect rights.] */
-        String sasTokenString = new IotHubServiceSasToken(iotHubConnectionString).toString();
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(iotHubConnectionString).toString();
         /* Codes_SRS_DEVICE_OPERATIONS_21_007: [If the SASToken is null or empty, the request shall throw IOException.] */
          if((sasTokenString == null) || sasTokenString.isEmpty())
         {
@@ -119,29 +232,23 @@ public class DeviceOperations
         /* Codes_SRS_DEVICE_OPERATIONS_21_014: [The request shall add to the HTTP header a `Content-Type` key with `application/json; charset=utf-8`.] */
         request.setHeaderField(CONTENT_TYPE, ACCEPT_VALUE + "; " + ACCEPT_CHARSET);
 
-        if (headers != null)
+        Map<String, String> customHeaders = headers.get();
+        if (customHeaders != null)
         {
             //SRS_DEVICE_OPERATIONS_25_019: [The request shall add to the HTTP header all the additional custom headers set for this request.]
-            for(Map.Entry<String, String> header : headers.entrySet())
+            for(Map.Entry<String, String> header : customHeaders.entrySet())
             {
                 request.setHeaderField(header.getKey(), header.getValue());
             }
 
-            headers = null;
+            headers.remove();
         }
 
-        /* Codes_SRS_DEVICE_OPERATIONS_21_015: [The request shall send the created request and get the response.] */
-        HttpResponse response = request.send();
-
-        /* Codes_SRS_DEVICE_OPERATIONS_21_016: [If the resulted HttpResponseStatus represents fail, the request shall throw proper Exception by calling httpResponseVerification.] */
-        IotHubExceptionManager.httpResponseVerification(response);
-        
-        /* Codes_SRS_DEVICE_OPERATIONS_21_017: [If the resulted status represents success, the request shall return the http response.] */
-        return response;
+        return request;
     }
 
     /**
-     * Sets headers to be used on next HTTP request
+     * Sets headers to be used on the next HTTP request made by the calling thread
      * @param httpHeaders non null and non empty custom headers
      * @throws IllegalArgumentException This exception is thrown if headers were null or empty
      */
@@ -154,6 +261,6 @@ public class DeviceOperations
         }
 
         //SRS_DEVICE_OPERATIONS_25_020: [This method shall set the headers map to be used for next request only.]
-        headers = httpHeaders;
+        headers.set(httpHeaders);
     }
 }
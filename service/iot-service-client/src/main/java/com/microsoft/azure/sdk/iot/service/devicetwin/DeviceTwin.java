@@ -17,13 +17,15 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DeviceTwin
 {
     private IotHubConnectionString iotHubConnectionString = null;
-    private Integer requestId = 0;
+    private final AtomicInteger requestId = new AtomicInteger(0);
     private final long USE_DEFAULT_TIMEOUT = 0;
     private final int DEFAULT_PAGE_SIZE = 100;
+    private final int DEFAULT_PREFETCH_PAGE_COUNT = 2;
 
     /**
      * Static constructor to create instance from connection string
@@ -104,7 +106,7 @@ public class DeviceTwin
          **Codes_SRS_DEVICETWIN_25_009: [** The function shall send the created request and get the response **]**
          **Codes_SRS_DEVICETWIN_25_010: [** The function shall verify the response status and throw proper Exception **]**
          */
-        HttpResponse response = DeviceOperations.request(this.iotHubConnectionString, url, HttpMethod.GET, new byte[0], String.valueOf(requestId++), USE_DEFAULT_TIMEOUT);
+        HttpResponse response = DeviceOperations.request(this.iotHubConnectionString, url, HttpMethod.GET, new byte[0], String.valueOf(requestId.getAndIncrement()), USE_DEFAULT_TIMEOUT);
         String twin = new String(response.getBody(), StandardCharsets.UTF_8);
 
         /*
@@ -130,7 +132,7 @@ public class DeviceTwin
      * @throws IOException This exception is thrown if the IO operation failed
      * @throws IotHubException This exception is thrown if the response verification failed
      */
-    public synchronized void updateTwin(DeviceTwinDevice device) throws IotHubException, IOException
+    public void updateTwin(DeviceTwinDevice device) throws IotHubException, IOException
     {
         if (device == null || device.getDeviceId() == null || device.getDeviceId().length() == 0)
         {
@@ -189,7 +191,7 @@ public class DeviceTwin
 
         **Codes_SRS_DEVICETWIN_25_020: [** The function shall verify the response status and throw proper Exception **]**
          */
-        HttpResponse response = DeviceOperations.request(this.iotHubConnectionString, url, HttpMethod.PATCH, twinJson.getBytes(StandardCharsets.UTF_8), String.valueOf(requestId++),0);
+        HttpResponse response = DeviceOperations.request(this.iotHubConnectionString, url, HttpMethod.PATCH, twinJson.getBytes(StandardCharsets.UTF_8), String.valueOf(requestId.getAndIncrement()),0);
     }
 
     /**
@@ -240,7 +242,7 @@ public class DeviceTwin
      * @throws IotHubException If Query request was not successful at the IotHub
      * @throws IOException If input parameters are invalid
      */
-    public synchronized Query queryTwin(String sqlQuery, Integer pageSize) throws IotHubException, IOException
+    public Query queryTwin(String sqlQuery, Integer pageSize) throws IotHubException, IOException
     {
         if (sqlQuery == null || sqlQuery.length() == 0)
         {
@@ -270,7 +272,7 @@ public class DeviceTwin
      * @throws IotHubException If Query request was not successful at the IotHub
      * @throws IOException If input parameters are invalid
      */
-    public synchronized Query queryTwin(String sqlQuery) throws IotHubException, IOException
+    public Query queryTwin(String sqlQuery) throws IotHubException, IOException
     {
         //Codes_SRS_DEVICETWIN_25_052: [ If the pageSize if not provided then a default pageSize of 100 is used for the query.]
         return this.queryTwin(sqlQuery, DEFAULT_PAGE_SIZE);
@@ -284,7 +286,7 @@ public class DeviceTwin
      * @return the created QueryCollection object that can be used to query the service
      * @throws MalformedURLException If twin query url is not correct
      */
-    public synchronized QueryCollection queryTwinCollection(String sqlQuery) throws MalformedURLException
+    public QueryCollection queryTwinCollection(String sqlQuery) throws MalformedURLException
     {
         //Codes_SRS_DEVICETWIN_34_069: [This function shall return the results of calling queryTwinCollection(sqlQuery, DEFAULT_PAGE_SIZE).]
         return this.queryTwinCollection(sqlQuery, DEFAULT_PAGE_SIZE);
@@ -299,12 +301,43 @@ public class DeviceTwin
      * @return the created QueryCollection object that can be used to query the service
      * @throws MalformedURLException If twin query url is not correct
      */
-    public synchronized QueryCollection queryTwinCollection(String sqlQuery, Integer pageSize) throws MalformedURLException
+    public QueryCollection queryTwinCollection(String sqlQuery, Integer pageSize) throws MalformedURLException
     {
         //Codes_SRS_DEVICETWIN_34_070: [This function shall return a new QueryCollection object of type TWIN with the provided sql query and page size.]
         return new QueryCollection(sqlQuery, pageSize, QueryType.TWIN, this.iotHubConnectionString, this.iotHubConnectionString.getUrlTwinQuery(), HttpMethod.POST, USE_DEFAULT_TIMEOUT);
     }
 
+    /**
+     * Runs a twin query and returns an iterator over its results that fetches the next pages in the background while
+     * the current one is consumed, keeping up to two pages ahead of the caller.
+     *
+     * @param sqlQuery the sql query to run
+     * @param pageSize the number of results to request per page
+     * @return the iterator over the results, also available as a stream through {@link DeviceTwinQueryIterator#stream()}
+     * @throws MalformedURLException If twin query url is not correct
+     */
+    public DeviceTwinQueryIterator queryTwinIterator(String sqlQuery, Integer pageSize) throws MalformedURLException
+    {
+        return this.queryTwinIterator(sqlQuery, pageSize, DEFAULT_PREFETCH_PAGE_COUNT);
+    }
+
+    /**
+     * Runs a twin query and returns an iterator over its results that fetches the next pages in the background while
+     * the current one is consumed.
+     *
+     * @param sqlQuery the sql query to run
+     * @param pageSize the number of results to request per page
+     * @param prefetchPageCount the maximum number of pages fetched ahead of the caller, at least 1
+     * @return the iterator over the results, also available as a stream through {@link DeviceTwinQueryIterator#stream()}
+     * @throws MalformedURLException If twin query url is not correct
+     * @throws IllegalArgumentException If the query is invalid, or the page size or prefetch page count is not positive
+     */
+    public DeviceTwinQueryIterator queryTwinIterator(String sqlQuery, Integer pageSize, int prefetchPageCount) throws MalformedURLException, IllegalArgumentException
+    {
+        QueryCollection queryCollection = this.queryTwinCollection(sqlQuery, pageSize);
+        return new DeviceTwinQueryIterator(queryCollection, this, prefetchPageCount);
+    }
+
     /**
      * Returns the availability of next twin element upon query. If non was found,
      * Query is sent over again and response is updated accordingly until no response
@@ -314,7 +347,7 @@ public class DeviceTwin
      * @throws IotHubException If IotHub could not respond back to the query successfully
      * @throws IOException If input parameter is incorrect
      */
-    public synchronized boolean hasNextDeviceTwin(Query deviceTwinQuery) throws IotHubException, IOException
+    public boolean hasNextDeviceTwin(Query deviceTwinQuery) throws IotHubException, IOException
     {
         if (deviceTwinQuery == null)
         {
@@ -334,7 +367,7 @@ public class DeviceTwin
      * @throws IotHubException If a non successful response from IotHub is received
      * @throws NoSuchElementException If no additional element was found
      */
-    public synchronized DeviceTwinDevice getNextDeviceTwin(Query deviceTwinQuery) throws IOException, IotHubException, NoSuchElementException
+    public DeviceTwinDevice getNextDeviceTwin(Query deviceTwinQuery) throws IOException, IotHubException, NoSuchElementException
     {
         if (deviceTwinQuery == null)
         {
@@ -363,7 +396,7 @@ public class DeviceTwin
      * @return True if the provided deviceTwinQueryCollection has a next page to query, false otherwise
      * @throws IllegalArgumentException if the provided deviceTwinQueryCollection is null
      */
-    public synchronized boolean hasNext(QueryCollection deviceTwinQueryCollection)
+    public boolean hasNext(QueryCollection deviceTwinQueryCollection)
     {
         if (deviceTwinQueryCollection == null)
         {
@@ -386,7 +419,7 @@ public class DeviceTwin
      * @throws IotHubException If an IotHubException occurs when querying the service.
      * @throws IOException If an IotHubException occurs when querying the service or if the results of that query don't match expectations.
      */
-    public synchronized QueryCollectionResponse<DeviceTwinDevice> next(QueryCollection deviceTwinQueryCollection) throws IOException, IotHubException
+    public QueryCollectionResponse<DeviceTwinDevice> next(QueryCollection deviceTwinQueryCollection) throws IOException, IotHubException
     {
         //Codes_SRS_DEVICETWIN_34_075: [This function shall call next(deviceTwinQueryCollection, queryOptions) where queryOptions has the deviceTwinQueryCollection's current page size.]
         QueryOptions options = new QueryOptions();
@@ -409,7 +442,7 @@ public class DeviceTwin
      * @throws IotHubException If an IotHubException occurs when querying the service.
      * @throws IOException If an IotHubException occurs when querying the service or if the results of that query don't match expectations.
      */
-    public synchronized QueryCollectionResponse<DeviceTwinDevice> next(QueryCollection deviceTwinQueryCollection, QueryOptions options) throws IOException, IotHubException
+    public QueryCollectionResponse<DeviceTwinDevice> next(QueryCollection deviceTwinQueryCollection, QueryOptions options) throws IOException, IotHubException
     {
         if (deviceTwinQueryCollection == null)
         {
@@ -483,7 +516,7 @@ public class DeviceTwin
         return job;
     }
 
-    private DeviceTwinDevice jsonToDeviceTwinDevice(String json) throws IOException
+    DeviceTwinDevice jsonToDeviceTwinDevice(String json) throws IOException
     {
         TwinState twinState = TwinState.createFromTwinJson(json);
 
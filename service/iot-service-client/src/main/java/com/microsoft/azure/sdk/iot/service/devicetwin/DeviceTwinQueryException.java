@@ -0,0 +1,37 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.devicetwin;
+
+import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
+
+/**
+ * Unchecked carrier for an {@link IotHubException} returned by the service while a {@link DeviceTwinQueryIterator}
+ * reads the pages of a query. {@link #getCause()} returns the original exception, with its type preserved, so callers
+ * can rethrow or inspect it, for example {@code catch (DeviceTwinQueryException e) { throw e.getCause(); }}.
+ */
+public class DeviceTwinQueryException extends RuntimeException
+{
+    /**
+     * Constructor.
+     *
+     * @param cause the exception returned by the service
+     */
+    public DeviceTwinQueryException(IotHubException cause)
+    {
+        super(cause);
+    }
+
+    /**
+     * Getter for the exception returned by the service.
+     *
+     * @return the original {@link IotHubException}
+     */
+    @Override
+    public synchronized IotHubException getCause()
+    {
+        return (IotHubException) super.getCause();
+    }
+}
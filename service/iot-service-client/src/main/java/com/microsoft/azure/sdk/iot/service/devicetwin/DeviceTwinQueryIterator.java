@@ -0,0 +1,280 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.devicetwin;
+
+import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterator over the results of a twin query that fetches and parses the following pages in the background while
+ * the caller consumes the current one. At most the configured number of pages are held ahead of the caller.
+ *
+ * <p>Pages are fetched one at a time on an executor shared by every iterator of the process, which runs at most
+ * {@value #MAX_PREFETCH_THREADS} fetches at once. A fetch is only scheduled while there is room for its page, so an
+ * iterator that is not read holds no thread.</p>
+ *
+ * <p>Failures are rethrown from {@link #hasNext()}: an error returned by the service as a
+ * {@link DeviceTwinQueryException}, whose {@link DeviceTwinQueryException#getCause()} is the original
+ * {@link IotHubException}, and an I/O failure as an {@link UncheckedIOException}. Close the iterator to stop
+ * prefetching if the results are not read to the end.</p>
+ */
+public class DeviceTwinQueryIterator implements Iterator<DeviceTwinDevice>, Closeable
+{
+    private static final String THREAD_NAME = "azure-iot-sdk-DeviceTwinQueryIterator";
+    private static final int MAX_PREFETCH_THREADS = 4;
+    private static final long PREFETCH_THREAD_KEEP_ALIVE_SECONDS = 60;
+    private static final ExecutorService PREFETCH_EXECUTOR = createPrefetchExecutor();
+
+    private final QueryCollection queryCollection;
+    private final DeviceTwin deviceTwin;
+    private final int prefetchPageCount;
+    private final BlockingQueue<Page> prefetchedPages = new LinkedBlockingQueue<>();
+
+    // guards the fetch state below; at most one page of this query is fetched at a time
+    private final Object fetchLock = new Object();
+    private boolean isFetching;
+    private boolean isLastPageFetched;
+
+    private Iterator<DeviceTwinDevice> currentPage = Collections.emptyIterator();
+    private boolean isEndOfResults;
+    private volatile boolean isClosed;
+
+    /**
+     * Constructor. Starts fetching the first page of the query right away.
+     *
+     * @param queryCollection the query to read the pages of
+     * @param deviceTwin the device twin client used to parse the results
+     * @param prefetchPageCount the maximum number of pages to fetch ahead of the caller
+     * @throws IllegalArgumentException if the query or the device twin is null, or the prefetch page count is less than 1
+     */
+    DeviceTwinQueryIterator(QueryCollection queryCollection, DeviceTwin deviceTwin, int prefetchPageCount) throws IllegalArgumentException
+    {
+        if (queryCollection == null || deviceTwin == null)
+        {
+            throw new IllegalArgumentException("queryCollection and deviceTwin cannot be null");
+        }
+
+        if (prefetchPageCount < 1)
+        {
+            throw new IllegalArgumentException("prefetchPageCount must be at least 1");
+        }
+
+        this.queryCollection = queryCollection;
+        this.deviceTwin = deviceTwin;
+        this.prefetchPageCount = prefetchPageCount;
+        this.scheduleFetch();
+    }
+
+    /**
+     * Returns if the query has another result, waiting for the next page if it has not been fetched yet.
+     *
+     * @return true if there is another result and false otherwise
+     * @throws DeviceTwinQueryException if the service returned an error, available through its cause
+     * @throws UncheckedIOException if fetching or parsing a page failed
+     */
+    @Override
+    public boolean hasNext() throws DeviceTwinQueryException, UncheckedIOException
+    {
+        while (!this.currentPage.hasNext())
+        {
+            if (this.isEndOfResults || this.isClosed)
+            {
+                return false;
+            }
+
+            Page page;
+            try
+            {
+                page = this.prefetchedPages.take();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new UncheckedIOException(new IOException("Interrupted while waiting for the next page of the query", e));
+            }
+
+            if (page.exception != null)
+            {
+                this.isEndOfResults = true;
+                throw page.exception;
+            }
+
+            if (page.isLast)
+            {
+                this.isEndOfResults = true;
+            }
+
+            this.currentPage = page.deviceTwinDevices.iterator();
+            this.scheduleFetch();
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the next result of the query.
+     *
+     * @return the next device twin
+     * @throws NoSuchElementException if the query has no more results
+     * @throws DeviceTwinQueryException if the service returned an error, available through its cause
+     * @throws UncheckedIOException if fetching or parsing a page failed
+     */
+    @Override
+    public DeviceTwinDevice next() throws NoSuchElementException, DeviceTwinQueryException, UncheckedIOException
+    {
+        if (!this.hasNext())
+        {
+            throw new NoSuchElementException();
+        }
+
+        return this.currentPage.next();
+    }
+
+    /**
+     * Returns the remaining results as a sequential stream. Closing the stream closes this iterator.
+     *
+     * @return a stream of the remaining results
+     */
+    public Stream<DeviceTwinDevice> stream()
+    {
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(this::close);
+    }
+
+    /**
+     * Stops fetching pages. Results already handed out stay valid; {@link #hasNext()} returns false afterwards.
+     */
+    @Override
+    public void close()
+    {
+        this.isClosed = true;
+
+        // wakes up a caller waiting in hasNext()
+        this.prefetchedPages.add(new Page(Collections.<DeviceTwinDevice>emptyList(), true, null));
+    }
+
+    /**
+     * Submits the fetch of the next page, unless one is in progress, the last page was fetched, or the caller has not
+     * made room for another page yet.
+     */
+    private void scheduleFetch()
+    {
+        synchronized (this.fetchLock)
+        {
+            if (this.isFetching || this.isLastPageFetched || this.isClosed || this.prefetchedPages.size() >= this.prefetchPageCount)
+            {
+                return;
+            }
+
+            this.isFetching = true;
+        }
+
+        try
+        {
+            PREFETCH_EXECUTOR.execute(this::fetchPage);
+        }
+        catch (RejectedExecutionException e)
+        {
+            this.onPageFetched(new Page(Collections.<DeviceTwinDevice>emptyList(), true, e));
+        }
+    }
+
+    private void fetchPage()
+    {
+        Page page;
+        try
+        {
+            QueryCollectionResponse<String> response = this.queryCollection.next();
+            boolean isLast = (response == null) || !this.queryCollection.hasNext();
+
+            List<DeviceTwinDevice> deviceTwinDevices = new ArrayList<>();
+            if (response != null)
+            {
+                for (String json : response.getCollection())
+                {
+                    deviceTwinDevices.add(this.deviceTwin.jsonToDeviceTwinDevice(json));
+                }
+            }
+
+            page = new Page(deviceTwinDevices, isLast, null);
+        }
+        catch (IotHubException e)
+        {
+            page = new Page(Collections.<DeviceTwinDevice>emptyList(), true, new DeviceTwinQueryException(e));
+        }
+        catch (IOException e)
+        {
+            page = new Page(Collections.<DeviceTwinDevice>emptyList(), true, new UncheckedIOException(e));
+        }
+        catch (RuntimeException e)
+        {
+            page = new Page(Collections.<DeviceTwinDevice>emptyList(), true, e);
+        }
+
+        this.onPageFetched(page);
+    }
+
+    private void onPageFetched(Page page)
+    {
+        synchronized (this.fetchLock)
+        {
+            this.isFetching = false;
+            this.isLastPageFetched = page.isLast;
+        }
+
+        if (!this.isClosed)
+        {
+            this.prefetchedPages.add(page);
+            this.scheduleFetch();
+        }
+    }
+
+    private static ExecutorService createPrefetchExecutor()
+    {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_PREFETCH_THREADS, MAX_PREFETCH_THREADS,
+                PREFETCH_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable ->
+                {
+                    Thread thread = new Thread(runnable, THREAD_NAME);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static final class Page
+    {
+        private final List<DeviceTwinDevice> deviceTwinDevices;
+        private final boolean isLast;
+        private final RuntimeException exception;
+
+        private Page(List<DeviceTwinDevice> deviceTwinDevices, boolean isLast, RuntimeException exception)
+        {
+            this.deviceTwinDevices = deviceTwinDevices;
+            this.isLast = isLast;
+            this.exception = exception;
+        }
+    }
+}
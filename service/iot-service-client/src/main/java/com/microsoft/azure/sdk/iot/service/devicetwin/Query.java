@@ -196,7 +196,9 @@ public class Query
         }
 
         //Codes_SRS_QUERY_25_009: [The method shall use the provided HTTP Method and send request to IotHub with the serialized body over the provided URL.]
-        HttpResponse httpResponse = DeviceOperations.request(iotHubConnectionString, url, method, payload, null, timeoutInMs);
+        // The items are read from the response stream as it arrives, rather than from a copy of the whole body
+        QueryResponseReader responseReader = new QueryResponseReader();
+        HttpResponse httpResponse = DeviceOperations.request(iotHubConnectionString, url, method, payload, null, timeoutInMs, responseReader);
 
         this.responseContinuationToken = null;
         Map<String, String> headers = httpResponse.getHeaderFields();
@@ -229,7 +231,7 @@ public class Query
         }
 
         //Codes_SRS_QUERY_25_013: [The method shall create a QueryResponse object with the contents from the response body and save it.]
-        this.queryResponse = new QueryResponse(new String(httpResponse.getBody()));
+        this.queryResponse = new QueryResponse(responseReader.getItems());
         return this.queryResponse;
     }
 
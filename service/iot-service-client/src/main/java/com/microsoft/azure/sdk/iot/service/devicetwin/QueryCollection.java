@@ -147,15 +147,16 @@ public class QueryCollection
         }
 
         //Codes_SRS_QUERYCOLLECTION_34_017: [This function shall send an HTTPS request using DeviceOperations.]
-        HttpResponse httpResponse = DeviceOperations.request(this.iotHubConnectionString, this.url, this.httpMethod, payload, null, this.timeout);
+        // The items are read from the response stream as it arrives, rather than from a copy of the whole body
+        QueryResponseReader responseReader = new QueryResponseReader();
+        HttpResponse httpResponse = DeviceOperations.request(this.iotHubConnectionString, this.url, this.httpMethod, payload, null, this.timeout, responseReader);
 
         //Codes_SRS_QUERYCOLLECTION_34_018: [The method shall read the continuation token (x-ms-continuation) and response type (x-ms-item-type) from the HTTP Headers and save it.]
         handleQueryResponse(httpResponse);
 
         //Codes_SRS_QUERYCOLLECTION_34_021: [The method shall create a QueryResponse object with the contents from the response body and its continuation token and return it.]
         this.isInitialQuery = false;
-        return new QueryCollectionResponse<String>(
-        		new String(httpResponse.getBody(), "UTF-8"), this.responseContinuationToken);
+        return new QueryCollectionResponse<String>(responseReader.getItems(), this.responseContinuationToken);
     }
 
     /**
@@ -9,6 +9,7 @@ import com.microsoft.azure.sdk.iot.deps.serializer.QueryResponseParser;
 
 import java.io.IOException;
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * Response for the Query
@@ -35,6 +36,20 @@ public class QueryResponse implements Iterator<Object>
         this.responseElementsIterator = responseParser.getJsonItems().iterator();
     }
 
+    /**
+     * Creates an object for the query response from items already read from the response
+     * @param items json string of each item of the response, as read by {@link QueryResponseReader}
+     */
+    QueryResponse(List<String> items)
+    {
+        if (items == null)
+        {
+            throw new IllegalArgumentException("response cannot be null");
+        }
+
+        this.responseElementsIterator = items.iterator();
+    }
+
     /**
      * returns the availability of next response
      * @return true if present and false otherwise
@@ -0,0 +1,139 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.devicetwin;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponseBodyReader;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the json array of a query response from the response stream, copying each item token by token into its
+ * own json string. Neither the body nor a json tree of the items is ever held in memory, and a malformed response
+ * is still reported while the response is read, before any item is returned.
+ */
+class QueryResponseReader implements HttpResponseBodyReader
+{
+    private final List<String> items = new ArrayList<>();
+
+    /**
+     * Reads the items of the json array from the provided stream.
+     *
+     * @param body stream of the json array of the response
+     * @throws IOException If the stream could not be read
+     * @throws IllegalArgumentException If the stream does not contain a json array of json objects
+     */
+    @Override
+    public void read(InputStream body) throws IOException, IllegalArgumentException
+    {
+        JsonReader jsonReader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        // as lenient as the gson parser used by QueryResponseParser
+        jsonReader.setLenient(true);
+        try
+        {
+            jsonReader.beginArray();
+            while (jsonReader.peek() != JsonToken.END_ARRAY)
+            {
+                if (jsonReader.peek() != JsonToken.BEGIN_OBJECT)
+                {
+                    throw new IllegalArgumentException("Malformed json: query response items must be json objects");
+                }
+
+                this.items.add(copyItem(jsonReader));
+            }
+            jsonReader.endArray();
+
+            if (jsonReader.peek() != JsonToken.END_DOCUMENT)
+            {
+                throw new IllegalArgumentException("Malformed json: query response was not fully consumed");
+            }
+        }
+        catch (MalformedJsonException | EOFException | IllegalStateException e)
+        {
+            // same contract as QueryResponseParser, which rejects the response before any item is returned
+            throw new IllegalArgumentException("Malformed json:" + e);
+        }
+    }
+
+    /**
+     * Getter for the items read from the response.
+     *
+     * @return the json string of each item, in the order of the response
+     */
+    List<String> getItems()
+    {
+        return this.items;
+    }
+
+    private static String copyItem(JsonReader jsonReader) throws IOException
+    {
+        StringWriter item = new StringWriter();
+        JsonWriter jsonWriter = new JsonWriter(item);
+        // matches the output of the QueryResponseParser, which serializes the items without their null members
+        jsonWriter.setSerializeNulls(false);
+
+        int depth = 0;
+        do
+        {
+            switch (jsonReader.peek())
+            {
+                case BEGIN_OBJECT:
+                    jsonReader.beginObject();
+                    jsonWriter.beginObject();
+                    depth++;
+                    break;
+                case END_OBJECT:
+                    jsonReader.endObject();
+                    jsonWriter.endObject();
+                    depth--;
+                    break;
+                case BEGIN_ARRAY:
+                    jsonReader.beginArray();
+                    jsonWriter.beginArray();
+                    depth++;
+                    break;
+                case END_ARRAY:
+                    jsonReader.endArray();
+                    jsonWriter.endArray();
+                    depth--;
+                    break;
+                case NAME:
+                    jsonWriter.name(jsonReader.nextName());
+                    break;
+                case STRING:
+                    jsonWriter.value(jsonReader.nextString());
+                    break;
+                case NUMBER:
+                    // the literal is copied as is, so no precision is lost
+                    jsonWriter.jsonValue(jsonReader.nextString());
+                    break;
+                case BOOLEAN:
+                    jsonWriter.value(jsonReader.nextBoolean());
+                    break;
+                case NULL:
+                    jsonReader.nextNull();
+                    jsonWriter.nullValue();
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected " + jsonReader.peek());
+            }
+        }
+        while (depth > 0);
+
+        jsonWriter.flush();
+        return item.toString();
+    }
+}
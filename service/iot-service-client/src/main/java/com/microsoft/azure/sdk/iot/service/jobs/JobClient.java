@@ -22,6 +22,8 @@ import java.util.*;
 
 /**
  * JobClient enables service client to schedule and cancel jobs for a group of devices using the IoTHub.
+ * An instance holds no per-call state, so it can be shared by threads calling it concurrently. A {@link Query}
+ * returned by this client keeps its own paging state and must be iterated by one thread at a time.
  */
 public class JobClient
 {
@@ -71,7 +73,7 @@ public class JobClient
      * @throws IOException if the function cannot create a URL for the job
      * @throws IotHubException if the http request failed
      */
-    public synchronized JobResult scheduleUpdateTwin(
+    public JobResult scheduleUpdateTwin(
             String jobId,
             String queryCondition,
             DeviceTwinDevice updateTwin,
@@ -144,7 +146,7 @@ public class JobClient
      * @throws IOException if the function cannot create a URL for the job, or the IO failed on request
      * @throws IotHubException if the http request failed
      */
-    public synchronized JobResult scheduleDeviceMethod(
+    public JobResult scheduleDeviceMethod(
             String jobId,
             String queryCondition,
             String methodName, Long responseTimeoutInSeconds, Long connectTimeoutInSeconds, Object payload,
@@ -211,7 +213,7 @@ public class JobClient
      * @throws IOException if the function cannot create a URL for the job, or the IO failed on request
      * @throws IotHubException if the http request failed
      */
-    public synchronized JobResult getJob(String jobId)
+    public JobResult getJob(String jobId)
             throws IllegalArgumentException, IOException, IotHubException
     {
         URL url;
@@ -250,7 +252,7 @@ public class JobClient
      * @throws IOException if the function cannot create a URL for the job, or the IO failed on request
      * @throws IotHubException if the http request failed
      */
-    public synchronized JobResult cancelJob(String jobId)
+    public JobResult cancelJob(String jobId)
             throws IllegalArgumentException, IOException, IotHubException
     {
         URL url;
@@ -341,7 +343,7 @@ public class JobClient
      * @throws IotHubException When IotHub fails to respond
      * @throws IOException When any of the parameters are incorrect
      */
-    public synchronized Query queryDeviceJob(String sqlQuery, Integer pageSize) throws IotHubException, IOException
+    public Query queryDeviceJob(String sqlQuery, Integer pageSize) throws IotHubException, IOException
     {
         if (sqlQuery == null || sqlQuery.length() == 0)
         {
@@ -370,7 +372,7 @@ public class JobClient
      * @throws IotHubException When IotHub fails to respond
      * @throws IOException When any of the parameters are incorrect
      */
-    public synchronized Query queryDeviceJob(String sqlQuery) throws IotHubException, IOException
+    public Query queryDeviceJob(String sqlQuery) throws IotHubException, IOException
     {
         //Codes_SRS_JOBCLIENT_25_038: [If the pageSize is not specified, default pageSize of 100 shall be used .]
         return queryDeviceJob(sqlQuery, DEFAULT_PAGE_SIZE);
@@ -383,7 +385,7 @@ public class JobClient
      * @throws IotHubException When IotHub fails to respond
      * @throws IOException if any of the input parameters are incorrect
      */
-    public synchronized boolean hasNextJob(Query query) throws IotHubException, IOException
+    public boolean hasNextJob(Query query) throws IotHubException, IOException
     {
         if (query == null)
         {
@@ -402,7 +404,7 @@ public class JobClient
      * @throws IOException if any of the input parameters are incorrect
      * @throws NoSuchElementException if called when no further responses are left
      */
-    public synchronized JobResult getNextJob(Query query) throws IOException, IotHubException, NoSuchElementException
+    public JobResult getNextJob(Query query) throws IOException, IotHubException, NoSuchElementException
     {
         if (query == null)
         {
@@ -434,7 +436,7 @@ public class JobClient
      * @throws IOException If any of the input parameters are incorrect
      * @throws IotHubException If IotHub failed to respond
      */
-    public synchronized Query queryJobResponse(JobType jobType, JobStatus jobStatus, Integer pageSize) throws IOException, IotHubException
+    public Query queryJobResponse(JobType jobType, JobStatus jobStatus, Integer pageSize) throws IOException, IotHubException
     {
         if (pageSize <= 0)
         {
@@ -459,7 +461,7 @@ public class JobClient
      * @throws IOException If any of the input parameters are incorrect
      * @throws IotHubException If IotHub failed to respond
      */
-    public synchronized Query queryJobResponse(JobType jobType, JobStatus jobStatus) throws IotHubException, IOException
+    public Query queryJobResponse(JobType jobType, JobStatus jobStatus) throws IotHubException, IOException
     {
         //Codes_SRS_JOBCLIENT_25_043: [If the pageSize is not specified, default pageSize of 100 shall be used.]
         return queryJobResponse(jobType, jobStatus, DEFAULT_PAGE_SIZE);
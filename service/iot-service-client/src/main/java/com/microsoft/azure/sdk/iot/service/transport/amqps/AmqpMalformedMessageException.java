@@ -0,0 +1,22 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.transport.amqps;
+
+/**
+ * Thrown by an {@link AmqpPersistentReceiveEvent} for messages that cannot be parsed. Such messages would fail the
+ * same way on every redelivery, so they are rejected instead of being handed back to the service.
+ */
+public class AmqpMalformedMessageException extends Exception
+{
+    /**
+     * @param message The reason the message could not be parsed
+     * @param cause The parser failure
+     */
+    public AmqpMalformedMessageException(String message, Throwable cause)
+    {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,593 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
+import com.microsoft.azure.sdk.iot.service.IotHubServiceClientProtocol;
+import com.microsoft.azure.sdk.iot.service.Tools;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.engine.BaseHandler;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.reactor.Reactor;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reactor and connection lifecycle of the long-lived links of the service client. A single Proton reactor thread
+ * keeps one connection with one link open for the lifetime of the owner, and re-establishes it after it is lost.
+ * If the reactor thread itself dies, a new one is started the same way; once restarting keeps failing the owner
+ * is marked closed.
+ * <p>
+ * When created from a connection string, every connection is signed with a fresh SAS token, and is recycled
+ * once most of the token lifetime has passed and the owner reports the link drained. When created with a SAS
+ * token, that token is used for every connection, so the link stops working once it expires.
+ * <p>
+ * The owner handles its link through the hooks below, which are called on the reactor thread unless noted.
+ *
+ * @param <H> The handler of one connection of the owner
+ */
+abstract class AmqpPersistentConnection<H extends BaseHandler> extends BaseHandler
+{
+    private static final int REACTOR_TIMEOUT_MILLIS = 10;
+    private static final long OPEN_TIMEOUT_MILLIS = 60 * 1000;
+    private static final long CLOSE_TIMEOUT_MILLIS = 10 * 1000;
+    private static final int RECONNECT_DELAY_MILLIS = 1000;
+    private static final int MAX_RECONNECT_ATTEMPTS = 5;
+
+    // how long a connection due for token renewal waits for the owner to drain it before it is recycled
+    private static final long RENEWAL_DRAIN_TIMEOUT_MILLIS = 10 * 1000;
+
+    // the connection is recycled once this fraction of the SAS token lifetime has passed
+    private static final double TOKEN_RENEWAL_FRACTION = 0.85;
+
+    private final String threadName;
+    private final String linkName;
+    private final IotHubConnectionString iotHubConnectionString;
+    private final String hostName;
+    private final String userName;
+    private final String sasToken;
+    final IotHubServiceClientProtocol iotHubServiceClientProtocol;
+
+    // only touched on the reactor thread
+    H currentHandler;
+    private long tokenRenewalTimeMillis = Long.MAX_VALUE;
+    private int reconnectAttempts = 0;
+
+    private final Object reactorLock = new Object();
+    volatile Reactor reactor;
+    private Thread reactorThread;
+    private CountDownLatch openLatch;
+    private CountDownLatch closeLatch;
+    private volatile IOException openException;
+    volatile boolean isOpen = false;
+    volatile boolean isClosing = false;
+    private volatile long closeDeadline = Long.MAX_VALUE;
+
+    /**
+     * Constructor for links whose connections are signed with a fresh SAS token each
+     * @param threadName The name of the reactor thread
+     * @param linkName The name of the link in error messages (example: sender)
+     * @param iotHubConnectionString The connection string used to build the SAS token of each connection
+     * @param iotHubServiceClientProtocol protocol to use
+     */
+    AmqpPersistentConnection(String threadName, String linkName, IotHubConnectionString iotHubConnectionString,
+                             IotHubServiceClientProtocol iotHubServiceClientProtocol)
+    {
+        if (iotHubConnectionString == null)
+        {
+            throw new IllegalArgumentException("iotHubConnectionString cannot be null");
+        }
+
+        if (iotHubServiceClientProtocol == null)
+        {
+            throw new IllegalArgumentException("iotHubServiceClientProtocol cannot be null");
+        }
+
+        this.threadName = threadName;
+        this.linkName = linkName;
+        this.iotHubConnectionString = iotHubConnectionString;
+        this.hostName = null;
+        this.userName = null;
+        this.sasToken = null;
+        this.iotHubServiceClientProtocol = iotHubServiceClientProtocol;
+    }
+
+    /**
+     * Constructor for links whose connections all use the given SAS token
+     * @param threadName The name of the reactor thread
+     * @param linkName The name of the link in error messages (example: receiver)
+     * @param hostName The address string of the service (example: AAA.BBB.CCC)
+     * @param userName The username string to use SASL authentication (example: user@sas.service)
+     * @param sasToken The SAS token string
+     * @param iotHubServiceClientProtocol protocol to use
+     */
+    AmqpPersistentConnection(String threadName, String linkName, String hostName, String userName, String sasToken,
+                             IotHubServiceClientProtocol iotHubServiceClientProtocol)
+    {
+        if (Tools.isNullOrEmpty(hostName) || Tools.isNullOrEmpty(userName) || Tools.isNullOrEmpty(sasToken))
+        {
+            throw new IllegalArgumentException("hostName, userName and sasToken cannot be null or empty");
+        }
+
+        if (iotHubServiceClientProtocol == null)
+        {
+            throw new IllegalArgumentException("iotHubServiceClientProtocol cannot be null");
+        }
+
+        this.threadName = threadName;
+        this.linkName = linkName;
+        this.iotHubConnectionString = null;
+        this.hostName = hostName;
+        this.userName = userName;
+        this.sasToken = sasToken;
+        this.iotHubServiceClientProtocol = iotHubServiceClientProtocol;
+    }
+
+    /**
+     * Start the reactor thread and wait until the link has been opened by the service
+     * @throws IOException if the connection could not be established
+     */
+    public synchronized void open() throws IOException
+    {
+        if (this.isOpen)
+        {
+            return;
+        }
+
+        this.openException = null;
+        this.isClosing = false;
+        this.closeDeadline = Long.MAX_VALUE;
+        this.openLatch = new CountDownLatch(1);
+        this.closeLatch = new CountDownLatch(1);
+        this.reconnectAttempts = 0;
+
+        onOpening();
+        synchronized (this.reactorLock)
+        {
+            try
+            {
+                startReactor();
+            }
+            catch (IOException e)
+            {
+                onClosed();
+                throw e;
+            }
+        }
+
+        try
+        {
+            if (!this.openLatch.await(OPEN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS))
+            {
+                this.openException = new IOException("Timed out waiting for the " + this.linkName + " link to open");
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            this.openException = new IOException("Interrupted while waiting for the " + this.linkName + " link to open", e);
+        }
+
+        if (this.openException != null)
+        {
+            IOException cause = this.openException;
+            close();
+            throw cause;
+        }
+
+        this.isOpen = true;
+    }
+
+    /**
+     * Close the connection and stop the reactor thread
+     */
+    public synchronized void close()
+    {
+        Reactor closingReactor;
+        synchronized (this.reactorLock)
+        {
+            closingReactor = this.reactor;
+            this.isOpen = false;
+            this.isClosing = true;
+        }
+
+        if (closingReactor != null)
+        {
+            this.closeDeadline = System.currentTimeMillis() + CLOSE_TIMEOUT_MILLIS;
+            wakeup(closingReactor);
+
+            try
+            {
+                this.closeLatch.await(CLOSE_TIMEOUT_MILLIS * 2, TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // also when the reactor already gave up, so the owner releases what it holds
+        onClosed();
+        this.reactor = null;
+        this.reactorThread = null;
+    }
+
+    /**
+     * Getter for the open state
+     * @return true if the link is up or being re-established, false after close or once the reactor gave up
+     */
+    public boolean isOpen()
+    {
+        return this.isOpen;
+    }
+
+    /**
+     * Event handler for the reactor init event. Opens the first connection
+     * @param event The proton event object
+     */
+    @Override
+    public void onReactorInit(Event event)
+    {
+        connect(event.getReactor());
+    }
+
+    /**
+     * Event handler for the reactor quiesced event, raised each time the reactor is about to wait for I/O.
+     * Lets the owner do the work queued by other threads, recycles the connection before the token expires
+     * and handles close requests.
+     * @param event The proton event object
+     */
+    @Override
+    public void onReactorQuiesced(Event event)
+    {
+        if (this.isClosing)
+        {
+            if (this.currentHandler != null)
+            {
+                closeConnection(this.currentHandler);
+                this.currentHandler = null;
+            }
+            onShutdown(new IOException("The " + this.linkName + " was closed"));
+            return;
+        }
+
+        onQuiesced();
+
+        if (this.currentHandler != null && isLinkOpen(this.currentHandler) && isTokenRenewalDue())
+        {
+            long now = System.currentTimeMillis();
+            if (isDrained() || now >= this.tokenRenewalTimeMillis + RENEWAL_DRAIN_TIMEOUT_MILLIS)
+            {
+                // closing the current connection makes the next one pick up a freshly signed token
+                H expiringHandler = this.currentHandler;
+                this.currentHandler = null;
+                closeConnection(expiringHandler);
+                onConnectionDown(new IOException("The connection was recycled to renew its SAS token"));
+                connect(event.getReactor());
+            }
+        }
+    }
+
+    /**
+     * Event handler for the timer task event, used to reconnect after a connection loss
+     * @param event The proton event object
+     */
+    @Override
+    public void onTimerTask(Event event)
+    {
+        if (!this.isClosing && this.currentHandler == null)
+        {
+            connect(event.getReactor());
+        }
+    }
+
+    /**
+     * Called by the owner once the service opened the link of a connection
+     * @param handler The handler of the connection
+     * @return true if the handler is the one of the current connection
+     */
+    boolean onLinkOpened(H handler)
+    {
+        if (handler != this.currentHandler)
+        {
+            return false;
+        }
+
+        this.reconnectAttempts = 0;
+        this.openLatch.countDown();
+        return true;
+    }
+
+    /**
+     * Called by a connection handler when its connection is gone. A new connection is scheduled
+     * @param handler The handler of the lost connection
+     * @param cause The reason the connection was lost
+     */
+    void onConnectionLost(H handler, IOException cause)
+    {
+        if (handler != this.currentHandler)
+        {
+            return;
+        }
+
+        this.currentHandler = null;
+        onConnectionDown(cause);
+
+        if (this.openLatch.getCount() > 0)
+        {
+            // the very first connection failed, let open() report it
+            this.openException = cause;
+            this.openLatch.countDown();
+            return;
+        }
+
+        this.reconnectAttempts++;
+        if (this.reconnectAttempts >= MAX_RECONNECT_ATTEMPTS)
+        {
+            // the service stays unreachable; reconnecting goes on
+            onReconnectAttemptsExhausted(cause);
+        }
+
+        Reactor currentReactor = this.reactor;
+        if (!this.isClosing && currentReactor != null)
+        {
+            currentReactor.schedule(RECONNECT_DELAY_MILLIS, this);
+        }
+    }
+
+    /**
+     * @return true once the SAS token of the current connection is due for renewal
+     */
+    boolean isTokenRenewalDue()
+    {
+        return System.currentTimeMillis() >= this.tokenRenewalTimeMillis;
+    }
+
+    /**
+     * Create the handler of a new connection
+     * @param hostName The address string of the service
+     * @param userName The username string to use SASL authentication
+     * @param sasToken The SAS token string of the connection
+     * @return The handler, which reports its link events back to the owner
+     */
+    abstract H createConnectionHandler(String hostName, String userName, String sasToken);
+
+    /**
+     * Close the link, session and connection of the given handler
+     * @param handler The handler of the connection to close
+     */
+    abstract void closeConnection(H handler);
+
+    /**
+     * @param handler The handler of a connection
+     * @return true if the link of the connection is open
+     */
+    abstract boolean isLinkOpen(H handler);
+
+    /**
+     * Do the work queued by other threads for the current connection, if there is one
+     */
+    abstract void onQuiesced();
+
+    /**
+     * @return true if nothing on the current connection waits for the service, so it can be recycled
+     */
+    abstract boolean isDrained();
+
+    /**
+     * Called on the calling thread of {@link #open()} before the reactor is started
+     */
+    void onOpening()
+    {
+    }
+
+    /**
+     * Called when the current connection is gone, lost or recycled. A new one follows unless the owner is closing
+     * @param cause The reason the connection is gone
+     */
+    void onConnectionDown(IOException cause)
+    {
+    }
+
+    /**
+     * Called after every reconnection attempt once the service stayed unreachable for several attempts in a row
+     * @param cause The reason the last connection was lost
+     */
+    void onReconnectAttemptsExhausted(IOException cause)
+    {
+    }
+
+    /**
+     * Called when no connection will follow, because the owner is closing or the reactor could not be restarted
+     * @param cause The reason
+     */
+    void onShutdown(IOException cause)
+    {
+    }
+
+    /**
+     * Called on the calling thread of {@link #close()} once the reactor thread stopped or the close timed out
+     */
+    void onClosed()
+    {
+    }
+
+    static void wakeup(Reactor reactor)
+    {
+        if (reactor == null)
+        {
+            return;
+        }
+
+        try
+        {
+            reactor.wakeup();
+        }
+        catch (RuntimeException e)
+        {
+            // the reactor stopped in the meantime; whoever stopped it takes care of the queued work
+        }
+    }
+
+    private void connect(Reactor reactor)
+    {
+        if (this.iotHubConnectionString == null)
+        {
+            this.currentHandler = createConnectionHandler(this.hostName, this.userName, this.sasToken);
+        }
+        else
+        {
+            IotHubServiceSasToken connectionSasToken = new IotHubServiceSasToken(this.iotHubConnectionString);
+            long now = System.currentTimeMillis();
+            this.tokenRenewalTimeMillis = now + (long) ((connectionSasToken.getExpiryTime() * 1000 - now) * TOKEN_RENEWAL_FRACTION);
+
+            this.currentHandler = createConnectionHandler(
+                    this.iotHubConnectionString.getHostName(),
+                    this.iotHubConnectionString.getUserString(),
+                    connectionSasToken.toString());
+        }
+
+        reactor.connection(this.currentHandler);
+    }
+
+    /**
+     * Create a reactor and start a thread to run it. Must be called holding the reactor lock
+     * @throws IOException if the reactor could not be created
+     */
+    private void startReactor() throws IOException
+    {
+        try
+        {
+            this.reactor = Proton.reactor(this);
+        }
+        catch (IOException e)
+        {
+            throw new IOException("Could not create Proton reactor", e);
+        }
+
+        this.reactorThread = new Thread(new ReactorRunner(this.reactor), this.threadName);
+        this.reactorThread.setDaemon(true);
+        this.reactorThread.start();
+    }
+
+    /**
+     * Runs the reactor until it has no more work or a close request times out. If the reactor stops while the
+     * owner is open, a new reactor is started in its place; once restarting keeps failing the owner is marked
+     * closed, so no caller waits on a dead reactor
+     */
+    private class ReactorRunner implements Runnable
+    {
+        private final Reactor runningReactor;
+
+        ReactorRunner(Reactor runningReactor)
+        {
+            this.runningReactor = runningReactor;
+        }
+
+        @Override
+        public void run()
+        {
+            IOException failure = null;
+            try
+            {
+                runningReactor.setTimeout(REACTOR_TIMEOUT_MILLIS);
+                runningReactor.start();
+                while (runningReactor.process())
+                {
+                    if (System.currentTimeMillis() > closeDeadline)
+                    {
+                        break;
+                    }
+                }
+                runningReactor.stop();
+                runningReactor.process();
+            }
+            catch (RuntimeException e)
+            {
+                // handler exceptions reach here wrapped in a HandlerException
+                failure = new IOException("The Proton reactor failed", e);
+            }
+            finally
+            {
+                try
+                {
+                    runningReactor.free();
+                }
+                catch (RuntimeException e)
+                {
+                    // already freed, or broken beyond freeing
+                }
+
+                if (openLatch.getCount() > 0)
+                {
+                    if (failure != null)
+                    {
+                        openException = failure;
+                    }
+                    openLatch.countDown();
+                    closeLatch.countDown();
+                }
+                else if (!restartAfterUnexpectedStop(failure == null ? new IOException("The Proton reactor stopped") : failure))
+                {
+                    closeLatch.countDown();
+                }
+            }
+        }
+
+        /**
+         * @return true if a new reactor took over, so the close latch is left to its runner
+         */
+        private boolean restartAfterUnexpectedStop(IOException cause)
+        {
+            currentHandler = null;
+            if (!isClosing)
+            {
+                try
+                {
+                    Thread.sleep(RECONNECT_DELAY_MILLIS);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            synchronized (reactorLock)
+            {
+                if (isClosing)
+                {
+                    onShutdown(new IOException("The " + linkName + " was closed"));
+                    return false;
+                }
+
+                // the connection went down with the reactor
+                onConnectionDown(cause);
+                reconnectAttempts++;
+                if (reconnectAttempts < MAX_RECONNECT_ATTEMPTS)
+                {
+                    try
+                    {
+                        startReactor();
+                        return true;
+                    }
+                    catch (IOException e)
+                    {
+                        cause = e;
+                    }
+                }
+
+                // the owner fails fast from now on, instead of queueing behind a reactor that no longer runs
+                isOpen = false;
+                reactor = null;
+                onShutdown(cause);
+                return false;
+            }
+        }
+    }
+}
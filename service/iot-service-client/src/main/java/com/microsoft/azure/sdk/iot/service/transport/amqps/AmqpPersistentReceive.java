@@ -0,0 +1,358 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
+import com.microsoft.azure.sdk.iot.service.IotHubServiceClientProtocol;
+import com.microsoft.azure.sdk.iot.service.Tools;
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.messaging.AmqpValue;
+import org.apache.qpid.proton.amqp.messaging.Data;
+import org.apache.qpid.proton.amqp.messaging.Modified;
+import org.apache.qpid.proton.amqp.messaging.Rejected;
+import org.apache.qpid.proton.amqp.messaging.Section;
+import org.apache.qpid.proton.amqp.transport.AmqpError;
+import org.apache.qpid.proton.amqp.transport.DeliveryState;
+import org.apache.qpid.proton.amqp.transport.ErrorCondition;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.Receiver;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Long-lived receiver for one service bound endpoint. A single Proton reactor thread keeps one connection
+ * and one receiver link open for the lifetime of the receiver, instead of connecting for every receive call.
+ * <p>
+ * The link is granted a fixed amount of credit, which bounds how many messages are delivered but not yet
+ * settled. Messages are handed to the {@link AmqpPersistentReceiveEvent} in order on a dispatch thread, so a
+ * slow callback does not stall the connection. Messages that arrive while the callback is busy are handed
+ * over together on the next call, up to the maximum batch size. Every message of a call is settled once the
+ * callback returns, which also grants the credit for the next ones.
+ * <p>
+ * The connection is re-established after it is lost, and when created from a connection string it is recycled
+ * with a fresh SAS token before the current token expires. Messages that were not settled before their
+ * connection went away are redelivered by the service, so a message may be handed to the callback twice.
+ */
+public class AmqpPersistentReceive extends AmqpPersistentConnection<AmqpPersistentReceiveHandler>
+{
+    private static final String THREAD_NAME = "azure-iot-sdk-AmqpPersistentReceive";
+    private static final String DISPATCH_THREAD_NAME = "azure-iot-sdk-AmqpPersistentReceive-dispatch";
+
+    private final String endpoint;
+    private final int linkCredit;
+    private final int maxBatchSize;
+    private final AmqpPersistentReceiveEvent amqpPersistentReceiveEvent;
+
+    // filled by the reactor thread, drained by the dispatch thread
+    private final Queue<PendingSettlement> receivedMessages = new ConcurrentLinkedQueue<>();
+
+    // filled by the dispatch thread, drained by the reactor thread
+    private final Queue<PendingSettlement> settlements = new ConcurrentLinkedQueue<>();
+
+    // only touched on the reactor thread
+    private int unsettledMessages = 0;
+
+    private ExecutorService dispatcher;
+
+    /**
+     * Constructor to set up connection parameters. Each connection is signed with a fresh SAS token
+     * @param iotHubConnectionString The connection string used to build the SAS token of each connection
+     * @param iotHubServiceClientProtocol protocol to use
+     * @param endpoint The address of the endpoint to receive from
+     * @param linkCredit The maximum number of messages delivered to this receiver but not settled yet
+     * @param maxBatchSize The maximum number of messages handed to one callback, at most the link credit
+     * @param amqpPersistentReceiveEvent callback to delegate the received messages to the user API
+     */
+    public AmqpPersistentReceive(IotHubConnectionString iotHubConnectionString, IotHubServiceClientProtocol iotHubServiceClientProtocol,
+                                 String endpoint, int linkCredit, int maxBatchSize, AmqpPersistentReceiveEvent amqpPersistentReceiveEvent)
+    {
+        super(THREAD_NAME, "receiver", iotHubConnectionString, iotHubServiceClientProtocol);
+        validateLinkParameters(endpoint, linkCredit, maxBatchSize, amqpPersistentReceiveEvent);
+
+        this.endpoint = endpoint;
+        this.linkCredit = linkCredit;
+        this.maxBatchSize = maxBatchSize;
+        this.amqpPersistentReceiveEvent = amqpPersistentReceiveEvent;
+    }
+
+    /**
+     * Constructor to set up connection parameters. Every connection uses the given SAS token, so the receiver
+     * stops receiving once it expires
+     * @param hostName The address string of the service (example: AAA.BBB.CCC)
+     * @param userName The username string to use SASL authentication (example: user@sas.service)
+     * @param sasToken The SAS token string
+     * @param iotHubServiceClientProtocol protocol to use
+     * @param endpoint The address of the endpoint to receive from
+     * @param linkCredit The maximum number of messages delivered to this receiver but not settled yet
+     * @param maxBatchSize The maximum number of messages handed to one callback, at most the link credit
+     * @param amqpPersistentReceiveEvent callback to delegate the received messages to the user API
+     */
+    public AmqpPersistentReceive(String hostName, String userName, String sasToken, IotHubServiceClientProtocol iotHubServiceClientProtocol,
+                                 String endpoint, int linkCredit, int maxBatchSize, AmqpPersistentReceiveEvent amqpPersistentReceiveEvent)
+    {
+        super(THREAD_NAME, "receiver", hostName, userName, sasToken, iotHubServiceClientProtocol);
+        validateLinkParameters(endpoint, linkCredit, maxBatchSize, amqpPersistentReceiveEvent);
+
+        this.endpoint = endpoint;
+        this.linkCredit = linkCredit;
+        this.maxBatchSize = maxBatchSize;
+        this.amqpPersistentReceiveEvent = amqpPersistentReceiveEvent;
+    }
+
+    private static void validateLinkParameters(String endpoint, int linkCredit, int maxBatchSize, AmqpPersistentReceiveEvent amqpPersistentReceiveEvent)
+    {
+        if (Tools.isNullOrEmpty(endpoint))
+        {
+            throw new IllegalArgumentException("endpoint cannot be null or empty");
+        }
+
+        if (linkCredit < 1)
+        {
+            throw new IllegalArgumentException("linkCredit must be at least 1");
+        }
+
+        if (maxBatchSize < 1 || maxBatchSize > linkCredit)
+        {
+            throw new IllegalArgumentException("maxBatchSize must be at least 1 and at most linkCredit");
+        }
+
+        if (amqpPersistentReceiveEvent == null)
+        {
+            throw new IllegalArgumentException("amqpPersistentReceiveEvent cannot be null");
+        }
+    }
+
+    /**
+     * Called by the connection handler once the service opened the receiver link
+     * @param handler The handler of the connection
+     */
+    void onReceiverOpened(AmqpPersistentReceiveHandler handler)
+    {
+        onLinkOpened(handler);
+    }
+
+    /**
+     * Called by the connection handler for each complete message. Queues the message for the dispatch thread
+     * @param handler The handler of the connection the message arrived on
+     * @param delivery The delivery to settle once the callback returns
+     * @param message The decoded message
+     */
+    void onMessageReceived(AmqpPersistentReceiveHandler handler, Delivery delivery, org.apache.qpid.proton.message.Message message)
+    {
+        if (handler != this.currentHandler || this.isClosing)
+        {
+            // left unsettled, so the service redelivers it
+            return;
+        }
+
+        this.receivedMessages.add(new PendingSettlement(handler, delivery, getBodyString(message.getBody())));
+        this.unsettledMessages++;
+        try
+        {
+            this.dispatcher.execute(this::dispatch);
+        }
+        catch (RejectedExecutionException e)
+        {
+            // closing; left unsettled, so the service redelivers it
+        }
+    }
+
+    /**
+     * Hand the queued messages to the callback, up to the maximum batch size, and queue their settlement.
+     * Runs on the dispatch thread; when earlier runs already took the messages it has nothing to do
+     */
+    private void dispatch()
+    {
+        List<PendingSettlement> batch = new ArrayList<>();
+        PendingSettlement received;
+        while (batch.size() < this.maxBatchSize && (received = this.receivedMessages.poll()) != null)
+        {
+            batch.add(received);
+        }
+
+        if (batch.isEmpty())
+        {
+            return;
+        }
+
+        List<String> bodies = new ArrayList<>(batch.size());
+        for (PendingSettlement pendingSettlement : batch)
+        {
+            bodies.add(pendingSettlement.body);
+        }
+
+        DeliveryState outcome;
+        try
+        {
+            this.amqpPersistentReceiveEvent.onMessagesReceived(bodies);
+            outcome = Accepted.getInstance();
+        }
+        catch (AmqpMalformedMessageException e)
+        {
+            // it would fail the same way on every redelivery
+            Rejected rejected = new Rejected();
+            rejected.setError(new ErrorCondition(AmqpError.DECODE_ERROR, e.getMessage()));
+            outcome = rejected;
+        }
+        catch (Throwable e)
+        {
+            // unlike Released, this counts as a delivery attempt, so the service stops redelivering eventually
+            Modified modified = new Modified();
+            modified.setDeliveryFailed(true);
+            outcome = modified;
+        }
+
+        for (PendingSettlement pendingSettlement : batch)
+        {
+            pendingSettlement.outcome = outcome;
+            this.settlements.add(pendingSettlement);
+        }
+
+        wakeup(this.reactor);
+    }
+
+    /**
+     * Apply the outcome of every message whose callback returned, and grant one credit back for each, unless
+     * the connection is about to be recycled
+     */
+    void settle()
+    {
+        PendingSettlement settlement;
+        while ((settlement = this.settlements.poll()) != null)
+        {
+            Receiver receiver = settlement.handler.getReceiver();
+            if (settlement.handler != this.currentHandler || receiver == null)
+            {
+                // the connection the message arrived on is gone, the service redelivers it
+                continue;
+            }
+
+            settlement.delivery.disposition(settlement.outcome);
+            settlement.delivery.settle();
+            this.unsettledMessages--;
+            if (!isTokenRenewalDue())
+            {
+                receiver.flow(1);
+            }
+        }
+    }
+
+    @Override
+    AmqpPersistentReceiveHandler createConnectionHandler(String hostName, String userName, String sasToken)
+    {
+        return new AmqpPersistentReceiveHandler(hostName, userName, sasToken, this.iotHubServiceClientProtocol,
+                this.endpoint, this.linkCredit, this);
+    }
+
+    @Override
+    void closeConnection(AmqpPersistentReceiveHandler handler)
+    {
+        handler.closeConnection();
+    }
+
+    @Override
+    boolean isLinkOpen(AmqpPersistentReceiveHandler handler)
+    {
+        return handler.getReceiver() != null;
+    }
+
+    /**
+     * Settles the messages whose callback returned
+     */
+    @Override
+    void onQuiesced()
+    {
+        settle();
+    }
+
+    /**
+     * @return true once every message delivered on the current connection is settled
+     */
+    @Override
+    boolean isDrained()
+    {
+        return this.unsettledMessages == 0;
+    }
+
+    /**
+     * The messages of the connection that are not settled yet are redelivered by the service
+     */
+    @Override
+    void onConnectionDown(IOException cause)
+    {
+        this.unsettledMessages = 0;
+    }
+
+    @Override
+    void onOpening()
+    {
+        this.dispatcher = Executors.newSingleThreadExecutor(runnable ->
+        {
+            Thread thread = new Thread(runnable, DISPATCH_THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Messages that were delivered but not settled yet are redelivered by the service to the next receiver
+     */
+    @Override
+    void onClosed()
+    {
+        if (this.dispatcher != null)
+        {
+            this.dispatcher.shutdownNow();
+            this.dispatcher = null;
+        }
+
+        this.receivedMessages.clear();
+        this.settlements.clear();
+    }
+
+    private static String getBodyString(Section body)
+    {
+        if (body instanceof Data)
+        {
+            Binary binary = ((Data) body).getValue();
+            return new String(binary.getArray(), binary.getArrayOffset(), binary.getLength(), StandardCharsets.UTF_8);
+        }
+
+        if (body instanceof AmqpValue)
+        {
+            return String.valueOf(((AmqpValue) body).getValue());
+        }
+
+        return body == null ? "" : body.toString();
+    }
+
+    /**
+     * A delivered message, and once its callback returned, the outcome to settle it with
+     */
+    private static class PendingSettlement
+    {
+        private final AmqpPersistentReceiveHandler handler;
+        private final Delivery delivery;
+        private final String body;
+        private DeliveryState outcome;
+
+        PendingSettlement(AmqpPersistentReceiveHandler handler, Delivery delivery, String body)
+        {
+            this.handler = handler;
+            this.delivery = delivery;
+            this.body = body;
+        }
+    }
+}
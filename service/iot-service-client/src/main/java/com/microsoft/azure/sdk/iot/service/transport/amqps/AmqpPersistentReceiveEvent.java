@@ -0,0 +1,19 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.transport.amqps;
+
+import java.util.List;
+
+/**
+ * Interface to deliver the messages of a long-lived receiver link to the user API.
+ * The messages of one call are settled with the Accepted outcome once it returns. If it throws an
+ * {@link AmqpMalformedMessageException} they are rejected. If it throws anything else they are settled as
+ * modified with the delivery failed, so the service redelivers them until its maximum delivery count is reached.
+ */
+public interface AmqpPersistentReceiveEvent
+{
+    void onMessagesReceived(List<String> bodies) throws Exception;
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.deps.auth.IotHubSSLContext;
+import com.microsoft.azure.sdk.iot.deps.ws.impl.WebSocketImpl;
+import com.microsoft.azure.sdk.iot.service.IotHubServiceClientProtocol;
+import com.microsoft.azure.sdk.iot.service.transport.TransportUtils;
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.Symbol;
+import org.apache.qpid.proton.amqp.messaging.Source;
+import org.apache.qpid.proton.amqp.messaging.Target;
+import org.apache.qpid.proton.engine.*;
+import org.apache.qpid.proton.engine.impl.TransportInternal;
+import org.apache.qpid.proton.reactor.Handshaker;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Instance of the QPID-Proton-J BaseHandler class handling the events of one long-lived
+ * receiver connection. Unlike {@link AmqpFeedbackReceivedHandler} the connection, session and
+ * receiver link stay open after a message arrives, credit is granted by the owning
+ * {@link AmqpPersistentReceive} as messages are settled rather than by a FlowController,
+ * and every event is reported back to the owner.
+ */
+public class AmqpPersistentReceiveHandler extends BaseHandler
+{
+    public static final String RECEIVE_TAG = "receiver";
+
+    private final String hostName;
+    private final String webSocketHostName;
+    private final String userName;
+    private final String sasToken;
+    private final IotHubServiceClientProtocol iotHubServiceClientProtocol;
+    private final String endpoint;
+    private final int linkCredit;
+    private final AmqpPersistentReceive owner;
+
+    private Connection connection;
+    private Receiver receiver;
+    private boolean connectionLost = false;
+
+    /**
+     * Constructor to set up connection parameters and initialize handshaker for transport
+     *
+     * @param hostName The address string of the service (example: AAA.BBB.CCC)
+     * @param userName The username string to use SASL authentication (example: user@sas.service)
+     * @param sasToken The SAS token string
+     * @param iotHubServiceClientProtocol protocol to use
+     * @param endpoint The address of the endpoint to receive from
+     * @param linkCredit The credit to grant the receiver link once it is opened
+     * @param owner The persistent receiver to report link events to
+     */
+    AmqpPersistentReceiveHandler(String hostName, String userName, String sasToken, IotHubServiceClientProtocol iotHubServiceClientProtocol,
+                                 String endpoint, int linkCredit, AmqpPersistentReceive owner)
+    {
+        this.webSocketHostName = hostName;
+        if (iotHubServiceClientProtocol == IotHubServiceClientProtocol.AMQPS_WS)
+        {
+            this.hostName = hostName + AmqpSendHandler.SEND_PORT_AMQPS_WS;
+        }
+        else
+        {
+            this.hostName = hostName + AmqpSendHandler.SEND_PORT_AMQPS;
+        }
+
+        this.userName = userName;
+        this.sasToken = sasToken;
+        this.iotHubServiceClientProtocol = iotHubServiceClientProtocol;
+        this.endpoint = endpoint;
+        this.linkCredit = linkCredit;
+        this.owner = owner;
+
+        add(new Handshaker());
+    }
+
+    /**
+     * Event handler for the connection bound event. Sets SASL PLAIN authentication and TLS on the transport
+     * @param event The proton event object
+     */
+    @Override
+    public void onConnectionBound(Event event)
+    {
+        Transport transport = event.getConnection().getTransport();
+        if (transport != null)
+        {
+            if (this.iotHubServiceClientProtocol == IotHubServiceClientProtocol.AMQPS_WS)
+            {
+                WebSocketImpl webSocket = new WebSocketImpl();
+                webSocket.configure(this.webSocketHostName, AmqpSendHandler.WEBSOCKET_PATH, 0, AmqpSendHandler.WEBSOCKET_SUB_PROTOCOL, null, null);
+                ((TransportInternal)transport).addTransportLayer(webSocket);
+            }
+            Sasl sasl = transport.sasl();
+            sasl.plain(this.userName, this.sasToken);
+
+            SslDomain domain = Proton.sslDomain();
+            try
+            {
+                domain.setSslContext(new IotHubSSLContext().getSSLContext());
+            }
+            catch (Exception e)
+            {
+                reportConnectionLost(new IOException("Could not create the SSL context", e));
+                return;
+            }
+            domain.init(SslDomain.Mode.CLIENT);
+            domain.setPeerAuthentication(SslDomain.VerifyMode.VERIFY_PEER);
+            transport.ssl(domain);
+        }
+    }
+
+    /**
+     * Event handler for the connection init event. Opens the connection, one session and one receiver link,
+     * and grants the receiver link its credit
+     * @param event The proton event object
+     */
+    @Override
+    public void onConnectionInit(Event event)
+    {
+        this.connection = event.getConnection();
+        this.connection.setHostname(this.hostName);
+
+        Session session = this.connection.session();
+
+        Map<Symbol, Object> properties = new HashMap<>();
+        properties.put(Symbol.getSymbol(TransportUtils.versionIdentifierKey), TransportUtils.USER_AGENT_STRING);
+        this.receiver = session.receiver(RECEIVE_TAG);
+        this.receiver.setProperties(properties);
+
+        this.connection.open();
+        session.open();
+        this.receiver.open();
+        this.receiver.flow(this.linkCredit);
+    }
+
+    /**
+     * Event handler for the link init event
+     * @param event The proton event object
+     */
+    @Override
+    public void onLinkInit(Event event)
+    {
+        Link link = event.getLink();
+        Target target = new Target();
+        target.setAddress(this.endpoint);
+        Source source = new Source();
+        source.setAddress(this.endpoint);
+        link.setTarget(target);
+        link.setSource(source);
+    }
+
+    /**
+     * Event handler for the link remote open event. Messages may arrive from this point on
+     * @param event The proton event object
+     */
+    @Override
+    public void onLinkRemoteOpen(Event event)
+    {
+        this.owner.onReceiverOpened(this);
+    }
+
+    /**
+     * Event handler for the delivery event. Reads and decodes each complete message and hands it to the owner,
+     * which settles it later
+     * @param event The proton event object
+     */
+    @Override
+    public void onDelivery(Event event)
+    {
+        Receiver recv = (Receiver)event.getLink();
+        Delivery delivery = recv.current();
+        if (delivery != null && delivery.isReadable() && !delivery.isPartial())
+        {
+            int size = delivery.pending();
+            byte[] buffer = new byte[size];
+            int read = recv.recv(buffer, 0, buffer.length);
+            recv.advance();
+
+            org.apache.qpid.proton.message.Message message = Proton.message();
+            message.decode(buffer, 0, read);
+
+            this.owner.onMessageReceived(this, delivery, message);
+        }
+    }
+
+    @Override
+    public void onLinkRemoteClose(Event event)
+    {
+        reportConnectionLost(new IOException("The receiver link was closed by the service"));
+        closeConnection();
+    }
+
+    @Override
+    public void onConnectionRemoteClose(Event event)
+    {
+        reportConnectionLost(new IOException("The connection was closed by the service"));
+        event.getTransport().close_tail();
+    }
+
+    @Override
+    public void onTransportError(Event event)
+    {
+        reportConnectionLost(new IOException("A Transport error occurred"));
+    }
+
+    /**
+     * Getter for the receiver link of this connection
+     * @return The receiver link, or null if the connection was not initialized yet or is lost
+     */
+    Receiver getReceiver()
+    {
+        if (this.connectionLost)
+        {
+            return null;
+        }
+
+        return this.receiver;
+    }
+
+    /**
+     * Close the receiver, session and connection of this handler. Must be called on the reactor thread
+     */
+    void closeConnection()
+    {
+        this.connectionLost = true;
+        if (this.receiver != null)
+        {
+            this.receiver.close();
+            this.receiver.getSession().close();
+        }
+
+        if (this.connection != null)
+        {
+            this.connection.close();
+        }
+    }
+
+    private void reportConnectionLost(IOException cause)
+    {
+        // transport errors are usually followed by close events; only the first one is reported
+        if (!this.connectionLost)
+        {
+            this.connectionLost = true;
+            this.owner.onConnectionLost(this, cause);
+        }
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
+import com.microsoft.azure.sdk.iot.service.IotHubServiceClientProtocol;
+import com.microsoft.azure.sdk.iot.service.Message;
+import com.microsoft.azure.sdk.iot.service.Tools;
+import org.apache.qpid.proton.engine.Sender;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Long-lived cloud to device sender. A single Proton reactor thread keeps one connection and one
+ * sender link to the IoT Hub open for the lifetime of the sender. Messages are encoded on the caller's
+ * thread, queued, and written onto the link by the reactor thread as link credit allows, so many messages
+ * can be in flight at once. Each outcome is correlated back to its future through the delivery tag.
+ * <p>
+ * The connection is re-established after it is lost, and recycled with a fresh SAS token before
+ * the current token expires. Messages survive both: a message whose outcome was not received before its
+ * connection went away is written again on the next connection, so the service may receive it twice.
+ * Messages are only failed by {@link #close()}, after three connections were lost with the message on them,
+ * or once the service stayed unreachable for five reconnection attempts in a row. If the reactor thread
+ * itself dies, a new one is started the same way.
+ */
+public class AmqpPersistentSend extends AmqpPersistentConnection<AmqpPersistentSendHandler>
+{
+    private static final String THREAD_NAME = "azure-iot-sdk-AmqpPersistentSend";
+    private static final int MAX_SEND_ATTEMPTS = 3;
+
+    private final Queue<PendingSend> messagesToBeSent = new ConcurrentLinkedQueue<>();
+
+    // only touched on the reactor thread
+    private final Map<String, PendingSend> inFlightMessages = new LinkedHashMap<>();
+    private final Deque<PendingSend> messagesToBeResent = new ArrayDeque<>();
+    private long nextTag = 0;
+
+    /**
+     * Constructor to set up connection parameters
+     * @param iotHubConnectionString The connection string used to build the SAS token of each connection
+     * @param iotHubServiceClientProtocol protocol to use
+     */
+    public AmqpPersistentSend(IotHubConnectionString iotHubConnectionString, IotHubServiceClientProtocol iotHubServiceClientProtocol)
+    {
+        super(THREAD_NAME, "sender", iotHubConnectionString, iotHubServiceClientProtocol);
+    }
+
+    /**
+     * Queue a message for the given device or module. The message is encoded on the calling thread and
+     * written to the sender link by the reactor thread.
+     * @param deviceId The device name string
+     * @param moduleId The module name string, or null to address the device
+     * @param message The message to be sent
+     * @return A future that completes when the service settles the message, or completes exceptionally
+     * with the {@link com.microsoft.azure.sdk.iot.service.exceptions.IotHubException} the service replied with,
+     * or with an {@link IOException} if the connection was lost before the outcome was known
+     */
+    public CompletableFuture<Void> send(String deviceId, String moduleId, Message message)
+    {
+        if (Tools.isNullOrEmpty(deviceId))
+        {
+            throw new IllegalArgumentException("deviceId can not be null or empty");
+        }
+
+        if (message == null)
+        {
+            throw new IllegalArgumentException("message can not be null");
+        }
+
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (!this.isOpen)
+        {
+            future.completeExceptionally(new IOException("The sender is not open. call open before send"));
+            return future;
+        }
+
+        String targetPath = moduleId == null
+                ? String.format(AmqpSendHandler.DEVICE_PATH_FORMAT, deviceId)
+                : String.format(AmqpSendHandler.MODULE_PATH_FORMAT, deviceId, moduleId);
+        org.apache.qpid.proton.message.Message protonMessage = AmqpSendHandler.buildProtonMessage(targetPath, message);
+
+        byte[] msgData = new byte[1024];
+        int length;
+        while (true)
+        {
+            try
+            {
+                length = protonMessage.encode(msgData, 0, msgData.length);
+                break;
+            }
+            catch (BufferOverflowException e)
+            {
+                msgData = new byte[msgData.length * 2];
+            }
+        }
+
+        this.messagesToBeSent.add(new PendingSend(msgData, length, future));
+        if (!this.isOpen)
+        {
+            // lost a race with close(), which may already have drained the queue
+            failQueuedMessages(new IOException("The sender was closed"));
+            return future;
+        }
+
+        wakeup(this.reactor);
+
+        return future;
+    }
+
+    /**
+     * Called by the connection handler once the service opened the sender link
+     * @param handler The handler of the connection
+     */
+    void onSenderOpened(AmqpPersistentSendHandler handler)
+    {
+        if (onLinkOpened(handler))
+        {
+            flush(handler);
+        }
+    }
+
+    /**
+     * Write as many queued messages onto the sender link as its credit allows
+     * @param handler The handler of the connection to write to
+     */
+    void flush(AmqpPersistentSendHandler handler)
+    {
+        if (handler != this.currentHandler || this.isClosing || isTokenRenewalDue())
+        {
+            return;
+        }
+
+        Sender sender = handler.getSender();
+        if (sender == null)
+        {
+            return;
+        }
+
+        while (sender.getCredit() > 0)
+        {
+            // messages of a lost connection go out again before the ones queued after them
+            PendingSend pendingSend = this.messagesToBeResent.poll();
+            if (pendingSend == null)
+            {
+                pendingSend = this.messagesToBeSent.poll();
+            }
+
+            if (pendingSend == null)
+            {
+                break;
+            }
+
+            String tag = String.valueOf(this.nextTag++);
+            sender.delivery(tag.getBytes());
+            sender.send(pendingSend.data, 0, pendingSend.length);
+            sender.advance();
+            pendingSend.attempts++;
+            this.inFlightMessages.put(tag, pendingSend);
+        }
+    }
+
+    /**
+     * Complete the pending send that belongs to the given delivery tag
+     * @param tag The delivery tag
+     * @param verification The outcome the service replied with
+     */
+    void onDeliveryUpdated(byte[] tag, AmqpResponseVerification verification)
+    {
+        PendingSend pendingSend = this.inFlightMessages.remove(new String(tag));
+        if (pendingSend != null)
+        {
+            if (verification.getException() != null)
+            {
+                pendingSend.future.completeExceptionally(verification.getException());
+            }
+            else
+            {
+                pendingSend.future.complete(null);
+            }
+        }
+    }
+
+    @Override
+    AmqpPersistentSendHandler createConnectionHandler(String hostName, String userName, String sasToken)
+    {
+        return new AmqpPersistentSendHandler(hostName, userName, sasToken, this.iotHubServiceClientProtocol, this);
+    }
+
+    @Override
+    void closeConnection(AmqpPersistentSendHandler handler)
+    {
+        handler.closeConnection();
+    }
+
+    @Override
+    boolean isLinkOpen(AmqpPersistentSendHandler handler)
+    {
+        return handler.getSender() != null;
+    }
+
+    /**
+     * Writes the messages queued by other threads. No new message is written while the token is due for renewal
+     */
+    @Override
+    void onQuiesced()
+    {
+        if (this.currentHandler != null)
+        {
+            flush(this.currentHandler);
+        }
+    }
+
+    /**
+     * @return true once every message written on the current connection has its outcome
+     */
+    @Override
+    boolean isDrained()
+    {
+        return this.inFlightMessages.isEmpty();
+    }
+
+    /**
+     * Messages whose outcome is unknown are written again on the next connection
+     */
+    @Override
+    void onConnectionDown(IOException cause)
+    {
+        requeueInFlightMessages(cause);
+    }
+
+    /**
+     * Callers are not kept waiting any longer while the service stays unreachable
+     */
+    @Override
+    void onReconnectAttemptsExhausted(IOException cause)
+    {
+        failPendingMessages(cause);
+    }
+
+    @Override
+    void onShutdown(IOException cause)
+    {
+        failOutstandingMessages(cause);
+    }
+
+    @Override
+    void onClosed()
+    {
+        failQueuedMessages(new IOException("The sender was closed"));
+    }
+
+    /**
+     * Move the messages written on a lost connection back in front of the queue, in the order they were written.
+     * Messages that were already written MAX_SEND_ATTEMPTS times are failed instead
+     */
+    private void requeueInFlightMessages(IOException cause)
+    {
+        List<PendingSend> pendingSends = new ArrayList<>(this.inFlightMessages.values());
+        this.inFlightMessages.clear();
+        for (int i = pendingSends.size() - 1; i >= 0; i--)
+        {
+            PendingSend pendingSend = pendingSends.get(i);
+            if (pendingSend.attempts >= MAX_SEND_ATTEMPTS)
+            {
+                pendingSend.future.completeExceptionally(cause);
+            }
+            else
+            {
+                this.messagesToBeResent.addFirst(pendingSend);
+            }
+        }
+    }
+
+    /**
+     * Fail every message that is not written on a connection. Must be called on the reactor thread
+     */
+    private void failPendingMessages(IOException cause)
+    {
+        PendingSend pendingSend;
+        while ((pendingSend = this.messagesToBeResent.poll()) != null)
+        {
+            pendingSend.future.completeExceptionally(cause);
+        }
+
+        failQueuedMessages(cause);
+    }
+
+    /**
+     * Fail every message the sender holds. Must be called on the reactor thread
+     */
+    private void failOutstandingMessages(IOException cause)
+    {
+        for (PendingSend pendingSend : this.inFlightMessages.values())
+        {
+            pendingSend.future.completeExceptionally(cause);
+        }
+        this.inFlightMessages.clear();
+
+        failPendingMessages(cause);
+    }
+
+    private void failQueuedMessages(IOException cause)
+    {
+        PendingSend pendingSend;
+        while ((pendingSend = this.messagesToBeSent.poll()) != null)
+        {
+            pendingSend.future.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * An encoded message waiting for link credit, and the future of its caller
+     */
+    private static class PendingSend
+    {
+        private final byte[] data;
+        private final int length;
+        private final CompletableFuture<Void> future;
+        private int attempts = 0;
+
+        PendingSend(byte[] data, int length, CompletableFuture<Void> future)
+        {
+            this.data = data;
+            this.length = length;
+            this.future = future;
+        }
+    }
+}
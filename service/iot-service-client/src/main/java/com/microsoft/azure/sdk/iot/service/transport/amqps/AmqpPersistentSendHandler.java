@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.deps.auth.IotHubSSLContext;
+import com.microsoft.azure.sdk.iot.deps.ws.impl.WebSocketImpl;
+import com.microsoft.azure.sdk.iot.service.IotHubServiceClientProtocol;
+import com.microsoft.azure.sdk.iot.service.transport.TransportUtils;
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.Symbol;
+import org.apache.qpid.proton.amqp.messaging.Target;
+import org.apache.qpid.proton.engine.*;
+import org.apache.qpid.proton.engine.impl.TransportInternal;
+import org.apache.qpid.proton.reactor.Handshaker;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Instance of the QPID-Proton-J BaseHandler class handling the events of one long-lived
+ * cloud to device sender connection. Unlike {@link AmqpSendHandler} the connection, session
+ * and sender link are left open after each delivery and every event is reported back to the
+ * owning {@link AmqpPersistentSend}, which pipelines messages onto the link.
+ */
+public class AmqpPersistentSendHandler extends BaseHandler
+{
+    private final String hostName;
+    private final String webSocketHostName;
+    private final String userName;
+    private final String sasToken;
+    private final IotHubServiceClientProtocol iotHubServiceClientProtocol;
+    private final AmqpPersistentSend owner;
+
+    private Connection connection;
+    private Sender sender;
+    private boolean connectionLost = false;
+
+    /**
+     * Constructor to set up connection parameters and initialize handshaker for transport
+     *
+     * @param hostName The address string of the service (example: AAA.BBB.CCC)
+     * @param userName The username string to use SASL authentication (example: user@sas.service)
+     * @param sasToken The SAS token string
+     * @param iotHubServiceClientProtocol protocol to use
+     * @param owner The persistent sender to report link events to
+     */
+    AmqpPersistentSendHandler(String hostName, String userName, String sasToken, IotHubServiceClientProtocol iotHubServiceClientProtocol, AmqpPersistentSend owner)
+    {
+        this.webSocketHostName = hostName;
+        if (iotHubServiceClientProtocol == IotHubServiceClientProtocol.AMQPS_WS)
+        {
+            this.hostName = hostName + AmqpSendHandler.SEND_PORT_AMQPS_WS;
+        }
+        else
+        {
+            this.hostName = hostName + AmqpSendHandler.SEND_PORT_AMQPS;
+        }
+
+        this.userName = userName;
+        this.sasToken = sasToken;
+        this.iotHubServiceClientProtocol = iotHubServiceClientProtocol;
+        this.owner = owner;
+
+        add(new Handshaker());
+    }
+
+    /**
+     * Event handler for the connection bound event. Sets SASL PLAIN authentication and TLS on the transport
+     * @param event The proton event object
+     */
+    @Override
+    public void onConnectionBound(Event event)
+    {
+        Transport transport = event.getConnection().getTransport();
+        if (transport != null)
+        {
+            if (this.iotHubServiceClientProtocol == IotHubServiceClientProtocol.AMQPS_WS)
+            {
+                WebSocketImpl webSocket = new WebSocketImpl();
+                webSocket.configure(this.webSocketHostName, AmqpSendHandler.WEBSOCKET_PATH, 0, AmqpSendHandler.WEBSOCKET_SUB_PROTOCOL, null, null);
+                ((TransportInternal)transport).addTransportLayer(webSocket);
+            }
+            Sasl sasl = transport.sasl();
+            sasl.plain(this.userName, this.sasToken);
+
+            SslDomain domain = Proton.sslDomain();
+            try
+            {
+                domain.setSslContext(new IotHubSSLContext().getSSLContext());
+            }
+            catch (Exception e)
+            {
+                reportConnectionLost(new IOException("Could not create the SSL context", e));
+                return;
+            }
+            domain.init(SslDomain.Mode.CLIENT);
+            domain.setPeerAuthentication(SslDomain.VerifyMode.VERIFY_PEER);
+            transport.ssl(domain);
+        }
+    }
+
+    /**
+     * Event handler for the connection init event. Opens the connection, one session and one sender link
+     * @param event The proton event object
+     */
+    @Override
+    public void onConnectionInit(Event event)
+    {
+        this.connection = event.getConnection();
+        this.connection.setHostname(this.hostName);
+
+        Session session = this.connection.session();
+
+        Map<Symbol, Object> properties = new HashMap<>();
+        properties.put(Symbol.getSymbol(TransportUtils.versionIdentifierKey), TransportUtils.USER_AGENT_STRING);
+        this.sender = session.sender(AmqpSendHandler.SEND_TAG);
+        this.sender.setProperties(properties);
+
+        this.connection.open();
+        session.open();
+        this.sender.open();
+    }
+
+    /**
+     * Event handler for the link init event
+     * @param event The proton event object
+     */
+    @Override
+    public void onLinkInit(Event event)
+    {
+        Link link = event.getLink();
+        Target target = new Target();
+        target.setAddress(AmqpSendHandler.ENDPOINT);
+        link.setTarget(target);
+    }
+
+    /**
+     * Event handler for the link remote open event. The sender becomes usable from this point on
+     * @param event The proton event object
+     */
+    @Override
+    public void onLinkRemoteOpen(Event event)
+    {
+        this.owner.onSenderOpened(this);
+    }
+
+    /**
+     * Event handler for the link flow event. New credit was granted, so queued messages are flushed
+     * @param event The proton event object
+     */
+    @Override
+    public void onLinkFlow(Event event)
+    {
+        this.owner.flush(this);
+    }
+
+    /**
+     * Event handler for the delivery event. Correlates the outcome with the pending send by delivery tag
+     * @param event The proton event object
+     */
+    @Override
+    public void onDelivery(Event event)
+    {
+        Delivery delivery = event.getDelivery();
+        if (delivery != null && (delivery.getRemoteState() != null || delivery.remotelySettled()))
+        {
+            this.owner.onDeliveryUpdated(delivery.getTag(), new AmqpResponseVerification(delivery.getRemoteState()));
+            delivery.settle();
+
+            // settling releases a slot on the link, so more queued messages may go out
+            this.owner.flush(this);
+        }
+    }
+
+    @Override
+    public void onLinkRemoteClose(Event event)
+    {
+        reportConnectionLost(new IOException("The sender link was closed by the service"));
+        closeConnection();
+    }
+
+    @Override
+    public void onConnectionRemoteClose(Event event)
+    {
+        reportConnectionLost(new IOException("The connection was closed by the service"));
+        event.getTransport().close_tail();
+    }
+
+    @Override
+    public void onTransportError(Event event)
+    {
+        reportConnectionLost(new IOException("A Transport error occurred"));
+    }
+
+    /**
+     * Getter for the sender link of this connection
+     * @return The sender link, or null if the connection was not initialized yet or is lost
+     */
+    Sender getSender()
+    {
+        if (this.connectionLost)
+        {
+            return null;
+        }
+
+        return this.sender;
+    }
+
+    /**
+     * Close the sender, session and connection of this handler. Must be called on the reactor thread
+     */
+    void closeConnection()
+    {
+        this.connectionLost = true;
+        if (this.sender != null)
+        {
+            this.sender.close();
+            this.sender.getSession().close();
+        }
+
+        if (this.connection != null)
+        {
+            this.connection.close();
+        }
+    }
+
+    private void reportConnectionLost(IOException cause)
+    {
+        // transport errors are usually followed by close events; only the first one is reported
+        if (!this.connectionLost)
+        {
+            this.connectionLost = true;
+            this.owner.onConnectionLost(this, cause);
+        }
+    }
+}
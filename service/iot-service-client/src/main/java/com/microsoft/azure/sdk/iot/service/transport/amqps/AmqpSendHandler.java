@@ -132,6 +132,17 @@ public class AmqpSendHandler extends BaseHandler
     }
 
     private void populateProtonMessage(String targetPath, com.microsoft.azure.sdk.iot.service.Message message)
+    {
+        messagesToBeSent.add(buildProtonMessage(targetPath, message));
+    }
+
+    /**
+     * Convert a service client message into a Proton message addressed to the given target path
+     * @param targetPath The devicebound path of the target device or module
+     * @param message The message to be converted
+     * @return The Proton message
+     */
+    static org.apache.qpid.proton.message.Message buildProtonMessage(String targetPath, com.microsoft.azure.sdk.iot.service.Message message)
     {
         // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_005: [The function shall create a new Message (Proton) object]
         org.apache.qpid.proton.message.Message protonMessage = Proton.message();
@@ -168,7 +179,7 @@ public class AmqpSendHandler extends BaseHandler
         Section section = new Data(binary);
         // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_009: [The function shall set the Message body to the created data section]
         protonMessage.setBody(section);
-        messagesToBeSent.add(protonMessage);
+        return protonMessage;
     }
 
     /**
@@ -213,6 +213,20 @@ public class HttpConnection
         return input;
     }
 
+    /**
+     * Returns the input stream (response stream), so that the response can be read as it arrives. The caller
+     * must close the stream.
+     *
+     * @return The response stream.
+     *
+     * @throws IOException This exception thrown if the input stream could not be
+     * accessed, for example if the server could not be reached or responded with an error status.
+     */
+    public InputStream getInputStream() throws IOException
+    {
+        return this.connection.getInputStream();
+    }
+
     /**
      * Reads from the error stream and returns the error reason.
      *
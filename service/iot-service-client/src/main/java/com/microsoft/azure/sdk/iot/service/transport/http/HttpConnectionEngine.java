@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.transport.http;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The default {@link HttpEngine}. Requests are sent through their own {@link HttpConnection}, so the
+ * connections are kept alive and reused by the JDK. The I/O is blocking, so each asynchronous request holds a
+ * thread while it is outstanding. {@link #sendAsync(HttpRequest, Executor)} runs the request on the executor
+ * of the calling client; {@link #sendAsync(HttpRequest)} runs it on a bounded pool of daemon threads owned by the
+ * engine, and queues the requests sent while all its threads are busy. Set an engine created with a larger maximum
+ * number of concurrent requests through {@link HttpEngines#setEngine(HttpEngine)} to send more at a time.
+ */
+public class HttpConnectionEngine implements HttpEngine
+{
+    private static final String THREAD_NAME_PREFIX = "azure-iot-sdk-http-";
+    private static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 10;
+    private static final long IDLE_THREAD_TIMEOUT_SECONDS = 60;
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    private final ExecutorService executor;
+
+    /**
+     * Create an engine whose own pool sends up to 10 asynchronous requests at a time.
+     */
+    public HttpConnectionEngine()
+    {
+        this(DEFAULT_MAX_CONCURRENT_REQUESTS);
+    }
+
+    /**
+     * Create an engine whose own pool sends up to the given number of asynchronous requests at a time, and queues
+     * the others. Its idle threads end after a minute. Requests sent with the executor of a client are not limited
+     * by it.
+     *
+     * @param maxConcurrentRequests The number of threads sending asynchronous requests. Must be positive.
+     * @throws IllegalArgumentException if maxConcurrentRequests is not positive.
+     */
+    public HttpConnectionEngine(int maxConcurrentRequests) throws IllegalArgumentException
+    {
+        if (maxConcurrentRequests < 1)
+        {
+            throw new IllegalArgumentException("maxConcurrentRequests must be positive");
+        }
+
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(maxConcurrentRequests, maxConcurrentRequests,
+                IDLE_THREAD_TIMEOUT_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), createThreadFactory());
+        pool.allowCoreThreadTimeOut(true);
+        this.executor = pool;
+    }
+
+    @Override
+    public HttpResponse send(HttpRequest request) throws IOException
+    {
+        if (request == null)
+        {
+            throw new IllegalArgumentException("request cannot be null");
+        }
+
+        return request.send();
+    }
+
+    @Override
+    public HttpResponse send(HttpRequest request, HttpResponseBodyReader bodyReader) throws IOException
+    {
+        if (request == null)
+        {
+            throw new IllegalArgumentException("request cannot be null");
+        }
+
+        return request.send(bodyReader);
+    }
+
+    @Override
+    public CompletableFuture<HttpResponse> sendAsync(HttpRequest request)
+    {
+        return this.sendAsync(request, this.executor);
+    }
+
+    @Override
+    public CompletableFuture<HttpResponse> sendAsync(HttpRequest request, Executor executor)
+    {
+        if (request == null)
+        {
+            throw new IllegalArgumentException("request cannot be null");
+        }
+
+        final CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+        Runnable send = () ->
+        {
+            try
+            {
+                future.complete(request.send());
+            }
+            catch (IOException | RuntimeException e)
+            {
+                future.completeExceptionally(e);
+            }
+        };
+
+        try
+        {
+            (executor == null ? this.executor : executor).execute(send);
+        }
+        catch (RejectedExecutionException e)
+        {
+            // for example the executor of a client that was closed
+            future.completeExceptionally(e);
+        }
+
+        return future;
+    }
+
+    private static ThreadFactory createThreadFactory()
+    {
+        return runnable ->
+        {
+            Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.transport.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Service provider interface for the component that puts an {@link HttpRequest} on the wire.
+ *
+ * <p>The registry manager and the twin, method and job clients send every request through the engine
+ * returned by {@link HttpEngines#getEngine()}. The default engine is {@link HttpConnectionEngine}; an
+ * engine based on non-blocking I/O can be installed with {@link HttpEngines#setEngine(HttpEngine)} or
+ * registered in {@code META-INF/services/com.microsoft.azure.sdk.iot.service.transport.http.HttpEngine},
+ * in which case the asynchronous APIs of the service client no longer hold a thread per outstanding request.
+ *
+ * <p>Implementations must be thread safe. An engine that does not send through the request's own
+ * {@link HttpConnection} reads the request with {@link HttpRequest#getUrl()}, {@link HttpRequest#getHttpMethod()},
+ * {@link HttpRequest#getBody()}, {@link HttpRequest#getHeaderFields()} and {@link HttpRequest#getReadTimeoutMillis()}.
+ */
+public interface HttpEngine
+{
+    /**
+     * Send the request and wait for its response.
+     *
+     * @param request The request to send.
+     * @return The response, including error responses.
+     * @throws IOException If the request could not be sent or the response could not be read.
+     */
+    HttpResponse send(HttpRequest request) throws IOException;
+
+    /**
+     * Send the request, wait for its response and hand the body of a successful response to the given reader
+     * before returning. The default implementation reads the whole body with {@link #send(HttpRequest)} first;
+     * engines that can should pass the stream the body arrives on instead.
+     *
+     * @param request The request to send.
+     * @param bodyReader The reader of the body of a successful response. It is not called for error responses.
+     * @return The response, including error responses. The body of a successful response may be empty, as it
+     * was handed to the reader.
+     * @throws IOException If the request could not be sent, or the response could not be read by the engine or the reader.
+     */
+    default HttpResponse send(HttpRequest request, HttpResponseBodyReader bodyReader) throws IOException
+    {
+        if (bodyReader == null)
+        {
+            throw new IllegalArgumentException("bodyReader cannot be null");
+        }
+
+        HttpResponse response = this.send(request);
+        if (response.getStatus() < HttpURLConnection.HTTP_BAD_REQUEST)
+        {
+            bodyReader.read(new ByteArrayInputStream(response.getBody()));
+        }
+
+        return response;
+    }
+
+    /**
+     * Send the request without waiting for its response.
+     *
+     * @param request The request to send.
+     * @return A future completed with the response, including error responses, or completed
+     * exceptionally with an {@link IOException} if the request could not be sent or the response could not be read.
+     */
+    CompletableFuture<HttpResponse> sendAsync(HttpRequest request);
+
+    /**
+     * Send the request without waiting for its response, running any blocking work on the given executor.
+     * Clients that own an executor, such as the registry manager, use this so that the concurrency of their
+     * asynchronous requests is bounded by their own executor rather than shared with every other client.
+     * The default implementation ignores the executor and calls {@link #sendAsync(HttpRequest)}, which suits
+     * engines that hold no thread while a request is outstanding.
+     *
+     * @param request The request to send.
+     * @param executor The executor for blocking work, or null to use the engine's own.
+     * @return A future completed with the response, including error responses, or completed
+     * exceptionally with an {@link IOException} if the request could not be sent or the response could not be read.
+     */
+    default CompletableFuture<HttpResponse> sendAsync(HttpRequest request, Executor executor)
+    {
+        return this.sendAsync(request);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.transport.http;
+
+import java.util.Iterator;
+import java.util.ServiceLoader;
+
+/**
+ * Holds the {@link HttpEngine} used by the service client.
+ *
+ * <p>Unless an engine is set explicitly, the first engine registered through {@link ServiceLoader} is used,
+ * or an {@link HttpConnectionEngine} if none is registered.
+ */
+public final class HttpEngines
+{
+    private static final Object lock = new Object();
+    private static volatile HttpEngine engine;
+    private static volatile HttpEngine defaultEngine;
+
+    private HttpEngines()
+    {
+    }
+
+    /**
+     * Getter for the engine that sends the requests of the service client.
+     *
+     * @return The engine set with {@link #setEngine(HttpEngine)}, or the default engine.
+     */
+    public static HttpEngine getEngine()
+    {
+        HttpEngine current = engine;
+        if (current != null)
+        {
+            return current;
+        }
+
+        current = defaultEngine;
+        if (current == null)
+        {
+            synchronized (lock)
+            {
+                // loaded once, so going back to the default does not create another thread pool
+                if (defaultEngine == null)
+                {
+                    defaultEngine = loadDefaultEngine();
+                }
+                current = defaultEngine;
+            }
+        }
+
+        return current;
+    }
+
+    /**
+     * Setter for the engine that sends the requests of the service client. Requests already
+     * handed to the previous engine are not affected.
+     *
+     * @param httpEngine The engine to use, or null to go back to the default engine.
+     */
+    public static void setEngine(HttpEngine httpEngine)
+    {
+        engine = httpEngine;
+    }
+
+    private static HttpEngine loadDefaultEngine()
+    {
+        Iterator<HttpEngine> providers = ServiceLoader.load(HttpEngine.class).iterator();
+        if (providers.hasNext())
+        {
+            return providers.next();
+        }
+
+        return new HttpConnectionEngine();
+    }
+}
@@ -8,7 +8,10 @@ package com.microsoft.azure.sdk.iot.service.transport.http;
 import com.microsoft.azure.sdk.iot.service.transport.TransportUtils;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -17,6 +20,14 @@ public class HttpRequest
     /** The underlying HTTPS connection stream. */
     protected final HttpConnection connection;
 
+    private static final String USER_AGENT = "User-Agent";
+
+    private final URL url;
+    private final HttpMethod method;
+    private final byte[] body;
+    private final Map<String, String> headerFields;
+    private int readTimeoutMillis;
+
     /**
      * Constructor. Takes a URL as an argument and returns an HTTPS request that
      * is ready to be sent.
@@ -36,7 +47,12 @@ public class HttpRequest
         // Codes_SRS_SERVICE_SDK_JAVA_HTTPREQUEST_12_003: [The function shall use the given HTTPS method (i.e. GET) as the request method.]
         // Codes_SRS_SERVICE_SDK_JAVA_HTTPREQUEST_12_004: [If an IOException occurs in setting up the HTTPS connection, the function shall throw an IOException.]
         this.connection = new HttpConnection(url, method);
-        this.connection.setRequestHeader("User-Agent", TransportUtils.javaServiceClientIdentifier + TransportUtils.serviceVersion);
+        this.url = url;
+        this.method = method;
+        this.body = body;
+        this.headerFields = new LinkedHashMap<>();
+        this.connection.setRequestHeader(USER_AGENT, TransportUtils.javaServiceClientIdentifier + TransportUtils.serviceVersion);
+        this.headerFields.put(USER_AGENT, TransportUtils.javaServiceClientIdentifier + TransportUtils.serviceVersion);
         // Codes_SRS_SERVICE_SDK_JAVA_HTTPREQUEST_12_002: [The function shall write the body to the connection.]
         this.connection.writeOutput(body);
     }
@@ -87,6 +103,53 @@ public class HttpRequest
                 errorReason);
     }
 
+    /**
+     * Executes the HTTPS request and hands the body of a successful response to the given reader as it arrives,
+     * instead of reading it into the returned response.
+     *
+     * @param bodyReader The reader of the body of a successful response. It is not called for error responses.
+     *
+     * @return The HTTPS response, including the status code, header fields and error reason (if any), with an empty body.
+     *
+     * @throws IOException This exception thrown if the connection was unsuccessful,
+     * or if the reader could not read the body.
+     */
+    public HttpResponse send(HttpResponseBodyReader bodyReader) throws IOException
+    {
+        if (bodyReader == null)
+        {
+            throw new IllegalArgumentException("bodyReader cannot be null");
+        }
+
+        int responseStatus;
+        Map<String, List<String>> headerFields;
+        InputStream responseBody;
+        try
+        {
+            this.connection.connect();
+
+            responseStatus = this.connection.getResponseStatus();
+            headerFields = this.connection.getResponseHeaders();
+            responseBody = this.connection.getInputStream();
+        }
+        catch (IOException e)
+        {
+            // As in send(), a bad status code is reported through the error reason, and the
+            // error stream is read so that the connection can be reused.
+            responseStatus = this.connection.getResponseStatus();
+            headerFields = this.connection.getResponseHeaders();
+            byte[] errorReason = this.connection.readError();
+            return new HttpResponse(responseStatus, new byte[0], headerFields, errorReason);
+        }
+
+        try (InputStream body = responseBody)
+        {
+            bodyReader.read(body);
+        }
+
+        return new HttpResponse(responseStatus, new byte[0], headerFields, new byte[0]);
+    }
+
     /**
      * Sets the header field to the given value.
      *
@@ -99,6 +162,7 @@ public class HttpRequest
     {
         // Codes_SRS_SERVICE_SDK_JAVA_HTTPREQUEST_12_009: [The function shall set the header field with the given name to the given value.]
         this.connection.setRequestHeader(field, value);
+        this.headerFields.put(field, value);
         return this;
     }
 
@@ -115,11 +179,67 @@ public class HttpRequest
     {
         // Codes_SRS_SERVICE_SDK_JAVA_HTTPREQUEST_12_010: [The function shall set the read timeout for the request to the given value.]
         this.connection.setReadTimeoutMillis(timeout);
+        this.readTimeoutMillis = timeout;
         return this;
     }
 
+    /**
+     * Getter for the URL of the request, for {@link HttpEngine} implementations
+     * that do not send the request through its {@link HttpConnection}.
+     *
+     * @return The URL of the request.
+     */
+    public URL getUrl()
+    {
+        return this.url;
+    }
+
+    /**
+     * Getter for the HTTPS method of the request.
+     *
+     * @return The HTTPS method of the request.
+     */
+    public HttpMethod getHttpMethod()
+    {
+        return this.method;
+    }
+
+    /**
+     * Getter for the body of the request.
+     *
+     * @return The request body.
+     */
+    public byte[] getBody()
+    {
+        return this.body;
+    }
+
+    /**
+     * Getter for the header fields set on the request, in the order they were first set.
+     *
+     * @return An unmodifiable view of the header fields.
+     */
+    public Map<String, String> getHeaderFields()
+    {
+        return Collections.unmodifiableMap(this.headerFields);
+    }
+
+    /**
+     * Getter for the read timeout of the request.
+     *
+     * @return The read timeout in milliseconds, or 0 if it was never set.
+     */
+    public int getReadTimeoutMillis()
+    {
+        return this.readTimeoutMillis;
+    }
+
     protected HttpRequest()
     {
         this.connection = null;
+        this.url = null;
+        this.method = null;
+        this.body = null;
+        this.headerFields = new LinkedHashMap<>();
     }
 }
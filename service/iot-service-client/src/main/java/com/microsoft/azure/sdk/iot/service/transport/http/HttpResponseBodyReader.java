@@ -0,0 +1,27 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.transport.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the body of a successful response from the stream it arrives on, so that large bodies can be decoded
+ * without first being copied into a byte array.
+ *
+ * @see HttpEngine#send(HttpRequest, HttpResponseBodyReader)
+ */
+@FunctionalInterface
+public interface HttpResponseBodyReader
+{
+    /**
+     * Read the response body. The stream is closed by the caller once this method returns.
+     *
+     * @param body The response body.
+     * @throws IOException If the body could not be read.
+     */
+    void read(InputStream body) throws IOException;
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.unit.com.microsoft.azure.sdk.iot.service;
+
+import com.microsoft.azure.sdk.iot.service.BulkRegistryOperationResult;
+import mockit.Deencapsulation;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** Unit tests for BulkRegistryOperationResult */
+public class BulkRegistryOperationResultTest
+{
+    private static final String FAILED_JSON = "{\"isSuccessful\":false,\"errors\":[{\"deviceId\":\"device1\",\"errorCode\":\"DeviceAlreadyExists\",\"errorStatus\":\"exists\"}]," +
+            "\"warnings\":[{\"deviceId\":\"device2\",\"warningCode\":\"DeviceRegisteredWithoutTwin\",\"warningStatus\":\"no twin\"}]}";
+
+    private static BulkRegistryOperationResult fromJson(String json)
+    {
+        return Deencapsulation.invoke(BulkRegistryOperationResult.class, "fromJson", json);
+    }
+
+    @Test
+    public void fromJsonParsesErrorsAndWarnings()
+    {
+        BulkRegistryOperationResult result = fromJson(FAILED_JSON);
+
+        assertFalse(result.isSuccessful());
+        assertEquals(1, result.getErrors().size());
+        assertEquals("device1", result.getErrors().get(0).getDeviceId());
+        assertEquals("DeviceAlreadyExists", result.getErrors().get(0).getErrorCode());
+        assertEquals("exists", result.getErrors().get(0).getErrorStatus());
+        assertEquals(1, result.getWarnings().size());
+        assertEquals("device2", result.getWarnings().get(0).getDeviceId());
+    }
+
+    @Test
+    public void fromJsonDefaultsMissingListsToEmpty()
+    {
+        BulkRegistryOperationResult result = fromJson("{\"isSuccessful\":true}");
+
+        assertTrue(result.isSuccessful());
+        assertEquals(0, result.getErrors().size());
+        assertEquals(0, result.getWarnings().size());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void fromJsonThrowsOnInvalidJson()
+    {
+        fromJson("not json");
+    }
+
+    @Test
+    public void mergeCombinesResults()
+    {
+        BulkRegistryOperationResult result = fromJson("{\"isSuccessful\":true}");
+
+        Deencapsulation.invoke(result, "merge", fromJson(FAILED_JSON));
+
+        assertFalse(result.isSuccessful());
+        assertEquals(1, result.getErrors().size());
+    }
+}
@@ -6,15 +6,26 @@
 package tests.unit.com.microsoft.azure.sdk.iot.service;
 
 import com.microsoft.azure.sdk.iot.service.FeedbackBatch;
+import com.microsoft.azure.sdk.iot.service.FeedbackBatchHandler;
 import com.microsoft.azure.sdk.iot.service.FeedbackReceiver;
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
 import com.microsoft.azure.sdk.iot.service.IotHubServiceClientProtocol;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
+import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpMalformedMessageException;
+import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpPersistentReceive;
+import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpPersistentReceiveEvent;
 import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpReceive;
 import mockit.Deencapsulation;
 import mockit.Expectations;
 import mockit.Mocked;
+import mockit.NonStrictExpectations;
+import mockit.Verifications;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 import static org.junit.Assert.assertEquals;
@@ -751,4 +762,140 @@ public class FeedbackReceiverTest
         CompletableFuture<FeedbackBatch> completableFuture = feedbackReceiver.receiveAsync(timeoutMs);
         completableFuture.get();
     }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void start_throws_on_null_handler() throws Exception
+    {
+        FeedbackReceiver feedbackReceiver = new FeedbackReceiver("xxx", "xxx", "xxx", IotHubServiceClientProtocol.AMQPS);
+
+        feedbackReceiver.start(null);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void start_throws_on_link_credit_below_one(@Mocked FeedbackBatchHandler mockedHandler) throws Exception
+    {
+        FeedbackReceiver feedbackReceiver = new FeedbackReceiver("xxx", "xxx", "xxx", IotHubServiceClientProtocol.AMQPS);
+
+        feedbackReceiver.start(mockedHandler, 0);
+    }
+
+    @Test
+    public void start_opens_persistent_receiver_with_link_credit(@Mocked AmqpPersistentReceive mockedPersistentReceive,
+                                                                 @Mocked FeedbackBatchHandler mockedHandler) throws Exception
+    {
+        FeedbackReceiver feedbackReceiver = new FeedbackReceiver("xxx", "xxx", "xxx", IotHubServiceClientProtocol.AMQPS);
+
+        feedbackReceiver.start(mockedHandler, 25);
+
+        new Verifications()
+        {
+            {
+                new AmqpPersistentReceive("xxx", "xxx", "xxx", IotHubServiceClientProtocol.AMQPS, "/messages/servicebound/feedback", 25, 1, (AmqpPersistentReceiveEvent) any);
+                times = 1;
+                mockedPersistentReceive.open();
+                times = 1;
+            }
+        };
+    }
+
+    @Test (expected = IOException.class)
+    public void start_throws_if_already_started(@Mocked AmqpPersistentReceive mockedPersistentReceive,
+                                                @Mocked FeedbackBatchHandler mockedHandler) throws Exception
+    {
+        FeedbackReceiver feedbackReceiver = new FeedbackReceiver("xxx", "xxx", "xxx", IotHubServiceClientProtocol.AMQPS);
+        feedbackReceiver.start(mockedHandler);
+
+        feedbackReceiver.start(mockedHandler);
+    }
+
+    @Test
+    public void close_stops_persistent_receiver(@Mocked AmqpPersistentReceive mockedPersistentReceive,
+                                                @Mocked FeedbackBatchHandler mockedHandler) throws Exception
+    {
+        FeedbackReceiver feedbackReceiver = new FeedbackReceiver("xxx", "xxx", "xxx", IotHubServiceClientProtocol.AMQPS);
+        feedbackReceiver.start(mockedHandler);
+
+        feedbackReceiver.close();
+
+        new Verifications()
+        {
+            {
+                mockedPersistentReceive.close();
+                times = 1;
+            }
+        };
+        assertEquals(null, Deencapsulation.getField(feedbackReceiver, "amqpPersistentReceive"));
+    }
+
+    @Test
+    public void start_with_connection_string_opens_persistent_receiver_renewing_its_token(@Mocked AmqpPersistentReceive mockedPersistentReceive,
+                                                                                         @Mocked FeedbackBatchHandler mockedHandler,
+                                                                                         @Mocked final IotHubConnectionString mockedConnectionString,
+                                                                                         @Mocked IotHubServiceSasToken mockedSasToken) throws Exception
+    {
+        new NonStrictExpectations()
+        {
+            {
+                mockedConnectionString.getHostName();
+                result = "xxx";
+                mockedConnectionString.getUserString();
+                result = "xxx";
+            }
+        };
+        FeedbackReceiver feedbackReceiver = Deencapsulation.newInstance(FeedbackReceiver.class,
+                new Class[] {IotHubConnectionString.class, IotHubServiceClientProtocol.class}, mockedConnectionString, IotHubServiceClientProtocol.AMQPS);
+
+        feedbackReceiver.start(mockedHandler, 25);
+
+        new Verifications()
+        {
+            {
+                new AmqpPersistentReceive(mockedConnectionString, IotHubServiceClientProtocol.AMQPS, "/messages/servicebound/feedback", 25, 1, (AmqpPersistentReceiveEvent) any);
+                times = 1;
+                mockedPersistentReceive.open();
+                times = 1;
+            }
+        };
+    }
+
+    @Test (expected = AmqpMalformedMessageException.class)
+    public void start_reports_unparsable_batch_as_malformed(@Mocked AmqpPersistentReceive mockedPersistentReceive,
+                                                            @Mocked FeedbackBatchHandler mockedHandler) throws Exception
+    {
+        FeedbackReceiver feedbackReceiver = new FeedbackReceiver("xxx", "xxx", "xxx", IotHubServiceClientProtocol.AMQPS);
+        feedbackReceiver.start(mockedHandler);
+        final List<AmqpPersistentReceiveEvent> events = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                new AmqpPersistentReceive(anyString, anyString, anyString, (IotHubServiceClientProtocol) any, anyString, anyInt, anyInt, withCapture(events));
+            }
+        };
+
+        events.get(0).onMessagesReceived(Collections.singletonList("not json"));
+    }
+
+    @Test (expected = IllegalStateException.class)
+    public void start_passes_handler_failure_through(@Mocked AmqpPersistentReceive mockedPersistentReceive,
+                                                     @Mocked final FeedbackBatchHandler mockedHandler) throws Exception
+    {
+        new NonStrictExpectations()
+        {
+            {
+                mockedHandler.onFeedbackBatchReceived((FeedbackBatch) any);
+                result = new IllegalStateException("handler failed");
+            }
+        };
+        FeedbackReceiver feedbackReceiver = new FeedbackReceiver("xxx", "xxx", "xxx", IotHubServiceClientProtocol.AMQPS);
+        feedbackReceiver.start(mockedHandler);
+        final List<AmqpPersistentReceiveEvent> events = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                new AmqpPersistentReceive(anyString, anyString, anyString, (IotHubServiceClientProtocol) any, anyString, anyInt, anyInt, withCapture(events));
+            }
+        };
+
+        events.get(0).onMessagesReceived(Collections.singletonList("[]"));
+    }
 }
@@ -5,18 +5,28 @@
 
 package tests.unit.com.microsoft.azure.sdk.iot.service;
 
+import com.microsoft.azure.sdk.iot.deps.serializer.FileUploadNotificationParser;
 import com.microsoft.azure.sdk.iot.service.FileUploadNotification;
+import com.microsoft.azure.sdk.iot.service.FileUploadNotificationHandler;
 import com.microsoft.azure.sdk.iot.service.FileUploadNotificationReceiver;
 import com.microsoft.azure.sdk.iot.service.IotHubServiceClientProtocol;
 import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpFileUploadNotificationReceive;
+import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpPersistentReceive;
+import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpPersistentReceiveEvent;
 import mockit.Deencapsulation;
 import mockit.Mocked;
+import mockit.NonStrictExpectations;
 import mockit.Verifications;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
 public class FileUploadNotificationReceiverTest
 {
     @Mocked
@@ -360,4 +370,96 @@ public class FileUploadNotificationReceiverTest
         };
 
     }
+
+    private FileUploadNotificationReceiver createReceiver()
+    {
+        return Deencapsulation.newInstance(FileUploadNotificationReceiver.class, "xxx", "xxx", "xxx", IotHubServiceClientProtocol.AMQPS);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void startThrowsOnNullHandler() throws Exception
+    {
+        createReceiver().start(null);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void startThrowsOnBatchSizeAboveLinkCredit(@Mocked FileUploadNotificationHandler mockedHandler) throws Exception
+    {
+        createReceiver().start(mockedHandler, 10, 11);
+    }
+
+    @Test
+    public void startOpensPersistentReceiverWithCreditAndBatchSize(@Mocked AmqpPersistentReceive mockedPersistentReceive,
+                                                                   @Mocked FileUploadNotificationHandler mockedHandler) throws Exception
+    {
+        FileUploadNotificationReceiver fileUploadNotificationReceiver = createReceiver();
+
+        fileUploadNotificationReceiver.start(mockedHandler, 100, 20);
+
+        new Verifications()
+        {
+            {
+                new AmqpPersistentReceive("xxx", "xxx", "xxx", IotHubServiceClientProtocol.AMQPS, "/messages/serviceBound/filenotifications", 100, 20, (AmqpPersistentReceiveEvent) any);
+                times = 1;
+                mockedPersistentReceive.open();
+                times = 1;
+            }
+        };
+    }
+
+    @Test (expected = IOException.class)
+    public void startThrowsIfAlreadyStarted(@Mocked AmqpPersistentReceive mockedPersistentReceive,
+                                            @Mocked FileUploadNotificationHandler mockedHandler) throws Exception
+    {
+        FileUploadNotificationReceiver fileUploadNotificationReceiver = createReceiver();
+        fileUploadNotificationReceiver.start(mockedHandler);
+
+        fileUploadNotificationReceiver.start(mockedHandler);
+    }
+
+    @Test
+    public void closeStopsPersistentReceiver(@Mocked AmqpPersistentReceive mockedPersistentReceive,
+                                             @Mocked FileUploadNotificationHandler mockedHandler) throws Exception
+    {
+        FileUploadNotificationReceiver fileUploadNotificationReceiver = createReceiver();
+        fileUploadNotificationReceiver.start(mockedHandler);
+
+        fileUploadNotificationReceiver.close();
+
+        new Verifications()
+        {
+            {
+                mockedPersistentReceive.close();
+                times = 1;
+            }
+        };
+        assertNull(Deencapsulation.getField(fileUploadNotificationReceiver, "amqpPersistentReceive"));
+    }
+
+    @Test
+    public void parseNotificationsParsesEveryBody(@Mocked FileUploadNotificationParser mockedParser,
+                                                  @Mocked FileUploadNotification mockedNotification) throws Exception
+    {
+        List<FileUploadNotification> fileUploadNotifications = Deencapsulation.invoke(FileUploadNotificationReceiver.class,
+                "parseNotifications", Arrays.asList("first", "second"));
+
+        assertEquals(2, fileUploadNotifications.size());
+    }
+
+    @Test
+    public void parseNotificationsDropsUnparsableBodies(@Mocked FileUploadNotificationParser mockedParser) throws Exception
+    {
+        new NonStrictExpectations()
+        {
+            {
+                new FileUploadNotificationParser(anyString);
+                result = new IllegalArgumentException("invalid json");
+            }
+        };
+
+        List<FileUploadNotification> fileUploadNotifications = Deencapsulation.invoke(FileUploadNotificationReceiver.class,
+                "parseNotifications", Arrays.asList("first"));
+
+        assertEquals(0, fileUploadNotifications.size());
+    }
 }
@@ -597,6 +597,21 @@ public class IotHubConnectionStringTest
         assertTrue(actual.equals(expected));
     }
 
+    @Test
+    public void getUrlBulkDevicesSucceeds() throws IOException
+    {
+        // arrange
+        final String connectionString = "HostName=HOSTNAME.b.c.d;SharedAccessKeyName=ACCESSKEYNAME;SharedAccessKey=1234567890abcdefghijklmnopqrstvwxyz=";
+        final IotHubConnectionString iotHubConnectionString = IotHubConnectionStringBuilder.createConnectionString(connectionString);
+        final String expected = "https://HOSTNAME.b.c.d/devices?" + URL_API_VERSION;
+
+        // act
+        String actual = iotHubConnectionString.getUrlBulkDevices().toString();
+
+        // assert
+        assertEquals(expected, actual);
+    }
+
     /*
     ** Tests_SRS_SERVICE_SDK_JAVA_IOTHUBCONNECTIONSTRING_15_009: [The function shall create a URL object from the object properties using the following format: https:hostname/jobs/jobId?api-version=201X-XX-XX.]
      */
@@ -13,6 +13,7 @@ import com.microsoft.azure.sdk.iot.service.Module;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubExceptionManager;
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpConnectionEngine;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpMethod;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpRequest;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponse;
@@ -26,6 +27,8 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 
 import static junit.framework.TestCase.assertNotNull;
@@ -245,7 +248,7 @@ public class RegistryManagerTest
         registryManager.addDeviceAsync(null);
     }
 
-    // Tests_SRS_SERVICE_SDK_JAVA_ REGISTRYMANAGER_12_013: [The function shall create an async wrapper around the addDevice() function call, handle the return value or delegate exception]
+    // Tests_SRS_SERVICE_SDK_JAVA_ REGISTRYMANAGER_12_013: [The function shall send the same request as addDevice() asynchronously, and complete the future with the device from the response or with the exception]
     @Test
     public void addDeviceAsync_future_return_ok() throws Exception
     {
@@ -268,17 +271,19 @@ public class RegistryManagerTest
         commonVerifications(HttpMethod.PUT, deviceId, returnDevice);
     }
 
-    // Tests_SRS_SERVICE_SDK_JAVA_ REGISTRYMANAGER_12_013: [The function shall create an async wrapper around the addDevice() function call, handle the return value or delegate exception]
+    // Tests_SRS_SERVICE_SDK_JAVA_ REGISTRYMANAGER_12_013: [The function shall send the same request as addDevice() asynchronously, and complete the future with the device from the response or with the exception]
     // Assert
     @Test (expected = Exception.class)
     public void addDeviceAsync_future_throw() throws Exception
     {
-        new MockUp<RegistryManager>()
+        new MockUp<HttpConnectionEngine>()
         {
             @Mock
-            public Device addDevice(Device device) throws IOException, IotHubException
+            CompletableFuture<HttpResponse> sendAsync(HttpRequest request, Executor executor)
             {
-                throw new IOException();
+                CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+                future.completeExceptionally(new IOException());
+                return future;
             }
         };
 
@@ -289,6 +294,55 @@ public class RegistryManagerTest
         completableFuture.get();
     }
 
+    @Test
+    public void addDeviceAsync_sends_on_registry_manager_executor(@Mocked final HttpConnectionEngine mockEngine) throws Exception
+    {
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        commonExpectations(connectionString, "somedevice");
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+
+        registryManager.addDeviceAsync(device);
+
+        final List<Executor> executors = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                mockEngine.sendAsync((HttpRequest) any, withCapture(executors));
+                times = 1;
+            }
+        };
+        assertNotNull(executors.get(0));
+        assertEquals(Deencapsulation.getField(registryManager, "executor"), executors.get(0));
+    }
+
+    @Test
+    public void addDeviceAsync_request_creation_failure_completes_future() throws Exception
+    {
+        final IOException failure = new IOException("test");
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        commonExpectations(connectionString, "somedevice");
+        new NonStrictExpectations()
+        {
+            {
+                new HttpRequest((URL) any, (HttpMethod) any, (byte[]) any);
+                result = failure;
+            }
+        };
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+
+        CompletableFuture<Device> completableFuture = registryManager.addDeviceAsync(device);
+
+        try
+        {
+            completableFuture.get();
+            fail("The future should have completed exceptionally");
+        }
+        catch (ExecutionException e)
+        {
+            assertEquals(failure, e.getCause());
+        }
+    }
+
     // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_014: [The constructor shall throw IllegalArgumentException if the input string is null or empty]
     // Assert
     @Test (expected = IllegalArgumentException.class)
@@ -331,7 +385,7 @@ public class RegistryManagerTest
         registryManager.getDeviceAsync(null);
     }
 
-    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_022: [The function shall create an async wrapper around the addDevice() function call, handle the return value or delegate exception]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_022: [The function shall send the same request as getDevice() asynchronously, and complete the future with the device from the response or with the exception]
     @Test
     public void getDeviceAsync_future_return_ok() throws Exception
     {
@@ -347,18 +401,20 @@ public class RegistryManagerTest
         commonVerifications(HttpMethod.GET, deviceId, returnDevice);
     }
 
-    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_022: [The function shall create an async wrapper around the addDevice() function call, handle the return value or delegate exception]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_022: [The function shall send the same request as getDevice() asynchronously, and complete the future with the device from the response or with the exception]
     // Assert
     @Test (expected = Exception.class)
     public void getDeviceAsync_future_throw() throws Exception
     {
         String deviceId = "somedevice";
-        new MockUp<RegistryManager>()
+        new MockUp<HttpConnectionEngine>()
         {
             @Mock
-            public Device getDevice(String deviceId) throws IOException, IotHubException
+            CompletableFuture<HttpResponse> sendAsync(HttpRequest request, Executor executor)
             {
-                throw new IOException();
+                CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+                future.completeExceptionally(new IOException());
+                return future;
             }
         };
         String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
@@ -411,7 +467,7 @@ public class RegistryManagerTest
         registryManager.getDevicesAsync(0);
     }
 
-    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_031: [The function shall create an async wrapper around the getDevices() function call, handle the return value or delegate exception]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_031: [The function shall send the same request as getDevices() asynchronously, and complete the future with the devices from the response or with the exception]
     @Test
     public void getDevicesAsync_future_return_ok() throws Exception
     {
@@ -619,17 +675,19 @@ public class RegistryManagerTest
         registryManager.getDeviceConnectionString(returnDevice);
     }
 
-    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_031: [The function shall create an async wrapper around the getDevices() function call, handle the return value or delegate exception]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_031: [The function shall send the same request as getDevices() asynchronously, and complete the future with the devices from the response or with the exception]
     // Assert
     @Test (expected = Exception.class)
     public void getDevicesAsync_future_throw() throws Exception
     {
-        new MockUp<RegistryManager>()
+        new MockUp<HttpConnectionEngine>()
         {
             @Mock
-            public Device getDevices(Integer maxCount) throws IOException, IotHubException
+            CompletableFuture<HttpResponse> sendAsync(HttpRequest request, Executor executor)
             {
-                throw new IOException();
+                CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+                future.completeExceptionally(new IOException());
+                return future;
             }
         };
         String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
@@ -741,7 +799,7 @@ public class RegistryManagerTest
         registryManager.updateDeviceAsync(null);
     }
 
-    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_043: [The function shall create an async wrapper around the updateDevice() function call, handle the return value or delegate exception]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_043: [The function shall call updateDeviceAsync with forceUpdate = false]
     @Test
     public void updateDeviceAsync_future_return_ok() throws Exception
     {
@@ -773,17 +831,19 @@ public class RegistryManagerTest
         };
     }
 
-    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_043: [The function shall create an async wrapper around the updateDevice() function call, handle the return value or delegate exception]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_043: [The function shall call updateDeviceAsync with forceUpdate = false]
     // Assert
     @Test (expected = Exception.class)
     public void updateDeviceAsync_future_throw() throws Exception
     {
-        new MockUp<RegistryManager>()
+        new MockUp<HttpConnectionEngine>()
         {
             @Mock
-            public Device updateDevice(Device device) throws IOException, IotHubException
+            CompletableFuture<HttpResponse> sendAsync(HttpRequest request, Executor executor)
             {
-                throw new IOException();
+                CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+                future.completeExceptionally(new IOException());
+                return future;
             }
         };
         String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
@@ -804,7 +864,7 @@ public class RegistryManagerTest
         registryManager.updateDeviceAsync(null, true);
     }
 
-    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_045: [The function shall create an async wrapper around the updateDevice(Device, device, Boolean forceUpdate) function call, handle the return value or delegate exception]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_045: [The function shall send the same request as updateDevice(Device device, Boolean forceUpdate) asynchronously, and complete the future with the device from the response or with the exception]
     @Test
     public void updateDeviceAsyncForce_future_return_ok() throws Exception
     {
@@ -836,17 +896,19 @@ public class RegistryManagerTest
         };
     }
 
-    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_045: [The function shall create an async wrapper around the updateDevice(Device, device, Boolean forceUpdate) function call, handle the return value or delegate exception]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_045: [The function shall send the same request as updateDevice(Device device, Boolean forceUpdate) asynchronously, and complete the future with the device from the response or with the exception]
     // Assert
     @Test (expected = Exception.class)
     public void updateDeviceAsyncForce_future_throw() throws Exception
     {
-        new MockUp<RegistryManager>()
+        new MockUp<HttpConnectionEngine>()
         {
             @Mock
-            public Device updateDevice(Device device, Boolean forceUpdate) throws IOException, IotHubException
+            CompletableFuture<HttpResponse> sendAsync(HttpRequest request, Executor executor)
             {
-                throw new IOException();
+                CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+                future.completeExceptionally(new IOException());
+                return future;
             }
         };
         String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
@@ -1028,7 +1090,7 @@ public class RegistryManagerTest
         registryManager.removeDeviceAsync("");
     }
 
-    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_053: [The function shall create an async wrapper around the removeDevice() function call, handle the return value or delegate exception]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_053: [The function shall send the same request as removeDevice() asynchronously, and complete the future with true or with the exception]
     @Test
     public void removeDeviceAsync_future_return_ok() throws Exception
     {
@@ -1055,18 +1117,20 @@ public class RegistryManagerTest
         };
     }
 
-    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_053: [The function shall create an async wrapper around the removeDevice() function call, handle the return value or delegate exception]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_053: [The function shall send the same request as removeDevice() asynchronously, and complete the future with true or with the exception]
     // Assert
     @Test (expected = Exception.class)
     public void removeDeviceAsync_future_throw() throws Exception
     {
         String deviceId = "somedevice";
-        new MockUp<RegistryManager>()
+        new MockUp<HttpConnectionEngine>()
         {
             @Mock
-            public Device removeDevice(String deviceId) throws IOException, IotHubException
+            CompletableFuture<HttpResponse> sendAsync(HttpRequest request, Executor executor)
             {
-                throw new IOException();
+                CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+                future.completeExceptionally(new IOException());
+                return future;
             }
         };
         String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
@@ -1111,7 +1175,7 @@ public class RegistryManagerTest
         assertNotNull(statistics);
     }
 
-    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_060: [The function shall create an async wrapper around the getStatistics() function call, handle the return value or delegate exception]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_060: [The function shall send the same request as getStatistics() asynchronously, and complete the future with the statistics from the response or with the exception]
     @Test
     public void getStatisticsAsync_future_return_ok() throws Exception
     {
@@ -1143,17 +1207,19 @@ public class RegistryManagerTest
         assertNotNull(statistics);
     }
 
-    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_060: [The function shall create an async wrapper around the getStatistics() function call, handle the return value or delegate exception]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_060: [The function shall send the same request as getStatistics() asynchronously, and complete the future with the statistics from the response or with the exception]
     // Assert
     @Test (expected = Exception.class)
     public void getStatisticsAsync_future_throw() throws Exception
     {
-        new MockUp<RegistryManager>()
+        new MockUp<HttpConnectionEngine>()
         {
             @Mock
-            public Device getStatistics() throws IOException, IotHubException
+            CompletableFuture<HttpResponse> sendAsync(HttpRequest request, Executor executor)
             {
-                throw new IOException();
+                CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+                future.completeExceptionally(new IOException());
+                return future;
             }
         };
         String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
@@ -1229,18 +1295,19 @@ public class RegistryManagerTest
         assertNotNull(jobProperties);
     }
 
-    // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_068: [The function shall create an async wrapper around
-    // the exportDevices() function call, handle the return value or delegate exception ]
+    // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_068: [The function shall send the same request as exportDevices()
+    // asynchronously, and complete the future with the job properties from the response or with the exception]
     @Test (expected = Exception.class)
     public void exportDevicesAsync_future_throw() throws Exception
     {
-        new MockUp<RegistryManager>()
+        new MockUp<HttpConnectionEngine>()
         {
             @Mock
-            public JobProperties exportDevices(String url, Boolean excludeKeys)
-                    throws IllegalArgumentException, IOException, IotHubException
+            CompletableFuture<HttpResponse> sendAsync(HttpRequest request, Executor executor)
             {
-                throw new IllegalArgumentException();
+                CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+                future.completeExceptionally(new IOException());
+                return future;
             }
         };
 
@@ -1318,18 +1385,19 @@ public class RegistryManagerTest
         assertNotNull(jobProperties);
     }
 
-    // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_076: [The function shall create an async wrapper around
-    // the importDevices() function call, handle the return value or delegate exception]
+    // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_076: [The function shall send the same request as importDevices()
+    // asynchronously, and complete the future with the job properties from the response or with the exception]
     @Test (expected = Exception.class)
     public void importDevicesAsync_future_throw() throws Exception
     {
-        new MockUp<RegistryManager>()
+        new MockUp<HttpConnectionEngine>()
         {
             @Mock
-            public JobProperties importDevices(String importBlobContainerUri, String outputBlobContainerUri)
-                    throws IllegalArgumentException, IOException, IotHubException
+            CompletableFuture<HttpResponse> sendAsync(HttpRequest request, Executor executor)
             {
-                throw new IllegalArgumentException();
+                CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+                future.completeExceptionally(new IOException());
+                return future;
             }
         };
 
@@ -1398,18 +1466,19 @@ public class RegistryManagerTest
         assertNotNull(jobProperties);
     }
 
-    // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_084: [The function shall create an async wrapper
-    // around the getJob() function call, handle the return value or delegate exception]
+    // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_084: [The function shall send the same request as getJob()
+    // asynchronously, and complete the future with the job properties from the response or with the exception]
     @Test (expected = Exception.class)
     public void getJobAsync_future_throw() throws Exception
     {
-        new MockUp<RegistryManager>()
+        new MockUp<HttpConnectionEngine>()
         {
             @Mock
-            public JobProperties getJob(String jobId)
-                    throws IllegalArgumentException, IOException, IotHubException
+            CompletableFuture<HttpResponse> sendAsync(HttpRequest request, Executor executor)
             {
-                throw new IllegalArgumentException();
+                CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+                future.completeExceptionally(new IOException());
+                return future;
             }
         };
 
@@ -2540,4 +2609,110 @@ public class RegistryManagerTest
         assertNotNull(configs);
     }
 
-}
\ No newline at end of file
+    private static final String BULK_RESULT_JSON = "{\"isSuccessful\":false,\"errors\":[{\"deviceId\":\"device1\",\"errorCode\":409001,\"errorStatus\":\"already exists\"}],\"warnings\":[]}";
+
+    private RegistryManager bulkExpectations(String connectionString) throws Exception
+    {
+        new NonStrictExpectations()
+        {
+            {
+                IotHubConnectionStringBuilder.createConnectionString(connectionString);
+                result = iotHubConnectionString;
+                iotHubConnectionString.getUrlBulkDevices();
+                result = mockUrl;
+                mockHttpRequest.send();
+                result = mockHttpResponse;
+                mockHttpResponse.getBody();
+                result = BULK_RESULT_JSON.getBytes();
+                device.getDeviceId();
+                result = "device1";
+            }
+        };
+
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+        Deencapsulation.setField(registryManager, "executor", java.util.concurrent.Executors.newFixedThreadPool(2));
+        return registryManager;
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void addDevices_input_null() throws Exception
+    {
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+
+        registryManager.addDevices(null);
+    }
+
+    @Test
+    public void addDevices_sends_requests_of_at_most_100_devices_and_merges_results() throws Exception
+    {
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        RegistryManager registryManager = bulkExpectations(connectionString);
+        List<Device> devices = new ArrayList<>();
+        for (int i = 0; i < 250; i++)
+        {
+            devices.add(device);
+        }
+
+        BulkRegistryOperationResult result = registryManager.addDevices(devices);
+
+        new Verifications()
+        {
+            {
+                new HttpRequest(mockUrl, HttpMethod.POST, (byte[]) any);
+                times = 3;
+            }
+        };
+        assertFalse(result.isSuccessful());
+        assertEquals(3, result.getErrors().size());
+        assertEquals("device1", result.getErrors().get(0).getDeviceId());
+        assertEquals("409001", result.getErrors().get(0).getErrorCode());
+    }
+
+    @Test
+    public void removeDevices_uses_etag_when_provided() throws Exception
+    {
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        RegistryManager registryManager = bulkExpectations(connectionString);
+        new NonStrictExpectations()
+        {
+            {
+                device.geteTag();
+                result = "someetag";
+            }
+        };
+        List<Device> devices = new ArrayList<>();
+        devices.add(device);
+
+        registryManager.removeDevices(devices);
+
+        new Verifications()
+        {
+            {
+                byte[] body;
+                new HttpRequest(mockUrl, HttpMethod.POST, body = withCapture());
+                String bodyString = new String(body);
+                assertTrue(bodyString.contains("DeleteIfMatchETag"));
+                assertTrue(bodyString.contains("someetag"));
+            }
+        };
+    }
+
+    @Test (expected = IotHubException.class)
+    public void updateDevices_throws_if_a_request_fails() throws Exception
+    {
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        RegistryManager registryManager = bulkExpectations(connectionString);
+        new NonStrictExpectations()
+        {
+            {
+                IotHubExceptionManager.httpResponseVerification((HttpResponse) any);
+                result = new IotHubException("bulk request failed");
+            }
+        };
+        List<Device> devices = new ArrayList<>();
+        devices.add(device);
+
+        registryManager.updateDevices(devices);
+    }
+}
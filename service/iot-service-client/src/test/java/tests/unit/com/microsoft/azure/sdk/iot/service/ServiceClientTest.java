@@ -7,6 +7,7 @@ package tests.unit.com.microsoft.azure.sdk.iot.service;
 
 import com.microsoft.azure.sdk.iot.service.*;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
+import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpPersistentSend;
 import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpSend;
 import mockit.*;
 import org.junit.Test;
@@ -522,7 +523,8 @@ public class ServiceClientTest
         new Expectations()
         {
             {
-                feedbackReceiver = new FeedbackReceiver(anyString, anyString, anyString, iotHubServiceClientProtocol);
+                Deencapsulation.newInstance(FeedbackReceiver.class, new Class[] {IotHubConnectionString.class, IotHubServiceClientProtocol.class},
+                        Deencapsulation.getField(serviceClient, "iotHubConnectionString"), iotHubServiceClientProtocol);
             }
         };
         // Act
@@ -530,4 +532,47 @@ public class ServiceClientTest
         // Assert
         assertNotEquals(null, feedbackReceiver);
     }
+
+    @Test
+    public void sendUsesPersistentSenderIfConfigured(@Mocked final AmqpPersistentSend amqpPersistentSend) throws Exception
+    {
+        // Arrange
+        String connectionString = "HostName=HOSTNAME.IOTHUBNAME;SharedAccessKeyName=ACCESSKEYNAME;SharedAccessKey=1234567890abcdefghijklmnopqrstvwxyz=";
+        ServiceClientOptions options = new ServiceClientOptions();
+        options.setPersistentConnection(true);
+        ServiceClient serviceClient = ServiceClient.createFromConnectionString(connectionString, IotHubServiceClientProtocol.AMQPS, options);
+        Message iotMessage = new Message("xxx");
+        new NonStrictExpectations()
+        {
+            {
+                amqpPersistentSend.send("XXX", null, iotMessage);
+                result = CompletableFuture.completedFuture(null);
+            }
+        };
+        // Act
+        serviceClient.open();
+        serviceClient.send("XXX", iotMessage);
+        serviceClient.close();
+        // Assert
+        new Verifications()
+        {
+            {
+                amqpPersistentSend.open();
+                times = 1;
+                amqpPersistentSend.send("XXX", null, iotMessage);
+                times = 1;
+                amqpSend.send(anyString, anyString, (Message) any);
+                times = 0;
+                amqpPersistentSend.close();
+                times = 1;
+            }
+        };
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void createFromConnectionStringThrowsOnNullOptions() throws Exception
+    {
+        String connectionString = "HostName=HOSTNAME.IOTHUBNAME;SharedAccessKeyName=ACCESSKEYNAME;SharedAccessKey=1234567890abcdefghijklmnopqrstvwxyz=";
+        ServiceClient.createFromConnectionString(connectionString, IotHubServiceClientProtocol.AMQPS, null);
+    }
 }
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.unit.com.microsoft.azure.sdk.iot.service.auth;
+
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionStringBuilder;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasTokenProvider;
+import mockit.Deencapsulation;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/** Unit tests for IotHubServiceSasTokenProvider */
+public class IotHubServiceSasTokenProviderTest
+{
+    private static final String CONNECTION_STRING = "HostName=HOSTNAME.b.c.d;SharedAccessKeyName=ACCESSKEYNAME;SharedAccessKey=1234567890abcdefghijklmnopqrstvwxyz=";
+
+    @After
+    public void tearDown()
+    {
+        IotHubServiceSasTokenProvider.setRenewalFraction(0.75);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void getSasTokenThrowsOnNullConnectionString()
+    {
+        IotHubServiceSasTokenProvider.getSasToken(null);
+    }
+
+    @Test
+    public void getSasTokenReusesTokenForSameConnectionString() throws Exception
+    {
+        IotHubConnectionString iotHubConnectionString = IotHubConnectionStringBuilder.createConnectionString(CONNECTION_STRING);
+
+        IotHubServiceSasToken first = IotHubServiceSasTokenProvider.getSasToken(iotHubConnectionString);
+        IotHubServiceSasToken second = IotHubServiceSasTokenProvider.getSasToken(iotHubConnectionString);
+
+        assertSame(first, second);
+    }
+
+    @Test
+    public void getSasTokenDoesNotShareTokensAcrossConnectionStrings() throws Exception
+    {
+        IotHubConnectionString first = IotHubConnectionStringBuilder.createConnectionString(CONNECTION_STRING);
+        IotHubConnectionString second = IotHubConnectionStringBuilder.createConnectionString(CONNECTION_STRING);
+
+        assertNotSame(IotHubServiceSasTokenProvider.getSasToken(first), IotHubServiceSasTokenProvider.getSasToken(second));
+    }
+
+    @Test
+    public void getSasTokenRenewsTokenPastRenewalTime() throws Exception
+    {
+        IotHubConnectionString iotHubConnectionString = IotHubConnectionStringBuilder.createConnectionString(CONNECTION_STRING);
+        IotHubServiceSasToken first = IotHubServiceSasTokenProvider.getSasToken(iotHubConnectionString);
+        Map<IotHubConnectionString, Object> cachedTokens = Deencapsulation.getField(IotHubServiceSasTokenProvider.class, "cachedTokens");
+        Deencapsulation.setField(cachedTokens.get(iotHubConnectionString), "renewalTimeMillis", 0L);
+
+        IotHubServiceSasToken second = IotHubServiceSasTokenProvider.getSasToken(iotHubConnectionString);
+
+        assertNotSame(first, second);
+    }
+
+    @Test
+    public void setRenewalFractionSetsFraction()
+    {
+        IotHubServiceSasTokenProvider.setRenewalFraction(0.5);
+
+        assertEquals(0.5, IotHubServiceSasTokenProvider.getRenewalFraction(), 0);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void setRenewalFractionThrowsOnZero()
+    {
+        IotHubServiceSasTokenProvider.setRenewalFraction(0);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void setRenewalFractionThrowsAboveOne()
+    {
+        IotHubServiceSasTokenProvider.setRenewalFraction(1.5);
+    }
+}
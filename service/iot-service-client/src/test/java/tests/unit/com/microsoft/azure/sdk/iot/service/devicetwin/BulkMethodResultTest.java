@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.unit.com.microsoft.azure.sdk.iot.service.devicetwin;
+
+import com.microsoft.azure.sdk.iot.service.devicetwin.BulkMethodResult;
+import com.microsoft.azure.sdk.iot.service.devicetwin.MethodResult;
+import mockit.Deencapsulation;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for BulkMethodResult
+ */
+public class BulkMethodResultTest
+{
+    /* Tests_SRS_BULKMETHODRESULT_21_001: [The constructor shall save a copy of the results and failures.] */
+    /* Tests_SRS_BULKMETHODRESULT_21_002: [The getResults shall return the method results by device id.] */
+    /* Tests_SRS_BULKMETHODRESULT_21_003: [The getFailures shall return the exceptions by device id.] */
+    @Test
+    public void constructorCopiesResultsAndFailures()
+    {
+        //arrange
+        Map<String, MethodResult> results = new HashMap<>();
+        MethodResult methodResult = new MethodResult(200, "payload");
+        results.put("d1", methodResult);
+        Map<String, Throwable> failures = new HashMap<>();
+        IOException failure = new IOException();
+        failures.put("d2", failure);
+
+        //act
+        BulkMethodResult bulkMethodResult = Deencapsulation.newInstance(BulkMethodResult.class, new Class[]{Map.class, Map.class}, results, failures);
+        results.clear();
+        failures.clear();
+
+        //assert
+        assertEquals(methodResult, bulkMethodResult.getResults().get("d1"));
+        assertEquals(failure, bulkMethodResult.getFailures().get("d2"));
+    }
+
+    /* Tests_SRS_BULKMETHODRESULT_21_004: [The isSuccessful shall return true if there is no failure.] */
+    @Test
+    public void isSuccessfulOnlyWithoutFailures()
+    {
+        //arrange
+        Map<String, MethodResult> results = new HashMap<>();
+        results.put("d1", new MethodResult(500, null));
+        Map<String, Throwable> failures = new HashMap<>();
+
+        //act
+        BulkMethodResult succeeded = Deencapsulation.newInstance(BulkMethodResult.class, new Class[]{Map.class, Map.class}, results, failures);
+        failures.put("d2", new IOException());
+        BulkMethodResult failed = Deencapsulation.newInstance(BulkMethodResult.class, new Class[]{Map.class, Map.class}, results, failures);
+
+        //assert
+        assertTrue(succeeded.isSuccessful());
+        assertFalse(failed.isSuccessful());
+    }
+
+    @Test (expected = UnsupportedOperationException.class)
+    public void getResultsIsUnmodifiable()
+    {
+        //arrange
+        BulkMethodResult bulkMethodResult = Deencapsulation.newInstance(BulkMethodResult.class, new Class[]{Map.class, Map.class}, new HashMap<>(), new HashMap<>());
+
+        //act
+        bulkMethodResult.getResults().put("d1", new MethodResult(200, null));
+    }
+}
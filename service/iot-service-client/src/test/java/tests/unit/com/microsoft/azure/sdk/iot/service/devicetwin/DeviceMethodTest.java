@@ -7,6 +7,7 @@ import com.microsoft.azure.sdk.iot.deps.serializer.MethodParser;
 import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
 import com.microsoft.azure.sdk.iot.service.IotHubConnectionStringBuilder;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
+import com.microsoft.azure.sdk.iot.service.devicetwin.BulkMethodResult;
 import com.microsoft.azure.sdk.iot.service.devicetwin.DeviceMethod;
 import com.microsoft.azure.sdk.iot.service.devicetwin.DeviceOperations;
 import com.microsoft.azure.sdk.iot.service.devicetwin.Job;
@@ -19,13 +20,25 @@ import org.junit.Test;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -696,4 +709,313 @@ public class DeviceMethodTest
         testMethod.scheduleDeviceMethod(queryCondition, STANDARD_METHODNAME, STANDARD_TIMEOUT_SECONDS, STANDARD_TIMEOUT_SECONDS, STANDARD_PAYLOAD_MAP, now, maxExecutionTimeInSeconds);
     }
 
+
+    @Test
+    public void invokeDoesNotSerializeConcurrentCalls(
+            @Mocked final MethodParser methodParser,
+            @Mocked final DeviceOperations request,
+            @Mocked final IotHubServiceSasToken iotHubServiceSasToken)
+            throws Exception
+    {
+        //arrange
+        final CountDownLatch bothInvoking = new CountDownLatch(2);
+        DeviceMethod testMethod = DeviceMethod.createFromConnectionString(STANDARD_CONNECTIONSTRING);
+        new NonStrictExpectations()
+        {
+            {
+                methodParser.toJson();
+                result = STANDARD_JSON;
+                DeviceOperations.request((IotHubConnectionString) any, (URL) any, HttpMethod.POST, (byte[]) any, anyString, anyLong);
+                result = new Delegate<HttpResponse>()
+                {
+                    @SuppressWarnings("unused")
+                    HttpResponse request(IotHubConnectionString iotHubConnectionString, URL url, HttpMethod method, byte[] payload, String requestId, long timeoutInMs) throws Exception
+                    {
+                        // both calls must be inside invoke at the same time to get past this point
+                        bothInvoking.countDown();
+                        assertTrue(bothInvoking.await(10, TimeUnit.SECONDS));
+                        return new HttpResponse(200, STANDARD_JSON.getBytes(), new HashMap<>(), new byte[0]);
+                    }
+                };
+            }
+        };
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+
+        try
+        {
+            //act
+            Future<MethodResult> first = executorService.submit(() -> testMethod.invoke(STANDARD_DEVICEID, STANDARD_METHODNAME, null, null, STANDARD_PAYLOAD_MAP));
+            Future<MethodResult> second = executorService.submit(() -> testMethod.invoke(STANDARD_DEVICEID, STANDARD_METHODNAME, null, null, STANDARD_PAYLOAD_MAP));
+
+            //assert
+            assertNotNull(first.get(10, TimeUnit.SECONDS));
+            assertNotNull(second.get(10, TimeUnit.SECONDS));
+        }
+        finally
+        {
+            executorService.shutdownNow();
+        }
+    }
+
+    /* Tests_SRS_DEVICEMETHOD_21_024: [The invokeAsync shall throw IllegalArgumentException if the provided deviceId is null or empty.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void invokeAsyncThrowOnNullDeviceId() throws Exception
+    {
+        //arrange
+        DeviceMethod testMethod = DeviceMethod.createFromConnectionString(STANDARD_CONNECTIONSTRING);
+
+        //act
+        testMethod.invokeAsync(null, STANDARD_METHODNAME, null, null, STANDARD_PAYLOAD_MAP);
+    }
+
+    /* Tests_SRS_DEVICEMETHOD_21_025: [The invokeAsync shall throw IllegalArgumentException if the provided methodName is null, empty, or not valid.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void invokeAsyncThrowOnEmptyMethodName() throws Exception
+    {
+        //arrange
+        DeviceMethod testMethod = DeviceMethod.createFromConnectionString(STANDARD_CONNECTIONSTRING);
+
+        //act
+        testMethod.invokeAsync(STANDARD_DEVICEID, "", null, null, STANDARD_PAYLOAD_MAP);
+    }
+
+    /* Tests_SRS_DEVICEMETHOD_21_027: [The invokeAsync shall throw IllegalArgumentException if the provided deviceId, moduleId or methodName is null or empty.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void invokeAsyncModuleThrowOnNullModuleId() throws Exception
+    {
+        //arrange
+        DeviceMethod testMethod = DeviceMethod.createFromConnectionString(STANDARD_CONNECTIONSTRING);
+
+        //act
+        testMethod.invokeAsync(STANDARD_DEVICEID, null, STANDARD_METHODNAME, null, null, STANDARD_PAYLOAD_MAP);
+    }
+
+    /* Tests_SRS_DEVICEMETHOD_21_026: [The invokeAsync shall build the Method URL `{iot hub}/twins/{device id}/methods/` by calling getUrlMethod.] */
+    @Test
+    public void invokeAsyncSucceed(
+            @Mocked final MethodParser methodParser,
+            @Mocked final DeviceOperations request,
+            @Mocked final IotHubServiceSasToken iotHubServiceSasToken)
+            throws Exception
+    {
+        //arrange
+        final CompletableFuture<HttpResponse> response = new CompletableFuture<>();
+        DeviceMethod testMethod = DeviceMethod.createFromConnectionString(STANDARD_CONNECTIONSTRING);
+        new NonStrictExpectations()
+        {
+            {
+                mockedIotHubConnectionString.getUrlMethod(STANDARD_DEVICEID);
+                result = STANDARD_URL;
+                methodParser.toJson();
+                result = STANDARD_JSON;
+                DeviceOperations.requestAsync((IotHubConnectionString) any, (URL) any, HttpMethod.POST, (byte[]) any, anyString, anyLong);
+                result = response;
+                methodParser.getPayload();
+                result = STANDARD_PAYLOAD_STR;
+                methodParser.getStatus();
+                result = 123;
+            }
+        };
+
+        //act
+        CompletableFuture<MethodResult> future = testMethod.invokeAsync(STANDARD_DEVICEID, STANDARD_METHODNAME, null, null, STANDARD_PAYLOAD_MAP);
+
+        //assert
+        assertFalse(future.isDone());
+        response.complete(new HttpResponse(200, STANDARD_JSON.getBytes(), new HashMap<>(), new byte[0]));
+        MethodResult result = future.get();
+        assertThat(result.getStatus(), is(123));
+        assertThat(result.getPayload().toString(), is(STANDARD_PAYLOAD_STR));
+        new Verifications()
+        {
+            {
+                mockedIotHubConnectionString.getUrlMethod(STANDARD_DEVICEID);
+                times = 1;
+                DeviceOperations.request((IotHubConnectionString) any, (URL) any, (HttpMethod) any, (byte[]) any, anyString, anyLong);
+                times = 0;
+            }
+        };
+    }
+
+    /* Tests_SRS_DEVICEMETHOD_21_028: [The invokeAsync shall build the Method URL `{iot hub}/twins/{device id}/modules/{module id}/methods/` by calling getUrlModuleMethod.] */
+    @Test
+    public void invokeAsyncModuleSucceed(
+            @Mocked final MethodParser methodParser,
+            @Mocked final DeviceOperations request,
+            @Mocked final IotHubServiceSasToken iotHubServiceSasToken)
+            throws Exception
+    {
+        //arrange
+        DeviceMethod testMethod = DeviceMethod.createFromConnectionString(STANDARD_CONNECTIONSTRING);
+        new NonStrictExpectations()
+        {
+            {
+                methodParser.toJson();
+                result = STANDARD_JSON;
+                DeviceOperations.requestAsync((IotHubConnectionString) any, (URL) any, HttpMethod.POST, (byte[]) any, anyString, anyLong);
+                result = CompletableFuture.completedFuture(new HttpResponse(200, STANDARD_JSON.getBytes(), new HashMap<>(), new byte[0]));
+                methodParser.getStatus();
+                result = 200;
+            }
+        };
+
+        //act
+        MethodResult result = testMethod.invokeAsync(STANDARD_DEVICEID, STANDARD_MODULEID, STANDARD_METHODNAME, null, null, STANDARD_PAYLOAD_MAP).get();
+
+        //assert
+        assertThat(result.getStatus(), is(200));
+        new Verifications()
+        {
+            {
+                mockedIotHubConnectionString.getUrlModuleMethod(STANDARD_DEVICEID, STANDARD_MODULEID);
+                times = 1;
+            }
+        };
+    }
+
+    /* Tests_SRS_DEVICEMETHOD_21_029: [The invokeOnDevicesAsync shall throw IllegalArgumentException if the provided deviceIds is null, empty or contains a null or empty id.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void invokeOnDevicesAsyncThrowOnEmptyDeviceIds() throws Exception
+    {
+        //arrange
+        DeviceMethod testMethod = DeviceMethod.createFromConnectionString(STANDARD_CONNECTIONSTRING);
+
+        //act
+        testMethod.invokeOnDevicesAsync(new ArrayList<>(), STANDARD_METHODNAME, null, null, STANDARD_PAYLOAD_MAP, 1);
+    }
+
+    /* Tests_SRS_DEVICEMETHOD_21_029: [The invokeOnDevicesAsync shall throw IllegalArgumentException if the provided deviceIds is null, empty or contains a null or empty id.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void invokeOnDevicesAsyncThrowOnEmptyDeviceId() throws Exception
+    {
+        //arrange
+        DeviceMethod testMethod = DeviceMethod.createFromConnectionString(STANDARD_CONNECTIONSTRING);
+
+        //act
+        testMethod.invokeOnDevicesAsync(Arrays.asList(STANDARD_DEVICEID, ""), STANDARD_METHODNAME, null, null, STANDARD_PAYLOAD_MAP, 1);
+    }
+
+    /* Tests_SRS_DEVICEMETHOD_21_030: [The invokeOnDevicesAsync shall throw IllegalArgumentException if the provided methodName is null or empty.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void invokeOnDevicesAsyncThrowOnNullMethodName() throws Exception
+    {
+        //arrange
+        DeviceMethod testMethod = DeviceMethod.createFromConnectionString(STANDARD_CONNECTIONSTRING);
+
+        //act
+        testMethod.invokeOnDevicesAsync(Arrays.asList(STANDARD_DEVICEID), null, null, null, STANDARD_PAYLOAD_MAP, 1);
+    }
+
+    /* Tests_SRS_DEVICEMETHOD_21_031: [The invokeOnDevicesAsync shall throw IllegalArgumentException if the provided maxConcurrentInvocations is less than 1.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void invokeOnDevicesAsyncThrowOnZeroConcurrency() throws Exception
+    {
+        //arrange
+        DeviceMethod testMethod = DeviceMethod.createFromConnectionString(STANDARD_CONNECTIONSTRING);
+
+        //act
+        testMethod.invokeOnDevicesAsync(Arrays.asList(STANDARD_DEVICEID), STANDARD_METHODNAME, null, null, STANDARD_PAYLOAD_MAP, 0);
+    }
+
+    /* Tests_SRS_DEVICEMETHOD_21_032: [The invokeOnDevicesAsync shall invoke the method on every device with invokeAsync, starting the next invocation only when one of the at most maxConcurrentInvocations outstanding ones finished.] */
+    @Test
+    public void invokeOnDevicesAsyncBoundsOutstandingInvocations() throws Exception
+    {
+        //arrange
+        final Map<String, CompletableFuture<MethodResult>> invocations = new LinkedHashMap<>();
+        new MockUp<DeviceMethod>()
+        {
+            @Mock
+            CompletableFuture<MethodResult> invokeAsync(String deviceId, String methodName, Long responseTimeoutInSeconds, Long connectTimeoutInSeconds, Object payload)
+            {
+                CompletableFuture<MethodResult> invocation = new CompletableFuture<>();
+                invocations.put(deviceId, invocation);
+                return invocation;
+            }
+        };
+        DeviceMethod testMethod = DeviceMethod.createFromConnectionString(STANDARD_CONNECTIONSTRING);
+
+        //act
+        CompletableFuture<BulkMethodResult> future = testMethod.invokeOnDevicesAsync(Arrays.asList("d1", "d2", "d3", "d4", "d5"), STANDARD_METHODNAME, null, null, STANDARD_PAYLOAD_MAP, 2);
+
+        //assert
+        assertEquals(Arrays.asList("d1", "d2"), new ArrayList<>(invocations.keySet()));
+        invocations.get("d2").complete(new MethodResult(200, null));
+        assertEquals(Arrays.asList("d1", "d2", "d3"), new ArrayList<>(invocations.keySet()));
+        invocations.get("d1").complete(new MethodResult(200, null));
+        invocations.get("d3").complete(new MethodResult(200, null));
+        assertEquals(5, invocations.size());
+        assertFalse(future.isDone());
+        invocations.get("d4").complete(new MethodResult(200, null));
+        invocations.get("d5").complete(new MethodResult(200, null));
+        assertTrue(future.isDone());
+        assertEquals(5, future.get().getResults().size());
+    }
+
+    /* Tests_SRS_DEVICEMETHOD_21_033: [The invokeOnDevicesAsync shall complete the future with the result or the failure of every device once all invocations finished.] */
+    @Test
+    public void invokeOnDevicesAsyncAggregatesResultsAndFailures() throws Exception
+    {
+        //arrange
+        final IOException connectFailure = new IOException("not connected");
+        final IllegalStateException buildFailure = new IllegalStateException();
+        new MockUp<DeviceMethod>()
+        {
+            @Mock
+            CompletableFuture<MethodResult> invokeAsync(String deviceId, String methodName, Long responseTimeoutInSeconds, Long connectTimeoutInSeconds, Object payload)
+            {
+                if ("d2".equals(deviceId))
+                {
+                    CompletableFuture<MethodResult> failed = new CompletableFuture<>();
+                    failed.completeExceptionally(new CompletionException(connectFailure));
+                    return failed;
+                }
+                else if ("d3".equals(deviceId))
+                {
+                    throw buildFailure;
+                }
+                return CompletableFuture.completedFuture(new MethodResult(200, deviceId));
+            }
+        };
+        DeviceMethod testMethod = DeviceMethod.createFromConnectionString(STANDARD_CONNECTIONSTRING);
+
+        //act
+        BulkMethodResult result = testMethod.invokeOnDevicesAsync(Arrays.asList("d1", "d2", "d3", "d1"), STANDARD_METHODNAME, null, null, STANDARD_PAYLOAD_MAP, 1).get();
+
+        //assert
+        assertFalse(result.isSuccessful());
+        assertEquals(1, result.getResults().size());
+        assertEquals("d1", result.getResults().get("d1").getPayload());
+        assertEquals(2, result.getFailures().size());
+        assertEquals(connectFailure, result.getFailures().get("d2"));
+        assertEquals(buildFailure, result.getFailures().get("d3"));
+    }
+
+    /* Tests_SRS_DEVICEMETHOD_21_032: [The invokeOnDevicesAsync shall invoke the method on every device with invokeAsync, starting the next invocation only when one of the at most maxConcurrentInvocations outstanding ones finished.] */
+    @Test
+    public void invokeOnDevicesAsyncHandlesSynchronousCompletionWithoutRecursion() throws Exception
+    {
+        //arrange
+        final List<String> deviceIds = new ArrayList<>();
+        for (int i = 0; i < 20000; i++)
+        {
+            deviceIds.add("device" + i);
+        }
+        new MockUp<DeviceMethod>()
+        {
+            @Mock
+            CompletableFuture<MethodResult> invokeAsync(String deviceId, String methodName, Long responseTimeoutInSeconds, Long connectTimeoutInSeconds, Object payload)
+            {
+                return CompletableFuture.completedFuture(new MethodResult(200, null));
+            }
+        };
+        DeviceMethod testMethod = DeviceMethod.createFromConnectionString(STANDARD_CONNECTIONSTRING);
+
+        //act
+        BulkMethodResult result = testMethod.invokeOnDevicesAsync(deviceIds, STANDARD_METHODNAME, null, null, STANDARD_PAYLOAD_MAP, 1).get();
+
+        //assert
+        assertTrue(result.isSuccessful());
+        assertEquals(deviceIds.size(), result.getResults().size());
+    }
 }
@@ -10,9 +10,12 @@ import com.microsoft.azure.sdk.iot.service.devicetwin.DeviceOperations;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubBadFormatException;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubExceptionManager;
 import com.microsoft.azure.sdk.iot.service.transport.TransportUtils;
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpEngine;
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpEngines;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpMethod;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpRequest;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponse;
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponseBodyReader;
 import mockit.*;
 import org.junit.Before;
 import org.junit.Test;
@@ -23,9 +26,14 @@ import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import static junit.framework.TestCase.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Unit tests for Http requester
@@ -730,6 +738,269 @@ public class DeviceOperationsTest
         };
     }
 
+    /* Tests_SRS_DEVICE_OPERATIONS_21_015: [The request shall send the created request and get the response.] */
+    @Test
+    public void requestSendsThroughInstalledEngine(
+            @Mocked IotHubServiceSasToken iotHubServiceSasToken,
+            @Mocked HttpRequest httpRequest,
+            @Mocked HttpEngine httpEngine)
+            throws Exception
+    {
+        //arrange
+        HttpResponse sendResponse = new HttpResponse(200, new byte[] { 1 }, new HashMap<>(), new byte[0]);
+        new NonStrictExpectations()
+        {
+            {
+                iotHubServiceSasToken.toString();
+                result = STANDARD_SASTOKEN_STRING;
+                httpEngine.send((HttpRequest) any);
+                result = sendResponse;
+            }
+        };
+        HttpEngines.setEngine(httpEngine);
+
+        try
+        {
+            //act
+            HttpResponse response = DeviceOperations.request(
+                    IOT_HUB_CONNECTION_STRING,
+                    new URL(STANDARD_URL),
+                    HttpMethod.POST,
+                    STANDARD_PAYLOAD,
+                    STANDARD_REQUEST_ID,
+                    0);
+
+            //assert
+            assertEquals(sendResponse, response);
+            new Verifications()
+            {
+                {
+                    httpEngine.send((HttpRequest) any);
+                    times = 1;
+                    httpRequest.send();
+                    times = 0;
+                }
+            };
+        }
+        finally
+        {
+            HttpEngines.setEngine(null);
+        }
+    }
+
+    /* Tests_SRS_DEVICE_OPERATIONS_21_025: [The request shall throw IllegalArgumentException if the provided `bodyReader` is null.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void requestWithBodyReaderThrowsOnNullBodyReader() throws Exception
+    {
+        //act
+        DeviceOperations.request(
+                IOT_HUB_CONNECTION_STRING,
+                new URL(STANDARD_URL),
+                HttpMethod.POST,
+                STANDARD_PAYLOAD,
+                STANDARD_REQUEST_ID,
+                0,
+                null);
+    }
+
+    /* Tests_SRS_DEVICE_OPERATIONS_21_026: [The request shall send the created request through the http engine, which hands the body of a successful response to the bodyReader.] */
+    @Test
+    public void requestWithBodyReaderSendsThroughInstalledEngine(
+            @Mocked IotHubServiceSasToken iotHubServiceSasToken,
+            @Mocked HttpRequest httpRequest,
+            @Mocked HttpEngine httpEngine)
+            throws Exception
+    {
+        //arrange
+        final HttpResponseBodyReader bodyReader = body -> { };
+        HttpResponse sendResponse = new HttpResponse(200, new byte[0], new HashMap<>(), new byte[0]);
+        new NonStrictExpectations()
+        {
+            {
+                iotHubServiceSasToken.toString();
+                result = STANDARD_SASTOKEN_STRING;
+                httpEngine.send((HttpRequest) any, bodyReader);
+                result = sendResponse;
+            }
+        };
+        HttpEngines.setEngine(httpEngine);
+
+        try
+        {
+            //act
+            HttpResponse response = DeviceOperations.request(
+                    IOT_HUB_CONNECTION_STRING,
+                    new URL(STANDARD_URL),
+                    HttpMethod.POST,
+                    STANDARD_PAYLOAD,
+                    STANDARD_REQUEST_ID,
+                    0,
+                    bodyReader);
+
+            //assert
+            assertEquals(sendResponse, response);
+            new Verifications()
+            {
+                {
+                    httpEngine.send((HttpRequest) any, bodyReader);
+                    times = 1;
+                    httpEngine.send((HttpRequest) any);
+                    times = 0;
+                }
+            };
+        }
+        finally
+        {
+            HttpEngines.setEngine(null);
+        }
+    }
+
+    /* Tests_SRS_DEVICE_OPERATIONS_21_016: [If the resulted HttpResponseStatus represents fail, the request shall throw proper Exception by calling httpResponseVerification.] */
+    @Test (expected = IotHubBadFormatException.class)
+    public void requestWithBodyReaderThrowsOnFailedStatus(
+            @Mocked IotHubServiceSasToken iotHubServiceSasToken,
+            @Mocked HttpRequest httpRequest,
+            @Mocked HttpEngine httpEngine)
+            throws Exception
+    {
+        //arrange
+        HttpResponse sendResponse = new HttpResponse(400, new byte[0], new HashMap<>(), "{\"Message\":\"ErrorCode:BadFormat;bad\"}".getBytes());
+        new NonStrictExpectations()
+        {
+            {
+                iotHubServiceSasToken.toString();
+                result = STANDARD_SASTOKEN_STRING;
+                httpEngine.send((HttpRequest) any, (HttpResponseBodyReader) any);
+                result = sendResponse;
+            }
+        };
+        HttpEngines.setEngine(httpEngine);
+
+        try
+        {
+            //act
+            DeviceOperations.request(
+                    IOT_HUB_CONNECTION_STRING,
+                    new URL(STANDARD_URL),
+                    HttpMethod.POST,
+                    STANDARD_PAYLOAD,
+                    STANDARD_REQUEST_ID,
+                    0,
+                    body -> { });
+        }
+        finally
+        {
+            HttpEngines.setEngine(null);
+        }
+    }
+
+    /* Tests_SRS_DEVICE_OPERATIONS_21_022: [The requestAsync shall create the request in the same way as the request does.] */
+    /* Tests_SRS_DEVICE_OPERATIONS_21_023: [The requestAsync shall send the created request with the sendAsync of the http engine.] */
+    @Test
+    public void requestAsyncSucceed(
+            @Mocked IotHubServiceSasToken iotHubServiceSasToken,
+            @Mocked HttpRequest httpRequest,
+            @Mocked HttpEngine httpEngine)
+            throws Exception
+    {
+        //arrange
+        HttpResponse sendResponse = new HttpResponse(200, new byte[] { 1 }, new HashMap<>(), new byte[0]);
+        CompletableFuture<HttpResponse> engineFuture = new CompletableFuture<>();
+        new NonStrictExpectations()
+        {
+            {
+                iotHubServiceSasToken.toString();
+                result = STANDARD_SASTOKEN_STRING;
+                httpEngine.sendAsync((HttpRequest) any);
+                result = engineFuture;
+            }
+        };
+        HttpEngines.setEngine(httpEngine);
+
+        try
+        {
+            //act
+            CompletableFuture<HttpResponse> future = DeviceOperations.requestAsync(
+                    IOT_HUB_CONNECTION_STRING,
+                    new URL(STANDARD_URL),
+                    HttpMethod.POST,
+                    STANDARD_PAYLOAD,
+                    STANDARD_REQUEST_ID,
+                    0);
+
+            //assert
+            assertFalse(future.isDone());
+            engineFuture.complete(sendResponse);
+            assertEquals(sendResponse, future.get());
+            new Verifications()
+            {
+                {
+                    httpRequest.setReadTimeoutMillis(DEFAULT_HTTP_TIMEOUT_MS);
+                    times = 1;
+                    httpRequest.setHeaderField(AUTHORIZATION, STANDARD_SASTOKEN_STRING);
+                    times = 1;
+                    httpRequest.setHeaderField(REQUEST_ID, STANDARD_REQUEST_ID);
+                    times = 1;
+                    httpRequest.send();
+                    times = 0;
+                }
+            };
+        }
+        finally
+        {
+            HttpEngines.setEngine(null);
+        }
+    }
+
+    /* Tests_SRS_DEVICE_OPERATIONS_21_024: [If the resulted HttpResponseStatus represents fail, the requestAsync shall complete the future exceptionally with the exception thrown by httpResponseVerification.] */
+    @Test
+    public void requestAsyncCompletesExceptionallyOnFailedStatus(
+            @Mocked IotHubServiceSasToken iotHubServiceSasToken,
+            @Mocked HttpRequest httpRequest,
+            @Mocked HttpEngine httpEngine)
+            throws Exception
+    {
+        //arrange
+        HttpResponse sendResponse = new HttpResponse(400, new byte[0], new HashMap<>(), "{\"Message\":\"ErrorCode:BadFormat;bad\"}".getBytes());
+        new NonStrictExpectations()
+        {
+            {
+                iotHubServiceSasToken.toString();
+                result = STANDARD_SASTOKEN_STRING;
+                httpEngine.sendAsync((HttpRequest) any);
+                result = CompletableFuture.completedFuture(sendResponse);
+            }
+        };
+        HttpEngines.setEngine(httpEngine);
+
+        try
+        {
+            //act
+            CompletableFuture<HttpResponse> future = DeviceOperations.requestAsync(
+                    IOT_HUB_CONNECTION_STRING,
+                    new URL(STANDARD_URL),
+                    HttpMethod.POST,
+                    STANDARD_PAYLOAD,
+                    STANDARD_REQUEST_ID,
+                    0);
+
+            //assert
+            try
+            {
+                future.get();
+                fail("The future should have completed exceptionally");
+            }
+            catch (ExecutionException e)
+            {
+                assertTrue(e.getCause() instanceof IotHubBadFormatException);
+            }
+        }
+        finally
+        {
+            HttpEngines.setEngine(null);
+        }
+    }
+
     //Tests_SRS_DEVICE_OPERATIONS_25_020: [This method shall set the headers map to be used for next request only.]
     @Test
     public void setCustomHeadersSucceed(@Mocked IotHubServiceSasToken iotHubServiceSasToken,
@@ -749,7 +1020,7 @@ public class DeviceOperationsTest
                 STANDARD_REQUEST_ID,
                 0);
 
-        assertNull(Deencapsulation.getField(DeviceOperations.class, "headers"));
+        assertNull(((ThreadLocal<?>) Deencapsulation.getField(DeviceOperations.class, "headers")).get());
 
         //assert
         new Verifications()
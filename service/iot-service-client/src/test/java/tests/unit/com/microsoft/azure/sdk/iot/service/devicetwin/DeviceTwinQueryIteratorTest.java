@@ -0,0 +1,204 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.unit.com.microsoft.azure.sdk.iot.service.devicetwin;
+
+import com.microsoft.azure.sdk.iot.service.devicetwin.DeviceTwin;
+import com.microsoft.azure.sdk.iot.service.devicetwin.DeviceTwinDevice;
+import com.microsoft.azure.sdk.iot.service.devicetwin.DeviceTwinQueryException;
+import com.microsoft.azure.sdk.iot.service.devicetwin.DeviceTwinQueryIterator;
+import com.microsoft.azure.sdk.iot.service.devicetwin.QueryCollection;
+import com.microsoft.azure.sdk.iot.service.devicetwin.QueryCollectionResponse;
+import com.microsoft.azure.sdk.iot.service.exceptions.IotHubNotFoundException;
+import mockit.Deencapsulation;
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
+import mockit.Verifications;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/** Unit tests for DeviceTwinQueryIterator */
+public class DeviceTwinQueryIteratorTest
+{
+    @Mocked QueryCollection mockQueryCollection;
+    @Mocked DeviceTwin mockDeviceTwin;
+    @Mocked QueryCollectionResponse<String> mockQueryCollectionResponse;
+    @Mocked DeviceTwinDevice mockDeviceTwinDevice;
+
+    private DeviceTwinQueryIterator createIterator(int prefetchPageCount)
+    {
+        return Deencapsulation.newInstance(DeviceTwinQueryIterator.class,
+                new Class[] {QueryCollection.class, DeviceTwin.class, int.class},
+                mockQueryCollection, mockDeviceTwin, prefetchPageCount);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsOnPrefetchPageCountBelowOne()
+    {
+        createIterator(0);
+    }
+
+    @Test
+    public void iteratesOverAllPages() throws Exception
+    {
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockQueryCollection, "next");
+                result = mockQueryCollectionResponse;
+                Deencapsulation.invoke(mockQueryCollection, "hasNext");
+                returns(true, false);
+                mockQueryCollectionResponse.getCollection();
+                returns(Arrays.asList("twin1", "twin2"), Collections.singletonList("twin3"));
+                Deencapsulation.invoke(mockDeviceTwin, "jsonToDeviceTwinDevice", new Class[] {String.class}, anyString);
+                result = mockDeviceTwinDevice;
+            }
+        };
+
+        DeviceTwinQueryIterator iterator = createIterator(1);
+        int count = 0;
+        while (iterator.hasNext())
+        {
+            iterator.next();
+            count++;
+        }
+
+        assertEquals(3, count);
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void streamReturnsAllResults() throws Exception
+    {
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockQueryCollection, "next");
+                result = mockQueryCollectionResponse;
+                Deencapsulation.invoke(mockQueryCollection, "hasNext");
+                result = false;
+                mockQueryCollectionResponse.getCollection();
+                result = Arrays.asList("twin1", "twin2");
+                Deencapsulation.invoke(mockDeviceTwin, "jsonToDeviceTwinDevice", new Class[] {String.class}, anyString);
+                result = mockDeviceTwinDevice;
+            }
+        };
+
+        DeviceTwinQueryIterator iterator = createIterator(2);
+
+        assertEquals(2, iterator.stream().count());
+    }
+
+    @Test
+    public void hasNextRethrowsQueryFailure() throws Exception
+    {
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockQueryCollection, "next");
+                result = new IOException("query failed");
+            }
+        };
+
+        DeviceTwinQueryIterator iterator = createIterator(2);
+
+        try
+        {
+            iterator.hasNext();
+        }
+        catch (UncheckedIOException e)
+        {
+            assertEquals("query failed", e.getCause().getMessage());
+            assertFalse(iterator.hasNext());
+            return;
+        }
+        throw new AssertionError("hasNext should have thrown");
+    }
+
+    @Test
+    public void hasNextRethrowsServiceErrorWithItsType() throws Exception
+    {
+        final IotHubNotFoundException serviceError = new IotHubNotFoundException("not found");
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockQueryCollection, "next");
+                result = serviceError;
+            }
+        };
+
+        DeviceTwinQueryIterator iterator = createIterator(2);
+
+        try
+        {
+            iterator.hasNext();
+        }
+        catch (DeviceTwinQueryException e)
+        {
+            assertSame(serviceError, e.getCause());
+            assertFalse(iterator.hasNext());
+            return;
+        }
+        throw new AssertionError("hasNext should have thrown");
+    }
+
+    @Test
+    public void unreadIteratorStopsFetchingOnceItsPagesAreBuffered() throws Exception
+    {
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockQueryCollection, "next");
+                result = mockQueryCollectionResponse;
+                Deencapsulation.invoke(mockQueryCollection, "hasNext");
+                result = true;
+                mockQueryCollectionResponse.getCollection();
+                result = Collections.singletonList("twin1");
+                Deencapsulation.invoke(mockDeviceTwin, "jsonToDeviceTwinDevice", new Class[] {String.class}, anyString);
+                result = mockDeviceTwinDevice;
+            }
+        };
+
+        DeviceTwinQueryIterator iterator = createIterator(2);
+        Queue<?> prefetchedPages = Deencapsulation.getField(iterator, "prefetchedPages");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (prefetchedPages.size() < 2 && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+
+        assertEquals(2, prefetchedPages.size());
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(mockQueryCollection, "next");
+                times = 2;
+            }
+        };
+        iterator.close();
+    }
+
+    @Test (expected = NoSuchElementException.class)
+    public void nextThrowsWhenClosed() throws Exception
+    {
+        DeviceTwinQueryIterator iterator = createIterator(1);
+        iterator.close();
+
+        assertTrue(!iterator.hasNext());
+        iterator.next();
+    }
+}
@@ -12,13 +12,20 @@ import com.microsoft.azure.sdk.iot.service.devicetwin.*;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpMethod;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponse;
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponseBodyReader;
 import mockit.*;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 
 import static junit.framework.TestCase.assertEquals;
 import static org.junit.Assert.*;
@@ -307,7 +314,7 @@ public class QueryCollectionTest
                 mockQueryOptions.getPageSize();
                 result = expectedPageSize;
 
-                DeviceOperations.request(mockConnectionString, mockUrl, mockHttpMethod, (byte[]) any, anyString, expectedTimeout);
+                DeviceOperations.request(mockConnectionString, mockUrl, mockHttpMethod, (byte[]) any, anyString, expectedTimeout, (HttpResponseBodyReader) any);
                 result = mockHttpResponse;
 
                 mockHttpResponse.getHeaderFields();
@@ -325,7 +332,7 @@ public class QueryCollectionTest
                 DeviceOperations.setHeaders(expectedValidRequestHeaders);
                 times = 1;
 
-                DeviceOperations.request(mockConnectionString, mockUrl, mockHttpMethod, new byte[0], anyString, expectedTimeout);
+                DeviceOperations.request(mockConnectionString, mockUrl, mockHttpMethod, new byte[0], anyString, expectedTimeout, (HttpResponseBodyReader) any);
                 times = 1;
             }
         };
@@ -348,7 +355,7 @@ public class QueryCollectionTest
                 mockQueryOptions.getPageSize();
                 result = expectedPageSize;
 
-                DeviceOperations.request(mockConnectionString, mockUrl, mockHttpMethod, (byte[]) any, anyString, expectedTimeout);
+                DeviceOperations.request(mockConnectionString, mockUrl, mockHttpMethod, (byte[]) any, anyString, expectedTimeout, (HttpResponseBodyReader) any);
                 result = mockHttpResponse;
 
                 mockHttpResponse.getHeaderFields();
@@ -373,7 +380,7 @@ public class QueryCollectionTest
         new NonStrictExpectations()
         {
             {
-                DeviceOperations.request(mockConnectionString, mockUrl, mockHttpMethod, (byte[]) any, anyString, expectedTimeout);
+                DeviceOperations.request(mockConnectionString, mockUrl, mockHttpMethod, (byte[]) any, anyString, expectedTimeout, (HttpResponseBodyReader) any);
                 result = mockHttpResponse;
 
                 mockHttpResponse.getHeaderFields();
@@ -393,7 +400,7 @@ public class QueryCollectionTest
                 DeviceOperations.setHeaders(expectedValidRequestHeaders);
                 times = 1;
 
-                DeviceOperations.request(mockConnectionString, mockUrl, mockHttpMethod, new byte[0], anyString, expectedTimeout);
+                DeviceOperations.request(mockConnectionString, mockUrl, mockHttpMethod, new byte[0], anyString, expectedTimeout, (HttpResponseBodyReader) any);
                 times = 1;
             }
         };
@@ -424,7 +431,7 @@ public class QueryCollectionTest
                 expectedQueryStringJson.getBytes();
                 result = expectedQueryStringBytes;
 
-                DeviceOperations.request((IotHubConnectionString) any, (URL) any, (HttpMethod) any, expectedQueryStringBytes, null, anyLong);
+                DeviceOperations.request((IotHubConnectionString) any, (URL) any, (HttpMethod) any, expectedQueryStringBytes, null, anyLong, (HttpResponseBodyReader) any);
                 result = mockHttpResponse;
 
                 mockHttpResponse.getHeaderFields();
@@ -439,7 +446,7 @@ public class QueryCollectionTest
         new Verifications()
         {
             {
-                DeviceOperations.request((IotHubConnectionString) any, (URL) any, (HttpMethod) any, expectedQueryStringBytes, null, anyLong);
+                DeviceOperations.request((IotHubConnectionString) any, (URL) any, (HttpMethod) any, expectedQueryStringBytes, null, anyLong, (HttpResponseBodyReader) any);
                 times = 1;
             }
         };
@@ -471,14 +478,53 @@ public class QueryCollectionTest
                 expectedQueryStringJson.getBytes();
                 result = expectedQueryStringBytes;
 
-                DeviceOperations.request((IotHubConnectionString) any, (URL) any, (HttpMethod) any, expectedQueryStringBytes, null, anyLong);
+                DeviceOperations.request((IotHubConnectionString) any, (URL) any, (HttpMethod) any, expectedQueryStringBytes, null, anyLong, (HttpResponseBodyReader) any);
                 result = mockHttpResponse;
 
                 mockHttpResponse.getHeaderFields();
                 result = expectedValidResponseHeaders;
+            }
+        };
 
-                mockHttpResponse.getBody();
-                result = expectedQueryStringBytes;
+        //act
+        Deencapsulation.invoke(queryCollection, "sendQueryRequest", new Class[] {QueryOptions.class}, (QueryOptions) null);
+
+        //assert
+        new Verifications()
+        {
+            {
+                Deencapsulation.newInstance(QueryCollectionResponse.class, new Class[] {Collection.class, String.class}, (Collection) any, expectedResponseContinuationToken);
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_QUERYCOLLECTION_34_021: [The method shall create a QueryResponse object with the contents from the response body and its continuation token and return it.]
+    @Test
+    public void sendQueryRequestReadsItemsFromResponseStream(@Mocked final URL mockUrl) throws IOException, IotHubException
+    {
+        //arrange
+        final List<Collection> capturedItems = new ArrayList<>();
+        QueryCollection queryCollection = Deencapsulation.newInstance(QueryCollection.class, new Class[] {String.class, int.class, QueryType.class, IotHubConnectionString.class, URL.class, HttpMethod.class, long.class}, "some query", expectedPageSize, QueryType.RAW, mockConnectionString, mockUrl, mockHttpMethod, expectedTimeout);
+
+        new NonStrictExpectations()
+        {
+            {
+                mockQueryRequestParser.toJson();
+                result = "some query json";
+
+                DeviceOperations.request((IotHubConnectionString) any, (URL) any, (HttpMethod) any, (byte[]) any, null, anyLong, (HttpResponseBodyReader) any);
+                result = new Delegate()
+                {
+                    HttpResponse request(IotHubConnectionString iotHubConnectionString, URL url, HttpMethod method, byte[] payload, String requestId, long timeoutInMs, HttpResponseBodyReader bodyReader) throws IOException
+                    {
+                        bodyReader.read(new ByteArrayInputStream("[{\"a\":1},{\"b\":2}]".getBytes(StandardCharsets.UTF_8)));
+                        return mockHttpResponse;
+                    }
+                };
+
+                mockHttpResponse.getHeaderFields();
+                result = expectedValidResponseHeaders;
             }
         };
 
@@ -489,10 +535,13 @@ public class QueryCollectionTest
         new Verifications()
         {
             {
-                Deencapsulation.newInstance(QueryCollectionResponse.class, new Class[] {String.class, String.class}, expectedQueryStringJson, expectedResponseContinuationToken);
+                mockHttpResponse.getBody();
+                times = 0;
+                Deencapsulation.newInstance(QueryCollectionResponse.class, new Class[] {Collection.class, String.class}, withCapture(capturedItems), expectedResponseContinuationToken);
                 times = 1;
             }
         };
+        assertEquals(Arrays.asList("{\"a\":1}", "{\"b\":2}"), capturedItems.get(0));
     }
 
     //Tests_SRS_QUERYCOLLECTION_34_020: [If the request type and response does not match then the method shall throw IOException.]
@@ -511,7 +560,7 @@ public class QueryCollectionTest
                 mockQueryOptions.getPageSize();
                 result = expectedPageSize;
 
-                DeviceOperations.request(mockConnectionString, mockUrl, mockHttpMethod, (byte[]) any, anyString, expectedTimeout);
+                DeviceOperations.request(mockConnectionString, mockUrl, mockHttpMethod, (byte[]) any, anyString, expectedTimeout, (HttpResponseBodyReader) any);
                 result = mockHttpResponse;
 
                 mockHttpResponse.getHeaderFields();
@@ -700,7 +749,7 @@ public class QueryCollectionTest
                 DeviceOperations.setHeaders(expectedValidRequestHeaders);
                 times = 1;
 
-                DeviceOperations.request(mockConnectionString, (URL) any, mockHttpMethod, (byte[]) any, null, expectedTimeout);
+                DeviceOperations.request(mockConnectionString, (URL) any, mockHttpMethod, (byte[]) any, null, expectedTimeout, (HttpResponseBodyReader) any);
                 times = 1;
             }
         };
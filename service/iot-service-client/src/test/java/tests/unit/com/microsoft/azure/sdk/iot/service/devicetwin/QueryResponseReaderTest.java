@@ -0,0 +1,114 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.unit.com.microsoft.azure.sdk.iot.service.devicetwin;
+
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponseBodyReader;
+import mockit.Deencapsulation;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/*
+ *  Unit test for Query Response Reader
+ *  Coverage : 100% method, 100% line
+ */
+public class QueryResponseReaderTest
+{
+    private static List<String> read(String json) throws IOException
+    {
+        HttpResponseBodyReader testReader = Deencapsulation.newInstance("com.microsoft.azure.sdk.iot.service.devicetwin.QueryResponseReader");
+        InputStream body = new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+        testReader.read(body);
+        return Deencapsulation.invoke(testReader, "getItems");
+    }
+
+    @Test
+    public void readCopiesEachItemAsJsonString() throws IOException
+    {
+        //arrange
+        final String json = "[{\"deviceId\":\"device1\",\"tags\":{\"a\":1,\"b\":[true,null,\"x\"]}},{\"deviceId\":\"device2\"}]";
+
+        //act
+        List<String> items = read(json);
+
+        //assert
+        assertEquals(2, items.size());
+        assertEquals("{\"deviceId\":\"device1\",\"tags\":{\"a\":1,\"b\":[true,null,\"x\"]}}", items.get(0));
+        assertEquals("{\"deviceId\":\"device2\"}", items.get(1));
+    }
+
+    @Test
+    public void readKeepsNumberLiteralsAndDropsNullMembers() throws IOException
+    {
+        //act
+        List<String> items = read("[{\"version\":12345678901234567890,\"ratio\":0.10,\"etag\":null}]");
+
+        //assert
+        assertEquals("{\"version\":12345678901234567890,\"ratio\":0.10}", items.get(0));
+    }
+
+    @Test
+    public void readDoesNotEscapeHtml() throws IOException
+    {
+        //act
+        List<String> items = read("[{\"query\":\"a<b&c='d'\"}]");
+
+        //assert
+        assertEquals("{\"query\":\"a<b&c='d'\"}", items.get(0));
+    }
+
+    @Test
+    public void readAcceptsEmptyArray() throws IOException
+    {
+        //act
+        List<String> items = read("[]");
+
+        //assert
+        assertTrue(items.isEmpty());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void readThrowsOnEmptyBody() throws IOException
+    {
+        //act
+        read("");
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void readThrowsIfNotAnArray() throws IOException
+    {
+        //act
+        read("{}");
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void readThrowsIfItemIsNotAnObject() throws IOException
+    {
+        //act
+        read("[{},1]");
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void readThrowsOnTruncatedBody() throws IOException
+    {
+        //act
+        read("[{\"deviceId\":\"device1\"},{\"deviceId\":");
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void readThrowsOnTrailingContent() throws IOException
+    {
+        //act
+        read("[{}]]");
+    }
+}
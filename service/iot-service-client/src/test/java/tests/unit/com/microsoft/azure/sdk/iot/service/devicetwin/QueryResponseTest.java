@@ -193,4 +193,39 @@ public class QueryResponseTest
         assertFalse(testResponse.hasNext());
         assertNull(testResponse.next());
     }
+
+    @Test
+    public void listConstructorIteratesItems() throws IOException
+    {
+        //arrange
+        final List<String> items = new LinkedList<>();
+        items.add("{\"deviceId\":\"device1\"}");
+        items.add("{\"deviceId\":\"device2\"}");
+
+        //act
+        QueryResponse testResponse = Deencapsulation.newInstance(QueryResponse.class, new Class[] {List.class}, items);
+
+        //assert
+        assertEqualsIterator(items.iterator(), testResponse);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void listConstructorThrowsOnNullList() throws IOException
+    {
+        //act
+        Deencapsulation.newInstance(QueryResponse.class, new Class[] {List.class}, (List) null);
+    }
+
+    @Test (expected = NoSuchElementException.class)
+    public void listNextThrowsAfterLastItem() throws IOException
+    {
+        //arrange
+        final List<String> items = new LinkedList<>();
+        items.add("{}");
+        QueryResponse testResponse = Deencapsulation.newInstance(QueryResponse.class, new Class[] {List.class}, items);
+        testResponse.next();
+
+        //act
+        testResponse.next();
+    }
 }
@@ -14,12 +14,17 @@ import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpMethod;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpRequest;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponse;
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponseBodyReader;
 import mockit.*;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.UUID;
@@ -485,25 +490,55 @@ public class QueryTest
         assertEquals(DEFAULT_QUERY_TYPE, Deencapsulation.getField(testQuery, "responseQueryType"));
     }
 
-    @Test (expected = IOException.class)
-    public void sendQueryRequestThrowsWhenResponseThrows() throws IotHubException, IOException
+    @Test (expected = IllegalArgumentException.class)
+    public void sendQueryRequestThrowsOnMalformedResponse() throws IotHubException, IOException
     {
+        //arrange
+        Query testQuery = Deencapsulation.newInstance(Query.class, DEFAULT_QUERY, DEFAULT_PAGE_SIZE, DEFAULT_QUERY_TYPE);
+
+        new NonStrictExpectations()
+        {
+            {
+                mockHttpRequest.send((HttpResponseBodyReader) any);
+                result = new Delegate()
+                {
+                    HttpResponse send(HttpResponseBodyReader bodyReader) throws IOException
+                    {
+                        bodyReader.read(new ByteArrayInputStream("[{\"deviceId\":".getBytes(StandardCharsets.UTF_8)));
+                        return mockHttpResponse;
+                    }
+                };
+            }
+        };
+
+        //act
+        Deencapsulation.invoke(testQuery, "sendQueryRequest", mockIotHubConnectionString, mockUrl, mockHttpMethod, (long) 0);
+    }
 
+    @Test
+    public void sendQueryRequestReadsItemsFromResponseStream() throws IotHubException, IOException
+    {
         //arrange
-        final String testResponseToken = UUID.randomUUID().toString();
         final Map<String, String> testHeaderResponseMap = new HashMap<>();
-        testHeaderResponseMap.put("x-ms-continuation", testResponseToken);
         testHeaderResponseMap.put("x-ms-item-type", DEFAULT_QUERY_TYPE.getValue());
+        final List<List<String>> capturedItems = new ArrayList<>();
 
         Query testQuery = Deencapsulation.newInstance(Query.class, DEFAULT_QUERY, DEFAULT_PAGE_SIZE, DEFAULT_QUERY_TYPE);
 
         new NonStrictExpectations()
         {
             {
+                mockHttpRequest.send((HttpResponseBodyReader) any);
+                result = new Delegate()
+                {
+                    HttpResponse send(HttpResponseBodyReader bodyReader) throws IOException
+                    {
+                        bodyReader.read(new ByteArrayInputStream("[{\"deviceId\":\"device1\"}]".getBytes(StandardCharsets.UTF_8)));
+                        return mockHttpResponse;
+                    }
+                };
                 mockHttpResponse.getHeaderFields();
                 result = testHeaderResponseMap;
-                Deencapsulation.newInstance(QueryResponse.class, anyString);
-                result = new IOException("test");
             }
         };
 
@@ -511,7 +546,17 @@ public class QueryTest
         Deencapsulation.invoke(testQuery, "sendQueryRequest", mockIotHubConnectionString, mockUrl, mockHttpMethod, (long) 0);
 
         //assert
-        assertEquals(testResponseToken, Deencapsulation.getField(testQuery, "responseContinuationToken"));
+        new Verifications()
+        {
+            {
+                mockHttpResponse.getBody();
+                times = 0;
+                Deencapsulation.newInstance(QueryResponse.class, new Class[] {List.class}, withCapture(capturedItems));
+                times = 1;
+            }
+        };
+        assertEquals(1, capturedItems.get(0).size());
+        assertEquals("{\"deviceId\":\"device1\"}", capturedItems.get(0).get(0));
     }
 
     //Tests_SRS_QUERY_25_010: [The method shall read the continuation token (x-ms-continuation) and response type (x-ms-item-type) from the HTTP Headers and save it.]
@@ -0,0 +1,430 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.unit.com.microsoft.azure.sdk.iot.service.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
+import com.microsoft.azure.sdk.iot.service.IotHubServiceClientProtocol;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
+import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpMalformedMessageException;
+import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpPersistentReceive;
+import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpPersistentReceiveEvent;
+import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpPersistentReceiveHandler;
+import mockit.Deencapsulation;
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
+import mockit.Verifications;
+import mockit.integration.junit4.JMockit;
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.messaging.Data;
+import org.apache.qpid.proton.amqp.messaging.Modified;
+import org.apache.qpid.proton.amqp.messaging.Rejected;
+import org.apache.qpid.proton.amqp.transport.AmqpError;
+import org.apache.qpid.proton.amqp.transport.DeliveryState;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.HandlerException;
+import org.apache.qpid.proton.engine.Receiver;
+import org.apache.qpid.proton.message.Message;
+import org.apache.qpid.proton.reactor.Reactor;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** Unit tests for AmqpPersistentReceive */
+@RunWith(JMockit.class)
+public class AmqpPersistentReceiveTest
+{
+    private static final String HOST_NAME = "aaa.bbb.ccc";
+    private static final String USER_NAME = "user@sas.service";
+    private static final String SAS_TOKEN = "sasToken";
+    private static final String ENDPOINT = "/messages/servicebound/feedback";
+    private static final String CONNECTION_CLASS = "com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpPersistentConnection";
+    private static final String REACTOR_RUNNER_CLASS = "com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpPersistentConnection$ReactorRunner";
+
+    @Mocked AmqpPersistentReceiveHandler mockedHandler;
+    @Mocked Delivery mockedDelivery;
+    @Mocked Receiver mockedReceiver;
+
+    private final List<List<String>> receivedBatches = new ArrayList<>();
+
+    private AmqpPersistentReceive createOpenReceiver(AmqpPersistentReceiveEvent event)
+    {
+        AmqpPersistentReceive amqpPersistentReceive = new AmqpPersistentReceive(HOST_NAME, USER_NAME, SAS_TOKEN,
+                IotHubServiceClientProtocol.AMQPS, ENDPOINT, 5, 2, event);
+        Deencapsulation.setField(amqpPersistentReceive, "isOpen", true);
+        Deencapsulation.setField(amqpPersistentReceive, "currentHandler", mockedHandler);
+        Deencapsulation.setField(amqpPersistentReceive, "openLatch", new CountDownLatch(0));
+        Deencapsulation.setField(amqpPersistentReceive, "dispatcher", Executors.newSingleThreadExecutor());
+        return amqpPersistentReceive;
+    }
+
+    private static Message createMessage(String body)
+    {
+        Message message = Proton.message();
+        message.setBody(new Data(new Binary(body.getBytes(StandardCharsets.UTF_8))));
+        return message;
+    }
+
+    private static void receiveAndDispatch(AmqpPersistentReceive amqpPersistentReceive, AmqpPersistentReceiveHandler handler, Delivery delivery, Message... messages) throws Exception
+    {
+        for (Message message : messages)
+        {
+            Deencapsulation.invoke(amqpPersistentReceive, "onMessageReceived", handler, delivery, message);
+        }
+        ExecutorService dispatcher = Deencapsulation.getField(amqpPersistentReceive, "dispatcher");
+        dispatcher.shutdown();
+        assertTrue(dispatcher.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsOnLinkCreditBelowOne() throws Exception
+    {
+        new AmqpPersistentReceive(HOST_NAME, USER_NAME, SAS_TOKEN, IotHubServiceClientProtocol.AMQPS, ENDPOINT, 0, 1, receivedBatches::add);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsOnNullEvent() throws Exception
+    {
+        new AmqpPersistentReceive(HOST_NAME, USER_NAME, SAS_TOKEN, IotHubServiceClientProtocol.AMQPS, ENDPOINT, 1, 1, null);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsOnEmptyEndpoint() throws Exception
+    {
+        new AmqpPersistentReceive(HOST_NAME, USER_NAME, SAS_TOKEN, IotHubServiceClientProtocol.AMQPS, "", 1, 1, receivedBatches::add);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsOnBatchSizeAboveLinkCredit() throws Exception
+    {
+        new AmqpPersistentReceive(HOST_NAME, USER_NAME, SAS_TOKEN, IotHubServiceClientProtocol.AMQPS, ENDPOINT, 2, 3, receivedBatches::add);
+    }
+
+    @Test
+    public void receivedMessageIsAcceptedAfterCallbackReturnsAndCreditIsGrantedBack() throws Exception
+    {
+        AmqpPersistentReceive amqpPersistentReceive = createOpenReceiver(receivedBatches::add);
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockedHandler, "getReceiver");
+                result = mockedReceiver;
+            }
+        };
+
+        receiveAndDispatch(amqpPersistentReceive, mockedHandler, mockedDelivery, createMessage("{\"a\":1}"));
+        Deencapsulation.invoke(amqpPersistentReceive, "settle");
+
+        assertEquals(1, receivedBatches.size());
+        assertEquals("{\"a\":1}", receivedBatches.get(0).get(0));
+        new Verifications()
+        {
+            {
+                mockedDelivery.disposition(Accepted.getInstance());
+                times = 1;
+                mockedDelivery.settle();
+                times = 1;
+                mockedReceiver.flow(1);
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void receivedMessageIsModifiedAsFailedIfCallbackThrows() throws Exception
+    {
+        AmqpPersistentReceive amqpPersistentReceive = createOpenReceiver(bodies ->
+        {
+            throw new IllegalStateException("handler failed");
+        });
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockedHandler, "getReceiver");
+                result = mockedReceiver;
+            }
+        };
+
+        receiveAndDispatch(amqpPersistentReceive, mockedHandler, mockedDelivery, createMessage("body"));
+        Deencapsulation.invoke(amqpPersistentReceive, "settle");
+
+        final List<DeliveryState> outcomes = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                mockedDelivery.disposition(withCapture(outcomes));
+                times = 1;
+                mockedReceiver.flow(1);
+                times = 1;
+            }
+        };
+        assertTrue(outcomes.get(0) instanceof Modified);
+        assertTrue(((Modified) outcomes.get(0)).getDeliveryFailed());
+    }
+
+    @Test
+    public void receivedMessageIsRejectedIfCallbackReportsItMalformed() throws Exception
+    {
+        AmqpPersistentReceive amqpPersistentReceive = createOpenReceiver(bodies ->
+        {
+            throw new AmqpMalformedMessageException("not json", new IllegalArgumentException());
+        });
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockedHandler, "getReceiver");
+                result = mockedReceiver;
+            }
+        };
+
+        receiveAndDispatch(amqpPersistentReceive, mockedHandler, mockedDelivery, createMessage("body"));
+        Deencapsulation.invoke(amqpPersistentReceive, "settle");
+
+        final List<DeliveryState> outcomes = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                mockedDelivery.disposition(withCapture(outcomes));
+                times = 1;
+                mockedDelivery.settle();
+                times = 1;
+            }
+        };
+        assertTrue(outcomes.get(0) instanceof Rejected);
+        assertEquals(AmqpError.DECODE_ERROR, ((Rejected) outcomes.get(0)).getError().getCondition());
+    }
+
+    @Test
+    public void queuedMessagesAreDispatchedInBatchesUpToMaxBatchSize() throws Exception
+    {
+        AmqpPersistentReceive amqpPersistentReceive = createOpenReceiver(receivedBatches::add);
+        ExecutorService dispatcher = Deencapsulation.getField(amqpPersistentReceive, "dispatcher");
+        CountDownLatch blockDispatcher = new CountDownLatch(1);
+        dispatcher.execute(() ->
+        {
+            try
+            {
+                blockDispatcher.await();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        });
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockedHandler, "getReceiver");
+                result = mockedReceiver;
+            }
+        };
+
+        for (String body : new String[] {"one", "two", "three"})
+        {
+            Deencapsulation.invoke(amqpPersistentReceive, "onMessageReceived", mockedHandler, mockedDelivery, createMessage(body));
+        }
+        blockDispatcher.countDown();
+        dispatcher.shutdown();
+        assertTrue(dispatcher.awaitTermination(10, TimeUnit.SECONDS));
+        Deencapsulation.invoke(amqpPersistentReceive, "settle");
+
+        assertEquals(2, receivedBatches.size());
+        assertEquals(Arrays.asList("one", "two"), receivedBatches.get(0));
+        assertEquals(Collections.singletonList("three"), receivedBatches.get(1));
+        new Verifications()
+        {
+            {
+                mockedDelivery.disposition(Accepted.getInstance());
+                times = 3;
+                mockedReceiver.flow(1);
+                times = 3;
+            }
+        };
+    }
+
+    @Test
+    public void messageFromLostConnectionIsNotSettled(@Mocked final AmqpPersistentReceiveHandler otherHandler) throws Exception
+    {
+        AmqpPersistentReceive amqpPersistentReceive = createOpenReceiver(receivedBatches::add);
+
+        receiveAndDispatch(amqpPersistentReceive, mockedHandler, mockedDelivery, createMessage("body"));
+        Deencapsulation.setField(amqpPersistentReceive, "currentHandler", otherHandler);
+        Deencapsulation.invoke(amqpPersistentReceive, "settle");
+
+        new Verifications()
+        {
+            {
+                mockedDelivery.settle();
+                times = 0;
+                mockedReceiver.flow(anyInt);
+                times = 0;
+            }
+        };
+    }
+
+    @Test
+    public void firstConnectionLossIsReportedToOpen() throws Exception
+    {
+        AmqpPersistentReceive amqpPersistentReceive = createOpenReceiver(receivedBatches::add);
+        CountDownLatch openLatch = new CountDownLatch(1);
+        Deencapsulation.setField(amqpPersistentReceive, "openLatch", openLatch);
+        IOException cause = new IOException("connection refused");
+
+        Deencapsulation.invoke(amqpPersistentReceive, "onConnectionLost", mockedHandler, cause);
+
+        assertEquals(0, openLatch.getCount());
+        assertEquals(cause, Deencapsulation.getField(amqpPersistentReceive, "openException"));
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsOnNullConnectionString() throws Exception
+    {
+        new AmqpPersistentReceive((IotHubConnectionString) null, IotHubServiceClientProtocol.AMQPS, ENDPOINT, 1, 1, receivedBatches::add);
+    }
+
+    @Test
+    public void settleDoesNotGrantCreditWhileTokenRenewalIsDue() throws Exception
+    {
+        AmqpPersistentReceive amqpPersistentReceive = createOpenReceiver(receivedBatches::add);
+        Deencapsulation.setField(amqpPersistentReceive, "tokenRenewalTimeMillis", 0L);
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockedHandler, "getReceiver");
+                result = mockedReceiver;
+            }
+        };
+
+        receiveAndDispatch(amqpPersistentReceive, mockedHandler, mockedDelivery, createMessage("body"));
+        Deencapsulation.invoke(amqpPersistentReceive, "settle");
+
+        new Verifications()
+        {
+            {
+                mockedDelivery.settle();
+                times = 1;
+                mockedReceiver.flow(anyInt);
+                times = 0;
+            }
+        };
+        assertEquals(0, (int) Deencapsulation.getField(amqpPersistentReceive, "unsettledMessages"));
+    }
+
+    @Test
+    public void onReactorQuiescedWaitsForUnsettledMessagesBeforeRenewingToken(@Mocked final Event mockedEvent,
+                                                                              @Mocked final Reactor mockedReactor) throws Exception
+    {
+        AmqpPersistentReceive amqpPersistentReceive = createOpenReceiver(receivedBatches::add);
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockedHandler, "getReceiver");
+                result = mockedReceiver;
+            }
+        };
+        Deencapsulation.setField(amqpPersistentReceive, "tokenRenewalTimeMillis", System.currentTimeMillis());
+        Deencapsulation.setField(amqpPersistentReceive, "unsettledMessages", 1);
+
+        amqpPersistentReceive.onReactorQuiesced(mockedEvent);
+
+        assertEquals(mockedHandler, Deencapsulation.getField(amqpPersistentReceive, "currentHandler"));
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(mockedHandler, "closeConnection");
+                times = 0;
+            }
+        };
+    }
+
+    @Test
+    public void onReactorQuiescedRecyclesDrainedConnectionWithFreshToken(@Mocked final IotHubConnectionString mockedConnectionString,
+                                                                        @Mocked final IotHubServiceSasToken mockedSasToken,
+                                                                        @Mocked final Event mockedEvent,
+                                                                        @Mocked final Reactor mockedReactor) throws Exception
+    {
+        AmqpPersistentReceive amqpPersistentReceive = new AmqpPersistentReceive(mockedConnectionString,
+                IotHubServiceClientProtocol.AMQPS, ENDPOINT, 5, 2, receivedBatches::add);
+        Deencapsulation.setField(amqpPersistentReceive, "isOpen", true);
+        Deencapsulation.setField(amqpPersistentReceive, "currentHandler", mockedHandler);
+        Deencapsulation.setField(amqpPersistentReceive, "openLatch", new CountDownLatch(0));
+        Deencapsulation.setField(amqpPersistentReceive, "tokenRenewalTimeMillis", 0L);
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockedHandler, "getReceiver");
+                result = mockedReceiver;
+                mockedEvent.getReactor();
+                result = mockedReactor;
+            }
+        };
+
+        amqpPersistentReceive.onReactorQuiesced(mockedEvent);
+
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(mockedHandler, "closeConnection");
+                times = 1;
+                new IotHubServiceSasToken(mockedConnectionString);
+                times = 1;
+                mockedReactor.connection((AmqpPersistentReceiveHandler) any);
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void reactorDeathRestartsTheReactorUntilRestartsAreExhausted(@Mocked final Proton mockedProton,
+                                                                         @Mocked final Reactor mockedReactor) throws Exception
+    {
+        AmqpPersistentReceive amqpPersistentReceive = createOpenReceiver(receivedBatches::add);
+        CountDownLatch closeLatch = new CountDownLatch(1);
+        Deencapsulation.setField(amqpPersistentReceive, "closeLatch", closeLatch);
+        Deencapsulation.setField(amqpPersistentReceive, "reactor", mockedReactor);
+        Deencapsulation.setField(amqpPersistentReceive, "reconnectAttempts", 3);
+        new NonStrictExpectations()
+        {
+            {
+                Proton.reactor((AmqpPersistentReceive) any);
+                result = mockedReactor;
+                mockedReactor.process();
+                result = new HandlerException(null, new IllegalStateException());
+            }
+        };
+        Runnable runner = (Runnable) Deencapsulation.newInstance(Class.forName(REACTOR_RUNNER_CLASS),
+                new Class[] {Class.forName(CONNECTION_CLASS), Reactor.class}, amqpPersistentReceive, mockedReactor);
+
+        runner.run();
+
+        // the restarted reactor dies the same way, which exhausts the restarts
+        assertTrue(closeLatch.await(10, TimeUnit.SECONDS));
+        assertFalse(amqpPersistentReceive.isOpen());
+        new Verifications()
+        {
+            {
+                Proton.reactor((AmqpPersistentReceive) any);
+                times = 1;
+            }
+        };
+    }
+}
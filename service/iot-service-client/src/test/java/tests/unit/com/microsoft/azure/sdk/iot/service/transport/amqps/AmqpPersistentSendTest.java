@@ -0,0 +1,370 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.unit.com.microsoft.azure.sdk.iot.service.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
+import com.microsoft.azure.sdk.iot.service.IotHubServiceClientProtocol;
+import com.microsoft.azure.sdk.iot.service.Message;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
+import com.microsoft.azure.sdk.iot.service.exceptions.IotHubNotFoundException;
+import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpPersistentSend;
+import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpPersistentSendHandler;
+import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpResponseVerification;
+import mockit.Deencapsulation;
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
+import mockit.Verifications;
+import mockit.integration.junit4.JMockit;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.messaging.Rejected;
+import org.apache.qpid.proton.amqp.transport.AmqpError;
+import org.apache.qpid.proton.amqp.transport.ErrorCondition;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.HandlerException;
+import org.apache.qpid.proton.engine.Sender;
+import org.apache.qpid.proton.reactor.Reactor;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** Unit tests for AmqpPersistentSend */
+@RunWith(JMockit.class)
+public class AmqpPersistentSendTest
+{
+    @Mocked IotHubConnectionString mockedConnectionString;
+    @Mocked AmqpPersistentSendHandler mockedHandler;
+    @Mocked Sender mockedSender;
+    @Mocked IotHubServiceSasToken mockedSasToken;
+    @Mocked Event mockedEvent;
+    @Mocked Reactor mockedReactor;
+
+    private static final String PENDING_SEND_CLASS = "com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpPersistentSend$PendingSend";
+    private static final String CONNECTION_CLASS = "com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpPersistentConnection";
+    private static final String REACTOR_RUNNER_CLASS = "com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpPersistentConnection$ReactorRunner";
+
+    private static Object createPendingSend(CompletableFuture<Void> future, int attempts) throws ClassNotFoundException
+    {
+        Object pendingSend = Deencapsulation.newInstance(Class.forName(PENDING_SEND_CLASS),
+                new Class[] {byte[].class, int.class, CompletableFuture.class}, new byte[1], 1, future);
+        Deencapsulation.setField(pendingSend, "attempts", attempts);
+        return pendingSend;
+    }
+
+    private AmqpPersistentSend createOpenSender()
+    {
+        AmqpPersistentSend amqpPersistentSend = new AmqpPersistentSend(mockedConnectionString, IotHubServiceClientProtocol.AMQPS);
+        Deencapsulation.setField(amqpPersistentSend, "isOpen", true);
+        Deencapsulation.setField(amqpPersistentSend, "currentHandler", mockedHandler);
+        Deencapsulation.setField(amqpPersistentSend, "openLatch", new CountDownLatch(0));
+        return amqpPersistentSend;
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsOnNullConnectionString() throws Exception
+    {
+        new AmqpPersistentSend(null, IotHubServiceClientProtocol.AMQPS);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsOnNullProtocol() throws Exception
+    {
+        new AmqpPersistentSend(mockedConnectionString, null);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void sendThrowsOnNullDeviceId() throws Exception
+    {
+        AmqpPersistentSend amqpPersistentSend = createOpenSender();
+
+        amqpPersistentSend.send(null, null, new Message("hello"));
+    }
+
+    @Test
+    public void sendFailsFutureIfNotOpen() throws Exception
+    {
+        AmqpPersistentSend amqpPersistentSend = new AmqpPersistentSend(mockedConnectionString, IotHubServiceClientProtocol.AMQPS);
+
+        CompletableFuture<Void> future = amqpPersistentSend.send("device", null, new Message("hello"));
+
+        try
+        {
+            future.get();
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof IOException);
+            return;
+        }
+        throw new AssertionError("future should have failed");
+    }
+
+    @Test
+    public void sendQueuesEncodedMessage() throws Exception
+    {
+        AmqpPersistentSend amqpPersistentSend = createOpenSender();
+
+        CompletableFuture<Void> future = amqpPersistentSend.send("device", "module", new Message("hello"));
+
+        Queue<?> queue = Deencapsulation.getField(amqpPersistentSend, "messagesToBeSent");
+        assertEquals(1, queue.size());
+        assertFalse(future.isDone());
+    }
+
+    @Test
+    public void flushWritesOnlyAsManyMessagesAsLinkCredit() throws Exception
+    {
+        AmqpPersistentSend amqpPersistentSend = createOpenSender();
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockedHandler, "getSender");
+                result = mockedSender;
+                mockedSender.getCredit();
+                returns(1, 0);
+            }
+        };
+        amqpPersistentSend.send("device", null, new Message("one"));
+        amqpPersistentSend.send("device", null, new Message("two"));
+
+        Deencapsulation.invoke(amqpPersistentSend, "flush", mockedHandler);
+
+        Queue<?> queue = Deencapsulation.getField(amqpPersistentSend, "messagesToBeSent");
+        Map<String, Object> inFlight = Deencapsulation.getField(amqpPersistentSend, "inFlightMessages");
+        assertEquals(1, queue.size());
+        assertEquals(1, inFlight.size());
+        new Verifications()
+        {
+            {
+                mockedSender.delivery("0".getBytes());
+                times = 1;
+                mockedSender.advance();
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void flushIgnoresStaleHandler(@Mocked final AmqpPersistentSendHandler staleHandler) throws Exception
+    {
+        AmqpPersistentSend amqpPersistentSend = createOpenSender();
+        amqpPersistentSend.send("device", null, new Message("one"));
+
+        Deencapsulation.invoke(amqpPersistentSend, "flush", staleHandler);
+
+        Queue<?> queue = Deencapsulation.getField(amqpPersistentSend, "messagesToBeSent");
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    public void onDeliveryUpdatedCompletesFutureByTag() throws Exception
+    {
+        AmqpPersistentSend amqpPersistentSend = createOpenSender();
+        CompletableFuture<Void> first = new CompletableFuture<>();
+        CompletableFuture<Void> second = new CompletableFuture<>();
+        Map<String, Object> inFlight = Deencapsulation.getField(amqpPersistentSend, "inFlightMessages");
+        inFlight.put("0", createPendingSend(first, 1));
+        inFlight.put("1", createPendingSend(second, 1));
+        AmqpResponseVerification accepted = new AmqpResponseVerification(new Accepted());
+
+        Deencapsulation.invoke(amqpPersistentSend, "onDeliveryUpdated", "1".getBytes(), accepted);
+
+        assertTrue(second.isDone());
+        assertFalse(second.isCompletedExceptionally());
+        assertFalse(first.isDone());
+        assertEquals(1, inFlight.size());
+    }
+
+    @Test
+    public void onDeliveryUpdatedFailsFutureOnRejection() throws Exception
+    {
+        AmqpPersistentSend amqpPersistentSend = createOpenSender();
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        Map<String, Object> inFlight = Deencapsulation.getField(amqpPersistentSend, "inFlightMessages");
+        inFlight.put("0", createPendingSend(future, 1));
+        Rejected rejected = new Rejected();
+        rejected.setError(new ErrorCondition(AmqpError.NOT_FOUND, "device not found"));
+
+        Deencapsulation.invoke(amqpPersistentSend, "onDeliveryUpdated", "0".getBytes(), new AmqpResponseVerification(rejected));
+
+        try
+        {
+            future.get();
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof IotHubNotFoundException);
+            return;
+        }
+        throw new AssertionError("future should have failed");
+    }
+
+    @Test
+    public void onConnectionLostRequeuesInFlightAndKeepsQueuedMessages() throws Exception
+    {
+        AmqpPersistentSend amqpPersistentSend = createOpenSender();
+        CompletableFuture<Void> inFlightFuture = new CompletableFuture<>();
+        Map<String, Object> inFlight = Deencapsulation.getField(amqpPersistentSend, "inFlightMessages");
+        inFlight.put("0", createPendingSend(inFlightFuture, 1));
+        CompletableFuture<Void> queuedFuture = amqpPersistentSend.send("device", null, new Message("queued"));
+
+        Deencapsulation.invoke(amqpPersistentSend, "onConnectionLost", mockedHandler, new IOException("lost"));
+
+        Queue<?> resendQueue = Deencapsulation.getField(amqpPersistentSend, "messagesToBeResent");
+        Queue<?> queue = Deencapsulation.getField(amqpPersistentSend, "messagesToBeSent");
+        assertFalse(inFlightFuture.isDone());
+        assertFalse(queuedFuture.isDone());
+        assertTrue(inFlight.isEmpty());
+        assertEquals(1, resendQueue.size());
+        assertEquals(1, queue.size());
+        assertEquals(null, Deencapsulation.getField(amqpPersistentSend, "currentHandler"));
+    }
+
+    @Test
+    public void onConnectionLostFailsMessageWrittenTooManyTimes() throws Exception
+    {
+        AmqpPersistentSend amqpPersistentSend = createOpenSender();
+        CompletableFuture<Void> inFlightFuture = new CompletableFuture<>();
+        Map<String, Object> inFlight = Deencapsulation.getField(amqpPersistentSend, "inFlightMessages");
+        inFlight.put("0", createPendingSend(inFlightFuture, 3));
+
+        Deencapsulation.invoke(amqpPersistentSend, "onConnectionLost", mockedHandler, new IOException("lost"));
+
+        assertTrue(inFlightFuture.isCompletedExceptionally());
+    }
+
+    @Test
+    public void onConnectionLostFailsPendingMessagesOnceReconnectAttemptsAreExhausted() throws Exception
+    {
+        AmqpPersistentSend amqpPersistentSend = createOpenSender();
+        Deencapsulation.setField(amqpPersistentSend, "reconnectAttempts", 4);
+        CompletableFuture<Void> queuedFuture = amqpPersistentSend.send("device", null, new Message("queued"));
+
+        Deencapsulation.invoke(amqpPersistentSend, "onConnectionLost", mockedHandler, new IOException("lost"));
+
+        assertTrue(queuedFuture.isCompletedExceptionally());
+    }
+
+    @Test
+    public void flushWritesRequeuedMessagesFirst() throws Exception
+    {
+        AmqpPersistentSend amqpPersistentSend = createOpenSender();
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockedHandler, "getSender");
+                result = mockedSender;
+                mockedSender.getCredit();
+                returns(1, 0);
+            }
+        };
+        CompletableFuture<Void> requeuedFuture = new CompletableFuture<>();
+        Queue<Object> resendQueue = Deencapsulation.getField(amqpPersistentSend, "messagesToBeResent");
+        resendQueue.add(createPendingSend(requeuedFuture, 1));
+        amqpPersistentSend.send("device", null, new Message("queued"));
+
+        Deencapsulation.invoke(amqpPersistentSend, "flush", mockedHandler);
+
+        Map<String, Object> inFlight = Deencapsulation.getField(amqpPersistentSend, "inFlightMessages");
+        assertEquals(requeuedFuture, Deencapsulation.getField(inFlight.get("0"), "future"));
+        assertEquals(2, (int) Deencapsulation.getField(inFlight.get("0"), "attempts"));
+        assertTrue(resendQueue.isEmpty());
+    }
+
+    @Test
+    public void onReactorQuiescedWaitsForInFlightMessagesBeforeRenewingToken() throws Exception
+    {
+        AmqpPersistentSend amqpPersistentSend = createOpenSender();
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockedHandler, "getSender");
+                result = mockedSender;
+            }
+        };
+        Deencapsulation.setField(amqpPersistentSend, "tokenRenewalTimeMillis", System.currentTimeMillis());
+        CompletableFuture<Void> inFlightFuture = new CompletableFuture<>();
+        Map<String, Object> inFlight = Deencapsulation.getField(amqpPersistentSend, "inFlightMessages");
+        inFlight.put("0", createPendingSend(inFlightFuture, 1));
+
+        amqpPersistentSend.onReactorQuiesced(mockedEvent);
+
+        assertEquals(mockedHandler, Deencapsulation.getField(amqpPersistentSend, "currentHandler"));
+        assertFalse(inFlightFuture.isDone());
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(mockedHandler, "closeConnection");
+                times = 0;
+            }
+        };
+    }
+
+    @Test
+    public void onReactorQuiescedRecyclesDrainedConnectionWithoutFailingQueuedMessages() throws Exception
+    {
+        AmqpPersistentSend amqpPersistentSend = createOpenSender();
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockedHandler, "getSender");
+                result = mockedSender;
+                mockedEvent.getReactor();
+                result = mockedReactor;
+            }
+        };
+        Deencapsulation.setField(amqpPersistentSend, "tokenRenewalTimeMillis", 0L);
+        CompletableFuture<Void> queuedFuture = amqpPersistentSend.send("device", null, new Message("queued"));
+
+        amqpPersistentSend.onReactorQuiesced(mockedEvent);
+
+        assertFalse(queuedFuture.isDone());
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(mockedHandler, "closeConnection");
+                times = 1;
+                mockedReactor.connection((AmqpPersistentSendHandler) any);
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void reactorDeathAfterRestartsAreExhaustedClosesSenderAndFailsMessages() throws Exception
+    {
+        final AmqpPersistentSend amqpPersistentSend = createOpenSender();
+        Deencapsulation.setField(amqpPersistentSend, "closeLatch", new CountDownLatch(1));
+        Deencapsulation.setField(amqpPersistentSend, "reactor", mockedReactor);
+        Deencapsulation.setField(amqpPersistentSend, "reconnectAttempts", 4);
+        CompletableFuture<Void> queuedFuture = amqpPersistentSend.send("device", null, new Message("queued"));
+        new NonStrictExpectations()
+        {
+            {
+                mockedReactor.process();
+                result = new HandlerException(null, new IllegalStateException());
+            }
+        };
+        Runnable runner = (Runnable) Deencapsulation.newInstance(Class.forName(REACTOR_RUNNER_CLASS),
+                new Class[] {Class.forName(CONNECTION_CLASS), Reactor.class}, amqpPersistentSend, mockedReactor);
+
+        runner.run();
+
+        assertTrue(queuedFuture.isCompletedExceptionally());
+        assertFalse((boolean) Deencapsulation.getField(amqpPersistentSend, "isOpen"));
+        assertEquals(0, ((CountDownLatch) Deencapsulation.getField(amqpPersistentSend, "closeLatch")).getCount());
+        assertTrue(amqpPersistentSend.send("device", null, new Message("late")).isCompletedExceptionally());
+    }
+}
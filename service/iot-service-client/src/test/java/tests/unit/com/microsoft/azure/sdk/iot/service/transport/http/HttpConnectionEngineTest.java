@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.unit.com.microsoft.azure.sdk.iot.service.transport.http;
+
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpConnectionEngine;
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpRequest;
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponse;
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponseBodyReader;
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
+import mockit.Verifications;
+import mockit.integration.junit4.JMockit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/** Unit tests for HttpConnectionEngine. */
+@RunWith(JMockit.class)
+public class HttpConnectionEngineTest
+{
+    @Mocked
+    HttpRequest mockRequest;
+
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsOnNonPositiveMaxConcurrentRequests()
+    {
+        // act
+        new HttpConnectionEngine(0);
+    }
+
+    @Test
+    public void sendSendsTheRequest() throws IOException
+    {
+        // arrange
+        final HttpResponse response = new HttpResponse(200, new byte[0], new HashMap<>(), new byte[0]);
+        new NonStrictExpectations()
+        {
+            {
+                mockRequest.send();
+                result = response;
+            }
+        };
+        HttpConnectionEngine engine = new HttpConnectionEngine();
+
+        // act
+        HttpResponse actual = engine.send(mockRequest);
+
+        // assert
+        assertEquals(response, actual);
+        new Verifications()
+        {
+            {
+                mockRequest.send();
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void sendWithBodyReaderSendsTheRequestWithTheReader() throws IOException
+    {
+        // arrange
+        final HttpResponse response = new HttpResponse(200, new byte[0], new HashMap<>(), new byte[0]);
+        final HttpResponseBodyReader bodyReader = body -> { };
+        new NonStrictExpectations()
+        {
+            {
+                mockRequest.send(bodyReader);
+                result = response;
+            }
+        };
+        HttpConnectionEngine engine = new HttpConnectionEngine();
+
+        // act
+        HttpResponse actual = engine.send(mockRequest, bodyReader);
+
+        // assert
+        assertEquals(response, actual);
+        new Verifications()
+        {
+            {
+                mockRequest.send();
+                times = 0;
+            }
+        };
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void sendThrowsOnNullRequest() throws IOException
+    {
+        // act
+        new HttpConnectionEngine().send(null);
+    }
+
+    @Test
+    public void sendAsyncCompletesWithTheResponse() throws Exception
+    {
+        // arrange
+        final HttpResponse response = new HttpResponse(200, new byte[0], new HashMap<>(), new byte[0]);
+        new NonStrictExpectations()
+        {
+            {
+                mockRequest.send();
+                result = response;
+            }
+        };
+        HttpConnectionEngine engine = new HttpConnectionEngine(1);
+
+        // act
+        CompletableFuture<HttpResponse> future = engine.sendAsync(mockRequest);
+
+        // assert
+        assertEquals(response, future.get());
+    }
+
+    @Test
+    public void sendAsyncCompletesExceptionallyIfSendThrows() throws Exception
+    {
+        // arrange
+        final IOException failure = new IOException("connection refused");
+        new NonStrictExpectations()
+        {
+            {
+                mockRequest.send();
+                result = failure;
+            }
+        };
+        HttpConnectionEngine engine = new HttpConnectionEngine(1);
+
+        // act
+        CompletableFuture<HttpResponse> future = engine.sendAsync(mockRequest);
+
+        // assert
+        try
+        {
+            future.get();
+            fail("The future should have completed exceptionally");
+        }
+        catch (ExecutionException e)
+        {
+            assertEquals(failure, e.getCause());
+        }
+    }
+
+    @Test
+    public void sendAsyncDoesNotBlockTheCaller() throws Exception
+    {
+        // arrange
+        final CompletableFuture<Void> release = new CompletableFuture<>();
+        final HttpResponse response = new HttpResponse(200, new byte[0], new HashMap<>(), new byte[0]);
+        new NonStrictExpectations()
+        {
+            {
+                mockRequest.send();
+                result = new mockit.Delegate<HttpResponse>()
+                {
+                    @SuppressWarnings("unused")
+                    HttpResponse send() throws Exception
+                    {
+                        release.get();
+                        return response;
+                    }
+                };
+            }
+        };
+        HttpConnectionEngine engine = new HttpConnectionEngine(1);
+
+        // act
+        CompletableFuture<HttpResponse> future = engine.sendAsync(mockRequest);
+
+        // assert
+        assertTrue(!future.isDone());
+        release.complete(null);
+        assertEquals(response, future.get());
+    }
+
+    @Test
+    public void sendAsyncWithExecutorRunsTheRequestOnTheGivenExecutor() throws Exception
+    {
+        // arrange
+        final HttpResponse response = new HttpResponse(200, new byte[0], new HashMap<>(), new byte[0]);
+        new NonStrictExpectations()
+        {
+            {
+                mockRequest.send();
+                result = response;
+            }
+        };
+        final List<Runnable> submitted = new ArrayList<>();
+        HttpConnectionEngine engine = new HttpConnectionEngine(1);
+
+        // act
+        CompletableFuture<HttpResponse> future = engine.sendAsync(mockRequest, submitted::add);
+
+        // assert
+        assertEquals(1, submitted.size());
+        assertTrue(!future.isDone());
+        submitted.get(0).run();
+        assertEquals(response, future.get());
+    }
+
+    @Test
+    public void sendAsyncCompletesExceptionallyIfTheExecutorRejectsTheRequest() throws Exception
+    {
+        // arrange
+        final RejectedExecutionException rejection = new RejectedExecutionException("shut down");
+        HttpConnectionEngine engine = new HttpConnectionEngine();
+
+        // act
+        CompletableFuture<HttpResponse> future = engine.sendAsync(mockRequest, command ->
+        {
+            throw rejection;
+        });
+
+        // assert
+        try
+        {
+            future.get();
+            fail("The future should have completed exceptionally");
+        }
+        catch (ExecutionException e)
+        {
+            assertEquals(rejection, e.getCause());
+        }
+    }
+
+    @Test
+    public void sendAsyncOnTheDefaultEngineQueuesRequestsBeyondTenAtATime() throws Exception
+    {
+        // arrange
+        final int requestCount = 20;
+        final AtomicInteger started = new AtomicInteger();
+        final CountDownLatch tenStarted = new CountDownLatch(10);
+        final CompletableFuture<Void> release = new CompletableFuture<>();
+        final HttpResponse response = new HttpResponse(200, new byte[0], new HashMap<>(), new byte[0]);
+        new NonStrictExpectations()
+        {
+            {
+                mockRequest.send();
+                result = new mockit.Delegate<HttpResponse>()
+                {
+                    @SuppressWarnings("unused")
+                    HttpResponse send() throws Exception
+                    {
+                        started.incrementAndGet();
+                        tenStarted.countDown();
+                        release.get();
+                        return response;
+                    }
+                };
+            }
+        };
+        HttpConnectionEngine engine = new HttpConnectionEngine();
+        List<CompletableFuture<HttpResponse>> futures = new ArrayList<>();
+
+        // act
+        for (int i = 0; i < requestCount; i++)
+        {
+            futures.add(engine.sendAsync(mockRequest));
+        }
+
+        // assert
+        assertTrue(tenStarted.await(10, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        assertEquals(10, started.get());
+        release.complete(null);
+        for (CompletableFuture<HttpResponse> future : futures)
+        {
+            assertEquals(response, future.get());
+        }
+        assertEquals(requestCount, started.get());
+    }
+}
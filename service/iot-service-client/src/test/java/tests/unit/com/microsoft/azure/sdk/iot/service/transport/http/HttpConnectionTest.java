@@ -421,6 +421,41 @@ public class HttpConnectionTest
         assertThat(testResponse, is(expectedResponse));
     }
 
+    @Test
+    public void getInputStreamReturnsResponseStreamUnread(@Mocked final InputStream mockIs) throws IOException
+    {
+        // Arrange
+        final HttpMethod httpsMethod = HttpMethod.GET;
+        new NonStrictExpectations()
+        {
+            {
+                mockUrl.getProtocol();
+                result = "https";
+                mockUrl.openConnection();
+                result = mockUrlConn;
+                mockUrlConn.getRequestMethod();
+                result = httpsMethod.name();
+                mockUrlConn.getInputStream();
+                result = mockIs;
+            }
+        };
+        HttpConnection conn = new HttpConnection(mockUrl, httpsMethod);
+        conn.connect();
+        // Act
+        InputStream testStream = conn.getInputStream();
+        // Assert
+        assertThat(testStream, is(mockIs));
+        new Verifications()
+        {
+            {
+                mockIs.read();
+                times = 0;
+                mockIs.close();
+                times = 0;
+            }
+        };
+    }
+
     // Tests_SRS_SERVICE_SDK_JAVA_HTTPCONNECTION_12_016: [The function shall close the input stream after it has been completely read.]
     @Test
     public void readInputAlwaysClosesStream(@Mocked final InputStream mockIs) throws IOException
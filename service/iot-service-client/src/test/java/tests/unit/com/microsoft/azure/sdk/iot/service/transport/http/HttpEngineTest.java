@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.unit.com.microsoft.azure.sdk.iot.service.transport.http;
+
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpEngine;
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpRequest;
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponse;
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponseBodyReader;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/** Unit tests for the default methods of HttpEngine. */
+public class HttpEngineTest
+{
+    private static HttpEngine engineReturning(final HttpResponse response)
+    {
+        return new HttpEngine()
+        {
+            @Override
+            public HttpResponse send(HttpRequest request)
+            {
+                return response;
+            }
+
+            @Override
+            public CompletableFuture<HttpResponse> sendAsync(HttpRequest request)
+            {
+                return CompletableFuture.completedFuture(response);
+            }
+        };
+    }
+
+    @Test
+    public void sendWithBodyReaderHandsTheBodyOfASuccessfulResponseToTheReader() throws IOException
+    {
+        // arrange
+        final byte[] body = { 1, 2, 3 };
+        final HttpResponse response = new HttpResponse(200, body, new HashMap<>(), new byte[0]);
+        final ByteArrayOutputStream read = new ByteArrayOutputStream();
+        HttpResponseBodyReader bodyReader = stream ->
+        {
+            int next;
+            while ((next = stream.read()) != -1)
+            {
+                read.write(next);
+            }
+        };
+
+        // act
+        HttpResponse actual = engineReturning(response).send(null, bodyReader);
+
+        // assert
+        assertSame(response, actual);
+        assertArrayEquals(body, read.toByteArray());
+    }
+
+    @Test
+    public void sendWithBodyReaderDoesNotCallTheReaderForAnErrorResponse() throws IOException
+    {
+        // arrange
+        final HttpResponse response = new HttpResponse(404, new byte[0], new HashMap<>(), new byte[] { 1 });
+        final int[] calls = new int[1];
+
+        // act
+        HttpResponse actual = engineReturning(response).send(null, stream -> calls[0]++);
+
+        // assert
+        assertSame(response, actual);
+        assertEquals(0, calls[0]);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void sendWithBodyReaderThrowsOnNullReader() throws IOException
+    {
+        // act
+        engineReturning(null).send(null, null);
+    }
+
+    @Test
+    public void sendAsyncWithExecutorDefaultsToSendAsync() throws Exception
+    {
+        // arrange
+        final HttpResponse response = new HttpResponse(200, new byte[0], new HashMap<>(), new byte[0]);
+        Executor executor = command ->
+        {
+            throw new AssertionError("the default implementation should not use the executor");
+        };
+
+        // act
+        CompletableFuture<HttpResponse> future = engineReturning(response).sendAsync(null, executor);
+
+        // assert
+        assertSame(response, future.get());
+    }
+}
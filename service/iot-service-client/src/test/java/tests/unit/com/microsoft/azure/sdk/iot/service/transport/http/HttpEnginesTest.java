@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.unit.com.microsoft.azure.sdk.iot.service.transport.http;
+
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpConnectionEngine;
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpEngine;
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpEngines;
+import mockit.Mocked;
+import mockit.integration.junit4.JMockit;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/** Unit tests for HttpEngines. */
+@RunWith(JMockit.class)
+public class HttpEnginesTest
+{
+    @After
+    public void tearDown()
+    {
+        HttpEngines.setEngine(null);
+    }
+
+    @Test
+    public void getEngineDefaultsToHttpConnectionEngine()
+    {
+        // act
+        HttpEngine engine = HttpEngines.getEngine();
+
+        // assert
+        assertTrue(engine instanceof HttpConnectionEngine);
+        assertSame(engine, HttpEngines.getEngine());
+    }
+
+    @Test
+    public void getEngineReturnsTheEngineSet(@Mocked HttpEngine mockEngine)
+    {
+        // act
+        HttpEngines.setEngine(mockEngine);
+
+        // assert
+        assertSame(mockEngine, HttpEngines.getEngine());
+    }
+
+    @Test
+    public void setEngineNullRestoresTheSameDefaultEngine(@Mocked HttpEngine mockEngine)
+    {
+        // arrange
+        HttpEngine defaultEngine = HttpEngines.getEngine();
+        HttpEngines.setEngine(mockEngine);
+
+        // act
+        HttpEngines.setEngine(null);
+
+        // assert
+        assertSame(defaultEngine, HttpEngines.getEngine());
+    }
+}
@@ -10,12 +10,15 @@ import com.microsoft.azure.sdk.iot.service.transport.http.HttpConnection;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpMethod;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpRequest;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponse;
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponseBodyReader;
 import mockit.*;
 import mockit.integration.junit4.JMockit;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -496,6 +499,99 @@ public class HttpsRequestTest
         assertThat(testStatus, is(expectedStatus));
     }
 
+    @Test
+    public void sendWithBodyReaderHandsResponseStreamToReader(@Mocked final HttpConnection mockConn, final @Mocked URL mockUrl) throws IOException
+    {
+        // Arrange
+        final byte[] responseBody = { 1, 2, 3, 0, 4 };
+        final InputStream responseStream = new ByteArrayInputStream(responseBody);
+        final List<InputStream> readStreams = new LinkedList<>();
+        new NonStrictExpectations()
+        {
+            {
+                mockUrl.getProtocol();
+                result = "http";
+                mockConn.getResponseStatus();
+                result = 200;
+                mockConn.getInputStream();
+                result = responseStream;
+            }
+        };
+        HttpRequest request = new HttpRequest(mockUrl, HttpMethod.GET, new byte[0]);
+        // Act
+        HttpResponse response = request.send(readStreams::add);
+        // Assert
+        assertThat(readStreams.size(), is(1));
+        assertThat(readStreams.get(0), is(responseStream));
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.getBody().length, is(0));
+        new Verifications()
+        {
+            {
+                mockConn.readInput();
+                times = 0;
+            }
+        };
+    }
+
+    @Test
+    public void sendWithBodyReaderReturnsErrorWithoutCallingReader(@Mocked final HttpConnection mockConn, final @Mocked URL mockUrl) throws IOException
+    {
+        // Arrange
+        final byte[] error = { 5, 6, 7, 0, 1 };
+        final List<InputStream> readStreams = new LinkedList<>();
+        new NonStrictExpectations()
+        {
+            {
+                mockUrl.getProtocol();
+                result = "http";
+                mockConn.getInputStream();
+                result = new IOException();
+                mockConn.getResponseStatus();
+                result = 404;
+                mockConn.readError();
+                result = error;
+            }
+        };
+        HttpRequest request = new HttpRequest(mockUrl, HttpMethod.GET, new byte[0]);
+        // Act
+        HttpResponse response = request.send(readStreams::add);
+        // Assert
+        assertThat(readStreams.isEmpty(), is(true));
+        assertThat(response.getStatus(), is(404));
+        assertThat(response.getErrorReason(), is(error));
+    }
+
+    @Test (expected = IOException.class)
+    public void sendWithBodyReaderThrowsIfReaderThrows(@Mocked final HttpConnection mockConn, final @Mocked URL mockUrl) throws IOException
+    {
+        // Arrange
+        new NonStrictExpectations()
+        {
+            {
+                mockUrl.getProtocol();
+                result = "http";
+                mockConn.getInputStream();
+                result = new ByteArrayInputStream(new byte[0]);
+            }
+        };
+        HttpRequest request = new HttpRequest(mockUrl, HttpMethod.GET, new byte[0]);
+        // Act
+        request.send(body ->
+        {
+            throw new IOException("connection reset");
+        });
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void sendWithBodyReaderThrowsOnNullReader(@Mocked final HttpConnection mockConn, final @Mocked URL mockUrl) throws IOException
+    {
+        // Arrange
+        HttpRequest request = new HttpRequest(mockUrl, HttpMethod.GET, new byte[0]);
+        // Act
+        request.send((HttpResponseBodyReader) null);
+    }
+
     // Tests_SRS_SERVICE_SDK_JAVA_HTTPSREQUEST_12_007: [If the client cannot connect to the server, the function shall throw an IOException.]
     // Assert
     @Test(expected = IOException.class)
@@ -614,4 +710,46 @@ public class HttpsRequestTest
             }
         };
     }
+
+    @Test
+    public void gettersReturnTheRequestAsBuilt(@Mocked final HttpConnection mockConn, final @Mocked URL mockUrl) throws IOException
+    {
+        // Arrange
+        final HttpMethod httpsMethod = HttpMethod.PUT;
+        final byte[] body = { 1, 2, 3 };
+        new NonStrictExpectations()
+        {
+            {
+                mockUrl.getProtocol();
+                result = "http";
+            }
+        };
+        // Act
+        HttpRequest request = new HttpRequest(mockUrl, httpsMethod, body);
+        request.setHeaderField("authorization", "sas");
+        request.setReadTimeoutMillis(1000);
+        // Assert
+        assertThat(request.getUrl(), is(mockUrl));
+        assertThat(request.getHttpMethod(), is(httpsMethod));
+        assertThat(request.getBody(), is(body));
+        assertThat(request.getReadTimeoutMillis(), is(1000));
+        assertThat(request.getHeaderFields().get("User-Agent"), is(TransportUtils.javaServiceClientIdentifier + TransportUtils.serviceVersion));
+        assertThat(request.getHeaderFields().get("authorization"), is("sas"));
+    }
+
+    @Test (expected = UnsupportedOperationException.class)
+    public void getHeaderFieldsIsUnmodifiable(@Mocked final HttpConnection mockConn, final @Mocked URL mockUrl) throws IOException
+    {
+        // Arrange
+        new NonStrictExpectations()
+        {
+            {
+                mockUrl.getProtocol();
+                result = "http";
+            }
+        };
+        HttpRequest request = new HttpRequest(mockUrl, HttpMethod.GET, new byte[0]);
+        // Act
+        request.getHeaderFields().put("field", "value");
+    }
 }